@@ -1,4 +1,5 @@
 #include "gaussian_blur.h"
+#include "box_blur.h"
 
 #include <jni.h>
 #include <android/bitmap.h>
@@ -97,3 +98,69 @@ Java_app_simple_felicity_blur_GPUBlur_nativeBlur(
     return resultBitmap;
 }
 
+
+/**
+ * JNI entry point called from CPUBlur.kt.
+ *
+ * Blurs [src] into [dst] on the calling thread. Both bitmaps must be RGBA_8888 and the
+ * same size; the Kotlin side allocates [dst] so there is no Bitmap.createBitmap round
+ * trip through JNI here.
+ *
+ * @param src     The source Android Bitmap.
+ * @param dst     The bitmap to write the blurred pixels into.
+ * @param radius  Blur radius in pixels.
+ * @return        JNI_TRUE when [dst] holds the blurred image.
+ */
+extern "C" JNIEXPORT jboolean JNICALL
+Java_app_simple_felicity_blur_CPUBlur_nativeBlur(
+        JNIEnv *env,
+        jobject  /* thiz */,
+        jobject src,
+        jobject dst,
+        jfloat radius) {
+
+    AndroidBitmapInfo srcInfo{};
+    AndroidBitmapInfo dstInfo{};
+    if (AndroidBitmap_getInfo(env, src, &srcInfo) < 0 || AndroidBitmap_getInfo(env, dst, &dstInfo) < 0) {
+        LOGE("AndroidBitmap_getInfo failed");
+        return JNI_FALSE;
+    }
+
+    if (srcInfo.format != ANDROID_BITMAP_FORMAT_RGBA_8888 || dstInfo.format != ANDROID_BITMAP_FORMAT_RGBA_8888) {
+        LOGE("Unsupported bitmap format %d -> %d (only RGBA_8888 is supported)", srcInfo.format, dstInfo.format);
+        return JNI_FALSE;
+    }
+
+    if (srcInfo.width != dstInfo.width || srcInfo.height != dstInfo.height) {
+        LOGE("Source and destination sizes differ");
+        return JNI_FALSE;
+    }
+
+    void *srcPixels = nullptr;
+    if (AndroidBitmap_lockPixels(env, src, &srcPixels) < 0) {
+        LOGE("AndroidBitmap_lockPixels failed");
+        return JNI_FALSE;
+    }
+
+    void *dstPixels = nullptr;
+    if (AndroidBitmap_lockPixels(env, dst, &dstPixels) < 0) {
+        LOGE("AndroidBitmap_lockPixels on destination bitmap failed");
+        AndroidBitmap_unlockPixels(env, src);
+        return JNI_FALSE;
+    }
+
+    bool ok = boxBlurCpu(
+            static_cast<const uint8_t *>(srcPixels),
+            static_cast<int>(srcInfo.width),
+            static_cast<int>(srcInfo.height),
+            static_cast<int>(srcInfo.stride),
+            static_cast<uint8_t *>(dstPixels),
+            static_cast<int>(dstInfo.stride),
+            static_cast<float>(radius));
+
+    AndroidBitmap_unlockPixels(env, dst);
+    AndroidBitmap_unlockPixels(env, src);
+
+    if (!ok) LOGE("CPU blur could not allocate its working buffers");
+    return ok ? JNI_TRUE : JNI_FALSE;
+}
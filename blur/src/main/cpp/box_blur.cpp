@@ -0,0 +1,429 @@
+#include "box_blur.h"
+
+#include <algorithm>
+#include <cmath>
+#include <cstring>
+#include <new>
+#include <vector>
+
+#if defined(__ARM_NEON) || defined(__ARM_NEON__)
+#include <arm_neon.h>
+#define BOX_BLUR_NEON 1
+#elif defined(__SSE4_1__)
+#include <smmintrin.h>
+#define BOX_BLUR_SSE 1
+#endif
+
+// ---------------------------------------------------------------------------
+// Constants
+// ---------------------------------------------------------------------------
+
+/**
+ * Roughly how big the blur radius should be once the image has been downscaled.
+ * Much smaller and the bilinear upscale starts to show the working grid; much
+ * bigger and we are just pushing more pixels through the passes for no visible gain.
+ */
+static constexpr float TARGET_WORK_RADIUS = 12.0f;
+
+/** Three boxes are within a few percent of a Gaussian; more buys nothing visible. */
+static constexpr int BOX_PASSES = 3;
+
+/**
+ * Below this sigma (in working pixels) three boxes are too coarse an approximation —
+ * they can only come in odd widths — so a real Gaussian kernel is used instead. At
+ * that size it is only a handful of taps anyway.
+ */
+static constexpr float MIN_BOX_SIGMA = 2.0f;
+
+/** Smallest working image side the downscale is allowed to produce. */
+static constexpr int MIN_WORK_SIZE = 8;
+
+/**
+ * Largest downscale factor. Beyond 16 x 16 blocks the 1 / count multiplier loses
+ * precision, and the running-sum passes don't care how big the radius is anyway.
+ */
+static constexpr int MAX_FACTOR = 16;
+
+/** Fixed-point precision of the 1 / box-size multiplier. */
+static constexpr int RECIP_SHIFT = 16;
+
+// ---------------------------------------------------------------------------
+// Four-channel vector helpers
+//
+// One pixel = four 8-bit channels, widened to four 32-bit running sums. Every
+// pass below is written against these so the NEON, SSE, and scalar builds run
+// exactly the same arithmetic and produce bit-identical output.
+// ---------------------------------------------------------------------------
+
+#if BOX_BLUR_NEON
+
+using Vec = uint32x4_t;
+
+static inline Vec vecZero() { return vdupq_n_u32(0); }
+
+static inline Vec vecLoad(const uint8_t *p) {
+    uint32_t packed;
+    std::memcpy(&packed, p, 4);
+    uint8x8_t bytes = vreinterpret_u8_u32(vdup_n_u32(packed));
+    return vmovl_u16(vget_low_u16(vmovl_u8(bytes)));
+}
+
+static inline Vec vecAdd(Vec a, Vec b) { return vaddq_u32(a, b); }
+
+static inline Vec vecSub(Vec a, Vec b) { return vsubq_u32(a, b); }
+
+static inline Vec vecMul(Vec a, uint32_t n) { return vmulq_n_u32(a, n); }
+
+static inline void vecStoreScaled(Vec sum, uint32_t recip, uint8_t *p) {
+    Vec scaled = vshrq_n_u32(vaddq_u32(vmulq_n_u32(sum, recip), vdupq_n_u32(1u << (RECIP_SHIFT - 1))), RECIP_SHIFT);
+    uint16x4_t halves = vqmovn_u32(scaled);
+    uint8x8_t bytes = vqmovn_u16(vcombine_u16(halves, halves));
+    uint32_t packed = vget_lane_u32(vreinterpret_u32_u8(bytes), 0);
+    std::memcpy(p, &packed, 4);
+}
+
+#elif BOX_BLUR_SSE
+
+using Vec = __m128i;
+
+static inline Vec vecZero() { return _mm_setzero_si128(); }
+
+static inline Vec vecLoad(const uint8_t *p) {
+    int32_t packed;
+    std::memcpy(&packed, p, 4);
+    return _mm_cvtepu8_epi32(_mm_cvtsi32_si128(packed));
+}
+
+static inline Vec vecAdd(Vec a, Vec b) { return _mm_add_epi32(a, b); }
+
+static inline Vec vecSub(Vec a, Vec b) { return _mm_sub_epi32(a, b); }
+
+static inline Vec vecMul(Vec a, uint32_t n) {
+    return _mm_mullo_epi32(a, _mm_set1_epi32(static_cast<int>(n)));
+}
+
+static inline void vecStoreScaled(Vec sum, uint32_t recip, uint8_t *p) {
+    Vec scaled = _mm_srli_epi32(_mm_add_epi32(vecMul(sum, recip), _mm_set1_epi32(1 << (RECIP_SHIFT - 1))), RECIP_SHIFT);
+    Vec words = _mm_packus_epi32(scaled, scaled);
+    int32_t packed = _mm_cvtsi128_si32(_mm_packus_epi16(words, words));
+    std::memcpy(p, &packed, 4);
+}
+
+#else
+
+struct Vec {
+    uint32_t c[4];
+};
+
+static inline Vec vecZero() { return Vec{{0, 0, 0, 0}}; }
+
+static inline Vec vecLoad(const uint8_t *p) { return Vec{{p[0], p[1], p[2], p[3]}}; }
+
+static inline Vec vecAdd(Vec a, Vec b) {
+    return Vec{{a.c[0] + b.c[0], a.c[1] + b.c[1], a.c[2] + b.c[2], a.c[3] + b.c[3]}};
+}
+
+static inline Vec vecSub(Vec a, Vec b) {
+    return Vec{{a.c[0] - b.c[0], a.c[1] - b.c[1], a.c[2] - b.c[2], a.c[3] - b.c[3]}};
+}
+
+static inline Vec vecMul(Vec a, uint32_t n) {
+    return Vec{{a.c[0] * n, a.c[1] * n, a.c[2] * n, a.c[3] * n}};
+}
+
+static inline void vecStoreScaled(Vec sum, uint32_t recip, uint8_t *p) {
+    for (int i = 0; i < 4; i++) {
+        uint32_t v = (sum.c[i] * recip + (1u << (RECIP_SHIFT - 1))) >> RECIP_SHIFT;
+        p[i] = static_cast<uint8_t>(std::min(v, 255u));
+    }
+}
+
+#endif
+
+// ---------------------------------------------------------------------------
+// Helper functions
+// ---------------------------------------------------------------------------
+
+/**
+ * Picks the radii of the three boxes whose repeated application best matches a
+ * Gaussian of the given sigma (Wells, "Efficient synthesis of Gaussian filters
+ * by cascaded uniform filters", 1986). Sizes are odd so each box is centered.
+ */
+static void boxRadiiForGauss(float sigma, int radii[BOX_PASSES]) {
+    const float n = static_cast<float>(BOX_PASSES);
+    float ideal = std::sqrt(12.0f * sigma * sigma / n + 1.0f);
+    int lower = static_cast<int>(std::floor(ideal));
+    if (lower % 2 == 0) lower--;
+    if (lower < 1) lower = 1;
+    int upper = lower + 2;
+
+    float lf = static_cast<float>(lower);
+    int lowerCount = static_cast<int>(std::round(
+            (12.0f * sigma * sigma - n * lf * lf - 4.0f * n * lf - 3.0f * n) / (-4.0f * lf - 4.0f)));
+
+    for (int i = 0; i < BOX_PASSES; i++) {
+        radii[i] = ((i < lowerCount ? lower : upper) - 1) / 2;
+    }
+}
+
+/**
+ * Averages every [factor] x [factor] block of the source into one working pixel.
+ * Blocks along the right and bottom edges may be partial and are averaged over
+ * the pixels they actually cover.
+ */
+static void downscale(const uint8_t *src, int width, int height, int srcStride,
+                      uint8_t *work, int workW, int workH, int factor) {
+    std::vector<Vec> sums(static_cast<size_t>(workW));
+
+    for (int wy = 0; wy < workH; wy++) {
+        int y0 = wy * factor;
+        int y1 = std::min(y0 + factor, height);
+        std::fill(sums.begin(), sums.end(), vecZero());
+
+        for (int y = y0; y < y1; y++) {
+            const uint8_t *row = src + static_cast<size_t>(y) * srcStride;
+            for (int wx = 0; wx < workW; wx++) {
+                int x0 = wx * factor;
+                int x1 = std::min(x0 + factor, width);
+                Vec acc = sums[wx];
+                for (int x = x0; x < x1; x++) acc = vecAdd(acc, vecLoad(row + x * 4));
+                sums[wx] = acc;
+            }
+        }
+
+        uint8_t *out = work + static_cast<size_t>(wy) * workW * 4;
+        for (int wx = 0; wx < workW; wx++) {
+            int count = (std::min(wx * factor + factor, width) - wx * factor) * (y1 - y0);
+            uint32_t recip = ((1u << RECIP_SHIFT) + count / 2) / count;
+            vecStoreScaled(sums[wx], recip, out + wx * 4);
+        }
+    }
+}
+
+/** One horizontal box pass with clamp-to-edge, using a running sum per row. */
+static void boxHorizontal(const uint8_t *in, uint8_t *out, int w, int h, int r) {
+    const int size = 2 * r + 1;
+    const uint32_t recip = ((1u << RECIP_SHIFT) + size / 2) / size;
+
+    for (int y = 0; y < h; y++) {
+        const uint8_t *row = in + static_cast<size_t>(y) * w * 4;
+        uint8_t *dst = out + static_cast<size_t>(y) * w * 4;
+
+        // Window for x = 0: r copies of the first pixel plus pixels 0..r.
+        Vec sum = vecMul(vecLoad(row), static_cast<uint32_t>(r));
+        for (int i = 0; i <= r; i++) sum = vecAdd(sum, vecLoad(row + std::min(i, w - 1) * 4));
+
+        for (int x = 0; x < w; x++) {
+            vecStoreScaled(sum, recip, dst + x * 4);
+            int add = std::min(x + r + 1, w - 1);
+            int sub = std::max(x - r, 0);
+            sum = vecSub(vecAdd(sum, vecLoad(row + add * 4)), vecLoad(row + sub * 4));
+        }
+    }
+}
+
+/**
+ * One vertical box pass with clamp-to-edge. Walks down the image a row at a
+ * time keeping one running sum per column, so memory is read in row order.
+ */
+static void boxVertical(const uint8_t *in, uint8_t *out, int w, int h, int r,
+                        std::vector<Vec> &sums) {
+    const int size = 2 * r + 1;
+    const uint32_t recip = ((1u << RECIP_SHIFT) + size / 2) / size;
+    const size_t rowBytes = static_cast<size_t>(w) * 4;
+
+    const uint8_t *first = in;
+    for (int x = 0; x < w; x++) sums[x] = vecMul(vecLoad(first + x * 4), static_cast<uint32_t>(r));
+    for (int i = 0; i <= r; i++) {
+        const uint8_t *row = in + static_cast<size_t>(std::min(i, h - 1)) * rowBytes;
+        for (int x = 0; x < w; x++) sums[x] = vecAdd(sums[x], vecLoad(row + x * 4));
+    }
+
+    for (int y = 0; y < h; y++) {
+        uint8_t *dst = out + static_cast<size_t>(y) * rowBytes;
+        const uint8_t *addRow = in + static_cast<size_t>(std::min(y + r + 1, h - 1)) * rowBytes;
+        const uint8_t *subRow = in + static_cast<size_t>(std::max(y - r, 0)) * rowBytes;
+
+        for (int x = 0; x < w; x++) {
+            vecStoreScaled(sums[x], recip, dst + x * 4);
+            sums[x] = vecSub(vecAdd(sums[x], vecLoad(addRow + x * 4)), vecLoad(subRow + x * 4));
+        }
+    }
+}
+
+/**
+ * Fills [weights] with a normalized half-Gaussian kernel in RECIP_SHIFT fixed point
+ * (weights[0] is the center tap) and returns the kernel radius. The rounding error is
+ * folded into the center tap so the taps always add up to exactly 1.
+ */
+static int gaussianWeights(float sigma, std::vector<uint32_t> &weights) {
+    int kr = std::max(1, static_cast<int>(std::ceil(sigma * 3.0f)));
+    std::vector<double> exact(static_cast<size_t>(kr) + 1);
+    double sum = 0.0;
+    for (int i = 0; i <= kr; i++) {
+        exact[i] = std::exp(-(static_cast<double>(i) * i) / (2.0 * sigma * sigma));
+        sum += (i == 0) ? exact[i] : 2.0 * exact[i];
+    }
+
+    weights.assign(static_cast<size_t>(kr) + 1, 0);
+    uint32_t total = 0;
+    for (int i = 1; i <= kr; i++) {
+        weights[i] = static_cast<uint32_t>(std::lround(exact[i] / sum * (1u << RECIP_SHIFT)));
+        total += 2 * weights[i];
+    }
+    weights[0] = (1u << RECIP_SHIFT) - total;
+    return kr;
+}
+
+/** One horizontal Gaussian pass with clamp-to-edge, for the small-sigma case. */
+static void gaussHorizontal(const uint8_t *in, uint8_t *out, int w, int h,
+                            const std::vector<uint32_t> &weights, int kr) {
+    for (int y = 0; y < h; y++) {
+        const uint8_t *row = in + static_cast<size_t>(y) * w * 4;
+        uint8_t *dst = out + static_cast<size_t>(y) * w * 4;
+
+        for (int x = 0; x < w; x++) {
+            Vec sum = vecMul(vecLoad(row + x * 4), weights[0]);
+            for (int i = 1; i <= kr; i++) {
+                Vec pair = vecAdd(vecLoad(row + std::min(x + i, w - 1) * 4),
+                                  vecLoad(row + std::max(x - i, 0) * 4));
+                sum = vecAdd(sum, vecMul(pair, weights[i]));
+            }
+            vecStoreScaled(sum, 1, dst + x * 4);
+        }
+    }
+}
+
+/** One vertical Gaussian pass with clamp-to-edge, reading whole rows at a time. */
+static void gaussVertical(const uint8_t *in, uint8_t *out, int w, int h,
+                          const std::vector<uint32_t> &weights, int kr) {
+    const size_t rowBytes = static_cast<size_t>(w) * 4;
+
+    for (int y = 0; y < h; y++) {
+        uint8_t *dst = out + static_cast<size_t>(y) * rowBytes;
+        const uint8_t *center = in + static_cast<size_t>(y) * rowBytes;
+
+        for (int x = 0; x < w; x++) {
+            Vec sum = vecMul(vecLoad(center + x * 4), weights[0]);
+            for (int i = 1; i <= kr; i++) {
+                const uint8_t *below = in + static_cast<size_t>(std::min(y + i, h - 1)) * rowBytes;
+                const uint8_t *above = in + static_cast<size_t>(std::max(y - i, 0)) * rowBytes;
+                sum = vecAdd(sum, vecMul(vecAdd(vecLoad(below + x * 4), vecLoad(above + x * 4)), weights[i]));
+            }
+            vecStoreScaled(sum, 1, dst + x * 4);
+        }
+    }
+}
+
+/**
+ * Bilinearly scales the working image back up to the full size, sampling at pixel
+ * centers so the result is not shifted by half a working pixel.
+ */
+static void upscale(const uint8_t *work, int workW, int workH,
+                    uint8_t *dst, int width, int height, int dstStride) {
+    // 16.16 fixed-point source coordinate of each destination column.
+    std::vector<int> x0s(static_cast<size_t>(width));
+    std::vector<uint32_t> fxs(static_cast<size_t>(width));
+    for (int x = 0; x < width; x++) {
+        float sx = (static_cast<float>(x) + 0.5f) * static_cast<float>(workW) / static_cast<float>(width) - 0.5f;
+        sx = std::clamp(sx, 0.0f, static_cast<float>(workW - 1));
+        int ix = std::min(static_cast<int>(sx), workW - 1);
+        x0s[x] = ix;
+        fxs[x] = static_cast<uint32_t>((sx - static_cast<float>(ix)) * 256.0f);
+    }
+
+    const size_t workRow = static_cast<size_t>(workW) * 4;
+    const uint32_t recip = 1; // the bilinear weights below already add up to 1 << RECIP_SHIFT
+
+    for (int y = 0; y < height; y++) {
+        float sy = (static_cast<float>(y) + 0.5f) * static_cast<float>(workH) / static_cast<float>(height) - 0.5f;
+        sy = std::clamp(sy, 0.0f, static_cast<float>(workH - 1));
+        int iy = std::min(static_cast<int>(sy), workH - 1);
+        uint32_t fy = static_cast<uint32_t>((sy - static_cast<float>(iy)) * 256.0f);
+
+        const uint8_t *top = work + static_cast<size_t>(iy) * workRow;
+        const uint8_t *bottom = work + static_cast<size_t>(std::min(iy + 1, workH - 1)) * workRow;
+        uint8_t *out = dst + static_cast<size_t>(y) * dstStride;
+
+        for (int x = 0; x < width; x++) {
+            int ix = x0s[x];
+            int ix1 = std::min(ix + 1, workW - 1);
+            uint32_t fx = fxs[x];
+
+            // Weights out of 256 on each axis, 65536 in total.
+            Vec sum = vecMul(vecLoad(top + ix * 4), (256 - fx) * (256 - fy));
+            sum = vecAdd(sum, vecMul(vecLoad(top + ix1 * 4), fx * (256 - fy)));
+            sum = vecAdd(sum, vecMul(vecLoad(bottom + ix * 4), (256 - fx) * fy));
+            sum = vecAdd(sum, vecMul(vecLoad(bottom + ix1 * 4), fx * fy));
+            vecStoreScaled(sum, recip, out + x * 4);
+        }
+    }
+}
+
+// ---------------------------------------------------------------------------
+// Public entry point
+// ---------------------------------------------------------------------------
+
+bool boxBlurCpu(const uint8_t *src, int width, int height, int srcStride,
+                uint8_t *dst, int dstStride, float radius) {
+    if (width <= 0 || height <= 0) return false;
+    if (radius < 1.0f) radius = 1.0f;
+
+    // Downscale by a whole factor so the working radius lands near TARGET_WORK_RADIUS.
+    int factor = std::clamp(static_cast<int>(radius / TARGET_WORK_RADIUS), 1, MAX_FACTOR);
+    // Keep at least MIN_WORK_SIZE working pixels across, or tiny images lose their shape.
+    factor = std::min(factor, std::max(1, std::min(width, height) / MIN_WORK_SIZE));
+    const int workW = (width + factor - 1) / factor;
+    const int workH = (height + factor - 1) / factor;
+    const size_t workBytes = static_cast<size_t>(workW) * workH * 4;
+
+    std::vector<uint8_t> a, b;
+    std::vector<Vec> columnSums;
+    try {
+        a.resize(workBytes);
+        b.resize(workBytes);
+        columnSums.resize(static_cast<size_t>(workW));
+    } catch (const std::bad_alloc &) {
+        return false;
+    }
+
+    if (factor > 1) {
+        downscale(src, width, height, srcStride, a.data(), workW, workH, factor);
+    } else {
+        for (int y = 0; y < height; y++) {
+            std::memcpy(a.data() + static_cast<size_t>(y) * workW * 4,
+                        src + static_cast<size_t>(y) * srcStride,
+                        static_cast<size_t>(width) * 4);
+        }
+    }
+
+    // sigma = radius / 3 to match the GPU path, measured in working pixels.
+    const float sigma = radius / 3.0f / static_cast<float>(factor);
+
+    if (sigma < MIN_BOX_SIGMA) {
+        std::vector<uint32_t> weights;
+        int kr = gaussianWeights(sigma, weights);
+        gaussHorizontal(a.data(), b.data(), workW, workH, weights, kr);
+        gaussVertical(b.data(), a.data(), workW, workH, weights, kr);
+    } else {
+        int radii[BOX_PASSES];
+        boxRadiiForGauss(sigma, radii);
+
+        for (int r: radii) {
+            boxHorizontal(a.data(), b.data(), workW, workH, r);
+            boxVertical(b.data(), a.data(), workW, workH, r, columnSums);
+        }
+    }
+
+    if (factor > 1) {
+        upscale(a.data(), workW, workH, dst, width, height, dstStride);
+    } else {
+        for (int y = 0; y < height; y++) {
+            std::memcpy(dst + static_cast<size_t>(y) * dstStride,
+                        a.data() + static_cast<size_t>(y) * workW * 4,
+                        static_cast<size_t>(width) * 4);
+        }
+    }
+
+    return true;
+}
@@ -0,0 +1,64 @@
+package app.simple.felicity.blur
+
+import android.graphics.Bitmap
+import android.util.Log
+
+/**
+ * The one place to blur a bitmap from. Picks [CPUBlur] or [GPUBlur] for each call.
+ *
+ * [GPUBlur] pays for a fresh EGL context, three shader compiles, and a texture upload
+ * and readback on every call, which is a fixed cost of tens of milliseconds on a lot of
+ * devices before a single pixel is blurred. [CPUBlur] has no setup cost and, thanks to the
+ * downscale, does about the same amount of work for any radius — so it wins for anything
+ * up to about a megapixel, and for large radii at any size. The GPU only gets the big
+ * images with small radii, where the CPU would have to run at full resolution.
+ *
+ * If the GPU path ever fails (no ES 3 config, context creation refused, out of GPU
+ * memory) it is not tried again for the rest of the process; everything goes to the CPU.
+ *
+ * @author Hamza417
+ */
+object BitmapBlur {
+
+    private const val TAG = "BitmapBlur"
+
+    /** Images up to this many pixels always go to the CPU. */
+    private const val CPU_MAX_PIXELS = 1024 * 1024
+
+    /**
+     * From this radius on the CPU path downscales by at least 2x, which makes it
+     * cheaper than the GPU setup even for big images.
+     */
+    private const val CPU_MIN_DOWNSCALED_RADIUS = 24f
+
+    @Volatile
+    private var gpuUnavailable = false
+
+    /**
+     * Returns a new bitmap that is a Gaussian-blurred copy of [bitmap], or [bitmap]
+     * itself if neither backend could blur it.
+     *
+     * @param bitmap  Source bitmap.
+     * @param radius  Blur radius in pixels. Values below 1 are clamped to 1.
+     */
+    fun blur(bitmap: Bitmap, radius: Float): Bitmap {
+        if (prefersCpu(bitmap.width, bitmap.height, radius) || bitmap.config != Bitmap.Config.ARGB_8888) {
+            return CPUBlur.blur(bitmap, radius)
+        }
+
+        val result = GPUBlur.blur(bitmap, radius)
+        if (result !== bitmap) return result
+
+        // GPUBlur hands the source back when its pipeline failed.
+        Log.w(TAG, "GPU blur failed, using the CPU path from now on")
+        gpuUnavailable = true
+        return CPUBlur.blur(bitmap, radius)
+    }
+
+    /** Whether [blur] would run a [width] x [height] image with [radius] on the CPU. */
+    fun prefersCpu(width: Int, height: Int, radius: Float): Boolean {
+        return gpuUnavailable
+                || width.toLong() * height <= CPU_MAX_PIXELS
+                || radius >= CPU_MIN_DOWNSCALED_RADIUS
+    }
+}
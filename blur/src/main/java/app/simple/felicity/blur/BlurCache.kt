@@ -0,0 +1,131 @@
+package app.simple.felicity.blur
+
+import android.content.Context
+import android.graphics.Bitmap
+import android.graphics.BitmapFactory
+import android.util.Log
+import android.util.LruCache
+import java.io.File
+import java.security.MessageDigest
+
+/**
+ * Keeps blurred artwork around so the same cover isn't blurred twice.
+ *
+ * Results live in a small in-memory LRU (sized by bitmap bytes) and are also written to
+ * `cacheDir/blur`, which survives process death and is capped at [DISK_LIMIT_BYTES] with
+ * the least recently used files trimmed first. Entries are keyed by whatever identifies
+ * the artwork to the caller (an album id, a file hash, a URI…) together with the radius
+ * and the source size, since a different size or radius means a different result.
+ *
+ * Memory lookups are cheap and safe on the main thread; anything touching the disk
+ * ([get], [put], [blur]) should be called from a background thread.
+ *
+ * @author Hamza417
+ */
+object BlurCache {
+
+    private const val TAG = "BlurCache"
+    private const val DIRECTORY = "blur"
+    private const val DISK_LIMIT_BYTES = 24L * 1024 * 1024
+    private const val JPEG_QUALITY = 90
+
+    /** One sixteenth of the heap, counted in kilobytes. */
+    private val memory = object : LruCache<String, Bitmap>((Runtime.getRuntime().maxMemory() / 1024 / 16).toInt()) {
+        override fun sizeOf(key: String, value: Bitmap): Int {
+            return value.allocationByteCount / 1024
+        }
+    }
+
+    private val diskLock = Any()
+
+    /**
+     * Returns the blurred [source] for [key], from the cache if possible; otherwise blurs
+     * it with [BitmapBlur] and stores the result. Call from a background thread.
+     */
+    fun blur(context: Context, source: Bitmap, radius: Float, key: String): Bitmap {
+        val entry = entryKey(key, radius, source.width, source.height)
+
+        get(context, entry)?.let { return it }
+
+        val blurred = BitmapBlur.blur(source, radius)
+        if (blurred !== source) {
+            put(context, entry, blurred)
+        }
+
+        return blurred
+    }
+
+    /** Drops every cached result, in memory and on disk. */
+    fun clear(context: Context) {
+        memory.evictAll()
+        synchronized(diskLock) {
+            directory(context).listFiles()?.forEach { it.delete() }
+        }
+    }
+
+    private fun get(context: Context, entry: String): Bitmap? {
+        memory.get(entry)?.let { return it }
+
+        val file = file(context, entry)
+        val bitmap = synchronized(diskLock) {
+            if (!file.exists()) return null
+            file.setLastModified(System.currentTimeMillis())
+            BitmapFactory.decodeFile(file.absolutePath)
+        } ?: return null
+
+        memory.put(entry, bitmap)
+        return bitmap
+    }
+
+    private fun put(context: Context, entry: String, bitmap: Bitmap) {
+        memory.put(entry, bitmap)
+
+        synchronized(diskLock) {
+            val file = file(context, entry)
+            val temp = File(file.parentFile, file.name + ".tmp")
+
+            try {
+                temp.outputStream().use {
+                    if (bitmap.hasAlpha()) {
+                        bitmap.compress(Bitmap.CompressFormat.PNG, 100, it)
+                    } else {
+                        bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, it)
+                    }
+                }
+
+                if (!temp.renameTo(file)) temp.delete()
+            } catch (e: Exception) {
+                Log.w(TAG, "Failed to write blur cache entry", e)
+                temp.delete()
+            }
+
+            trim(directory(context))
+        }
+    }
+
+    /** Deletes the least recently used files until the directory fits the disk limit. */
+    private fun trim(directory: File) {
+        val files = directory.listFiles() ?: return
+        var total = files.sumOf { it.length() }
+        if (total <= DISK_LIMIT_BYTES) return
+
+        for (file in files.sortedBy { it.lastModified() }) {
+            if (total <= DISK_LIMIT_BYTES) break
+            total -= file.length()
+            file.delete()
+        }
+    }
+
+    private fun directory(context: Context): File {
+        return File(context.cacheDir, DIRECTORY).apply { mkdirs() }
+    }
+
+    private fun file(context: Context, entry: String): File {
+        val digest = MessageDigest.getInstance("SHA-1").digest(entry.toByteArray())
+        return File(directory(context), digest.joinToString("") { "%02x".format(it) })
+    }
+
+    private fun entryKey(key: String, radius: Float, width: Int, height: Int): String {
+        return "$key@$radius:${width}x$height"
+    }
+}
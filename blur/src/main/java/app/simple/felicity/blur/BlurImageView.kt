@@ -22,10 +22,10 @@ import kotlinx.coroutines.withContext
 /**
  * An [AppCompatImageView] that automatically blurs any bitmap assigned to it.
  *
- * The blur pipeline runs on a background thread via [GPUBlur] so the main
+ * The blur pipeline runs on a background thread via [BitmapBlur] so the main
  * thread is never blocked. The original (unblurred) image appears instantly
- * while the GPU does its work, then the blurred version crossfades in once it
- * is ready — giving you a smooth, jank-free result.
+ * while the blur runs, then the blurred version crossfades in once it is
+ * ready — giving you a smooth, jank-free result.
  *
  * Usage in XML:
  * ```xml
@@ -83,7 +83,7 @@ class BlurImageView @JvmOverloads constructor(
     /**
      * Sets a bitmap on the view and kicks off a background blur pass. The
      * original image shows immediately; the blurred version crossfades in once
-     * the GPU pipeline finishes. Cancels any blur that is already in flight.
+     * the blur finishes. Cancels any blur that is already in flight.
      */
     override fun setImageBitmap(bmp: Bitmap?) {
         cancelActiveBlur()
@@ -94,7 +94,7 @@ class BlurImageView @JvmOverloads constructor(
         }
 
         // Show the unblurred image right away so there is no empty-frame flash
-        // while the GPU is warming up.
+        // while the blur is running.
         super.setImageBitmap(bmp)
         launchBlur(bmp)
     }
@@ -139,18 +139,19 @@ class BlurImageView @JvmOverloads constructor(
     }
 
     /**
-     * Runs [GPUBlur] on [source] in the background, then crossfades the
+     * Runs [BitmapBlur] on [source] in the background, then crossfades the
      * blurred result in on the main thread when it arrives.
      *
      * The job is tracked so it can be canceled the moment a new image is set,
      * preventing stale blurs from landing on the wrong bitmap.
      */
     private fun launchBlur(source: Bitmap) {
+        val radius = blurRadius
         activeJob = scope.launch {
             val blurred: Bitmap? = withContext(Dispatchers.IO) {
-                // Wrap in runCatching so an unexpected GPU error or OOM does
+                // Wrap in runCatching so an unexpected native error or OOM does
                 // not crash the app — we simply skip the blur in that case.
-                runCatching { GPUBlur.blur(source, blurRadius) }.getOrNull()
+                runCatching { BitmapBlur.blur(source, radius) }.getOrNull()
             }
 
             // If the job was canceled or the view is gone, do nothing.
@@ -0,0 +1,55 @@
+package app.simple.felicity.blur
+
+import android.graphics.Bitmap
+import androidx.core.graphics.createBitmap
+
+/**
+ * CPU Gaussian blur backed by native NEON/SSE code, the counterpart of [GPUBlur].
+ *
+ * The image is box-downscaled until the blur radius is small, blurred with three
+ * running-sum box passes (a close match for a Gaussian with the same sigma as the GPU
+ * shader), and bilinearly scaled back up. The cost barely depends on the radius, and
+ * there is no EGL context to create or shader to compile, so for artwork-sized images
+ * this is usually done before [GPUBlur] would have finished setting up.
+ *
+ * Prefer [BitmapBlur.blur], which picks between the two.
+ *
+ * @author Hamza417
+ */
+object CPUBlur {
+
+    init {
+        System.loadLibrary("felicity_gpu_blur")
+    }
+
+    /**
+     * Returns a new bitmap that is a blurred copy of [bitmap].
+     *
+     * Bitmaps that aren't ARGB_8888 (hardware bitmaps from Glide, for instance) are
+     * copied into one first. If the native side fails the original bitmap is returned
+     * unchanged so the caller always gets a valid result back.
+     *
+     * @param bitmap  Source bitmap.
+     * @param radius  Blur radius in pixels. Values below 1 are clamped to 1.
+     */
+    fun blur(bitmap: Bitmap, radius: Float): Bitmap {
+        val source = if (bitmap.config == Bitmap.Config.ARGB_8888) {
+            bitmap
+        } else {
+            bitmap.copy(Bitmap.Config.ARGB_8888, false) ?: return bitmap
+        }
+
+        val result = createBitmap(source.width, source.height)
+        val blurred = nativeBlur(source, result, radius.coerceAtLeast(1f))
+
+        if (source !== bitmap) source.recycle()
+        if (!blurred) {
+            result.recycle()
+            return bitmap
+        }
+
+        return result
+    }
+
+    private external fun nativeBlur(source: Bitmap, destination: Bitmap, radius: Float): Boolean
+}
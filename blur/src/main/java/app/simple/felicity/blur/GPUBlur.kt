@@ -11,6 +11,10 @@ import android.graphics.Bitmap
  * than the shader kernel can handle in one pass are dealt with by
  * downscaling the image first, blurring, then upscaling the result.
  *
+ * The per-call context setup makes this the slower choice for small and
+ * medium images; prefer [BitmapBlur.blur], which only sends work here when the
+ * GPU is likely to win and falls back to [CPUBlur] when it fails.
+ *
  * @author Hamza417
  */
 object GPUBlur {
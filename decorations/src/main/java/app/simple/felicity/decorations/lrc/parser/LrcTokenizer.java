@@ -0,0 +1,449 @@
+package app.simple.felicity.decorations.lrc.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import app.simple.felicity.decorations.lrc.model.LrcData;
+import app.simple.felicity.decorations.lrc.model.LrcEntry;
+import app.simple.felicity.decorations.lrc.model.WordEntry;
+
+/**
+ * The single-pass scanner behind every lyrics parser in this package.
+ *
+ * <p>Lyrics used to be parsed by splitting the whole file into lines, trimming a copy of
+ * each one and running up to three regexes over it, after a couple more regexes had gone
+ * over the full content just to pick a parser. That is a lot of garbage for what happens on
+ * every song change. This walks the content once, character by character, without copying
+ * anything: timestamps are read digit by digit, and for every timed line it only records
+ * where its text starts and ends plus the times it carries, in plain arrays. Whether the
+ * file is word-synced, plain LRC or just text falls out of that same walk.</p>
+ *
+ * <p>The {@link LrcEntry} objects the view works with are only built at the very end, one
+ * {@link String} per line no matter how many time tags share it, and the words of a
+ * word-synced line are only cut out when the file turned out to be word-synced.</p>
+ *
+ * <p>The accepted syntax is exactly what the regex parsers took: {@code [mm:ss.xx]} and
+ * {@code [mm:ss.xxx]} line tags with one or two minute digits, {@code <mm:ss.xx>} word
+ * tags, an optional {@code v1:} voice label, and the known metadata keys.</p>
+ *
+ * @author Hamza417
+ */
+final class LrcTokenizer {
+    
+    /**
+     * Plain LRC: inline word tags are left in the text as they are.
+     */
+    static final int MODE_LRC = 0;
+    
+    /**
+     * Word-by-word LRC: lines with inline tags become word-synced entries.
+     */
+    static final int MODE_WORD = 1;
+    
+    /**
+     * Picks one of the above, or plain text, depending on what the content turns out to be.
+     */
+    static final int MODE_AUTO = 2;
+    
+    private static final String[] METADATA_KEYS = {
+            "ti", "ar", "al", "au", "by", "offset", "length", "re", "ve"
+    };
+    
+    private final CharSequence content;
+    
+    /**
+     * Set by {@link #matchTime}: the parsed time in milliseconds and the index right
+     * after the closing bracket.
+     */
+    private long matchedMs;
+    private int matchedEnd;
+    
+    /**
+     * One slot per time tag: its time and the line it belongs to.
+     */
+    private long[] times = new long[64];
+    private int[] tagLines = new int[64];
+    private int tagCount;
+    
+    /**
+     * One slot per timed line: where its text starts and ends in {@link #content}, already
+     * trimmed at the end (the start is left alone so a voice label can still be found).
+     */
+    private int[] lineStarts = new int[32];
+    private int[] lineEnds = new int[32];
+    private int lineCount;
+    
+    private boolean hasInlineTags;
+    
+    private LrcTokenizer(CharSequence content) {
+        this.content = content;
+    }
+    
+    /**
+     * Parses {@code content} in the given mode. {@link #MODE_AUTO} gives word-synced
+     * entries when any timed line carries inline word tags, plain LRC entries when there
+     * are timed lines, and one untimed entry per line otherwise.
+     */
+    static LrcData parse(CharSequence content, int mode) {
+        LrcTokenizer tokenizer = new LrcTokenizer(content);
+        LrcData lrcData = new LrcData();
+        tokenizer.scan(lrcData);
+        
+        if (tokenizer.lineCount == 0 && mode == MODE_AUTO) {
+            return parsePlainText(content);
+        }
+        
+        boolean words = mode == MODE_WORD || (mode == MODE_AUTO && tokenizer.hasInlineTags);
+        tokenizer.emit(lrcData, words);
+        return lrcData;
+    }
+    
+    /**
+     * Every line as an untimed entry, trimmed, blank ones included. Empty lines at the very
+     * end are dropped, the same way {@code String.split} drops them.
+     */
+    static LrcData parsePlainText(CharSequence content) {
+        LrcData lrcData = new LrcData();
+        
+        int end = content.length();
+        while (end > 0 && content.charAt(end - 1) == '\n') {
+            end--;
+        }
+        
+        int lineStart = 0;
+        while (lineStart < end) {
+            int lineEnd = indexOf(content, '\n', lineStart, end);
+            int start = skipWhitespace(content, lineStart, lineEnd);
+            int stop = trimEnd(content, start, lineEnd);
+            lrcData.addEntry(new LrcEntry(TxtParser.NO_TIMESTAMP, content.subSequence(start, stop).toString()));
+            lineStart = lineEnd + 1;
+        }
+        
+        return lrcData;
+    }
+    
+    /**
+     * True when {@code content} has an {@code [mm:ss.xx]} tag anywhere.
+     */
+    static boolean containsTimeTag(CharSequence content) {
+        return new LrcTokenizer(content).findTag('[', ']');
+    }
+    
+    /**
+     * True when {@code content} has an inline {@code <mm:ss.xx>} word tag anywhere.
+     */
+    static boolean containsInlineTag(CharSequence content) {
+        return new LrcTokenizer(content).findTag('<', '>');
+    }
+    
+    private boolean findTag(char open, char close) {
+        int length = content.length();
+        for (int i = 0; i < length; i++) {
+            if (content.charAt(i) == open && matchTime(i, length, close)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * The one pass over the content. Metadata goes straight into {@code lrcData}; timed
+     * lines are only recorded.
+     */
+    private void scan(LrcData lrcData) {
+        int length = content.length();
+        int lineStart = 0;
+        
+        while (lineStart < length) {
+            int lineEnd = indexOf(content, '\n', lineStart, length);
+            int start = skipWhitespace(content, lineStart, lineEnd);
+            int end = trimEnd(content, start, lineEnd);
+            
+            // Lines that don't start with '[' cannot be LRC metadata or lyric lines;
+            // treat them as plain-text annotations (e.g. copyright notices) and skip them.
+            if (start < end && content.charAt(start) == '[') {
+                if (!scanTimedLine(start, end)) {
+                    scanMetadata(start, end, lrcData);
+                }
+            }
+            
+            lineStart = lineEnd + 1;
+        }
+    }
+    
+    /**
+     * Reads the run of time tags at the start of a line and records the line when there
+     * is at least one.
+     */
+    private boolean scanTimedLine(int start, int end) {
+        int position = start;
+        int firstTag = tagCount;
+        
+        while (position < end && content.charAt(position) == '[' && matchTime(position, end, ']')) {
+            addTag(matchedMs);
+            position = matchedEnd;
+        }
+        
+        if (tagCount == firstTag) {
+            return false;
+        }
+        
+        if (lineCount == lineStarts.length) {
+            lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+            lineEnds = Arrays.copyOf(lineEnds, lineCount * 2);
+        }
+        
+        lineStarts[lineCount] = position;
+        lineEnds[lineCount] = end;
+        
+        if (!hasInlineTags && indexOfInlineTag(position, end) >= 0) {
+            hasInlineTags = true;
+        }
+        
+        lineCount++;
+        return true;
+    }
+    
+    private void addTag(long ms) {
+        if (tagCount == times.length) {
+            times = Arrays.copyOf(times, tagCount * 2);
+            tagLines = Arrays.copyOf(tagLines, tagCount * 2);
+        }
+        times[tagCount] = ms;
+        tagLines[tagCount] = lineCount;
+        tagCount++;
+    }
+    
+    /**
+     * Handles {@code [key:value]} at the start of a line when the key is one of the known
+     * metadata keys. Anything after the closing bracket is ignored.
+     */
+    private void scanMetadata(int start, int end, LrcData lrcData) {
+        int keyEnd = start + 1;
+        while (keyEnd < end && isWordChar(content.charAt(keyEnd))) {
+            keyEnd++;
+        }
+        
+        if (keyEnd == start + 1 || keyEnd >= end || content.charAt(keyEnd) != ':') {
+            return;
+        }
+        
+        int close = indexOf(content, ']', keyEnd + 1, end);
+        if (close == end) {
+            return;
+        }
+        
+        for (String key : METADATA_KEYS) {
+            if (regionEquals(start + 1, keyEnd, key)) {
+                int valueStart = skipWhitespace(content, keyEnd + 1, close);
+                int valueEnd = trimEnd(content, valueStart, close);
+                lrcData.addMetadata(key, content.subSequence(valueStart, valueEnd).toString());
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Turns the recorded lines into entries, in the order they appeared; the data is
+     * sorted by time afterwards. All tags of one line share the same text and words.
+     */
+    private void emit(LrcData lrcData, boolean words) {
+        String[] texts = new String[lineCount];
+        List <?>[] lineWords = new List <?>[lineCount];
+        
+        for (int line = 0; line < lineCount; line++) {
+            int start = lineStarts[line];
+            int end = lineEnds[line];
+            
+            if (words) {
+                start = skipVoiceLabel(start, end);
+                if (indexOfInlineTag(start, end) >= 0) {
+                    List <WordEntry> extracted = extractWords(start, end);
+                    StringBuilder text = new StringBuilder();
+                    for (WordEntry word : extracted) {
+                        text.append(word.getText());
+                    }
+                    texts[line] = text.toString();
+                    lineWords[line] = extracted;
+                    continue;
+                }
+            }
+            
+            start = skipWhitespace(content, start, end);
+            texts[line] = content.subSequence(start, end).toString();
+        }
+        
+        for (int i = 0; i < tagCount; i++) {
+            int line = tagLines[i];
+            @SuppressWarnings ("unchecked")
+            List <WordEntry> wordList = (List <WordEntry>) lineWords[line];
+            if (wordList != null) {
+                lrcData.addEntry(new LrcEntry(times[i], texts[line], wordList));
+            } else {
+                lrcData.addEntry(new LrcEntry(times[i], texts[line]));
+            }
+        }
+        
+        lrcData.sort();
+    }
+    
+    /**
+     * Cuts the text between consecutive inline tags into words. Two tags with nothing
+     * between them are the duplicate at a word boundary and produce no word.
+     */
+    private List <WordEntry> extractWords(int start, int end) {
+        List <WordEntry> words = new ArrayList <>();
+        
+        int tag = indexOfInlineTag(start, end);
+        long previousMs = matchedMs;
+        int previousEnd = matchedEnd;
+        
+        while (tag >= 0) {
+            tag = indexOfInlineTag(previousEnd, end);
+            if (tag < 0) {
+                break;
+            }
+            
+            if (tag > previousEnd) {
+                words.add(new WordEntry(previousMs, matchedMs, content.subSequence(previousEnd, tag).toString()));
+            }
+            
+            previousMs = matchedMs;
+            previousEnd = matchedEnd;
+        }
+        
+        return words;
+    }
+    
+    /**
+     * Finds the next {@code <mm:ss.xx>} tag at or after {@code from}, leaving its time and
+     * end in {@link #matchedMs} and {@link #matchedEnd}.
+     *
+     * @return The index of its opening bracket, or -1 when there is none.
+     */
+    private int indexOfInlineTag(int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (content.charAt(i) == '<' && matchTime(i, end, '>')) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Skips a {@code v1:} style voice label at {@code start}, if there is one.
+     */
+    private int skipVoiceLabel(int start, int end) {
+        if (start >= end || content.charAt(start) != 'v') {
+            return start;
+        }
+        
+        int i = start + 1;
+        while (i < end && isDigit(content.charAt(i))) {
+            i++;
+        }
+        
+        return i > start + 1 && i < end && content.charAt(i) == ':' ? i + 1 : start;
+    }
+    
+    /**
+     * Reads a {@code mm:ss.xx} / {@code mm:ss.xxx} timestamp whose opening bracket is at
+     * {@code open} and which closes with {@code close}. The minutes take one or two
+     * digits, the fraction two (hundredths) or three (milliseconds).
+     *
+     * @return true when it matched, with the result in {@link #matchedMs} and
+     *         {@link #matchedEnd}.
+     */
+    private boolean matchTime(int open, int end, char close) {
+        int i = open + 1;
+        
+        int minutes = 0;
+        int minuteDigits = 0;
+        while (i < end && minuteDigits < 2 && isDigit(content.charAt(i))) {
+            minutes = minutes * 10 + (content.charAt(i) - '0');
+            minuteDigits++;
+            i++;
+        }
+        if (minuteDigits == 0 || i >= end || content.charAt(i) != ':') {
+            return false;
+        }
+        i++;
+        
+        if (i + 2 > end || !isDigit(content.charAt(i)) || !isDigit(content.charAt(i + 1))) {
+            return false;
+        }
+        int seconds = (content.charAt(i) - '0') * 10 + (content.charAt(i + 1) - '0');
+        i += 2;
+        
+        if (i >= end || content.charAt(i) != '.') {
+            return false;
+        }
+        i++;
+        
+        int fraction = 0;
+        int fractionDigits = 0;
+        while (i < end && fractionDigits < 3 && isDigit(content.charAt(i))) {
+            fraction = fraction * 10 + (content.charAt(i) - '0');
+            fractionDigits++;
+            i++;
+        }
+        if (fractionDigits < 2 || i >= end || content.charAt(i) != close) {
+            return false;
+        }
+        
+        int millis = fractionDigits == 2 ? fraction * 10 : fraction;
+        matchedMs = minutes * 60_000L + seconds * 1_000L + millis;
+        matchedEnd = i + 1;
+        return true;
+    }
+    
+    private boolean regionEquals(int start, int end, String key) {
+        if (end - start != key.length()) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (content.charAt(start + i) != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static int indexOf(CharSequence content, char c, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (content.charAt(i) == c) {
+                return i;
+            }
+        }
+        return end;
+    }
+    
+    /**
+     * Same rule as {@link String#trim()}: everything up to and including the space counts.
+     */
+    private static int skipWhitespace(CharSequence content, int start, int end) {
+        while (start < end && content.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+    
+    private static int trimEnd(CharSequence content, int start, int end) {
+        while (end > start && content.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+    
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+    
+    /**
+     * Regex {@code \w}: ASCII letters, digits and underscore.
+     */
+    private static boolean isWordChar(char c) {
+        return isDigit(c) || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+}
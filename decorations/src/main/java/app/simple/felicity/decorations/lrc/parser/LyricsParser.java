@@ -0,0 +1,36 @@
+package app.simple.felicity.decorations.lrc.parser;
+
+import android.text.TextUtils;
+
+import app.simple.felicity.decorations.lrc.model.LrcData;
+
+/**
+ * Parses lyrics of any supported format without having to know which one it is.
+ *
+ * <p>Picking a parser used to mean running {@link WordLrcParser#canParse},
+ * {@link LrcParser#canParse} and {@link TxtParser#canParse} over the whole file before the
+ * chosen one went over it again. {@link LrcTokenizer} works the format out during its one
+ * pass instead: word-by-word LRC when any lyric line carries inline word timestamps,
+ * standard LRC when there are timed lines, and plain text when there are none.</p>
+ *
+ * @author Hamza417
+ */
+public class LyricsParser implements ILyricsParser {
+    
+    @Override
+    public LrcData parse(String content) throws LyricsParseException {
+        if (TextUtils.isEmpty(content)) {
+            throw new LyricsParseException("Content is empty");
+        }
+        
+        return LrcTokenizer.parse(content, LrcTokenizer.MODE_AUTO);
+    }
+    
+    /**
+     * Anything that isn't empty is at least plain text.
+     */
+    @Override
+    public boolean canParse(String content) {
+        return !TextUtils.isEmpty(content);
+    }
+}
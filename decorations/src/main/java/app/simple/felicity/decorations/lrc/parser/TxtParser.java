@@ -27,19 +27,11 @@ public class TxtParser implements ILyricsParser {
             throw new LyricsParseException("Content is empty");
         }
         
-        LrcData lrcData = new LrcData();
-        String[] lines = content.split("\n");
-        
-        for (String line : lines) {
-            String trimmed = line.trim();
-            // Add every line, including blank ones, so the visual spacing is preserved.
-            // Blank lines get the sentinel timestamp too; the view already skips rendering
-            // blank-text entries in highlighted mode.
-            lrcData.addEntry(new LrcEntry(NO_TIMESTAMP, trimmed));
-        }
-        
-        // No sort needed – order is the natural reading order.
-        return lrcData;
+        // Every line is added, including blank ones, so the visual spacing is preserved.
+        // Blank lines get the sentinel timestamp too; the view already skips rendering
+        // blank-text entries in highlighted mode. No sort needed – order is the natural
+        // reading order.
+        return LrcTokenizer.parsePlainText(content);
     }
     
     @Override
@@ -48,8 +40,7 @@ public class TxtParser implements ILyricsParser {
         if (TextUtils.isEmpty(content)) {
             return false;
         }
-        // Delegate detection to LrcParser: if LrcParser can handle it, we shouldn't.
-        return !new LrcParser().canParse(content);
+        // If LrcParser can handle it, we shouldn't.
+        return !LrcTokenizer.containsTimeTag(content);
     }
 }
-
@@ -120,6 +120,36 @@ public class FelicityLrcView extends View implements ThemeChangedListener {
     // Cache for wrapped text layouts — one pass, one cache, no drama.
     private final HashMap <Integer, StaticLayout> normalLayoutCache = new HashMap <>();
     
+    /**
+     * Start time of every line, in line order, so {@link #findLineIndexByTime} can binary
+     * search instead of walking the whole list on every position tick. Each slot holds the
+     * latest start time seen up to that line, which keeps the array sorted even when the
+     * file itself isn't, and the search lands on exactly the line a front-to-back scan would.
+     */
+    private long[] lineStartTimes = new long[0];
+    
+    /**
+     * The {@link LrcData} that {@link #lineStartTimes} was built for. A different object
+     * (new song, sync offset baked in) means the timeline has to be rebuilt.
+     */
+    private LrcData timelineData = null;
+    
+    /**
+     * The line the last time lookup landed on. Playback only ever moves forward a line at a
+     * time, so checking this one and the next first answers almost every tick in O(1).
+     */
+    private int lastTimelineIndex = -1;
+    
+    /**
+     * Height of every line's layout, and the running sum of heights plus spacing in front of
+     * each line ({@code lineTops[i]} is where line {@code i} starts, the extra last slot is
+     * the total). Built once from the layouts and kept until something changes the layout —
+     * new lyrics, text size, alignment, spacing or width — see {@link #ensureLineMetrics()}.
+     */
+    private float[] lineHeights = new float[0];
+    private float[] lineTops = new float[1];
+    private boolean lineMetricsValid = false;
+    
     // Animated color fractions for smooth highlight cross-fade.
     // highlightFraction goes 0→1 when a line becomes active (fade in accent color).
     // dehighlightFraction goes 1→0 when the previously active line moves off (fade back to normal).
@@ -376,25 +406,83 @@ public class FelicityLrcView extends View implements ThemeChangedListener {
     }
     
     /**
-     * Calculate cumulative Y offset for a given line.
-     * Since all lines share the same text size, we just look up the cached layout height
-     * (which is stable once measured) and sum them up — no per-frame recalculation needed.
+     * Calculate cumulative Y offset for a given line, measured to the line's vertical center
+     * so the view centers on it. This is a straight lookup into the prefix sums built by
+     * {@link #ensureLineMetrics()}, so it costs the same on line 3 as on line 300.
+     *
+     * <p>Before the view has a width nothing can be laid out yet, so every line is assumed
+     * to be a single line tall until the real heights are known.</p>
      */
     private float getLineOffset(int lineIndex) {
-        float offset = 0f;
+        if (lrcData == null || lineIndex < 0 || lineIndex >= lrcData.size() || !ensureLineMetrics()) {
+            return Math.max(lineIndex, 0) * (normalTextSize + lineSpacing) + normalTextSize / 2f;
+        }
+        
+        return lineTops[lineIndex] + lineHeights[lineIndex] / 2f;
+    }
+    
+    /**
+     * Makes sure {@link #lineHeights} and {@link #lineTops} describe the current lyrics at
+     * the current width, laying out every line once if they don't. After that, scrolling,
+     * seeking and drawing only ever read the arrays.
+     *
+     * @return false when the view has no usable width yet and nothing could be measured.
+     */
+    private boolean ensureLineMetrics() {
+        int count = lrcData.size();
+        if (lineMetricsValid && lineHeights.length == count) {
+            return true;
+        }
+        
+        if (getWidth() - getPaddingLeft() - getPaddingRight() <= 0) {
+            return false;
+        }
         
-        for (int i = 0; i < lineIndex; i++) {
-            StaticLayout layout = normalLayoutCache.get(i);
-            float height = (layout != null) ? layout.getHeight() : normalTextSize;
-            offset += height + lineSpacing;
+        if (lineHeights.length != count) {
+            lineHeights = new float[count];
+            lineTops = new float[count + 1];
         }
         
-        // Add half height of the target line so the view centers on that line.
-        StaticLayout targetLayout = normalLayoutCache.get(lineIndex);
-        float targetHeight = (targetLayout != null) ? targetLayout.getHeight() : normalTextSize;
-        offset += targetHeight / 2f;
+        List <LrcEntry> entries = lrcData.getEntries();
+        float top = 0f;
+        for (int i = 0; i < count; i++) {
+            StaticLayout layout = getOrCreateLayout(entries.get(i).getText(), normalPaint, i);
+            lineTops[i] = top;
+            lineHeights[i] = layout.getHeight();
+            top += lineHeights[i] + lineSpacing;
+        }
+        lineTops[count] = top;
         
-        return offset;
+        lineMetricsValid = true;
+        return true;
+    }
+    
+    /**
+     * Drops every cached line layout along with the heights measured from them. Anything
+     * that changes how a line wraps or how tall it is goes through here.
+     */
+    private void invalidateLineLayouts() {
+        normalLayoutCache.clear();
+        lineMetricsValid = false;
+    }
+    
+    /**
+     * Returns the first line whose bottom edge is at or below {@code y}, in the same
+     * coordinates as {@link #lineTops}, or the line count when every line ends above it.
+     * Bottoms only grow from one line to the next, so a binary search does it.
+     */
+    private int findFirstLineEndingBelow(float y) {
+        int low = 0;
+        int high = lineHeights.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (lineTops[mid] + lineHeights[mid] < y) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
     }
     
     /**
@@ -463,7 +551,16 @@ public class FelicityLrcView extends View implements ThemeChangedListener {
         float centerY = getHeight() / 2f;
         float offsetY = centerY - scrollY;
         
+        if (!ensureLineMetrics()) {
+            return; // No width yet, nothing can be laid out.
+        }
+        
+        // Only the lines that can actually show up are visited, so a frame costs the same
+        // for a 20 line song as for a 2000 line one. The margin leaves room for the blur
+        // halo of a line that sits just past the edge.
         int entryCount = lrcData.size();
+        int firstVisible = findFirstLineEndingBelow(-offsetY - MAX_BLUR_RADIUS);
+        float cullBottom = getHeight() + MAX_BLUR_RADIUS;
         
         // Use hardware layer for fade effect
         int layerId = -1;
@@ -479,7 +576,12 @@ public class FelicityLrcView extends View implements ThemeChangedListener {
                 getWidth() - getPaddingRight(),
                 getHeight());
         
-        for (int i = 0; i < entryCount; i++) {
+        for (int i = firstVisible; i < entryCount; i++) {
+            // Lines only go down from here, so the first one starting below the view ends it.
+            if (offsetY + lineTops[i] > cullBottom) {
+                break;
+            }
+            
             LrcEntry entry = lrcData.getEntries().get(i);
             String text = entry.getText();
             
@@ -889,10 +991,10 @@ public class FelicityLrcView extends View implements ThemeChangedListener {
      * have already been measured keep their correct positions.  Only the highlighted line
      * is re-evaluated and its text-size animated accordingly.</p>
      *
-     * <p>The scroll snap is deferred via {@link #post} so that layout heights are fully
-     * populated from the first draw pass before {@link #getLineOffset} is consulted.
-     * This prevents the highlight from landing at a wrong position when the view's cache
-     * is empty (e.g. immediately after {@link #reset()}).</p>
+     * <p>The scroll snap is deferred via {@link #post} so the view has been laid out and
+     * has a width before {@link #getLineOffset} is consulted. This prevents the highlight
+     * from landing at a wrong position when the lyrics arrive before the first layout
+     * (e.g. immediately after {@link #reset()}).</p>
      *
      * @param data         new {@link LrcData} (typically with shifted timestamps for sync
      *                     offset adjustments; same logical line count as the previous data)
@@ -914,8 +1016,8 @@ public class FelicityLrcView extends View implements ThemeChangedListener {
         
         invalidate();
         
-        // Defer the scroll snap until after at least one draw pass so that animatedHeights
-        // are populated and getLineOffset() returns the correct value.
+        // Defer the scroll snap until after layout so the view has a width to measure the
+        // lines against and getLineOffset() returns the correct value.
         if (isAutoScrollEnabled && currentLineIndex >= 0 && !isUserScrolling) {
             final int lineToSnap = currentLineIndex;
             post(() -> {
@@ -948,7 +1050,7 @@ public class FelicityLrcView extends View implements ThemeChangedListener {
         this.currentLineIndex = -1;
         this.scrollY = 0f;
         this.targetScrollY = 0f;
-        this.normalLayoutCache.clear();
+        invalidateLineLayouts();
         this.blurMaskFilters.clear();
         this.currentWordIndex = -1;
         this.wordSyncCurrentLayout = null;
@@ -1197,7 +1299,7 @@ public class FelicityLrcView extends View implements ThemeChangedListener {
         this.previousLineIndex = -1;
         this.scrollY = 0f;
         this.targetScrollY = 0f;
-        this.normalLayoutCache.clear();
+        invalidateLineLayouts();
         this.blurMaskFilters.clear();
         this.currentWordIndex = -1;
         this.wordSyncCurrentLayout = null;
@@ -1329,8 +1431,8 @@ public class FelicityLrcView extends View implements ThemeChangedListener {
             }
         }
 
-        // Post the scroll snap so that layout heights are guaranteed to be populated
-        // (getLineOffset relies on animatedHeights which are filled during the first draw pass)
+        // Post the scroll snap so the view is guaranteed to have been laid out
+        // (getLineOffset needs a width to measure the lines against)
         final int lineToSnap = currentLineIndex;
         post(() -> {
             if (lineToSnap >= 0) {
@@ -1427,50 +1529,85 @@ public class FelicityLrcView extends View implements ThemeChangedListener {
     }
     
     /**
-     * Find line index for given time
+     * Find line index for given time — the last line that has started by then, or -1
+     * before the first one. Checks the previous answer and the line after it first, and
+     * only falls back to a binary search over {@link #lineStartTimes} after a seek.
      */
     private int findLineIndexByTime(long timeInMillis) {
         if (lrcData == null || lrcData.isEmpty()) {
             return -1;
         }
         
-        int lineIndex = -1;
-        for (int i = 0; i < lrcData.size(); i++) {
-            LrcEntry entry = lrcData.getEntries().get(i);
-            if (timeInMillis >= entry.getTimeInMillis()) {
-                lineIndex = i;
+        ensureTimeline();
+        long[] times = lineStartTimes;
+        int count = times.length;
+        
+        int last = lastTimelineIndex;
+        if (last >= 0 && last < count && timeInMillis >= times[last]) {
+            if (last + 1 == count || timeInMillis < times[last + 1]) {
+                return last;
+            }
+            if (last + 2 == count || timeInMillis < times[last + 2]) {
+                lastTimelineIndex = last + 1;
+                return last + 1;
+            }
+        }
+        
+        // First line starting after the given time; the one before it is the current line.
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] <= timeInMillis) {
+                low = mid + 1;
             } else {
-                break;
+                high = mid;
             }
         }
         
-        return lineIndex;
+        lastTimelineIndex = low - 1;
+        return low - 1;
     }
     
     /**
-     * Find which line was tapped based on Y coordinate
+     * Rebuilds {@link #lineStartTimes} when the lyrics object or its line count changed
+     * since the last lookup.
+     */
+    private void ensureTimeline() {
+        List <LrcEntry> entries = lrcData.getEntries();
+        int count = entries.size();
+        if (timelineData == lrcData && lineStartTimes.length == count) {
+            return;
+        }
+        
+        long[] times = new long[count];
+        long latest = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            latest = Math.max(latest, entries.get(i).getTimeInMillis());
+            times[i] = latest;
+        }
+        
+        lineStartTimes = times;
+        timelineData = lrcData;
+        lastTimelineIndex = -1;
+    }
+    
+    /**
+     * Find which line was tapped based on Y coordinate. Taps in the spacing between two
+     * lines don't hit either of them.
      */
     private int findTappedLineIndex(float touchY) {
-        if (lrcData == null || lrcData.isEmpty()) {
+        if (lrcData == null || lrcData.isEmpty() || !ensureLineMetrics()) {
             return -1;
         }
         
         float centerY = getHeight() / 2f;
         float offsetY = centerY - scrollY;
+        float y = touchY - offsetY;
         
-        for (int i = 0; i < lrcData.size(); i++) {
-            float lineY = offsetY + getLineOffset(i);
-            
-            // Get layout height for this line
-            StaticLayout layout = normalLayoutCache.get(i);
-            float lineHeight = (layout != null) ? layout.getHeight() : normalTextSize;
-            
-            float topBound = lineY - (lineHeight / 2f);
-            float bottomBound = lineY + (lineHeight / 2f);
-            
-            if (touchY >= topBound && touchY <= bottomBound) {
-                return i;
-            }
+        int index = findFirstLineEndingBelow(y);
+        if (index < lrcData.size() && y >= lineTops[index]) {
+            return index;
         }
         
         return -1;
@@ -1736,7 +1873,7 @@ public class FelicityLrcView extends View implements ThemeChangedListener {
         this.textAlignment = alignment;
         
         // Clear layout caches so new layouts are built with the correct StaticLayout alignment
-        normalLayoutCache.clear();
+        invalidateLineLayouts();
         wordSyncCurrentLayout = null;
         wordSyncLayoutLineIndex = -1;
         
@@ -1799,7 +1936,7 @@ public class FelicityLrcView extends View implements ThemeChangedListener {
         currentPaint.setTextSize(normalTextSize);
         
         // Clear the layout cache so every line gets remeasured at the new size.
-        normalLayoutCache.clear();
+        invalidateLineLayouts();
         wordSyncCurrentLayout = null;
         wordSyncLayoutLineIndex = -1;
         
@@ -1818,6 +1955,7 @@ public class FelicityLrcView extends View implements ThemeChangedListener {
     
     public void setLineSpacing(float spacing) {
         this.lineSpacing = dp2px(getContext(), spacing);
+        lineMetricsValid = false;
         invalidate();
     }
     
@@ -1921,7 +2059,7 @@ public class FelicityLrcView extends View implements ThemeChangedListener {
         this.targetScrollY = 0f;
         this.isUserScrolling = false;
         this.durationMs = 0L;
-        this.normalLayoutCache.clear();
+        invalidateLineLayouts();
         this.blurMaskFilters.clear();
         this.currentWordIndex = -1;
         this.wordSyncCurrentLayout = null;
@@ -1990,6 +2128,18 @@ public class FelicityLrcView extends View implements ThemeChangedListener {
         }
     }
     
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        // A new width changes where lines wrap, so every layout and height has to be redone.
+        // A height change alone only moves the center, which is worked out per frame anyway.
+        if (w != oldw) {
+            invalidateLineLayouts();
+            wordSyncCurrentLayout = null;
+            wordSyncLayoutLineIndex = -1;
+        }
+    }
+    
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
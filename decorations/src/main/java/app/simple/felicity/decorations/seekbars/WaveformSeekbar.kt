@@ -1165,7 +1165,8 @@ class WaveformSeekbar @JvmOverloads constructor(
 
     /**
      * Supplies the normalized amplitude data for the currently loaded track.
-     * Each entry represents a single second of audio; values must be in [0.0, 1.0].
+     * The entries are spread evenly over the track, usually one per second (or
+     * fewer for long tracks, see [getMaxUsefulBars]); values must be in [0.0, 1.0].
      *
      * Before animating, the raw values are rescaled via min-max normalization so
      * that the quietest bar maps to 0.0 and the loudest maps to 1.0. This ensures
@@ -1176,7 +1177,7 @@ class WaveformSeekbar @JvmOverloads constructor(
      * previous values on subsequent loads) to the new target, so the transition is
      * never abrupt.
      *
-     * @param data raw amplitude array, one value per second (any non-negative range)
+     * @param data raw amplitude array spread over the track (any non-negative range)
      */
     fun setAmplitudes(data: FloatArray) {
         val normalizedData = normalizeAmplitudes(data)
@@ -1193,6 +1194,20 @@ class WaveformSeekbar @JvmOverloads constructor(
         applyNormalizedAmplitudes(normalizedData)
     }
 
+    /**
+     * The most bars worth handing to [setAmplitudes] for a track: enough to fill
+     * [MAX_SCROLL_SCREENS] view widths. Anything past that only makes the scroll
+     * longer and the per-frame cull loop in [onDraw] slower, without a single bar
+     * more on screen, so long mixes can take a coarser waveform level instead.
+     *
+     * Returns [Int.MAX_VALUE] (keep the full resolution) until the view is laid out.
+     */
+    fun getMaxUsefulBars(): Int {
+        val barStep = barWidthPx + barSpacingPx
+        if (width <= 0 || barStep <= 0f) return Int.MAX_VALUE
+        return (width * MAX_SCROLL_SCREENS / barStep).toInt().coerceAtLeast(1)
+    }
+
     /**
      * Wires up the bar-height animator from [drawnAmplitudes] to [normalizedData].
      * Must only be called when no left-bar-fade is in progress, as it mutates
@@ -1639,6 +1654,9 @@ class WaveformSeekbar @JvmOverloads constructor(
         private const val TRANSITION_ZONE = 3f
 
         // Default dimension values in dp
+        /** How many view widths a whole track may scroll through before its waveform gets coarser. */
+        private const val MAX_SCROLL_SCREENS = 16
+
         private const val DEFAULT_BAR_WIDTH_DP = 6f
         private const val DEFAULT_BAR_SPACING_DP = 3f
         private const val DEFAULT_FADE_EDGE_LENGTH_DP = 72f
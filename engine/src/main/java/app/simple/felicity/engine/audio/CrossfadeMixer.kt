@@ -0,0 +1,500 @@
+package app.simple.felicity.engine.audio
+
+import android.util.Log
+import kotlin.math.PI
+import kotlin.math.cos
+import kotlin.math.max
+import kotlin.math.min
+import kotlin.math.sin
+
+/**
+ * Overlaps the end of the playing track with the start of the next one inside the
+ * native output routes of [FelicityAudioSink], using an equal-power curve so the
+ * loudness stays level through the whole transition.
+ *
+ * There is only ever one ExoPlayer and one decoder pipeline. Instead of running a
+ * second player for the incoming song, the service decodes the first few seconds of the
+ * next queue item ahead of time with [TrackHeadDecoder] and hands them over as a [Plan].
+ * From then on everything happens on the audio thread, against the scratch buffer the
+ * sink already fills for the DSP, so nothing extra is copied:
+ *
+ *  1. **Fade** — once the outgoing track reaches `end - fade`, every frame is replaced
+ *     in place by `out × cos(θ) + head × sin(θ)` where θ runs from 0 to π/2 over the
+ *     fade. The angle is advanced with a rotation per frame rather than calling sin/cos
+ *     each time, and restarted from an exact value at the top of every buffer so no
+ *     error piles up.
+ *  2. **Silent tail** — when the waveform says the last few seconds of the outgoing
+ *     track are silence, the plan's end is moved up to the last audible second. The fade
+ *     finishes there, and whatever silence is left just keeps playing the head at full
+ *     level instead.
+ *  3. **Catch-up** — when ExoPlayer moves on to the next item it starts delivering that
+ *     song from its very first frame, but the listener has already heard the first
+ *     seconds from the head. Those frames are dropped as they arrive. To keep the output
+ *     from running dry while that happens, each dropped buffer also writes a short slice
+ *     of the head (one [CATCH_UP_RATIO]th of its length), so the decoder gets well ahead
+ *     and the two streams meet after a few hundred milliseconds. The join itself is
+ *     sample-exact: the first buffer that reaches past the head is shifted so playback
+ *     carries on with the frame right after the last head frame that went out. The
+ *     head slices, and whatever is left of the fade-in after the join, are ramped with
+ *     the same per-frame rotation as the fade.
+ *
+ * Because the listener is ahead of ExoPlayer's timestamps by exactly the head frames
+ * heard before the new stream arrived, that amount is reported once through
+ * [takeClockSkipUs] and the sink moves its clock forward to match, so the seekbar and
+ * lyrics stay in sync with what is actually playing.
+ *
+ * The sink runs its DSP, ReplayGain included, after the mix, so the head would come out
+ * at the outgoing track's gain. Each plan carries the next track's own gain instead, and
+ * the head is scaled by the ratio of the two before it is mixed in.
+ *
+ * Once a fade has started its plan is locked in until the transition is over: a new
+ * [setNext] only lines up the plan for the transition after it. When the plan is no
+ * longer needed anywhere, its [Plan.onRelease] runs so the head buffer can be reused.
+ *
+ * Everything except [setNext] and [abandonInFlight] must be called from the audio
+ * thread. Those two can be called from any thread; the sink picks the change up at the
+ * next buffer.
+ *
+ * @author Hamza417
+ */
+class CrossfadeMixer {
+
+    /**
+     * Everything the mixer needs to fade into the next item.
+     *
+     * @param head          Interleaved float PCM of the first seconds of the next item.
+     * @param headFrames    Number of valid frames in [head].
+     * @param sampleRate    Sample rate [head] was decoded at. The plan is ignored when it
+     *                      doesn't match the stream currently playing, since that
+     *                      transition will reconfigure the sink anyway.
+     * @param channelCount  Channel count of [head], with the same rule as [sampleRate].
+     * @param fadeUs        Length of the equal-power fade.
+     * @param outgoingEndUs Position in the outgoing item where the fade should finish:
+     *                      its duration, or the end of its last audible second when the
+     *                      silent tail is being skipped.
+     * @param headGain      Linear ReplayGain of the next item, the same value the DSP will
+     *                      apply to it once it is the current item.
+     * @param onRelease     Called once the mixer no longer holds on to [head], from
+     *                      whichever thread let go of it last.
+     */
+    class Plan(
+            val head: FloatArray,
+            val headFrames: Int,
+            val sampleRate: Int,
+            val channelCount: Int,
+            val fadeUs: Long,
+            val outgoingEndUs: Long,
+            val headGain: Float = 1f,
+            val onRelease: () -> Unit = {}
+    )
+
+    private enum class Step { PASSTHROUGH, FADE, DISCARD, JOIN }
+
+    /** Guards the handover of plans between [setNext] and the audio thread. */
+    private val lock = Any()
+
+    /** The plan for the next transition that hasn't started fading yet. */
+    @Volatile
+    private var pendingPlan: Plan? = null
+
+    /**
+     * The plan of the fade or catch-up in progress, null when there is none. Only the
+     * audio thread changes it, and only under [lock].
+     */
+    private var activePlan: Plan? = null
+
+    /** The song after the in-flight fade isn't the head's song anymore; see [abandonInFlight]. */
+    @Volatile
+    private var inFlightAbandoned = false
+
+    private var sampleRate = 0
+    private var channelCount = 0
+
+    /** Offset ExoPlayer adds to the timestamps of the current item, see [onStreamChanged]. */
+    private var streamOffsetUs = 0L
+
+    /** Set whenever the timestamps can't be trusted to follow on from the last buffer. */
+    private var needsResync = true
+
+    /** Frame index, within the current item, of the next frame that will be written. */
+    private var itemFrame = 0L
+
+    // Catch-up state after the stream change, see the class documentation.
+    private var splice: Plan? = null
+    private var splicedHeadFrames = 0
+    private var spliceInputFrames = 0L
+
+    private var clockSkipUs = 0L
+
+    // What the last process() call did, for commit() to account for.
+    private var lastStep = Step.PASSTHROUGH
+    private var lastInputSamples = 0
+    private var lastOutputSamples = 0
+    private var lastSkippedFrames = 0
+
+    /**
+     * Replaces the plan for the transition out of the current item, or clears it with
+     * null. A fade that has already started keeps the plan it started with.
+     */
+    fun setNext(plan: Plan?) {
+        synchronized(lock) {
+            val old = pendingPlan
+            pendingPlan = plan
+            if (old != null && old !== plan) retire(old)
+        }
+    }
+
+    /**
+     * Tells the mixer the queue moved on while a fade was running, so the stream that
+     * follows is not the song the head came from. The fade still runs to its end, but
+     * there is no catch-up: the new stream plays from its own first frame.
+     */
+    fun abandonInFlight() {
+        inFlightAbandoned = true
+    }
+
+    /** Called by the sink whenever its output format changes. Drops any overlap in flight. */
+    fun configure(sampleRate: Int, channelCount: Int) {
+        if (sampleRate != this.sampleRate || channelCount != this.channelCount) {
+            this.sampleRate = sampleRate
+            this.channelCount = channelCount
+            endInFlight()
+        }
+        needsResync = true
+    }
+
+    /** Called on every sink flush — a seek, or a jump to another item. */
+    fun flush() {
+        endInFlight()
+        clockSkipUs = 0L
+        needsResync = true
+    }
+
+    /**
+     * Called when ExoPlayer starts delivering the next item, with the offset it adds to
+     * that item's timestamps. If the fade was running, this is where the catch-up starts.
+     */
+    fun onStreamChanged(outputStreamOffsetUs: Long) {
+        synchronized(lock) {
+            val plan = activePlan
+            val pending = pendingPlan
+            activePlan = null
+            splice = null
+
+            if (plan != null && !inFlightAbandoned) {
+                val heard = (itemFrame - fadeStartFrame(plan)).coerceIn(0L, plan.headFrames.toLong()).toInt()
+                if (heard > 0) {
+                    activePlan = plan
+                    splice = plan
+                    splicedHeadFrames = heard
+                    spliceInputFrames = 0L
+                    clockSkipUs += heard * 1_000_000L / sampleRate
+                    Log.d(TAG, "Crossfade splice: $heard frames already heard from the next track")
+                }
+            }
+
+            // Whether or not it got used, the pending plan belonged to the transition that
+            // just happened. The service sends the one for the next transition once it notices.
+            pendingPlan = null
+            inFlightAbandoned = false
+            if (plan != null) retire(plan)
+            if (pending != null && pending !== plan) retire(pending)
+        }
+
+        streamOffsetUs = outputStreamOffsetUs
+        needsResync = true
+    }
+
+    /**
+     * Returns how far the sink's clock has to jump forward because of a splice, and
+     * clears it. Zero nearly all the time.
+     */
+    fun takeClockSkipUs(): Long {
+        val skip = clockSkipUs
+        clockSkipUs = 0L
+        return skip
+    }
+
+    /**
+     * Mixes, in place, the first [sampleCount] samples of [buffer] that the sink has just
+     * converted from the buffer at [presentationTimeUs].
+     *
+     * @param downstreamGain The linear ReplayGain the sink's DSP is about to apply to
+     *                       [buffer], i.e. the current item's.
+     * @return Number of samples at the start of [buffer] to send to the hardware. Follow
+     *         up with [commit] once they are written.
+     */
+    fun process(buffer: FloatArray, sampleCount: Int, presentationTimeUs: Long, downstreamGain: Float = 1f): Int {
+        val ch = channelCount
+        if (ch <= 0 || sampleRate <= 0) {
+            lastStep = Step.PASSTHROUGH
+            lastInputSamples = sampleCount
+            return sampleCount
+        }
+
+        if (needsResync) {
+            itemFrame = ((presentationTimeUs - streamOffsetUs).coerceAtLeast(0L) * sampleRate) / 1_000_000L
+            needsResync = false
+        }
+
+        lastInputSamples = sampleCount
+        val frames = sampleCount / ch
+
+        val spliced = splice
+        if (spliced != null) {
+            return processSplice(spliced, buffer, frames, headScale(spliced, downstreamGain))
+        }
+
+        val plan = activePlan ?: startFade(frames)
+        if (plan == null) {
+            lastStep = Step.PASSTHROUGH
+            return sampleCount
+        }
+
+        val fadeStart = fadeStartFrame(plan)
+        val fadeFrames = fadeFrames(plan)
+        val firstFrame = max(0L, fadeStart - itemFrame).toInt()
+        val headStart = itemFrame + firstFrame - fadeStart
+        mixFade(buffer, plan, firstFrame, frames, headStart, fadeFrames, headScale(plan, downstreamGain))
+
+        lastStep = Step.FADE
+        return sampleCount
+    }
+
+    /**
+     * Accounts for the samples the sink actually managed to write out of the ones
+     * [process] asked for.
+     *
+     * @return Number of input samples consumed — the sink advances its [java.nio.ByteBuffer]
+     *         by this much and retries the rest, as with a short write.
+     */
+    fun commit(samplesWritten: Int): Int {
+        val ch = channelCount.coerceAtLeast(1)
+        val written = samplesWritten.coerceAtLeast(0)
+
+        return when (lastStep) {
+            Step.PASSTHROUGH, Step.FADE -> {
+                itemFrame += written / ch
+                written
+            }
+            Step.DISCARD -> {
+                splicedHeadFrames += written / ch
+                if (written >= lastOutputSamples) {
+                    // The head slice went out whole; the dropped input is done with.
+                    spliceInputFrames += lastInputSamples / ch
+                    itemFrame = spliceInputFrames
+                    lastInputSamples
+                } else {
+                    0
+                }
+            }
+            Step.JOIN -> {
+                val consumedFrames = lastSkippedFrames + written / ch
+                spliceInputFrames += consumedFrames
+                itemFrame = spliceInputFrames
+                val plan = splice
+                if (plan != null && spliceInputFrames >= max(fadeFrames(plan), splicedHeadFrames.toLong())) {
+                    endInFlight()
+                }
+                consumedFrames * ch
+            }
+        }
+    }
+
+    /**
+     * Takes the pending plan over as the active one if this buffer of [frames] frames
+     * holds its first fade frame. Only a fade that is seen starting from that frame is
+     * allowed to run, so seeking into the last seconds of a song doesn't start the next
+     * one halfway through its intro.
+     */
+    private fun startFade(frames: Int): Plan? {
+        val plan = pendingPlan ?: return null
+        if (plan.sampleRate != sampleRate || plan.channelCount != channelCount) return null
+
+        val fadeStart = fadeStartFrame(plan)
+        if (itemFrame + frames <= fadeStart || itemFrame > fadeStart) return null
+
+        synchronized(lock) {
+            // setNext may have swapped it out since it was read above.
+            if (pendingPlan !== plan) return null
+            activePlan = plan
+            inFlightAbandoned = false
+        }
+
+        Log.d(TAG, "Crossfade started at frame $itemFrame of the outgoing track")
+        return plan
+    }
+
+    /** Drops the fade or catch-up in progress, if any. */
+    private fun endInFlight() {
+        synchronized(lock) {
+            val plan = activePlan
+            activePlan = null
+            splice = null
+            if (plan != null) retire(plan)
+        }
+    }
+
+    /** Lets go of [plan] unless it is still pending or in flight. Call under [lock]. */
+    private fun retire(plan: Plan) {
+        if (plan !== pendingPlan && plan !== activePlan) plan.onRelease()
+    }
+
+    /**
+     * What the head is multiplied by so it comes out of the DSP, which applies
+     * [downstreamGain], at the next item's own [Plan.headGain].
+     */
+    private fun headScale(plan: Plan, downstreamGain: Float): Float {
+        return if (downstreamGain > 0f) plan.headGain / downstreamGain else plan.headGain
+    }
+
+    private fun processSplice(plan: Plan, buffer: FloatArray, frames: Int, headScale: Float): Int {
+        val ch = channelCount
+        val fadeFrames = fadeFrames(plan)
+
+        if (spliceInputFrames + frames <= splicedHeadFrames) {
+            // Everything in this buffer has already been heard from the head. Drop it and
+            // send a short slice of the head in its place so the output keeps going.
+            val slice = min(max(1, frames / CATCH_UP_RATIO), plan.headFrames - splicedHeadFrames).coerceAtLeast(0)
+            rampIn(plan.head, splicedHeadFrames * ch, buffer, slice, splicedHeadFrames.toLong(), fadeFrames, headScale)
+
+            lastStep = Step.DISCARD
+            lastOutputSamples = slice * ch
+            return lastOutputSamples
+        }
+
+        // This buffer reaches past the head: skip what was already heard, then carry on
+        // with the live stream, finishing the fade-in if the outgoing track ended early.
+        val skip = (splicedHeadFrames - spliceInputFrames).coerceIn(0L, frames.toLong()).toInt()
+        val remaining = frames - skip
+        if (skip > 0) {
+            System.arraycopy(buffer, skip * ch, buffer, 0, remaining * ch)
+        }
+
+        val firstInput = spliceInputFrames + skip
+        if (firstInput < fadeFrames) {
+            val rampFrames = min(remaining.toLong(), fadeFrames - firstInput).toInt()
+            rampIn(buffer, 0, buffer, rampFrames, firstInput, fadeFrames, 1f)
+        }
+
+        lastStep = Step.JOIN
+        lastSkippedFrames = skip
+        lastOutputSamples = remaining * ch
+        return lastOutputSamples
+    }
+
+    /**
+     * Writes [frames] frames of [source], from sample [srcOffset] on, to the start of
+     * [target] with the fade-in half of the equal-power curve applied, beginning at fade
+     * frame [startFrame], and everything scaled by [scale]. Frames past the end of the
+     * fade only get [scale]. [source] and [target] may be the same array.
+     *
+     * Like [mixFade], sin(θ) is advanced by a rotation per frame and only evaluated
+     * outright once per call.
+     */
+    private fun rampIn(source: FloatArray, srcOffset: Int, target: FloatArray, frames: Int, startFrame: Long, fadeFrames: Long, scale: Float) {
+        val ch = channelCount
+        val step = HALF_PI / fadeFrames
+        val stepCos = cos(step)
+        val stepSin = sin(step)
+
+        var h = startFrame
+        val angle = min(h * step, HALF_PI)
+        var gSin = sin(angle)
+        var gCos = cos(angle)
+        var src = srcOffset
+        var dst = 0
+
+        for (f in 0 until frames) {
+            val gain: Float
+            if (h < fadeFrames) {
+                gain = gSin.toFloat() * scale
+                val nextSin = gSin * stepCos + gCos * stepSin
+                gCos = gCos * stepCos - gSin * stepSin
+                gSin = nextSin
+            } else {
+                gain = scale
+            }
+
+            for (c in 0 until ch) {
+                target[dst++] = source[src++] * gain
+            }
+
+            h++
+        }
+    }
+
+    /**
+     * Equal-power mix of frames [from] until [to] of [buffer] with the head, starting at
+     * head frame [headStart], with the head scaled by [headScale]. Frames past the end of
+     * the fade take the head alone.
+     */
+    private fun mixFade(buffer: FloatArray, plan: Plan, from: Int, to: Int, headStart: Long, fadeFrames: Long, headScale: Float) {
+        val ch = channelCount
+        val head = plan.head
+        val step = HALF_PI / fadeFrames
+        val stepCos = cos(step)
+        val stepSin = sin(step)
+
+        var h = headStart
+        var angle = min(h * step, HALF_PI)
+        var gOut = cos(angle)
+        var gIn = sin(angle)
+        var i = from * ch
+
+        for (f in from until to) {
+            val outGain: Float
+            val inGain: Float
+            if (h < fadeFrames) {
+                outGain = gOut.toFloat()
+                inGain = gIn.toFloat() * headScale
+                // Rotate (cos, sin) by one step instead of evaluating them again.
+                val nextOut = gOut * stepCos - gIn * stepSin
+                gIn = gIn * stepCos + gOut * stepSin
+                gOut = nextOut
+            } else {
+                outGain = 0f
+                inGain = headScale
+            }
+
+            if (h < plan.headFrames) {
+                var src = (h * ch).toInt()
+                for (c in 0 until ch) {
+                    buffer[i] = buffer[i] * outGain + head[src++] * inGain
+                    i++
+                }
+            } else {
+                // Ran out of head before the outgoing track ended; fade to silence rather
+                // than letting the old track come back.
+                for (c in 0 until ch) {
+                    buffer[i] *= outGain
+                    i++
+                }
+            }
+
+            h++
+        }
+    }
+
+    private fun fadeFrames(plan: Plan): Long {
+        return (plan.fadeUs * sampleRate / 1_000_000L).coerceAtLeast(1L)
+    }
+
+    private fun fadeStartFrame(plan: Plan): Long {
+        val endFrame = plan.outgoingEndUs * sampleRate / 1_000_000L
+        return (endFrame - fadeFrames(plan)).coerceAtLeast(0L)
+    }
+
+    companion object {
+        private const val TAG = "CrossfadeMixer"
+        private const val HALF_PI = PI / 2.0
+
+        /**
+         * How many dropped frames of the incoming stream are paid for with one frame of
+         * head during the catch-up. With 8 the head needs about 1/7th more audio than the
+         * listener heard before the stream change, and the decoder only has to run at
+         * 8× real time, which every decoder we ship with does comfortably.
+         */
+        const val CATCH_UP_RATIO = 8
+    }
+}
@@ -54,6 +54,9 @@ import java.util.concurrent.atomic.AtomicBoolean
  * full-quality signal regardless of which path is active. For the [DefaultAudioSink]
  * path the DSP runs through its AudioProcessor chain as normal.
  *
+ * **Crossfade:** The native routes also run [CrossfadeMixer] on the same scratch buffer
+ * just before the DSP, so the overlapping tracks go through the EQ and effects together.
+ *
  * **Position source of truth:** Each route reports its own [getCurrentPositionUs]
  * using the hardware clock directly (AAudio/Oboe timestamps, USB ring-buffer depth)
  * rather than delegating to [DefaultAudioSink]. This is the key correctness fix that
@@ -67,6 +70,8 @@ import java.util.concurrent.atomic.AtomicBoolean
  * @param context             Application context used to query [AudioManager].
  * @param nativeDsp           Shared [NativeDspAudioProcessor] for direct-path processing.
  * @param visualizer          Shared [VisualizerProcessor] for the spectrum display.
+ * @param crossfade           Shared [CrossfadeMixer] that overlaps the next track on the
+ *                            native routes. The [DefaultAudioSink] path has no crossfade.
  *
  * @author Hamza417
  */
@@ -75,7 +80,8 @@ class FelicityAudioSink(
         private val defaultSinkProvider: () -> DefaultAudioSink,
         private val context: Context,
         private val nativeDsp: NativeDspAudioProcessor,
-        private val visualizer: VisualizerProcessor
+        private val visualizer: VisualizerProcessor,
+        private val crossfade: CrossfadeMixer
 ) : AudioSink {
 
     // -----------------------------------------------------------------------------------------
@@ -232,9 +238,17 @@ class FelicityAudioSink(
             val snapshot = buffer.slice().order(buffer.order())
             val sampleCount = snapshotToFloat(snapshot, currentEncoding)
             if (sampleCount > 0) {
-                nativeDsp.processInPlace(floatScratchBuffer, sampleCount)
-                visualizer.feedFloat(floatScratchBuffer, sampleCount, channelCount)
-                val samplesWritten = stream.write(floatScratchBuffer, sampleCount)
+                // Mixes the next track in place during a crossfade; see [CrossfadeMixer].
+                val outputCount = crossfade.process(floatScratchBuffer, sampleCount, presentationTimeUs, nativeDsp.tagReplayGain)
+                accumulatedPlayedUs += crossfade.takeClockSkipUs()
+
+                var samplesWritten = 0
+                if (outputCount > 0) {
+                    nativeDsp.processInPlace(floatScratchBuffer, outputCount)
+                    visualizer.feedFloat(floatScratchBuffer, outputCount, channelCount)
+                    samplesWritten = stream.write(floatScratchBuffer, outputCount)
+                }
+                val consumed = crossfade.commit(samplesWritten)
 
                 // The native write blocks for a short window (tens of milliseconds) waiting
                 // for hardware buffer room, which is what keeps playback gap-free without
@@ -245,10 +259,9 @@ class FelicityAudioSink(
                 // pause() itself does not wait on this: see [muteImmediately], which is
                 // called straight from the app thread the instant pause is requested, so the
                 // hardware goes silent immediately even if this write is mid-flight.
-                if (!isPaused && samplesWritten < sampleCount) {
-                    val accepted = samplesWritten.coerceAtLeast(0)
+                if (!isPaused && consumed < sampleCount) {
                     val bytesPerSample = PcmUtils.bytesPerSample(currentEncoding)
-                    buffer.position(buffer.position() + accepted * bytesPerSample)
+                    buffer.position(buffer.position() + consumed * bytesPerSample)
                     return false
                 }
             }
@@ -376,9 +389,17 @@ class FelicityAudioSink(
             val snapshot = buffer.slice().order(buffer.order())
             val sampleCount = snapshotToFloat(snapshot, currentEncoding)
             if (sampleCount > 0) {
-                nativeDsp.processInPlace(floatScratchBuffer, sampleCount)
-                visualizer.feedFloat(floatScratchBuffer, sampleCount, channelCount)
-                val samplesWritten = stream.write(floatScratchBuffer, sampleCount)
+                // Mixes the next track in place during a crossfade; see [CrossfadeMixer].
+                val outputCount = crossfade.process(floatScratchBuffer, sampleCount, presentationTimeUs, nativeDsp.tagReplayGain)
+                accumulatedPlayedUs += crossfade.takeClockSkipUs()
+
+                var samplesWritten = 0
+                if (outputCount > 0) {
+                    nativeDsp.processInPlace(floatScratchBuffer, outputCount)
+                    visualizer.feedFloat(floatScratchBuffer, outputCount, channelCount)
+                    samplesWritten = stream.write(floatScratchBuffer, outputCount)
+                }
+                val consumed = crossfade.commit(samplesWritten)
 
                 // The native write blocks for a short window waiting for hardware buffer
                 // room, which is what keeps playback gap-free. It only returns fewer samples
@@ -389,10 +410,9 @@ class FelicityAudioSink(
                 // pause() itself does not wait on this: see [muteImmediately], called
                 // straight from the app thread the instant pause is requested, so the
                 // hardware goes silent immediately even if this write is mid-flight.
-                if (!isPaused && samplesWritten < sampleCount) {
-                    val accepted = samplesWritten.coerceAtLeast(0)
+                if (!isPaused && consumed < sampleCount) {
                     val bytesPerSample = PcmUtils.bytesPerSample(currentEncoding)
-                    buffer.position(buffer.position() + accepted * bytesPerSample)
+                    buffer.position(buffer.position() + consumed * bytesPerSample)
                     return false
                 }
             }
@@ -513,9 +533,17 @@ class FelicityAudioSink(
             val snapshot = buffer.slice().order(buffer.order())
             val sampleCount = snapshotToFloat(snapshot, currentEncoding)
             if (sampleCount > 0) {
-                nativeDsp.processInPlace(floatScratchBuffer, sampleCount)
-                visualizer.feedFloat(floatScratchBuffer, sampleCount, channelCount)
-                driver.nativePushPcm(floatScratchBuffer, 0, sampleCount)
+                val outputCount = crossfade.process(floatScratchBuffer, sampleCount, presentationTimeUs, nativeDsp.tagReplayGain)
+                accumulatedPlayedUs += crossfade.takeClockSkipUs()
+
+                if (outputCount > 0) {
+                    nativeDsp.processInPlace(floatScratchBuffer, outputCount)
+                    visualizer.feedFloat(floatScratchBuffer, outputCount, channelCount)
+                    driver.nativePushPcm(floatScratchBuffer, 0, outputCount)
+                }
+
+                // The ring buffer always takes everything, so the whole input is consumed.
+                crossfade.commit(outputCount)
             }
             buffer.position(buffer.limit())
             return true
@@ -792,6 +820,7 @@ class FelicityAudioSink(
         val audioFormat = AudioProcessor.AudioFormat(sr, ch, currentEncoding)
         nativeDsp.configure(audioFormat)
         nativeDsp.flush()
+        crossfade.configure(sr, ch)
 
         val targetType = targetSinkType()
         val formatChanged = sr != prevSr || ch != prevCh
@@ -838,9 +867,22 @@ class FelicityAudioSink(
     override fun flush() {
         nativeSourceEnded = false
         nativeEndDeadlineMs = 0L
+        crossfade.flush()
         activeSink.flush()
     }
 
+    /**
+     * ExoPlayer calls this right after the last buffer of one queue item, before the first
+     * buffer of the next, with the offset its timestamps carry from then on. That makes it
+     * the exact point where a running crossfade hands over from the outgoing track.
+     */
+    override fun setOutputStreamOffsetUs(outputStreamOffsetUs: Long) {
+        crossfade.onStreamChanged(outputStreamOffsetUs)
+        if (activeSinkType == SinkType.DEFAULT) {
+            defaultSink.setOutputStreamOffsetUs(outputStreamOffsetUs)
+        }
+    }
+
     /**
      * Called when all audio data for the current track has been submitted.
      * For native sinks (AAudio, Oboe, USB) the writes are synchronous, so the
@@ -0,0 +1,91 @@
+package app.simple.felicity.engine.audio
+
+import android.content.Context
+import android.net.Uri
+import java.util.Locale
+
+/**
+ * Measures a whole song with [LoudnessMeter], decoding it buffer by buffer through
+ * [PcmStreamDecoder] so only one codec buffer of PCM is ever held in memory.
+ *
+ * Gains follow ReplayGain 2.0: the reference level is [REFERENCE_LUFS] (-18 LUFS) and the
+ * gain is simply the distance from the measured loudness to it. Peaks are true peaks, so
+ * a player that limits gain by the peak value never lets an inter-sample overshoot clip.
+ *
+ * @author Hamza417
+ */
+object LoudnessAnalyzer {
+
+    /** ReplayGain 2.0 reference loudness. */
+    const val REFERENCE_LUFS = -18.0
+
+    /**
+     * One song's measurement.
+     *
+     * @property histogram      Gating-block histogram, see [LoudnessMeter.histogram].
+     * @property integratedLufs Integrated loudness, or [Double.NEGATIVE_INFINITY] for silence.
+     * @property truePeak       True peak, linear.
+     */
+    class Result(val histogram: IntArray, val integratedLufs: Double, val truePeak: Float)
+
+    /**
+     * Decodes and measures [uri], or only the part of it from [startUs] to [endUs] (0 for
+     * the end of the file) when it's the album file of a CUE track.
+     *
+     * @param isCancelled Polled between codec calls so a scan can be abandoned quickly.
+     * @return The measurement, or null when the song can't be decoded here, changes format
+     *         halfway through, or the analysis was cancelled.
+     */
+    fun analyze(context: Context, uri: Uri, isCancelled: () -> Boolean, startUs: Long = 0L, endUs: Long = 0L): Result? {
+        var meter: LoudnessMeter? = null
+        var sampleRate = 0
+        var channelCount = 0
+        var failed = false
+
+        try {
+            val finished = PcmStreamDecoder.decode(context, uri, isCancelled, startUs, endUs) consumer@{ samples, frames, rate, channels ->
+                val current = meter
+                if (current == null) {
+                    sampleRate = rate
+                    channelCount = channels
+                    val created = LoudnessMeter(rate, channels)
+                    meter = created
+                    if (!created.isValid) {
+                        failed = true
+                        return@consumer false
+                    }
+                    created.process(samples, frames)
+                } else if (rate != sampleRate || channels != channelCount) {
+                    failed = true
+                    return@consumer false
+                } else {
+                    current.process(samples, frames)
+                }
+                true
+            }
+
+            val measured = meter
+            if (!finished || failed || measured == null) return null
+
+            val histogram = measured.histogram()
+            return Result(histogram, LoudnessMeter.integrate(histogram), measured.truePeak)
+        } finally {
+            meter?.release()
+        }
+    }
+
+    /** ReplayGain for a measured loudness, in dB; 0 for silence. */
+    fun gainFor(integratedLufs: Double): Double {
+        return if (integratedLufs.isInfinite()) 0.0 else REFERENCE_LUFS - integratedLufs
+    }
+
+    /** Formats a gain the way ReplayGain tags spell it, e.g. "-6.42 dB". */
+    fun formatGain(gainDb: Double): String {
+        return String.format(Locale.US, "%+.2f dB", gainDb)
+    }
+
+    /** Formats a linear peak the way ReplayGain tags spell it, e.g. "0.988831". */
+    fun formatPeak(peak: Float): String {
+        return String.format(Locale.US, "%.6f", peak)
+    }
+}
@@ -0,0 +1,74 @@
+package app.simple.felicity.engine.audio
+
+/**
+ * Thin wrapper around the native ITU-R BS.1770 / EBU R128 loudness meter in
+ * `loudness-meter.cpp`.
+ *
+ * Feed it a whole song through [process], then read [histogram] and [truePeak]. The
+ * histogram is what everything else is built from — [integrate] turns one into an
+ * integrated loudness in LUFS, and since an album's loudness is just the gated mean over
+ * every block on it, adding up the histograms of its songs and integrating the sum gives
+ * the album value without decoding anything twice.
+ *
+ * A meter holds native memory, so always [release] it once done. It is not thread-safe;
+ * use one per song being measured.
+ *
+ * @author Hamza417
+ */
+class LoudnessMeter(sampleRate: Int, channelCount: Int) {
+
+    private var handle = nativeCreate(sampleRate, channelCount)
+
+    /** False when the native side refused the format (too many channels, silly rate). */
+    val isValid: Boolean
+        get() = handle != 0L
+
+    /** Measures [frameCount] frames of interleaved float PCM from the start of [samples]. */
+    fun process(samples: FloatArray, frameCount: Int) {
+        if (handle != 0L) nativeProcess(handle, samples, frameCount)
+    }
+
+    /** Gating-block histogram so far, [HISTOGRAM_BINS] counts from -70 LUFS up in 0.1 LU steps. */
+    fun histogram(): IntArray {
+        return IntArray(HISTOGRAM_BINS).also {
+            if (handle != 0L) nativeGetHistogram(handle, it)
+        }
+    }
+
+    /** Largest true-peak value seen so far, linear (1.0 = 0 dBTP). */
+    val truePeak: Float
+        get() = if (handle != 0L) nativeGetTruePeak(handle) else 0f
+
+    fun release() {
+        if (handle != 0L) {
+            nativeDestroy(handle)
+            handle = 0L
+        }
+    }
+
+    private external fun nativeCreate(sampleRate: Int, channelCount: Int): Long
+    private external fun nativeProcess(handle: Long, samples: FloatArray, frameCount: Int)
+    private external fun nativeGetHistogram(handle: Long, dest: IntArray)
+    private external fun nativeGetTruePeak(handle: Long): Float
+    private external fun nativeDestroy(handle: Long)
+
+    companion object {
+        init {
+            System.loadLibrary("felicity_audio_engine")
+        }
+
+        /** Must match kLoudnessBins in loudness-meter.h. */
+        const val HISTOGRAM_BINS = 800
+
+        /**
+         * Integrates a histogram — a single song's or the sum of several — into LUFS, with
+         * the BS.1770 absolute and relative gates.
+         *
+         * @return Integrated loudness in LUFS, or [Double.NEGATIVE_INFINITY] for silence.
+         */
+        fun integrate(histogram: IntArray): Double = nativeIntegrate(histogram)
+
+        @JvmStatic
+        private external fun nativeIntegrate(histogram: IntArray): Double
+    }
+}
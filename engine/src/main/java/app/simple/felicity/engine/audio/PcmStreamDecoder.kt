@@ -0,0 +1,207 @@
+package app.simple.felicity.engine.audio
+
+import android.content.Context
+import android.media.AudioFormat
+import android.media.MediaCodec
+import android.media.MediaExtractor
+import android.media.MediaFormat
+import android.net.Uri
+import android.util.Log
+import java.nio.ByteOrder
+
+/**
+ * Decodes a song into interleaved float PCM with the platform's [MediaExtractor] and
+ * [MediaCodec], handing the samples over one codec buffer at a time.
+ *
+ * This is the shared decode loop behind [TrackHeadDecoder], which only wants the first few
+ * seconds, and [LoudnessAnalyzer], which wants the whole song but never needs more than one
+ * buffer of it in memory. Neither needs a player, so there's no point spinning up a second
+ * ExoPlayer for them.
+ *
+ * Float output is requested from the decoder; ones that can't do it hand back 16-bit, which
+ * is converted here. Encoder delay is trimmed the same way ExoPlayer does it when the
+ * container reports it, so the samples line up with what the player itself decodes. Songs
+ * the platform codecs can't handle (the ones that only play through FFmpeg) just fail.
+ *
+ * Tracks of a CUE sheet are only a stretch of a bigger album file, so a decode can also be
+ * limited to a range of it. The extractor seeks to the sync sample before the start and the
+ * frames in front of it are dropped here, the way ExoPlayer's clipping does it.
+ *
+ * @author Hamza417
+ */
+object PcmStreamDecoder {
+
+    private const val TAG = "PcmStreamDecoder"
+    private const val TIMEOUT_US = 10_000L
+
+    /** Receives decoded audio; see [decode]. */
+    fun interface Consumer {
+        /**
+         * Called with [frameCount] frames of [channelCount] interleaved samples from the
+         * start of [samples]. The array is reused for the next buffer, so copy what needs
+         * to be kept.
+         *
+         * @return false to stop decoding early, true to keep going.
+         */
+        fun onPcm(samples: FloatArray, frameCount: Int, sampleRate: Int, channelCount: Int): Boolean
+    }
+
+    /**
+     * Decodes [uri] from the start, passing every buffer to [consumer] until the song ends
+     * or [consumer] asks to stop.
+     *
+     * @param isCancelled Polled between codec calls so an abandoned decode stops quickly.
+     * @param startUs Where in the file to start; 0 for the very beginning.
+     * @param endUs Where in the file to stop; 0 to run to the end of it.
+     * @return true when the decode reached the end of the song or [consumer] stopped it;
+     *         false when the song can't be decoded here, decoding failed, or it was cancelled.
+     */
+    fun decode(
+            context: Context,
+            uri: Uri,
+            isCancelled: () -> Boolean,
+            startUs: Long = 0L,
+            endUs: Long = 0L,
+            consumer: Consumer
+    ): Boolean {
+        val extractor = MediaExtractor()
+        var codec: MediaCodec? = null
+
+        try {
+            extractor.setDataSource(context, uri, null)
+
+            val trackIndex = (0 until extractor.trackCount).firstOrNull {
+                extractor.getTrackFormat(it).getString(MediaFormat.KEY_MIME)?.startsWith("audio/") == true
+            } ?: return false
+
+            extractor.selectTrack(trackIndex)
+            val inputFormat = extractor.getTrackFormat(trackIndex)
+            val mime = inputFormat.getString(MediaFormat.KEY_MIME) ?: return false
+
+            // Ask for float output; decoders that can't do it just ignore the key and give
+            // us 16-bit, which is handled below.
+            inputFormat.setInteger(MediaFormat.KEY_PCM_ENCODING, AudioFormat.ENCODING_PCM_FLOAT)
+
+            var sampleRate = inputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE)
+            var channelCount = inputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT)
+            var encoding = AudioFormat.ENCODING_PCM_16BIT
+            // The encoder delay only sits in front of the very first frame of the file.
+            var framesToSkip = if (startUs <= 0L && inputFormat.containsKey(MediaFormat.KEY_ENCODER_DELAY)) {
+                inputFormat.getInteger(MediaFormat.KEY_ENCODER_DELAY)
+            } else {
+                0
+            }
+
+            if (startUs > 0L) {
+                extractor.seekTo(startUs, MediaExtractor.SEEK_TO_PREVIOUS_SYNC)
+            }
+
+            codec = MediaCodec.createDecoderByType(mime)
+            codec.configure(inputFormat, null, null, 0)
+            codec.start()
+
+            var samples = FloatArray(0)
+            var inputDone = false
+            val info = MediaCodec.BufferInfo()
+
+            while (true) {
+                if (isCancelled()) return false
+
+                if (!inputDone) {
+                    val inIndex = codec.dequeueInputBuffer(TIMEOUT_US)
+                    if (inIndex >= 0) {
+                        val inBuffer = codec.getInputBuffer(inIndex)!!
+                        val size = extractor.readSampleData(inBuffer, 0)
+                        if (size < 0) {
+                            codec.queueInputBuffer(inIndex, 0, 0, 0L, MediaCodec.BUFFER_FLAG_END_OF_STREAM)
+                            inputDone = true
+                        } else {
+                            codec.queueInputBuffer(inIndex, 0, size, extractor.sampleTime, 0)
+                            extractor.advance()
+                        }
+                    }
+                }
+
+                val outIndex = codec.dequeueOutputBuffer(info, TIMEOUT_US)
+                when {
+                    outIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED -> {
+                        val outputFormat = codec.outputFormat
+                        encoding = if (outputFormat.containsKey(MediaFormat.KEY_PCM_ENCODING)) {
+                            outputFormat.getInteger(MediaFormat.KEY_PCM_ENCODING)
+                        } else {
+                            AudioFormat.ENCODING_PCM_16BIT
+                        }
+                        sampleRate = outputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE)
+                        channelCount = outputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT)
+                    }
+                    outIndex >= 0 -> {
+                        val outBuffer = codec.getOutputBuffer(outIndex)!!
+                        outBuffer.position(info.offset)
+                        outBuffer.limit(info.offset + info.size)
+                        outBuffer.order(ByteOrder.nativeOrder())
+
+                        val bytesPerFrame = channelCount * if (encoding == AudioFormat.ENCODING_PCM_FLOAT) 4 else 2
+                        var available = info.size / bytesPerFrame
+
+                        // Frames between the sync sample the extractor landed on and the start.
+                        if (startUs > 0L && info.presentationTimeUs < startUs) {
+                            framesToSkip = maxOf(framesToSkip, framesBetween(info.presentationTimeUs, startUs, sampleRate))
+                        }
+
+                        if (framesToSkip > 0) {
+                            val skipped = minOf(framesToSkip, available)
+                            outBuffer.position(outBuffer.position() + skipped * bytesPerFrame)
+                            framesToSkip -= skipped
+                            available -= skipped
+                        }
+
+                        var reachedEnd = false
+                        if (endUs > 0L) {
+                            val bufferStartUs = maxOf(info.presentationTimeUs, startUs)
+                            val remaining = framesBetween(bufferStartUs, endUs, sampleRate)
+                            if (remaining <= available) {
+                                available = remaining
+                                reachedEnd = true
+                            }
+                        }
+
+                        var keepGoing = true
+                        if (available > 0) {
+                            val count = available * channelCount
+                            if (samples.size < count) samples = FloatArray(count)
+
+                            if (encoding == AudioFormat.ENCODING_PCM_FLOAT) {
+                                outBuffer.asFloatBuffer().get(samples, 0, count)
+                            } else {
+                                val shorts = outBuffer.asShortBuffer()
+                                for (i in 0 until count) {
+                                    samples[i] = shorts.get() / 32768f
+                                }
+                            }
+
+                            keepGoing = consumer.onPcm(samples, available, sampleRate, channelCount)
+                        }
+
+                        codec.releaseOutputBuffer(outIndex, false)
+                        if (!keepGoing || reachedEnd || info.flags and MediaCodec.BUFFER_FLAG_END_OF_STREAM != 0) return true
+                    }
+                }
+            }
+        } catch (e: Exception) {
+            Log.w(TAG, "Could not decode $uri", e)
+            return false
+        } finally {
+            try {
+                codec?.stop()
+            } catch (_: Exception) {
+            }
+            codec?.release()
+            extractor.release()
+        }
+    }
+
+    /** Whole frames from [fromUs] up to [toUs] at [sampleRate]; never negative. */
+    private fun framesBetween(fromUs: Long, toUs: Long, sampleRate: Int): Int {
+        return ((toUs - fromUs).coerceAtLeast(0L) * sampleRate / 1_000_000L).toInt()
+    }
+}
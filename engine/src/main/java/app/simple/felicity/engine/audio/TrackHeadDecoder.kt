@@ -0,0 +1,119 @@
+package app.simple.felicity.engine.audio
+
+import android.content.Context
+import android.net.Uri
+
+/**
+ * Decodes just the first few seconds of a song into interleaved float PCM, for
+ * [CrossfadeMixer] to overlap with the end of the song before it.
+ *
+ * This runs on a background thread through [PcmStreamDecoder] rather than a second
+ * ExoPlayer — we only need a few seconds of raw samples, not a player, and the decode is
+ * over long before the fade starts. The output is at the song's own sample rate and channel
+ * count, which is what ExoPlayer will deliver to the sink for it too; [CrossfadeMixer]
+ * checks that they match before using it.
+ *
+ * Encoder delay is trimmed the same way ExoPlayer does it when the container reports it,
+ * so the head lines up sample for sample with what the player decodes later. Songs the
+ * platform codecs can't handle (the ones that only play through FFmpeg) simply return
+ * null and get an ordinary gapless transition.
+ *
+ * A head can run to tens of megabytes, so the buffer is not thrown away after the
+ * transition: hand it back through [recycle] and the next decode that fits in it reuses
+ * it instead of allocating a fresh one.
+ *
+ * @author Hamza417
+ */
+object TrackHeadDecoder {
+
+    /**
+     * Upper bound on the decoded head, in samples (24 MB of floats). A 12 second fade over
+     * a 10 second silent tail is well under it at 48 kHz; 192 kHz files get cut shorter and
+     * the caller falls back to fading at the very end of the song.
+     */
+    const val MAX_HEAD_SAMPLES = 6 * 1024 * 1024
+
+    /**
+     * Decoded audio, [frameCount] frames of [channelCount] interleaved samples. [samples]
+     * may be longer than that when it is a reused buffer.
+     */
+    class Head(val samples: FloatArray, val frameCount: Int, val sampleRate: Int, val channelCount: Int)
+
+    /** The one buffer kept around for the next decode, see [recycle]. */
+    private var spare: FloatArray? = null
+    private val spareLock = Any()
+
+    /**
+     * Decodes up to [durationUs] of audio from the start of [uri], never more than
+     * [MAX_HEAD_SAMPLES] samples. For a CUE track, [startUs] is where it starts inside
+     * the album file.
+     *
+     * @param isCancelled Polled between codec calls so a decode for a song that is no
+     *                    longer next can be abandoned early.
+     * @return The decoded head, or null when the song can't be decoded here or the decode
+     *         was cancelled.
+     */
+    fun decode(context: Context, uri: Uri, durationUs: Long, isCancelled: () -> Boolean, startUs: Long = 0L): Head? {
+        var samples: FloatArray? = null
+        var frameCount = 0
+        var maxFrames = 0
+        var sampleRate = 0
+        var channelCount = 0
+        var formatChanged = false
+
+        val finished = PcmStreamDecoder.decode(context, uri, isCancelled, startUs) consumer@{ chunk, frames, rate, channels ->
+            if (samples == null) {
+                sampleRate = rate
+                channelCount = channels
+                maxFrames = framesFor(durationUs, rate, channels)
+                samples = obtain(maxFrames * channels)
+            } else if (rate != sampleRate || channels != channelCount) {
+                formatChanged = true // A format change mid-head; not worth it.
+                return@consumer false
+            }
+
+            val count = minOf(frames, maxFrames - frameCount)
+            System.arraycopy(chunk, 0, samples!!, frameCount * channelCount, count * channelCount)
+            frameCount += count
+            frameCount < maxFrames
+        }
+
+        val head = samples
+        if (!finished || formatChanged || head == null) {
+            head?.let { recycle(it) }
+            return null
+        }
+
+        return Head(head, frameCount, sampleRate, channelCount)
+    }
+
+    /**
+     * Hands a head buffer back once nothing reads from it anymore. Only the largest one
+     * is kept, so memory stays bounded by a single [MAX_HEAD_SAMPLES] buffer.
+     */
+    fun recycle(samples: FloatArray) {
+        synchronized(spareLock) {
+            val current = spare
+            if (current == null || current.size < samples.size) {
+                spare = samples
+            }
+        }
+    }
+
+    /** The spare buffer when it holds at least [size] samples, otherwise a new one. */
+    private fun obtain(size: Int): FloatArray {
+        synchronized(spareLock) {
+            val current = spare
+            if (current != null && current.size >= size) {
+                spare = null
+                return current
+            }
+        }
+
+        return FloatArray(size)
+    }
+
+    private fun framesFor(durationUs: Long, sampleRate: Int, channelCount: Int): Int {
+        return minOf(durationUs * sampleRate / 1_000_000L, (MAX_HEAD_SAMPLES / channelCount).toLong()).toInt()
+    }
+}
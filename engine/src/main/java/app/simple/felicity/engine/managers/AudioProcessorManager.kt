@@ -2,11 +2,8 @@ package app.simple.felicity.engine.managers
 
 import androidx.annotation.OptIn
 import androidx.media3.common.util.UnstableApi
-import app.simple.felicity.engine.processors.DownmixProcessor
-import app.simple.felicity.engine.processors.KaraokeProcessor
+import app.simple.felicity.engine.audio.CrossfadeMixer
 import app.simple.felicity.engine.processors.NativeDspAudioProcessor
-import app.simple.felicity.engine.processors.NightModeProcessor
-import app.simple.felicity.engine.processors.SilenceTrimmingProcessor
 import app.simple.felicity.engine.processors.VisualizerProcessor
 import app.simple.felicity.preferences.EqualizerPreferences
 
@@ -14,17 +11,15 @@ import app.simple.felicity.preferences.EqualizerPreferences
  * Manages all audio processing pipelines for the Felicity playback engine.
  *
  * Processor chain order (applied in sequence by DefaultAudioSink):
- *  1. [SilenceTrimmingProcessor]    Optional leading/trailing silence removal.
- *  2. [DownmixProcessor]            Optional multichannel → stereo reduction.
- *  3. [KaraokeProcessor]            Optional center-channel (vocal) removal via L−R subtraction.
- *  4. [NativeDspAudioProcessor]     Unified native DSP: 10-band EQ, bass/treble shelves,
- *                                   stereo widening (M/S), constant-power balance,
- *                                   and tape-style saturation — all in one JNI call.
+ *  1. [NativeDspAudioProcessor]     Unified native DSP, all in one JNI call: optional silence
+ *                                   trimming, optional multichannel → stereo downmix, karaoke
+ *                                   center removal, 10-band EQ, bass/treble shelves, stereo
+ *                                   widening (M/S), constant-power balance, tape-style
+ *                                   saturation, reverb, and the night mode compressor.
  *                                   When USB or AAudio is the active output, this processor
  *                                   acts as a passthrough here; [FelicityAudioSink] drives
  *                                   it directly via [NativeDspAudioProcessor.processInPlace].
- *  5. [NightModeProcessor]          Dynamic compressor/limiter for late-night listening.
- *  6. [VisualizerProcessor]         Hann-windowed FFT spectrum capture on the final signal.
+ *  2. [VisualizerProcessor]         Hann-windowed FFT spectrum capture on the final signal.
  *
  * All processors support PCM_16BIT, PCM_24BIT, PCM_32BIT, and PCM_FLOAT (Hi-Res output).
  *
@@ -33,26 +28,6 @@ import app.simple.felicity.preferences.EqualizerPreferences
 @OptIn(UnstableApi::class)
 class AudioProcessorManager {
 
-    /**
-     * Passthrough processor that trims leading and trailing digital silence.
-     * Always present in the chain; the threshold can be tuned via
-     * [SilenceTrimmingProcessor.setThreshold]. Default: −60 dB (~0.001 linear).
-     */
-    val silenceTrimmingProcessor: SilenceTrimmingProcessor = SilenceTrimmingProcessor()
-
-    /**
-     * Downmixes any multichannel stream (1–24 ch) to stereo.
-     * Inactive for stereo input (pass-through). Added to the chain only when
-     * forced stereo downmix is enabled in AudioPreferences.
-     */
-    val downmixProcessor: DownmixProcessor = DownmixProcessor()
-
-    /**
-     * Center-channel (vocal) removal via mid/side L−R subtraction. Starts in bypass state.
-     * Requires a stereo PCM source; mono sources are passed through unchanged.
-     */
-    val karaokeProcessor: KaraokeProcessor = KaraokeProcessor()
-
     /**
      * Passthrough processor that performs a Hanning-windowed FFT on the final processed audio
      * and delivers 40 log-spaced frequency band magnitudes to any attached
@@ -64,9 +39,10 @@ class AudioProcessorManager {
     val visualizerProcessor: VisualizerProcessor = VisualizerProcessor()
 
     /**
-     * Unified native DSP processor that replaces the six individual Kotlin-based effect
-     * processors (EQ, bass, treble, widening, balance, saturation). Delegates the entire
-     * chain to native ARM NEON–optimized C++ code in a single JNI hot-path call.
+     * Unified native DSP processor that replaces the individual Kotlin-based effect
+     * processors (silence trimming, downmix, karaoke, EQ, bass, treble, widening, balance,
+     * saturation, night mode). Delegates the entire chain to native ARM NEON–optimized C++
+     * code in a single JNI hot-path call.
      *
      * Shares the [VisualizerProcessor]'s [FFTContext] so the spectrum display always
      * reflects the post-effects signal even without an extra FFT pass.
@@ -74,10 +50,11 @@ class AudioProcessorManager {
     val nativeDspProcessor: NativeDspAudioProcessor = NativeDspAudioProcessor(visualizerProcessor)
 
     /**
-     * Dynamic range compressor/limiter for comfortable late-night listening. Starts in bypass state.
-     * Squashes loud peaks and applies makeup gain so quiet passages are more audible.
+     * Overlaps the end of each song with the start of the next on the native output
+     * routes. Lives here next to the DSP so it survives the sink being rebuilt when the
+     * output mode changes; the service feeds it the next track via [CrossfadeMixer.setNext].
      */
-    val nightModeProcessor: NightModeProcessor = NightModeProcessor()
+    val crossfadeMixer: CrossfadeMixer = CrossfadeMixer()
 
     /**
      * Applies a new stereo balance pan to [nativeDspProcessor].
@@ -107,21 +84,42 @@ class AudioProcessorManager {
     }
 
     /**
-     * Enables or disables the [karaokeProcessor].
+     * Enables or disables center-channel (vocal) removal in [nativeDspProcessor].
+     * Requires a stereo source; mono sources are passed through unchanged.
      *
      * @param enabled True to activate center-channel removal, false to bypass.
      */
     fun applyKaraokeMode(enabled: Boolean) {
-        karaokeProcessor.setKaraokeModeEnabled(enabled)
+        nativeDspProcessor.setKaraokeEnabled(enabled)
     }
 
     /**
-     * Enables or disables the [nightModeProcessor].
+     * Enables or disables the night mode compressor/limiter in [nativeDspProcessor].
+     * Squashes loud peaks and applies makeup gain so quiet passages are more audible.
      *
      * @param enabled True to activate the dynamic compressor, false to bypass.
      */
     fun applyNightMode(enabled: Boolean) {
-        nightModeProcessor.setNightModeEnabled(enabled)
+        nativeDspProcessor.setNightModeEnabled(enabled)
+    }
+
+    /**
+     * Enables or disables dropping of digitally silent chunks in [nativeDspProcessor].
+     *
+     * @param enabled True to trim silence, false to play everything.
+     */
+    fun applySilenceTrimming(enabled: Boolean) {
+        nativeDspProcessor.setSilenceTrimming(enabled)
+    }
+
+    /**
+     * Sets whether [nativeDspProcessor] folds mono and multichannel streams (up to 24 ch)
+     * to stereo. Takes effect the next time the audio pipeline is configured.
+     *
+     * @param enabled True to always output stereo.
+     */
+    fun applyStereoDownmix(enabled: Boolean) {
+        nativeDspProcessor.forceStereoDownmix = enabled
     }
 
     /**
@@ -2,10 +2,8 @@ package app.simple.felicity.engine.managers
 
 import android.animation.ValueAnimator
 import android.content.Context
-import android.net.Uri
 import android.util.Log
 import androidx.annotation.MainThread
-import androidx.core.net.toUri
 import androidx.interpolator.view.animation.LinearOutSlowInInterpolator
 import androidx.media3.common.C
 import androidx.media3.common.MediaItem
@@ -27,10 +25,12 @@ import app.simple.felicity.engine.managers.MediaPlaybackManager.removeQueueItemS
 import app.simple.felicity.engine.managers.MediaPlaybackManager.setSongs
 import app.simple.felicity.engine.managers.MediaPlaybackManager.switchToQueue
 import app.simple.felicity.engine.managers.MediaPlaybackManager.updatePosition
+import app.simple.felicity.engine.utils.MediaItemUtils.setAudioSource
 import app.simple.felicity.preferences.ShufflePreferences
 import app.simple.felicity.repository.constants.MediaConstants
 import app.simple.felicity.repository.listeners.MediaStateListener
 import app.simple.felicity.repository.models.Audio
+import app.simple.felicity.repository.models.QueueJournalEntry
 import app.simple.felicity.repository.shuffle.Shuffle.smartShuffle
 import app.simple.felicity.repository.utils.AudioUtils.getProperAlbum
 import app.simple.felicity.repository.utils.AudioUtils.getProperArtists
@@ -50,35 +50,21 @@ import kotlinx.coroutines.flow.asStateFlow
 import kotlinx.coroutines.isActive
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
-import java.io.File
 import kotlin.math.max
 import kotlin.time.Duration.Companion.milliseconds
 
-/**
- * Converts an audio path string to a URI that ExoPlayer can open for playback.
- *
- * When the path is already a content:// URI (from a SAF-scanned file), we parse
- * it directly. Otherwise, we wrap it as a file:// URI the old-fashioned way.
- */
-private fun String.toPlaybackUri(): Uri {
-    return if (this.startsWith("content://")) {
-        this.toUri()
-    } else {
-        File(this).toUri()
-    }
-}
-
 /**
  * Builds a [MediaItem] for this audio track with essential metadata for the system notification.
  *
  * The title, artist, and album title are included so that the Media3 notification displays
  * meaningful information instead of falling back to the generic "App is running" placeholder.
  * Null or blank fields are automatically replaced with "Unknown" by the utility functions.
+ * CUE tracks come out clipped to their part of the album file, see [setAudioSource].
  */
 private fun Audio.toMediaItem(): MediaItem {
     return MediaItem.Builder()
         .setMediaId(id.toString())
-        .setUri(uri.toPlaybackUri())
+        .setAudioSource(this)
         .setMediaMetadata(
                 MediaMetadata.Builder()
                     .setTitle(getProperTitle())
@@ -93,6 +79,9 @@ object MediaPlaybackManager {
 
     private const val TAG = "MediaPlaybackManager"
 
+    /** Past this many unsaved queue edits the next save just writes the queue in full. */
+    private const val MAX_PENDING_QUEUE_EDITS = 512
+
     // Single app-scoped Main dispatcher scope to avoid leaking ad-hoc scopes
     private val scope = CoroutineScope(SupervisorJob() + Dispatchers.Main.immediate)
 
@@ -127,6 +116,21 @@ object MediaPlaybackManager {
      */
     private var activeQueueId: Int = 0
 
+    /**
+     * Queue edits made since [PlaybackStateManager] last persisted the queue, in the order
+     * they happened, so it can append them to the queue journal instead of rewriting every
+     * row. Only collected while [queueReplaced] is false — once the queue has been swapped
+     * out wholesale the next save writes a full snapshot anyway, and individual edits on
+     * top of it would be meaningless.
+     */
+    private val pendingQueueEdits = ArrayList<QueueJournalEntry>()
+
+    /** True when the next save has to write the whole queue. Starts true for the first save. */
+    private var queueReplaced = true
+
+    /** What [drainQueueEdits] hands over to the persistence side. */
+    internal class QueueEdits(val replaced: Boolean, val edits: List<QueueJournalEntry>)
+
     /**
      * Tracks positions for which a user-initiated [mediaController.seekTo] has been issued
      * but the corresponding [notifyCurrentPosition] callback has not yet arrived.
@@ -294,6 +298,7 @@ object MediaPlaybackManager {
         // Always remember the canonical order so we can restore it when shuffle is turned off.
         // This is a simple reference copy — no work done on the main thread yet.
         originalQueue = audios
+        markQueueReplaced()
 
         if (audios.isEmpty()) {
             isQueueBeingReplaced = false
@@ -352,6 +357,7 @@ object MediaPlaybackManager {
             // Back on the main thread — update all shared state and hand off to ExoPlayer.
             shuffledQueue = prep.newShuffledQueue
             songs = prep.activeQueue
+            markQueueReplaced()
             currentSongPosition = prep.clampedPosition
 
             scope.launch {
@@ -401,6 +407,44 @@ object MediaPlaybackManager {
 
     fun getSongs(): List<Audio> = songs
 
+    /**
+     * Forgets any pending queue edits and makes the next save write the whole queue.
+     * Called whenever the queue is swapped out instead of edited, and by
+     * [PlaybackStateManager] when a save fails so nothing gets lost.
+     */
+    internal fun markQueueReplaced() {
+        synchronized(pendingQueueEdits) {
+            queueReplaced = true
+            pendingQueueEdits.clear()
+        }
+    }
+
+    private fun recordQueueEdit(edit: QueueJournalEntry) {
+        synchronized(pendingQueueEdits) {
+            if (queueReplaced) return
+            if (pendingQueueEdits.size >= MAX_PENDING_QUEUE_EDITS) {
+                // Someone is going wild on the queue; a full snapshot is cheaper at this point.
+                queueReplaced = true
+                pendingQueueEdits.clear()
+                return
+            }
+            pendingQueueEdits.add(edit)
+        }
+    }
+
+    /**
+     * Hands every queue edit since the last call to the caller and starts collecting
+     * afresh. Read it together with [getSongs] on the main thread so the two line up.
+     */
+    internal fun drainQueueEdits(): QueueEdits {
+        synchronized(pendingQueueEdits) {
+            val result = QueueEdits(queueReplaced, pendingQueueEdits.toList())
+            queueReplaced = false
+            pendingQueueEdits.clear()
+            return result
+        }
+    }
+
     /**
      * Returns the queue in its original, unshuffled order. When shuffle is off this is
      * identical to [getSongs]. Save this instead of [getSongs] so the database always
@@ -426,6 +470,7 @@ object MediaPlaybackManager {
      */
     fun updateQueueSilently(audios: List<Audio>, newPosition: Int) {
         this.songs = audios
+        markQueueReplaced()
         val clampedPosition = if (audios.isEmpty()) 0 else newPosition.coerceIn(0, audios.size - 1)
         currentSongPosition = clampedPosition
         scope.launch {
@@ -479,6 +524,7 @@ object MediaPlaybackManager {
         val moved = newList.removeAt(fromIndex)
         newList.add(toIndex, moved)
         this.songs = newList
+        recordQueueEdit(QueueJournalEntry(op = QueueJournalEntry.OP_MOVE, position = fromIndex, target = toIndex, audioHash = moved.hash))
 
         // Re-derive where the playing song ended up, suppressing the position flow emission —
         // the song itself hasn't changed, only its index in the queue.
@@ -515,6 +561,7 @@ object MediaPlaybackManager {
         val newList = songs.toMutableList()
         newList.removeAt(index)
         this.songs = newList
+        recordQueueEdit(QueueJournalEntry(op = QueueJournalEntry.OP_REMOVE, position = index, audioHash = removedSong.hash))
 
         // Figure out where the currently playing song lands after removal
         val newCurrentPosition = if (wasPlayingRemovedSong) {
@@ -693,6 +740,7 @@ object MediaPlaybackManager {
                         originalQueue = targetSongs
                         shuffledQueue = emptyList()
                         songs = targetSongs
+                        markQueueReplaced()
 
                         suppressPositionEmit = true
                         currentSongPosition = newPosition
@@ -737,6 +785,7 @@ object MediaPlaybackManager {
                         songs = emptyList()
                         originalQueue = emptyList()
                         shuffledQueue = emptyList()
+                        markQueueReplaced()
                         currentSongPosition = 0
                         mediaController?.clearMediaItems()
                         mediaController?.stop()
@@ -956,6 +1005,7 @@ object MediaPlaybackManager {
             // with ExoPlayer callbacks or other main-thread code.
             shuffledQueue = result.shuffled
             songs = result.active
+            markQueueReplaced()
 
             val newPosition = currentSong
                 ?.let { cs -> result.active.indexOfFirst { it.id == cs.id } }
@@ -1112,20 +1162,10 @@ object MediaPlaybackManager {
             // Guard the appended position against spurious ExoPlayer transition callbacks
             // that fire when addMediaItem triggers a state change (e.g. from STATE_ENDED).
             val addedAt = newList.size - 1
+            recordQueueEdit(QueueJournalEntry(op = QueueJournalEntry.OP_INSERT, position = addedAt, audioHash = audio.hash))
             pendingSeekPositions.add(addedAt)
             scope.launch {
-                val uri = audio.uri.toPlaybackUri()
-                val mediaItem = MediaItem.Builder()
-                    .setMediaId(audio.id.toString())
-                    .setUri(uri)
-                    .setMediaMetadata(
-                            MediaMetadata.Builder()
-                                .setTitle(audio.getProperTitle())
-                                .setArtist(audio.getProperArtists())
-                                .setAlbumTitle(audio.getProperAlbum())
-                                .build()
-                    )
-                    .build()
+                val mediaItem = audio.toMediaItem()
                 mediaController?.addMediaItem(mediaItem)
             }
             scope.launch {
@@ -1167,23 +1207,13 @@ object MediaPlaybackManager {
         } else {
             newList.add(insertAt, audio)
             songs = newList
+            recordQueueEdit(QueueJournalEntry(op = QueueJournalEntry.OP_INSERT, position = insertAt, audioHash = audio.hash))
             // Guard the inserted position against spurious ExoPlayer transition callbacks
             // that fire when addMediaItem triggers a state change (e.g. from STATE_ENDED).
             pendingSeekPositions.add(insertAt)
 
             scope.launch {
-                val uri = audio.uri.toPlaybackUri()
-                val mediaItem = MediaItem.Builder()
-                    .setMediaId(audio.id.toString())
-                    .setUri(uri)
-                    .setMediaMetadata(
-                            MediaMetadata.Builder()
-                                .setTitle(audio.getProperTitle())
-                                .setArtist(audio.getProperArtists())
-                                .setAlbumTitle(audio.getProperAlbum())
-                                .build()
-                    )
-                    .build()
+                val mediaItem = audio.toMediaItem()
                 mediaController?.addMediaItem(insertAt, mediaItem)
             }
             scope.launch {
@@ -1232,23 +1262,13 @@ object MediaPlaybackManager {
             // New song — insert, seek, and play.
             newList.add(insertAt, audio)
             songs = newList
+            recordQueueEdit(QueueJournalEntry(op = QueueJournalEntry.OP_INSERT, position = insertAt, audioHash = audio.hash))
             lastNavigationDirection = true
             currentSongPosition = insertAt
             pendingSeekPositions.add(insertAt)
 
             scope.launch {
-                val uri = audio.uri.toPlaybackUri()
-                val mediaItem = MediaItem.Builder()
-                    .setMediaId(audio.id.toString())
-                    .setUri(uri)
-                    .setMediaMetadata(
-                            MediaMetadata.Builder()
-                                .setTitle(audio.getProperTitle())
-                                .setArtist(audio.getProperArtists())
-                                .setAlbumTitle(audio.getProperAlbum())
-                                .build()
-                    )
-                    .build()
+                val mediaItem = audio.toMediaItem()
                 mediaController?.addMediaItem(insertAt, mediaItem)
                 mediaController?.seekTo(insertAt, 0L)
                 mediaController?.play()
@@ -1345,13 +1365,26 @@ object MediaPlaybackManager {
 
     /**
      * Re-emits the current position so that all [MediaFragment] observers receive an updated
-     * [onAudio] callback. Call this after mutating an [Audio] object in the queue in-place
-     * (e.g. after toggling [Audio.isFavorite]).
+     * [onAudio] callback. Call this after swapping an updated copy of the current song into
+     * the queue with [updateQueuedSong] (e.g. after toggling [Audio.isFavorite]).
      */
     fun notifyCurrentSongUpdated() {
         scope.launch { _songPositionFlow.emit(currentSongPosition) }
     }
 
+    /**
+     * Swaps every queued entry with the same ID as [audio] for [audio] itself and emits the
+     * new list. The songs in the queue are the same objects the library snapshot and every
+     * list on screen hold, so a flag like [Audio.isFavorite] has to be changed on a copy and
+     * put back through here rather than written into the shared object. Positions and the
+     * queue journal are left alone since nothing moved.
+     */
+    fun updateQueuedSong(audio: Audio) {
+        if (songs.none { it.id == audio.id }) return
+        songs = songs.map { if (it.id == audio.id) audio else it }
+        scope.launch { _songListFlow.emit(songs) }
+    }
+
     /**
      * Replaces the currently playing [Audio] in the internal list with the provided [audio] and
      * emits the updated list so that observers can update their UI. This is useful for in
@@ -1371,8 +1404,13 @@ object MediaPlaybackManager {
 
         if (currentSongPosition in songs.indices) {
             val newList = songs.toMutableList()
+            val replacedHash = newList[currentSongPosition].hash
             newList[currentSongPosition] = audio
             songs = newList
+            if (replacedHash != audio.hash) {
+                recordQueueEdit(QueueJournalEntry(op = QueueJournalEntry.OP_REMOVE, position = currentSongPosition, audioHash = replacedHash))
+                recordQueueEdit(QueueJournalEntry(op = QueueJournalEntry.OP_INSERT, position = currentSongPosition, audioHash = audio.hash))
+            }
             scope.launch { _songListFlow.emit(songs) }
         } else {
             Log.w(
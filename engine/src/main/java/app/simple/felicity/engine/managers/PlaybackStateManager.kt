@@ -7,8 +7,11 @@ import app.simple.felicity.repository.database.instances.AudioDatabase
 import app.simple.felicity.repository.models.Audio
 import app.simple.felicity.repository.models.PlaybackQueueEntry
 import app.simple.felicity.repository.models.PlaybackState
+import app.simple.felicity.repository.models.QueueJournalEntry
 import app.simple.felicity.repository.models.SavedQueueEntry
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
 import kotlinx.coroutines.withContext
 
 /**
@@ -29,6 +32,13 @@ import kotlinx.coroutines.withContext
  * <p>Queue slot IDs range from 0 to 4 (five total). Slot 0 is the default and
  * represents the original single-queue behavior.</p>
  *
+ * <p>The periodic save is split in two. The scalar state is a tiny heartbeat row that
+ * is rewritten every time, while the queue itself is only rewritten when it was replaced
+ * outright. Smaller edits (add, play next, move, remove) are appended to
+ * {@code playback_queue_journal} instead and folded back into the snapshot once the
+ * journal gets long, or when the queue is restored. A huge queue therefore no longer
+ * costs thousands of row writes every ten seconds when nothing but the seek moved.</p>
+ *
  * @author Hamza417
  */
 object PlaybackStateManager {
@@ -38,6 +48,15 @@ object PlaybackStateManager {
     /** Number of independent queue slots available to the user. */
     const val QUEUE_COUNT = 10
 
+    /** Journal length past which the next save folds it back into the queue snapshot. */
+    private const val JOURNAL_COMPACT_THRESHOLD = 500
+
+    /**
+     * Keeps saves from overlapping, since the journal only makes sense when its edits are
+     * appended in the same order they were drained from [MediaPlaybackManager].
+     */
+    private val saveLock = Mutex()
+
     /**
      * Bundles a restored queue together with the playback position the user was at
      * when they last left that queue, so [MediaPlaybackManager] can resume exactly
@@ -52,64 +71,88 @@ object PlaybackStateManager {
     /**
      * Saves the current playback state from [MediaPlaybackManager] to the database.
      *
-     * <p>This writes two things atomically:</p>
-     * <ol>
-     *   <li>The active queue (as {@link PlaybackQueueEntry} rows) and scalar state
-     *       (index, seek, shuffle) into their primary tables so the app can restore
-     *       on next launch.</li>
-     *   <li>The same queue into the {@code saved_queue} slot matching the currently
-     *       active queue ID, so the archive stays up-to-date for queue switching.</li>
-     * </ol>
+     * <p>The scalar state (index, seek, shuffle, active queue) is written every time.
+     * The queue is written in full only when [MediaPlaybackManager] reports that it was
+     * replaced since the last save — the snapshot is then mirrored into the matching
+     * {@code saved_queue} slot as well. Otherwise any edits made in the meantime are
+     * appended to the queue journal, and nothing at all is written for the queue when
+     * it hasn't changed.</p>
      *
      * @param context  The application context.
      * @param logTag   Optional tag for logging (defaults to TAG).
      * @return {@code true} if state was saved successfully, {@code false} otherwise.
      */
     suspend fun saveCurrentPlaybackState(context: Context, logTag: String = TAG): Boolean {
-        // Always persist the original (unshuffled) queue so we can restore and optionally
-        // re-shuffle on the next launch rather than saving an already-shuffled order.
-        val songs = MediaPlaybackManager.getSongs()
-        if (songs.isEmpty()) {
-            Log.w(logTag, "Songs list is empty, skipping state save")
-            return false
-        }
+        return saveLock.withLock {
+            var songs: List<Audio> = emptyList()
+            var edits: MediaPlaybackManager.QueueEdits? = null
+            var seek = 0L
+            var position = 0
+
+            withContext(Dispatchers.Main) {
+                // The queue and its pending edits are read together on the main thread,
+                // where every edit happens, so the two always describe the same queue.
+                songs = MediaPlaybackManager.getSongs()
+                if (songs.isEmpty()) return@withContext
 
-        var seek = 0L
-        var position = 0
-
-        withContext(Dispatchers.Main) {
-            seek = MediaPlaybackManager.getSeekPosition()
-            // When shuffle is on the active queue is shuffled, but the index we want to
-            // restore is the one matching the current song inside the ORIGINAL queue.
-            val currentSong = MediaPlaybackManager.getCurrentSong()
-            position = if (currentSong != null) {
-                songs.indexOfFirst { it.id == currentSong.id }.coerceAtLeast(0)
-            } else {
-                MediaPlaybackManager.getCurrentSongPosition()
+                edits = MediaPlaybackManager.drainQueueEdits()
+                seek = MediaPlaybackManager.getSeekPosition()
+                // When shuffle is on the active queue is shuffled, but the index we want to
+                // restore is the one matching the current song inside the ORIGINAL queue.
+                val currentSong = MediaPlaybackManager.getCurrentSong()
+                position = if (currentSong != null) {
+                    songs.indexOfFirst { it.id == currentSong.id }.coerceAtLeast(0)
+                } else {
+                    MediaPlaybackManager.getCurrentSongPosition()
+                }
             }
-        }
 
-        return try {
-            val audioDatabase = AudioDatabase.getInstance(context)
-            val activeQueueId = MediaPlaybackManager.getActiveQueueId()
-            savePlaybackState(
-                    db = audioDatabase,
-                    queueHash = songs.map { it.hash },
-                    index = position,
-                    position = seek,
-                    shuffle = ShufflePreferences.isShuffleEnabled(),
-                    repeat = 0,
-                    activeQueueId = activeQueueId
-            )
-            Log.d(
-                    logTag, "Playback state saved: position=$position, seek=$seek, " +
-                    "queueSize=${songs.size}, shuffle=${ShufflePreferences.isShuffleEnabled()}, " +
-                    "activeQueue=$activeQueueId"
-            )
-            true
-        } catch (e: Exception) {
-            Log.e(logTag, "Error saving playback state", e)
-            false
+            val queueEdits = edits
+            if (queueEdits == null) {
+                Log.w(logTag, "Songs list is empty, skipping state save")
+                return@withLock false
+            }
+
+            try {
+                val audioDatabase = AudioDatabase.getInstance(context)
+                val activeQueueId = MediaPlaybackManager.getActiveQueueId()
+                val queueHash = songs.map { it.hash }
+                val shuffle = ShufflePreferences.isShuffleEnabled()
+
+                val written = when {
+                    queueEdits.replaced -> {
+                        writeFullState(audioDatabase, queueHash, position, seek, shuffle, 0, activeQueueId)
+                        "snapshot"
+                    }
+                    queueEdits.edits.isNotEmpty() &&
+                            audioDatabase.playbackQueueDao().getJournalSize() + queueEdits.edits.size > JOURNAL_COMPACT_THRESHOLD -> {
+                        // The journal is long enough that replaying it would cost more than
+                        // the snapshot it saves us; fold everything into a fresh snapshot.
+                        writeFullState(audioDatabase, queueHash, position, seek, shuffle, 0, activeQueueId)
+                        "compacted"
+                    }
+                    else -> {
+                        if (queueEdits.edits.isNotEmpty()) {
+                            audioDatabase.playbackQueueDao().appendJournal(queueEdits.edits)
+                        }
+                        audioDatabase.playbackStateDao().save(
+                                buildState(queueHash, position, seek, shuffle, 0, activeQueueId))
+                        "${queueEdits.edits.size} edits"
+                    }
+                }
+
+                Log.d(
+                        logTag, "Playback state saved: position=$position, seek=$seek, " +
+                        "queueSize=${songs.size}, shuffle=$shuffle, " +
+                        "activeQueue=$activeQueueId, queue=$written"
+                )
+                true
+            } catch (e: Exception) {
+                // The drained edits may not have made it to disk; write everything next time.
+                MediaPlaybackManager.markQueueReplaced()
+                Log.e(logTag, "Error saving playback state", e)
+                false
+            }
         }
     }
 
@@ -117,8 +160,13 @@ object PlaybackStateManager {
      * Persists the given queue and scalar playback state to the database.
      *
      * <p>The previous queue rows are deleted and replaced atomically so there are never
-     * stale slots from a prior session. The queue is also archived into its matching
-     * {@code saved_queue} slot so queue-switching always sees the latest state.</p>
+     * stale slots from a prior session, and the queue journal is dropped with them. The
+     * queue is also archived into its matching {@code saved_queue} slot so queue-switching
+     * always sees the latest state.</p>
+     *
+     * <p>Since the given queue may not be the one [MediaPlaybackManager] is holding, the
+     * next periodic save writes the in-memory queue in full too rather than appending
+     * edits on top of a snapshot it didn't write.</p>
      *
      * @param db            The open [AudioDatabase] instance.
      * @param queueHash     Ordered list of audio hashes representing the queue.
@@ -139,25 +187,31 @@ object PlaybackStateManager {
     ) {
         if (queueHash.isEmpty()) return
 
-        val currentHash = queueHash.getOrElse(index) { 0L }
-
-        val state = PlaybackState(
-                index = index,
-                position = position,
-                shuffle = shuffle,
-                repeatMode = repeat,
-                updatedAt = System.currentTimeMillis(),
-                currentHash = currentHash,
-                activeQueueId = activeQueueId
-        )
+        saveLock.withLock {
+            writeFullState(db, queueHash, index, position, shuffle, repeat, activeQueueId)
+            MediaPlaybackManager.markQueueReplaced()
+        }
+    }
 
+    /**
+     * Writes the queue snapshot, the scalar state and the {@code saved_queue} mirror.
+     * The caller must hold [saveLock].
+     */
+    private suspend fun writeFullState(
+            db: AudioDatabase,
+            queueHash: List<Long>,
+            index: Int,
+            position: Long,
+            shuffle: Boolean,
+            repeat: Int,
+            activeQueueId: Int
+    ) {
         val entries = queueHash.mapIndexed { pos, hash ->
             PlaybackQueueEntry(queuePos = pos, audioHash = hash)
         }
 
-        db.playbackQueueDao().clear()
-        db.playbackQueueDao().insertAll(entries)
-        db.playbackStateDao().save(state)
+        db.playbackQueueDao().replaceQueue(entries)
+        db.playbackStateDao().save(buildState(queueHash, index, position, shuffle, repeat, activeQueueId))
 
         // Mirror the queue into the saved_queue archive so queue-switching always
         // has an up-to-date copy of the active slot, including the current playback
@@ -165,6 +219,25 @@ object PlaybackStateManager {
         saveQueueToSlot(db, activeQueueId, queueHash, index, position)
     }
 
+    private fun buildState(
+            queueHash: List<Long>,
+            index: Int,
+            position: Long,
+            shuffle: Boolean,
+            repeat: Int,
+            activeQueueId: Int
+    ): PlaybackState {
+        return PlaybackState(
+                index = index,
+                position = position,
+                shuffle = shuffle,
+                repeatMode = repeat,
+                updatedAt = System.currentTimeMillis(),
+                currentHash = queueHash.getOrElse(index) { 0L },
+                activeQueueId = activeQueueId
+        )
+    }
+
     /**
      * Archives a queue into the {@code saved_queue} table under the given slot ID.
      *
@@ -306,8 +379,9 @@ object PlaybackStateManager {
         val entries = targetSongs.mapIndexed { pos, audio ->
             PlaybackQueueEntry(queuePos = pos, audioHash = audio.hash)
         }
-        db.playbackQueueDao().clear()
-        db.playbackQueueDao().insertAll(entries)
+        saveLock.withLock {
+            db.playbackQueueDao().replaceQueue(entries)
+        }
 
         Log.d(
                 TAG, "switchToQueue: switched from queue $currentQueueId to $targetQueueId " +
@@ -343,10 +417,25 @@ object PlaybackStateManager {
      * <p>Songs that were cascade-deleted since the last save are absent from the
      * result automatically — no stale entries are ever returned.</p>
      *
+     * <p>Any journaled edits are replayed onto the snapshot first and the result is
+     * written back as the new snapshot, so the journal starts empty every session.</p>
+     *
      * @param db The open [AudioDatabase] instance.
      * @return The queue, or {@code null} if no queue was saved.
      */
     suspend fun getAudiosFromQueueIDs(db: AudioDatabase): MutableList<Audio>? {
+        saveLock.withLock {
+            val journal = db.playbackQueueDao().getJournal()
+            if (journal.isNotEmpty()) {
+                val hashes = db.playbackQueueDao().getQueue().mapTo(ArrayList()) { it.audioHash }
+                QueueJournalEntry.replay(hashes, journal)
+                db.playbackQueueDao().replaceQueue(hashes.mapIndexed { pos, hash ->
+                    PlaybackQueueEntry(queuePos = pos, audioHash = hash)
+                })
+                Log.d(TAG, "Replayed ${journal.size} queue edits onto the saved queue")
+            }
+        }
+
         val audios = db.playbackQueueDao().getQueuedAudios()
         return if (audios.isEmpty()) null else audios.toMutableList()
     }
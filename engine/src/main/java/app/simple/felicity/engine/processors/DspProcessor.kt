@@ -9,13 +9,16 @@ import kotlin.math.abs
  * Owns a single native [DspContext] that applies a complete, zero-allocation DSP chain
  * to a caller-provided [FloatArray] of interleaved PCM samples in a single JNI call:
  *
+ *   0. Silence trimming, multichannel → stereo downmix, and karaoke center removal —
+ *      see [setSilenceTrimming], [setDownmix], and [setKaraoke]
  *   1. 10-band peaking EQ (ISO standard: 31 Hz through 16 kHz, RBJ biquad) — gated by [setEqEnabled]
  *   2. Bass low-shelf  (250 Hz, S = 1) — always active, independent of the EQ toggle
  *   3. Treble high-shelf (4000 Hz, S = 1) — always active, independent of the EQ toggle
  *   4. Stereo widening via M/S matrix
  *   5. Constant-power pan / balance
  *   6. Tape-style soft saturation (algebraic sigmoid, no tanh)
- *   7. Mono downmix → visualizer FFT backfeed
+ *   7. Freeverb-style reverb, then the night mode compressor ([setNightMode])
+ *   8. Mono downmix → visualizer FFT backfeed
  *
  * The hot path ([processAudio]) pins the JVM array with GetFloatArrayElements,
  * modifies it in-place through the NEON-accelerated C++ chain, and releases it
@@ -201,18 +204,79 @@ class DspProcessor(
     }
 
     /**
-     * The zero-allocation audio processing hot path.
+     * Switches karaoke center-channel (vocal) removal on or off. Stereo streams only; for
+     * mono the stage is skipped since there is no center image to separate.
      *
-     * Passes [pcmBuffer] directly into the native DSP chain where it is modified in-place.
-     * The buffer must contain exactly [frameCount] × [channelCount] interleaved float samples
-     * in the range [-1.0, 1.0]. After this call the buffer holds the fully processed audio,
-     * ready to be written to an AudioTrack.
+     * @param enabled True to subtract the mid signal from both channels.
+     */
+    fun setKaraoke(enabled: Boolean) {
+        if (nativeHandle == 0L) return
+        nativeDspSetKaraoke(nativeHandle, enabled)
+    }
+
+    /**
+     * Switches the night mode compressor on or off. It squashes loud peaks, lifts the quiet
+     * passages with makeup gain, and hard-limits the result to full scale.
+     *
+     * @param enabled True to compress.
+     */
+    fun setNightMode(enabled: Boolean) {
+        if (nativeHandle == 0L) return
+        nativeDspSetNightMode(nativeHandle, enabled)
+    }
+
+    /**
+     * Configures silence trimming. While enabled, [processAudio] called with `reshape = true`
+     * returns 0 for any buffer whose samples all sit within +/-[threshold].
      *
-     * @param pcmBuffer Interleaved PCM float array; modified in-place by the native engine.
+     * @param enabled   True to drop silent buffers.
+     * @param threshold Linear amplitude at or below which a sample counts as silence.
      */
-    fun processAudio(pcmBuffer: FloatArray) {
+    fun setSilenceTrimming(enabled: Boolean, threshold: Float) {
         if (nativeHandle == 0L) return
-        nativeDspProcessAudio(nativeHandle, pcmBuffer)
+        nativeDspSetSilenceTrimming(nativeHandle, enabled, threshold.coerceIn(0f, 1f))
+    }
+
+    /**
+     * Tells the engine that the buffers handed to [processAudio] are [inputChannelCount]
+     * channels wide and have to be folded to stereo first. Only meaningful when this
+     * processor was configured for two channels; passing 2 turns the downmix off.
+     *
+     * @param inputChannelCount Channel count of the decoder output, 1 to 24.
+     */
+    fun setDownmix(inputChannelCount: Int) {
+        if (nativeHandle == 0L) return
+        nativeDspSetDownmix(nativeHandle, inputChannelCount)
+    }
+
+    /**
+     * True when every stage is currently set to leave the audio untouched, so the caller
+     * can pass its buffer along as it is and skip the float conversion altogether.
+     */
+    val isNeutral: Boolean
+        get() = nativeHandle == 0L || nativeDspIsNeutral(nativeHandle)
+
+    /**
+     * The zero-allocation audio processing hot path.
+     *
+     * Passes [pcmBuffer] directly into the native DSP chain where it is modified in-place.
+     * The first [sampleCount] elements must hold interleaved float samples in the range
+     * [-1.0, 1.0]. After this call the buffer holds the fully processed audio, ready to be
+     * written to an AudioTrack.
+     *
+     * With [reshape] set, the silence trimming and downmix stages run as well, so the
+     * amount of output can differ from the input: 0 when the buffer was dropped as silence,
+     * or a different sample count when it was folded to stereo. A mono source being upmixed
+     * needs [pcmBuffer] to be at least twice [sampleCount] long.
+     *
+     * @param pcmBuffer   Interleaved PCM float array; modified in-place by the native engine.
+     * @param sampleCount Number of valid samples at the start of [pcmBuffer].
+     * @param reshape     Allow stages that change the number of samples.
+     * @return Number of valid samples in [pcmBuffer] after processing.
+     */
+    fun processAudio(pcmBuffer: FloatArray, sampleCount: Int = pcmBuffer.size, reshape: Boolean = false): Int {
+        if (nativeHandle == 0L) return sampleCount
+        return nativeDspProcessAudio(nativeHandle, pcmBuffer, sampleCount, reshape)
     }
 
     /**
@@ -250,7 +314,8 @@ class DspProcessor(
 
     /**
      * Convenience helper that resets the EQ to flat, bass/treble to 0 dB, stereo width
-     * to natural, pan to center, saturation to off, and reverb to bypassed in one call.
+     * to natural, pan to center, saturation to off, reverb to bypassed, and karaoke and
+     * night mode to off in one call.
      */
     fun resetToDefaults() {
         setEqBands(FloatArray(10), 0f, 0f)
@@ -260,6 +325,8 @@ class DspProcessor(
         setBalance(0f)
         setSaturation(0f)
         setReverb(0f, 0.5f, 0.3f, 0.5f)
+        setKaraoke(false)
+        setNightMode(false)
     }
 
     /**
@@ -404,13 +471,57 @@ class DspProcessor(
     private external fun nativeDspSetOutputLatency(handle: Long, latencyMs: Int)
 
     /**
-     * Zero-allocation hot-path entrypoint. Applies the full DSP chain to [pcmBuffer]
-     * in-place via GetFloatArrayElements / ReleaseFloatArrayElements with mode 0.
+     * Zero-allocation hot-path entrypoint. Applies the full DSP chain to the first
+     * [sampleCount] samples of [pcmBuffer] in-place via GetFloatArrayElements /
+     * ReleaseFloatArrayElements with mode 0.
+     *
+     * @param handle      Opaque pointer from [nativeDspCreate].
+     * @param pcmBuffer   Interleaved float PCM; modified in-place.
+     * @param sampleCount Number of valid input samples.
+     * @param reshape     Allow the silence trimming and downmix stages.
+     * @return Number of valid output samples; 0 when the buffer was trimmed.
+     */
+    private external fun nativeDspProcessAudio(handle: Long, pcmBuffer: FloatArray, sampleCount: Int, reshape: Boolean): Int
+
+    /**
+     * Enables or disables karaoke center removal.
+     *
+     * @param handle  Opaque pointer from [nativeDspCreate].
+     * @param enabled True to remove the center image.
+     */
+    private external fun nativeDspSetKaraoke(handle: Long, enabled: Boolean)
+
+    /**
+     * Enables or disables the night mode compressor, resetting its envelope when enabled.
+     *
+     * @param handle  Opaque pointer from [nativeDspCreate].
+     * @param enabled True to compress.
+     */
+    private external fun nativeDspSetNightMode(handle: Long, enabled: Boolean)
+
+    /**
+     * Configures the silence trimming stage.
      *
      * @param handle    Opaque pointer from [nativeDspCreate].
-     * @param pcmBuffer Interleaved float PCM; modified in-place.
+     * @param enabled   True to drop silent buffers.
+     * @param threshold Linear silence threshold.
+     */
+    private external fun nativeDspSetSilenceTrimming(handle: Long, enabled: Boolean, threshold: Float)
+
+    /**
+     * Sets the decoder channel count the downmix stage folds to stereo.
+     *
+     * @param handle            Opaque pointer from [nativeDspCreate].
+     * @param inputChannelCount Channel count of incoming buffers.
+     */
+    private external fun nativeDspSetDownmix(handle: Long, inputChannelCount: Int)
+
+    /**
+     * Reports whether every stage is currently a no-op.
+     *
+     * @param handle Opaque pointer from [nativeDspCreate].
      */
-    private external fun nativeDspProcessAudio(handle: Long, pcmBuffer: FloatArray)
+    private external fun nativeDspIsNeutral(handle: Long): Boolean
 
     /**
      * Atomically copies the latest per-band RMS magnitudes into [outBuffer] and clears the
@@ -10,14 +10,21 @@ import java.nio.ByteOrder
 import kotlin.math.pow
 
 /**
- * A unified [AudioProcessor] that delegates the entire DSP chain — 10-band peaking EQ,
- * bass low-shelf, treble high-shelf, stereo widening (M/S), constant-power pan, and
- * tape-style saturation — to the native [DspProcessor] via a single JNI hot-path call.
+ * A unified [AudioProcessor] that delegates the entire DSP chain — silence trimming,
+ * stereo downmix, karaoke, 10-band peaking EQ, bass low-shelf, treble high-shelf, stereo
+ * widening (M/S), constant-power pan, tape-style saturation, reverb, and night mode — to
+ * the native [DspProcessor] via a single JNI hot-path call.
  *
  * This processor consolidates six formerly separate Kotlin AudioProcessor slots (10-band EQ,
  * bass shelf, treble shelf, stereo widening, balance, and tape saturation) into a single
  * chain executed entirely inside the ARM NEON C++ engine — removing all per-effect
- * ByteBuffer allocation and JNI round-trip overhead from the audio hot path.
+ * ByteBuffer allocation and JNI round-trip overhead from the audio hot path. Silence
+ * trimming, downmix, karaoke, and night mode used to be four more Kotlin processors that
+ * each decoded and re-encoded every sample (and copied the buffer even while switched
+ * off); they are now stages in the same native pass.
+ *
+ * When every stage is neutral and the gain is unity the input buffer is handed straight
+ * to the next processor without being converted at all.
  *
  * The native engine also accumulates a per-frame mono downmix and, once the ring buffer
  * fills, applies the pre-computed Hann window, runs the PFFFT forward transform, and
@@ -29,9 +36,9 @@ import kotlin.math.pow
  * as Kotlin-side fields so that setter calls made before the first [configure] invocation
  * are remembered and applied atomically when the native context is (re)created.
  *
- * Hot-path allocation strategy: a single [workBuf] [FloatArray] is pre-allocated once
- * per audio format change and reused on every subsequent [queueInput] call. The only
- * reallocation is triggered when the chunk size changes — which is rare in practice.
+ * Hot-path allocation strategy: a single [workBuf] [FloatArray] and a single direct
+ * [processedBuffer] are grown to the largest chunk seen and reused on every subsequent
+ * [queueInput] call, so steady-state playback allocates nothing.
  *
  * Supported encodings: PCM_16BIT, PCM_24BIT, PCM_32BIT, PCM_FLOAT.
  *
@@ -47,6 +54,7 @@ class NativeDspAudioProcessor(
 ) : AudioProcessor {
 
     private var inputFormat: AudioProcessor.AudioFormat = AudioProcessor.AudioFormat.NOT_SET
+    private var outputFormat: AudioProcessor.AudioFormat = AudioProcessor.AudioFormat.NOT_SET
     private var active = false
     private var inputEnded = false
     private var outputBuffer: ByteBuffer = AudioProcessor.EMPTY_BUFFER
@@ -55,10 +63,16 @@ class NativeDspAudioProcessor(
 
     /**
      * Reusable float work buffer for converting PCM to/from the [FloatArray] expected by
-     * [DspProcessor.processAudio]. Only reallocated when the audio chunk size changes.
+     * [DspProcessor.processAudio]. Only grows, and only when a larger chunk shows up.
      */
     private var workBuf = FloatArray(0)
 
+    /**
+     * Direct buffer the processed PCM is written into. Media3 drains [getOutput] before it
+     * queues the next input, so the same buffer is safe to refill every time.
+     */
+    private var processedBuffer: ByteBuffer = AudioProcessor.EMPTY_BUFFER
+
     /**
      * Linear pre-amplifier gain applied to every sample before the native DSP chain.
      * Default 1.0 = unity (0 dB). Updated by [setPreamp].
@@ -83,6 +97,14 @@ class NativeDspAudioProcessor(
     @Volatile
     private var tagReplayGainLinearGain: Float = 1f
 
+    /**
+     * The linear gain [setTagReplayGainDb] currently applies.
+     * [CrossfadeMixer][app.simple.felicity.engine.audio.CrossfadeMixer] levels the next
+     * track's head against it, since the head goes through this same multiply.
+     */
+    val tagReplayGain: Float
+        get() = tagReplayGainLinearGain
+
     /**
      * When set to `true`, [queueInput] becomes a transparent passthrough — the buffer is
      * returned from [getOutput] unchanged and no DSP is applied. This lets [FelicityAudioSink]
@@ -108,6 +130,31 @@ class NativeDspAudioProcessor(
      */
     private var bandGains: FloatArray = FloatArray(BAND_COUNT)
 
+    /** Karaoke center-channel removal, mirrored to the native engine on each update. */
+    @Volatile
+    private var karaokeEnabled: Boolean = false
+
+    /** Night mode compressor, mirrored to the native engine on each update. */
+    @Volatile
+    private var nightModeEnabled: Boolean = false
+
+    /** Drop buffers that are entirely digital silence. */
+    @Volatile
+    private var silenceTrimEnabled: Boolean = false
+
+    /** Linear amplitude at or below which a sample counts as silence. */
+    @Volatile
+    private var silenceThreshold: Float = DEFAULT_SILENCE_THRESHOLD
+
+    /**
+     * When true, any non-stereo stream (mono or up to [MAX_DOWNMIX_CHANNELS] channels) is
+     * folded to stereo by the native engine. Read in [configure], so it takes effect the
+     * next time the pipeline is configured; the service rebuilds the player when the
+     * preference changes.
+     */
+    @Volatile
+    var forceStereoDownmix: Boolean = false
+
     /** Bass low-shelf gain in dB, mirrored to the native engine on each update. */
     @Volatile
     private var bassDb: Float = 0f
@@ -208,29 +255,40 @@ class NativeDspAudioProcessor(
      * Any other format (e.g., compressed audio) returns [AudioProcessor.AudioFormat.NOT_SET]
      * to signal Media3 to bypass this processor entirely.
      *
+     * With [forceStereoDownmix] on, a non-stereo input is reported as stereo output and the
+     * native context is created for two channels; the engine folds each buffer down before
+     * the rest of the chain sees it.
+     *
      * @param inputAudioFormat The audio format provided by the upstream pipeline.
-     * @return The (unchanged) output format when active; [AudioProcessor.AudioFormat.NOT_SET] otherwise.
+     * @return The output format when active; [AudioProcessor.AudioFormat.NOT_SET] otherwise.
      */
     override fun configure(inputAudioFormat: AudioProcessor.AudioFormat): AudioProcessor.AudioFormat {
         active = PcmUtils.isEncodingSupported(inputAudioFormat.encoding)
 
         if (!active) {
             inputFormat = AudioProcessor.AudioFormat.NOT_SET
+            outputFormat = AudioProcessor.AudioFormat.NOT_SET
             releaseNativeContext()
             return AudioProcessor.AudioFormat.NOT_SET
         }
 
+        val inputChannels = inputAudioFormat.channelCount
+        val downmix = forceStereoDownmix && inputChannels != 2 && inputChannels in 1..MAX_DOWNMIX_CHANNELS
+        val outputChannels = if (downmix) 2 else inputChannels
+
         val formatChanged = inputAudioFormat.sampleRate != inputFormat.sampleRate ||
-                inputAudioFormat.channelCount != inputFormat.channelCount
+                inputChannels != inputFormat.channelCount ||
+                outputChannels != outputFormat.channelCount
 
         inputFormat = inputAudioFormat
+        outputFormat = AudioProcessor.AudioFormat(inputAudioFormat.sampleRate, outputChannels, inputAudioFormat.encoding)
 
         if (dspProcessor == null || formatChanged) {
             releaseNativeContext()
             val newDsp = DspProcessor(
                     visualizerProcessor,
                     inputAudioFormat.sampleRate,
-                    inputAudioFormat.channelCount
+                    outputChannels
             )
             dspProcessor = if (newDsp.isReady) newDsp else null
         } else {
@@ -241,7 +299,7 @@ class NativeDspAudioProcessor(
              * user's saved settings survive any pipeline reconfiguration without requiring them
              * to touch a knob to "reload" the effects.
              */
-            dspProcessor?.configure(inputAudioFormat.sampleRate, inputAudioFormat.channelCount)
+            dspProcessor?.configure(inputAudioFormat.sampleRate, outputChannels)
         }
 
         /**
@@ -255,7 +313,7 @@ class NativeDspAudioProcessor(
          */
         pushAllParameters()
 
-        return inputAudioFormat
+        return outputFormat
     }
 
     override fun isActive(): Boolean = active
@@ -263,7 +321,7 @@ class NativeDspAudioProcessor(
     /**
      * Converts the incoming PCM chunk to a [FloatArray], optionally applies pre-amp, runs the
      * full native DSP chain in-place via [DspProcessor.processAudio], then re-encodes back to the
-     * original PCM format.
+     * output PCM format.
      *
      * Float32 guarantee — every encoding is widened to 32-bit float BEFORE entering [workBuf]
      * and the native DSP chain. No 16-bit (or any integer) arithmetic is performed inside the
@@ -281,6 +339,10 @@ class NativeDspAudioProcessor(
      * For [C.ENCODING_PCM_FLOAT] with unity preamp, the [ByteBuffer] is read as a [FloatBuffer]
      * view directly into [workBuf] — the fastest possible path with zero per-sample overhead.
      *
+     * When the native engine drops the chunk as silence nothing is output for it; when it
+     * folds the chunk to stereo the output holds fewer (or, for mono, more) samples than
+     * went in.
+     *
      * @param inputBuffer Raw PCM data from the upstream processor; position is advanced by
      *                    exactly [ByteBuffer.remaining] bytes on return.
      */
@@ -303,6 +365,17 @@ class NativeDspAudioProcessor(
             return
         }
 
+        val preamp = preampLinearGain * replayGainLinearGain * tagReplayGainLinearGain
+
+        /**
+         * Nothing to do: every stage is off and the gain is unity, so the bytes would come
+         * out exactly as they went in. Hand the buffer on without touching it.
+         */
+        if (preamp == 1f && dsp.isNeutral) {
+            outputBuffer = inputBuffer
+            return
+        }
+
         val encoding = inputFormat.encoding
         val bps = PcmUtils.bytesPerSample(encoding)
         val remaining = inputBuffer.remaining()
@@ -313,13 +386,15 @@ class NativeDspAudioProcessor(
             return
         }
 
-        /** Resize the work buffer only when the chunk size changes (rare outside of warmup). */
-        if (workBuf.size != numSamples) {
-            workBuf = FloatArray(numSamples)
+        /**
+         * Grow the work buffer only when a larger chunk arrives (rare outside of warmup).
+         * An upmixed mono chunk needs room for twice its input samples.
+         */
+        val capacity = maxOf(numSamples, numSamples / inputFormat.channelCount * outputFormat.channelCount)
+        if (workBuf.size < capacity) {
+            workBuf = FloatArray(capacity)
         }
 
-        val preamp = preampLinearGain * replayGainLinearGain * tagReplayGainLinearGain
-
         /**
          * Input stage: all PCM encodings are converted to 32-bit float here.
          * After this block [workBuf] contains only Float32 values in the range
@@ -332,7 +407,7 @@ class NativeDspAudioProcessor(
          * `10f.pow(0f / 20f)` = `1.0f` exactly under IEEE 754 when the dB value is 0.
          */
         if (encoding == C.ENCODING_PCM_FLOAT && preamp == 1f) {
-            inputBuffer.asFloatBuffer().get(workBuf)
+            inputBuffer.asFloatBuffer().get(workBuf, 0, numSamples)
             inputBuffer.position(inputBuffer.limit())
         } else {
             /**
@@ -350,19 +425,26 @@ class NativeDspAudioProcessor(
          * the NEON-accelerated native engine. All biquad states, gain coefficients, and
          * intermediate SIMD vectors are 32-bit throughout (see [dsp-engine.cpp]).
          */
-        dsp.processAudio(workBuf)
+        val outSamples = dsp.processAudio(workBuf, numSamples, reshape = true)
+
+        if (outSamples <= 0) {
+            // Trimmed as silence; the input has been consumed and nothing goes out.
+            outputBuffer = AudioProcessor.EMPTY_BUFFER
+            return
+        }
 
         /**
          * Output stage: float32 values in [workBuf] are scaled and packed back into the
          * target integer encoding only here — integers never appear earlier in the chain.
          */
-        val buf = acquireOutputBuffer(remaining)
+        val outBytes = outSamples * bps
+        val buf = acquireOutputBuffer(outBytes)
 
         if (encoding == C.ENCODING_PCM_FLOAT) {
-            buf.asFloatBuffer().put(workBuf)
-            buf.position(remaining)
+            buf.asFloatBuffer().put(workBuf, 0, outSamples)
+            buf.position(outBytes)
         } else {
-            for (i in 0 until numSamples) {
+            for (i in 0 until outSamples) {
                 PcmUtils.writeFloat(buf, workBuf[i], encoding)
             }
         }
@@ -406,7 +488,7 @@ class NativeDspAudioProcessor(
                 val retryDsp = DspProcessor(
                         visualizerProcessor,
                         inputFormat.sampleRate,
-                        inputFormat.channelCount
+                        outputFormat.channelCount
                 )
                 if (retryDsp.isReady) {
                     dspProcessor = retryDsp
@@ -421,21 +503,23 @@ class NativeDspAudioProcessor(
         flush()
         active = false
         inputFormat = AudioProcessor.AudioFormat.NOT_SET
+        outputFormat = AudioProcessor.AudioFormat.NOT_SET
         workBuf = FloatArray(0)
+        processedBuffer = AudioProcessor.EMPTY_BUFFER
         releaseNativeContext()
     }
 
     /**
-     * Processes a float array in-place using the full native DSP chain (EQ, bass, treble,
-     * stereo widening, balance, saturation, reverb) plus pre-amplification.
+     * Processes a float array in-place using the full native DSP chain (karaoke, EQ, bass,
+     * treble, stereo widening, balance, saturation, reverb, night mode) plus pre-amplification.
      *
      * This is the direct-output hot path called by [FelicityAudioSink] when USB or AAudio
      * is active. Because [isBypassedForDirectOutput] makes [queueInput] a passthrough in
      * that mode, the same [DspProcessor] context is used exclusively by this call — there
      * is no risk of processing the same audio twice.
      *
-     * The native engine also updates the shared [FFTContext] on every call, so the
-     * spectrum visualizer keeps working even when [DefaultAudioSink]'s chain is bypassed.
+     * The sink writes back exactly the samples it passed in, so silence trimming and the
+     * stereo downmix — the two stages that change the sample count — are skipped here.
      *
      * @param samples Interleaved stereo (or mono) float PCM samples, modified in-place.
      *                The array must contain exactly the frame count × channel count samples.
@@ -446,14 +530,8 @@ class NativeDspAudioProcessor(
 
     /**
      * Same as [processInPlace] but only treats the first [length] elements of [samples]
-     * as valid audio. When [samples] is exactly [length] elements the array is processed
-     * directly with zero allocation — this is the steady-state fast path.
-     *
-     * When [samples] is larger than [length] (the reusable scratch buffer was grown for a
-     * bigger previous frame), we trim to a copy, run the DSP, then write the results back
-     * into [samples[0..[length])] so the caller sees fully processed data. Without the
-     * copy-back step the caller would push the original unprocessed bytes to hardware and
-     * EQ / preamp / bass / treble would appear to have no effect at all.
+     * as valid audio. The native engine is told the length directly, so a scratch buffer
+     * that was grown for a bigger previous frame is processed in place with no copy.
      *
      * @param samples  Buffer that holds the audio data (may be larger than [length]).
      * @param length   Number of valid samples at the start of [samples].
@@ -462,21 +540,13 @@ class NativeDspAudioProcessor(
         val dsp = dspProcessor ?: return
         val preamp = preampLinearGain * replayGainLinearGain * tagReplayGainLinearGain
 
-        if (samples.size == length) {
-            if (preamp != 1f) {
-                for (i in 0 until length) samples[i] *= preamp
-            }
-            dsp.processAudio(samples)
-        } else {
-            // Work on a correctly-sized copy so the native engine only sees valid frames,
-            // then write the processed values back so the caller's push uses correct data.
-            val slice = samples.copyOf(length)
-            if (preamp != 1f) {
-                for (i in 0 until length) slice[i] *= preamp
-            }
-            dsp.processAudio(slice)
-            slice.copyInto(samples, endIndex = length)
+        if (preamp != 1f) {
+            for (i in 0 until length) samples[i] *= preamp
+        } else if (dsp.isNeutral) {
+            return
         }
+
+        dsp.processAudio(samples, length)
     }
 
     /**
@@ -653,6 +723,40 @@ class NativeDspAudioProcessor(
         dspProcessor?.setReverb(reverbMix, reverbDecay, reverbDamp, reverbSize)
     }
 
+    /**
+     * Switches karaoke center-channel (vocal) removal on or off. See [DspProcessor.setKaraoke].
+     *
+     * @param enabled True to remove the center image from stereo audio.
+     */
+    fun setKaraokeEnabled(enabled: Boolean) {
+        karaokeEnabled = enabled
+        dspProcessor?.setKaraoke(enabled)
+    }
+
+    /**
+     * Switches the night mode compressor on or off. See [DspProcessor.setNightMode].
+     *
+     * @param enabled True to compress the dynamic range.
+     */
+    fun setNightModeEnabled(enabled: Boolean) {
+        nightModeEnabled = enabled
+        dspProcessor?.setNightMode(enabled)
+    }
+
+    /**
+     * Configures silence trimming: while enabled, any chunk whose samples all sit within
+     * +/-[threshold] is dropped instead of played. Only the Media3 chain path trims; the
+     * direct-output sinks always play what they decode.
+     *
+     * @param enabled   True to drop silent chunks.
+     * @param threshold Linear silence threshold. Default: −60 dB (~0.001 linear).
+     */
+    fun setSilenceTrimming(enabled: Boolean, threshold: Float = silenceThreshold) {
+        silenceTrimEnabled = enabled
+        silenceThreshold = threshold.coerceIn(0f, 1f)
+        dspProcessor?.setSilenceTrimming(silenceTrimEnabled, silenceThreshold)
+    }
+
     /**
      * Updates the hardware output latency used to pre-delay the FFT visualizer input.
      *
@@ -684,6 +788,10 @@ class NativeDspAudioProcessor(
         dsp.setBalance(pan)
         dsp.setSaturation(saturationDrive)
         dsp.setReverb(reverbMix, reverbDecay, reverbDamp, reverbSize)
+        dsp.setKaraoke(karaokeEnabled)
+        dsp.setNightMode(nightModeEnabled)
+        dsp.setSilenceTrimming(silenceTrimEnabled, silenceThreshold)
+        dsp.setDownmix(inputFormat.channelCount)
         // Re-apply the output latency so the pre-delay ring buffer is seeded at the correct
         // sample count for the new audio format. Must be last so it uses the final sample rate.
         dsp.setOutputLatency(outputLatencyMs)
@@ -695,24 +803,30 @@ class NativeDspAudioProcessor(
     }
 
     /**
-     * Returns a [ByteBuffer] of at least [capacity] bytes (native byte order).
-     * Reuses the existing [outputBuffer] when it is large enough to avoid allocation.
+     * Returns [processedBuffer] cleared and limited to [capacity] bytes (native byte order),
+     * replacing it with a bigger one only when [capacity] doesn't fit.
      *
      * @param capacity Minimum required size in bytes.
      */
     private fun acquireOutputBuffer(capacity: Int): ByteBuffer {
-        return if (outputBuffer === AudioProcessor.EMPTY_BUFFER || outputBuffer.capacity() < capacity) {
-            ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder())
+        if (processedBuffer.capacity() < capacity) {
+            processedBuffer = ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder())
         } else {
-            outputBuffer.clear()
-            outputBuffer.limit(capacity)
-            outputBuffer
+            processedBuffer.clear()
         }
+        processedBuffer.limit(capacity)
+        return processedBuffer
     }
 
     companion object {
         /** Number of ISO 10-band EQ bands managed by this processor. */
         const val BAND_COUNT = 10
+
+        /** Silence trimming threshold used until one is set, about −60 dBFS. */
+        const val DEFAULT_SILENCE_THRESHOLD = 0.001f
+
+        /** Widest channel layout the native downmix folds to stereo. */
+        const val MAX_DOWNMIX_CHANNELS = 24
     }
 }
 
@@ -10,6 +10,7 @@ import app.simple.felicity.engine.processors.VisualizerProcessor.Companion.BAND_
 import app.simple.felicity.engine.processors.VisualizerProcessor.Companion.FFT_SIZE
 import java.lang.ref.WeakReference
 import java.nio.ByteBuffer
+import java.nio.ByteOrder
 import java.util.concurrent.atomic.AtomicBoolean
 import kotlin.math.pow
 
@@ -17,9 +18,14 @@ import kotlin.math.pow
  * An [AudioProcessor] that uses a PFFFT-backed native FFT to compute 40 logarithmically-spaced
  * frequency band magnitudes and delivers them via a lock-free twin-buffer mechanism.
  *
- * On each full [FFT_SIZE]-sample window the processor calls [nativeProcessInto], which
- * applies a Hann window, executes the PFFFT real-forward transform, and writes per-band
- * magnitudes directly into the current back buffer. The [AtomicBoolean] inside
+ * Every incoming buffer is handed to the native PCM tap in one call ([nativeFeedBuffer] for
+ * the ExoPlayer chain, [nativeFeedFloat] for the direct-output sinks). The tap reads the
+ * samples in place, converts and downmixes them with SIMD, and keeps the newest
+ * [FFT_SIZE] mono samples. Windows overlap — a new one is ready every [hopSize] samples,
+ * which [setUpdateRate] ties to the display refresh rate — and whenever at least one is
+ * ready the processor calls [nativeProcessFrame] once on the newest, which applies a Hann
+ * window, executes the PFFFT real-forward transform, and writes per-band magnitudes
+ * directly into the current back buffer. The [AtomicBoolean] inside
  * [DirectOutput] is then toggled to promote the back buffer to front, and
  * [View.postInvalidate] is called on the registered view — all without allocating a
  * single object on the audio hot path.
@@ -30,11 +36,11 @@ import kotlin.math.pow
  * existing listener contract.
  *
  * Output-latency compensation for the visualizer:
- *   Each mono downmix sample is written into a circular pre-delay ring buffer
- *   ([vizDelayBuf]) before it is accumulated in [sampleBuffer]. The read cursor lags the
- *   write cursor by [outputLatencySamples], a value derived from the hardware audio output
- *   latency set via [setOutputLatency]. This ensures that each FFT frame fed to
- *   [nativeProcessInto] corresponds to the audio the listener is actually hearing at that
+ *   Inside the tap each mono downmix sample is written into a circular pre-delay ring
+ *   buffer before it joins the window. The read cursor lags the write cursor by
+ *   [outputLatencySamples], a value derived from the hardware audio output latency set via
+ *   [setOutputLatency]. This ensures that each FFT frame fed to
+ *   [nativeProcessFrame] corresponds to the audio the listener is actually hearing at that
  *   instant, eliminating the visible-before-audible artifact on sharp transients such as
  *   kick-drum bass impacts that would otherwise appear when the hardware buffer is large
  *   (e.g., Bluetooth A2DP at 175 ms).
@@ -59,36 +65,15 @@ class VisualizerProcessor : BaseAudioProcessor() {
     val bandCount: Int = BAND_COUNT
     private val fftSize = FFT_SIZE
 
-    /** Circular buffer that accumulates mono PCM samples before each FFT window. */
+    /**
+     * Receives a copy of the newest window for the [PcmWindowCallback]. Only written
+     * while a callback is registered; the FFT itself reads the window natively.
+     */
     private val sampleBuffer = FloatArray(fftSize)
-    private var bufferIndex = 0
 
     /** Logarithmically-spaced bin boundaries: `bandEdges[k]..bandEdges[k+1]` is the range for band k. */
     private val bandEdges = IntArray(BAND_COUNT + 1)
 
-    /**
-     * Capacity of the pre-delay ring buffer in samples (power of two).
-     * At 48 kHz this covers approximately 1.37 seconds, comfortably exceeding
-     * the worst-case Bluetooth A2DP output latency on any shipping Android device.
-     */
-    private val kDelayBufSize = 65536
-
-    /** Bitmask equivalent to (kDelayBufSize - 1) for fast power-of-two modulo. */
-    private val kDelayBufMask = kDelayBufSize - 1
-
-    /**
-     * Circular pre-delay ring buffer used for output-latency compensation.
-     * Mono-downmixed samples are written at [vizDelayWritePos] and read back from a
-     * position [outputLatencySamples] frames behind the write cursor before being fed
-     * into [sampleBuffer]. Initialized to zeros so the first [outputLatencySamples]
-     * samples fed to the FFT are silence, correctly representing the hardware latency
-     * ramp-up at playback start.
-     */
-    private val vizDelayBuf = FloatArray(kDelayBufSize)
-
-    /** Current write position within [vizDelayBuf], always in [0, kDelayBufSize). */
-    private var vizDelayWritePos = 0
-
     /**
      * Number of samples by which the FFT accumulator input is delayed.
      * Derived from [outputLatencyMs] and [currentSampleRate].
@@ -108,6 +93,27 @@ class VisualizerProcessor : BaseAudioProcessor() {
     /** Most recently configured sample rate; used to convert milliseconds to sample counts. */
     private var currentSampleRate = DEFAULT_SAMPLE_RATE
 
+    /**
+     * Samples between the starts of two consecutive FFT windows. Smaller than [FFT_SIZE],
+     * so windows overlap and the spectrum refreshes more often than once per window.
+     * Derived from [updateRateHz] and [currentSampleRate].
+     */
+    @Volatile
+    private var hopSize = FFT_SIZE / 2
+
+    /** Spectrum updates per second requested through [setUpdateRate]; 0 = default hop. */
+    @Volatile
+    private var updateRateHz = 0f
+
+    /** Tap layout of the configured input encoding, one of the TAP_FORMAT_* constants. */
+    private var tapFormat = TAP_FORMAT_PCM16
+
+    /**
+     * Direct copy of the input for the rare heap-backed [ByteBuffer], since the tap can only
+     * read direct buffers in place. Grown on demand and reused.
+     */
+    private var heapFallbackBuffer: ByteBuffer? = null
+
     /**
      * When true, PFFFT computes peak magnitude plus a treble boost for visual impact.
      * When false, pure per-band RMS is computed for accurate frequency analysis.
@@ -129,7 +135,8 @@ class VisualizerProcessor : BaseAudioProcessor() {
 
     /**
      * Optional callback invoked on the audio thread with the raw mono PCM window
-     * immediately before each FFT pass.
+     * immediately before each FFT pass. Consecutive windows overlap by
+     * [FFT_SIZE] - [hopSize] samples.
      *
      * The [FloatArray] passed to [onPcmWindow] is the internal [sampleBuffer] — it
      * must NOT be retained past the call.  The callee should copy the data (or pass
@@ -222,6 +229,9 @@ class VisualizerProcessor : BaseAudioProcessor() {
      *
      * @param bufA     Pre-allocated [FloatArray] of size [BAND_COUNT] for the A buffer.
      * @param bufB     Pre-allocated [FloatArray] of size [BAND_COUNT] for the B buffer.
+     * The spectrum update rate follows the refresh rate of the display [view] is on, or
+     * [DEFAULT_UPDATE_RATE] while it isn't attached yet.
+     *
      * @param isAFront [AtomicBoolean] tracking which buffer is currently the front.
      * @param view     Visualizer [View] to be invalidated after each write.
      */
@@ -232,6 +242,26 @@ class VisualizerProcessor : BaseAudioProcessor() {
             view: View
     ) {
         directOutput = DirectOutput(bufA, bufB, isAFront, WeakReference(view))
+        setUpdateRate(view.display?.refreshRate ?: DEFAULT_UPDATE_RATE)
+    }
+
+    /**
+     * Sets how many spectrum updates per second the processor should aim for. The hop
+     * between overlapping FFT windows becomes `sampleRate / hz`, clamped to
+     * [[MIN_HOP_SIZE], [FFT_SIZE]]; updates can't come faster than audio buffers arrive,
+     * so in practice this is an upper bound.
+     *
+     * @param hz Updates per second, usually the display refresh rate. 0 or less restores
+     *           the default half-window hop.
+     */
+    fun setUpdateRate(hz: Float) {
+        updateRateHz = hz
+        hopSize = computeHopSize(hz, currentSampleRate)
+    }
+
+    private fun computeHopSize(hz: Float, sampleRate: Int): Int {
+        if (hz <= 0f) return FFT_SIZE / 2
+        return (sampleRate / hz).toInt().coerceIn(MIN_HOP_SIZE, FFT_SIZE)
     }
 
     /**
@@ -270,27 +300,34 @@ class VisualizerProcessor : BaseAudioProcessor() {
     /**
      * Converts a latency in milliseconds to a sample count at [sampleRate], clamped so the
      * read cursor can never overtake the write cursor accounting for the FFT window size:
-     *   maxDelay = kDelayBufSize - FFT_SIZE - 1
+     *   maxDelay = TAP_DELAY_CAPACITY - FFT_SIZE - 1
      *
      * @param ms         Latency in milliseconds.
      * @param sampleRate Sample rate in Hz.
-     * @return Sample count in [0, kDelayBufSize - FFT_SIZE - 1].
+     * @return Sample count in [0, TAP_DELAY_CAPACITY - FFT_SIZE - 1].
      */
     private fun computeDelaySamples(ms: Int, sampleRate: Int): Int {
         if (ms <= 0) return 0
         val samples = (ms.toLong() * sampleRate / 1000L).toInt()
-        val maxDelay = kDelayBufSize - fftSize - 1
+        val maxDelay = TAP_DELAY_CAPACITY - fftSize - 1
         return samples.coerceAtMost(maxDelay).coerceAtLeast(0)
     }
 
     // AudioProcessor overrides
 
     override fun onConfigure(inputAudioFormat: AudioProcessor.AudioFormat): AudioProcessor.AudioFormat {
-        return if (inputAudioFormat.encoding == C.ENCODING_PCM_16BIT ||
-                inputAudioFormat.encoding == C.ENCODING_PCM_FLOAT
-        ) {
+        val format = when (inputAudioFormat.encoding) {
+            C.ENCODING_PCM_16BIT -> TAP_FORMAT_PCM16
+            C.ENCODING_PCM_24BIT -> TAP_FORMAT_PCM24
+            C.ENCODING_PCM_FLOAT -> TAP_FORMAT_FLOAT
+            else -> -1
+        }
+
+        return if (format >= 0) {
+            tapFormat = format
             currentSampleRate = inputAudioFormat.sampleRate
             computeBandEdges(inputAudioFormat.sampleRate)
+            hopSize = computeHopSize(updateRateHz, inputAudioFormat.sampleRate)
 
             /**
              * Recompute the sample-count equivalent of the stored millisecond latency
@@ -315,89 +352,59 @@ class VisualizerProcessor : BaseAudioProcessor() {
         val remaining = inputBuffer.remaining()
         if (remaining == 0) return
 
-        if (isBypassedForDirectOutput) {
-            /**
-             * The FFT is being fed by [feedFloat] on this frame, so we just pass the
-             * bytes straight through without touching the sample accumulator.
-             * Skipping the accumulation here prevents a double-feed that would corrupt
-             * the FFT window timing and produce garbage band magnitudes.
-             */
-            val outputBuffer = replaceOutputBuffer(remaining)
-            outputBuffer.put(inputBuffer)
-            outputBuffer.flip()
-            return
+        /**
+         * When [isBypassedForDirectOutput] is set the FFT is being fed by [feedFloat] on
+         * this frame, so the bytes only pass through. Feeding the tap here as well would
+         * double-feed it and corrupt the window timing.
+         */
+        if (!isBypassedForDirectOutput && nativeHandle != 0L) {
+            tap(inputBuffer, remaining)
         }
 
         val outputBuffer = replaceOutputBuffer(remaining)
-        inputBuffer.mark()
-
-        val encoding = inputAudioFormat.encoding
-        val frameSize = if (encoding == C.ENCODING_PCM_16BIT) 4 else 8
-
-        while (inputBuffer.remaining() >= frameSize) {
-            val leftSample: Float
-            val rightSample: Float
-
-            if (encoding == C.ENCODING_PCM_16BIT) {
-                leftSample = inputBuffer.short.toFloat() / 32768f
-                rightSample = inputBuffer.short.toFloat() / 32768f
-            } else {
-                leftSample = inputBuffer.float
-                rightSample = inputBuffer.float
-            }
-
-            /**
-             * Mono downmix of the current stereo frame. This value is either fed directly
-             * into [sampleBuffer] (when no latency compensation is active) or written into
-             * the pre-delay ring buffer and read back [outputLatencySamples] frames later,
-             * aligning the FFT frame with the audio the listener is actually hearing.
-             */
-            val mono = (leftSample + rightSample) / 2f
-            val delaySamples = outputLatencySamples
-            val delayedMono: Float
-
-            if (delaySamples > 0) {
-                /**
-                 * Write the current mono sample at the write cursor, then read from the
-                 * position that is [delaySamples] frames behind the write cursor.
-                 * The bitmask replaces modulo to keep the loop branch-light.
-                 */
-                vizDelayBuf[vizDelayWritePos] = mono
-                val readPos = (vizDelayWritePos - delaySamples + kDelayBufSize) and kDelayBufMask
-                delayedMono = vizDelayBuf[readPos]
-                vizDelayWritePos = (vizDelayWritePos + 1) and kDelayBufMask
-            } else {
-                delayedMono = mono
-            }
+        outputBuffer.put(inputBuffer)
+        outputBuffer.flip()
+    }
 
-            // Downmix stereo to mono for accurate frequency analysis.
-            sampleBuffer[bufferIndex] = delayedMono
-            bufferIndex++
+    /**
+     * Hands [length] bytes of [inputBuffer], starting at its position, to the native tap
+     * without moving the position. ExoPlayer's buffers are direct, so this is normally a
+     * single JNI call that reads the PCM in place.
+     */
+    private fun tap(inputBuffer: ByteBuffer, length: Int) {
+        val channelCount = inputAudioFormat.channelCount
+        var windows = if (inputBuffer.isDirect) {
+            nativeFeedBuffer(nativeHandle, inputBuffer, inputBuffer.position(), length,
+                             tapFormat, channelCount, outputLatencySamples, hopSize)
+        } else {
+            -1
+        }
 
-            if (bufferIndex >= fftSize) {
-                // Deliver raw mono PCM to any registered tap (e.g., the milkdrop renderer)
-                // before the FFT pass consumes it.
-                pcmWindowCallback?.onPcmWindow(sampleBuffer, fftSize)
-                processAndEmit()
-                bufferIndex = 0
+        if (windows < 0) {
+            var fallback = heapFallbackBuffer
+            if (fallback == null || fallback.capacity() < length) {
+                fallback = ByteBuffer.allocateDirect(length).order(ByteOrder.nativeOrder())
+                heapFallbackBuffer = fallback
             }
+            fallback!!.clear()
+            fallback.put(inputBuffer.duplicate())
+            windows = nativeFeedBuffer(nativeHandle, fallback, 0, length,
+                                       tapFormat, channelCount, outputLatencySamples, hopSize)
         }
 
-        inputBuffer.reset()
-        outputBuffer.put(inputBuffer)
-        outputBuffer.flip()
+        if (windows > 0) emitWindow()
     }
 
     /**
-     * Feeds interleaved float PCM samples directly into the FFT accumulator, bypassing
+     * Feeds interleaved float PCM samples directly into the FFT tap, bypassing
      * the ByteBuffer chain. This is the path used when AAudio or USB DAC is the active
      * output — we get the fully-processed, hardware-bound float data straight from
      * [FelicityAudioSink.handleBuffer] rather than reading from the muted delegate chain.
      *
      * The samples are expected in the same interleaved layout as the hardware output:
-     * L0 R0 L1 R1 … for stereo, or M0 M1 … for mono. Each frame is downmixed to mono
-     * and fed through the same pre-delay ring buffer and FFT window logic used by
-     * [queueInput], so output-latency compensation still works correctly.
+     * L0 R0 L1 R1 … for stereo, or M0 M1 … for mono. They go through the same native
+     * downmix, pre-delay ring buffer and overlapping window logic used by [queueInput],
+     * so output-latency compensation still works correctly.
      *
      * @param samples      Interleaved float samples from the hardware-bound buffer.
      * @param sampleCount  Total number of float values (frames × channelCount).
@@ -405,52 +412,37 @@ class VisualizerProcessor : BaseAudioProcessor() {
      */
     fun feedFloat(samples: FloatArray, sampleCount: Int, channelCount: Int) {
         if (nativeHandle == 0L || sampleCount == 0 || channelCount == 0) return
-        val frameCount = sampleCount / channelCount
-
-        for (i in 0 until frameCount) {
-            val mono = when (channelCount) {
-                1 -> samples[i]
-                2 -> (samples[i * 2] + samples[i * 2 + 1]) * 0.5f
-                else -> {
-                    var sum = 0f
-                    for (c in 0 until channelCount) sum += samples[i * channelCount + c]
-                    sum / channelCount
-                }
-            }
 
-            val delaySamples = outputLatencySamples
-            val delayedMono: Float
-
-            if (delaySamples > 0) {
-                vizDelayBuf[vizDelayWritePos] = mono
-                val readPos = (vizDelayWritePos - delaySamples + kDelayBufSize) and kDelayBufMask
-                delayedMono = vizDelayBuf[readPos]
-                vizDelayWritePos = (vizDelayWritePos + 1) and kDelayBufMask
-            } else {
-                delayedMono = mono
-            }
-
-            sampleBuffer[bufferIndex] = delayedMono
-            bufferIndex++
+        val windows = nativeFeedFloat(nativeHandle, samples, sampleCount, channelCount,
+                                      outputLatencySamples, hopSize)
+        if (windows > 0) emitWindow()
+    }
 
-            if (bufferIndex >= fftSize) {
-                pcmWindowCallback?.onPcmWindow(sampleBuffer, fftSize)
-                processAndEmit()
-                bufferIndex = 0
-            }
+    /**
+     * Publishes the newest window. However many hops one buffer completed, only the latest
+     * window is transformed — the view can only draw one of them anyway.
+     */
+    private fun emitWindow() {
+        pcmWindowCallback?.let { callback ->
+            // Deliver raw mono PCM to any registered tap (e.g., the milkdrop renderer)
+            // before the FFT pass consumes it.
+            nativeCopyFrame(nativeHandle, sampleBuffer)
+            callback.onPcmWindow(sampleBuffer, fftSize)
         }
+
+        processAndEmit()
     }
 
     override fun onReset() {
 
         /**
-         * Clear the pre-delay ring buffer and reset the write cursor so stale samples from
-         * the previous playback session cannot bleed into the next session's visualizer
-         * timeline. [outputLatencyMs] is intentionally preserved so the correct delay is
-         * immediately re-applied when [onConfigure] fires next.
+         * Destroying the native context also drops the tap's pre-delay ring and window
+         * history, so stale samples from the previous playback session cannot bleed into
+         * the next session's visualizer timeline. [outputLatencyMs] is intentionally
+         * preserved so the correct delay is immediately re-applied when [onConfigure]
+         * fires next.
          */
-        vizDelayBuf.fill(0f)
-        vizDelayWritePos = 0
+        heapFallbackBuffer = null
 
         if (nativeHandle != 0L) {
             nativeDestroy(nativeHandle)
@@ -466,7 +458,7 @@ class VisualizerProcessor : BaseAudioProcessor() {
      *
      * Direct path (zero allocations on audio thread):
      *  1. Determine the back buffer from [DirectOutput.isAFront].
-     *  2. Call [nativeProcessInto] — C++ writes magnitudes in-place via
+     *  2. Call [nativeProcessFrame] — C++ writes magnitudes in-place via
      *     `GetFloatArrayElements` + `ReleaseFloatArrayElements` with mode 0.
      *  3. Atomically flip [DirectOutput.isAFront] to promote back to front.
      *  4. Call [View.postInvalidate] to schedule a UI redraw.
@@ -481,14 +473,14 @@ class VisualizerProcessor : BaseAudioProcessor() {
         if (out != null) {
             // Direct path: write into back buffer, swap, trigger redraw.
             val backBuf = if (out.isAFront.get()) out.bufB else out.bufA
-            nativeProcessInto(nativeHandle, sampleBuffer, backBuf, isVisualizerOptimized)
+            nativeProcessFrame(nativeHandle, backBuf, isVisualizerOptimized)
             out.isAFront.set(!out.isAFront.get())
             out.view.get()?.postInvalidate()
         } else {
             val l = listener ?: return
             // Legacy path: allocate one array per window (listener may hold the ref async).
             val bands = FloatArray(BAND_COUNT)
-            nativeProcessInto(nativeHandle, sampleBuffer, bands, isVisualizerOptimized)
+            nativeProcessFrame(nativeHandle, bands, isVisualizerOptimized)
             l.onSpectrumDataCaptured(bands)
         }
     }
@@ -553,19 +545,50 @@ class VisualizerProcessor : BaseAudioProcessor() {
     private external fun nativeSetBandEdges(handle: Long, bandEdges: IntArray, bandCount: Int)
 
     /**
-     * Applies the Hann window to [rawSamples], runs the PFFFT real forward transform,
-     * maps bins to frequency bands, and writes the results directly into [bandBuffer]
-     * using `GetFloatArrayElements` + `ReleaseFloatArrayElements` with mode 0.
+     * Reads [length] bytes of interleaved PCM in [format] from the direct [buffer] at
+     * [offset], downmixes them, runs them through the [delaySamples] pre-delay, and adds
+     * them to the window history.
+     *
+     * @return Number of [hopSize] hops completed, with the newest window ready for
+     *         [nativeProcessFrame]; 0 when none completed; -1 when [buffer] isn't direct.
+     */
+    private external fun nativeFeedBuffer(
+            handle: Long,
+            buffer: ByteBuffer,
+            offset: Int,
+            length: Int,
+            format: Int,
+            channelCount: Int,
+            delaySamples: Int,
+            hopSize: Int
+    ): Int
+
+    /** Same as [nativeFeedBuffer] for interleaved float samples in a Java array. */
+    private external fun nativeFeedFloat(
+            handle: Long,
+            samples: FloatArray,
+            sampleCount: Int,
+            channelCount: Int,
+            delaySamples: Int,
+            hopSize: Int
+    ): Int
+
+    /**
+     * Applies the Hann window to the newest tap window, runs the PFFFT real forward
+     * transform, maps bins to frequency bands, and writes the results directly into
+     * [bandBuffer] using `GetFloatArrayElements` + `ReleaseFloatArrayElements` with mode 0.
      *
      * Zero heap allocations. Safe to call from the audio thread.
      */
-    private external fun nativeProcessInto(
+    private external fun nativeProcessFrame(
             handle: Long,
-            rawSamples: FloatArray,
             bandBuffer: FloatArray,
             isOptimized: Boolean
     )
 
+    /** Copies the newest tap window into [dest], which must hold [FFT_SIZE] floats. */
+    private external fun nativeCopyFrame(handle: Long, dest: FloatArray)
+
     /** Frees all native resources associated with [handle]. */
     private external fun nativeDestroy(handle: Long)
 
@@ -585,5 +608,19 @@ class VisualizerProcessor : BaseAudioProcessor() {
         const val BAND_COUNT = 40
 
         private const val DEFAULT_SAMPLE_RATE = 44_100
+
+        /** Update rate used until the view reports its display's refresh rate. */
+        private const val DEFAULT_UPDATE_RATE = 60f
+
+        /** Smallest hop between windows; below this the FFT cost outgrows any visible gain. */
+        private const val MIN_HOP_SIZE = FFT_SIZE / 8
+
+        /** Pre-delay ring capacity in samples; must match kTapDelaySamples in fft-context.h. */
+        private const val TAP_DELAY_CAPACITY = 65536
+
+        // Must match the TapFormat enum in visualizer-fft.cpp.
+        private const val TAP_FORMAT_PCM16 = 0
+        private const val TAP_FORMAT_PCM24 = 1
+        private const val TAP_FORMAT_FLOAT = 2
     }
 }
\ No newline at end of file
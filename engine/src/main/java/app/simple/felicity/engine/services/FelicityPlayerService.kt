@@ -14,6 +14,7 @@ import android.os.Build
 import android.os.Bundle
 import android.os.Handler
 import android.os.Looper
+import android.os.SystemClock
 import android.util.Log
 import androidx.annotation.OptIn
 import androidx.media3.common.AudioAttributes
@@ -24,6 +25,7 @@ import androidx.media3.common.MediaMetadata
 import androidx.media3.common.PlaybackException
 import androidx.media3.common.PlaybackParameters
 import androidx.media3.common.Player
+import androidx.media3.common.Timeline
 import androidx.media3.common.audio.AudioProcessor
 import androidx.media3.common.util.UnstableApi
 import androidx.media3.exoplayer.DecoderReuseEvaluation
@@ -45,7 +47,9 @@ import androidx.media3.session.SessionCommand
 import androidx.media3.session.SessionError
 import androidx.media3.session.SessionResult
 import app.simple.felicity.engine.R
+import app.simple.felicity.engine.audio.CrossfadeMixer
 import app.simple.felicity.engine.audio.FelicityAudioSink
+import app.simple.felicity.engine.audio.TrackHeadDecoder
 import app.simple.felicity.engine.managers.AudioPipelineManager
 import app.simple.felicity.engine.managers.AudioProcessorManager
 import app.simple.felicity.engine.managers.EqualizerManager
@@ -56,6 +60,7 @@ import app.simple.felicity.engine.model.AudioPipelineSnapshot
 import app.simple.felicity.engine.notifications.PlaybackErrorNotifier
 import app.simple.felicity.engine.usb.UsbDacDriver
 import app.simple.felicity.engine.usb.UsbDacManager
+import app.simple.felicity.engine.utils.MediaItemUtils.setAudioSource
 import app.simple.felicity.manager.SharedPreferences.initRegisterSharedPreferenceChangeListener
 import app.simple.felicity.manager.SharedPreferences.unregisterSharedPreferenceChangeListener
 import app.simple.felicity.preferences.AppearancePreferences
@@ -65,8 +70,11 @@ import app.simple.felicity.preferences.PlayerPreferences
 import app.simple.felicity.preferences.ShufflePreferences
 import app.simple.felicity.preferences.UserInterfacePreferences
 import app.simple.felicity.repository.constants.MediaConstants
+import app.simple.felicity.repository.database.instances.AudioDatabase
 import app.simple.felicity.repository.models.Audio
+import app.simple.felicity.repository.models.LibrarySnapshot
 import app.simple.felicity.repository.repositories.AudioRepository
+import app.simple.felicity.repository.repositories.LibrarySnapshotRepository
 import app.simple.felicity.repository.repositories.SongStatRepository
 import app.simple.felicity.repository.utils.AudioUtils.getProperAlbum
 import app.simple.felicity.repository.utils.AudioUtils.getProperArtists
@@ -78,11 +86,13 @@ import dagger.hilt.android.AndroidEntryPoint
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.Job
+import kotlinx.coroutines.NonCancellable
 import kotlinx.coroutines.SupervisorJob
 import kotlinx.coroutines.delay
 import kotlinx.coroutines.guava.future
 import kotlinx.coroutines.isActive
 import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
 import javax.inject.Inject
 import kotlin.math.pow
 import kotlin.math.roundToInt
@@ -101,6 +111,9 @@ class FelicityPlayerService : MediaLibraryService(), SharedPreferences.OnSharedP
     @Inject
     lateinit var songStatRepository: SongStatRepository
 
+    @Inject
+    lateinit var librarySnapshot: LibrarySnapshotRepository
+
     private var mediaSession: MediaLibrarySession? = null
     private lateinit var player: ExoPlayer
     private var renderersFactory: DefaultRenderersFactory? = null
@@ -153,6 +166,22 @@ class FelicityPlayerService : MediaLibraryService(), SharedPreferences.OnSharedP
      */
     private var currentItemDurationMs: Long = 0L
 
+    /**
+     * The audio id of the song whose listening time is being added up in [listenedMs], or
+     * null before anything has played.
+     */
+    private var listenedAudioId: Long? = null
+
+    /**
+     * How long [listenedAudioId] has actually been heard, pauses and buffering left out,
+     * not counting the stretch since [listeningSince]. Handed to the stats when the
+     * player moves on to another song or the service goes away.
+     */
+    private var listenedMs: Long = 0L
+
+    /** [SystemClock.elapsedRealtime] of when the current stretch of playback began, or -1 while not playing. */
+    private var listeningSince: Long = -1L
+
     /**
      * Manages the balance and downmix [androidx.media3.common.audio.ChannelMixingAudioProcessor]
      * instances. Extracted to keep audio processing logic out of the service.
@@ -169,14 +198,15 @@ class FelicityPlayerService : MediaLibraryService(), SharedPreferences.OnSharedP
     private var periodicStateSaveJob: Job? = null
 
     /**
-     * An in-memory copy of the full audio library, kept fresh by collecting the Room
-     * Flow in [onCreate]. Using a Flow means we never need to hit the database on every
-     * [onGetChildren] call — the list is always ready and up to date.
+     * The shared library snapshot, kept fresh by collecting [LibrarySnapshotRepository] in
+     * [onCreate]. It is the very same copy the UI is looking at, so the service no longer
+     * holds a second full song list of its own, and [onGetChildren] never has to hit the
+     * database.
      *
-     * Populated asynchronously on first launch; empty list is the safe default while
-     * the first DB emission is still on its way.
+     * Stays [LibrarySnapshot.EMPTY] until the first query lands.
      */
-    private var cachedSongList: List<Audio> = emptyList()
+    @Volatile
+    private var cachedSnapshot: LibrarySnapshot = LibrarySnapshot.EMPTY
 
     /**
      * Tracks whether we are currently in a silent FFmpeg fallback retry for a failed track.
@@ -223,6 +253,19 @@ class FelicityPlayerService : MediaLibraryService(), SharedPreferences.OnSharedP
      */
     private var snapshotDebounceJob: Job? = null
 
+    /** Background decode of the next song's head for the crossfade; replaced on every queue move. */
+    private var crossfadeJob: Job? = null
+
+    /**
+     * Describes the transition the current crossfade plan was built for — which songs, which
+     * settings, which output — so the READY and timeline callbacks that fire again and again
+     * around a song change don't decode the same head over and over.
+     */
+    private var crossfadeKey: String? = null
+
+    /** Media id of the song the current crossfade plan fades into. */
+    private var crossfadeNextId: String? = null
+
     override fun onCreate() {
         super.onCreate()
         initRegisterSharedPreferenceChangeListener(applicationContext)
@@ -258,6 +301,8 @@ class FelicityPlayerService : MediaLibraryService(), SharedPreferences.OnSharedP
                 audioProcessorManager.applyTapeSaturationDrive(EqualizerPreferences.getTapeSaturationDrive())
                 audioProcessorManager.applyKaraokeMode(EqualizerPreferences.isKaraokeModeEnabled())
                 audioProcessorManager.applyNightMode(EqualizerPreferences.isNightModeEnabled())
+                audioProcessorManager.applySilenceTrimming(AudioPreferences.isSkipSilenceEnabled())
+                audioProcessorManager.applyStereoDownmix(forceStereoDownmix)
                 // applyEqualizerState covers 10-band EQ, bass, treble, preamp, and enabled flag.
                 audioProcessorManager.applyEqualizerState()
                 // Reverb is applied after all tone-shaping so it adds only spatial depth.
@@ -271,27 +316,13 @@ class FelicityPlayerService : MediaLibraryService(), SharedPreferences.OnSharedP
                 // Build the processor array dynamically
                 val processors = mutableListOf<AudioProcessor>()
 
-                if (AudioPreferences.isSkipSilenceEnabled()) {
-                    // Trim digital silence first while the stream is uncolored.
-                    processors.add(audioProcessorManager.silenceTrimmingProcessor)
-                }
-
-                if (forceStereoDownmix) {
-                    processors.add(audioProcessorManager.downmixProcessor)
-                }
-
-                // Vocal removal runs before the EQ/effects chain so center-channel
-                // subtraction is not colored by subsequent tonal processing.
-                processors.add(audioProcessorManager.karaokeProcessor)
-
-                // Unified native DSP: EQ → bass/treble shelves → M/S widening → balance → saturation.
-                // Also feeds the processed mono downmix to the shared FFTContext.
+                // Unified native DSP: silence trim → stereo downmix → karaoke → EQ →
+                // bass/treble shelves → M/S widening → balance → saturation → reverb →
+                // night mode. Silence is trimmed while the stream is still uncolored, vocal
+                // removal runs before any tonal processing, and the compressor sees the
+                // final mix. Also feeds the processed mono downmix to the shared FFTContext.
                 processors.add(audioProcessorManager.nativeDspProcessor)
 
-                // Dynamic range compression runs after all tonal/spatial effects so it
-                // can respond to the final loudness of the mix.
-                processors.add(audioProcessorManager.nightModeProcessor)
-
                 // Visualizer always goes last so the spectrum display reflects every
                 // active effect in the chain.
                 processors.add(audioProcessorManager.visualizerProcessor)
@@ -327,7 +358,8 @@ class FelicityPlayerService : MediaLibraryService(), SharedPreferences.OnSharedP
                         defaultSinkProvider = { audioSink },
                         context = context,
                         nativeDsp = audioProcessorManager.nativeDspProcessor,
-                        visualizer = audioProcessorManager.visualizerProcessor)
+                        visualizer = audioProcessorManager.visualizerProcessor,
+                        crossfade = audioProcessorManager.crossfadeMixer)
             }
 
             override fun buildAudioRenderers(
@@ -383,12 +415,18 @@ class FelicityPlayerService : MediaLibraryService(), SharedPreferences.OnSharedP
             }
         }
 
-        // Keep an up-to-date song list in memory. Room emits a fresh list every time the
+        // Keep the shared library snapshot at hand. It is republished every time the
         // library changes (scan, delete, etc.) so onGetChildren always returns current data
-        // without a blocking database call.
+        // without a blocking database call, and browsing clients such as Android Auto are
+        // told to refresh only when songs were actually added, removed or edited.
         serviceScope.launch {
-            audioRepository.getAllAudio().collect { list ->
-                cachedSongList = list
+            librarySnapshot.snapshot.collect { snapshot ->
+                if (!snapshot.isLoaded) return@collect
+                val previous = cachedSnapshot
+                cachedSnapshot = snapshot
+                if (previous.isLoaded && !snapshot.diff(previous).isEmpty) {
+                    mediaSession?.notifyChildrenChanged("root", snapshot.size, null)
+                }
             }
         }
     }
@@ -543,6 +581,151 @@ class FelicityPlayerService : MediaLibraryService(), SharedPreferences.OnSharedP
         player.pauseAtEndOfMediaItems = !gaplessEnabled
     }
 
+    /**
+     * Gets [AudioProcessorManager.crossfadeMixer] ready for the transition out of the
+     * current song. Works out where the fade should end — the song's duration, or the end
+     * of its last audible second according to the cached waveform — then decodes the start
+     * of the next queue item on a background thread and hands both to the mixer.
+     *
+     * The plan is cleared instead whenever a crossfade can't happen: it's switched off,
+     * gapless is off (the player stops between songs then), the output is the plain
+     * AudioTrack route, there is no next item, or the current song is too short to fade.
+     *
+     * Clearing or replacing the plan never cuts a fade that has already started; the
+     * mixer finishes it. Only when the next song itself changes is the older plan dropped
+     * right away, and the in-flight fade told not to splice into a stream that isn't its.
+     */
+    private fun scheduleCrossfade() {
+        val mixer = audioProcessorManager.crossfadeMixer
+        val fadeMs = AudioPreferences.getCrossfadeDuration().toLong()
+        val skipSilentTail = AudioPreferences.isCrossfadeSkipSilentTailEnabled()
+        val currentItem = player.currentMediaItem
+        val nextIndex = player.nextMediaItemIndex
+        val nextItem = if (nextIndex != C.INDEX_UNSET) player.getMediaItemAt(nextIndex) else null
+        val nextUri = nextItem?.localConfiguration?.uri
+        val durationMs = player.duration
+        val nativeOutput = isNativeOutputSelected()
+
+        if (fadeMs <= 0L
+                || !AudioPreferences.isGaplessPlaybackEnabled()
+                || !nativeOutput
+                || currentItem == null
+                || nextItem == null
+                || nextUri == null
+                || durationMs == C.TIME_UNSET
+                || durationMs < fadeMs * 2) {
+            if (nextItem?.mediaId != crossfadeNextId) mixer.abandonInFlight()
+            crossfadeKey = null
+            crossfadeNextId = null
+            crossfadeJob?.cancel()
+            mixer.setNext(null)
+            return
+        }
+
+        val key = "${player.currentMediaItemIndex}:${currentItem.mediaId}>$nextIndex:${nextItem.mediaId}" +
+                "|$durationMs|$fadeMs|$skipSilentTail|${AudioPreferences.getOutputSink()}|${UsbDacManager.isActive}" +
+                "|${EqualizerPreferences.isAutoReplayGainEnabled()}|${EqualizerPreferences.getReplayGainMode()}"
+        if (key == crossfadeKey) return
+
+        if (crossfadeNextId != null && crossfadeNextId != nextItem.mediaId) {
+            // A plan for a song that no longer comes next must not start fading.
+            mixer.abandonInFlight()
+            mixer.setNext(null)
+        }
+
+        crossfadeKey = key
+        crossfadeNextId = nextItem.mediaId
+        crossfadeJob?.cancel()
+
+        crossfadeJob = serviceScope.launch(Dispatchers.IO) {
+            var endMs = if (skipSilentTail) findAudibleEndMs(currentItem.mediaId, durationMs) else durationMs
+            // A CUE track's head starts partway into its album file.
+            val nextStartUs = nextItem.clippingConfiguration.startPositionUs
+            val head = TrackHeadDecoder.decode(applicationContext, nextUri, crossfadeHeadMs(fadeMs, durationMs - endMs) * 1000L, {
+                !isActive
+            }, nextStartUs) ?: return@launch
+
+            val fadeFrames = head.sampleRate * fadeMs / 1000L
+            if (head.frameCount < fadeFrames) {
+                // The next song is shorter than the fade itself; a plain transition sounds better.
+                Log.d(TAG, "Next song too short to crossfade into (${head.frameCount} frames)")
+                TrackHeadDecoder.recycle(head.samples)
+                return@launch
+            }
+
+            // The DSP applies the outgoing song's ReplayGain until the player moves on, so
+            // the plan carries the incoming song's own for the mixer to level the head with.
+            val headGainDb = nextItem.mediaId.toLongOrNull()
+                ?.takeIf { EqualizerPreferences.isAutoReplayGainEnabled() }
+                ?.let { audioRepository.getAudioById(it) }
+                ?.let { resolveReplayGainDb(it, EqualizerPreferences.getReplayGainMode()) } ?: 0f
+
+            val neededFrames = head.sampleRate * crossfadeHeadMs(fadeMs, durationMs - endMs) / 1000L
+            if (head.frameCount < neededFrames - head.sampleRate * CROSSFADE_HEAD_MARGIN_MS / 1000L) {
+                // The head got cut short by the sample cap (hi-res tracks). Fading across the
+                // silent tail needs the most audio, so drop that part and fade at the very end.
+                endMs = durationMs
+            }
+
+            val plan = CrossfadeMixer.Plan(
+                    head = head.samples,
+                    headFrames = head.frameCount,
+                    sampleRate = head.sampleRate,
+                    channelCount = head.channelCount,
+                    fadeUs = fadeMs * 1000L,
+                    outgoingEndUs = endMs * 1000L,
+                    headGain = 10f.pow(headGainDb.coerceIn(-30f, 30f) / 20f),
+                    onRelease = { TrackHeadDecoder.recycle(head.samples) })
+
+            withContext(Dispatchers.Main + NonCancellable) {
+                // Only hand it over if the queue hasn't moved on while we were decoding.
+                if (crossfadeKey == key) {
+                    mixer.setNext(plan)
+                    Log.d(TAG, "Crossfade ready: ${fadeMs}ms into ${nextItem.mediaId}, outgoing ends at ${endMs}ms of ${durationMs}ms")
+                } else {
+                    TrackHeadDecoder.recycle(head.samples)
+                }
+            }
+        }
+    }
+
+    /**
+     * How much of the next song to decode for a [fadeMs] crossfade that also covers
+     * [tailMs] of silence at the end of the current one: everything the listener hears from
+     * the head before the player moves on, plus what the catch-up needs after that (see
+     * [CrossfadeMixer]), plus a little margin for durations that are slightly off.
+     */
+    private fun crossfadeHeadMs(fadeMs: Long, tailMs: Long): Long {
+        val heardMs = fadeMs + tailMs
+        return heardMs + heardMs / (CrossfadeMixer.CATCH_UP_RATIO - 1) + CROSSFADE_HEAD_MARGIN_MS
+    }
+
+    /**
+     * Returns where the audible part of the song with [mediaId] ends, in milliseconds,
+     * using its cached waveform: the end of the last bar above [SILENT_TAIL_THRESHOLD].
+     * Falls back to [durationMs] when there is no waveform yet, and never cuts more than
+     * [MAX_SILENT_TAIL_SKIP_MS] so a song with a long quiet coda isn't cut short.
+     */
+    private suspend fun findAudibleEndMs(mediaId: String, durationMs: Long): Long {
+        val audio = mediaId.toLongOrNull()?.let { audioRepository.getAudioById(it) } ?: return durationMs
+        val waveform = AudioDatabase.getInstance(applicationContext).waveformDao()
+            .getWaveformByHash(audio.hash) ?: return durationMs
+
+        val bars = waveform.toFloatArray()
+        val lastAudible = bars.indexOfLast { it > SILENT_TAIL_THRESHOLD }
+        if (lastAudible < 0) return durationMs
+
+        val endMs = ((lastAudible + 1) * durationMs.toDouble() / bars.size).toLong()
+        return endMs.coerceIn(durationMs - MAX_SILENT_TAIL_SKIP_MS, durationMs)
+    }
+
+    /** True when audio goes out through one of the routes that can crossfade. */
+    private fun isNativeOutputSelected(): Boolean {
+        return UsbDacManager.isActive
+                || AudioPreferences.isAaudioEnabled()
+                || AudioPreferences.isOboeEnabled()
+    }
+
     private fun applyRepeatMode(repeatMode: Int) {
         when (repeatMode) {
             MediaConstants.REPEAT_ONE -> {
@@ -789,20 +972,39 @@ class FelicityPlayerService : MediaLibraryService(), SharedPreferences.OnSharedP
         audioProcessorManager.applyNightMode(enabled)
     }
 
+    /**
+     * Works out the ReplayGain to apply for [audio] in [mode]: the embedded tag when the
+     * song has one, otherwise the background loudness scan's measurement of it, otherwise
+     * 0 dB. Must be called off the main thread since it may hit the database.
+     */
+    private suspend fun resolveReplayGainDb(audio: Audio, mode: String): Float {
+        parseReplayGainDb(audio, mode)?.let { return it }
+        if (!EqualizerPreferences.isLoudnessAnalysisEnabled()) return 0f
+
+        val analysis = AudioDatabase.getInstance(applicationContext).loudnessDao().getByHash(audio.hash) ?: return 0f
+        val gain = if (mode == EqualizerPreferences.REPLAY_GAIN_MODE_ALBUM) {
+            analysis.albumGain ?: analysis.trackGain
+        } else {
+            analysis.trackGain
+        }
+        return gain.toFloat()
+    }
+
     /**
      * Parses an embedded ReplayGain gain string (e.g. "+5.32 dB" or "-2.1dB") into a float
-     * in dB. Returns 0.0 if the string is null, empty, or cannot be parsed.
+     * in dB. Returns null if the song has no gain tag at all, and 0.0 if the tag is empty
+     * or cannot be parsed.
      *
      * The function strips the trailing " dB" / "dB" suffix (case-insensitive) and any
      * leading/trailing whitespace before parsing the number, so it handles all common
      * tag formats from EAC, foobar2000, MusicBrainz Picard, and mp3gain.
      */
-    private fun parseReplayGainDb(audio: Audio, mode: String): Float {
+    private fun parseReplayGainDb(audio: Audio, mode: String): Float? {
         val raw = if (mode == EqualizerPreferences.REPLAY_GAIN_MODE_ALBUM) {
             audio.replayGainAlbumGain ?: audio.replayGainTrackGain
         } else {
             audio.replayGainTrackGain ?: audio.replayGainAlbumGain
-        } ?: return 0f
+        } ?: return null
 
         return try {
             raw.trim()
@@ -844,6 +1046,18 @@ class FelicityPlayerService : MediaLibraryService(), SharedPreferences.OnSharedP
         }
 
         override fun onIsPlayingChanged(isPlaying: Boolean) {
+            if (isPlaying) {
+                if (listenedAudioId == null) {
+                    listenedAudioId = player.currentMediaItem?.mediaId?.toLongOrNull()
+                }
+                if (listeningSince < 0L) {
+                    listeningSince = SystemClock.elapsedRealtime()
+                }
+            } else if (listeningSince >= 0L) {
+                listenedMs += SystemClock.elapsedRealtime() - listeningSince
+                listeningSince = -1L
+            }
+
             val format = player.audioFormat
             if (format != null && format.pcmEncoding != C.ENCODING_INVALID) {
                 val encodingName = when (format.pcmEncoding) {
@@ -933,6 +1147,7 @@ class FelicityPlayerService : MediaLibraryService(), SharedPreferences.OnSharedP
                     if (player.duration > 0) {
                         currentItemDurationMs = player.duration
                     }
+                    scheduleCrossfade()
                     buildAndPushSnapshot()
                 }
                 Player.STATE_ENDED -> {
@@ -1029,6 +1244,9 @@ class FelicityPlayerService : MediaLibraryService(), SharedPreferences.OnSharedP
                 restoreDecoderMode(preFallbackDecoder)
             }
 
+            // Whatever happens below, the song being left is done being listened to.
+            moveListeningTo(mediaItem?.mediaId?.toLongOrNull())
+
             // Only bother recording anything if the player was actually running before the
             // transition — there's no point counting stats for songs the user skipped while
             // the player was sitting paused in the background.
@@ -1119,7 +1337,8 @@ class FelicityPlayerService : MediaLibraryService(), SharedPreferences.OnSharedP
             // Apply tag-based ReplayGain for the incoming track when auto-RG is on.
             // We look up the Audio object from the database on the IO thread, parse the
             // gain string (e.g. "+5.32 dB"), and forward the dB value to the processor.
-            // When auto-RG is off, or the track has no tag, we reset to unity (0 dB) so
+            // Songs without a tag use the background loudness scan's measurement instead.
+            // When auto-RG is off, or there is neither, we reset to unity (0 dB) so
             // the previous track's gain never bleeds into the next one.
             mediaItem?.let { item ->
                 val audioId = item.mediaId.toLongOrNull()
@@ -1127,7 +1346,7 @@ class FelicityPlayerService : MediaLibraryService(), SharedPreferences.OnSharedP
                     serviceScope.launch(Dispatchers.IO) {
                         val audio = audioRepository.getAudioById(audioId)
                         val db = if (EqualizerPreferences.isAutoReplayGainEnabled() && audio != null) {
-                            parseReplayGainDb(audio, EqualizerPreferences.getReplayGainMode())
+                            resolveReplayGainDb(audio, EqualizerPreferences.getReplayGainMode())
                         } else {
                             0f
                         }
@@ -1144,6 +1363,25 @@ class FelicityPlayerService : MediaLibraryService(), SharedPreferences.OnSharedP
             val isFavorite = MediaPlaybackManager.getCurrentSong()?.isFavorite ?: false
             val repeatMode = PlayerPreferences.getRepeatMode()
             mediaSession?.setCustomLayout(listOf(buildRepeatCommandButton(repeatMode), buildFavoriteCommandButton(isFavorite)))
+
+            // The mixer has used up its plan for this transition (or it was never reached);
+            // forget the key too, so repeating the same song still gets a fresh one.
+            crossfadeKey = null
+            crossfadeNextId = null
+            scheduleCrossfade()
+        }
+
+        override fun onTimelineChanged(timeline: Timeline, reason: Int) {
+            // Queue edits can change which song comes next.
+            scheduleCrossfade()
+        }
+
+        override fun onRepeatModeChanged(repeatMode: Int) {
+            scheduleCrossfade()
+        }
+
+        override fun onShuffleModeEnabledChanged(shuffleModeEnabled: Boolean) {
+            scheduleCrossfade()
         }
 
         override fun onPositionDiscontinuity(
@@ -1271,17 +1509,25 @@ class FelicityPlayerService : MediaLibraryService(), SharedPreferences.OnSharedP
             AudioPreferences.GAPLESS_PLAYBACK -> {
                 // Reconfigure gapless playback when preference changes
                 configureGaplessPlayback()
+                scheduleCrossfade()
                 Log.d(TAG, "Gapless playback preference changed to: ${AudioPreferences.isGaplessPlaybackEnabled()}")
             }
+            AudioPreferences.CROSSFADE_DURATION,
+            AudioPreferences.CROSSFADE_SKIP_SILENT_TAIL -> {
+                scheduleCrossfade()
+                Log.d(TAG, "Crossfade preference changed to: ${AudioPreferences.getCrossfadeDuration()}ms " +
+                        "(skip silent tail: ${AudioPreferences.isCrossfadeSkipSilentTailEnabled()})")
+            }
             AudioPreferences.SKIP_SILENCE -> {
                 setSilenceState()
+                audioProcessorManager.applySilenceTrimming(AudioPreferences.isSkipSilenceEnabled())
                 Log.d(TAG, "Skip silence preference changed to: ${AudioPreferences.isSkipSilenceEnabled()} (Note: Skip silence is currently disabled for all modes)")
             }
             AudioPreferences.IS_STEREO_DOWNMIX_FORCED -> {
                 val enabled = AudioPreferences.isStereoDownmixForced()
                 Log.d(TAG, "Stereo downmix preference changed to: $enabled — rebuilding audio pipeline...")
                 // Rebuilding the player re-invokes buildAudioSink which re-reads the preference
-                // and re-assembles the processor chain with or without the downmix processor.
+                // and reconfigures the native DSP with or without the stereo downmix.
                 switchAudioMode()
             }
             AudioPreferences.OUTPUT_SINK -> {
@@ -1405,6 +1651,7 @@ class FelicityPlayerService : MediaLibraryService(), SharedPreferences.OnSharedP
 
     override fun onTaskRemoved(rootIntent: Intent?) {
         savePlaybackStateToDatabase()
+        flushPlayStats()
         if (!player.playWhenReady || player.mediaItemCount == 0) {
             stopSelf()
         }
@@ -1413,6 +1660,7 @@ class FelicityPlayerService : MediaLibraryService(), SharedPreferences.OnSharedP
 
     override fun onDestroy() {
         savePlaybackStateToDatabase()
+        flushPlayStats()
         unregisterSharedPreferenceChangeListener()
 
         // Remove the service-level USB DAC listener first so it no longer receives
@@ -1456,6 +1704,55 @@ class FelicityPlayerService : MediaLibraryService(), SharedPreferences.OnSharedP
         super.onDestroy()
     }
 
+    /**
+     * Hands the listening time of the song being left over to [SongStatRepository] and
+     * starts adding up [nextAudioId] instead. The clock keeps running when the player is,
+     * so a gapless transition doesn't lose the first moments of the next song.
+     */
+    private fun moveListeningTo(nextAudioId: Long?) {
+        val audioId = listenedAudioId
+        val listened = takeListenedTime()
+        listenedAudioId = nextAudioId
+        if (audioId != null && listened > 0L) {
+            serviceScope.launch(Dispatchers.IO) {
+                val audio = audioRepository.getAudioById(audioId) ?: return@launch
+                songStatRepository.recordListened(audio.hash, listened)
+            }
+        }
+    }
+
+    /**
+     * Returns the listening time added up for [listenedAudioId] so far and starts over
+     * from zero, without stopping the clock if the player is still going.
+     */
+    private fun takeListenedTime(): Long {
+        if (listeningSince >= 0L) {
+            val now = SystemClock.elapsedRealtime()
+            listenedMs += now - listeningSince
+            listeningSince = now
+        }
+        return listenedMs.also { listenedMs = 0L }
+    }
+
+    /**
+     * Writes the plays, skips and replays still waiting in [SongStatRepository]'s batch,
+     * together with the listening time of the current song, before the process may go
+     * away with them. The writer normally picks a batch up a moment after the last event,
+     * which is exactly the moment a swiped-away app might not get. The write is handed to
+     * the repository's own scope, so the main thread never waits on the database here.
+     */
+    private fun flushPlayStats() {
+        val audioId = listenedAudioId
+        val listened = takeListenedTime()
+        songStatRepository.flushInBackground {
+            if (audioId != null && listened > 0L) {
+                audioRepository.getAudioById(audioId)?.let { audio ->
+                    songStatRepository.recordListened(audio.hash, listened)
+                }
+            }
+        }
+    }
+
     private fun savePlaybackStateToDatabase() {
         serviceScope.launch {
             PlaybackStateManager.saveCurrentPlaybackState(applicationContext, TAG)
@@ -1971,11 +2268,13 @@ class FelicityPlayerService : MediaLibraryService(), SharedPreferences.OnSharedP
                     val newFavoriteState = !currentSong.isFavorite
                     serviceScope.launch(Dispatchers.IO) {
                         audioRepository.setFavorite(currentSong.id, newFavoriteState)
-                        // Update the in-memory Audio object so the button reflects the new state
-                        // without waiting for the next database read to come through.
-                        currentSong.isFavorite = newFavoriteState
+                        // Swap an updated copy into the queue so the button reflects the new state
+                        // without waiting for the next database read to come through. The queued
+                        // object is shared with the library snapshot, so it is not written to.
+                        val updatedSong = currentSong.copy().apply { isFavorite = newFavoriteState }
                         val repeatMode = PlayerPreferences.getRepeatMode()
                         serviceScope.launch(Dispatchers.Main) {
+                            MediaPlaybackManager.updateQueuedSong(updatedSong)
                             // Notify the active player fragment so its favorite button updates too.
                             MediaPlaybackManager.notifyCurrentSongUpdated()
                             mediaSession?.setCustomLayout(
@@ -2029,18 +2328,17 @@ class FelicityPlayerService : MediaLibraryService(), SharedPreferences.OnSharedP
 
             when (parentId) {
                 "root" -> {
-                    // Use the cached list that Room keeps fresh via a Flow — no blocking DB call
-                    // needed here, and no risk of an outdated list after a library rescan.
-                    val songs = cachedSongList.ifEmpty {
-                        // Cache hasn't populated yet on the very first call — fetch once as fallback.
-                        audioRepository.getAllAudioList()
-                    }
+                    // Use the shared library snapshot — no blocking DB call needed here, and no
+                    // risk of an outdated list after a library rescan.
+                    val songs = cachedSnapshot.takeIf { it.isLoaded }?.songs
+                        // Snapshot hasn't landed yet on the very first call — wait for it once.
+                        ?: librarySnapshot.awaitLoaded().songs
 
                     // Convert Audio models to MediaItems
                     val mediaItems = songs.map { audio ->
                         MediaItem.Builder()
                             .setMediaId(audio.id.toString())
-                            .setUri(audio.uri)
+                            .setAudioSource(audio)
                             .setMediaMetadata(
                                     MediaMetadata.Builder()
                                         .setTitle(audio.getProperTitle())
@@ -2100,7 +2398,7 @@ class FelicityPlayerService : MediaLibraryService(), SharedPreferences.OnSharedP
                         // Return the fully populated MediaItem with URI
                         MediaItem.Builder()
                             .setMediaId(audio.id.toString())
-                            .setUri(audio.uri)
+                            .setAudioSource(audio)
                             .setMediaMetadata(
                                     MediaMetadata.Builder()
                                         .setTitle(audio.getProperTitle())
@@ -2133,7 +2431,7 @@ class FelicityPlayerService : MediaLibraryService(), SharedPreferences.OnSharedP
                                 Log.d(TAG, "Resolved media ID $mediaId to audio: ${audio.title}")
                                 MediaItem.Builder()
                                     .setMediaId(audio.id.toString())
-                                    .setUri(audio.uri)
+                                    .setAudioSource(audio)
                                     .setMediaMetadata(
                                             MediaMetadata.Builder()
                                                 .setTitle(audio.getProperTitle())
@@ -2183,6 +2481,15 @@ class FelicityPlayerService : MediaLibraryService(), SharedPreferences.OnSharedP
          */
         private const val SNAPSHOT_DEBOUNCE_MS = 200L
 
+        /** Extra head decoded past what a crossfade strictly needs, for durations that are a bit off. */
+        private const val CROSSFADE_HEAD_MARGIN_MS = 1_500L
+
+        /** Waveform bars at or below this (of the song's peak) count as silence at the end of a song. */
+        private const val SILENT_TAIL_THRESHOLD = 0.02f
+
+        /** Most of a silent ending a crossfade is allowed to skip. */
+        private const val MAX_SILENT_TAIL_SKIP_MS = 10_000L
+
         /** Custom session command sent when the user taps the repeat button in the notification. */
         const val COMMAND_TOGGLE_REPEAT = "app.simple.felicity.TOGGLE_REPEAT"
 
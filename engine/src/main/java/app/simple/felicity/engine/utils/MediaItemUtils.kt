@@ -0,0 +1,49 @@
+package app.simple.felicity.engine.utils
+
+import android.net.Uri
+import androidx.core.net.toUri
+import androidx.media3.common.C
+import androidx.media3.common.MediaItem
+import app.simple.felicity.repository.models.Audio
+import java.io.File
+
+/**
+ * Helpers for turning library [Audio] rows into something ExoPlayer can play.
+ *
+ * @author Hamza417
+ */
+object MediaItemUtils {
+
+    /**
+     * Converts an audio path string to a URI that ExoPlayer can open for playback.
+     *
+     * When the path is already a content:// URI (from a SAF-scanned file), we parse
+     * it directly. Otherwise, we wrap it as a file:// URI the old-fashioned way.
+     */
+    fun String.toPlaybackUri(): Uri {
+        return if (this.startsWith("content://")) {
+            this.toUri()
+        } else {
+            File(this).toUri()
+        }
+    }
+
+    /**
+     * Points this builder at the file [audio] plays from. For a CUE track that is the
+     * album file, clipped to the track's range, so ExoPlayer seeks straight to where the
+     * track starts and ends it where the next one begins without anyone splitting the file.
+     */
+    fun MediaItem.Builder.setAudioSource(audio: Audio): MediaItem.Builder {
+        setUri(audio.streamUri.toPlaybackUri())
+
+        if (audio.isCueTrack) {
+            setClippingConfiguration(
+                    MediaItem.ClippingConfiguration.Builder()
+                        .setStartPositionMs(audio.cueStart)
+                        .setEndPositionMs(if (audio.cueEnd > 0L) audio.cueEnd else C.TIME_END_OF_SOURCE)
+                        .build())
+        }
+
+        return this
+    }
+}
@@ -45,7 +45,7 @@ object PcmInfoFormatter {
             if (PlayerPreferences.getPcmInfoMode() == PlayerPreferences.PCM_INFO_MODE_BITRATE) {
                 append(audio.getProperBitrate())
 
-                val ext = audio.uri?.substringAfterLast('.', "")?.uppercase()
+                val ext = audio.streamUri?.substringAfterLast('.', "")?.uppercase()
                 if (!ext.isNullOrEmpty()) {
                     if (isNotEmpty()) append(" ")
                     append(ext)
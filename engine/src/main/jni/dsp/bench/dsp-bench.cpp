@@ -0,0 +1,109 @@
+/**
+ * @file dsp-bench.cpp
+ * @brief Host microbenchmark for the per-buffer stages of the native DSP engine.
+ *
+ * The stage functions in dsp-engine.cpp are file-static, so the engine source is pulled
+ * in whole rather than linked; the stubs/ directory stands in for the NDK log header and
+ * PFFFT. Each stage runs on a fixed 4096-frame buffer of seeded noise at about -2 dBFS,
+ * the same buffer size the player hands the engine, and the mean time per buffer is
+ * printed in nanoseconds. Stages that work in place are timed together with the copy
+ * that restores their input, and that copy is measured separately and subtracted.
+ *
+ * The numbers only mean something relative to each other on the same machine, so run
+ * it before and after a change to a stage and compare. jvm/NightModeJvmBench.java times
+ * the Kotlin night mode processor this engine replaced, on the same buffer shape.
+ *
+ * See CMakeLists.txt next to this file for how to build it.
+ */
+
+#include "dsp-engine.cpp"
+
+#include <chrono>
+#include <cstdio>
+#include <vector>
+
+namespace {
+
+using BenchClock = std::chrono::steady_clock;
+
+constexpr int kFrames = 4096;
+constexpr int kIterations = 20000;
+
+/** Runs [body] a tenth of [iterations] times to warm up, then returns the mean ns per call. */
+template<class Body>
+double nsPerCall(Body body, int iterations) {
+    for (int i = 0; i < iterations / 10; ++i) body();
+    const auto start = BenchClock::now();
+    for (int i = 0; i < iterations; ++i) body();
+    return std::chrono::duration<double, std::nano>(BenchClock::now() - start).count() / iterations;
+}
+
+/** Seeded noise in roughly [-0.8, 0.8], so night mode's envelope really works. */
+std::vector<float> noise(int samples) {
+    std::vector<float> out(samples);
+    srand(1);
+    for (float &s: out) s = (static_cast<float>(rand()) / RAND_MAX - 0.5f) * 1.6f;
+    return out;
+}
+
+} // namespace
+
+int main() {
+    const std::vector<float> stereo = noise(kFrames * 2);
+    const std::vector<float> surround = noise(kFrames * 6);
+    const std::vector<float> quiet(kFrames * 2, 0.0001f);
+    std::vector<float> buf(kFrames * 6);
+
+    volatile bool sink = false;
+    float envelope = 0.f;
+
+    const size_t stereoBytes = stereo.size() * sizeof(float);
+    const size_t surroundBytes = surround.size() * sizeof(float);
+
+    const double copyStereo = nsPerCall([&] { memcpy(buf.data(), stereo.data(), stereoBytes); }, kIterations);
+    const double copySurround = nsPerCall([&] { memcpy(buf.data(), surround.data(), surroundBytes); }, kIterations);
+
+    const double silenceLoud = nsPerCall([&] {
+        sink = isSilentBuffer(stereo.data(), kFrames * 2, 0.001f);
+    }, kIterations);
+
+    const double silenceQuiet = nsPerCall([&] {
+        sink = isSilentBuffer(quiet.data(), kFrames * 2, 0.001f);
+    }, kIterations);
+
+    const double karaoke = nsPerCall([&] {
+        memcpy(buf.data(), stereo.data(), stereoBytes);
+        applyKaraoke(buf.data(), kFrames);
+    }, kIterations) - copyStereo;
+
+    const double nightStereo = nsPerCall([&] {
+        memcpy(buf.data(), stereo.data(), stereoBytes);
+        applyNightMode(buf.data(), kFrames, 2, envelope);
+    }, kIterations) - copyStereo;
+
+    envelope = 0.f;
+    const double nightSurround = nsPerCall([&] {
+        memcpy(buf.data(), surround.data(), surroundBytes);
+        applyNightMode(buf.data(), kFrames, 6, envelope);
+    }, kIterations) - copySurround;
+
+    float left[kDspMaxInputChannels];
+    float right[kDspMaxInputChannels];
+    computeDownmixCoeffs(6, left, right);
+
+    const double downmix = nsPerCall([&] {
+        memcpy(buf.data(), surround.data(), surroundBytes);
+        applyDownmix(buf.data(), kFrames, 6, left, right);
+    }, kIterations) - copySurround;
+
+    printf("mean ns per %d-frame buffer, %d iterations (%s path)\n", kFrames, kIterations,
+           DSP_NEON_ENABLED ? "NEON" : "scalar");
+    printf("  silence scan, loud     %10.0f\n", silenceLoud);
+    printf("  silence scan, quiet    %10.0f\n", silenceQuiet);
+    printf("  karaoke                %10.0f\n", karaoke);
+    printf("  night mode, stereo     %10.0f\n", nightStereo);
+    printf("  night mode, 5.1        %10.0f\n", nightSurround);
+    printf("  downmix 5.1 -> stereo  %10.0f\n", downmix);
+
+    return sink ? 0 : 0;
+}
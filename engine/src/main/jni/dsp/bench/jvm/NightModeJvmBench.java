@@ -0,0 +1,93 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+/**
+ * JVM baseline for the night mode stage of dsp-bench.cpp: the Kotlin NightModeProcessor
+ * that the native engine replaced, ported line for line, reading and writing PCM_FLOAT
+ * through direct little-endian ByteBuffers the way PcmUtils does. Same 4096-frame stereo
+ * noise buffer, same warm-up and iteration count, mean ns per buffer.
+ * <p>
+ * Runs as a single-file program on JDK 11 or newer:
+ * <pre>java engine/src/main/jni/dsp/bench/jvm/NightModeJvmBench.java</pre>
+ */
+public class NightModeJvmBench {
+    
+    private static final int FRAMES = 4096;
+    private static final int CHANNELS = 2;
+    private static final int ITERATIONS = 20000;
+    
+    private static final float THRESHOLD = 0.1f;
+    private static final float RATIO = 8f;
+    private static final float MAKEUP_GAIN = 3.0f;
+    private static final float ATTACK_COEF = 0.003f;
+    private static final float RELEASE_COEF = 0.0000595f;
+    
+    private static final float[] sampleBuffer = new float[CHANNELS];
+    private static float envelope = 0f;
+    
+    public static void main(String[] args) {
+        ByteBuffer input = ByteBuffer.allocateDirect(FRAMES * CHANNELS * 4).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer output = ByteBuffer.allocateDirect(FRAMES * CHANNELS * 4).order(ByteOrder.LITTLE_ENDIAN);
+        
+        Random random = new Random(1);
+        for (int i = 0; i < FRAMES * CHANNELS; i++) {
+            input.putFloat((random.nextFloat() - 0.5f) * 1.6f);
+        }
+        input.flip();
+        
+        for (int i = 0; i < ITERATIONS / 10; i++) {
+            process(input, output);
+        }
+        
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            process(input, output);
+        }
+        double ns = (System.nanoTime() - start) / (double) ITERATIONS;
+        
+        System.out.printf("mean ns per %d-frame buffer, %d iterations (JVM)%n", FRAMES, ITERATIONS);
+        System.out.printf("  night mode, stereo     %10.0f%n", ns);
+    }
+    
+    private static void process(ByteBuffer in, ByteBuffer out) {
+        in.rewind();
+        out.clear();
+        
+        while (in.remaining() >= CHANNELS * 4) {
+            for (int i = 0; i < CHANNELS; i++) {
+                sampleBuffer[i] = in.getFloat();
+            }
+            
+            float inputLevel = 0f;
+            for (int i = 0; i < CHANNELS; i++) {
+                float a = Math.abs(sampleBuffer[i]);
+                if (a > inputLevel) {
+                    inputLevel = a;
+                }
+            }
+            
+            if (inputLevel > envelope) {
+                envelope = envelope + ATTACK_COEF * (inputLevel - envelope);
+            } else {
+                envelope = envelope + RELEASE_COEF * (inputLevel - envelope);
+            }
+            
+            float gain;
+            if (envelope > THRESHOLD) {
+                float compressedAmplitude = THRESHOLD + (envelope - THRESHOLD) / RATIO;
+                gain = Math.max(0f, Math.min(1f, compressedAmplitude / envelope));
+            } else {
+                gain = 1.0f;
+            }
+            
+            float totalGain = gain * MAKEUP_GAIN;
+            
+            for (int i = 0; i < CHANNELS; i++) {
+                out.putFloat(Math.max(-1f, Math.min(1f, sampleBuffer[i] * totalGain)));
+            }
+        }
+        
+        out.flip();
+    }
+}
@@ -0,0 +1,11 @@
+/**
+ * @file log.h
+ * @brief Host stand-in for the NDK logging header, so dsp-engine.cpp builds for the
+ * benchmark. Log calls go nowhere.
+ */
+#pragma once
+
+#define ANDROID_LOG_INFO 4
+#define ANDROID_LOG_ERROR 6
+
+static inline int __android_log_print(int, const char *, const char *, ...) { return 0; }
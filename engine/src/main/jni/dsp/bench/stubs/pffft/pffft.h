@@ -0,0 +1,18 @@
+/**
+ * @file pffft.h
+ * @brief Host stand-in for PFFFT, so dsp-engine.cpp builds for the benchmark. The
+ * visualizer FFT is not benchmarked; these do nothing beyond allocating.
+ */
+#pragma once
+
+#include <cstdlib>
+
+typedef struct PFFFT_Setup PFFFT_Setup;
+typedef enum { PFFFT_FORWARD, PFFFT_BACKWARD } pffft_direction_t;
+typedef enum { PFFFT_REAL, PFFFT_COMPLEX } pffft_transform_t;
+
+static inline PFFFT_Setup *pffft_new_setup(int, pffft_transform_t) { return nullptr; }
+static inline void pffft_destroy_setup(PFFFT_Setup *) {}
+static inline void pffft_transform_ordered(PFFFT_Setup *, const float *, float *, float *, pffft_direction_t) {}
+static inline void *pffft_aligned_malloc(size_t n) { return malloc(n); }
+static inline void pffft_aligned_free(void *p) { free(p); }
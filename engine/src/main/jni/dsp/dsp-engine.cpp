@@ -521,6 +521,264 @@ static void applySaturation(float *__restrict buf, int numSamples,
 #endif
 }
 
+/**
+ * Returns true when every one of the [numSamples] samples in [buf] sits within
+ * +/-[threshold], i.e. the whole buffer is digital silence.
+ *
+ * Music almost never passes this test, so the scan is arranged to bail out as early as
+ * possible: NEON compares 16 samples per iteration and checks the combined mask once per
+ * iteration, so a loud buffer usually returns after the first few vectors.
+ *
+ * @param buf        Interleaved samples to inspect (not modified).
+ * @param numSamples Total number of samples (frames * channels).
+ * @param threshold  Linear amplitude at or below which a sample counts as silent.
+ */
+static bool isSilentBuffer(const float *__restrict buf, int numSamples, float threshold) {
+#if DSP_NEON_ENABLED
+    const float32x4_t vThr = vdupq_n_f32(threshold);
+
+    int i = 0;
+    for (; i <= numSamples - 16; i += 16) {
+        uint32x4_t loud = vcgtq_f32(vabsq_f32(vld1q_f32(buf + i)), vThr);
+        loud = vorrq_u32(loud, vcgtq_f32(vabsq_f32(vld1q_f32(buf + i + 4)), vThr));
+        loud = vorrq_u32(loud, vcgtq_f32(vabsq_f32(vld1q_f32(buf + i + 8)), vThr));
+        loud = vorrq_u32(loud, vcgtq_f32(vabsq_f32(vld1q_f32(buf + i + 12)), vThr));
+
+        /** Horizontal OR without vmaxvq so ARMv7 builds keep working. */
+        const uint32x2_t folded = vorr_u32(vget_low_u32(loud), vget_high_u32(loud));
+        if ((vget_lane_u32(folded, 0) | vget_lane_u32(folded, 1)) != 0) return false;
+    }
+
+    for (; i < numSamples; ++i) {
+        if (fabsf(buf[i]) > threshold) return false;
+    }
+    return true;
+#else
+    for (int i = 0; i < numSamples; ++i) {
+        if (fabsf(buf[i]) > threshold) return false;
+    }
+    return true;
+#endif
+}
+
+/**
+ * Fills [left] and [right] with the per-channel downmix weights for an [inChannels]-wide
+ * stream folded to stereo.
+ *
+ * Mono is spread equally to both sides at -3 dB. For wider layouts the usual WAVE order
+ * is assumed: front left and right go straight through, the center is shared at -3 dB,
+ * the LFE is dropped (most headphones and small speakers can't reproduce it cleanly and it
+ * only eats headroom), and every remaining channel alternates left/right at -6 dB.
+ *
+ * @param inChannels Number of source channels, in [1, kDspMaxInputChannels].
+ * @param left       Destination for the left-output weights (kDspMaxInputChannels long).
+ * @param right      Destination for the right-output weights (kDspMaxInputChannels long).
+ */
+static void computeDownmixCoeffs(int inChannels, float *left, float *right) {
+    for (int c = 0; c < kDspMaxInputChannels; ++c) {
+        left[c] = 0.f;
+        right[c] = 0.f;
+    }
+
+    if (inChannels == 1) {
+        left[0] = 0.707f;
+        right[0] = 0.707f;
+        return;
+    }
+
+    for (int c = 0; c < inChannels; ++c) {
+        switch (c) {
+            case 0:
+                left[c] = 1.f;
+                break;
+            case 1:
+                right[c] = 1.f;
+                break;
+            case 2:
+                left[c] = 0.707f;
+                right[c] = 0.707f;
+                break;
+            case 3:
+                /** LFE, dropped. */
+                break;
+            default:
+                if (c % 2 == 0) {
+                    left[c] = 0.5f;
+                } else {
+                    right[c] = 0.5f;
+                }
+                break;
+        }
+    }
+}
+
+/**
+ * Folds [numFrames] frames of [inChannels]-wide interleaved audio into interleaved stereo,
+ * in place, using the weights from [computeDownmixCoeffs].
+ *
+ * Wider-than-stereo input shrinks, so a forward walk never overwrites a frame it hasn't
+ * read yet: each frame is fully summed before its two outputs are stored, and those land
+ * at or before the frame's own first sample. Mono input grows instead, so it is walked
+ * backwards; the caller must provide room for numFrames * 2 samples.
+ *
+ * @param buf        Interleaved buffer; holds numFrames * 2 stereo samples on return.
+ * @param numFrames  Number of input frames.
+ * @param inChannels Source channel count; never 2.
+ * @param left       Left-output weight per source channel.
+ * @param right      Right-output weight per source channel.
+ */
+static void applyDownmix(float *__restrict buf, int numFrames, int inChannels,
+                         const float *left, const float *right) {
+    if (inChannels == 1) {
+        const float gl = left[0];
+        const float gr = right[0];
+        for (int i = numFrames - 1; i >= 0; --i) {
+            const float s = buf[i];
+            buf[2 * i] = s * gl;
+            buf[2 * i + 1] = s * gr;
+        }
+        return;
+    }
+
+    for (int f = 0; f < numFrames; ++f) {
+        const float *in = buf + f * inChannels;
+        float l = 0.f;
+        float r = 0.f;
+        for (int c = 0; c < inChannels; ++c) {
+            l += in[c] * left[c];
+            r += in[c] * right[c];
+        }
+        buf[2 * f] = l;
+        buf[2 * f + 1] = r;
+    }
+}
+
+/**
+ * Removes the center image (where lead vocals usually sit) from interleaved stereo audio.
+ *
+ * Each channel has the mid signal (L + R) / 2 subtracted from it, which works out to
+ *   L' = (L - R) / 2,  R' = (R - L) / 2
+ * With NEON a single [vrev64q_f32] swaps L and R inside each frame so two frames are
+ * handled per subtract-and-scale.
+ *
+ * @param buf       Interleaved stereo buffer, modified in-place.
+ * @param numFrames Number of stereo frames.
+ */
+static void applyKaraoke(float *__restrict buf, int numFrames) {
+#if DSP_NEON_ENABLED
+    const float32x4_t vHalf = vdupq_n_f32(0.5f);
+
+    int i = 0;
+    /** {L0, R0, L1, R1} - {R0, L0, R1, L1}, halved. */
+    for (; i <= numFrames - 2; i += 2) {
+        const float32x4_t f = vld1q_f32(buf + 2 * i);
+        const float32x4_t swapped = vrev64q_f32(f);
+        vst1q_f32(buf + 2 * i, vmulq_f32(vsubq_f32(f, swapped), vHalf));
+    }
+
+    for (; i < numFrames; ++i) {
+        const float l = buf[2 * i];
+        const float r = buf[2 * i + 1];
+        buf[2 * i] = (l - r) * 0.5f;
+        buf[2 * i + 1] = (r - l) * 0.5f;
+    }
+#else
+    for (int i = 0; i < numFrames; ++i) {
+        const float l = buf[2 * i];
+        const float r = buf[2 * i + 1];
+        buf[2 * i] = (l - r) * 0.5f;
+        buf[2 * i + 1] = (r - l) * 0.5f;
+    }
+#endif
+}
+
+/**
+ * Larger of two floats as a plain compare. Unlike fmaxf() this makes no promise about NaN
+ * inputs, which is what lets it compile to a single maxss / fmax instruction instead of a
+ * libm call on every sample. Only use it where NaN can't reach it or doesn't matter.
+ */
+static inline float maxFast(float a, float b) {
+    return a > b ? a : b;
+}
+
+/** Smaller of two floats as a plain compare; see [maxFast]. */
+static inline float minFast(float a, float b) {
+    return a < b ? a : b;
+}
+
+/**
+ * Night mode: a stereo-linked downward compressor with makeup gain and a hard ceiling.
+ *
+ * The loudest channel of each frame drives a one-pole envelope follower (fast attack,
+ * slow release). Above [kNightThreshold] the envelope is squeezed by [kNightRatio], the
+ * resulting gain is applied to every channel of the frame so the stereo image doesn't
+ * shift, and [kNightMakeupGain] lifts the quiet parts back up. The final clamp to
+ * [-1, 1] catches the brief overshoot while the envelope is still catching a transient.
+ *
+ * The envelope is a per-frame feedback loop, so frames are walked one at a time. Stereo
+ * frames are handled as one two-lane NEON vector (peak, gain and clamp in registers);
+ * everything else uses [minFast] / [maxFast], which the compiler turns into single
+ * instructions rather than the libm fminf/fmaxf calls this stage used to make per sample.
+ * The compressed gain needs no clamp of its own: above the threshold it always lies
+ * between 1 / [kNightRatio] and 1.
+ *
+ * @param buf       Interleaved buffer, modified in-place.
+ * @param numFrames Number of frames.
+ * @param channels  Channels per frame.
+ * @param envelope  Envelope follower state, carried across buffers.
+ */
+static void applyNightMode(float *__restrict buf, int numFrames, int channels, float &envelope) {
+    constexpr float kInvRatio = 1.f / kNightRatio;
+    float env = envelope;
+
+#if DSP_NEON_ENABLED
+    if (channels == 2) {
+        const float32x2_t vLo = vdup_n_f32(-1.f);
+        const float32x2_t vHi = vdup_n_f32(1.f);
+
+        for (int f = 0; f < numFrames; ++f) {
+            float *frame = buf + 2 * f;
+            const float32x2_t x = vld1_f32(frame);
+            const float level = vget_lane_f32(vpmax_f32(vabs_f32(x), vabs_f32(x)), 0);
+
+            env += (level > env ? kNightAttackCoef : kNightReleaseCoef) * (level - env);
+
+            float gain = kNightMakeupGain;
+            if (env > kNightThreshold) {
+                gain *= (kNightThreshold + (env - kNightThreshold) * kInvRatio) / env;
+            }
+
+            vst1_f32(frame, vmin_f32(vHi, vmax_f32(vLo, vmul_n_f32(x, gain))));
+        }
+
+        envelope = env;
+        return;
+    }
+#endif
+
+    for (int f = 0; f < numFrames; ++f) {
+        float *frame = buf + f * channels;
+
+        float level = 0.f;
+        for (int c = 0; c < channels; ++c) {
+            level = maxFast(level, fabsf(frame[c]));
+        }
+
+        env += (level > env ? kNightAttackCoef : kNightReleaseCoef) * (level - env);
+
+        float gain = kNightMakeupGain;
+        if (env > kNightThreshold) {
+            gain *= (kNightThreshold + (env - kNightThreshold) * kInvRatio) / env;
+        }
+
+        for (int c = 0; c < channels; ++c) {
+            frame[c] = minFast(1.f, maxFast(-1.f, frame[c] * gain));
+        }
+    }
+
+    envelope = env;
+}
+
 /** Base comb filter delay lengths (samples at 44100 Hz) — left channel. */
 static const int kCombBaseLenL[kReverbCombCount] = {1116, 1188, 1277, 1356};
 
@@ -940,6 +1198,14 @@ Java_app_simple_felicity_engine_processors_DspProcessor_nativeDspCreate(
     ctx->satDrive = 0.0f;
     ctx->satCompensation = 1.0f;
 
+    /** Karaoke, night mode, and silence trimming off; no downmix until one is requested. */
+    ctx->karaokeEnabled = false;
+    ctx->nightModeEnabled = false;
+    ctx->nightEnvelope = 0.0f;
+    ctx->silenceTrimEnabled = false;
+    ctx->silenceThreshold = kDspDefaultSilenceThreshold;
+    ctx->inputChannelCount = ctx->channelCount;
+
     /**
      * Reverb: allocate all delay-line buffers and configure default parameters.
      * Default: wet = 0 (bypassed), decay = 0.5, damp = 0.3 (moderately bright), size = 0.5.
@@ -991,6 +1257,13 @@ Java_app_simple_felicity_engine_processors_DspProcessor_nativeDspConfigure(
     ctx->sampleRate = static_cast<int>(sampleRate);
     ctx->channelCount = static_cast<int>(channelCount);
 
+    /**
+     * The downmix is tied to the old input layout; the Kotlin side re-requests it through
+     * [nativeDspSetDownmix] right after reconfiguring if it still applies.
+     */
+    ctx->inputChannelCount = ctx->channelCount;
+    ctx->nightEnvelope = 0.0f;
+
     /** Recompute every band at the new sample rate. */
     for (int b = 0; b < kDspEqBandCount; ++b) {
         const BiquadCoeffs c = ctx->eqFlat
@@ -1266,33 +1539,72 @@ Java_app_simple_felicity_engine_processors_DspProcessor_nativeDspSetSaturation(
  * The unified, zero-allocation audio processing hot path.
  *
  * Pins the JVM array with [GetFloatArrayElements], applies the full DSP chain in
- * the order [10-band EQ (if enabled)] -> [bass shelf] -> [treble shelf] ->
- * [stereo widening] -> [balance] -> [tape saturation], then feeds the processed
+ * the order [silence trimming] -> [stereo downmix] -> [karaoke] ->
+ * [10-band EQ (if enabled)] -> [bass shelf] -> [treble shelf] -> [stereo widening] ->
+ * [balance] -> [tape saturation] -> [reverb] -> [night mode], then feeds the processed
  * audio into the visualizer ring buffer. Bass and treble are always applied
  * regardless of the EQ enable state. The modified array is committed back to the
  * JVM heap via [ReleaseFloatArrayElements] with mode 0. No heap allocations occur
  * inside this function.
  *
- * @param env       JNI environment pointer.
- * @param thiz      Calling Java/Kotlin object (unused).
- * @param handle    Opaque pointer returned by [nativeDspCreate].
- * @param pcmBuffer Interleaved float PCM array from the decoder; modified in-place.
+ * Silence trimming and the downmix change how many samples come out, so they only run
+ * when [reshape] is true. Callers that must write back exactly what they passed in (the
+ * direct-output sinks) pass false and get every other stage.
+ *
+ * @param env         JNI environment pointer.
+ * @param thiz        Calling Java/Kotlin object (unused).
+ * @param handle      Opaque pointer returned by [nativeDspCreate].
+ * @param pcmBuffer   Interleaved float PCM array from the decoder; modified in-place. When a
+ *                    mono source is being upmixed it must hold at least twice [sampleCount].
+ * @param sampleCount Number of valid input samples at the start of [pcmBuffer].
+ * @param reshape     Allow the stages that drop or re-lay out samples.
+ * @return Number of valid output samples in [pcmBuffer]; 0 when the buffer was trimmed
+ *         as silence (the array is then left untouched).
  */
-JNIEXPORT void JNICALL
+JNIEXPORT jint JNICALL
 Java_app_simple_felicity_engine_processors_DspProcessor_nativeDspProcessAudio(
         JNIEnv *env, jobject /*thiz*/,
-        jlong handle, jfloatArray pcmBuffer) {
+        jlong handle, jfloatArray pcmBuffer, jint sampleCount, jboolean reshape) {
 
     auto *ctx = reinterpret_cast<DspContext *>(handle);
-    if (!ctx) return;
+    if (!ctx) return sampleCount;
 
-    const int totalSamples = env->GetArrayLength(pcmBuffer);
-    if (totalSamples <= 0) return;
+    const int capacity = env->GetArrayLength(pcmBuffer);
+    int totalSamples = sampleCount < capacity ? static_cast<int>(sampleCount) : capacity;
+    if (totalSamples <= 0) return 0;
 
     /** Pin the JVM array — no copy requested (nullptr flag = don't allocate a copy). */
     jfloat *buf = env->GetFloatArrayElements(pcmBuffer, nullptr);
 
     const int ch = ctx->channelCount;
+
+    /**
+     * Stage 0a: Silence trimming.
+     * Checked before anything else so a silent buffer costs one scan and nothing more.
+     * JNI_ABORT releases the pin without copying back, since nothing was changed.
+     */
+    if (reshape && ctx->silenceTrimEnabled
+            && isSilentBuffer(buf, totalSamples, ctx->silenceThreshold)) {
+        env->ReleaseFloatArrayElements(pcmBuffer, buf, JNI_ABORT);
+        return 0;
+    }
+
+    /**
+     * Stage 0b: Multichannel (or mono) → stereo downmix.
+     * Everything after this point sees [channelCount]-wide frames.
+     */
+    const int inCh = ctx->inputChannelCount;
+    if (reshape && inCh != ch && ch == 2) {
+        const int inFrames = totalSamples / inCh;
+        if (inFrames * 2 > capacity) {
+            DSP_LOGE("nativeDspProcessAudio: buffer too small to upmix %d frames", inFrames);
+            env->ReleaseFloatArrayElements(pcmBuffer, buf, JNI_ABORT);
+            return 0;
+        }
+        applyDownmix(buf, inFrames, inCh, ctx->downmixLeft, ctx->downmixRight);
+        totalSamples = inFrames * 2;
+    }
+
     const int numFrames = totalSamples / ch;
 
     /**
@@ -1310,6 +1622,8 @@ Java_app_simple_felicity_engine_processors_DspProcessor_nativeDspProcessAudio(
     const float satDrive = ctx->satDrive;
     const float satComp = ctx->satCompensation;
     const bool reverbActive = ctx->reverbEnabled;
+    const bool karaokeActive = ctx->karaokeEnabled;
+    const bool nightActive = ctx->nightModeEnabled;
 
     /**
      * Coefficient smoothing — runs once per buffer callback before any audio is processed.
@@ -1351,6 +1665,15 @@ Java_app_simple_felicity_engine_processors_DspProcessor_nativeDspProcessAudio(
         a.a2 += kCoeffSmoothAlpha * (t.a2 - a.a2);
     }
 
+    /**
+     * Stage 0c: Karaoke center removal.
+     * Runs before the EQ and effects so the subtraction isn't colored by them. Needs a
+     * stereo image to work with, so mono streams skip it.
+     */
+    if (karaokeActive && ch == 2) {
+        applyKaraoke(buf, numFrames);
+    }
+
     /**
      * Stage 1: 10-Band peaking EQ.
      * Skipped entirely when the EQ is disabled or all bands are flat.
@@ -1443,6 +1766,15 @@ Java_app_simple_felicity_engine_processors_DspProcessor_nativeDspProcessAudio(
         }
     }
 
+    /**
+     * Stage 6b: Night mode compressor.
+     * Placed after every tonal and spatial stage so it reacts to the loudness of the
+     * final mix, reverb tail included.
+     */
+    if (nightActive) {
+        applyNightMode(buf, numFrames, ch, ctx->nightEnvelope);
+    }
+
     /**
      * Stage 7: Visualizer handoff.
      * Accumulate mono downmix and trigger the FFT when the buffer is full.
@@ -1458,6 +1790,7 @@ Java_app_simple_felicity_engine_processors_DspProcessor_nativeDspProcessAudio(
      * Mode 0 = copy native buffer back and release the pinned reference.
      */
     env->ReleaseFloatArrayElements(pcmBuffer, buf, 0);
+    return totalSamples;
 }
 
 /**
@@ -1639,6 +1972,132 @@ Java_app_simple_felicity_engine_processors_DspProcessor_nativeDspSetReverb(
     }
 }
 
+/**
+ * Switches the karaoke center-removal stage on or off. Only has an effect on stereo.
+ *
+ * @param env     JNI environment pointer.
+ * @param thiz    Calling Java/Kotlin object (unused).
+ * @param handle  Opaque pointer returned by [nativeDspCreate].
+ * @param enabled True to remove the center image.
+ */
+JNIEXPORT void JNICALL
+Java_app_simple_felicity_engine_processors_DspProcessor_nativeDspSetKaraoke(
+        JNIEnv * /*env*/, jobject /*thiz*/,
+        jlong handle, jboolean enabled) {
+
+    auto *ctx = reinterpret_cast<DspContext *>(handle);
+    if (!ctx) return;
+
+    ctx->karaokeEnabled = (enabled == JNI_TRUE);
+}
+
+/**
+ * Switches the night mode compressor on or off. Turning it on resets the envelope so the
+ * first buffers aren't squashed (or left unsquashed) based on audio from minutes ago.
+ *
+ * @param env     JNI environment pointer.
+ * @param thiz    Calling Java/Kotlin object (unused).
+ * @param handle  Opaque pointer returned by [nativeDspCreate].
+ * @param enabled True to compress.
+ */
+JNIEXPORT void JNICALL
+Java_app_simple_felicity_engine_processors_DspProcessor_nativeDspSetNightMode(
+        JNIEnv * /*env*/, jobject /*thiz*/,
+        jlong handle, jboolean enabled) {
+
+    auto *ctx = reinterpret_cast<DspContext *>(handle);
+    if (!ctx) return;
+
+    const bool on = (enabled == JNI_TRUE);
+    if (on && !ctx->nightModeEnabled) {
+        ctx->nightEnvelope = 0.0f;
+    }
+    ctx->nightModeEnabled = on;
+}
+
+/**
+ * Configures the silence trimming stage.
+ *
+ * @param env       JNI environment pointer.
+ * @param thiz      Calling Java/Kotlin object (unused).
+ * @param handle    Opaque pointer returned by [nativeDspCreate].
+ * @param enabled   True to drop buffers that are entirely silent.
+ * @param threshold Linear amplitude at or below which a sample counts as silence.
+ */
+JNIEXPORT void JNICALL
+Java_app_simple_felicity_engine_processors_DspProcessor_nativeDspSetSilenceTrimming(
+        JNIEnv * /*env*/, jobject /*thiz*/,
+        jlong handle, jboolean enabled, jfloat threshold) {
+
+    auto *ctx = reinterpret_cast<DspContext *>(handle);
+    if (!ctx) return;
+
+    ctx->silenceThreshold = fmaxf(0.f, fminf(1.f, static_cast<float>(threshold)));
+    ctx->silenceTrimEnabled = (enabled == JNI_TRUE);
+}
+
+/**
+ * Tells the engine that incoming buffers are [inputChannelCount] channels wide and must be
+ * folded to the configured stereo layout before the rest of the chain. Passing the
+ * configured channel count (or a count the engine can't fold) turns the stage off.
+ *
+ * @param env               JNI environment pointer.
+ * @param thiz              Calling Java/Kotlin object (unused).
+ * @param handle            Opaque pointer returned by [nativeDspCreate].
+ * @param inputChannelCount Channel count of the decoder output.
+ */
+JNIEXPORT void JNICALL
+Java_app_simple_felicity_engine_processors_DspProcessor_nativeDspSetDownmix(
+        JNIEnv * /*env*/, jobject /*thiz*/,
+        jlong handle, jint inputChannelCount) {
+
+    auto *ctx = reinterpret_cast<DspContext *>(handle);
+    if (!ctx) return;
+
+    const int in = static_cast<int>(inputChannelCount);
+    if (ctx->channelCount != 2 || in < 1 || in > kDspMaxInputChannels || in == 2) {
+        ctx->inputChannelCount = ctx->channelCount;
+        return;
+    }
+
+    computeDownmixCoeffs(in, ctx->downmixLeft, ctx->downmixRight);
+    ctx->inputChannelCount = in;
+}
+
+/**
+ * Returns true when every stage is currently configured to leave the audio untouched, so
+ * the caller can hand its buffer straight through without converting it to float at all.
+ *
+ * @param env    JNI environment pointer.
+ * @param thiz   Calling Java/Kotlin object (unused).
+ * @param handle Opaque pointer returned by [nativeDspCreate].
+ * @return [JNI_TRUE] when processing would be a no-op.
+ */
+JNIEXPORT jboolean JNICALL
+Java_app_simple_felicity_engine_processors_DspProcessor_nativeDspIsNeutral(
+        JNIEnv * /*env*/, jobject /*thiz*/,
+        jlong handle) {
+
+    auto *ctx = reinterpret_cast<DspContext *>(handle);
+    if (!ctx) return JNI_TRUE;
+
+    const bool neutral = (!ctx->eqEnabled || ctx->eqFlat)
+                         && ctx->bassFlat
+                         && ctx->trebleFlat
+                         && fabsf(ctx->directGain - 1.0f) <= kWidenEpsilon
+                         && fabsf(ctx->crossGain) <= kWidenEpsilon
+                         && fabsf(ctx->leftGain - 1.0f) <= kPanEpsilon
+                         && fabsf(ctx->rightGain - 1.0f) <= kPanEpsilon
+                         && ctx->satDrive <= kSatDriveEpsilon
+                         && !ctx->reverbEnabled
+                         && !ctx->karaokeEnabled
+                         && !ctx->nightModeEnabled
+                         && !ctx->silenceTrimEnabled
+                         && ctx->inputChannelCount == ctx->channelCount;
+
+    return neutral ? JNI_TRUE : JNI_FALSE;
+}
+
 } // extern "C"
 
 
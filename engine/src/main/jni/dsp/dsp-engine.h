@@ -6,6 +6,9 @@
  * mono downmix scratch buffer that feeds the visualizer FFT.
  *
  * The full DSP chain applied by [nativeProcessAudio] is, in order:
+ *   0a. Silence trimming — drops the whole buffer when it is digital silence ([silenceTrimEnabled])
+ *   0b. Multichannel → stereo downmix — only when [inputChannelCount] differs from [channelCount]
+ *   0c. Karaoke center-channel removal — gated by [karaokeEnabled]
  *   1. 10-band peaking EQ (ISO standard center frequencies, RBJ biquad) — gated by [eqEnabled]
  *   2. Bass low-shelf filter (250 Hz, S = 1) — always active, independent of [eqEnabled]
  *   3. Treble high-shelf filter (4000 Hz, S = 1) — always active, independent of [eqEnabled]
@@ -13,8 +16,13 @@
  *   5. Constant-power pan / balance
  *   6. Tape-style soft saturation via algebraic sigmoid
  *   7. Freeverb-style stereo reverb (parallel combs + series allpasses) — gated by [reverbEnabled]
+ *   7b. Night mode stereo-linked compressor — gated by [nightModeEnabled]
  *   8. Mono downmix → output-latency pre-delay ring buffer → visualizer FFT trigger
  *
+ * Stages 0a and 0b change how many samples come out of a buffer, so they only run when the
+ * caller can cope with that (the Media3 processor chain); the direct-output sinks write
+ * exactly what they decoded and skip both.
+ *
  * The visualizer stage (#8) routes the mono downmix through a circular pre-delay buffer
  * before it reaches the FFT accumulator. The read cursor lags the write cursor by exactly
  * [DspContext::outputLatencySamples] frames, which equals the hardware audio output latency
@@ -37,6 +45,30 @@ static constexpr int kDspEqBandCount = 10;
 /** Maximum number of audio channels supported by the engine. */
 static constexpr int kDspMaxChannels = 2;
 
+/**
+ * Maximum number of input channels the stereo downmix stage accepts. Matches the 24-channel
+ * ceiling Media3 decoders emit; anything wider is passed through untouched.
+ */
+static constexpr int kDspMaxInputChannels = 24;
+
+/** Night mode compressor threshold (linear, about -20 dBFS). */
+static constexpr float kNightThreshold = 0.1f;
+
+/** Night mode compression ratio above [kNightThreshold]. */
+static constexpr float kNightRatio = 8.0f;
+
+/** Night mode makeup gain so quiet passages come up after the peaks are squashed. */
+static constexpr float kNightMakeupGain = 3.0f;
+
+/** Per-frame envelope attack coefficient (fast, so transients are caught early). */
+static constexpr float kNightAttackCoef = 0.003f;
+
+/** Per-frame envelope release coefficient (slow, so the gain doesn't pump). */
+static constexpr float kNightReleaseCoef = 0.0000595f;
+
+/** Default silence trimming threshold, about -60 dBFS. */
+static constexpr float kDspDefaultSilenceThreshold = 0.001f;
+
 /** Q factor (1-octave bandwidth, sqrt(2)) used for all peaking EQ bands. */
 static constexpr float kDspBandQ = 1.4142135f;
 
@@ -332,10 +364,43 @@ struct DspContext {
      */
     int outputLatencyMs;
 
+    /**
+     * When true, a buffer whose every sample sits within +/-[silenceThreshold] is dropped
+     * entirely instead of being processed and played. Only honoured on the Media3 chain path.
+     */
+    bool silenceTrimEnabled;
+
+    /** Linear amplitude at or below which a sample counts as silence. */
+    float silenceThreshold;
+
+    /** Removes the center (vocal) image by subtracting the mid signal from both channels. */
+    bool karaokeEnabled;
+
+    /** Enables the stereo-linked night mode compressor after the reverb stage. */
+    bool nightModeEnabled;
+
+    /**
+     * Night mode envelope follower state. Reset to 0 by [nativeDspSetNightMode] whenever
+     * the compressor is switched on so it doesn't start from a stale level.
+     */
+    float nightEnvelope;
+
+    /**
+     * Number of interleaved channels in the buffers handed to [nativeProcessAudio] before
+     * the downmix stage. Equal to [channelCount] unless a stereo downmix was requested.
+     */
+    int inputChannelCount;
+
+    /** Per-input-channel contribution to the left output of the downmix stage. */
+    float downmixLeft[kDspMaxInputChannels];
+
+    /** Per-input-channel contribution to the right output of the downmix stage. */
+    float downmixRight[kDspMaxInputChannels];
+
     /** Sample rate of the current audio format in Hz. */
     int sampleRate;
 
-    /** Number of interleaved audio channels (1 or 2). */
+    /** Number of interleaved audio channels (1 or 2) after the downmix stage. */
     int channelCount;
 };
 
@@ -19,6 +19,20 @@
 
 #include "pffft/pffft.h"
 
+/**
+ * Capacity of the PCM tap's output-latency pre-delay ring, in mono samples. Power of two
+ * so the cursor wraps with a mask; at 48 kHz it covers about 1.37 seconds, comfortably
+ * more than the worst Bluetooth A2DP latency. Mirrored by [VisualizerProcessor] when it
+ * clamps the delay it asks for.
+ */
+static constexpr int kTapDelaySamples = 65536;
+
+/** Bitmask equivalent to (kTapDelaySamples - 1). */
+static constexpr int kTapDelayMask = kTapDelaySamples - 1;
+
+/** Frames converted to mono per pass of the tap, sized to stay in L1 cache. */
+static constexpr int kTapBlockFrames = 256;
+
 /**
  * Aggregates all PFFFT state for a single real-valued FFT plan plus the
  * frequency-band mapping needed by the visualizer and the DSP engine.
@@ -37,5 +51,17 @@ struct FFTContext {
     int size;      ///< FFT size N; must be a power of two and >= 32.
     int bandCount; ///< Number of frequency bands; set by nativeSetBandEdges.
     int *bandEdges; ///< Band boundary bin indices, length = bandCount + 1; nullptr until set.
+
+    // PCM tap state — owned by the visualizer bridge, untouched by the DSP engine.
+
+    float *tapMono;     ///< Mono downmix of the current block, length = kTapBlockFrames.
+    float *tapDelayed;  ///< The same block read back through the pre-delay ring.
+    float *tapDelay;    ///< Output-latency pre-delay ring, length = kTapDelaySamples.
+    int tapDelayWritePos; ///< Write cursor within [tapDelay].
+    float *tapHistory;  ///< Circular buffer holding the newest [size] mono samples.
+    int tapHistoryPos;  ///< Index in [tapHistory] where the next sample goes.
+    int tapFilled;      ///< How many samples [tapHistory] holds, capped at [size].
+    int tapSinceHop;    ///< Samples pushed since the last completed hop.
+    float *tapFrame;    ///< Newest complete window, oldest sample first, length = [size].
 };
 
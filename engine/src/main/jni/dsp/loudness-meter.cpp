@@ -0,0 +1,331 @@
+/**
+ * @file loudness-meter.cpp
+ * @brief JNI bridge and implementation of the BS.1770 / EBU R128 loudness meter behind
+ * [LoudnessMeter] on the Kotlin side.
+ *
+ * See loudness-meter.h for the measurement itself. The JNI surface is deliberately small:
+ * create a meter for a sample rate and channel count, push interleaved float chunks into
+ * it, and read back the gating histogram and true peak once the song is done. Integration
+ * is a separate static call so the Kotlin side can integrate a summed album histogram with
+ * exactly the same gating code as a single song.
+ *
+ * Nothing here runs on the audio thread, so the code favors being plainly correct over
+ * being clever; the whole song still goes through far faster than real time.
+ *
+ * @author Hamza417
+ */
+
+#include <jni.h>
+#include <android/log.h>
+#include <cmath>
+#include <cstring>
+#include <new>
+
+#include "loudness-meter.h"
+
+#define LOUDNESS_TAG "FelicityLoudness"
+#define LOUDNESS_LOGE(...) __android_log_print(ANDROID_LOG_ERROR, LOUDNESS_TAG, __VA_ARGS__)
+
+/**
+ * Works out both K-weighting stages for [sampleRate]. These are the analog prototypes
+ * behind the 48 kHz coefficients printed in BS.1770, re-derived through the bilinear
+ * transform so 44.1 kHz and hi-res files get the same curve instead of a shifted one.
+ */
+static void designKWeighting(LoudnessMeter *meter) {
+    const double fs = meter->sampleRate;
+
+    // Stage 1: high shelf modelling the acoustic effect of the head (+4 dB above ~1.5 kHz).
+    {
+        const double f0 = 1681.974450955533;
+        const double gainDb = 3.999843853973347;
+        const double q = 0.7071752369554196;
+
+        const double k = tan(M_PI * f0 / fs);
+        const double vh = pow(10.0, gainDb / 20.0);
+        const double vb = pow(vh, 0.4996667741545416);
+        const double a0 = 1.0 + k / q + k * k;
+
+        meter->shelf.b0 = (vh + vb * k / q + k * k) / a0;
+        meter->shelf.b1 = 2.0 * (k * k - vh) / a0;
+        meter->shelf.b2 = (vh - vb * k / q + k * k) / a0;
+        meter->shelf.a1 = 2.0 * (k * k - 1.0) / a0;
+        meter->shelf.a2 = (1.0 - k / q + k * k) / a0;
+    }
+
+    // Stage 2: the revised low-frequency B-curve (RLB), a second-order high-pass at ~38 Hz.
+    {
+        const double f0 = 38.13547087602444;
+        const double q = 0.5003270373238773;
+
+        const double k = tan(M_PI * f0 / fs);
+        const double a0 = 1.0 + k / q + k * k;
+
+        meter->highPass.b0 = 1.0;
+        meter->highPass.b1 = -2.0;
+        meter->highPass.b2 = 1.0;
+        meter->highPass.a1 = 2.0 * (k * k - 1.0) / a0;
+        meter->highPass.a2 = (1.0 - k / q + k * k) / a0;
+    }
+}
+
+/**
+ * BS.1770 channel weights for Android's channel order. Only the common 5.1 and 7.1
+ * layouts have surrounds and an LFE we can identify by position; everything else counts
+ * every channel at unity.
+ */
+static void assignChannelWeights(LoudnessMeter *meter) {
+    for (int c = 0; c < kLoudnessMaxChannels; ++c) {
+        meter->weights[c] = 1.0;
+    }
+
+    if (meter->channelCount == 6 || meter->channelCount == 8) {
+        meter->weights[3] = 0.0; // LFE
+        for (int c = 4; c < meter->channelCount; ++c) {
+            meter->weights[c] = 1.41; // Surrounds, +1.5 dB
+        }
+    }
+}
+
+/**
+ * Builds the polyphase true-peak interpolator: a Blackman-windowed sinc with its cutoff
+ * at the original Nyquist, split into [LoudnessMeter::truePeakFactor] branches of
+ * [kTruePeakTaps] taps. Each branch is normalized to unity DC gain so a full-scale
+ * constant reads as exactly 0 dBTP.
+ */
+static void designTruePeakFilter(LoudnessMeter *meter) {
+    if (meter->sampleRate >= 192000) {
+        meter->truePeakFactor = 1;
+    } else if (meter->sampleRate >= 96000) {
+        meter->truePeakFactor = 2;
+    } else {
+        meter->truePeakFactor = kTruePeakMaxFactor;
+    }
+
+    const int factor = meter->truePeakFactor;
+    if (factor == 1) return;
+
+    const int length = factor * kTruePeakTaps;
+    const double center = (length - 1) / 2.0;
+
+    for (int phase = 0; phase < factor; ++phase) {
+        double sum = 0.0;
+        for (int tap = 0; tap < kTruePeakTaps; ++tap) {
+            const int n = phase + tap * factor;
+            const double x = (n - center) / factor;
+            const double sinc = fabs(x) < 1e-9 ? 1.0 : sin(M_PI * x) / (M_PI * x);
+            const double window = 0.42
+                                  - 0.5 * cos(2.0 * M_PI * n / (length - 1))
+                                  + 0.08 * cos(4.0 * M_PI * n / (length - 1));
+            meter->truePeakCoefficients[phase][tap] = static_cast<float>(sinc * window);
+            sum += sinc * window;
+        }
+        for (int tap = 0; tap < kTruePeakTaps; ++tap) {
+            meter->truePeakCoefficients[phase][tap] = static_cast<float>(
+                    meter->truePeakCoefficients[phase][tap] / sum);
+        }
+    }
+}
+
+/** Runs one sample through a DF2T biquad section. */
+static inline double biquad(const LoudnessBiquad &f, double *state, double x) {
+    const double y = f.b0 * x + state[0];
+    state[0] = f.b1 * x - f.a1 * y + state[1];
+    state[1] = f.b2 * x - f.a2 * y;
+    return y;
+}
+
+/** Files one finished 400 ms block into the histogram, if it clears the absolute gate. */
+static void addBlock(LoudnessMeter *meter) {
+    const double energy = (meter->recentHops[0] + meter->recentHops[1]
+                           + meter->recentHops[2] + meter->recentHops[3])
+                          / (4.0 * meter->hopFrames);
+    if (energy <= 0.0) return;
+
+    const double lufs = -0.691 + 10.0 * log10(energy);
+    if (lufs < kLoudnessMinLufs) return;
+
+    int bin = static_cast<int>((lufs - kLoudnessMinLufs) / kLoudnessBinWidth);
+    if (bin >= kLoudnessBins) bin = kLoudnessBins - 1;
+    meter->histogram[bin]++;
+}
+
+/** Loudness at the middle of histogram bin [bin]. */
+static inline double binLufs(int bin) {
+    return kLoudnessMinLufs + (bin + 0.5) * kLoudnessBinWidth;
+}
+
+/** Mean-square energy that corresponds to [lufs]. */
+static inline double lufsToEnergy(double lufs) {
+    return pow(10.0, (lufs + 0.691) / 10.0);
+}
+
+double loudnessIntegrate(const uint32_t *histogram) {
+    // Absolute gate: every block in the histogram already cleared it.
+    double energySum = 0.0;
+    uint64_t blockCount = 0;
+    for (int i = 0; i < kLoudnessBins; ++i) {
+        if (histogram[i] == 0) continue;
+        energySum += histogram[i] * lufsToEnergy(binLufs(i));
+        blockCount += histogram[i];
+    }
+    if (blockCount == 0) return -INFINITY;
+
+    // Relative gate: 10 LU under the mean of the absolute-gated blocks.
+    const double threshold = -0.691 + 10.0 * log10(energySum / blockCount) + kLoudnessRelativeGate;
+
+    energySum = 0.0;
+    blockCount = 0;
+    for (int i = 0; i < kLoudnessBins; ++i) {
+        if (histogram[i] == 0 || binLufs(i) < threshold) continue;
+        energySum += histogram[i] * lufsToEnergy(binLufs(i));
+        blockCount += histogram[i];
+    }
+    if (blockCount == 0) return -INFINITY;
+
+    return -0.691 + 10.0 * log10(energySum / blockCount);
+}
+
+extern "C" {
+
+/**
+ * Allocates a meter for audio at [sampleRate] with [channelCount] interleaved channels.
+ *
+ * @return Opaque pointer to a [LoudnessMeter] cast to jlong, or 0 when the format is not
+ *         supported or the allocation failed.
+ */
+JNIEXPORT jlong JNICALL
+Java_app_simple_felicity_engine_audio_LoudnessMeter_nativeCreate(
+        JNIEnv * /*env*/, jobject /*thiz*/, jint sampleRate, jint channelCount) {
+
+    if (sampleRate < 8000 || channelCount < 1 || channelCount > kLoudnessMaxChannels) {
+        LOUDNESS_LOGE("Unsupported format: %d Hz, %d channels", sampleRate, channelCount);
+        return 0L;
+    }
+
+    auto *meter = new(std::nothrow) LoudnessMeter();
+    if (!meter) return 0L;
+
+    meter->sampleRate = sampleRate;
+    meter->channelCount = channelCount;
+    meter->hopFrames = static_cast<int>(lround(sampleRate * 0.1));
+
+    designKWeighting(meter);
+    assignChannelWeights(meter);
+    designTruePeakFilter(meter);
+
+    return reinterpret_cast<jlong>(meter);
+}
+
+/**
+ * Measures [frameCount] frames of interleaved float PCM from [samples]. Chunks can be of
+ * any size; hops and blocks carry over from one call to the next.
+ */
+JNIEXPORT void JNICALL
+Java_app_simple_felicity_engine_audio_LoudnessMeter_nativeProcess(
+        JNIEnv *env, jobject /*thiz*/, jlong handle, jfloatArray samples, jint frameCount) {
+
+    auto *meter = reinterpret_cast<LoudnessMeter *>(handle);
+    if (!meter || frameCount <= 0) return;
+
+    jfloat *pcm = env->GetFloatArrayElements(samples, nullptr);
+    if (!pcm) return;
+
+    const int channels = meter->channelCount;
+    const int factor = meter->truePeakFactor;
+
+    for (int f = 0; f < frameCount; ++f) {
+        const float *frame = pcm + static_cast<size_t>(f) * channels;
+
+        // True peak first, on the unweighted signal.
+        if (factor > 1) {
+            meter->truePeakPosition = (meter->truePeakPosition + kTruePeakTaps - 1) % kTruePeakTaps;
+        }
+        for (int c = 0; c < channels; ++c) {
+            const float x = frame[c];
+            float peak = fabsf(x);
+
+            if (factor > 1) {
+                float *history = meter->truePeakHistory[c];
+                history[meter->truePeakPosition] = x;
+                history[meter->truePeakPosition + kTruePeakTaps] = x;
+
+                const float *run = history + meter->truePeakPosition;
+                for (int phase = 0; phase < factor; ++phase) {
+                    const float *h = meter->truePeakCoefficients[phase];
+                    float y = 0.0f;
+                    for (int tap = 0; tap < kTruePeakTaps; ++tap) {
+                        y += h[tap] * run[tap];
+                    }
+                    peak = fmaxf(peak, fabsf(y));
+                }
+            }
+
+            if (peak > meter->truePeak) meter->truePeak = peak;
+
+            // K-weighting and the weighted mean square.
+            double *state = meter->filterState[c];
+            double y = biquad(meter->shelf, state, x);
+            y = biquad(meter->highPass, state + 2, y);
+            meter->hopEnergy += meter->weights[c] * y * y;
+        }
+
+        if (++meter->hopPosition == meter->hopFrames) {
+            meter->recentHops[meter->hopsDone % 4] = meter->hopEnergy;
+            meter->hopsDone++;
+            meter->hopEnergy = 0.0;
+            meter->hopPosition = 0;
+
+            if (meter->hopsDone >= 4) {
+                addBlock(meter);
+            }
+        }
+    }
+
+    env->ReleaseFloatArrayElements(samples, pcm, JNI_ABORT);
+}
+
+/** Copies the gating histogram into [dest], which must hold [kLoudnessBins] ints. */
+JNIEXPORT void JNICALL
+Java_app_simple_felicity_engine_audio_LoudnessMeter_nativeGetHistogram(
+        JNIEnv *env, jobject /*thiz*/, jlong handle, jintArray dest) {
+
+    auto *meter = reinterpret_cast<LoudnessMeter *>(handle);
+    if (!meter) return;
+
+    env->SetIntArrayRegion(dest, 0, kLoudnessBins, reinterpret_cast<const jint *>(meter->histogram));
+}
+
+/** Largest true-peak value seen so far, linear (1.0 = 0 dBTP). */
+JNIEXPORT jfloat JNICALL
+Java_app_simple_felicity_engine_audio_LoudnessMeter_nativeGetTruePeak(
+        JNIEnv * /*env*/, jobject /*thiz*/, jlong handle) {
+
+    auto *meter = reinterpret_cast<LoudnessMeter *>(handle);
+    return meter ? meter->truePeak : 0.0f;
+}
+
+/** Frees a meter created by [nativeCreate]. */
+JNIEXPORT void JNICALL
+Java_app_simple_felicity_engine_audio_LoudnessMeter_nativeDestroy(
+        JNIEnv * /*env*/, jobject /*thiz*/, jlong handle) {
+
+    delete reinterpret_cast<LoudnessMeter *>(handle);
+}
+
+/**
+ * Integrates a histogram — one song's, or the sum of an album's — into LUFS.
+ *
+ * @return Integrated loudness in LUFS, or -infinity when nothing passed the gates.
+ */
+JNIEXPORT jdouble JNICALL
+Java_app_simple_felicity_engine_audio_LoudnessMeter_nativeIntegrate(
+        JNIEnv *env, jclass /*clazz*/, jintArray histogram) {
+
+    if (env->GetArrayLength(histogram) < kLoudnessBins) return -INFINITY;
+
+    uint32_t bins[kLoudnessBins];
+    env->GetIntArrayRegion(histogram, 0, kLoudnessBins, reinterpret_cast<jint *>(bins));
+    return loudnessIntegrate(bins);
+}
+
+} // extern "C"
@@ -0,0 +1,111 @@
+/**
+ * @file loudness-meter.h
+ * @brief State for the ITU-R BS.1770 / EBU R128 loudness meter used by the background
+ * ReplayGain analysis.
+ *
+ * The meter is fed whole songs, a chunk at a time, on a background thread — never from the
+ * audio path. Each chunk goes through:
+ *   1. K-weighting — the BS.1770 high-shelf "head" filter followed by the RLB high-pass,
+ *      with coefficients worked out for the song's own sample rate.
+ *   2. Per-channel mean square over 100 ms hops, weighted per channel (surrounds +1.5 dB,
+ *      LFE ignored) and summed.
+ *   3. 400 ms gating blocks, one every hop (75 % overlap). Every block louder than the
+ *      -70 LUFS absolute gate lands in a histogram of [kLoudnessBins] bins, 0.1 LU wide.
+ *   4. True peak — a 4x polyphase windowed-sinc oversampler (2x from 96 kHz, none from
+ *      192 kHz) run on every channel, keeping the largest absolute value seen.
+ *
+ * The integrated loudness is worked out from the histogram alone: the relative gate is
+ * 10 LU below the mean of every block that passed the absolute gate, and the result is the
+ * mean of the blocks above both gates. Because nothing but the histogram is needed, an album
+ * is measured by simply adding up the histograms of its songs and integrating the sum, which
+ * gives the true album loudness (gated over every block on the album) rather than an average
+ * of the track values.
+ *
+ * @author Hamza417
+ */
+
+#pragma once
+
+#include <cstdint>
+
+/** Channels the meter accepts; anything wider is rejected at creation. */
+static constexpr int kLoudnessMaxChannels = 8;
+
+/** Lower edge of the histogram, which is also the BS.1770 absolute gate. */
+static constexpr double kLoudnessMinLufs = -70.0;
+
+/** Width of a single histogram bin in LU. */
+static constexpr double kLoudnessBinWidth = 0.1;
+
+/** Histogram bins, covering -70 to +10 LUFS; louder blocks land in the last one. */
+static constexpr int kLoudnessBins = 800;
+
+/** Relative gate, in LU below the absolute-gated mean. */
+static constexpr double kLoudnessRelativeGate = -10.0;
+
+/** Taps per polyphase branch of the true-peak oversampler. */
+static constexpr int kTruePeakTaps = 12;
+
+/** Largest oversampling factor used for true peak. */
+static constexpr int kTruePeakMaxFactor = 4;
+
+/** One direct-form-II-transposed biquad section. */
+struct LoudnessBiquad {
+    double b0, b1, b2, a1, a2;
+};
+
+/** All the running state of one song's measurement. */
+struct LoudnessMeter {
+    int sampleRate;
+    int channelCount;
+
+    /** BS.1770 channel weights, indexed by channel. */
+    double weights[kLoudnessMaxChannels];
+
+    /** Stage 1 (high shelf) and stage 2 (RLB high-pass) of the K-weighting filter. */
+    LoudnessBiquad shelf;
+    LoudnessBiquad highPass;
+
+    /** Two DF2T state words per stage per channel: [channel][stage * 2 + i]. */
+    double filterState[kLoudnessMaxChannels][4];
+
+    /** Frames in one 100 ms hop; a gating block is four of them. */
+    int hopFrames;
+
+    /** Frames accumulated into [hopEnergy] so far. */
+    int hopPosition;
+
+    /** Weighted sum of squared K-weighted samples in the hop being filled. */
+    double hopEnergy;
+
+    /** The last four finished hops, as a ring indexed by [hopsDone] % 4. */
+    double recentHops[4];
+
+    /** Finished hops so far; blocks are only emitted once there are four. */
+    int64_t hopsDone;
+
+    /** Gating-block histogram, see [kLoudnessBins]. */
+    uint32_t histogram[kLoudnessBins];
+
+    /** Oversampling factor for true peak: 4, 2, or 1 for very high sample rates. */
+    int truePeakFactor;
+
+    /** Polyphase coefficients, [phase][tap]. */
+    float truePeakCoefficients[kTruePeakMaxFactor][kTruePeakTaps];
+
+    /**
+     * Last [kTruePeakTaps] input samples per channel, written twice (at [truePeakPosition]
+     * and [truePeakPosition] + [kTruePeakTaps]) so the filter always reads a contiguous run.
+     */
+    float truePeakHistory[kLoudnessMaxChannels][kTruePeakTaps * 2];
+    int truePeakPosition;
+
+    /** Largest absolute sample or inter-sample value seen, linear. */
+    float truePeak;
+};
+
+/**
+ * Integrates a gating-block histogram into a loudness in LUFS. Returns -infinity when no
+ * block passed the gates, i.e. the audio was silent.
+ */
+double loudnessIntegrate(const uint32_t *histogram);
@@ -9,9 +9,18 @@
  * that the Kotlin side only needs to pass raw mono PCM samples. Band-edge mapping is
  * stored inside the context and updated via [nativeSetBandEdges], allowing the Kotlin
  * layer to recompute log-spaced edges whenever the sample rate changes without
- * recreating the PFFFT plan. [nativeProcessInto] writes band magnitudes directly into
+ * recreating the PFFFT plan. [nativeProcessFrame] writes band magnitudes directly into
  * a pre-allocated Java float array — zero allocations on the audio hot path.
  *
+ * The PCM tap also lives here. [nativeFeedBuffer] reads 16-bit, packed 24-bit or float
+ * PCM straight out of the direct [ByteBuffer] ExoPlayer hands the processor, and
+ * [nativeFeedFloat] does the same for the float samples the native sinks write. Both
+ * downmix to mono (NEON on ARM, SSE2 on x86 for the common layouts), run the result
+ * through the output-latency pre-delay ring, and keep the newest [FFTContext::size]
+ * samples in a history ring. Windows overlap: every [hopSize] samples the newest window
+ * is copied out to [FFTContext::tapFrame] and reported to Kotlin, which then runs the
+ * transform once per buffer instead of touching every sample itself.
+ *
  * @author Hamza417
  */
 
@@ -20,12 +29,274 @@
 #include <cmath>
 #include <cstdlib>
 #include <cstring>
+#include <cstdint>
+#include <algorithm>
 #include "fft-context.h"
 
+#if defined(__ARM_NEON)
+#include <arm_neon.h>
+#elif defined(__SSE2__)
+#include <emmintrin.h>
+#endif
+
 #define LOG_TAG "VisualizerFFT"
 #define LOGE(...) __android_log_print(ANDROID_LOG_ERROR, LOG_TAG, __VA_ARGS__)
 #define LOGI(...) __android_log_print(ANDROID_LOG_INFO,  LOG_TAG, __VA_ARGS__)
 
+/**
+ * Sample layouts understood by the tap. Must match the TAP_FORMAT_* constants in
+ * VisualizerProcessor.
+ */
+enum TapFormat {
+    kTapFormatPcm16 = 0, ///< Signed 16-bit little-endian.
+    kTapFormatPcm24 = 1, ///< Signed 24-bit little-endian, packed in three bytes.
+    kTapFormatFloat = 2  ///< 32-bit float in [-1, 1].
+};
+
+/**
+ * Downmixes [frames] frames of interleaved 16-bit PCM into [out] as mono floats in
+ * [-1, 1]. Stereo, by far the common case, adds each L/R pair with a single pairwise
+ * widening add per four frames.
+ */
+static void downmixPcm16(const int16_t *__restrict src, int frames, int channels,
+                         float *__restrict out) {
+    int i = 0;
+    if (channels == 2) {
+        constexpr float scale = 0.5f / 32768.0f;
+#if defined(__ARM_NEON)
+        const float32x4_t vScale = vdupq_n_f32(scale);
+        for (; i + 4 <= frames; i += 4) {
+            const int32x4_t sum = vpaddlq_s16(vld1q_s16(src + 2 * i));
+            vst1q_f32(out + i, vmulq_f32(vcvtq_f32_s32(sum), vScale));
+        }
+#elif defined(__SSE2__)
+        const __m128i ones = _mm_set1_epi16(1);
+        const __m128 vScale = _mm_set1_ps(scale);
+        for (; i + 4 <= frames; i += 4) {
+            const __m128i v = _mm_loadu_si128(reinterpret_cast<const __m128i *>(src + 2 * i));
+            const __m128i sum = _mm_madd_epi16(v, ones);
+            _mm_storeu_ps(out + i, _mm_mul_ps(_mm_cvtepi32_ps(sum), vScale));
+        }
+#endif
+        for (; i < frames; ++i) {
+            out[i] = (static_cast<float>(src[2 * i]) + static_cast<float>(src[2 * i + 1])) * scale;
+        }
+    } else if (channels == 1) {
+        constexpr float scale = 1.0f / 32768.0f;
+#if defined(__ARM_NEON)
+        const float32x4_t vScale = vdupq_n_f32(scale);
+        for (; i + 4 <= frames; i += 4) {
+            const int32x4_t wide = vmovl_s16(vld1_s16(src + i));
+            vst1q_f32(out + i, vmulq_f32(vcvtq_f32_s32(wide), vScale));
+        }
+#elif defined(__SSE2__)
+        const __m128 vScale = _mm_set1_ps(scale);
+        for (; i + 8 <= frames; i += 8) {
+            const __m128i v = _mm_loadu_si128(reinterpret_cast<const __m128i *>(src + i));
+            // Interleaving a register with itself and shifting right sign-extends to 32 bits.
+            const __m128i lo = _mm_srai_epi32(_mm_unpacklo_epi16(v, v), 16);
+            const __m128i hi = _mm_srai_epi32(_mm_unpackhi_epi16(v, v), 16);
+            _mm_storeu_ps(out + i, _mm_mul_ps(_mm_cvtepi32_ps(lo), vScale));
+            _mm_storeu_ps(out + i + 4, _mm_mul_ps(_mm_cvtepi32_ps(hi), vScale));
+        }
+#endif
+        for (; i < frames; ++i) {
+            out[i] = static_cast<float>(src[i]) * scale;
+        }
+    } else {
+        const float scale = 1.0f / (32768.0f * static_cast<float>(channels));
+        for (; i < frames; ++i) {
+            int sum = 0;
+            for (int c = 0; c < channels; ++c) sum += src[i * channels + c];
+            out[i] = static_cast<float>(sum) * scale;
+        }
+    }
+}
+
+/**
+ * Downmixes packed 24-bit PCM. The three-byte stride doesn't map onto vector loads
+ * cleanly, so this stays scalar; 24-bit output is rare enough that it isn't worth more.
+ */
+static void downmixPcm24(const uint8_t *__restrict src, int frames, int channels,
+                         float *__restrict out) {
+    const float scale = 1.0f / (8388608.0f * static_cast<float>(channels));
+    for (int i = 0; i < frames; ++i) {
+        int32_t sum = 0;
+        for (int c = 0; c < channels; ++c) {
+            const uint8_t *b = src + (i * channels + c) * 3;
+            // Assemble into the top three bytes, then shift back down to sign-extend.
+            sum += static_cast<int32_t>((static_cast<uint32_t>(b[0]) << 8) |
+                                        (static_cast<uint32_t>(b[1]) << 16) |
+                                        (static_cast<uint32_t>(b[2]) << 24)) >> 8;
+        }
+        out[i] = static_cast<float>(sum) * scale;
+    }
+}
+
+/** Downmixes interleaved float PCM, deinterleaving stereo four frames at a time. */
+static void downmixFloat(const float *__restrict src, int frames, int channels,
+                         float *__restrict out) {
+    int i = 0;
+    if (channels == 1) {
+        memcpy(out, src, static_cast<size_t>(frames) * sizeof(float));
+    } else if (channels == 2) {
+#if defined(__ARM_NEON)
+        const float32x4_t half = vdupq_n_f32(0.5f);
+        for (; i + 4 <= frames; i += 4) {
+            const float32x4x2_t lr = vld2q_f32(src + 2 * i);
+            vst1q_f32(out + i, vmulq_f32(vaddq_f32(lr.val[0], lr.val[1]), half));
+        }
+#elif defined(__SSE2__)
+        const __m128 half = _mm_set1_ps(0.5f);
+        for (; i + 4 <= frames; i += 4) {
+            const __m128 a = _mm_loadu_ps(src + 2 * i);
+            const __m128 b = _mm_loadu_ps(src + 2 * i + 4);
+            const __m128 left = _mm_shuffle_ps(a, b, _MM_SHUFFLE(2, 0, 2, 0));
+            const __m128 right = _mm_shuffle_ps(a, b, _MM_SHUFFLE(3, 1, 3, 1));
+            _mm_storeu_ps(out + i, _mm_mul_ps(_mm_add_ps(left, right), half));
+        }
+#endif
+        for (; i < frames; ++i) {
+            out[i] = (src[2 * i] + src[2 * i + 1]) * 0.5f;
+        }
+    } else {
+        const float inv = 1.0f / static_cast<float>(channels);
+        for (; i < frames; ++i) {
+            float sum = 0.0f;
+            for (int c = 0; c < channels; ++c) sum += src[i * channels + c];
+            out[i] = sum * inv;
+        }
+    }
+}
+
+/**
+ * Copies [count] samples into the ring [ring] of [capacity] starting at [pos], wrapping
+ * at most once. When [count] exceeds the capacity only the newest samples are kept.
+ */
+static void ringWrite(float *ring, int capacity, int pos, const float *src, int count) {
+    if (count > capacity) {
+        src += count - capacity;
+        pos = (pos + count - capacity) % capacity;
+        count = capacity;
+    }
+    const int first = std::min(count, capacity - pos);
+    memcpy(ring + pos, src, static_cast<size_t>(first) * sizeof(float));
+    memcpy(ring, src + first, static_cast<size_t>(count - first) * sizeof(float));
+}
+
+/** Reads [count] samples (count <= capacity) out of [ring] starting at [pos], wrapping once. */
+static void ringRead(const float *ring, int capacity, int pos, float *dst, int count) {
+    const int first = std::min(count, capacity - pos);
+    memcpy(dst, ring + pos, static_cast<size_t>(first) * sizeof(float));
+    memcpy(dst + first, ring, static_cast<size_t>(count - first) * sizeof(float));
+}
+
+/**
+ * Pushes one block of mono samples from [FFTContext::tapMono] through the pre-delay ring
+ * and into the window history.
+ *
+ * Writing the block before reading it back matches the old per-sample behavior exactly,
+ * including delays shorter than the block: every position read has already been written.
+ *
+ * @return Number of hops completed by this block.
+ */
+static int tapPush(FFTContext *ctx, int count, int delaySamples, int hopSize) {
+    const float *samples = ctx->tapMono;
+
+    if (delaySamples > 0) {
+        delaySamples = std::min(delaySamples, kTapDelaySamples - ctx->size - 1);
+        ringWrite(ctx->tapDelay, kTapDelaySamples, ctx->tapDelayWritePos, ctx->tapMono, count);
+        const int readPos = (ctx->tapDelayWritePos - delaySamples + kTapDelaySamples) & kTapDelayMask;
+        ringRead(ctx->tapDelay, kTapDelaySamples, readPos, ctx->tapDelayed, count);
+        ctx->tapDelayWritePos = (ctx->tapDelayWritePos + count) & kTapDelayMask;
+        samples = ctx->tapDelayed;
+    }
+
+    ringWrite(ctx->tapHistory, ctx->size, ctx->tapHistoryPos, samples, count);
+    ctx->tapHistoryPos = (ctx->tapHistoryPos + count) % ctx->size;
+    ctx->tapFilled = std::min(ctx->size, ctx->tapFilled + count);
+
+    ctx->tapSinceHop += count;
+    if (ctx->tapSinceHop < hopSize) return 0;
+
+    const int hops = ctx->tapSinceHop / hopSize;
+    ctx->tapSinceHop %= hopSize;
+    return hops;
+}
+
+/**
+ * Copies the newest complete window out of the history ring into [FFTContext::tapFrame]
+ * when at least one hop finished, so the transform always sees the latest audio.
+ *
+ * @return [hops] once the history has filled up for the first time, 0 before that.
+ */
+static int tapFinish(FFTContext *ctx, int hops) {
+    if (hops <= 0 || ctx->tapFilled < ctx->size) return 0;
+    // tapHistoryPos points at the oldest sample once the ring is full.
+    ringRead(ctx->tapHistory, ctx->size, ctx->tapHistoryPos, ctx->tapFrame, ctx->size);
+    return hops;
+}
+
+/**
+ * Windows [samples], runs the forward transform, and writes per-band magnitudes into
+ * [bands]. In optimized mode each band is its peak magnitude with a treble boost curve for
+ * a visually dynamic spectrum; otherwise it is the true RMS magnitude of the band.
+ */
+static void computeBands(FFTContext *ctx, const float *samples, float *bands, bool isOptimized) {
+    const int n = ctx->size;
+    const int halfSize = n / 2;
+
+    // Apply Hann window into the SIMD-aligned input buffer.
+    for (int i = 0; i < n; ++i) {
+        ctx->input[i] = samples[i] * ctx->window[i];
+    }
+
+    // Forward real FFT — packed half-complex ordered output.
+    pffft_transform_ordered(ctx->setup, ctx->input, ctx->output, ctx->work, PFFFT_FORWARD);
+
+    for (int band = 0; band < ctx->bandCount; ++band) {
+        const int startBin = ctx->bandEdges[band];
+        const int endBin = (ctx->bandEdges[band + 1] > startBin)
+                           ? ctx->bandEdges[band + 1] : startBin + 1;
+
+        if (isOptimized) {
+            // VISUALIZER mode: peak magnitude with treble boost for visual impact.
+            float maxMag = 0.0f;
+            for (int k = startBin; k < endBin && k < halfSize; ++k) {
+                float re, im;
+                if (k == 0) {
+                    re = ctx->output[0];
+                    im = 0.0f; // DC bin — purely real
+                } else {
+                    re = ctx->output[2 * k];
+                    im = ctx->output[2 * k + 1];
+                }
+                const float mag = sqrtf(re * re + im * im);
+                if (mag > maxMag) maxMag = mag;
+            }
+            const float weight = 1.0f + (float) band / (float) ctx->bandCount * 3.0f;
+            bands[band] = sqrtf(maxMag * weight);
+        } else {
+            // SCIENTIFIC mode: true RMS magnitude per band.
+            float sumSq = 0.0f;
+            int count = 0;
+            for (int k = startBin; k < endBin && k < halfSize; ++k) {
+                float re, im;
+                if (k == 0) {
+                    re = ctx->output[0];
+                    im = 0.0f;
+                } else {
+                    re = ctx->output[2 * k];
+                    im = ctx->output[2 * k + 1];
+                }
+                sumSq += re * re + im * im;
+                ++count;
+            }
+            bands[band] = (count > 0) ? sqrtf(sumSq / (float) count) : 0.0f;
+        }
+    }
+}
+
 
 extern "C" {
 
@@ -51,6 +322,15 @@ Java_app_simple_felicity_engine_processors_VisualizerProcessor_nativeCreate(
     ctx->output = static_cast<float *>(pffft_aligned_malloc(fftSize * sizeof(float)));
     ctx->work = static_cast<float *>(pffft_aligned_malloc(fftSize * sizeof(float)));
     ctx->window = new float[fftSize];
+    ctx->tapMono = new float[kTapBlockFrames];
+    ctx->tapDelayed = new float[kTapBlockFrames];
+    ctx->tapDelay = new float[kTapDelaySamples]();
+    ctx->tapHistory = new float[fftSize]();
+    ctx->tapFrame = new float[fftSize]();
+    ctx->tapDelayWritePos = 0;
+    ctx->tapHistoryPos = 0;
+    ctx->tapFilled = 0;
+    ctx->tapSinceHop = 0;
 
     if (!ctx->setup || !ctx->input || !ctx->output || !ctx->work || !ctx->window) {
         LOGE("PFFFT context allocation failed for size %d", fftSize);
@@ -59,6 +339,11 @@ Java_app_simple_felicity_engine_processors_VisualizerProcessor_nativeCreate(
         if (ctx->output) pffft_aligned_free(ctx->output);
         if (ctx->work) pffft_aligned_free(ctx->work);
         delete[] ctx->window;
+        delete[] ctx->tapMono;
+        delete[] ctx->tapDelayed;
+        delete[] ctx->tapDelay;
+        delete[] ctx->tapHistory;
+        delete[] ctx->tapFrame;
         delete ctx;
         return 0L;
     }
@@ -107,95 +392,135 @@ Java_app_simple_felicity_engine_processors_VisualizerProcessor_nativeSetBandEdge
 }
 
 /**
- * Applies the stored Hann window to [rawSamples], executes a forward real FFT via PFFFT,
- * maps the result to frequency bands, and writes the per-band magnitudes directly into
- * the pre-allocated [bandBuffer] array.
+ * Feeds one buffer of PCM, exactly as it sits in the direct [ByteBuffer] handed to
+ * [VisualizerProcessor.queueInput], into the tap. The buffer is read in place through
+ * its native address — nothing is copied onto the Java heap.
  *
- * No heap allocations occur on the hot path. [bandBuffer] is the Kotlin-managed back
- * buffer from the twin-buffer system; JNI_ABORT is used on [rawSamples] (read-only)
- * and mode 0 on [bandBuffer] to commit the computed values back to the JVM.
+ * @param env          JNI environment pointer.
+ * @param thiz         Calling Java/Kotlin object (unused).
+ * @param handle       Opaque pointer returned by [nativeCreate].
+ * @param buffer       A direct ByteBuffer holding interleaved PCM in native byte order.
+ * @param offset       Byte offset of the first frame within [buffer].
+ * @param length       Number of bytes to read; partial trailing frames are ignored.
+ * @param format       One of the [TapFormat] values.
+ * @param channelCount Channels per frame.
+ * @param delaySamples Output-latency pre-delay in samples; 0 disables it.
+ * @param hopSize      Samples between consecutive windows.
+ * @return             Number of windows completed (the newest one is in tapFrame), or -1
+ *                     when [buffer] is not a direct buffer.
+ */
+JNIEXPORT jint JNICALL
+Java_app_simple_felicity_engine_processors_VisualizerProcessor_nativeFeedBuffer(
+        JNIEnv *env, jobject /*thiz*/, jlong handle, jobject buffer, jint offset, jint length,
+        jint format, jint channelCount, jint delaySamples, jint hopSize) {
+
+    auto *ctx = reinterpret_cast<FFTContext *>(handle);
+    if (!ctx || channelCount <= 0 || hopSize <= 0) return 0;
+
+    auto *base = static_cast<uint8_t *>(env->GetDirectBufferAddress(buffer));
+    if (!base) return -1;
+
+    const int bytesPerSample = (format == kTapFormatPcm16) ? 2 : (format == kTapFormatPcm24) ? 3 : 4;
+    const int frameBytes = bytesPerSample * channelCount;
+    const int totalFrames = length / frameBytes;
+    const uint8_t *src = base + offset;
+
+    int hops = 0;
+    for (int done = 0; done < totalFrames;) {
+        const int frames = std::min(kTapBlockFrames, totalFrames - done);
+        const uint8_t *block = src + static_cast<size_t>(done) * frameBytes;
+
+        switch (format) {
+            case kTapFormatPcm16:
+                downmixPcm16(reinterpret_cast<const int16_t *>(block), frames, channelCount, ctx->tapMono);
+                break;
+            case kTapFormatPcm24:
+                downmixPcm24(block, frames, channelCount, ctx->tapMono);
+                break;
+            default:
+                downmixFloat(reinterpret_cast<const float *>(block), frames, channelCount, ctx->tapMono);
+                break;
+        }
+
+        hops += tapPush(ctx, frames, delaySamples, hopSize);
+        done += frames;
+    }
+
+    return tapFinish(ctx, hops);
+}
+
+/**
+ * Feeds [sampleCount] interleaved float samples (frames × [channelCount]) into the tap.
+ * Used by the AAudio and USB sinks, which already hold the final float output.
  *
- * When [isOptimized] is true the processor uses peak magnitude per band plus a treble
- * boost curve for a visually dynamic spectrum. When false it computes true RMS magnitude
- * per band for accuracy.
+ * The array is pinned with GetPrimitiveArrayCritical for the duration of the loop; no
+ * other JNI calls happen while it is held.
+ *
+ * @return Number of windows completed (the newest one is in tapFrame).
+ */
+JNIEXPORT jint JNICALL
+Java_app_simple_felicity_engine_processors_VisualizerProcessor_nativeFeedFloat(
+        JNIEnv *env, jobject /*thiz*/, jlong handle, jfloatArray samples, jint sampleCount,
+        jint channelCount, jint delaySamples, jint hopSize) {
+
+    auto *ctx = reinterpret_cast<FFTContext *>(handle);
+    if (!ctx || channelCount <= 0 || hopSize <= 0) return 0;
+
+    auto *src = static_cast<float *>(env->GetPrimitiveArrayCritical(samples, nullptr));
+    if (!src) return 0;
+
+    const int totalFrames = sampleCount / channelCount;
+    int hops = 0;
+    for (int done = 0; done < totalFrames;) {
+        const int frames = std::min(kTapBlockFrames, totalFrames - done);
+        downmixFloat(src + static_cast<size_t>(done) * channelCount, frames, channelCount, ctx->tapMono);
+        hops += tapPush(ctx, frames, delaySamples, hopSize);
+        done += frames;
+    }
+
+    env->ReleasePrimitiveArrayCritical(samples, src, JNI_ABORT);
+    return tapFinish(ctx, hops);
+}
+
+/**
+ * Runs the transform on the newest window collected by the tap and writes the per-band
+ * magnitudes directly into the pre-allocated [bandBuffer] array.
+ *
+ * No heap allocations occur on the hot path. [bandBuffer] is the Kotlin-managed back
+ * buffer from the twin-buffer system; mode 0 commits the computed values back to the JVM.
  *
  * @param env         JNI environment pointer.
  * @param thiz        Calling Java/Kotlin object (unused).
  * @param handle      Opaque pointer returned by [nativeCreate].
- * @param rawSamples  Exactly [fftSize] windowed mono PCM float samples in [-1, 1].
  * @param bandBuffer  Pre-allocated float array of length bandCount to write into.
  * @param isOptimized JNI_TRUE for visualizer-optimized peak+boost mode; JNI_FALSE for RMS.
  */
 JNIEXPORT void JNICALL
-Java_app_simple_felicity_engine_processors_VisualizerProcessor_nativeProcessInto(
-        JNIEnv *env, jobject /*thiz*/, jlong handle,
-        jfloatArray rawSamples, jfloatArray bandBuffer, jboolean isOptimized) {
+Java_app_simple_felicity_engine_processors_VisualizerProcessor_nativeProcessFrame(
+        JNIEnv *env, jobject /*thiz*/, jlong handle, jfloatArray bandBuffer, jboolean isOptimized) {
 
     auto *ctx = reinterpret_cast<FFTContext *>(handle);
     if (!ctx || !ctx->bandEdges || ctx->bandCount <= 0) return;
 
-    const int n = ctx->size;
-    const int halfSize = n / 2;
-
-    // Apply Hann window into the SIMD-aligned input buffer.
-    // JNI_ABORT: we only read rawSamples, no write-back needed.
-    jfloat *src = env->GetFloatArrayElements(rawSamples, nullptr);
-    for (int i = 0; i < n; ++i) {
-        ctx->input[i] = src[i] * ctx->window[i];
-    }
-    env->ReleaseFloatArrayElements(rawSamples, src, JNI_ABORT);
-
-    // Forward real FFT — packed half-complex ordered output.
-    pffft_transform_ordered(ctx->setup, ctx->input, ctx->output, ctx->work, PFFFT_FORWARD);
-
-    // Write band magnitudes directly into the pre-allocated back buffer.
-    // Mode 0 commits any JNI copy back to the JVM array.
     jfloat *bands = env->GetFloatArrayElements(bandBuffer, nullptr);
+    computeBands(ctx, ctx->tapFrame, bands, isOptimized == JNI_TRUE);
+    // Commit the written values back to the Java heap.
+    env->ReleaseFloatArrayElements(bandBuffer, bands, 0);
+}
 
-    for (int band = 0; band < ctx->bandCount; ++band) {
-        const int startBin = ctx->bandEdges[band];
-        const int endBin = (ctx->bandEdges[band + 1] > startBin)
-                           ? ctx->bandEdges[band + 1] : startBin + 1;
+/**
+ * Copies the newest window collected by the tap into [dest] for the raw PCM callback.
+ *
+ * @param dest Float array of at least [FFTContext::size] elements.
+ */
+JNIEXPORT void JNICALL
+Java_app_simple_felicity_engine_processors_VisualizerProcessor_nativeCopyFrame(
+        JNIEnv *env, jobject /*thiz*/, jlong handle, jfloatArray dest) {
 
-        if (isOptimized) {
-            // VISUALIZER mode: peak magnitude with treble boost for visual impact.
-            float maxMag = 0.0f;
-            for (int k = startBin; k < endBin && k < halfSize; ++k) {
-                float re, im;
-                if (k == 0) {
-                    re = ctx->output[0];
-                    im = 0.0f; // DC bin — purely real
-                } else {
-                    re = ctx->output[2 * k];
-                    im = ctx->output[2 * k + 1];
-                }
-                const float mag = sqrtf(re * re + im * im);
-                if (mag > maxMag) maxMag = mag;
-            }
-            const float weight = 1.0f + (float) band / (float) ctx->bandCount * 3.0f;
-            bands[band] = sqrtf(maxMag * weight);
-        } else {
-            // SCIENTIFIC mode: true RMS magnitude per band.
-            float sumSq = 0.0f;
-            int count = 0;
-            for (int k = startBin; k < endBin && k < halfSize; ++k) {
-                float re, im;
-                if (k == 0) {
-                    re = ctx->output[0];
-                    im = 0.0f;
-                } else {
-                    re = ctx->output[2 * k];
-                    im = ctx->output[2 * k + 1];
-                }
-                sumSq += re * re + im * im;
-                ++count;
-            }
-            bands[band] = (count > 0) ? sqrtf(sumSq / (float) count) : 0.0f;
-        }
-    }
+    auto *ctx = reinterpret_cast<FFTContext *>(handle);
+    if (!ctx) return;
 
-    // Commit the written values back to the Java heap.
-    env->ReleaseFloatArrayElements(bandBuffer, bands, 0);
+    env->SetFloatArrayRegion(dest, 0, ctx->size, ctx->tapFrame);
 }
 
 /**
@@ -262,6 +587,11 @@ Java_app_simple_felicity_engine_processors_VisualizerProcessor_nativeDestroy(
     pffft_aligned_free(ctx->work);
     delete[] ctx->window;
     delete[] ctx->bandEdges;
+    delete[] ctx->tapMono;
+    delete[] ctx->tapDelayed;
+    delete[] ctx->tapDelay;
+    delete[] ctx->tapHistory;
+    delete[] ctx->tapFrame;
     delete ctx;
 
     LOGI("PFFFT context destroyed");
@@ -123,6 +123,8 @@ playerFab.addEventListener("click", openPlayer);
  * @param {object[]} ctx   Queue context for previous/next navigation.
  */
 function playSong(song, ctx) {
+    reportListened();
+
     queue    = ctx;
     queueIdx = ctx.indexOf(song);
     nowId    = song.id;
@@ -159,6 +161,25 @@ async function recordPlay(songId) {
     } catch (_) { /* best-effort */ }
 }
 
+/**
+ * Sends how long the current song was actually heard — pauses left out — so the
+ * app's listening time isn't the full length of every song that was started.
+ * Uses a beacon so it still goes out when the page is being closed.
+ */
+function reportListened() {
+    if (listeningSince !== null) {
+        listenedMs += performance.now() - listeningSince;
+        listeningSince = null;
+    }
+    const ms = Math.round(listenedMs);
+    listenedMs = 0;
+    if (nowId !== null && ms > 0) {
+        navigator.sendBeacon(`/api/songs/${nowId}/listened?ms=${ms}`);
+    }
+}
+
+window.addEventListener("pagehide", reportListened);
+
 /* ==================== Album Art ==================== */
 
 playerArt.addEventListener("load",  () => { playerArt.style.opacity = "1"; });
@@ -166,8 +187,18 @@ playerArt.addEventListener("error", () => { playerArt.style.opacity = "0"; });
 
 /* ==================== Audio Events ==================== */
 
-audioEl.addEventListener("play",  () => { playIcon.textContent = "pause"; });
-audioEl.addEventListener("pause", () => { playIcon.textContent = "play_arrow"; });
+audioEl.addEventListener("play", () => {
+    playIcon.textContent = "pause";
+    if (listeningSince === null) listeningSince = performance.now();
+});
+
+audioEl.addEventListener("pause", () => {
+    playIcon.textContent = "play_arrow";
+    if (listeningSince !== null) {
+        listenedMs += performance.now() - listeningSince;
+        listeningSince = null;
+    }
+});
 
 audioEl.addEventListener("timeupdate", () => {
     if (!seeking && audioEl.duration && isFinite(audioEl.duration)) {
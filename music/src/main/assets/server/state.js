@@ -83,6 +83,12 @@ let queueIdx = -1;
 /** Database ID of the currently playing song, or null when nothing is playing. */
 let nowId = null;
 
+/** Milliseconds {@link nowId} has actually been heard, not counting the stretch since {@link listeningSince}. */
+let listenedMs = 0;
+
+/** performance.now() of when the current stretch of playback began, or null while paused. */
+let listeningSince = null;
+
 /** True while the user is actively dragging the seek slider. */
 let seeking = false;
 
@@ -43,6 +43,8 @@ import app.simple.felicity.extensions.fragments.ScopedFragment
 import app.simple.felicity.glide.util.AudioCoverUtils.loadArtIntoBitmap
 import app.simple.felicity.interfaces.MiniPlayerPolicy
 import app.simple.felicity.managers.LyricsManager
+import app.simple.felicity.managers.LoudnessScanner
+import app.simple.felicity.managers.WaveformPrecomputer
 import app.simple.felicity.preferences.AudioPreferences
 import app.simple.felicity.preferences.LibraryPreferences
 import app.simple.felicity.preferences.ShufflePreferences
@@ -94,6 +96,20 @@ class MainActivity : BaseActivity(), MiniPlayerCallbacks {
     @Inject
     lateinit var audioRepository: AudioRepository
 
+    /**
+     * Decodes waveforms for upcoming and frequently played songs in the background so
+     * the seekbar rarely has to fall back to ghost data.
+     */
+    @Inject
+    lateinit var waveformPrecomputer: WaveformPrecomputer
+
+    /**
+     * Measures the loudness of songs without ReplayGain tags in the background so auto
+     * ReplayGain covers them too.
+     */
+    @Inject
+    lateinit var loudnessScanner: LoudnessScanner
+
     private var isFirstLaunch = true
 
     /** Ensures the DAC launch-pulse only runs once, on the first resume. */
@@ -110,6 +126,9 @@ class MainActivity : BaseActivity(), MiniPlayerCallbacks {
         binding = ActivityMainBinding.inflate(layoutInflater)
         setContentView(binding.root)
 
+        waveformPrecomputer.start()
+        loudnessScanner.start()
+
         binding.miniPlayer.callbacks = object : MiniPlayer.Callbacks {
             override fun onPageSelected(position: Int, fromUser: Boolean) {
                 // Only forward to MediaPlaybackManager when the swipe originated from the
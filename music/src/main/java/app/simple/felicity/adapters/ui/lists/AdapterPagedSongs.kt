@@ -0,0 +1,199 @@
+package app.simple.felicity.adapters.ui.lists
+
+import android.view.LayoutInflater
+import android.view.ViewGroup
+import androidx.paging.PagingDataAdapter
+import androidx.recyclerview.widget.DiffUtil
+import androidx.recyclerview.widget.RecyclerView
+import app.simple.felicity.callbacks.GeneralAdapterCallbacks
+import app.simple.felicity.constants.CommonPreferencesConstants
+import app.simple.felicity.databinding.AdapterStyleGridBinding
+import app.simple.felicity.databinding.AdapterStyleLabelsBinding
+import app.simple.felicity.databinding.AdapterStyleListBinding
+import app.simple.felicity.decorations.fastscroll.SlideFastScroller
+import app.simple.felicity.decorations.overscroll.VerticalListViewHolder
+import app.simple.felicity.decorations.utils.TextViewUtils.setTextOrUnknown
+import app.simple.felicity.glide.util.AudioCoverUtils.loadArtCoverWithPayload
+import app.simple.felicity.repository.models.AudioListRow
+import app.simple.felicity.repository.utils.AudioUtils.getProperAlbum
+import app.simple.felicity.repository.utils.AudioUtils.getProperArtists
+import app.simple.felicity.repository.utils.AudioUtils.getProperTitle
+import app.simple.felicity.utils.AdapterUtils.addAudioQualityIcon
+import com.bumptech.glide.Glide
+
+/**
+ * Paged song list for the Songs and Favorites panels. Rows are the slim [AudioListRow]s
+ * coming straight out of a Room paging source, so only the pages around the visible
+ * window are ever in memory, and the list never has to be diffed as a whole.
+ *
+ * It draws the same three row styles as [AdapterSongs] and takes part in light binding
+ * during fast scrolling the same way [app.simple.felicity.decorations.fastscroll.FastScrollAdapter]
+ * does — that base class can't be used here because [PagingDataAdapter] already is one.
+ * Rows that are not loaded yet (placeholders) are drawn empty and filled in once their
+ * page arrives.
+ *
+ * Clicks hand out the tapped row only. Turning it into a play queue is up to the panel,
+ * through the repository's id queries, so the adapter never needs the full songs.
+ *
+ * @author Hamza417
+ */
+class AdapterPagedSongs(var layoutMode: CommonPreferencesConstants.LayoutMode) :
+        PagingDataAdapter<AudioListRow, VerticalListViewHolder>(DIFF_CALLBACK),
+        SlideFastScroller.FastScrollBindingController {
+
+    private var generalAdapterCallbacks: GeneralAdapterCallbacks? = null
+
+    private var isLightBindMode = false
+
+    override fun getItemViewType(position: Int): Int {
+        return when {
+            layoutMode.isLabel -> CommonPreferencesConstants.GRID_TYPE_LABEL
+            layoutMode.isGrid -> CommonPreferencesConstants.GRID_TYPE_GRID
+            else -> CommonPreferencesConstants.GRID_TYPE_LIST
+        }
+    }
+
+    override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): VerticalListViewHolder {
+        return when (viewType) {
+            CommonPreferencesConstants.GRID_TYPE_GRID -> GridHolder(AdapterStyleGridBinding.inflate(LayoutInflater.from(parent.context), parent, false))
+            CommonPreferencesConstants.GRID_TYPE_LABEL -> LabelHolder(AdapterStyleLabelsBinding.inflate(LayoutInflater.from(parent.context), parent, false))
+            else -> ListHolder(AdapterStyleListBinding.inflate(LayoutInflater.from(parent.context), parent, false))
+        }
+    }
+
+    override fun onBindViewHolder(holder: VerticalListViewHolder, position: Int) {
+        bind(holder, position, isLightBindMode)
+    }
+
+    override fun onBindViewHolder(holder: RecyclerView.ViewHolder, position: Int, isLightBind: Boolean) {
+        isLightBindMode = isLightBind
+        bind(holder as VerticalListViewHolder, position, isLightBind)
+    }
+
+    override fun setLightBindMode(enabled: Boolean) {
+        isLightBindMode = enabled
+    }
+
+    override fun shouldHandleCustomBinding(): Boolean = true
+
+    private fun bind(holder: VerticalListViewHolder, position: Int, isLightBind: Boolean) {
+        // getItem() also tells the pager which rows are being looked at, so it has to be
+        // called on every bind for the next pages to load in time.
+        val row = getItem(position)
+        when (holder) {
+            is ListHolder -> holder.bind(row, isLightBind)
+            is GridHolder -> holder.bind(row, isLightBind)
+            is LabelHolder -> holder.bind(row, isLightBind)
+        }
+    }
+
+    override fun onViewRecycled(holder: VerticalListViewHolder) {
+        holder.itemView.clearAnimation()
+        super.onViewRecycled(holder)
+        when (holder) {
+            is ListHolder -> Glide.with(holder.binding.cover).clear(holder.binding.cover)
+            is GridHolder -> Glide.with(holder.binding.albumArt).clear(holder.binding.albumArt)
+            is LabelHolder -> Unit
+        }
+    }
+
+    fun setGeneralAdapterCallbacks(callbacks: GeneralAdapterCallbacks) {
+        this.generalAdapterCallbacks = callbacks
+    }
+
+    inner class ListHolder(val binding: AdapterStyleListBinding) : VerticalListViewHolder(binding.root) {
+        fun bind(row: AudioListRow?, isLightBind: Boolean) {
+            if (row == null) {
+                binding.title.text = null
+                binding.secondaryDetail.text = null
+                binding.tertiaryDetail.text = null
+                binding.title.setCompoundDrawablesRelativeWithIntrinsicBounds(0, 0, 0, 0)
+                binding.container.setOnClickListener(null)
+                binding.container.setOnLongClickListener(null)
+                Glide.with(binding.cover).clear(binding.cover)
+                return
+            }
+
+            binding.title.setTextOrUnknown(row.getProperTitle())
+            binding.secondaryDetail.setTextOrUnknown(row.getProperArtists())
+            binding.tertiaryDetail.setTextOrUnknown(row.getProperAlbum())
+            binding.title.addAudioQualityIcon(row)
+            binding.container.setAudioID(row.id)
+            if (isLightBind) return
+            binding.cover.loadArtCoverWithPayload(row)
+            binding.container.setOnLongClickListener {
+                generalAdapterCallbacks?.onSongRowLongClicked(row, bindingAdapterPosition, binding.cover)
+                true
+            }
+            binding.container.setOnClickListener {
+                generalAdapterCallbacks?.onSongRowClicked(row, bindingAdapterPosition, it)
+            }
+        }
+    }
+
+    inner class GridHolder(val binding: AdapterStyleGridBinding) : VerticalListViewHolder(binding.root) {
+        fun bind(row: AudioListRow?, isLightBind: Boolean) {
+            binding.container.enableGridMode = true
+
+            if (row == null) {
+                binding.title.text = null
+                binding.secondaryDetail.text = null
+                binding.tertiaryDetail.text = null
+                binding.container.setOnClickListener(null)
+                binding.container.setOnLongClickListener(null)
+                Glide.with(binding.albumArt).clear(binding.albumArt)
+                return
+            }
+
+            binding.title.setTextOrUnknown(row.getProperTitle())
+            binding.secondaryDetail.setTextOrUnknown(row.getProperArtists())
+            binding.tertiaryDetail.setTextOrUnknown(row.getProperAlbum())
+            binding.container.setAudioID(row.id)
+            if (isLightBind) return
+            binding.albumArt.loadArtCoverWithPayload(row)
+
+            binding.container.setOnLongClickListener {
+                generalAdapterCallbacks?.onSongRowLongClicked(row, bindingAdapterPosition, binding.albumArt)
+                true
+            }
+            binding.container.setOnClickListener {
+                generalAdapterCallbacks?.onSongRowClicked(row, bindingAdapterPosition, it)
+            }
+        }
+    }
+
+    inner class LabelHolder(val binding: AdapterStyleLabelsBinding) : VerticalListViewHolder(binding.root) {
+        fun bind(row: AudioListRow?, isLightBind: Boolean) {
+            if (row == null) {
+                binding.title.text = null
+                binding.secondaryDetail.text = null
+                binding.tertiaryDetail.text = null
+                binding.title.setCompoundDrawablesRelativeWithIntrinsicBounds(0, 0, 0, 0)
+                binding.container.setOnClickListener(null)
+                binding.container.setOnLongClickListener(null)
+                return
+            }
+
+            binding.title.setTextOrUnknown(row.getProperTitle())
+            binding.secondaryDetail.setTextOrUnknown(row.getProperArtists())
+            binding.tertiaryDetail.setTextOrUnknown(row.getProperAlbum())
+            binding.title.addAudioQualityIcon(row)
+            binding.container.setAudioID(row.id)
+            if (isLightBind) return
+            binding.container.setOnLongClickListener {
+                generalAdapterCallbacks?.onSongRowLongClicked(row, bindingAdapterPosition, null)
+                true
+            }
+            binding.container.setOnClickListener {
+                generalAdapterCallbacks?.onSongRowClicked(row, bindingAdapterPosition, it)
+            }
+        }
+    }
+
+    companion object {
+        private val DIFF_CALLBACK = object : DiffUtil.ItemCallback<AudioListRow>() {
+            override fun areItemsTheSame(oldItem: AudioListRow, newItem: AudioListRow) = oldItem.id == newItem.id
+            override fun areContentsTheSame(oldItem: AudioListRow, newItem: AudioListRow) = oldItem == newItem
+        }
+    }
+}
@@ -11,6 +11,7 @@ import androidx.annotation.StringRes;
 import app.simple.felicity.repository.models.Album;
 import app.simple.felicity.repository.models.Artist;
 import app.simple.felicity.repository.models.Audio;
+import app.simple.felicity.repository.models.AudioListRow;
 import app.simple.felicity.repository.models.Folder;
 import app.simple.felicity.repository.models.Genre;
 import app.simple.felicity.repository.models.YearGroup;
@@ -29,6 +30,14 @@ public interface GeneralAdapterCallbacks {
     
     }
     
+    default void onSongRowClicked(@NonNull AudioListRow row, int position, @NonNull View view) {
+    
+    }
+    
+    default void onSongRowLongClicked(@NonNull AudioListRow row, int position, @Nullable ImageView imageView) {
+    
+    }
+    
     default void onPlayClicked(List <Audio> audios, int position) {
     
     }
@@ -418,16 +418,15 @@ open class BaseActivity : AppCompatActivity(), SharedPreferences.OnSharedPrefere
                 }
 
                 // Nothing in the cache — load the bitmap and run palette extraction.
-                val rawBitmap: Bitmap = AudioCover.load(this@BaseActivity, audio) ?: return@launch
+                val rawBitmap: Bitmap = AudioCover.load(this@BaseActivity, audio, 128) ?: return@launch
 
                 // Downscale to a small thumbnail before palette math to keep CPU cost low.
                 // 128x128 gives MonetPalette's 64-sample grid more than enough data.
                 val thumb: Bitmap = withContext(Dispatchers.Default) {
                     val size = 128
                     if (rawBitmap.width > size || rawBitmap.height > size) {
-                        rawBitmap.scale(size, size, filter = false).also {
-                            if (it !== rawBitmap) rawBitmap.recycle()
-                        }
+                        // Don't recycle rawBitmap — external artwork is shared with the cover cache.
+                        rawBitmap.scale(size, size, filter = false)
                     } else {
                         rawBitmap
                     }
@@ -436,7 +435,7 @@ open class BaseActivity : AppCompatActivity(), SharedPreferences.OnSharedPrefere
                 // Run palette extraction on the Default (CPU) dispatcher.
                 val palette: MonetPalette = withContext(Dispatchers.Default) {
                     val p = MonetPalette(thumb)
-                    thumb.recycle()
+                    if (thumb !== rawBitmap) thumb.recycle()
                     p
                 }
 
@@ -3,10 +3,13 @@ package app.simple.felicity.extensions.fragments
 import androidx.lifecycle.Lifecycle
 import androidx.lifecycle.lifecycleScope
 import androidx.lifecycle.repeatOnLifecycle
+import androidx.paging.PagingData
+import androidx.paging.PagingDataAdapter
 import androidx.recyclerview.widget.GridLayoutManager
 import androidx.recyclerview.widget.RecyclerView
 import app.simple.felicity.decorations.views.SpacingRecyclerView
 import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.collectLatest
 import kotlinx.coroutines.launch
 
 /**
@@ -14,7 +17,8 @@ import kotlinx.coroutines.launch
  * panel. It centralizes boilerplate that every panel otherwise repeats:
  *
  * - [GridLayoutManager] lifecycle management (creation, span-count updates, and cleanup)
- * - Lifecycle-aware [Flow] collection via [collectWhenStarted] / [collectListWhenStarted]
+ * - Lifecycle-aware [Flow] collection via [collectWhenStarted] / [collectListWhenStarted],
+ *   and [submitWhenStarted] for paged lists
  * - Grid-size preference updates via [applyGridSizeUpdate]
  *
  * Concrete panels should extend this class instead of [PanelFragment] directly.
@@ -91,6 +95,22 @@ abstract class BasePanelFragment : PanelFragment() {
         }
     }
 
+    /**
+     * Feeds a paged list into [adapter] while the view is at least [Lifecycle.State.STARTED].
+     * Each new [PagingData] replaces the previous one, which is how a pager is told that
+     * its query changed.
+     *
+     * @param T The row type.
+     * @param adapter The panel's [PagingDataAdapter].
+     */
+    protected fun <T : Any> Flow<PagingData<T>>.submitWhenStarted(adapter: PagingDataAdapter<T, *>) {
+        viewLifecycleOwner.lifecycleScope.launch {
+            viewLifecycleOwner.repeatOnLifecycle(Lifecycle.State.STARTED) {
+                collectLatest { pagingData -> adapter.submitData(pagingData) }
+            }
+        }
+    }
+
     /**
      * Updates [gridLayoutManager]'s span count, triggers an animated layout transition on
      * [recyclerView], and notifies the adapter of a full-range item change so every visible
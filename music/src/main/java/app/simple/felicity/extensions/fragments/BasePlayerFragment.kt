@@ -545,7 +545,7 @@ abstract class BasePlayerFragment : MediaFragment() {
      */
     private fun loadWaveformWhenReady(audio: Audio) {
         if (MediaPlaybackManager.isPlaying() || MediaPlaybackManager.isPlayerReady()) {
-            waveformViewModel.loadWaveform(audio)
+            waveformViewModel.loadWaveform(audio, seekbar.getMaxUsefulBars())
             pendingWaveformAudio = null
         } else {
             pendingWaveformAudio = audio
@@ -635,7 +635,7 @@ abstract class BasePlayerFragment : MediaFragment() {
                 // earliest safe moment to run Amplituda's extraction in parallel, regardless
                 // of whether playback will start immediately or stay paused.
                 pendingWaveformAudio?.let { audio ->
-                    waveformViewModel.loadWaveform(audio)
+                    waveformViewModel.loadWaveform(audio, seekbar.getMaxUsefulBars())
                     pendingWaveformAudio = null
                 }
             }
@@ -644,7 +644,7 @@ abstract class BasePlayerFragment : MediaFragment() {
                 // Also drain any pending waveform that was queued before the ready event arrived
                 // (e.g., when the service emits PLAYING without a preceding READY being observed).
                 pendingWaveformAudio?.let { audio ->
-                    waveformViewModel.loadWaveform(audio)
+                    waveformViewModel.loadWaveform(audio, seekbar.getMaxUsefulBars())
                     pendingWaveformAudio = null
                 }
             }
@@ -19,6 +19,7 @@ import androidx.activity.result.contract.ActivityResultContracts
 import androidx.appcompat.content.res.AppCompatResources
 import androidx.core.app.ShareCompat
 import androidx.core.net.toUri
+import androidx.core.view.isVisible
 import androidx.core.widget.NestedScrollView
 import androidx.lifecycle.DefaultLifecycleObserver
 import androidx.lifecycle.Lifecycle
@@ -590,11 +591,13 @@ open class MediaFragment : ScopedFragment(), MiniPlayerPolicy {
 
                 binding.addToFavorites.setOnClickListener {
                     viewLifecycleOwner.lifecycleScope.launch(Dispatchers.IO) {
-                        val newFav = !audio.isFavorite
-                        AudioDatabase.getInstance(requireContext()).audioDao()?.setFavorite(audio.id, newFav)
-                        audio.isFavorite = newFav
-                        if (MediaPlaybackManager.getCurrentSong()?.id == audio.id) {
-                            withContext(Dispatchers.Main) { MediaPlaybackManager.notifyCurrentSongUpdated() }
+                        val updated = audio.copy().apply { isFavorite = !audio.isFavorite }
+                        AudioDatabase.getInstance(requireContext()).audioDao()?.setFavorite(audio.id, updated.isFavorite)
+                        withContext(Dispatchers.Main) {
+                            MediaPlaybackManager.updateQueuedSong(updated)
+                            if (MediaPlaybackManager.getCurrentSong()?.id == audio.id) {
+                                MediaPlaybackManager.notifyCurrentSongUpdated()
+                            }
                         }
                     }
                     dismiss()
@@ -604,7 +607,9 @@ open class MediaFragment : ScopedFragment(), MiniPlayerPolicy {
                     viewLifecycleOwner.lifecycleScope.launch(Dispatchers.IO) {
                         val newSkip = !audio.isAlwaysSkip
                         AudioDatabase.getInstance(requireContext()).audioDao()?.setAlwaysSkip(audio.id, newSkip)
-                        audio.setAlwaysSkip(newSkip)
+                        withContext(Dispatchers.Main) {
+                            MediaPlaybackManager.updateQueuedSong(audio.copy().apply { setAlwaysSkip(newSkip) })
+                        }
                         if (newSkip && MediaPlaybackManager.getCurrentSong()?.id == audio.id) {
                             withContext(Dispatchers.Main) { MediaPlaybackManager.next() }
                         }
@@ -615,7 +620,8 @@ open class MediaFragment : ScopedFragment(), MiniPlayerPolicy {
                 binding.share.setOnClickListener {
                     // The audio URI is already a content:// URI with a persisted SAF grant,
                     // so we can pass it directly to the share sheet. No FileProvider detour needed.
-                    val audioUri = audio.uri.toUri()
+                    // A CUE track shares the album file it is cut from.
+                    val audioUri = audio.streamUri.toUri()
                     ShareCompat.IntentBuilder(requireContext())
                         .setType(audio.mimeType ?: "audio/*")
                         .setStream(audioUri)
@@ -623,6 +629,9 @@ open class MediaFragment : ScopedFragment(), MiniPlayerPolicy {
                     dismiss()
                 }
 
+                // A CUE track is a stretch of an album file the other tracks live in too;
+                // deleting the file from here would take all of them with it.
+                binding.delete.isVisible = !audio.isCueTrack
                 binding.delete.setOnClickListener {
                     dismiss()
                     showAudioDeleteConfirmation(audio) { confirmed, lyrics ->
@@ -708,16 +717,17 @@ open class MediaFragment : ScopedFragment(), MiniPlayerPolicy {
 
     /**
      * Toggles the favorite state of the currently playing song.
-     * Updates the [AudioDatabase] and the in-memory [Audio] object, then re-emits
-     * [MediaPlaybackManager.notifyCurrentSongUpdated] so observers (e.g. [DefaultPlayer]) refresh their UI.
+     * Updates the [AudioDatabase], swaps an updated copy of the [Audio] into the queue, then
+     * re-emits [MediaPlaybackManager.notifyCurrentSongUpdated] so observers (e.g. [DefaultPlayer])
+     * refresh their UI. The original object is shared with every list and is left untouched.
      */
     protected fun toggleFavorite() {
         val audio = MediaPlaybackManager.getCurrentSong() ?: return
         viewLifecycleOwner.lifecycleScope.launch(Dispatchers.IO) {
-            val newFavorite = !audio.isFavorite
-            AudioDatabase.getInstance(requireContext()).audioDao()?.setFavorite(audio.id, newFavorite)
-            audio.isFavorite = newFavorite
+            val updated = audio.copy().apply { isFavorite = !audio.isFavorite }
+            AudioDatabase.getInstance(requireContext()).audioDao()?.setFavorite(audio.id, updated.isFavorite)
             withContext(Dispatchers.Main) {
+                MediaPlaybackManager.updateQueuedSong(updated)
                 MediaPlaybackManager.notifyCurrentSongUpdated()
             }
         }
@@ -945,7 +955,7 @@ open class MediaFragment : ScopedFragment(), MiniPlayerPolicy {
      * @param item The [PlaylistWithSongs] whose songs will be shared.
      */
     private fun sharePlaylistSongs(item: PlaylistWithSongs) {
-        val uris = item.songs.map { it.uri.toUri() } as ArrayList<Uri>
+        val uris = item.songs.map { it.streamUri }.distinct().map { it.toUri() } as ArrayList<Uri>
         if (uris.isEmpty()) return
         val intent = Intent(Intent.ACTION_SEND_MULTIPLE).apply {
             type = "audio/*"
@@ -1228,7 +1238,7 @@ open class MediaFragment : ScopedFragment(), MiniPlayerPolicy {
      * @param audios The list of [Audio] tracks to share.
      */
     protected fun shareAudioList(audios: List<Audio>) {
-        val uris = audios.map { it.uri.toUri() } as ArrayList<Uri>
+        val uris = audios.map { it.streamUri }.distinct().map { it.toUri() } as ArrayList<Uri>
         if (uris.isEmpty()) return
         val intent = Intent(Intent.ACTION_SEND_MULTIPLE).apply {
             type = "audio/*"
@@ -847,6 +847,43 @@ abstract class PreferenceFragment : MediaFragment() {
                 }
         )
 
+        val crossfadeSlider = Preference(
+                title = R.string.crossfade,
+                summary = R.string.crossfade_summary,
+                icon = R.drawable.ic_waves,
+                type = PreferenceType.SLIDER,
+                onPreferenceAction = { view, callback ->
+                    AudioPreferences.setCrossfadeDuration(((view as FelicitySeekbar).getProgress() * 1000F).toInt())
+                },
+                valueProvider = Supplier {
+                    SeekbarState(
+                            position = AudioPreferences.getCrossfadeDuration() / 1000F,
+                            max = AudioPreferences.MAX_CROSSFADE_DURATION / 1000F,
+                            min = 0F,
+                            stepSize = 0.5F,
+                            default = 0F,
+                            leftLabel = false,
+                            rightLabel = true,
+                            rightLabelProvider = { progress, _, _ ->
+                                String.format(Locale.getDefault(), "%.1f s", progress)
+                            },
+                    )
+                }
+        )
+
+        val crossfadeSkipSilentTailToggle = Preference(
+                title = R.string.crossfade_skip_silent_tail,
+                summary = R.string.crossfade_skip_silent_tail_summary,
+                icon = R.drawable.ic_timer,
+                type = PreferenceType.SWITCH,
+                onPreferenceAction = { view, callback ->
+                    AudioPreferences.setCrossfadeSkipSilentTail((view as FelicitySwitch).isChecked)
+                },
+                valueProvider = Supplier {
+                    AudioPreferences.isCrossfadeSkipSilentTailEnabled()
+                }
+        )
+
         val replayGainHeader = Preference(type = PreferenceType.SUB_HEADER, title = R.string.replay_gain)
 
         /**
@@ -910,6 +947,40 @@ abstract class PreferenceFragment : MediaFragment() {
                 }
         )
 
+        /**
+         * Lets the app measure songs that have no ReplayGain tags in the background and
+         * use the measured gain instead, so auto ReplayGain covers the whole library.
+         */
+        val loudnessAnalysisToggle = Preference(
+                title = R.string.loudness_analysis,
+                summary = R.string.loudness_analysis_summary,
+                icon = R.drawable.ic_graphic_eq,
+                type = PreferenceType.SWITCH,
+                onPreferenceAction = { view, _ ->
+                    EqualizerPreferences.setLoudnessAnalysisEnabled((view as FelicitySwitch).isChecked)
+                },
+                valueProvider = Supplier {
+                    EqualizerPreferences.isLoudnessAnalysisEnabled()
+                }
+        )
+
+        /**
+         * Writes the measured gain back into the files as REPLAYGAIN_* tags. Off by
+         * default since it modifies the user's files.
+         */
+        val loudnessWriteTagsToggle = Preference(
+                title = R.string.loudness_analysis_write_tags,
+                summary = R.string.loudness_analysis_write_tags_summary,
+                icon = -1,
+                type = PreferenceType.SWITCH,
+                onPreferenceAction = { view, _ ->
+                    EqualizerPreferences.setLoudnessAnalysisWriteTags((view as FelicitySwitch).isChecked)
+                },
+                valueProvider = Supplier {
+                    EqualizerPreferences.isLoudnessAnalysisWriteTagsEnabled()
+                }
+        )
+
         preferences.add(decoderHeader)
         preferences.add(currentDecoder)
         preferences.add(fallbackToSWToggle)
@@ -923,9 +994,13 @@ abstract class PreferenceFragment : MediaFragment() {
         preferences.add(stereoDownmixing)
         preferences.add(gaplessToggle)
         preferences.add(skipSilenceToggle)
+        preferences.add(crossfadeSlider)
+        preferences.add(crossfadeSkipSilentTailToggle)
         preferences.add(replayGainHeader)
         preferences.add(autoReplayGainToggle)
         preferences.add(replayGainMode)
+        preferences.add(loudnessAnalysisToggle)
+        preferences.add(loudnessWriteTagsToggle)
 
         return preferences
     }
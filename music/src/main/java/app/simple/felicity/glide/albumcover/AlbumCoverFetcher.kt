@@ -16,13 +16,14 @@ import java.io.FileNotFoundException
  */
 class AlbumCoverFetcher internal constructor(
         private val context: Context,
-        private val album: Album
+        private val album: Album,
+        private val maxSize: Int = 0
 ) : DataFetcher<Bitmap> {
 
     override fun loadData(priority: Priority, callback: DataFetcher.DataCallback<in Bitmap>) {
         try {
             // Delegate to AlbumCover for centralized album cover loading
-            val bitmap = AlbumCover.load(context, album)
+            val bitmap = AlbumCover.load(context, album, maxSize)
                 ?: throw FileNotFoundException("Could not find album artwork for: ${album.name}")
 
             callback.onDataReady(bitmap)
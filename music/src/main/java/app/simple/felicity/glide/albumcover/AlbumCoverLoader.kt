@@ -9,6 +9,7 @@ import com.bumptech.glide.load.model.ModelLoader
 import com.bumptech.glide.load.model.ModelLoaderFactory
 import com.bumptech.glide.load.model.MultiModelLoaderFactory
 import com.bumptech.glide.signature.ObjectKey
+import kotlin.math.max
 
 /**
  * Glide [ModelLoader] for [Album] → [Bitmap] that wires a [Context] into
@@ -18,7 +19,7 @@ import com.bumptech.glide.signature.ObjectKey
  */
 class AlbumCoverLoader(private val context: Context) : ModelLoader<Album, Bitmap> {
     override fun buildLoadData(album: Album, width: Int, height: Int, options: Options): ModelLoader.LoadData<Bitmap> {
-        return ModelLoader.LoadData(ObjectKey(album), AlbumCoverFetcher(context, album))
+        return ModelLoader.LoadData(ObjectKey(album), AlbumCoverFetcher(context, album, max(width, height)))
     }
 
     fun getResourceFetcher(model: Album): DataFetcher<Bitmap> {
@@ -15,13 +15,14 @@ import com.bumptech.glide.load.data.DataFetcher
  */
 class ArtistCoverFetcher internal constructor(
         private val context: Context,
-        private val artist: Artist
+        private val artist: Artist,
+        private val maxSize: Int = 0
 ) : DataFetcher<Bitmap> {
 
     override fun loadData(priority: Priority, callback: DataFetcher.DataCallback<in Bitmap>) {
         try {
             // Delegate to ArtistCover for centralized artist cover loading
-            val bitmap = ArtistCover.load(context, artist)
+            val bitmap = ArtistCover.load(context, artist, maxSize)
 
             callback.onDataReady(bitmap)
         } catch (e: Exception) {
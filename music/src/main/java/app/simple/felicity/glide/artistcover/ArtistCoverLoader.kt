@@ -10,6 +10,7 @@ import com.bumptech.glide.load.model.ModelLoaderFactory
 import com.bumptech.glide.load.model.MultiModelLoaderFactory
 import com.bumptech.glide.signature.ObjectKey
 import java.io.File
+import kotlin.math.max
 
 class ArtistCoverLoader(private val context: Context) : ModelLoader<Artist, Bitmap> {
     override fun buildLoadData(model: Artist, width: Int, height: Int, options: Options): ModelLoader.LoadData<Bitmap> {
@@ -20,7 +21,7 @@ class ArtistCoverLoader(private val context: Context) : ModelLoader<Artist, Bitm
          */
         val lastModified = artistImageFile(model.name)?.lastModified() ?: 0L
         val key = ObjectKey("${model.id}_$lastModified")
-        return ModelLoader.LoadData(key, ArtistCoverFetcher(context, model))
+        return ModelLoader.LoadData(key, ArtistCoverFetcher(context, model, max(width, height)))
     }
 
     /**
@@ -16,13 +16,14 @@ import java.io.FileNotFoundException
  */
 class AudioCoverFetcher internal constructor(
         private val context: Context,
-        private val audio: Audio
+        private val audio: Audio,
+        private val maxSize: Int = 0
 ) : DataFetcher<Bitmap> {
 
     override fun loadData(priority: Priority, callback: DataFetcher.DataCallback<in Bitmap>) {
         try {
             // Delegate to AudioCover for centralized audio cover loading
-            val bitmap = AudioCover.load(context, audio)
+            val bitmap = AudioCover.load(context, audio, maxSize)
                 ?: throw FileNotFoundException("Could not find audio artwork for: ${audio.title}")
 
             callback.onDataReady(bitmap)
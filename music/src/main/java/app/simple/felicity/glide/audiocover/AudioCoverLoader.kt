@@ -9,6 +9,7 @@ import com.bumptech.glide.load.model.ModelLoader
 import com.bumptech.glide.load.model.ModelLoaderFactory
 import com.bumptech.glide.load.model.MultiModelLoaderFactory
 import com.bumptech.glide.signature.ObjectKey
+import kotlin.math.max
 
 /**
  * Glide [ModelLoader] for [Audio] → [Bitmap] that wires a [Context] into
@@ -18,7 +19,7 @@ import com.bumptech.glide.signature.ObjectKey
  */
 class AudioCoverLoader(private val context: Context) : ModelLoader<Audio, Bitmap> {
     override fun buildLoadData(audio: Audio, width: Int, height: Int, options: Options): ModelLoader.LoadData<Bitmap> {
-        return ModelLoader.LoadData(ObjectKey(audio), AudioCoverFetcher(context, audio))
+        return ModelLoader.LoadData(ObjectKey(audio), AudioCoverFetcher(context, audio, max(width, height)))
     }
 
     fun getResourceFetcher(model: Audio): DataFetcher<Bitmap> {
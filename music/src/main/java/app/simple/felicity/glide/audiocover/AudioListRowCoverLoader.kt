@@ -0,0 +1,49 @@
+package app.simple.felicity.glide.audiocover
+
+import android.content.Context
+import android.graphics.Bitmap
+import app.simple.felicity.repository.models.Audio
+import app.simple.felicity.repository.models.AudioListRow
+import com.bumptech.glide.load.Options
+import com.bumptech.glide.load.model.ModelLoader
+import com.bumptech.glide.load.model.ModelLoaderFactory
+import com.bumptech.glide.load.model.MultiModelLoaderFactory
+import com.bumptech.glide.signature.ObjectKey
+import kotlin.math.max
+
+/**
+ * Glide [ModelLoader] for the slim [AudioListRow]s of the paged song lists. The row
+ * carries everything [AudioCoverFetcher] looks at (the stream uri, album, hash and
+ * title), so it is turned into a bare [Audio] holding just those and handed over,
+ * keeping one cover lookup path for both models.
+ *
+ * @author Hamza417
+ */
+class AudioListRowCoverLoader(private val context: Context) : ModelLoader<AudioListRow, Bitmap> {
+    override fun buildLoadData(row: AudioListRow, width: Int, height: Int, options: Options): ModelLoader.LoadData<Bitmap> {
+        return ModelLoader.LoadData(ObjectKey(row), AudioCoverFetcher(context, row.toCoverAudio(), max(width, height)))
+    }
+
+    override fun handles(model: AudioListRow): Boolean {
+        return true
+    }
+
+    private fun AudioListRow.toCoverAudio(): Audio {
+        val audio = Audio()
+        audio.id = id
+        audio.hash = hash
+        audio.title = title
+        audio.album = album
+        audio.uri = uri
+        audio.cueSourceUri = cueSourceUri
+        return audio
+    }
+
+    internal class Factory(private val context: Context) : ModelLoaderFactory<AudioListRow, Bitmap> {
+        override fun build(multiFactory: MultiModelLoaderFactory): ModelLoader<AudioListRow, Bitmap> {
+            return AudioListRowCoverLoader(context)
+        }
+
+        override fun teardown() {}
+    }
+}
@@ -19,12 +19,13 @@ import java.io.FileNotFoundException
  */
 class FolderCoverFetcher internal constructor(
         private val context: Context,
-        private val folder: Folder
+        private val folder: Folder,
+        private val maxSize: Int = 0
 ) : DataFetcher<Bitmap> {
 
     override fun loadData(priority: Priority, callback: DataFetcher.DataCallback<in Bitmap>) {
         try {
-            val bitmap = FolderCover.load(context, folder)
+            val bitmap = FolderCover.load(context, folder, maxSize)
                 ?: throw FileNotFoundException("Could not find artwork for folder: ${folder.name}")
             callback.onDataReady(bitmap)
         } catch (e: Exception) {
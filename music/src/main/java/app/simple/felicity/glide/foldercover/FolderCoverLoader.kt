@@ -8,6 +8,7 @@ import com.bumptech.glide.load.model.ModelLoader
 import com.bumptech.glide.load.model.ModelLoaderFactory
 import com.bumptech.glide.load.model.MultiModelLoaderFactory
 import com.bumptech.glide.signature.ObjectKey
+import kotlin.math.max
 
 /**
  * Glide [ModelLoader] for [Folder] → [Bitmap] that wires a [Context] into
@@ -17,7 +18,7 @@ import com.bumptech.glide.signature.ObjectKey
  */
 class FolderCoverLoader(private val context: Context) : ModelLoader<Folder, Bitmap> {
     override fun buildLoadData(model: Folder, width: Int, height: Int, options: Options): ModelLoader.LoadData<Bitmap?>? {
-        return ModelLoader.LoadData(ObjectKey(model), FolderCoverFetcher(context, model))
+        return ModelLoader.LoadData(ObjectKey(model), FolderCoverFetcher(context, model, max(width, height)))
     }
 
     override fun handles(model: Folder): Boolean = true
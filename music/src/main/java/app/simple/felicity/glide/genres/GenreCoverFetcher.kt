@@ -8,9 +8,13 @@ import com.bumptech.glide.Priority
 import com.bumptech.glide.load.DataSource
 import com.bumptech.glide.load.data.DataFetcher
 
-class GenreCoverFetcher internal constructor(private val context: Context, private val genre: Genre) : DataFetcher<Bitmap> {
+class GenreCoverFetcher internal constructor(
+        private val context: Context,
+        private val genre: Genre,
+        private val maxSize: Int = 0
+) : DataFetcher<Bitmap> {
     override fun loadData(priority: Priority, callback: DataFetcher.DataCallback<in Bitmap>) {
-        val coverFromFiles = GenreCover.load(context, genre)
+        val coverFromFiles = GenreCover.load(context, genre, maxSize)
         callback.onDataReady(coverFromFiles)
     }
 
@@ -8,10 +8,11 @@ import com.bumptech.glide.load.model.ModelLoader
 import com.bumptech.glide.load.model.ModelLoaderFactory
 import com.bumptech.glide.load.model.MultiModelLoaderFactory
 import com.bumptech.glide.signature.ObjectKey
+import kotlin.math.max
 
 class GenreCoverLoader(private val context: Context) : ModelLoader<Genre, Bitmap> {
     override fun buildLoadData(model: Genre, width: Int, height: Int, options: Options): ModelLoader.LoadData<Bitmap?>? {
-        return ModelLoader.LoadData(ObjectKey(model), GenreCoverFetcher(context, model))
+        return ModelLoader.LoadData(ObjectKey(model), GenreCoverFetcher(context, model, max(width, height)))
     }
 
     override fun handles(model: Genre): Boolean {
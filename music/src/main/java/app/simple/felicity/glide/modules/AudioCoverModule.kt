@@ -6,6 +6,7 @@ import android.graphics.Bitmap
 import app.simple.felicity.glide.albumcover.AlbumCoverLoader
 import app.simple.felicity.glide.artistcover.ArtistCoverLoader
 import app.simple.felicity.glide.audiocover.AudioCoverLoader
+import app.simple.felicity.glide.audiocover.AudioListRowCoverLoader
 import app.simple.felicity.glide.filedescriptorcover.DescriptorCoverLoader
 import app.simple.felicity.glide.filedescriptorcover.DescriptorCoverModel
 import app.simple.felicity.glide.foldercover.FolderCoverLoader
@@ -16,6 +17,7 @@ import app.simple.felicity.glide.yearcover.YearCoverLoader
 import app.simple.felicity.repository.models.Album
 import app.simple.felicity.repository.models.Artist
 import app.simple.felicity.repository.models.Audio
+import app.simple.felicity.repository.models.AudioListRow
 import app.simple.felicity.repository.models.Folder
 import app.simple.felicity.repository.models.Genre
 import app.simple.felicity.repository.models.YearGroup
@@ -58,6 +60,7 @@ class AudioCoverModule : AppGlideModule() {
         registry.append(DescriptorCoverModel::class.java, InputStream::class.java, DescriptorCoverLoader.Factory())
         registry.append(Album::class.java, Bitmap::class.java, AlbumCoverLoader.Factory(context))
         registry.append(Audio::class.java, Bitmap::class.java, AudioCoverLoader.Factory(context))
+        registry.append(AudioListRow::class.java, Bitmap::class.java, AudioListRowCoverLoader.Factory(context))
         registry.append(Artist::class.java, Bitmap::class.java, ArtistCoverLoader.Factory(context))
         registry.append(Genre::class.java, Bitmap::class.java, GenreCoverLoader.Factory(context))
         registry.append(Folder::class.java, Bitmap::class.java, FolderCoverLoader.Factory(context))
@@ -20,37 +20,60 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Paint;
+import android.util.Log;
 
 import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
 
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import app.simple.felicity.BuildConfig;
-import app.simple.felicity.glide.internals.StackBlur;
+import app.simple.felicity.blur.BitmapBlur;
+import app.simple.felicity.blur.BlurCache;
 
+/**
+ * Blurs the artwork through {@link BitmapBlur}, after shrinking it so the blur
+ * runs on a fraction of the pixels. A blur this strong throws away all the detail
+ * the full resolution had anyway, so the smaller result looks the same once the
+ * view scales it back up.
+ * <p>
+ * Results go through {@link BlurCache}, keyed by the pixels of the shrunk image,
+ * so the same cover is only blurred once even when it arrives through different
+ * models (a song, its album, a widget) that Glide caches separately.
+ */
 public class Blur extends BitmapTransformation {
     
+    private static final String TAG = "Blur";
     private static final int VERSION = BuildConfig.VERSION_CODE;
     private static final String ID = "app.simple.felicity.glide.transformations.BlurTransformation." + VERSION;
     
     private static final int MAX_RADIUS = 32;
-    private static final int DEFAULT_DOWN_SAMPLING = 1;
+    
+    /**
+     * The radius, in pixels of the shrunk image, the down sampling aims for. Big
+     * enough that the box passes still look like a Gaussian, small enough that
+     * even a radius of 72 only blurs an image an eighth of the size.
+     */
+    private static final int WORKING_RADIUS = 8;
+    private static final int MAX_DOWN_SAMPLING = 8;
     
     private final int radius;
     private final int sampling;
     
     public Blur() {
-        this(MAX_RADIUS, DEFAULT_DOWN_SAMPLING);
+        this(MAX_RADIUS);
     }
     
     public Blur(int radius) {
-        this(radius, DEFAULT_DOWN_SAMPLING);
+        this(radius, samplingFor(radius));
     }
     
     public Blur(int radius, int sampling) {
         this.radius = radius;
-        this.sampling = sampling;
+        this.sampling = Math.max(1, sampling);
     }
     
     @Override
@@ -58,22 +81,71 @@ public class Blur extends BitmapTransformation {
         
         int width = toTransform.getWidth();
         int height = toTransform.getHeight();
-        int scaledWidth = width / sampling;
-        int scaledHeight = height / sampling;
+        int scaledWidth = Math.max(1, width / sampling);
+        int scaledHeight = Math.max(1, height / sampling);
         
-        Bitmap bitmap = pool.get(scaledWidth, scaledHeight, Bitmap.Config.ARGB_8888);
+        Bitmap scaled = pool.get(scaledWidth, scaledHeight, Bitmap.Config.ARGB_8888);
         
-        setCanvasBitmapDensity(toTransform, bitmap);
+        setCanvasBitmapDensity(toTransform, scaled);
         
-        Canvas canvas = new Canvas(bitmap);
-        canvas.scale(1 / (float) sampling, 1 / (float) sampling);
+        Canvas canvas = new Canvas(scaled);
+        canvas.scale(scaledWidth / (float) width, scaledHeight / (float) height);
         Paint paint = new Paint();
         paint.setFlags(Paint.FILTER_BITMAP_FLAG);
         canvas.drawBitmap(toTransform, 0, 0, paint);
         
-        new StackBlur().blurRgb(bitmap, radius);
+        float scaledRadius = Math.max(1F, radius / (float) sampling);
+        String key = contentKey(scaled);
+        Bitmap blurred = key != null
+                ? BlurCache.INSTANCE.blur(context, scaled, scaledRadius, key)
+                : BitmapBlur.INSTANCE.blur(scaled, scaledRadius);
+        
+        if (blurred == scaled) {
+            // Neither backend could blur it, the shrunk copy is the best there is.
+            return scaled;
+        }
+        
+        pool.put(scaled);
         
-        return bitmap;
+        if (key == null) {
+            return blurred;
+        }
+        
+        // BlurCache keeps its own reference to the result, while Glide hands whatever
+        // we return back to the pool once it is done with it, so give Glide a copy.
+        Bitmap result = pool.get(blurred.getWidth(), blurred.getHeight(), Bitmap.Config.ARGB_8888);
+        setCanvasBitmapDensity(toTransform, result);
+        new Canvas(result).drawBitmap(blurred, 0, 0, null);
+        return result;
+    }
+    
+    /**
+     * The down sampling that brings {@code radius} close to {@link #WORKING_RADIUS}.
+     */
+    private static int samplingFor(int radius) {
+        return Math.max(1, Math.min(MAX_DOWN_SAMPLING, radius / WORKING_RADIUS));
+    }
+    
+    /**
+     * A digest of the pixels of {@code bitmap}, or null if there is no SHA-1 around,
+     * in which case the blur simply is not cached.
+     */
+    @Nullable
+    private static String contentKey(Bitmap bitmap) {
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(bitmap.getByteCount());
+            bitmap.copyPixelsToBuffer(buffer);
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(buffer.array());
+            StringBuilder builder = new StringBuilder("pixels:");
+            for (byte b : digest.digest()) {
+                builder.append(String.format("%02x", b));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            Log.w(TAG, "No SHA-1, blurring without the cache", e);
+            return null;
+        }
     }
     
     @NonNull
@@ -98,4 +170,4 @@ public class Blur extends BitmapTransformation {
     public void updateDiskCacheKey(@NonNull MessageDigest messageDigest) {
         messageDigest.update((ID + radius + sampling).getBytes(CHARSET));
     }
-}
\ No newline at end of file
+}
@@ -14,7 +14,7 @@ import androidx.annotation.ColorRes
 import androidx.annotation.IntDef
 import androidx.core.content.ContextCompat
 import androidx.core.graphics.createBitmap
-import app.simple.felicity.blur.GPUBlur
+import app.simple.felicity.blur.BitmapBlur
 import app.simple.felicity.preferences.AppearancePreferences
 import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool
 import com.bumptech.glide.load.resource.bitmap.BitmapTransformation
@@ -174,7 +174,7 @@ class BlurShadow(private val context: Context) : BitmapTransformation() {
         if (blurRadius <= MAX_BLUR_RADIUS) {
             //Apply Blur
             shadow = if (shadowEffectEnabled) {
-                GPUBlur.blur(source, blurRadius)
+                BitmapBlur.blur(source, blurRadius)
             } else {
                 createBitmap(source.width, source.height)
             }
@@ -185,11 +185,11 @@ class BlurShadow(private val context: Context) : BitmapTransformation() {
             canvas.drawBitmap(shadow, 0F, 0F, shadowPaint)
             canvas.drawBitmap(source, 0f, 0f, null)
         } else {
-            // The GPU pipeline inside GPUBlur handles large radii transparently
-            // by downscaling internally, so we can treat this branch the same way
-            // as the small-radius case and let the native side do the heavy lifting.
+            // Both blur backends handle large radii transparently by downscaling
+            // internally, so we can treat this branch the same way as the
+            // small-radius case and let the native side do the heavy lifting.
             shadow = if (shadowEffectEnabled) {
-                GPUBlur.blur(source, blurRadius)
+                BitmapBlur.blur(source, blurRadius)
             } else {
                 createBitmap(source.width, source.height)
             }
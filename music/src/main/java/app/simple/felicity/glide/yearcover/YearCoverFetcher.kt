@@ -19,12 +19,13 @@ import java.io.FileNotFoundException
  */
 class YearCoverFetcher internal constructor(
         private val context: Context,
-        private val yearGroup: YearGroup
+        private val yearGroup: YearGroup,
+        private val maxSize: Int = 0
 ) : DataFetcher<Bitmap> {
 
     override fun loadData(priority: Priority, callback: DataFetcher.DataCallback<in Bitmap>) {
         try {
-            val bitmap = YearCover.load(context, yearGroup)
+            val bitmap = YearCover.load(context, yearGroup, maxSize)
                 ?: throw FileNotFoundException("Could not find artwork for year: ${yearGroup.year}")
             callback.onDataReady(bitmap)
         } catch (e: Exception) {
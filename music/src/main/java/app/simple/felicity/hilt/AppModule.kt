@@ -2,11 +2,13 @@ package app.simple.felicity.hilt
 
 import android.content.Context
 import app.simple.felicity.repository.loader.AudioDatabaseLoader
+import app.simple.felicity.repository.loader.LibraryIndexer
 import app.simple.felicity.repository.loader.PlaylistDatabaseLoader
 import app.simple.felicity.repository.repositories.AlbumRepository
 import app.simple.felicity.repository.repositories.ArtistRepository
 import app.simple.felicity.repository.repositories.AudioRepository
 import app.simple.felicity.repository.repositories.BookmarkRepository
+import app.simple.felicity.repository.repositories.LibrarySnapshotRepository
 import app.simple.felicity.repository.repositories.LrcRepository
 import dagger.Module
 import dagger.Provides
@@ -30,10 +32,21 @@ object AppModule {
         return ArtistRepository(context)
     }
 
+    /**
+     * Provides the single [LibraryIndexer] shared by the scanner, which defers and then
+     * flushes it around every scan, and [AudioRepository], which reads the pre-grouped
+     * album, artist, genre, composer, year, and folder lists from it.
+     */
+    @Provides
+    @Singleton
+    fun provideLibraryIndexer(@ApplicationContext context: Context): LibraryIndexer {
+        return LibraryIndexer(context)
+    }
+
     @Provides
     @Singleton
-    fun provideAudioDatabaseLoader(@ApplicationContext context: Context): AudioDatabaseLoader {
-        return AudioDatabaseLoader(context)
+    fun provideAudioDatabaseLoader(@ApplicationContext context: Context, libraryIndexer: LibraryIndexer): AudioDatabaseLoader {
+        return AudioDatabaseLoader(context, libraryIndexer)
     }
 
     /**
@@ -48,10 +61,24 @@ object AppModule {
         return PlaylistDatabaseLoader(context)
     }
 
+    /**
+     * Provides the single [LibrarySnapshotRepository] every screen and service reads the
+     * full library from, so they all share one query and one copy of the song list.
+     */
+    @Provides
+    @Singleton
+    fun provideLibrarySnapshotRepository(@ApplicationContext context: Context): LibrarySnapshotRepository {
+        return LibrarySnapshotRepository(context)
+    }
+
     @Provides
     @Singleton
-    fun provideAudioRepository(@ApplicationContext context: Context): AudioRepository {
-        return AudioRepository(context)
+    fun provideAudioRepository(
+            @ApplicationContext context: Context,
+            libraryIndexer: LibraryIndexer,
+            librarySnapshot: LibrarySnapshotRepository
+    ): AudioRepository {
+        return AudioRepository(context, libraryIndexer, librarySnapshot)
     }
 
     @Provides
@@ -0,0 +1,99 @@
+package app.simple.felicity.managers
+
+import android.content.Context
+import android.content.Intent
+import android.content.IntentFilter
+import android.os.BatteryManager
+import android.os.PowerManager
+import app.simple.felicity.engine.managers.MediaPlaybackManager
+import app.simple.felicity.repository.constants.MediaConstants
+import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Decides when the background decoders ([WaveformPrecomputer], [LoudnessScanner]) are
+ * allowed to do a unit of work, so they all back off the same way.
+ *
+ * Nothing runs while the battery is low, battery saver is on, or the device is running
+ * hot. While music plays only each decoder's first worker keeps going, and even that one
+ * waits while the current song is a hi-res track that already keeps the CPU busy.
+ *
+ * @author Hamza417
+ */
+@Singleton
+class BackgroundWorkGate @Inject constructor(
+        @param:ApplicationContext private val context: Context
+) {
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+
+    @Volatile
+    private var isPlaying = false
+
+    private val powerManager: PowerManager by lazy {
+        context.getSystemService(Context.POWER_SERVICE) as PowerManager
+    }
+
+    init {
+        scope.launch {
+            MediaPlaybackManager.playbackStateFlow.collect { state ->
+                isPlaying = state == MediaConstants.PLAYBACK_PLAYING
+            }
+        }
+    }
+
+    /**
+     * Suspends until [worker] is allowed to decode. Everything waits while the device
+     * needs saving; while music plays only worker 0 keeps going, and even that one backs
+     * off when the current track is heavy to play back.
+     */
+    suspend fun awaitIdleEnough(worker: Int) {
+        while (true) {
+            val allowed = when {
+                isConstrained() -> false
+                !isPlaying -> true
+                worker > 0 -> false
+                else -> !isHeavyPlayback()
+            }
+
+            if (allowed) return
+            delay(RECHECK_INTERVAL_MS)
+        }
+    }
+
+    private fun isConstrained(): Boolean {
+        if (powerManager.isPowerSaveMode) return true
+        if (powerManager.currentThermalStatus >= PowerManager.THERMAL_STATUS_MODERATE) return true
+
+        val battery = context.registerReceiver(null, IntentFilter(Intent.ACTION_BATTERY_CHANGED)) ?: return false
+        val status = battery.getIntExtra(BatteryManager.EXTRA_STATUS, -1)
+        val charging = status == BatteryManager.BATTERY_STATUS_CHARGING || status == BatteryManager.BATTERY_STATUS_FULL
+        if (charging) return false
+
+        val level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1)
+        val scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1)
+        if (level < 0 || scale <= 0) return false
+
+        return level * 100 / scale <= LOW_BATTERY_PERCENT
+    }
+
+    /** Hi-res tracks keep the decoder and the DSP chain busy enough on their own. */
+    private fun isHeavyPlayback(): Boolean {
+        val current = MediaPlaybackManager.getCurrentSong() ?: return false
+        return current.sampleRate > HEAVY_SAMPLE_RATE || current.bitPerSample > HEAVY_BIT_DEPTH
+    }
+
+    companion object {
+        private const val RECHECK_INTERVAL_MS = 30_000L
+        private const val LOW_BATTERY_PERCENT = 20
+
+        private const val HEAVY_SAMPLE_RATE = 48_000L
+        private const val HEAVY_BIT_DEPTH = 24L
+    }
+}
@@ -0,0 +1,72 @@
+package app.simple.felicity.managers
+
+import app.simple.felicity.repository.models.Audio
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.flow.update
+
+/**
+ * The line of songs a background decoder ([WaveformPrecomputer], [LoudnessScanner]) works
+ * through, kept for as long as the decoder runs instead of being rebuilt from the whole
+ * library every time the play queue moves.
+ *
+ * It has two parts. At the front sit the urgent songs — the next few tracks of the queue —
+ * which [prioritize] swaps out wholesale whenever the queue moves on. Behind them is the
+ * background order, which [replace] only rebuilds when the library itself changes. Both are
+ * keyed by [Audio.hash], and a song handed out by [poll] is dropped from both, so a song
+ * that was urgent and also sits further back in the line is still only decoded once.
+ *
+ * Workers park in [awaitWork] while the line is empty and are all woken up again by the
+ * next change, so nothing has to be cancelled and restarted to hand them new work.
+ *
+ * @author Hamza417
+ */
+class BackgroundWorkOrder {
+
+    private val lock = Any()
+
+    private val urgent = LinkedHashMap<Long, Audio>()
+    private val order = LinkedHashMap<Long, Audio>()
+
+    /** Bumped on every change so parked workers look at the line again. */
+    private val generation = MutableStateFlow(0L)
+
+    /** Songs still waiting, urgent ones included. */
+    val size: Int
+        get() = synchronized(lock) { order.size + urgent.keys.count { it !in order } }
+
+    /** Replaces the background order with [songs], keeping their order. */
+    fun replace(songs: List<Audio>) {
+        synchronized(lock) {
+            order.clear()
+            songs.forEach { order.putIfAbsent(it.hash, it) }
+        }
+        generation.update { it + 1 }
+    }
+
+    /** Makes [songs] the ones handed out first, in this order, dropping the previous urgent set. */
+    fun prioritize(songs: List<Audio>) {
+        synchronized(lock) {
+            urgent.clear()
+            songs.forEach { urgent.putIfAbsent(it.hash, it) }
+        }
+        generation.update { it + 1 }
+    }
+
+    /** Takes the next song off the line, urgent ones first, or returns null when the line is empty. */
+    fun poll(): Audio? {
+        synchronized(lock) {
+            val next = urgent.values.firstOrNull() ?: order.values.firstOrNull() ?: return null
+            urgent.remove(next.hash)
+            order.remove(next.hash)
+            return next
+        }
+    }
+
+    /** Suspends until there is at least one song on the line. */
+    suspend fun awaitWork() {
+        generation.first {
+            synchronized(lock) { urgent.isNotEmpty() || order.isNotEmpty() }
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package app.simple.felicity.managers
+
+import android.content.Context
+import android.content.SharedPreferences
+import android.util.Log
+import androidx.core.net.toUri
+import app.simple.felicity.engine.audio.LoudnessAnalyzer
+import app.simple.felicity.engine.audio.LoudnessMeter
+import app.simple.felicity.engine.managers.MediaPlaybackManager
+import app.simple.felicity.preferences.EqualizerPreferences
+import app.simple.felicity.repository.database.dao.LoudnessDao
+import app.simple.felicity.repository.database.instances.AudioDatabase
+import app.simple.felicity.repository.metadata.MetadataWriter
+import app.simple.felicity.repository.models.Audio
+import app.simple.felicity.repository.models.LoudnessAnalysis
+import app.simple.felicity.repository.repositories.LibrarySnapshotRepository
+import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.currentCoroutineContext
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.collectLatest
+import kotlinx.coroutines.flow.combine
+import kotlinx.coroutines.flow.filter
+import kotlinx.coroutines.flow.update
+import kotlinx.coroutines.job
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicBoolean
+import javax.inject.Inject
+import javax.inject.Singleton
+import kotlin.coroutines.cancellation.CancellationException
+import app.simple.felicity.manager.SharedPreferences as AppPreferences
+
+/**
+ * Measures the loudness of songs that came without ReplayGain tags, so auto ReplayGain
+ * works on the whole library instead of only the part someone already tagged.
+ *
+ * Every song with neither a track nor an album gain tag is decoded in the background and
+ * measured to EBU R128 by [LoudnessAnalyzer]; the result goes into
+ * {@code loudness_analysis}, keyed by [Audio.hash], and the player falls back to it when a
+ * song has no tag of its own. Songs in the upcoming queue go first so the next song is
+ * usually covered by the time it starts.
+ *
+ * Album gain is worked out once every untagged song of an album (same album and album
+ * artist) has been measured, from the sum of their gating histograms — the same gated
+ * measurement a tagger would make over the whole album. A song joining the album later
+ * only needs that one song decoded; the album value is then recomputed for all of them.
+ *
+ * When the user opts in, the measured values are also written into the files as
+ * REPLAYGAIN_* tags through [MetadataWriter], leaving every other tag untouched.
+ *
+ * Like [WaveformPrecomputer], the order is kept in a [BackgroundWorkOrder] built from the
+ * shared [LibrarySnapshotRepository] snapshot. It is only rebuilt when the library or one of
+ * the scan settings changes; a song change just moves the upcoming tracks to the front.
+ *
+ * Decoding is held back by [BackgroundWorkGate] exactly like [WaveformPrecomputer], with at
+ * most [MAX_WORKERS] songs in flight. Songs that fail to decode are not retried until the
+ * next launch.
+ *
+ * @author Hamza417
+ */
+@Singleton
+class LoudnessScanner @Inject constructor(
+        @param:ApplicationContext private val context: Context,
+        private val librarySnapshot: LibrarySnapshotRepository,
+        private val workGate: BackgroundWorkGate
+) : SharedPreferences.OnSharedPreferenceChangeListener {
+
+    private val TAG = "LoudnessScanner"
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+
+    private val started = AtomicBoolean(false)
+
+    /** What is left to measure; built when the library changes, reordered when the queue moves. */
+    private val workOrder = BackgroundWorkOrder()
+
+    /** Bumped when one of the scan settings changes, so the order is built again. */
+    private val settingsChanged = MutableStateFlow(0L)
+
+    /** The untagged songs of the library grouped by [albumKey], as of the last build. */
+    @Volatile
+    private var albums: Map<String, List<Audio>> = emptyMap()
+
+    /** Hashes that have been measured, read once and kept up to date as we go. */
+    private val analyzedHashes: MutableSet<Long> = ConcurrentHashMap.newKeySet()
+
+    /** Hashes that failed to decode this session, so a broken file isn't tried again. */
+    private val failedHashes: MutableSet<Long> = ConcurrentHashMap.newKeySet()
+
+    /** Serializes album recomputation so two workers finishing the same album don't race. */
+    private val albumLock = Mutex()
+
+    private val dao: LoudnessDao
+        get() = AudioDatabase.getInstance(context).loudnessDao()
+
+    /**
+     * Starts watching the library, playback and the relevant settings, and starts the
+     * workers. Safe to call more than once; only the first call does anything.
+     */
+    fun start() {
+        if (!started.compareAndSet(false, true)) return
+
+        AppPreferences.registerSharedPreferencesListener(this)
+
+        scope.launch {
+            // Let the app settle first — the player decodes the current track itself.
+            delay(START_DELAY_MS)
+            analyzedHashes.addAll(dao.getAnalyzedHashes())
+
+            // The full order is only rebuilt when the library really changes or a setting
+            // does; the shared snapshot doesn't emit for writes that left the songs as they were.
+            launch {
+                combine(librarySnapshot.snapshot.filter { it.isLoaded }, settingsChanged) { snapshot, _ -> snapshot }
+                    .collectLatest { snapshot ->
+                        try {
+                            buildOrder(snapshot.songs)
+                        } catch (e: CancellationException) {
+                            throw e
+                        } catch (e: Exception) {
+                            Log.e(TAG, "Could not build the loudness work order", e)
+                        }
+                    }
+            }
+
+            // Whenever the queue moves, only the next few tracks jump to the front.
+            launch {
+                MediaPlaybackManager.songPositionFlow.collect {
+                    workOrder.prioritize(if (isEnabled()) upcomingQueue().filter { needsMeasuring(it) } else emptyList())
+                }
+            }
+
+            repeat(MAX_WORKERS) { worker ->
+                launch { runWorker(worker) }
+            }
+        }
+    }
+
+    override fun onSharedPreferenceChanged(sharedPreferences: SharedPreferences?, key: String?) {
+        when (key) {
+            EqualizerPreferences.AUTO_REPLAY_GAIN_ENABLED,
+            EqualizerPreferences.LOUDNESS_ANALYSIS_ENABLED,
+            EqualizerPreferences.LOUDNESS_ANALYSIS_WRITE_TAGS -> {
+                settingsChanged.update { it + 1 }
+            }
+        }
+    }
+
+    private fun isEnabled(): Boolean {
+        return EqualizerPreferences.isAutoReplayGainEnabled() && EqualizerPreferences.isLoudnessAnalysisEnabled()
+    }
+
+    private suspend fun buildOrder(songs: List<Audio>) {
+        if (!isEnabled()) {
+            workOrder.prioritize(emptyList())
+            workOrder.replace(emptyList())
+            return
+        }
+
+        val library = songs.filter { it.hash != 0L && !it.hasReplayGainTag() }
+        val albums = library.groupBy { albumKey(it) }
+        this.albums = albums
+
+        // Albums a previous pass finished measuring but got interrupted before totalling up.
+        val withoutAlbumGain = dao.getHashesWithoutAlbumGain().toHashSet()
+        albums.values.forEach { members ->
+            if (members.any { it.hash in withoutAlbumGain }
+                    && members.all { it.hash in analyzedHashes || it.hash in failedHashes }) {
+                updateAlbum(members)
+            }
+        }
+
+        if (EqualizerPreferences.isLoudnessAnalysisWriteTagsEnabled()) {
+            writePendingTags(library)
+        }
+
+        // Album by album, so album gains become available as early as possible.
+        workOrder.replace(albums.values.flatten().filter { needsMeasuring(it) })
+
+        if (workOrder.size == 0) {
+            Log.d(TAG, "Every untagged song has been measured, nothing to do")
+        } else {
+            Log.d(TAG, "Measuring loudness of ${workOrder.size} songs")
+        }
+    }
+
+    private suspend fun runWorker(worker: Int) {
+        while (true) {
+            workOrder.awaitWork()
+            workGate.awaitIdleEnough(worker)
+            // Taken only now, so a song that became urgent while we waited comes first.
+            val audio = workOrder.poll() ?: continue
+            if (!isEnabled() || !needsMeasuring(audio)) continue
+
+            try {
+                if (measure(audio)) {
+                    val members = albums[albumKey(audio)] ?: listOf(audio)
+                    if (members.all { it.hash in analyzedHashes || it.hash in failedHashes }) {
+                        updateAlbum(members)
+                        if (EqualizerPreferences.isLoudnessAnalysisWriteTagsEnabled()) {
+                            writePendingTags(members)
+                        }
+                    }
+                }
+            } catch (e: CancellationException) {
+                throw e
+            } catch (e: Exception) {
+                Log.e(TAG, "Could not finish the album of ${audio.title}", e)
+            }
+        }
+    }
+
+    private fun needsMeasuring(audio: Audio): Boolean {
+        val hash = audio.hash
+        return hash != 0L && !audio.hasReplayGainTag() && hash !in analyzedHashes && hash !in failedHashes
+    }
+
+    /** Decodes and measures one song and stores the track values. Returns false on failure. */
+    private suspend fun measure(audio: Audio): Boolean {
+        try {
+            val job = currentCoroutineContext().job
+            // A CUE track is measured over its own stretch of the album file.
+            val result = LoudnessAnalyzer.analyze(context, audio.streamUri.toUri(), { !job.isActive },
+                    audio.cueStart * 1000L, audio.cueEnd * 1000L)
+            if (result == null) {
+                if (job.isActive) failedHashes.add(audio.hash)
+                return false
+            }
+
+            dao.insert(LoudnessAnalysis(
+                    audioHash = audio.hash,
+                    integratedLufs = result.integratedLufs.takeIf { it.isFinite() },
+                    trackGain = LoudnessAnalyzer.gainFor(result.integratedLufs),
+                    trackPeak = result.truePeak,
+                    histogram = LoudnessAnalysis.packHistogram(result.histogram)))
+            analyzedHashes.add(audio.hash)
+
+            Log.d(TAG, "Measured ${audio.title}: ${result.integratedLufs} LUFS")
+            return true
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            Log.w(TAG, "Could not measure loudness of ${audio.title}", e)
+            failedHashes.add(audio.hash)
+            return false
+        }
+    }
+
+    /**
+     * Sums the histograms of every measured song in [members], integrates the total, and
+     * stores the resulting album gain and peak on each of them. Rows whose album values
+     * change are marked as not yet written to tags.
+     */
+    private suspend fun updateAlbum(members: List<Audio>) = albumLock.withLock {
+        val rows = dao.getByHashes(members.map { it.hash })
+        if (rows.isEmpty()) return@withLock
+
+        val histogram = IntArray(LoudnessMeter.HISTOGRAM_BINS)
+        rows.forEach { LoudnessAnalysis.unpackHistogramInto(it.histogram, histogram) }
+
+        val albumGain = LoudnessAnalyzer.gainFor(LoudnessMeter.integrate(histogram))
+        val albumPeak = rows.maxOf { it.trackPeak }
+
+        val changed = rows.filter { it.albumGain != albumGain || it.albumPeak != albumPeak }
+        if (changed.isNotEmpty()) {
+            dao.update(changed.map { it.copy(albumGain = albumGain, albumPeak = albumPeak, writtenToTags = false) })
+        }
+    }
+
+    /**
+     * Writes the measured values of [songs] into their files, for every song whose album
+     * gain is known and hasn't been written yet. Only the four REPLAYGAIN_* fields are
+     * passed, so [MetadataWriter] leaves every other tag as it was.
+     *
+     * CUE tracks are skipped: their album file has a single set of tags for all of them.
+     */
+    private suspend fun writePendingTags(songs: List<Audio>) {
+        val byHash = songs.associateBy { it.hash }
+        dao.getUnwritten().forEach { row ->
+            val audio = byHash[row.audioHash]?.takeUnless { it.isCueTrack } ?: return@forEach
+            val albumGain = row.albumGain ?: return@forEach
+            val albumPeak = row.albumPeak ?: return@forEach
+
+            val fields = MetadataWriter.Fields(
+                    title = null,
+                    artist = null,
+                    album = null,
+                    albumArtist = null,
+                    year = null,
+                    trackNumber = null,
+                    numTracks = null,
+                    discNumber = null,
+                    genre = null,
+                    composer = null,
+                    writer = null,
+                    compilation = null,
+                    comment = null,
+                    lyrics = null,
+                    replayGainTrackGain = LoudnessAnalyzer.formatGain(row.trackGain),
+                    replayGainTrackPeak = LoudnessAnalyzer.formatPeak(row.trackPeak),
+                    replayGainAlbumGain = LoudnessAnalyzer.formatGain(albumGain),
+                    replayGainAlbumPeak = LoudnessAnalyzer.formatPeak(albumPeak))
+
+            if (MetadataWriter.write(context, audio.uri.toUri(), fields)) {
+                dao.markWritten(row.audioHash)
+            }
+        }
+    }
+
+    /** The next [UPCOMING_TRACKS] songs after the one playing now, wrapping around the queue. */
+    private fun upcomingQueue(): List<Audio> {
+        val songs = MediaPlaybackManager.getSongs()
+        if (songs.isEmpty()) return emptyList()
+
+        val position = MediaPlaybackManager.getCurrentSongPosition()
+        return (1..minOf(UPCOMING_TRACKS, songs.size - 1)).map { offset ->
+            songs[(position + offset).mod(songs.size)]
+        }
+    }
+
+    private fun Audio.hasReplayGainTag(): Boolean {
+        return replayGainTrackGain != null || replayGainAlbumGain != null
+    }
+
+    /**
+     * Songs with the same album and album artist make up one album; songs without an
+     * album are an album of their own.
+     */
+    private fun albumKey(audio: Audio): String {
+        val album = audio.album?.trim()?.lowercase()
+        if (album.isNullOrEmpty()) return "#${audio.hash}"
+        val artist = (audio.albumArtist ?: audio.artist)?.trim()?.lowercase() ?: ""
+        return "$album|$artist"
+    }
+
+    companion object {
+        /** Number of upcoming queue tracks that go to the very front of the line. */
+        private const val UPCOMING_TRACKS = 10
+
+        /** Parallel decodes while nothing is playing. */
+        private const val MAX_WORKERS = 2
+
+        /** How long after launch the workers start, so the app can settle first. */
+        private const val START_DELAY_MS = 10_000L
+    }
+}
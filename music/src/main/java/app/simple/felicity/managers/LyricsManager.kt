@@ -5,11 +5,10 @@ import android.os.Looper
 import android.util.Log
 import app.simple.felicity.decorations.lrc.model.LrcData
 import app.simple.felicity.decorations.lrc.model.LrcEntry
-import app.simple.felicity.decorations.lrc.parser.ILyricsParser
 import app.simple.felicity.decorations.lrc.parser.LrcParser
 import app.simple.felicity.decorations.lrc.parser.LyricsParseException
+import app.simple.felicity.decorations.lrc.parser.LyricsParser
 import app.simple.felicity.decorations.lrc.parser.TxtParser
-import app.simple.felicity.decorations.lrc.parser.WordLrcParser
 import app.simple.felicity.engine.managers.MediaPlaybackManager
 import app.simple.felicity.managers.LyricsManager.Companion.SYNC_SAVE_DEBOUNCE_MS
 import app.simple.felicity.preferences.LyricsPreferences
@@ -120,16 +119,6 @@ class LyricsManager @Inject constructor(
         }
     }
 
-    /**
-     * Picks the best parser for the given raw lyrics string.
-     * Word-sync LRC wins first, then standard LRC, then plain text as a last resort.
-     */
-    private fun selectParser(content: String): ILyricsParser = when {
-        WordLrcParser().canParse(content) -> WordLrcParser()
-        LrcParser().canParse(content) -> LrcParser()
-        else -> TxtParser()
-    }
-
     /**
      * Loads lyrics for the currently playing song, or skips if they are already loaded.
      *
@@ -201,7 +190,7 @@ class LyricsManager @Inject constructor(
     private suspend fun doLoad(song: Audio, songPath: String) {
         // Step 1: Try the .lrc sidecar (fastest — local disk).
         val lrcContent = withContext(Dispatchers.IO) {
-            lrcRepository.loadLrcFromFile(song.uri).getOrNull()
+            lrcRepository.loadLrc(song).getOrNull()
         }
 
         if (!isStillRelevant(songPath)) return
@@ -209,14 +198,14 @@ class LyricsManager @Inject constructor(
         if (lrcContent != null) {
             Log.d(TAG, "LRC sidecar found for '${song.title}'.")
             parseThenEmit(lrcContent, songPath, fallback = LrcData()) { content ->
-                selectParser(content).parse(content)
+                LyricsParser().parse(content)
             }
             return
         }
 
         // Step 2: Try the .txt sidecar (plain-text lyrics, also local).
         val txtContent = withContext(Dispatchers.IO) {
-            lrcRepository.loadTxtFromFile(song.uri).getOrNull()
+            lrcRepository.loadTxt(song).getOrNull()
         }
 
         if (!isStillRelevant(songPath)) return
@@ -0,0 +1,199 @@
+package app.simple.felicity.managers
+
+import android.content.Context
+import android.util.Log
+import app.simple.felicity.engine.managers.MediaPlaybackManager
+import app.simple.felicity.repository.database.dao.WaveformDao
+import app.simple.felicity.repository.database.instances.AudioDatabase
+import app.simple.felicity.repository.models.Audio
+import app.simple.felicity.repository.models.WaveformData
+import app.simple.felicity.repository.repositories.AudioRepository
+import app.simple.felicity.repository.repositories.LibrarySnapshotRepository
+import app.simple.felicity.repository.repositories.SongStatRepository
+import app.simple.felicity.utils.WaveformExtractor
+import com.linc.amplituda.Amplituda
+import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.filter
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.launch
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicBoolean
+import javax.inject.Inject
+import javax.inject.Singleton
+import kotlin.coroutines.cancellation.CancellationException
+
+/**
+ * Quietly decodes waveforms for songs that haven't been played yet, so by the time the
+ * user gets to them the player can read the bars straight from {@code waveform_data}
+ * instead of showing ghost data while a full decode runs.
+ *
+ * Songs are worked through in the order the user is most likely to need them: the next
+ * few tracks in the current queue first, then favorites, then the most played songs, and
+ * finally the rest of the library. That order is built once from the shared
+ * [LibrarySnapshotRepository] snapshot and only rebuilt when the library really changes;
+ * when the queue moves on, just the upcoming tracks are moved to the front of it through
+ * [BackgroundWorkOrder], and the workers carry on without being restarted.
+ *
+ * The work is kept polite — at most [MAX_WORKERS] decodes run in parallel, and
+ * [BackgroundWorkGate] holds them back while something is playing or the device needs
+ * saving. Songs that fail to decode are remembered and not retried until the next launch.
+ *
+ * @author Hamza417
+ */
+@Singleton
+class WaveformPrecomputer @Inject constructor(
+        @param:ApplicationContext private val context: Context,
+        private val audioRepository: AudioRepository,
+        private val songStatRepository: SongStatRepository,
+        private val librarySnapshot: LibrarySnapshotRepository,
+        private val workGate: BackgroundWorkGate
+) {
+
+    private val TAG = "WaveformPrecomputer"
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+
+    private val started = AtomicBoolean(false)
+
+    /** What is left to decode; built when the library changes, reordered when the queue moves. */
+    private val workOrder = BackgroundWorkOrder()
+
+    /** Hashes that already have a stored waveform, read once and kept up to date as we go. */
+    private val cachedHashes: MutableSet<Long> = ConcurrentHashMap.newKeySet()
+
+    /** Hashes that failed to decode this session, so a broken file isn't tried again. */
+    private val failedHashes: MutableSet<Long> = ConcurrentHashMap.newKeySet()
+
+    private val dao: WaveformDao
+        get() = AudioDatabase.getInstance(context).waveformDao()
+
+    /**
+     * Starts watching the library and playback and starts the workers. Safe to call more
+     * than once; only the first call does anything.
+     */
+    fun start() {
+        if (!started.compareAndSet(false, true)) return
+
+        scope.launch {
+            // Let the app settle first — the player decodes the current track itself.
+            delay(START_DELAY_MS)
+            cachedHashes.addAll(dao.getCachedHashes())
+
+            // The full order is only rebuilt when the library really changes; the shared
+            // snapshot doesn't emit for writes that left the songs as they were.
+            launch {
+                librarySnapshot.snapshot
+                    .filter { it.isLoaded }
+                    .collect { snapshot ->
+                        try {
+                            buildOrder(snapshot.songs)
+                        } catch (e: CancellationException) {
+                            throw e
+                        } catch (e: Exception) {
+                            Log.e(TAG, "Could not build the waveform work order", e)
+                        }
+                    }
+            }
+
+            // Whenever the queue moves, only the next few tracks jump to the front.
+            launch {
+                MediaPlaybackManager.songPositionFlow.collect {
+                    val currentHash = MediaPlaybackManager.getCurrentSong()?.hash
+                    workOrder.prioritize(upcomingQueue().filter { it.hash != currentHash && needsWaveform(it) })
+                }
+            }
+
+            repeat(MAX_WORKERS) { worker ->
+                launch { runWorker(worker) }
+            }
+        }
+    }
+
+    private suspend fun buildOrder(library: List<Audio>) {
+        val songs = ArrayList<Audio>()
+        songs.addAll(audioRepository.getFavoriteAudio().first())
+        songs.addAll(songStatRepository.getMostPlayed().first())
+        songs.addAll(library)
+
+        workOrder.replace(songs.filter { needsWaveform(it) })
+
+        if (workOrder.size == 0) {
+            Log.d(TAG, "Every waveform is already cached, nothing to do")
+        } else {
+            Log.d(TAG, "Precomputing ${workOrder.size} waveforms")
+        }
+    }
+
+    private suspend fun runWorker(worker: Int) {
+        val amplituda = Amplituda(context)
+        try {
+            while (true) {
+                workOrder.awaitWork()
+                workGate.awaitIdleEnough(worker)
+                // Taken only now, so a song that became urgent while we waited comes first.
+                val audio = workOrder.poll() ?: continue
+                if (!needsWaveform(audio)) continue
+
+                // The player stores the waveform of every song it plays, so check again.
+                if (dao.hasWaveform(audio.hash)) {
+                    cachedHashes.add(audio.hash)
+                    continue
+                }
+
+                precompute(amplituda, audio)
+            }
+        } finally {
+            amplituda.release()
+        }
+    }
+
+    private suspend fun precompute(amplituda: Amplituda, audio: Audio) {
+        try {
+            // Skip the decoder's own file cache; it would end up holding the whole library.
+            val samples = WaveformExtractor.extract(context, amplituda, audio, reuseCache = false)
+            if (samples == null) {
+                failedHashes.add(audio.hash)
+                return
+            }
+
+            dao.insertWaveform(WaveformData.fromFloatArray(audio.hash, samples))
+            cachedHashes.add(audio.hash)
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            Log.w(TAG, "Could not precompute waveform for ${audio.title}", e)
+            failedHashes.add(audio.hash)
+        }
+    }
+
+    private fun needsWaveform(audio: Audio): Boolean {
+        val hash = audio.hash
+        return hash != 0L && hash !in cachedHashes && hash !in failedHashes
+    }
+
+    /** The next [UPCOMING_TRACKS] songs after the one playing now, wrapping around the queue. */
+    private fun upcomingQueue(): List<Audio> {
+        val songs = MediaPlaybackManager.getSongs()
+        if (songs.isEmpty()) return emptyList()
+
+        val position = MediaPlaybackManager.getCurrentSongPosition()
+        return (1..minOf(UPCOMING_TRACKS, songs.size - 1)).map { offset ->
+            songs[(position + offset).mod(songs.size)]
+        }
+    }
+
+    companion object {
+        /** Number of upcoming queue tracks that go to the very front of the line. */
+        private const val UPCOMING_TRACKS = 10
+
+        /** Parallel decodes while nothing is playing. */
+        private const val MAX_WORKERS = 2
+
+        /** How long after launch the workers start, so the app can settle first. */
+        private const val START_DELAY_MS = 5_000L
+    }
+}
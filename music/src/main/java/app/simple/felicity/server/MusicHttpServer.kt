@@ -4,6 +4,8 @@ import android.content.Context
 import android.content.res.Configuration
 import android.graphics.Bitmap
 import android.graphics.BitmapFactory
+import android.system.ErrnoException
+import android.system.Os
 import android.util.Log
 import androidx.core.graphics.scale
 import androidx.core.net.toUri
@@ -13,6 +15,8 @@ import app.simple.felicity.preferences.AppearancePreferences
 import app.simple.felicity.repository.covers.AudioCover
 import app.simple.felicity.repository.database.instances.AudioDatabase
 import app.simple.felicity.repository.models.Audio
+import app.simple.felicity.repository.models.LibrarySnapshot
+import app.simple.felicity.repository.repositories.LibrarySnapshotRepository
 import app.simple.felicity.repository.repositories.SongStatRepository
 import app.simple.felicity.theme.managers.ThemeManager
 import com.google.gson.GsonBuilder
@@ -20,6 +24,7 @@ import fi.iki.elonen.NanoHTTPD
 import kotlinx.coroutines.runBlocking
 import java.io.ByteArrayInputStream
 import java.io.ByteArrayOutputStream
+import java.io.FileDescriptor
 import java.io.IOException
 import java.io.InputStream
 
@@ -35,8 +40,8 @@ import java.io.InputStream
  * - `GET /app-icon`                    — Serves the round launcher icon as PNG.
  * - `GET /api/theme`                   — Current accent color + dark/light mode as JSON.
  * - `GET /api/songs`                   — JSON array of all available songs.
- * - `GET /api/songs/{id}/stream`       — Byte-range-aware audio streaming.
- * - `GET /api/songs/{id}/art`          — Album art for a song, as JPEG.
+ * - `GET /api/songs/{id}/stream`       — Byte-range-aware audio streaming with ETag/If-Range.
+ * - `GET /api/songs/{id}/art`          — Album art for a song, as JPEG, with conditional GET.
  * - `GET /api/albums`                  — JSON array of all albums.
  * - `GET /api/albums/songs?name=X`     — Songs in the named album.
  * - `GET /api/artists`                 — JSON array of all artists.
@@ -44,17 +49,21 @@ import java.io.InputStream
  * - `GET /api/genres`                  — JSON array of all genres.
  * - `GET /api/genres/songs?name=X`     — Songs in the named genre.
  * - `POST /api/songs/{id}/played`      — Records a play event in the app database.
+ * - `POST /api/songs/{id}/listened?ms=N` — Adds N ms the browser really played to the listening time.
  *
  * @param context             Application context for asset/resource access.
  * @param port                TCP port the server binds to.
  * @param songStatRepository  Repository used to persist web-initiated play events.
+ * @param librarySnapshot     Shared library snapshot every song, album, artist and genre
+ *                            route is answered from.
  *
  * @author Hamza417
  */
 class MusicHttpServer(
         private val context: Context,
         port: Int,
-        private val songStatRepository: SongStatRepository
+        private val songStatRepository: SongStatRepository,
+        private val librarySnapshot: LibrarySnapshotRepository
 ) : NanoHTTPD(port) {
 
     private val gson = GsonBuilder().create()
@@ -63,9 +72,6 @@ class MusicHttpServer(
         AudioDatabase.getInstance(context)
     }
 
-    /** ID → Audio map, rebuilt whenever the songs endpoint is queried. */
-    private var audioCache: Map<Long, Audio> = emptyMap()
-
     /** Cached round launcher icon PNG bytes, generated once on first request. */
     private var iconBytes: ByteArray? = null
 
@@ -106,7 +112,7 @@ class MusicHttpServer(
             }
             ART_REGEX.matches(uri) -> {
                 val id = ART_REGEX.find(uri)!!.groupValues[1].toLong()
-                serveAlbumArt(id)
+                serveAlbumArt(id, session)
             }
             STATIC_REGEX.matches(uri) -> {
                 val filename = uri.removePrefix("/")
@@ -127,7 +133,16 @@ class MusicHttpServer(
             val id = PLAYED_REGEX.find(uri)!!.groupValues[1].toLongOrNull()
                 ?: return badRequest("Invalid song ID")
             val audio = findAudio(id) ?: return notFound("Song not found")
-            runBlocking { songStatRepository.recordPlay(audio.hash) }
+            songStatRepository.recordPlay(audio.hash)
+            newFixedLengthResponse(Response.Status.OK, MIME_PLAINTEXT, "OK")
+        } else if (LISTENED_REGEX.matches(uri)) {
+            val id = LISTENED_REGEX.find(uri)!!.groupValues[1].toLongOrNull()
+                ?: return badRequest("Invalid song ID")
+            val listened = session.parms["ms"]?.toLongOrNull()
+                ?: return badRequest("Invalid listening time")
+            val audio = findAudio(id) ?: return notFound("Song not found")
+            // The browser only reports time it really played, but never more than the song is long.
+            songStatRepository.recordListened(audio.hash, listened.coerceIn(0L, audio.duration))
             newFixedLengthResponse(Response.Status.OK, MIME_PLAINTEXT, "OK")
         } else {
             newFixedLengthResponse(
@@ -151,13 +166,17 @@ class MusicHttpServer(
         val id = DELETE_REGEX.find(uri)!!.groupValues[1].toLongOrNull()
             ?: return badRequest("Invalid song ID")
         val audio = findAudio(id) ?: return notFound("Song not found")
+        // The album file behind a CUE track holds every other track of the sheet too.
+        if (audio.isCueTrack) return badRequest("Tracks of a CUE sheet can't be deleted one by one")
         val audioUri = audio.uri.toUri()
         return try {
             // Ask the system to delete the file through its own content provider.
             // This works for both MediaStore and SAF URIs, so no raw File tricks needed.
             val deleted = context.contentResolver.delete(audioUri, null, null)
             if (deleted > 0) {
-                audioCache = audioCache - id
+                // Hide the row right away; the next scan cleans it up for good. The shared
+                // snapshot picks this up on its own, for the app as well as for the browser.
+                runBlocking { audioDatabase.audioDao()?.setAvailableBatch(listOf(id), false) }
                 Log.i(TAG, "Deleted audio with URI: ${audio.uri}")
                 newFixedLengthResponse(Response.Status.OK, MIME_PLAINTEXT, "Deleted")
             } else {
@@ -206,9 +225,7 @@ class MusicHttpServer(
     }
 
     private fun serveSongList(): Response {
-        val songs = audioDatabase.audioDao()?.getAllAudioList() ?: emptyList()
-        audioCache = songs.associateBy { it.id }
-        return jsonOk(songs.map { it.toMap() })
+        return jsonOk(cachedSongs().map { it.toMap() })
     }
 
     private fun serveAlbums(): Response {
@@ -281,65 +298,133 @@ class MusicHttpServer(
      * so the browser `<audio>` element can seek to any position without downloading
      * the whole track first. Think of it as a responsible librarian — you can ask for
      * just the chapter you want instead of borrowing the whole book.
+     *
+     * Ranges are served with positional reads on the file descriptor (see
+     * [RangedFileStream]), so a seek near the end of a huge file costs the same as one
+     * near the start. Several ranges in one request come back as `multipart/byteranges`.
+     * The ETag is made of the song's hash, the file's size and its last-modified time, which
+     * lets the browser revalidate with `If-None-Match` and resume safely with `If-Range`.
+     * The hash alone isn't enough: it is built from the tags and the size, not from the
+     * audio bytes, so a re-encode that kept both would otherwise look unchanged.
      */
     private fun streamAudio(id: Long, session: IHTTPSession): Response {
         val audio = findAudio(id) ?: return notFound("Song not found")
 
         // Parse the stored SAF URI string back into an Android Uri so we can ask
-        // the ContentResolver to open it for us — no raw file path needed.
-        val audioUri = audio.uri.toUri()
+        // the ContentResolver to open it for us — no raw file path needed. A CUE
+        // track has no file of its own, so the browser gets the whole album file.
+        val audioUri = audio.streamUri.toUri()
         val mimeType = audio.mimeType?.takeIf { it.isNotBlank() } ?: "audio/*"
-        val range = session.headers["range"]
 
-        // Ask the system how large the file is without fully opening it.
-        // openFileDescriptor gives us a handle we can query for the size.
-        val fileLength = try {
-            context.contentResolver.openFileDescriptor(audioUri, "r")?.use { it.statSize } ?: -1L
+        val descriptor = try {
+            context.contentResolver.openFileDescriptor(audioUri, "r")
         } catch (e: Exception) {
-            Log.w(TAG, "Could not stat file descriptor for URI: ${audio.uri}", e)
-            -1L
+            Log.w(TAG, "Could not open file descriptor for URI: ${audio.streamUri}", e)
+            null
+        } ?: return notFound("Could not open audio stream")
+
+        val fileLength = descriptor.statSize
+        if (fileLength <= 0L) {
+            // Not a seekable file (some providers hand out pipes), so ranges are off the
+            // table — just send everything from the start.
+            descriptor.close()
+            return streamWhole(audio, mimeType)
         }
 
-        return if (range != null && range.startsWith("bytes=")) {
-            val parts = range.removePrefix("bytes=").split("-")
-            val start = parts[0].toLongOrNull() ?: 0L
-            val end = if (fileLength > 0 && parts.size > 1 && parts[1].isNotBlank()) {
-                parts[1].toLong()
-            } else if (fileLength > 0) {
-                fileLength - 1
-            } else {
-                // File size unknown — just skip and stream the remainder blindly.
-                Long.MAX_VALUE / 2
-            }
-            val length = end - start + 1
+        val lastModified = lastModifiedOf(descriptor.fileDescriptor) ?: audio.dateModified
+        val etag = if (audio.hash != 0L) {
+            "\"${java.lang.Long.toHexString(audio.hash)}-$fileLength-${java.lang.Long.toHexString(lastModified)}\""
+        } else {
+            null
+        }
 
-            // Open a fresh stream and skip ahead to where the browser wants to start.
-            val stream: InputStream = context.contentResolver.openInputStream(audioUri)
-                ?: return notFound("Could not open audio stream")
-            stream.skip(start)
+        if (etag != null && matchesAny(session.headers["if-none-match"], etag)) {
+            descriptor.close()
+            return notModified(etag)
+        }
 
-            newFixedLengthResponse(Response.Status.PARTIAL_CONTENT, mimeType, stream, length).apply {
-                addHeader("Content-Range", "bytes $start-$end/$fileLength")
-                addHeader("Accept-Ranges", "bytes")
-                if (fileLength > 0) addHeader("Content-Length", length.toString())
+        // If-Range: only honor the range when the client's copy is still the same file,
+        // otherwise it gets the whole new one.
+        val ifRange = session.headers["if-range"]
+        val rangeHeader = session.headers["range"]?.takeIf { ifRange == null || ifRange.trim() == etag }
+        val ranges = rangeHeader?.let { RangedFileStream.parseRanges(it, fileLength) }
+
+        val response = try {
+            when {
+                ranges == null -> {
+                    val stream = RangedFileStream.single(descriptor, RangedFileStream.ByteRange(0L, fileLength - 1))
+                    newFixedLengthResponse(Response.Status.OK, mimeType, stream, stream.contentLength)
+                }
+                ranges.isEmpty() -> {
+                    descriptor.close()
+                    newFixedLengthResponse(Response.Status.RANGE_NOT_SATISFIABLE, MIME_PLAINTEXT, "Range not satisfiable").apply {
+                        addHeader("Content-Range", "bytes */$fileLength")
+                    }
+                }
+                ranges.size == 1 -> {
+                    val range = ranges.first()
+                    val stream = RangedFileStream.single(descriptor, range)
+                    newFixedLengthResponse(Response.Status.PARTIAL_CONTENT, mimeType, stream, stream.contentLength).apply {
+                        addHeader("Content-Range", "bytes ${range.start}-${range.end}/$fileLength")
+                    }
+                }
+                else -> {
+                    val boundary = "felicity-${java.lang.Long.toHexString(System.nanoTime())}"
+                    val stream = RangedFileStream.multipart(descriptor, ranges, fileLength, mimeType, boundary)
+                    newFixedLengthResponse(
+                            Response.Status.PARTIAL_CONTENT,
+                            "multipart/byteranges; boundary=$boundary",
+                            stream, stream.contentLength)
+                }
             }
-        } else {
-            val stream: InputStream = context.contentResolver.openInputStream(audioUri)
-                ?: return notFound("Could not open audio stream")
+        } catch (e: Exception) {
+            descriptor.close()
+            throw e
+        }
 
-            newFixedLengthResponse(Response.Status.OK, mimeType, stream, fileLength).apply {
-                addHeader("Accept-Ranges", "bytes")
-                if (fileLength > 0) addHeader("Content-Length", fileLength.toString())
-            }
+        return response.apply {
+            addHeader("Accept-Ranges", "bytes")
+            if (etag != null) addHeader("ETag", etag)
+        }
+    }
+
+    /**
+     * Fallback for files whose size the provider won't tell us: a plain sequential stream
+     * with no range support.
+     */
+    private fun streamWhole(audio: Audio, mimeType: String): Response {
+        val stream: InputStream = context.contentResolver.openInputStream(audio.streamUri.toUri())
+            ?: return notFound("Could not open audio stream")
+
+        return newChunkedResponse(Response.Status.OK, mimeType, stream).apply {
+            addHeader("Accept-Ranges", "none")
         }
     }
 
     /**
      * Resolves and serves album art for the requested song as a JPEG image.
      * Returns 404 when no artwork can be found.
+     *
+     * The art is tagged with an ETag made of the song's hash, the audio file's last-modified
+     * time (embedded artwork lives in there) and that of the cover image next to it, if
+     * there is one. A browser that already has the art gets a 304 back without us loading
+     * or encoding anything, and a retagged file or a replaced folder.jpg still shows up.
      */
-    private fun serveAlbumArt(id: Long): Response {
+    private fun serveAlbumArt(id: Long, session: IHTTPSession): Response {
         val audio = findAudio(id) ?: return notFound("Song not found")
+
+        val etag = if (audio.hash != 0L) {
+            val audioModified = fileLastModified(audio)
+            val coverModified = AudioCover.externalArtworkLastModified(context, audio)
+            "\"art-${java.lang.Long.toHexString(audio.hash)}-${java.lang.Long.toHexString(audioModified)}" +
+                    "-${java.lang.Long.toHexString(coverModified)}\""
+        } else {
+            null
+        }
+        if (etag != null && matchesAny(session.headers["if-none-match"], etag)) {
+            return notModified(etag)
+        }
+
         val bitmap = try {
             AudioCover.load(context, audio)
         } catch (e: Exception) {
@@ -353,12 +438,59 @@ class MusicHttpServer(
             newFixedLengthResponse(
                     Response.Status.OK, "image/jpeg",
                     ByteArrayInputStream(bytes), bytes.size.toLong()
-            )
+            ).apply {
+                if (etag != null) {
+                    addHeader("ETag", etag)
+                    // Let the browser keep it, but have it check back so a changed cover shows up.
+                    addHeader("Cache-Control", "no-cache")
+                }
+            }
         } else {
             notFound("No artwork available")
         }
     }
 
+    /** Last-modified time of an open file in milliseconds, or null when the provider won't say. */
+    private fun lastModifiedOf(fd: FileDescriptor): Long? {
+        return try {
+            Os.fstat(fd).st_mtime * 1000L
+        } catch (e: ErrnoException) {
+            null
+        }
+    }
+
+    /**
+     * Last-modified time of the song's file in milliseconds, falling back to the one recorded
+     * at scan time when the file can't be opened.
+     */
+    private fun fileLastModified(audio: Audio): Long {
+        return try {
+            context.contentResolver.openFileDescriptor(audio.streamUri.toUri(), "r")?.use {
+                lastModifiedOf(it.fileDescriptor)
+            }
+        } catch (e: Exception) {
+            null
+        } ?: audio.dateModified
+    }
+
+    /**
+     * Weak comparison of an `If-None-Match` header against [etag], as RFC 7232 asks for:
+     * any listed tag (with or without the `W/` prefix) or `*` counts as a match.
+     */
+    private fun matchesAny(header: String?, etag: String): Boolean {
+        if (header.isNullOrBlank()) return false
+        return header.split(',').any { candidate ->
+            val tag = candidate.trim().removePrefix("W/")
+            tag == "*" || tag == etag
+        }
+    }
+
+    private fun notModified(etag: String): Response {
+        return newFixedLengthResponse(Response.Status.NOT_MODIFIED, MIME_PLAINTEXT, "").apply {
+            addHeader("ETag", etag)
+        }
+    }
+
     private fun jsonOk(data: Any): Response {
         val json = gson.toJson(data)
         return newFixedLengthResponse(Response.Status.OK, MIME_JSON, json).apply {
@@ -396,22 +528,20 @@ class MusicHttpServer(
     }
 
     /**
-     * Returns the current audio cache as a list, fetching from the database if empty.
+     * The shared library snapshot. Free when the app is open and already watching the
+     * library; otherwise this connection thread waits for one query, and the snapshot then
+     * stays live for a few seconds to cover the burst of requests a page load makes.
      */
+    private fun snapshot(): LibrarySnapshot {
+        return librarySnapshot.peek() ?: runBlocking { librarySnapshot.awaitLoaded() }
+    }
+
     private fun cachedSongs(): List<Audio> {
-        if (audioCache.isEmpty()) {
-            audioCache = (audioDatabase.audioDao()?.getAllAudioList() ?: emptyList())
-                .associateBy { it.id }
-        }
-        return audioCache.values.toList()
+        return snapshot().songs
     }
 
     private fun findAudio(id: Long): Audio? {
-        if (audioCache.isEmpty()) {
-            audioCache = (audioDatabase.audioDao()?.getAllAudioList() ?: emptyList())
-                .associateBy { it.id }
-        }
-        return audioCache[id]
+        return snapshot()[id]
     }
 
     /**
@@ -456,6 +586,7 @@ class MusicHttpServer(
         private val STREAM_REGEX = Regex("/api/songs/(\\d+)/stream")
         private val ART_REGEX = Regex("/api/songs/(\\d+)/art")
         private val PLAYED_REGEX = Regex("/api/songs/(\\d+)/played")
+        private val LISTENED_REGEX = Regex("/api/songs/(\\d+)/listened")
         private val DELETE_REGEX = Regex("/api/songs/(\\d+)")
 
         /** Matches any top-level CSS or JS file request, e.g. `/theme.css` or `/app.js`. */
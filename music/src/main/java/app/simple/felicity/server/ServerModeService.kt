@@ -13,6 +13,7 @@ import androidx.core.app.NotificationCompat
 import androidx.core.net.toUri
 import app.simple.felicity.R
 import app.simple.felicity.preferences.ServerPreferences
+import app.simple.felicity.repository.repositories.LibrarySnapshotRepository
 import app.simple.felicity.repository.repositories.SongStatRepository
 import app.simple.felicity.server.ServerModeService.Companion.start
 import app.simple.felicity.server.ServerModeService.Companion.stop
@@ -47,6 +48,9 @@ class ServerModeService : Service() {
     @Inject
     lateinit var songStatRepository: SongStatRepository
 
+    @Inject
+    lateinit var librarySnapshot: LibrarySnapshotRepository
+
     private var httpServer: MusicHttpServer? = null
 
     override fun onCreate() {
@@ -73,7 +77,7 @@ class ServerModeService : Service() {
         if (httpServer?.isAlive == true) return
 
         val port = ServerPreferences.getServerPort()
-        val server = MusicHttpServer(applicationContext, port, songStatRepository)
+        val server = MusicHttpServer(applicationContext, port, songStatRepository, librarySnapshot)
 
         try {
             server.startServer()
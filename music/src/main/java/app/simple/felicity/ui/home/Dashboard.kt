@@ -42,6 +42,7 @@ import app.simple.felicity.ui.pages.ArtistPage
 import app.simple.felicity.ui.panels.PlayingQueue
 import app.simple.felicity.viewmodels.panels.DashboardViewModel
 import app.simple.felicity.viewmodels.panels.DashboardViewModel.LibraryStats
+import app.simple.felicity.viewmodels.panels.DashboardViewModel.ListeningStats
 import app.simple.felicity.viewmodels.panels.DashboardViewModel.RecommendedSpanConfig
 import app.simple.felicity.viewmodels.panels.SimpleHomeViewModel.Companion.Panel
 import com.google.android.flexbox.AlignItems
@@ -51,14 +52,16 @@ import com.google.android.flexbox.JustifyContent
 import dagger.hilt.android.AndroidEntryPoint
 import kotlinx.coroutines.launch
 import java.text.NumberFormat
+import java.util.concurrent.TimeUnit
 
 /**
  * Dashboard home screen fragment.
  *
  * Displays a scrollable dashboard composed of:
  *  - A header with the app name, search, Wi-Fi server, and settings buttons.
- *  - A chip strip showing library stats (track count + total hours) and a server-active
- *    indicator that only appears while the Wi-Fi server is running.
+ *  - A chip strip showing library stats (track count + total hours), plays and listening
+ *    time of the last seven days once there are any, and a server-active indicator that
+ *    only appears while the Wi-Fi server is running.
  *  - A spanned art grid of recommended songs loaded once per app session. The user can
  *    request a new random selection at any time via the shuffle button next to the section title.
  *    Portrait uses a 3-column spanned layout; landscape uses a flat 5-column grid.
@@ -309,6 +312,11 @@ class Dashboard : BaseHomeFragment() {
                         updateLibraryStats(stats)
                     }
                 }
+                launch {
+                    dashboardViewModel.listeningStats.collect { stats ->
+                        updateListeningStats(stats)
+                    }
+                }
                 launch {
                     dashboardViewModel.topArtists.collect { artists ->
                         updateTopArtists(artists)
@@ -339,6 +347,28 @@ class Dashboard : BaseHomeFragment() {
         )
     }
 
+    /**
+     * Updates the listening chip with a "42 Plays • 3h 20m in 7 Days" string, or hides it
+     * while nothing has been played in that window.
+     *
+     * @param stats The latest [ListeningStats] from the ViewModel, or null if not yet loaded.
+     */
+    private fun updateListeningStats(stats: ListeningStats?) {
+        if (stats == null || stats.plays == 0) {
+            binding.listeningStats.gone()
+            return
+        }
+
+        val totalMinutes = TimeUnit.MILLISECONDS.toMinutes(stats.listenedMs)
+        binding.listeningStats.text = getString(
+                R.string.listening_stats,
+                NumberFormat.getNumberInstance().format(stats.plays),
+                NumberFormat.getNumberInstance().format(totalMinutes / 60),
+                (totalMinutes % 60).toString()
+        )
+        binding.listeningStats.visible(true)
+    }
+
     private fun updateRecentlyPlayed(songs: List<Audio>) {
         if (songs.isEmpty() || !UserInterfacePreferences.isPanelVisible(UserInterfacePreferences.PANEL_VISIBLE_RECENTLY_PLAYED)) {
             binding.recentlyPlayedSection.gone()
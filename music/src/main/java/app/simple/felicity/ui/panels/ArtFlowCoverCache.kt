@@ -47,9 +47,11 @@ class ArtFlowCoverCache(
         override fun sizeOf(key: Int, bitmap: Bitmap): Int = bitmap.byteCount
 
         override fun entryRemoved(evicted: Boolean, key: Int, oldValue: Bitmap, newValue: Bitmap?) {
+            // No recycle() here: when a cover didn't need scaling, the bitmap is the one
+            // shared by the cover loader's artwork cache, and recycling it would break every
+            // other view showing the same album. Dropping the reference is enough.
             if (evicted && oldValue != newValue) {
-                Log.d(TAG, "Evicted and recycling bitmap for index $key from cache")
-                oldValue.recycle()
+                Log.d(TAG, "Evicted bitmap for index $key from cache")
             }
         }
     }
@@ -176,8 +178,7 @@ class ArtFlowCoverCache(
                             bitmap == null -> { /* nothing to cache */
                             }
                             !isActive || abs(index - currentCenterIndex) > currentRadius -> {
-                                // Became irrelevant while the I/O was running; recycle to avoid a leak.
-                                bitmap.recycle()
+                                // Became irrelevant while the I/O was running; just let it go.
                             }
                             else -> {
                                 memoryCache.put(index, bitmap)
@@ -237,7 +238,7 @@ class ArtFlowCoverCache(
         if (index !in audioList.indices) return null
         return try {
             val audio = audioList[index]
-            val bitmap = AudioCover.load(context, audio) ?: return null
+            val bitmap = AudioCover.load(context, audio, maxDimension) ?: return null
 
             if (maxDimension > 0) {
                 val w = bitmap.width
@@ -245,9 +246,7 @@ class ArtFlowCoverCache(
                 val maxDim = kotlin.math.max(w, h)
                 if (maxDim > maxDimension) {
                     val scaleFactor = maxDimension.toFloat() / maxDim
-                    val scaled = bitmap.scale((w * scaleFactor).toInt(), (h * scaleFactor).toInt(), true)
-                    if (bitmap != scaled) bitmap.recycle()
-                    return scaled
+                    return bitmap.scale((w * scaleFactor).toInt(), (h * scaleFactor).toInt(), true)
                 }
             }
 
@@ -259,7 +258,7 @@ class ArtFlowCoverCache(
     }
 
     /**
-     * Removes and recycles cache entries whose index distance from [centerIndex]
+     * Removes cache entries whose index distance from [centerIndex]
      * exceeds [keepRadius].
      *
      * @param centerIndex Reference center position.
@@ -267,10 +266,9 @@ class ArtFlowCoverCache(
      */
     private fun cleanupCache(centerIndex: Int, keepRadius: Int) {
         val snapshot = memoryCache.snapshot()
-        for ((index, bitmap) in snapshot) {
+        for (index in snapshot.keys) {
             if (abs(index - centerIndex) > keepRadius) {
                 memoryCache.remove(index)
-                bitmap.recycle()
             }
         }
     }
@@ -7,8 +7,9 @@ import android.view.View
 import android.view.ViewGroup
 import android.widget.ImageView
 import androidx.fragment.app.viewModels
+import androidx.lifecycle.lifecycleScope
 import app.simple.felicity.R
-import app.simple.felicity.adapters.ui.lists.AdapterFavorites
+import app.simple.felicity.adapters.ui.lists.AdapterPagedSongs
 import app.simple.felicity.callbacks.GeneralAdapterCallbacks
 import app.simple.felicity.constants.CommonPreferencesConstants
 import app.simple.felicity.databinding.FragmentFavoritesBinding
@@ -23,10 +24,13 @@ import app.simple.felicity.dialogs.favorites.FavoritesSort.Companion.showFavorit
 import app.simple.felicity.extensions.fragments.BasePanelFragment
 import app.simple.felicity.preferences.FavoritesPreferences
 import app.simple.felicity.repository.models.Audio
+import app.simple.felicity.repository.models.AudioListRow
+import app.simple.felicity.repository.models.AudioListSummary
 import app.simple.felicity.repository.sort.FavoritesSort.setFavoritesSort
 import app.simple.felicity.shared.utils.TimeUtils.toDynamicTimeString
 import app.simple.felicity.viewmodels.panels.FavoritesViewModel
 import dagger.hilt.android.AndroidEntryPoint
+import kotlinx.coroutines.launch
 
 /**
  * Panel fragment that displays the user's favorite songs with full sort, grid, and shuffle support.
@@ -39,7 +43,7 @@ class Favorites : BasePanelFragment() {
     private lateinit var binding: FragmentFavoritesBinding
     private lateinit var headerBinding: HeaderFavoritesBinding
 
-    private var adapterSongs: AdapterFavorites? = null
+    private var adapterSongs: AdapterPagedSongs? = null
 
     private val favoritesViewModel: FavoritesViewModel by viewModels()
 
@@ -61,8 +65,18 @@ class Favorites : BasePanelFragment() {
 
         setupClickListeners()
 
-        favoritesViewModel.favorites.collectListWhenStarted({ adapterSongs != null }) { songs ->
-            updateFavoritesList(songs)
+        favoritesViewModel.pagedFavorites.submitWhenStarted(setupAdapter())
+
+        favoritesViewModel.summary.collectWhenStarted { summary ->
+            if (summary != null) updateHeader(summary)
+        }
+
+        favoritesViewModel.sectionKeys.collectWhenStarted { keys ->
+            binding.recyclerView.requireAttachedSectionScroller(
+                    sections = provideScrollPositionDataBasedOnSortStyle(keys),
+                    header = binding.appHeader,
+                    view = headerBinding.scroll
+            )
         }
     }
 
@@ -75,6 +89,13 @@ class Favorites : BasePanelFragment() {
         return headerBinding.shuffle
     }
 
+    override fun onShuffleClicked() {
+        super.onShuffleClicked()
+        viewLifecycleOwner.lifecycleScope.launch {
+            shuffleMediaItems(favoritesViewModel.loadFavorites())
+        }
+    }
+
     private fun setupClickListeners() {
         headerBinding.menu.setOnClickListener {
             openPreferencesPanel()
@@ -93,96 +114,80 @@ class Favorites : BasePanelFragment() {
         }
     }
 
-    /**
-     * Updates the favorites list and refreshes all header chips.
-     * Initializes the adapter on first call and diffs subsequent updates.
-     *
-     * @param songs The latest sorted list of favorite [Audio] entries.
-     */
-    private fun updateFavoritesList(songs: List<Audio>) {
-        if (adapterSongs == null) {
-            adapterSongs = AdapterFavorites(songs)
-            adapterSongs?.setHasStableIds(true)
-            adapterSongs?.setGeneralAdapterCallbacks(object : GeneralAdapterCallbacks {
-                override fun onSongClicked(songs: MutableList<Audio>, position: Int, view: View) {
-                    setMediaItems(songs, position)
+    private fun setupAdapter(): AdapterPagedSongs {
+        val adapter = AdapterPagedSongs(FavoritesPreferences.getGridSize())
+        adapter.setGeneralAdapterCallbacks(object : GeneralAdapterCallbacks {
+            override fun onSongRowClicked(row: AudioListRow, position: Int, view: View) {
+                withFavorites(row) { songs, index ->
+                    setMediaItems(songs, index)
                 }
+            }
 
-                override fun onSongLongClicked(audios: MutableList<Audio>, position: Int, imageView: ImageView?) {
-                    openSongsMenu(audios, position, imageView)
+            override fun onSongRowLongClicked(row: AudioListRow, position: Int, imageView: ImageView?) {
+                withFavorites(row) { songs, index ->
+                    openSongsMenu(songs, index, imageView)
                 }
-            })
-            binding.recyclerView.adapter = adapterSongs
-        } else {
-            adapterSongs?.updateSongs(songs)
-            if (binding.recyclerView.adapter == null) {
-                binding.recyclerView.adapter = adapterSongs
             }
-        }
+        })
+        binding.recyclerView.adapter = adapter
+        adapterSongs = adapter
+        return adapter
+    }
 
-        binding.recyclerView.requireAttachedSectionScroller(
-                sections = provideScrollPositionDataBasedOnSortStyle(songs),
-                header = binding.appHeader,
-                view = headerBinding.scroll
-        )
+    /**
+     * Resolves the favorites into full songs in list order and hands them over together
+     * with where [row] sits among them.
+     */
+    private fun withFavorites(row: AudioListRow, block: (List<Audio>, Int) -> Unit) {
+        viewLifecycleOwner.lifecycleScope.launch {
+            val songs = favoritesViewModel.loadFavorites()
+            val index = songs.indexOfFirst { it.id == row.id }
+            if (index != -1) block(songs, index)
+        }
+    }
 
-        headerBinding.count.text = getString(R.string.x_songs, songs.size)
-        headerBinding.hours.text = songs.sumOf { it.duration }.toDynamicTimeString()
+    /**
+     * Refreshes the header chips from the SQLite-side count and total length.
+     *
+     * @param summary The latest [AudioListSummary] of the favorites.
+     */
+    private fun updateHeader(summary: AudioListSummary) {
+        headerBinding.count.text = getString(R.string.x_songs, summary.count)
+        headerBinding.hours.text = summary.totalDuration.toDynamicTimeString()
         headerBinding.sortStyle.setFavoritesSort()
 
         headerBinding.hours.setOnClickListener {
             childFragmentManager.showTotalTime(
-                    totalTime = songs.sumOf { it.duration },
-                    count = songs.size
+                    totalTime = summary.totalDuration,
+                    count = summary.count
             )
         }
     }
 
-    private fun provideScrollPositionDataBasedOnSortStyle(songs: List<Audio>): List<SectionedFastScroller.Position> {
+    private fun provideScrollPositionDataBasedOnSortStyle(keys: List<String>): List<SectionedFastScroller.Position> {
         return when (FavoritesPreferences.getSongSort()) {
             CommonPreferencesConstants.BY_TITLE -> {
                 val firstAlphabetToIndex = linkedMapOf<String, Int>()
-                songs.forEachIndexed { index, song ->
-                    val firstChar = song.title?.firstOrNull()?.uppercaseChar()
-                    val key = if (firstChar != null && firstChar.isLetter()) firstChar.toString() else "#"
-                    if (!firstAlphabetToIndex.containsKey(key)) firstAlphabetToIndex[key] = index
+                keys.forEachIndexed { index, key ->
+                    val firstChar = key.firstOrNull()?.uppercaseChar()
+                    val section = if (firstChar != null && firstChar.isLetter()) firstChar.toString() else "#"
+                    if (!firstAlphabetToIndex.containsKey(section)) firstAlphabetToIndex[section] = index
                 }
                 firstAlphabetToIndex.map { (char, index) -> SectionedFastScroller.Position(char, index) }
             }
-            CommonPreferencesConstants.BY_ARTIST -> {
-                val firstAlphabetToIndex = linkedMapOf<Char, Int>()
-                songs.forEachIndexed { index, song ->
-                    song.artist?.firstOrNull()?.uppercaseChar()?.let { firstChar ->
-                        if (firstChar.isLetter() && !firstAlphabetToIndex.containsKey(firstChar)) {
-                            firstAlphabetToIndex[firstChar] = index
-                        }
-                    }
-                }
-                firstAlphabetToIndex.map { (char, index) -> SectionedFastScroller.Position(char.toString(), index) }
-            }
-            CommonPreferencesConstants.BY_ALBUM -> {
-                val firstAlphabetToIndex = linkedMapOf<Char, Int>()
-                songs.forEachIndexed { index, song ->
-                    song.album?.firstOrNull()?.uppercaseChar()?.let { firstChar ->
-                        if (firstChar.isLetter() && !firstAlphabetToIndex.containsKey(firstChar)) {
-                            firstAlphabetToIndex[firstChar] = index
-                        }
-                    }
-                }
-                firstAlphabetToIndex.map { (char, index) -> SectionedFastScroller.Position(char.toString(), index) }
-            }
             CommonPreferencesConstants.BY_YEAR -> {
                 val firstAlphabetToIndex = linkedMapOf<String, Int>()
-                songs.forEachIndexed { index, song ->
-                    val key = song.year?.takeIf { it.all { ch -> ch.isDigit() } } ?: "#"
-                    if (!firstAlphabetToIndex.containsKey(key)) firstAlphabetToIndex[key] = index
+                keys.forEachIndexed { index, key ->
+                    val section = key.takeIf { it.isNotEmpty() && it.all { ch -> ch.isDigit() } } ?: "#"
+                    if (!firstAlphabetToIndex.containsKey(section)) firstAlphabetToIndex[section] = index
                 }
                 firstAlphabetToIndex.map { (year, index) -> SectionedFastScroller.Position(year, index) }
             }
             else -> {
+                // Artist, album, and everything that falls back to the title: letters only.
                 val firstAlphabetToIndex = linkedMapOf<Char, Int>()
-                songs.forEachIndexed { index, song ->
-                    song.title?.firstOrNull()?.uppercaseChar()?.let { firstChar ->
+                keys.forEachIndexed { index, key ->
+                    key.firstOrNull()?.uppercaseChar()?.let { firstChar ->
                         if (firstChar.isLetter() && !firstAlphabetToIndex.containsKey(firstChar)) {
                             firstAlphabetToIndex[firstChar] = index
                         }
@@ -270,7 +270,7 @@ class Lyrics : MediaFragment(), AddLyrics.Companion.OnLyricsCreatedListener {
      */
     private fun loadWaveformWhenReady(audio: Audio) {
         if (MediaPlaybackManager.isPlaying() || MediaPlaybackManager.isPlayerReady()) {
-            waveformViewModel.loadWaveform(audio)
+            waveformViewModel.loadWaveform(audio, binding.seekbar.getMaxUsefulBars())
             pendingWaveformAudio = null
         } else {
             pendingWaveformAudio = audio
@@ -340,7 +340,7 @@ class Lyrics : MediaFragment(), AddLyrics.Companion.OnLyricsCreatedListener {
                 // earliest safe moment to run Amplituda's extraction in parallel, regardless
                 // of whether playback will start immediately or stay paused.
                 pendingWaveformAudio?.let { audio ->
-                    waveformViewModel.loadWaveform(audio)
+                    waveformViewModel.loadWaveform(audio, binding.seekbar.getMaxUsefulBars())
                     pendingWaveformAudio = null
                 }
             }
@@ -349,7 +349,7 @@ class Lyrics : MediaFragment(), AddLyrics.Companion.OnLyricsCreatedListener {
                 // Also drain any pending waveform that was queued before the ready event arrived
                 // (e.g., when the service emits PLAYING without a preceding READY being observed).
                 pendingWaveformAudio?.let { audio ->
-                    waveformViewModel.loadWaveform(audio)
+                    waveformViewModel.loadWaveform(audio, binding.seekbar.getMaxUsefulBars())
                     pendingWaveformAudio = null
                 }
             }
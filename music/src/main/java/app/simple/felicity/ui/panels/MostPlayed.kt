@@ -14,6 +14,8 @@ import app.simple.felicity.databinding.FragmentMostPlayedBinding
 import app.simple.felicity.databinding.HeaderMostPlayedBinding
 import app.simple.felicity.decorations.highlight.HighlightTextView
 import app.simple.felicity.decorations.views.AppHeader
+import app.simple.felicity.decorations.views.PopupMenuItem
+import app.simple.felicity.decorations.views.SharedScrollViewPopup
 import app.simple.felicity.dialogs.app.GenericListStyleDialog
 import app.simple.felicity.dialogs.app.GenericListStyleDialog.Companion.showListStyleDialog
 import app.simple.felicity.dialogs.app.TotalTime.Companion.showTotalTime
@@ -28,7 +30,9 @@ import dagger.hilt.android.AndroidEntryPoint
 /**
  * Panel fragment displaying the user's most frequently played songs, ordered by play count
  * descending. Each item shows the total number of times the song has been played. The list
- * is backed by the {@code song_stats} table and refreshes reactively as play counts change.
+ * is backed by the {@code song_stats} table for all time, or by the play rollups when the
+ * period chip narrows it down to this week, month, or year, and refreshes reactively as
+ * play counts change.
  *
  * @author Hamza417
  */
@@ -59,6 +63,7 @@ class MostPlayed : BasePanelFragment() {
         binding.recyclerView.setupGridLayoutManager(MostPlayedPreferences.getGridSize().spanCount)
 
         setupClickListeners()
+        updatePeriodLabel()
 
         mostPlayedViewModel.songs.collectListWhenStarted({ adapterSongs != null }) { songs ->
             updateSongsList(songs)
@@ -83,6 +88,24 @@ class MostPlayed : BasePanelFragment() {
             openPreferencesPanel()
         }
 
+        headerBinding.period.setOnClickListener { anchorView ->
+            hideMiniPlayer()
+
+            SharedScrollViewPopup(
+                    container = requireContainerView(),
+                    anchorView = anchorView,
+                    menuItems = PERIODS.map { (_, title) -> PopupMenuItem(title = title) },
+                    onMenuItemClick = { clickedIndex ->
+                        // The view model picks the change up through the preference
+                        // listener and swaps the list over on its own.
+                        MostPlayedPreferences.setPeriod(PERIODS[clickedIndex].first)
+                    },
+                    onDismiss = {
+                        showMiniPlayer()
+                    },
+            ).show()
+        }
+
         headerBinding.listStyle.setOnClickListener {
             childFragmentManager.showListStyleDialog(GenericListStyleDialog.Companion.PANEL.MOST_PLAYED)
         }
@@ -120,6 +143,11 @@ class MostPlayed : BasePanelFragment() {
         }
     }
 
+    private fun updatePeriodLabel() {
+        val period = MostPlayedPreferences.getPeriod()
+        headerBinding.period.setText(PERIODS.firstOrNull { it.first == period }?.second ?: R.string.all_time)
+    }
+
     override fun onSharedPreferenceChanged(sharedPreferences: SharedPreferences?, key: String?) {
         super.onSharedPreferenceChanged(sharedPreferences, key)
         when (key) {
@@ -128,10 +156,21 @@ class MostPlayed : BasePanelFragment() {
                 adapterSongs?.layoutMode = newMode
                 applyGridSizeUpdate(binding.recyclerView, newMode.spanCount)
             }
+            MostPlayedPreferences.PERIOD -> {
+                updatePeriodLabel()
+            }
         }
     }
 
     companion object {
+        /** The period choices in the order the popup lists them, with their labels. */
+        private val PERIODS = listOf(
+                MostPlayedPreferences.PERIOD_ALL_TIME to R.string.all_time,
+                MostPlayedPreferences.PERIOD_THIS_WEEK to R.string.this_week,
+                MostPlayedPreferences.PERIOD_THIS_MONTH to R.string.this_month,
+                MostPlayedPreferences.PERIOD_THIS_YEAR to R.string.this_year
+        )
+
         fun newInstance(): MostPlayed {
             val args = Bundle()
             val fragment = MostPlayed()
@@ -8,7 +8,8 @@ import android.view.View
 import android.view.ViewGroup
 import android.widget.ImageView
 import androidx.fragment.app.viewModels
-import app.simple.felicity.adapters.ui.lists.AdapterSongs
+import androidx.lifecycle.lifecycleScope
+import app.simple.felicity.adapters.ui.lists.AdapterPagedSongs
 import app.simple.felicity.callbacks.GeneralAdapterCallbacks
 import app.simple.felicity.constants.CommonPreferencesConstants
 import app.simple.felicity.databinding.FragmentSongsBinding
@@ -23,16 +24,19 @@ import app.simple.felicity.dialogs.songs.SongsSort.Companion.showSongsSort
 import app.simple.felicity.extensions.fragments.BasePanelFragment
 import app.simple.felicity.preferences.SongsPreferences
 import app.simple.felicity.repository.models.Audio
+import app.simple.felicity.repository.models.AudioListRow
+import app.simple.felicity.repository.models.AudioListSummary
 import app.simple.felicity.repository.sort.SongSort.setSongSort
 import app.simple.felicity.shared.utils.TimeUtils.toDynamicTimeString
 import app.simple.felicity.viewmodels.panels.SongsViewModel
+import kotlinx.coroutines.launch
 
 class Songs : BasePanelFragment() {
 
     private lateinit var binding: FragmentSongsBinding
     private lateinit var headerBinding: HeaderSongsBinding
 
-    private var adapterSongs: AdapterSongs? = null
+    private var adapterSongs: AdapterPagedSongs? = null
 
     private val songsViewModel: SongsViewModel by viewModels({ requireActivity() })
 
@@ -54,9 +58,21 @@ class Songs : BasePanelFragment() {
 
         setupClickListeners()
 
-        songsViewModel.songs.collectListWhenStarted({ adapterSongs != null }) { audios ->
-            Log.d(TAG, "Received songs update: ${audios.size} songs")
-            updateSongsList(audios)
+        songsViewModel.pagedSongs.submitWhenStarted(setupAdapter())
+
+        songsViewModel.summary.collectWhenStarted { summary ->
+            if (summary != null) {
+                Log.d(TAG, "Received songs summary: ${summary.count} songs")
+                updateHeader(summary)
+            }
+        }
+
+        songsViewModel.sectionKeys.collectWhenStarted { keys ->
+            binding.recyclerView.requireAttachedSectionScroller(
+                    sections = provideScrollPositionDataBasedOnSortStyle(keys),
+                    header = binding.appHeader,
+                    view = headerBinding.scroll
+            )
         }
     }
 
@@ -87,100 +103,86 @@ class Songs : BasePanelFragment() {
         }
     }
 
-    /**
-     * Updates the songs list and header information.
-     * This method is called whenever the Flow emits new data.
-     */
-    private fun updateSongsList(songs: List<Audio>) {
-        if (adapterSongs == null) {
-            adapterSongs = AdapterSongs(songs)
-            adapterSongs?.setHasStableIds(true)
-            adapterSongs?.setGeneralAdapterCallbacks(object : GeneralAdapterCallbacks {
-                override fun onSongClicked(songs: MutableList<Audio>, position: Int, view: View) {
-                    setMediaItems(songs, position)
+    private fun setupAdapter(): AdapterPagedSongs {
+        val adapter = AdapterPagedSongs(SongsPreferences.getGridSize())
+        adapter.setGeneralAdapterCallbacks(object : GeneralAdapterCallbacks {
+            override fun onSongRowClicked(row: AudioListRow, position: Int, view: View) {
+                withSongs(row) { songs, index ->
+                    setMediaItems(songs, index)
                 }
+            }
 
-                override fun onSongLongClicked(audios: MutableList<Audio>, position: Int, imageView: ImageView?) {
-                    openSongsMenu(audios, position, imageView)
+            override fun onSongRowLongClicked(row: AudioListRow, position: Int, imageView: ImageView?) {
+                withSongs(row) { songs, index ->
+                    openSongsMenu(songs, index, imageView)
                 }
-            })
-            binding.recyclerView.adapter = adapterSongs
-        } else {
-            adapterSongs?.updateSongs(songs)
-            if (binding.recyclerView.adapter == null) {
-                binding.recyclerView.adapter = adapterSongs
             }
-        }
+        })
+        binding.recyclerView.adapter = adapter
+        adapterSongs = adapter
+        return adapter
+    }
 
-        binding.recyclerView.requireAttachedSectionScroller(
-                sections = provideScrollPositionDataBasedOnSortStyle(songs),
-                header = binding.appHeader,
-                view = headerBinding.scroll
-        )
+    /**
+     * Resolves the list into full songs — ids in list order first, then the rows by id —
+     * and hands them over together with where [row] sits among them. The paged adapter
+     * only holds a few pages of slim rows, so this is the one place the full queue is built.
+     */
+    private fun withSongs(row: AudioListRow, block: (List<Audio>, Int) -> Unit) {
+        viewLifecycleOwner.lifecycleScope.launch {
+            val songs = songsViewModel.loadSongs()
+            val index = songs.indexOfFirst { it.id == row.id }
+            if (index != -1) {
+                block(songs, index)
+            }
+        }
+    }
 
-        headerBinding.count.text = songs.size.toString()
-        headerBinding.hours.text = songs.sumOf { it.duration }.toDynamicTimeString()
+    /**
+     * Updates the header chips from the SQLite-side count and total length.
+     */
+    private fun updateHeader(summary: AudioListSummary) {
+        headerBinding.count.text = summary.count.toString()
+        headerBinding.hours.text = summary.totalDuration.toDynamicTimeString()
         headerBinding.sortStyle.setSongSort()
 
         headerBinding.hours.setOnClickListener {
             childFragmentManager.showTotalTime(
-                    totalTime = songs.sumOf { it.duration },
-                    count = songs.size
+                    totalTime = summary.totalDuration,
+                    count = summary.count
             )
         }
     }
 
-    private fun provideScrollPositionDataBasedOnSortStyle(songs: List<Audio>): List<SectionedFastScroller.Position> {
+    /**
+     * Builds the fast-scroll sections from one key per row (see
+     * [app.simple.felicity.repository.sort.AudioSqlOrder.sectionKey]), in list order.
+     */
+    private fun provideScrollPositionDataBasedOnSortStyle(keys: List<String>): List<SectionedFastScroller.Position> {
         return when (SongsPreferences.getSongSort()) {
             CommonPreferencesConstants.BY_TITLE -> {
                 val firstAlphabetToIndex = linkedMapOf<String, Int>()
-                songs.forEachIndexed { index, song ->
-                    val firstChar = song.title?.firstOrNull()?.uppercaseChar()
-                    val key = if (firstChar != null && firstChar.isLetter()) {
+                keys.forEachIndexed { index, key ->
+                    val firstChar = key.firstOrNull()?.uppercaseChar()
+                    val section = if (firstChar != null && firstChar.isLetter()) {
                         firstChar.toString()
                     } else {
                         "#"
                     }
-                    if (!firstAlphabetToIndex.containsKey(key)) {
-                        firstAlphabetToIndex[key] = index
+                    if (!firstAlphabetToIndex.containsKey(section)) {
+                        firstAlphabetToIndex[section] = index
                     }
                 }
                 firstAlphabetToIndex.map { (char, index) ->
                     SectionedFastScroller.Position(char, index)
                 }
             }
-            CommonPreferencesConstants.BY_ARTIST -> {
-                val firstAlphabetToIndex = linkedMapOf<Char, Int>()
-                songs.forEachIndexed { index, song ->
-                    song.artist?.firstOrNull()?.uppercaseChar()?.let { firstChar ->
-                        if (firstChar.isLetter() && !firstAlphabetToIndex.containsKey(firstChar)) {
-                            firstAlphabetToIndex[firstChar] = index
-                        }
-                    }
-                }
-                firstAlphabetToIndex.map { (char, index) ->
-                    SectionedFastScroller.Position(char.toString(), index)
-                }
-            }
-            CommonPreferencesConstants.BY_ALBUM -> {
-                val firstAlphabetToIndex = linkedMapOf<Char, Int>()
-                songs.forEachIndexed { index, song ->
-                    song.album?.firstOrNull()?.uppercaseChar()?.let { firstChar ->
-                        if (firstChar.isLetter() && !firstAlphabetToIndex.containsKey(firstChar)) {
-                            firstAlphabetToIndex[firstChar] = index
-                        }
-                    }
-                }
-                firstAlphabetToIndex.map { (char, index) ->
-                    SectionedFastScroller.Position(char.toString(), index)
-                }
-            }
             CommonPreferencesConstants.BY_YEAR -> {
                 val firstAlphabetToIndex = linkedMapOf<String, Int>()
-                songs.forEachIndexed { index, song ->
-                    val key = song.year?.takeIf { it.all { ch -> ch.isDigit() } } ?: "#"
-                    if (!firstAlphabetToIndex.containsKey(key)) {
-                        firstAlphabetToIndex[key] = index
+                keys.forEachIndexed { index, key ->
+                    val section = key.takeIf { it.isNotEmpty() && it.all { ch -> ch.isDigit() } } ?: "#"
+                    if (!firstAlphabetToIndex.containsKey(section)) {
+                        firstAlphabetToIndex[section] = index
                     }
                 }
                 firstAlphabetToIndex.map { (year, index) ->
@@ -188,9 +190,10 @@ class Songs : BasePanelFragment() {
                 }
             }
             else -> {
+                // Artist, album, and everything that falls back to the title: letters only.
                 val firstAlphabetToIndex = linkedMapOf<Char, Int>()
-                songs.forEachIndexed { index, song ->
-                    song.title?.firstOrNull()?.uppercaseChar()?.let { firstChar ->
+                keys.forEachIndexed { index, key ->
+                    key.firstOrNull()?.uppercaseChar()?.let { firstChar ->
                         if (firstChar.isLetter() && !firstAlphabetToIndex.containsKey(firstChar)) {
                             firstAlphabetToIndex[firstChar] = index
                         }
@@ -209,7 +212,9 @@ class Songs : BasePanelFragment() {
 
     override fun onShuffleClicked() {
         super.onShuffleClicked()
-        shuffleMediaItems(songsViewModel.songs.value)
+        viewLifecycleOwner.lifecycleScope.launch {
+            shuffleMediaItems(songsViewModel.loadSongs())
+        }
     }
 
     override fun onSharedPreferenceChanged(sharedPreferences: SharedPreferences?, key: String?) {
@@ -8,13 +8,22 @@ import android.widget.TextView
 import androidx.core.text.toSpannable
 import app.simple.felicity.R
 import app.simple.felicity.repository.models.Audio
+import app.simple.felicity.repository.models.AudioListRow
 import app.simple.felicity.repository.models.Playlist
 import app.simple.felicity.theme.managers.ThemeManager
 import java.util.Locale
 
 object AdapterUtils {
     fun TextView.addAudioQualityIcon(audio: Audio) {
-        when (audio.audioQuality) {
+        addAudioQualityIcon(audio.audioQuality)
+    }
+
+    fun TextView.addAudioQualityIcon(row: AudioListRow) {
+        addAudioQualityIcon(row.audioQuality)
+    }
+
+    private fun TextView.addAudioQualityIcon(quality: Int) {
+        when (quality) {
             Audio.AUDIO_QUALITY_LQ -> {
                 // setCompoundDrawablesRelativeWithIntrinsicBounds(0, 0, R.drawable.ic_lq_12dp, 0)
                 setCompoundDrawablesRelativeWithIntrinsicBounds(0, 0, 0, 0)
@@ -0,0 +1,105 @@
+package app.simple.felicity.utils
+
+import android.content.Context
+import android.util.Log
+import androidx.core.net.toUri
+import app.simple.felicity.repository.models.Audio
+import com.linc.amplituda.Amplituda
+import com.linc.amplituda.Cache
+import com.linc.amplituda.Compress
+
+/**
+ * Decodes an audio file into the normalized per-bar amplitudes stored in
+ * {@code waveform_data}. Shared by the player's on-demand load and the background
+ * precompute queue so both produce exactly the same bars for the same song.
+ *
+ * @author Hamza417
+ */
+object WaveformExtractor {
+
+    private const val TAG = "WaveformExtractor"
+
+    /** How many bars make up one second of audio. Ghost data has to use the same density. */
+    const val BARS_PER_SECOND = 1
+
+    /**
+     * Decodes [audio] with [amplituda] and returns one value per bar in [0.0, 1.0], or
+     * null when the file could not be opened, produced no samples, or is silent all the
+     * way through. This blocks until the decode is done, so call it off the main thread.
+     *
+     * A CUE track decodes its whole album file and keeps only its own seconds of it;
+     * Amplituda has no way to decode just a range.
+     *
+     * @param reuseCache Let Amplituda keep its own on-disk cache of the decode. Worth it
+     *                   for the song that is playing right now; the background queue
+     *                   passes false so it doesn't fill the cache folder with the whole
+     *                   library.
+     */
+    fun extract(context: Context, amplituda: Amplituda, audio: Audio, reuseCache: Boolean = true): FloatArray? {
+        val parcelFileDescriptor = context.contentResolver.openFileDescriptor(audio.streamUri.toUri(), "r")
+            ?: throw IllegalArgumentException("Unable to open URI: ${audio.streamUri}")
+
+        try {
+            val cache = if (reuseCache) {
+                Cache.withParams(Cache.REUSE, audio.hash.toString())
+            } else {
+                Cache.withParams(Cache.NONE)
+            }
+
+            val fileAmplitudes = amplituda
+                .processAudio(
+                        parcelFileDescriptor,
+                        Compress.withParams(Compress.AVERAGE, BARS_PER_SECOND),
+                        cache
+                )
+                .get() // Blocking call
+                .amplitudesAsList()
+
+            // The decode runs at BARS_PER_SECOND values a second, so a track's range maps straight onto it.
+            val rawAmplitudes = if (audio.isCueTrack) {
+                val from = (audio.cueStart * BARS_PER_SECOND / 1000L).toInt().coerceIn(0, fileAmplitudes.size)
+                val to = if (audio.cueEnd > 0L) (audio.cueEnd * BARS_PER_SECOND / 1000L).toInt() else fileAmplitudes.size
+                fileAmplitudes.subList(from, to.coerceIn(from, fileAmplitudes.size))
+            } else {
+                fileAmplitudes
+            }
+
+            if (rawAmplitudes.isEmpty()) return null
+
+            // --- Deterministic Time-Based Downsampling ---
+
+            val expectedBars = ((audio.duration / 1000f) * BARS_PER_SECOND).toInt().coerceAtLeast(1)
+
+            val chunkedAmplitudes = FloatArray(expectedBars)
+            val chunkSize = rawAmplitudes.size.toFloat() / expectedBars
+
+            for (i in 0 until expectedBars) {
+                val start = (i * chunkSize).toInt()
+                val end = ((i + 1) * chunkSize).toInt().coerceAtMost(rawAmplitudes.size)
+
+                var peakInChunk = 0
+                for (j in start until end) {
+                    if (rawAmplitudes[j] > peakInChunk) {
+                        peakInChunk = rawAmplitudes[j]
+                    }
+                }
+                chunkedAmplitudes[i] = peakInChunk.toFloat()
+            }
+
+            // --- Final Normalization ---
+
+            val maxPeak = chunkedAmplitudes.maxOrNull() ?: 1f
+            if (maxPeak <= 0f) return null
+
+            return FloatArray(expectedBars) { i ->
+                chunkedAmplitudes[i] / maxPeak
+            }
+        } finally {
+            try {
+                parcelFileDescriptor.close()
+            } catch (e: Exception) {
+                Log.e(TAG, "Failed to close ParcelFileDescriptor for ${audio.uri}", e)
+            }
+        }
+    }
+}
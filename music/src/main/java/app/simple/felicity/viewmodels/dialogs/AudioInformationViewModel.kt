@@ -41,7 +41,7 @@ class AudioInformationViewModel @AssistedInject constructor(
 
     private fun loadInfo() {
         viewModelScope.launch(Dispatchers.IO) {
-            val hasEmbeddedArt = checkEmbeddedArt(audio.uri)
+            val hasEmbeddedArt = checkEmbeddedArt(audio.streamUri)
             val hasLrc = lrcRepository.lrcFileExists(audio.uri)
 
             val list = buildList {
@@ -62,7 +62,7 @@ class AudioInformationViewModel @AssistedInject constructor(
                 add(data(R.string.sample_rate, "${audio.sampleRate} Hz"))
                 add(data(R.string.bit_depth, if (audio.bitPerSample > 0) "${audio.bitPerSample}-bit" else "–"))
                 add(data(R.string.mime_type, audio.mimeType ?: "–"))
-                add(data(R.string.format, audio.uri.getAudioFormat() ?: "–"))
+                add(data(R.string.format, audio.streamUri.getAudioFormat() ?: "–"))
                 add(data(R.string.genre, audio.genre ?: "–"))
                 add(data(R.string.year, audio.year ?: "–"))
                 add(data(R.string.track, if (audio.track > 0) audio.track.toString() else "–"))
@@ -43,10 +43,12 @@ class PlaybackInfoViewModel @AssistedInject constructor(
 
     /**
      * Fetches the playback stat for the song from the database and pushes
-     * it into the state flow so the UI can react to it.
+     * it into the state flow so the UI can react to it. Any plays still waiting
+     * in the stats batch are written first, so the play that just started counts.
      */
     private fun loadStat() {
         viewModelScope.launch(Dispatchers.IO) {
+            songStatRepository.flush()
             _stat.emit(songStatRepository.getStatByHash(audio.hash))
         }
     }
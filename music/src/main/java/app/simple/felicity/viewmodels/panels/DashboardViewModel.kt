@@ -24,7 +24,10 @@ import kotlinx.coroutines.flow.StateFlow
 import kotlinx.coroutines.flow.asStateFlow
 import kotlinx.coroutines.flow.catch
 import kotlinx.coroutines.flow.combine
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.distinctUntilChangedBy
 import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.flow.map
 import kotlinx.coroutines.launch
 import java.util.concurrent.TimeUnit
 import javax.inject.Inject
@@ -55,6 +58,15 @@ class DashboardViewModel @Inject constructor(
      */
     data class LibraryStats(val trackCount: Int, val totalHours: Long)
 
+    /**
+     * How much the user has been listening lately, summed over the last
+     * [LISTENING_DAYS] days of the day rollups.
+     *
+     * @param plays Songs played in that window.
+     * @param listenedMs Listening time in that window, in milliseconds.
+     */
+    data class ListeningStats(val plays: Int, val listenedMs: Long)
+
     /**
      * Holds the layout configuration for the recommended spanned art grid.
      * Different configs are used in portrait vs landscape so the grid doesn't look
@@ -98,6 +110,14 @@ class DashboardViewModel @Inject constructor(
      */
     val libraryStats: StateFlow<LibraryStats?> = _libraryStats.asStateFlow()
 
+    private val _listeningStats = MutableStateFlow<ListeningStats?>(null)
+
+    /**
+     * Plays and listening time of the last [LISTENING_DAYS] days, read from the day
+     * rollups, so it costs one small indexed read however long the history is.
+     */
+    val listeningStats: StateFlow<ListeningStats?> = _listeningStats.asStateFlow()
+
     private val _topArtists = MutableStateFlow<List<Artist>>(emptyList())
 
     /**
@@ -214,6 +234,7 @@ class DashboardViewModel @Inject constructor(
         startFavoritesFlow()
         startRecommendedFlow()
         startLibraryStatsFlow()
+        startListeningStatsFlow()
         startTopArtistsFlow()
         startTopAlbumsFlow()
         fetchActiveQueue()
@@ -287,18 +308,34 @@ class DashboardViewModel @Inject constructor(
     }
 
     /**
-     * Derives the top 10 artists from the most-played songs list.
-     * Artists are ranked by total play count — the more you listen, the higher they rise.
-     * Each artist is represented by the first song we find for them.
+     * Watches the day rollups of the last [LISTENING_DAYS] days and sums them up for the
+     * listening chip. The window is fixed when the dashboard is created, which is fine for
+     * a screen nobody keeps open across midnight for long.
+     */
+    private fun startListeningStatsFlow() {
+        viewModelScope.launch {
+            songStatRepository.getDailyListening(LISTENING_DAYS)
+                .catch { e -> Log.e(TAG, "Error loading daily listening", e) }
+                .flowOn(Dispatchers.IO)
+                .collect { days ->
+                    _listeningStats.value = ListeningStats(
+                            plays = days.sumOf { it.plays },
+                            listenedMs = days.sumOf { it.listenedMs }
+                    )
+                    Log.d(TAG, "listeningStats updated: ${days.size} days")
+                }
+        }
+    }
+
+    /**
+     * Watches the top 10 artists, ranked by how many times their songs were played in total.
+     * The ranking is summed up in SQL over the library index (see
+     * [SongStatRepository.getTopArtists]), so this no longer walks the whole library once
+     * per artist every time a song is played.
      */
     private fun startTopArtistsFlow() {
         viewModelScope.launch {
-            combine(
-                    songStatRepository.getMostPlayed(),
-                    audioRepository.getAllAudio()
-            ) { mostPlayed, allAudio ->
-                computeTopArtists(mostPlayed, allAudio)
-            }
+            songStatRepository.getTopArtists(TOP_LIST_COUNT)
                 .catch { e -> Log.e(TAG, "Error computing top artists", e) }
                 .flowOn(Dispatchers.IO)
                 .collect { artists ->
@@ -309,18 +346,12 @@ class DashboardViewModel @Inject constructor(
     }
 
     /**
-     * Derives the top 10 albums from the most-played songs list.
-     * Albums are ranked by how many of their tracks appear in the most-played list.
-     * Makes sense, right? Your favorite album probably has multiple tracks up there.
+     * Watches the top 10 albums, ranked by how many times their tracks were played in total.
+     * Same deal as [startTopArtistsFlow], just grouped by album instead.
      */
     private fun startTopAlbumsFlow() {
         viewModelScope.launch {
-            combine(
-                    songStatRepository.getMostPlayed(),
-                    audioRepository.getAllAudio()
-            ) { mostPlayed, allAudio ->
-                computeTopAlbums(mostPlayed, allAudio)
-            }
+            songStatRepository.getTopAlbums(TOP_LIST_COUNT)
                 .catch { e -> Log.e(TAG, "Error computing top albums", e) }
                 .flowOn(Dispatchers.IO)
                 .collect { albums ->
@@ -330,72 +361,6 @@ class DashboardViewModel @Inject constructor(
         }
     }
 
-    /**
-     * Computes the top 10 artists by grouping most-played songs by artist
-     * and counting how many times each artist appears.
-     *
-     * @param mostPlayed The ordered list of most-played [Audio] objects.
-     * @param allAudio The full library snapshot used to build complete [Artist] records.
-     * @return Up to 10 [Artist] objects sorted by play frequency.
-     */
-    private fun computeTopArtists(mostPlayed: List<Audio>, allAudio: List<Audio>): List<Artist> {
-        // Count how many most-played entries each artist has — that's their score.
-        val artistPlayCounts = mostPlayed
-            .mapNotNull { it.artist }
-            .groupingBy { it }
-            .eachCount()
-
-        return artistPlayCounts.entries
-            .sortedByDescending { it.value }
-            .take(TOP_LIST_COUNT)
-            .mapNotNull { (artistName, _) ->
-                val artistSongs = allAudio.filter {
-                    it.artist?.equals(artistName, ignoreCase = true) == true
-                }
-                if (artistSongs.isEmpty()) return@mapNotNull null
-                Artist(
-                        id = artistName.hashCode().toLong(),
-                        name = artistName,
-                        albumCount = artistSongs.mapNotNull { it.album }.distinct().size,
-                        trackCount = artistSongs.size,
-                        songPaths = artistSongs.map { it.uri }
-                )
-            }
-    }
-
-    /**
-     * Computes the top 10 albums by grouping most-played songs by album name.
-     *
-     * @param mostPlayed The ordered list of most-played [Audio] objects.
-     * @param allAudio The full library snapshot used to build complete [Album] records.
-     * @return Up to 10 [Album] objects sorted by play frequency.
-     */
-    private fun computeTopAlbums(mostPlayed: List<Audio>, allAudio: List<Audio>): List<Album> {
-        val albumPlayCounts = mostPlayed
-            .mapNotNull { it.album }
-            .groupingBy { it }
-            .eachCount()
-
-        return albumPlayCounts.entries
-            .sortedByDescending { it.value }
-            .take(TOP_LIST_COUNT)
-            .mapNotNull { (albumName, _) ->
-                val albumSongs = allAudio.filter {
-                    it.album?.equals(albumName, ignoreCase = true) == true
-                }
-                if (albumSongs.isEmpty()) return@mapNotNull null
-                val firstSong = albumSongs.first()
-                Album(
-                        id = albumName.hashCode().toLong(),
-                        name = albumName,
-                        artist = firstSong.artist,
-                        artistId = firstSong.artist?.hashCode()?.toLong() ?: 0L,
-                        songCount = albumSongs.size,
-                        songPaths = albumSongs.map { it.uri }
-                )
-            }
-    }
-
     /**
      * Starts (or restarts) the recommended-grid flow by combining three reactive Room flows
      * with [_recommendedRefreshTrigger]. Any change in the audio table, the stats table, or
@@ -403,17 +368,34 @@ class DashboardViewModel @Inject constructor(
      *
      * The previous collection job is canceled before a new one starts to avoid duplicate
      * emissions when [refreshRecommended] is called.
+     *
+     * Room re-runs the stats queries on every write to the audio table, so identical results
+     * are dropped before they reach the combine, and only the first few songs of the library
+     * — the only ones that can ever end up as filler — are watched. A scan or a favorite
+     * toggle somewhere else in the library no longer reshuffles the grid.
+     *
+     * The most-played slots lean on what the user is into this month — read straight from
+     * the month rollups — and only fall back to the all-time favorites once this month's
+     * list runs out, so a song that was on repeat two years ago doesn't hog the grid forever.
      */
     private fun startRecommendedFlow() {
         recommendedJob?.cancel()
         recommendedJob = viewModelScope.launch(Dispatchers.IO) {
             combine(
-                    songStatRepository.getMostPlayed(),
-                    songStatRepository.getRecentlyPlayed(),
-                    audioRepository.getAllAudio(),
+                    combine(
+                            songStatRepository.getMostPlayedThisMonth()
+                                .map { list -> list.take(RECOMMENDED_MOST_PLAYED_COUNT).map { it.audio } },
+                            songStatRepository.getMostPlayed()
+                    ) { thisMonth, allTime ->
+                        (thisMonth + allTime).distinctBy { it.id }
+                    }.distinctUntilChanged(),
+                    songStatRepository.getRecentlyPlayed().distinctUntilChanged(),
+                    audioRepository.getAllAudio()
+                        .map { it.take(RECOMMENDED_MAX_COUNT * 2) }
+                        .distinctUntilChangedBy { filler -> filler.map { it.id } },
                     _recommendedRefreshTrigger
-            ) { mostPlayed, recentlyPlayed, allAudio, _ ->
-                computeRecommended(mostPlayed, recentlyPlayed, allAudio)
+            ) { mostPlayed, recentlyPlayed, fillerCandidates, _ ->
+                computeRecommended(mostPlayed, recentlyPlayed, fillerCandidates)
             }
                 .catch { e -> Log.e(TAG, "Error loading recommended section", e) }
                 .collect { songs ->
@@ -437,7 +419,8 @@ class DashboardViewModel @Inject constructor(
      *
      * @param mostPlayedList  Latest most-played list from the stats table.
      * @param recentlyPlayedList  Latest recently-played list from the stats table.
-     * @param allAudio  Latest full audio library snapshot.
+     * @param allAudio  The first songs of the library, at least [RECOMMENDED_MAX_COUNT] more
+     *                  than could already be in the composed list so there is always enough filler.
      * @return A shuffled list of up to [RECOMMENDED_MAX_COUNT] songs.
      */
     private fun computeRecommended(
@@ -546,6 +529,9 @@ class DashboardViewModel @Inject constructor(
         /** Number of columns in the recommended grid when in landscape — more columns, smaller cells. */
         private const val RECOMMENDED_LANDSCAPE_SPAN_COUNT = 5
 
+        /** Number of days, today included, the listening chip sums up. */
+        private const val LISTENING_DAYS = 7
+
         /** How many top artists or albums to show in the dashboard horizontal lists. */
         private const val TOP_LIST_COUNT = 10
     }
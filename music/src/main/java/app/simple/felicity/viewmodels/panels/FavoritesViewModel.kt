@@ -4,26 +4,30 @@ import android.app.Application
 import android.content.SharedPreferences
 import android.util.Log
 import androidx.lifecycle.viewModelScope
+import androidx.paging.PagingData
+import androidx.paging.cachedIn
 import app.simple.felicity.extensions.viewmodels.WrappedViewModel
 import app.simple.felicity.preferences.FavoritesPreferences
 import app.simple.felicity.repository.models.Audio
+import app.simple.felicity.repository.models.AudioListRow
+import app.simple.felicity.repository.models.AudioListSummary
 import app.simple.felicity.repository.repositories.AudioRepository
-import app.simple.felicity.repository.sort.FavoritesSort.sortedFavorites
 import dagger.hilt.android.lifecycle.HiltViewModel
-import kotlinx.coroutines.Dispatchers
-import kotlinx.coroutines.Job
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.SharingStarted
 import kotlinx.coroutines.flow.StateFlow
-import kotlinx.coroutines.flow.asStateFlow
 import kotlinx.coroutines.flow.catch
-import kotlinx.coroutines.flow.flowOn
-import kotlinx.coroutines.launch
+import kotlinx.coroutines.flow.flatMapLatest
+import kotlinx.coroutines.flow.stateIn
+import kotlinx.coroutines.flow.update
 import javax.inject.Inject
 
 /**
  * ViewModel for the Favorites panel.
- * Loads favorite songs from the repository and applies [FavoritesPreferences]-driven
- * sort/order without a round-trip to the database when only the sort changes.
+ * Pages the favorite songs straight out of the database, sorted by SQLite according to
+ * [FavoritesPreferences], and restarts the queries when the sort changes.
  *
  * @author Hamza417
  */
@@ -33,51 +37,67 @@ class FavoritesViewModel @Inject constructor(
         private val audioRepository: AudioRepository
 ) : WrappedViewModel(application) {
 
-    private val _favorites = MutableStateFlow<List<Audio>>(emptyList())
-    val favorites: StateFlow<List<Audio>> = _favorites.asStateFlow()
+    /** Bumped on sort changes so every flow below restarts with the new order. */
+    private val queryKey = MutableStateFlow(0)
 
-    /** Raw list from the database kept for cheap in-memory re-sorts. */
-    private var rawFavoriteList: List<Audio> = emptyList()
+    /**
+     * Paged, slim rows for the favorites list. Only the pages near the visible window are
+     * kept in memory; resolve full songs with [loadFavorites] when they are needed.
+     */
+    @OptIn(ExperimentalCoroutinesApi::class)
+    val pagedFavorites: Flow<PagingData<AudioListRow>> = queryKey
+        .flatMapLatest {
+            audioRepository.getAudioRowsPaged(
+                    FavoritesPreferences.getSongSort(),
+                    FavoritesPreferences.getSortingStyle(),
+                    favoritesOnly = true)
+        }
+        .cachedIn(viewModelScope)
 
-    private var loadJob: Job? = null
+    /** Count and total length for the header, counted by SQLite. */
+    @OptIn(ExperimentalCoroutinesApi::class)
+    val summary: StateFlow<AudioListSummary?> = queryKey
+        .flatMapLatest { audioRepository.getAudioListSummary(favoritesOnly = true) }
+        .catch { e -> Log.e(TAG, "Error loading favorites summary", e) }
+        .stateIn(
+                scope = viewModelScope,
+                started = SharingStarted.WhileSubscribed(5_000),
+                initialValue = null
+        )
 
-    init {
-        loadFavorites()
-    }
-
-    private fun loadFavorites() {
-        loadJob?.cancel()
-        loadJob = viewModelScope.launch {
-            audioRepository.getFavoriteAudio()
-                .catch { e ->
-                    Log.e(TAG, "Error loading favorites", e)
-                    emit(emptyList())
-                }
-                .flowOn(Dispatchers.IO)
-                .collect { list ->
-                    rawFavoriteList = list
-                    _favorites.value = list.sortedFavorites()
-                    Log.d(TAG, "Favorites loaded: ${list.size} songs")
-                }
+    /** One key per row of [pagedFavorites], in the same order, for the section fast scroller. */
+    @OptIn(ExperimentalCoroutinesApi::class)
+    val sectionKeys: StateFlow<List<String>> = queryKey
+        .flatMapLatest {
+            audioRepository.getAudioSectionKeys(
+                    FavoritesPreferences.getSongSort(),
+                    FavoritesPreferences.getSortingStyle(),
+                    favoritesOnly = true)
         }
-    }
+        .catch { e -> Log.e(TAG, "Error loading favorites sections", e) }
+        .stateIn(
+                scope = viewModelScope,
+                started = SharingStarted.WhileSubscribed(5_000),
+                initialValue = emptyList()
+        )
 
     /**
-     * Re-sorts the cached list without querying the database again.
-     * Called when only the sort field or direction changes.
+     * Full favorite songs in the order the list shows them, for the play queue or the
+     * shuffler: ids first, in list order, then the rows by id in chunks.
      */
-    private fun resort() {
-        viewModelScope.launch(Dispatchers.Default) {
-            _favorites.value = rawFavoriteList.sortedFavorites()
-            Log.d(TAG, "resort: ${_favorites.value.size} favorites re-sorted")
-        }
+    suspend fun loadFavorites(): List<Audio> {
+        val ids = audioRepository.getAudioIds(
+                FavoritesPreferences.getSongSort(),
+                FavoritesPreferences.getSortingStyle(),
+                favoritesOnly = true)
+        return audioRepository.getAudioByIds(ids)
     }
 
     override fun onSharedPreferenceChanged(sharedPreferences: SharedPreferences?, s: String?) {
         super.onSharedPreferenceChanged(sharedPreferences, s)
         when (s) {
             FavoritesPreferences.SONG_SORT,
-            FavoritesPreferences.SORTING_STYLE -> resort()
+            FavoritesPreferences.SORTING_STYLE -> queryKey.update { it + 1 }
         }
     }
 
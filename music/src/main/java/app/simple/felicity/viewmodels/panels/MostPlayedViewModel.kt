@@ -6,10 +6,13 @@ import android.util.Log
 import androidx.lifecycle.viewModelScope
 import app.simple.felicity.extensions.viewmodels.WrappedViewModel
 import app.simple.felicity.preferences.LibraryPreferences
+import app.simple.felicity.preferences.MostPlayedPreferences
 import app.simple.felicity.repository.models.AudioWithStat
 import app.simple.felicity.repository.repositories.SongStatRepository
 import dagger.hilt.android.lifecycle.HiltViewModel
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
 import kotlinx.coroutines.flow.asStateFlow
@@ -23,7 +26,9 @@ import javax.inject.Inject
  *
  * <p>Observes the {@code song_stats} table via [SongStatRepository] and emits the most
  * frequently played available songs ordered by play count descending. Each item is an
- * [AudioWithStat] so the UI can display the total number of times each song was played.</p>
+ * [AudioWithStat] so the UI can display the total number of times each song was played.
+ * When [MostPlayedPreferences.getPeriod] narrows the list to this week, month, or year,
+ * the counts come from the play rollups instead and only cover that stretch of time.</p>
  *
  * @author Hamza417
  */
@@ -36,13 +41,16 @@ class MostPlayedViewModel @Inject constructor(
     private val _songs = MutableStateFlow<List<AudioWithStat>>(emptyList())
     val songs: StateFlow<List<AudioWithStat>> = _songs.asStateFlow()
 
+    private var loadJob: Job? = null
+
     init {
         loadData()
     }
 
     private fun loadData() {
-        viewModelScope.launch {
-            songStatRepository.getMostPlayedWithStat()
+        loadJob?.cancel()
+        loadJob = viewModelScope.launch {
+            mostPlayedFlow()
                 .catch { e ->
                     Log.e(TAG, "Error loading most played songs", e)
                     emit(emptyList())
@@ -55,11 +63,21 @@ class MostPlayedViewModel @Inject constructor(
         }
     }
 
+    private fun mostPlayedFlow(): Flow<List<AudioWithStat>> {
+        return when (MostPlayedPreferences.getPeriod()) {
+            MostPlayedPreferences.PERIOD_THIS_WEEK -> songStatRepository.getMostPlayedThisWeek()
+            MostPlayedPreferences.PERIOD_THIS_MONTH -> songStatRepository.getMostPlayedThisMonth()
+            MostPlayedPreferences.PERIOD_THIS_YEAR -> songStatRepository.getMostPlayedThisYear()
+            else -> songStatRepository.getMostPlayedWithStat()
+        }
+    }
+
     override fun onSharedPreferenceChanged(sharedPreferences: SharedPreferences?, key: String?) {
         super.onSharedPreferenceChanged(sharedPreferences, key)
         when (key) {
             LibraryPreferences.MINIMUM_AUDIO_SIZE,
-            LibraryPreferences.MINIMUM_AUDIO_LENGTH -> loadData()
+            LibraryPreferences.MINIMUM_AUDIO_LENGTH,
+            MostPlayedPreferences.PERIOD -> loadData()
         }
     }
 
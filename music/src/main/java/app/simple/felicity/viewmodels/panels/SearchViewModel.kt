@@ -8,10 +8,6 @@ import app.simple.felicity.extensions.viewmodels.WrappedViewModel
 import app.simple.felicity.models.SearchCategoryFilter
 import app.simple.felicity.models.SearchResults
 import app.simple.felicity.preferences.SearchPreferences
-import app.simple.felicity.repository.models.Album
-import app.simple.felicity.repository.models.Artist
-import app.simple.felicity.repository.models.Audio
-import app.simple.felicity.repository.models.Genre
 import app.simple.felicity.repository.repositories.AudioRepository
 import app.simple.felicity.repository.sort.SearchSort.searchSorted
 import dagger.hilt.android.lifecycle.HiltViewModel
@@ -28,12 +24,14 @@ import kotlinx.coroutines.flow.distinctUntilChanged
 import kotlinx.coroutines.flow.flatMapLatest
 import kotlinx.coroutines.flow.flowOf
 import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.flow.map
 import kotlinx.coroutines.launch
 import javax.inject.Inject
 
 /**
  * ViewModel for the Search panel. Searches all audio fields (title, artist, album,
- * genre, composer) and groups results into [SearchResults] by category.
+ * album artist, genre, composer, path) through a single full-text query and groups
+ * results into [SearchResults] by category.
  * A 300 ms debounce prevents excessive queries while the user is typing.
  * Category visibility is driven by [SearchCategoryFilter] which is persisted
  * through [SearchPreferences].
@@ -71,14 +69,8 @@ class SearchViewModel @Inject constructor(
                 if (query.isBlank()) {
                     flowOf(SearchResults.empty())
                 } else {
-                    combine(
-                            audioRepository.searchByTitleFlow(query),
-                            audioRepository.searchArtistsFlow(query),
-                            audioRepository.searchByAlbumFlow(query),
-                            audioRepository.searchByGenreFlow(query),
-                            audioRepository.searchByComposerFlow(query)
-                    ) { byTitle, artists, byAlbum, byGenre, byComposer ->
-                        buildSearchResults(byTitle, artists, byAlbum, byGenre, byComposer, filter)
+                    audioRepository.searchLibraryFlow(query).map { hits ->
+                        buildSearchResults(hits, filter)
                     }
                 }
             }.catch { e ->
@@ -93,65 +85,17 @@ class SearchViewModel @Inject constructor(
     }
 
     /**
-     * Aggregates raw per-field query results into a [SearchResults] instance,
+     * Turns the categorized full-text hits into a [SearchResults] instance,
      * applying the current [SearchCategoryFilter] to suppress disabled categories.
+     * Songs still follow the user's chosen search sort; the other categories keep
+     * their relevance order.
      */
-    private fun buildSearchResults(
-            byTitle: List<Audio>,
-            artists: List<Artist>,
-            byAlbum: List<Audio>,
-            byGenre: List<Audio>,
-            byComposer: List<Audio>,
-            filter: SearchCategoryFilter): SearchResults {
-
-        val allAudio = (byTitle + byAlbum + byGenre + byComposer)
-            .distinctBy { it.id }
-            .searchSorted()
-
-        val songs = if (filter.songsEnabled) allAudio else emptyList()
-
-        val albums = if (filter.albumsEnabled) {
-            byAlbum.groupBy { it.album }
-                .mapNotNull { (albumName, songs) ->
-                    if (albumName.isNullOrEmpty()) return@mapNotNull null
-                    val firstSong = songs.firstOrNull() ?: return@mapNotNull null
-                    Album(
-                            id = "${albumName}_${firstSong.artist}".hashCode().toLong(),
-                            name = albumName,
-                            artist = firstSong.artist,
-                            artistId = firstSong.artist?.hashCode()?.toLong() ?: 0L,
-                            songCount = songs.size,
-                            songPaths = songs.map { it.uri }
-                    )
-                }
-                .sortedBy { it.name?.lowercase() }
-        } else {
-            emptyList()
-        }
-
-        val filteredArtists = if (filter.artistsEnabled) artists else emptyList()
-
-        val genres = if (filter.genresEnabled) {
-            byGenre.groupBy { it.genre }
-                .mapNotNull { (genreName, songs) ->
-                    if (genreName.isNullOrEmpty()) return@mapNotNull null
-                    Genre(
-                            id = genreName.hashCode().toLong(),
-                            name = genreName,
-                            songPaths = songs.map { it.uri },
-                            songCount = songs.size
-                    )
-                }
-                .sortedBy { it.name?.lowercase() }
-        } else {
-            emptyList()
-        }
-
+    private fun buildSearchResults(hits: AudioRepository.SearchHits, filter: SearchCategoryFilter): SearchResults {
         return SearchResults(
-                songs = songs,
-                albums = albums,
-                artists = filteredArtists,
-                genres = genres
+                songs = if (filter.songsEnabled) hits.songs.searchSorted() else emptyList(),
+                albums = if (filter.albumsEnabled) hits.albums else emptyList(),
+                artists = if (filter.artistsEnabled) hits.artists else emptyList(),
+                genres = if (filter.genresEnabled) hits.genres else emptyList()
         )
     }
 
@@ -4,21 +4,29 @@ import android.app.Application
 import android.content.SharedPreferences
 import android.util.Log
 import androidx.lifecycle.viewModelScope
+import androidx.paging.PagingData
+import androidx.paging.cachedIn
 import app.simple.felicity.extensions.viewmodels.WrappedViewModel
 import app.simple.felicity.preferences.LibraryPreferences
 import app.simple.felicity.preferences.SongsPreferences
 import app.simple.felicity.repository.models.Audio
+import app.simple.felicity.repository.models.AudioListRow
+import app.simple.felicity.repository.models.AudioListSummary
 import app.simple.felicity.repository.repositories.AudioRepository
 import app.simple.felicity.repository.sort.SongSort.sorted
 import dagger.hilt.android.lifecycle.HiltViewModel
 import kotlinx.coroutines.Dispatchers
-import kotlinx.coroutines.Job
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.SharingStarted
 import kotlinx.coroutines.flow.StateFlow
-import kotlinx.coroutines.flow.asStateFlow
 import kotlinx.coroutines.flow.catch
+import kotlinx.coroutines.flow.flatMapLatest
 import kotlinx.coroutines.flow.flowOn
-import kotlinx.coroutines.launch
+import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.flow.stateIn
+import kotlinx.coroutines.flow.update
 import javax.inject.Inject
 
 @HiltViewModel
@@ -28,44 +36,77 @@ class SongsViewModel @Inject constructor(
 
     private var carouselPosition = 0
 
-    private val _songs = MutableStateFlow<List<Audio>>(emptyList())
-    val songs: StateFlow<List<Audio>> = _songs.asStateFlow()
+    /**
+     * Bumped whenever the sort or the library filters change so every list flow below
+     * starts over with the new query; plain table edits are already picked up by Room.
+     */
+    private val queryKey = MutableStateFlow(0)
 
-    /** Raw unordered list from the database, kept so we can re-sort without a DB round-trip. */
-    private var rawAudioList: List<Audio> = emptyList()
-
-    private var loadJob: Job? = null
+    /**
+     * Paged, slim rows for the songs list. This never holds the whole library in memory,
+     * only the pages around what is on screen. Resolve rows into full songs with
+     * [loadSongs] when they are actually needed.
+     */
+    @OptIn(ExperimentalCoroutinesApi::class)
+    val pagedSongs: Flow<PagingData<AudioListRow>> = queryKey
+        .flatMapLatest {
+            audioRepository.getAudioRowsPaged(SongsPreferences.getSongSort(), SongsPreferences.getSortingStyle())
+        }
+        .cachedIn(viewModelScope)
 
-    init {
-        loadData()
-    }
+    /** Count and total length for the header, counted by SQLite. */
+    @OptIn(ExperimentalCoroutinesApi::class)
+    val summary: StateFlow<AudioListSummary?> = queryKey
+        .flatMapLatest { audioRepository.getAudioListSummary() }
+        .catch { exception -> Log.e(TAG, "Error loading song summary", exception) }
+        .stateIn(
+                scope = viewModelScope,
+                started = SharingStarted.WhileSubscribed(5_000),
+                initialValue = null
+        )
 
-    private fun loadData() {
-        loadJob?.cancel()
-        loadJob = viewModelScope.launch {
-            audioRepository.getAllAudio()
-                .catch { exception ->
-                    Log.e(TAG, "Error loading songs", exception)
-                    emit(mutableListOf())
-                }
-                .flowOn(Dispatchers.IO)
-                .collect { audioList ->
-                    rawAudioList = audioList
-                    val sortedSongs = audioList.sorted()
-                    _songs.value = sortedSongs
-                    Log.d(TAG, "loadData: ${sortedSongs.size} songs loaded")
-                }
+    /** One key per row of [pagedSongs], in the same order, for the section fast scroller. */
+    @OptIn(ExperimentalCoroutinesApi::class)
+    val sectionKeys: StateFlow<List<String>> = queryKey
+        .flatMapLatest {
+            audioRepository.getAudioSectionKeys(SongsPreferences.getSongSort(), SongsPreferences.getSortingStyle())
         }
-    }
+        .catch { exception -> Log.e(TAG, "Error loading song sections", exception) }
+        .stateIn(
+                scope = viewModelScope,
+                started = SharingStarted.WhileSubscribed(5_000),
+                initialValue = emptyList()
+        )
 
-    private fun resort() {
-        viewModelScope.launch(Dispatchers.Default) {
-            val sortedSongs = rawAudioList.sorted()
-            _songs.value = sortedSongs
-            Log.d(TAG, "resort: ${sortedSongs.size} songs re-sorted")
+    /**
+     * The whole sorted library as full songs, for [app.simple.felicity.ui.panels.ArtFlow],
+     * whose carousel really does need every cover at hand. Only built while something is
+     * watching, so opening the plain Songs list doesn't pay for it.
+     */
+    @OptIn(ExperimentalCoroutinesApi::class)
+    val songs: StateFlow<List<Audio>> = queryKey
+        .flatMapLatest { audioRepository.getAllAudio() }
+        .map { audioList -> audioList.sorted() }
+        .catch { exception ->
+            Log.e(TAG, "Error loading songs", exception)
+            emit(emptyList())
         }
-    }
+        .flowOn(Dispatchers.Default)
+        .stateIn(
+                scope = viewModelScope,
+                started = SharingStarted.WhileSubscribed(5_000),
+                initialValue = emptyList()
+        )
 
+    /**
+     * Full songs of the list in the order it is shown, for handing to the play queue or
+     * the shuffler. Only the ids are read in list order; the rows themselves are then
+     * fetched by id in chunks.
+     */
+    suspend fun loadSongs(): List<Audio> {
+        val ids = audioRepository.getAudioIds(SongsPreferences.getSongSort(), SongsPreferences.getSortingStyle())
+        return audioRepository.getAudioByIds(ids)
+    }
 
     fun setCarouselPosition(position: Int) {
         carouselPosition = position
@@ -79,14 +120,11 @@ class SongsViewModel @Inject constructor(
         super.onSharedPreferenceChanged(sharedPreferences, s)
         when (s) {
             SongsPreferences.SONG_SORT,
-            SongsPreferences.SORTING_STYLE -> {
-                // Only the sort order changed — re-sort the cached list, no DB query needed.
-                resort()
-            }
+            SongsPreferences.SORTING_STYLE,
             LibraryPreferences.MINIMUM_AUDIO_SIZE,
             LibraryPreferences.MINIMUM_AUDIO_LENGTH -> {
-                // Filter criteria changed — need a fresh query from the database.
-                loadData()
+                // The sort or the filters changed — restart every list query.
+                queryKey.update { it + 1 }
             }
         }
     }
@@ -4,7 +4,6 @@ import android.app.Application
 import android.os.Handler
 import android.os.Looper
 import android.util.Log
-import androidx.core.net.toUri
 import androidx.lifecycle.LiveData
 import androidx.lifecycle.MutableLiveData
 import androidx.lifecycle.viewModelScope
@@ -16,6 +15,7 @@ import app.simple.felicity.decorations.lrc.model.LrcEntry
 import app.simple.felicity.decorations.lrc.parser.LrcParser
 import app.simple.felicity.decorations.lrc.parser.LyricsParseException
 import app.simple.felicity.engine.managers.MediaPlaybackManager
+import app.simple.felicity.engine.utils.MediaItemUtils.setAudioSource
 import app.simple.felicity.extensions.viewmodels.WrappedViewModel
 import app.simple.felicity.models.LrcEntryModel
 import app.simple.felicity.repository.models.Audio
@@ -207,7 +207,7 @@ class LrcEditorViewModel @AssistedInject constructor(
 
     private fun initLocalPlayer() {
         localPlayer = ExoPlayer.Builder(getApplication()).build().also { player ->
-            player.setMediaItem(MediaItem.fromUri(audio.uri.toUri()))
+            player.setMediaItem(MediaItem.Builder().setAudioSource(audio).build())
             player.prepare()
             player.addListener(object : Player.Listener {
                 override fun onPlaybackStateChanged(playbackState: Int) {
@@ -227,7 +227,7 @@ class LrcEditorViewModel @AssistedInject constructor(
 
     private fun loadLrcEntries() {
         viewModelScope.launch(Dispatchers.IO) {
-            val result = lrcRepository.loadLrcFromFile(audio.uri)
+            val result = lrcRepository.loadLrc(audio)
             val lrcContent = result.getOrNull()
             if (!lrcContent.isNullOrBlank()) {
                 try {
@@ -139,7 +139,7 @@ class LrcSearchViewModel @Inject constructor(
         viewModelScope.launch {
             _isLoading.value = true
 
-            val result = lrcRepository.loadLrcFromFile(audio.uri)
+            val result = lrcRepository.loadLrc(audio)
 
             result.onSuccess { lrcContent ->
                 if (lrcContent != null) {
@@ -8,11 +8,10 @@ import androidx.lifecycle.LiveData
 import androidx.lifecycle.MutableLiveData
 import androidx.lifecycle.viewModelScope
 import app.simple.felicity.decorations.lrc.model.LrcData
-import app.simple.felicity.decorations.lrc.parser.ILyricsParser
 import app.simple.felicity.decorations.lrc.parser.LrcParser
 import app.simple.felicity.decorations.lrc.parser.LyricsParseException
+import app.simple.felicity.decorations.lrc.parser.LyricsParser
 import app.simple.felicity.decorations.lrc.parser.TxtParser
-import app.simple.felicity.decorations.lrc.parser.WordLrcParser
 import app.simple.felicity.engine.managers.MediaPlaybackManager
 import app.simple.felicity.extensions.viewmodels.WrappedViewModel
 import app.simple.felicity.managers.LyricsLoadingStatus
@@ -102,19 +101,6 @@ class ModalLyricsViewModel @AssistedInject constructor(
     /** Current sync offset to add to every updateTime call. */
     fun getSyncOffsetMs(): LiveData<Long> = syncOffsetMs
 
-    /**
-     * Picks the right parser for the given raw lyrics string.
-     *
-     * We try the most specific format first (word-by-word), then standard LRC,
-     * and finally fall back to plain text so nothing is ever left unhandled.
-     * Think of it as a parser beauty pageant — the most talented wins.
-     */
-    private fun selectParser(content: String): ILyricsParser = when {
-        WordLrcParser().canParse(content) -> WordLrcParser()
-        LrcParser().canParse(content) -> LrcParser()
-        else -> TxtParser()
-    }
-
     fun loadLrcData() {
         val currentSongPath = (audio ?: MediaPlaybackManager.getCurrentSong())?.uri
 
@@ -150,13 +136,13 @@ class ModalLyricsViewModel @AssistedInject constructor(
                     return@launch
                 }
 
-                val loadResult = lrcRepository.loadLrcFromFile(currentSong.uri)
+                val loadResult = lrcRepository.loadLrc(currentSong)
 
                 loadResult.onSuccess { lrcContent ->
                     if (lrcContent != null) {
                         Log.d(TAG, "Existing LRC file found for ${currentSong.title}, loading lyrics.")
                         try {
-                            val lrcDataLoaded = selectParser(lrcContent).parse(lrcContent)
+                            val lrcDataLoaded = LyricsParser().parse(lrcContent)
                             lrcData.postValue(lrcDataLoaded)
                         } catch (e: LyricsParseException) {
                             e.printStackTrace()
@@ -164,7 +150,7 @@ class ModalLyricsViewModel @AssistedInject constructor(
                         }
                     } else {
                         Log.d(TAG, "No existing LRC file found for ${currentSong.title}, checking for TXT sidecar.")
-                        val txtResult = lrcRepository.loadTxtFromFile(currentSong.uri)
+                        val txtResult = lrcRepository.loadTxt(currentSong)
                         val txtContent = txtResult.getOrNull()
                         if (!txtContent.isNullOrBlank()) {
                             Log.d(TAG, "TXT sidecar found for ${currentSong.title}, loading plain-text lyrics.")
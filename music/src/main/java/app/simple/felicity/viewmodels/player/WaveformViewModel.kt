@@ -2,7 +2,6 @@ package app.simple.felicity.viewmodels.player
 
 import android.app.Application
 import android.util.Log
-import androidx.core.net.toUri
 import androidx.lifecycle.LiveData
 import androidx.lifecycle.MutableLiveData
 import androidx.lifecycle.viewModelScope
@@ -10,9 +9,8 @@ import app.simple.felicity.extensions.viewmodels.WrappedViewModel
 import app.simple.felicity.repository.database.instances.AudioDatabase
 import app.simple.felicity.repository.models.Audio
 import app.simple.felicity.repository.models.WaveformData
+import app.simple.felicity.utils.WaveformExtractor
 import com.linc.amplituda.Amplituda
-import com.linc.amplituda.Cache
-import com.linc.amplituda.Compress
 import dagger.hilt.android.lifecycle.HiltViewModel
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.Job
@@ -32,7 +30,8 @@ import kotlin.random.Random.Default.nextFloat
  * row exists does the ViewModel call [Amplituda] to decode the file, after
  * which the result is saved to the database so the next play is instant.
  *
- * Values are normalized to [0.0, 1.0], with one entry per second of audio.
+ * Values are normalized to [0.0, 1.0], with one entry per second of audio, or
+ * the coarser level of the stored pyramid that matches the bars the view can use.
  *
  * @author Hamza417
  */
@@ -43,6 +42,7 @@ class WaveformViewModel @Inject constructor(
 
     private val waveformData: MutableLiveData<FloatArray> = MutableLiveData()
     private var currentUri: String? = null
+    private var currentBars: Int = Int.MAX_VALUE
     private var loadJob: Job? = null
     private var amplitudaInstance: Amplituda? = null
 
@@ -52,16 +52,24 @@ class WaveformViewModel @Inject constructor(
      */
     fun getWaveformData(): LiveData<FloatArray> = waveformData
 
-    fun loadWaveform(audio: Audio) {
+    /**
+     * Loads the waveform of [audio] and posts it to [getWaveformData].
+     *
+     * @param bars the most bars the view can make use of; a long track gets the
+     *             pyramid level that fits (see [WaveformData.levelFor]) instead of
+     *             its full resolution.
+     */
+    fun loadWaveform(audio: Audio, bars: Int = Int.MAX_VALUE) {
         if (amplitudaInstance == null) {
             amplitudaInstance = Amplituda(getApplication())
         }
 
         // Prevent redundant loading
-        if (audio.uri == currentUri && waveformData.value?.isNotEmpty() == true) return
+        if (audio.uri == currentUri && bars == currentBars && waveformData.value?.isNotEmpty() == true) return
 
         // Track the current request to handle stale extractions
         currentUri = audio.uri
+        currentBars = bars
 
         viewModelScope.launch(Dispatchers.IO) {
             runCatching {
@@ -74,7 +82,7 @@ class WaveformViewModel @Inject constructor(
                 // DB-first: try to get the cached samples before touching the audio file
                 val cached = dao.getWaveformByHash(audio.hash)
                 if (cached != null) {
-                    val samples = cached.toFloatArray()
+                    val samples = cached.levelFor(bars)?.max ?: FloatArray(0)
                     if (samples.isNotEmpty() && currentUri == audio.uri) {
                         waveformData.postValue(samples)
                         return@launch
@@ -82,77 +90,30 @@ class WaveformViewModel @Inject constructor(
                 }
 
                 // Nothing in the DB yet — decode the file and save the result
-                val parcelFileDescriptor = getApplication<Application>()
-                    .contentResolver.openFileDescriptor(audio.uri.toUri(), "r")
-                    ?: throw IllegalArgumentException("Unable to open URI: ${audio.uri}")
-
                 try {
-                    val rawAmplitudes = amplitudaInstance!!
-                        .processAudio(
-                                parcelFileDescriptor,
-                                Compress.withParams(Compress.AVERAGE, BARS_PER_SECOND),
-                                Cache.withParams(Cache.REUSE, audio.hash.toString())
-                        )
-                        .get() // Blocking call
-                        .amplitudesAsList()
-
-                    parcelFileDescriptor.close()
+                    val sampled = WaveformExtractor.extract(getApplication(), amplitudaInstance!!, audio)
 
                     if (currentUri != audio.uri) return@launch
 
-                    if (rawAmplitudes.isEmpty()) {
-                        waveformData.postValue(getRandomGhostData(audio.duration)) // Fallback to ghost data if extraction yields nothing
+                    if (sampled == null) {
+                        // Nothing usable came out of the file (or it was silent) — show random
+                        // ghost data rather than a flatline.
+                        waveformData.postValue(getRandomGhostData(audio.duration))
                         return@launch
                     }
 
-                    // --- Deterministic Time-Based Downsampling ---
-
-                    val expectedBars = ((audio.duration / 1000f) * BARS_PER_SECOND).toInt().coerceAtLeast(1)
-
-                    val chunkedAmplitudes = FloatArray(expectedBars)
-                    val chunkSize = rawAmplitudes.size.toFloat() / expectedBars
-
-                    for (i in 0 until expectedBars) {
-                        val start = (i * chunkSize).toInt()
-                        val end = ((i + 1) * chunkSize).toInt().coerceAtMost(rawAmplitudes.size)
-
-                        var peakInChunk = 0
-                        for (j in start until end) {
-                            if (rawAmplitudes[j] > peakInChunk) {
-                                peakInChunk = rawAmplitudes[j]
-                            }
-                        }
-                        chunkedAmplitudes[i] = peakInChunk.toFloat()
-                    }
-
-                    // --- Final Normalization ---
-
-                    val maxPeak = chunkedAmplitudes.maxOrNull() ?: 1f
-                    val sampled = if (maxPeak > 0f) {
-                        FloatArray(expectedBars) { i ->
-                            chunkedAmplitudes[i] / maxPeak
-                        }
-                    } else {
-                        getRandomGhostData(audio.duration) // If all peaks are zero, return random ghost data to avoid a flatline
-                    }
-
                     // Persist to DB so the next play of this track skips decoding entirely
-                    dao.insertWaveform(WaveformData.fromFloatArray(audio.hash, sampled))
+                    val row = WaveformData.fromFloatArray(audio.hash, sampled)
+                    dao.insertWaveform(row)
 
-                    // Push the perfectly scaled array safely to the UI thread
-                    waveformData.postValue(sampled)
+                    // Push the level that fits the view safely to the UI thread
+                    waveformData.postValue(row.levelFor(bars)?.max ?: sampled)
 
                 } catch (e: Exception) {
                     Log.e(TAG, "Amplituda extraction failed on IO thread for ${audio.title}", e)
                     if (currentUri == audio.uri) {
                         postFlatData(audio) // Show the ghost waveform if extraction fails
                     }
-                } finally {
-                    try {
-                        parcelFileDescriptor.close()
-                    } catch (e: Exception) {
-                        Log.e(TAG, "Failed to close ParcelFileDescriptor for ${audio.uri}", e)
-                    }
                 }
             }.getOrElse {
                 Log.e(TAG, "Unexpected error in loadWaveform for ${audio.title}", it)
@@ -184,7 +145,7 @@ class WaveformViewModel @Inject constructor(
 
     private fun getRandomGhostData(durationMs: Long): FloatArray {
         // MUST MATCH the density of your actual extraction function
-        val expectedBars = ((durationMs / 1000f) * BARS_PER_SECOND).toInt().coerceAtLeast(1)
+        val expectedBars = ((durationMs / 1000f) * WaveformExtractor.BARS_PER_SECOND).toInt().coerceAtLeast(1)
 
         return FloatArray(expectedBars) { i ->
             // Calculate normalized progress through the song (0.0 to 1.0)
@@ -211,7 +172,5 @@ class WaveformViewModel @Inject constructor(
 
     companion object {
         private const val TAG = "WaveformViewModel"
-
-        private const val BARS_PER_SECOND = 1
     }
 }
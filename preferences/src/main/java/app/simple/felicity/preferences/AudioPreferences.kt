@@ -14,6 +14,8 @@ object AudioPreferences {
     const val SKIP_SILENCE = "skip_silence"
     const val IS_STEREO_DOWNMIX_FORCED = "is_stereo_downmix_forced"
     const val IS_USB_DAC = "is_usb_dac1"
+    const val CROSSFADE_DURATION = "crossfade_duration"
+    const val CROSSFADE_SKIP_SILENT_TAIL = "crossfade_skip_silent_tail"
 
     /**
      * The key used to store the user's chosen audio output sink.
@@ -41,6 +43,9 @@ object AudioPreferences {
      */
     const val SINK_OBOE = 2
 
+    /** Longest crossfade the user can pick, in milliseconds. */
+    const val MAX_CROSSFADE_DURATION = 12_000
+
     // --------------------------------------------------------------------------------------------- //
 
     fun setAudioDecoder(decoder: Int) {
@@ -140,4 +145,36 @@ object AudioPreferences {
     fun isUsbDacEnabled(): Boolean {
         return SharedPreferences.getSharedPreferences().getBoolean(IS_USB_DAC, false)
     }
+
+    // --------------------------------------------------------------------------------------------- //
+
+    /**
+     * Saves how long the overlap between two songs should be, in milliseconds.
+     * 0 turns crossfading off and leaves plain gapless transitions.
+     */
+    fun setCrossfadeDuration(durationMs: Int) {
+        SharedPreferences.getSharedPreferences().edit {
+            putInt(CROSSFADE_DURATION, durationMs.coerceIn(0, MAX_CROSSFADE_DURATION))
+        }
+    }
+
+    fun getCrossfadeDuration(): Int {
+        return SharedPreferences.getSharedPreferences().getInt(CROSSFADE_DURATION, 0)
+    }
+
+    fun isCrossfadeEnabled(): Boolean = getCrossfadeDuration() > 0
+
+    // --------------------------------------------------------------------------------------------- //
+
+    /**
+     * Whether a crossfade should start before a song's silent outro (as found in its cached
+     * waveform) instead of fading across the silence.
+     */
+    fun setCrossfadeSkipSilentTail(enabled: Boolean) {
+        SharedPreferences.getSharedPreferences().edit { putBoolean(CROSSFADE_SKIP_SILENT_TAIL, enabled) }
+    }
+
+    fun isCrossfadeSkipSilentTailEnabled(): Boolean {
+        return SharedPreferences.getSharedPreferences().getBoolean(CROSSFADE_SKIP_SILENT_TAIL, true)
+    }
 }
@@ -160,6 +160,20 @@ object EqualizerPreferences {
     const val REPLAY_GAIN_MODE_TRACK = "track"
     const val REPLAY_GAIN_MODE_ALBUM = "album"
 
+    /**
+     * Boolean flag that lets the app measure songs without ReplayGain tags in the
+     * background (EBU R128) and use the measured gain in place of the missing tag.
+     * Default true — it only matters while [AUTO_REPLAY_GAIN_ENABLED] is on anyway.
+     */
+    const val LOUDNESS_ANALYSIS_ENABLED = "eq_loudness_analysis_enabled"
+
+    /**
+     * Boolean flag that writes the measured gain back into the files as REPLAYGAIN_*
+     * tags, so other players benefit too. Default false — we never touch the user's
+     * files unless asked to.
+     */
+    const val LOUDNESS_ANALYSIS_WRITE_TAGS = "eq_loudness_analysis_write_tags"
+
     /**
      * Which equalizer UI mode is currently active: the classic 10-band graphic EQ or
      * the fully parametric EQ where the user controls each filter's frequency and Q.
@@ -479,6 +493,22 @@ object EqualizerPreferences {
         return SharedPreferences.getSharedPreferences().getBoolean(AUTO_REPLAY_GAIN_ENABLED, true)
     }
 
+    fun setLoudnessAnalysisEnabled(enabled: Boolean) {
+        SharedPreferences.getSharedPreferences().edit { putBoolean(LOUDNESS_ANALYSIS_ENABLED, enabled) }
+    }
+
+    fun isLoudnessAnalysisEnabled(): Boolean {
+        return SharedPreferences.getSharedPreferences().getBoolean(LOUDNESS_ANALYSIS_ENABLED, true)
+    }
+
+    fun setLoudnessAnalysisWriteTags(enabled: Boolean) {
+        SharedPreferences.getSharedPreferences().edit { putBoolean(LOUDNESS_ANALYSIS_WRITE_TAGS, enabled) }
+    }
+
+    fun isLoudnessAnalysisWriteTagsEnabled(): Boolean {
+        return SharedPreferences.getSharedPreferences().getBoolean(LOUDNESS_ANALYSIS_WRITE_TAGS, false)
+    }
+
     fun setPitchSpeedLocked(locked: Boolean) {
         SharedPreferences.getSharedPreferences().edit { putBoolean(PITCH_SPEED_LOCKED, locked) }
     }
@@ -7,8 +7,8 @@ import app.simple.felicity.core.singletons.AppOrientation
 import app.simple.felicity.manager.SharedPreferences
 
 /**
- * Persisted display preferences for the Most Played panel (layout mode),
- * with separate landscape and portrait values.
+ * Persisted display preferences for the Most Played panel: the layout mode, with
+ * separate landscape and portrait values, and the stretch of time the list covers.
  *
  * @author Hamza417
  */
@@ -16,6 +16,12 @@ object MostPlayedPreferences {
 
     const val GRID_SIZE_PORTRAIT = "most_played_grid_size_portrait1"
     const val GRID_SIZE_LANDSCAPE = "most_played_grid_size_landscape1"
+    const val PERIOD = "most_played_period"
+
+    const val PERIOD_ALL_TIME = 0
+    const val PERIOD_THIS_WEEK = 1
+    const val PERIOD_THIS_MONTH = 2
+    const val PERIOD_THIS_YEAR = 3
 
     /**
      * Returns the current [CommonPreferencesConstants.LayoutMode] for the given orientation.
@@ -42,4 +48,21 @@ object MostPlayedPreferences {
             SharedPreferences.getSharedPreferences().edit { putString(GRID_SIZE_LANDSCAPE, mode.name) }
         }
     }
+
+    // ----------------------------------------------------------------------------------------- //
+
+    /**
+     * Returns which stretch of time the list is counted over, one of the PERIOD_* constants.
+     * Defaults to [PERIOD_ALL_TIME], which is what the panel always showed before.
+     */
+    fun getPeriod(): Int {
+        return SharedPreferences.getSharedPreferences()
+            .getInt(PERIOD, PERIOD_ALL_TIME)
+    }
+
+    fun setPeriod(value: Int) {
+        SharedPreferences.getSharedPreferences().edit {
+            putInt(PERIOD, value)
+        }
+    }
 }
@@ -0,0 +1,76 @@
+package app.simple.felicity.repository
+
+import androidx.room.testing.MigrationTestHelper
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import app.simple.felicity.repository.database.instances.AudioDatabase
+import app.simple.felicity.repository.models.WaveformData
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Upgrades a version 22 database, the last one shipped before the library index work,
+ * all the way to the current schema through [AudioDatabase.MIGRATIONS] and lets Room
+ * check every table, column and index against the exported schema JSONs.
+ *
+ * A few rows are written at version 22 first so the migrations that move data around
+ * (the waveform blob conversion and the FTS rebuild) are checked too, not just the DDL.
+ *
+ * @author Hamza417
+ */
+@RunWith(AndroidJUnit4::class)
+class AudioDatabaseMigrationTest {
+
+    @get:Rule
+    val helper = MigrationTestHelper(
+            InstrumentationRegistry.getInstrumentation(),
+            AudioDatabase::class.java)
+
+    @Test
+    fun migrate22To32() {
+        helper.createDatabase(TEST_DB, 22).use { db ->
+            db.execSQL("""
+                INSERT INTO `audio` (`id`, `name`, `hash`, `title`, `artist`, `uri`, `track`, `album`, `size`,
+                    `bitrate`, `duration`, `genre`, `date_added`, `date_modified`, `date_taken`, `album_id`,
+                    `sampling_rate`, `bit_per_sample`, `path`)
+                VALUES (1, 'song.flac', 42, 'Migrated Song', 'Some Artist', 'content://tree/document/song.flac', 1,
+                    'Some Album', 1024, 900, 180000, 'Jazz', 0, 0, 0, 0, 44100, 16, '/Music/song.flac')
+            """.trimIndent())
+            db.execSQL("INSERT INTO `song_stats` (`audioHash`, `lastPlayed`, `playCount`, `skipCount`, `replayCount`) VALUES (42, 1000, 3, 0, 0)")
+            db.execSQL("INSERT INTO `waveform_data` (`audioHash`, `amplitudes`) VALUES (42, '0.1,0.5,0.9,0.3')")
+        }
+
+        helper.runMigrationsAndValidate(TEST_DB, 32, true, *AudioDatabase.MIGRATIONS).use { db ->
+            db.query("SELECT `title`, `cue_source_uri`, `cue_start`, `cue_end` FROM `audio` WHERE `id` = 1").use { cursor ->
+                assertTrue(cursor.moveToFirst())
+                assertEquals("Migrated Song", cursor.getString(0))
+                assertTrue(cursor.isNull(1))
+                assertEquals(0L, cursor.getLong(2))
+                assertEquals(0L, cursor.getLong(3))
+            }
+
+            db.query("SELECT `playCount` FROM `song_stats` WHERE `audioHash` = 42").use { cursor ->
+                assertTrue(cursor.moveToFirst())
+                assertEquals(3, cursor.getInt(0))
+            }
+
+            db.query("SELECT `samples` FROM `waveform_data` WHERE `audioHash` = 42").use { cursor ->
+                assertTrue(cursor.moveToFirst())
+                val waveform = WaveformData(42L, cursor.getBlob(0))
+                assertEquals(4, waveform.toFloatArray().size)
+            }
+
+            db.query("SELECT `rowid` FROM `audio_fts` WHERE `audio_fts` MATCH 'migrated'").use { cursor ->
+                assertTrue("the FTS index should have been rebuilt from the existing rows", cursor.moveToFirst())
+                assertEquals(1L, cursor.getLong(0))
+            }
+        }
+    }
+
+    companion object {
+        private const val TEST_DB = "migration-test.db"
+    }
+}
@@ -30,9 +30,10 @@ object AlbumCover {
      *
      * @param context Android context used for MediaStore and SAF queries.
      * @param album Album model whose [Album.songPaths] drive the lookup.
+     * @param maxSize Longest edge the cover will be drawn at, used to pick a stored thumbnail
      * @return Bitmap of album cover, or a placeholder if no artwork is found.
      */
-    fun load(context: Context, album: Album): Bitmap {
+    fun load(context: Context, album: Album, maxSize: Int = 0): Bitmap {
         if (album.songPaths.isNotEmpty()) {
             if (LibraryPreferences.isUseMediaStoreArtwork()) {
                 // Primary: grab the pre-indexed album art straight from MediaStore.
@@ -45,7 +46,7 @@ object AlbumCover {
             }
 
             // Fallback: dig through the audio file tags for embedded artwork.
-            val embeddedArtwork = BaseCoverLoader.loadEmbeddedArtworkFromPaths(context, album.songPaths)
+            val embeddedArtwork = BaseCoverLoader.loadEmbeddedArtworkFromPaths(context, album.songPaths, maxSize = maxSize)
             if (embeddedArtwork != null) {
                 Log.d(TAG, "Loaded album art from embedded metadata for: ${album.name}")
                 return embeddedArtwork
@@ -44,9 +44,10 @@ object ArtistCover {
      *
      * @param context Android context used for file I/O, MediaStore, and SAF queries.
      * @param artist Artist model whose [Artist.songPaths] drive the lookup.
+     * @param maxSize Longest edge the cover will be drawn at, used to pick a stored thumbnail
      * @return Bitmap of artist cover, or a placeholder if no artwork is found.
      */
-    fun load(context: Context, artist: Artist): Bitmap {
+    fun load(context: Context, artist: Artist, maxSize: Int = 0): Bitmap {
         val artistName = artist.name ?: ""
 
         // Check the persistent files directory before touching the network.
@@ -81,7 +82,7 @@ object ArtistCover {
                 }
             }
 
-            val embeddedArtwork = BaseCoverLoader.loadEmbeddedArtworkFromPaths(context, artist.songPaths)
+            val embeddedArtwork = BaseCoverLoader.loadEmbeddedArtworkFromPaths(context, artist.songPaths, maxSize = maxSize)
             if (embeddedArtwork != null) {
                 Log.d(TAG, "Loaded artist art from embedded metadata for: $artistName")
                 return embeddedArtwork
@@ -0,0 +1,250 @@
+package app.simple.felicity.repository.covers
+
+import android.content.Context
+import android.graphics.Bitmap
+import android.graphics.BitmapFactory
+import android.os.Build
+import android.util.Log
+import androidx.core.graphics.scale
+import java.io.File
+import kotlin.math.max
+import kotlin.math.roundToInt
+
+/**
+ * A small on-disk store of pre-encoded WebP thumbnails for embedded artwork, keyed by
+ * the song's content hash and a size bucket.
+ *
+ * Pulling the picture out of the tags means opening the file, letting TagLib parse the
+ * whole tag block, and decoding a cover that is often 3000 px or more — easily 100 ms per
+ * song. Doing that for every cell while fast scrolling an album grid is what made it
+ * stutter. With this store the embedded cover is extracted once per song; every later
+ * request for it is a single small file read.
+ *
+ * Each song gets up to three files, one per bucket in [BUCKETS], written the first time
+ * its artwork is extracted. Songs we already know have no embedded artwork get an empty
+ * marker file so they skip the tag parsing too. Because the key is the content hash, the
+ * same song in two folders shares its thumbnails, and an edited file simply gets a new
+ * key — [prune] clears out the leftovers after a library scan.
+ *
+ * @author Hamza417
+ */
+internal object ArtworkThumbnailStore {
+
+    private const val TAG = "ArtworkThumbnailStore"
+    private const val DIRECTORY = "artwork_thumbnails"
+    private const val EXTENSION = ".webp"
+    private const val MISSING_EXTENSION = ".none"
+    private const val QUALITY = 85
+
+    /**
+     * Longest edge of each stored thumbnail: grid cells, the mini player and lists, and
+     * the full-screen player.
+     */
+    private val BUCKETS = intArrayOf(128, 512, 1024)
+
+    /**
+     * Returns the stored thumbnail of the song with [hash] that best fits [maxSize], or
+     * null when nothing is stored yet. A larger bucket is used when the matching one is
+     * missing, but never a smaller one.
+     *
+     * @param maxSize Longest edge the caller is going to draw at; 0 or less means the largest.
+     */
+    fun get(context: Context, hash: Long, maxSize: Int): Bitmap? {
+        if (hash == 0L) return null
+
+        val first = BUCKETS.indexOf(bucketFor(maxSize))
+        for (index in first until BUCKETS.size) {
+            val file = thumbnailFile(context, hash, BUCKETS[index])
+            if (!file.exists()) continue
+
+            val bitmap = try {
+                BitmapFactory.decodeFile(file.absolutePath)
+            } catch (e: Exception) {
+                Log.w(TAG, "Failed to read thumbnail ${file.name}", e)
+                null
+            }
+
+            if (bitmap != null) return bitmap
+            // Unreadable, most likely cut short by a crash mid-write. Drop it so it's redone.
+            file.delete()
+        }
+
+        return null
+    }
+
+    /** True when an earlier extraction found no embedded artwork in the song with [hash]. */
+    fun isMissing(context: Context, hash: Long): Boolean {
+        return hash != 0L && missingFile(context, hash).exists()
+    }
+
+    /**
+     * Encodes [artwork] into every bucket that isn't larger than the artwork itself (at
+     * least the smallest one) and writes them next to each other. Blocking, so call it
+     * from a background thread; Glide's fetcher threads are fine.
+     */
+    fun put(context: Context, hash: Long, artwork: Bitmap) {
+        if (hash == 0L) return
+
+        val longest = max(artwork.width, artwork.height)
+        for (bucket in BUCKETS) {
+            if (bucket > longest && bucket != BUCKETS.first()) break
+
+            val scaled = if (longest > bucket) {
+                val factor = bucket.toFloat() / longest
+                artwork.scale(
+                        (artwork.width * factor).roundToInt().coerceAtLeast(1),
+                        (artwork.height * factor).roundToInt().coerceAtLeast(1))
+            } else {
+                artwork
+            }
+
+            try {
+                write(thumbnailFile(context, hash, bucket), scaled)
+            } finally {
+                if (scaled !== artwork) scaled.recycle()
+            }
+        }
+    }
+
+    /**
+     * Decodes the encoded picture in [bytes] (sampled down to about the largest bucket
+     * first, so a 3000 px cover never has to be decoded at full size) and stores it with
+     * [put]. For the library scan, which already has the bytes from its TagLib read.
+     *
+     * @return True when something was stored.
+     */
+    fun putEncoded(context: Context, hash: Long, bytes: ByteArray): Boolean {
+        if (hash == 0L || bytes.isEmpty()) return false
+
+        val bitmap = try {
+            val bounds = BitmapFactory.Options().apply { inJustDecodeBounds = true }
+            BitmapFactory.decodeByteArray(bytes, 0, bytes.size, bounds)
+
+            val longest = max(bounds.outWidth, bounds.outHeight)
+            var sampleSize = 1
+            while (longest / (sampleSize * 2) >= BUCKETS.last()) sampleSize *= 2
+
+            BitmapFactory.decodeByteArray(bytes, 0, bytes.size, BitmapFactory.Options().apply { inSampleSize = sampleSize })
+        } catch (e: Exception) {
+            Log.w(TAG, "Failed to decode embedded artwork for $hash", e)
+            null
+        } ?: return false
+
+        try {
+            put(context, hash, bitmap)
+        } finally {
+            bitmap.recycle()
+        }
+
+        return true
+    }
+
+    /**
+     * Gives the song with [toHash] the same stored thumbnails as the one with [fromHash].
+     * Every track of an album usually embeds the very same cover, so the scan encodes it
+     * once and copies the files for the rest.
+     *
+     * @return False when [fromHash] had nothing stored to copy.
+     */
+    fun copy(context: Context, fromHash: Long, toHash: Long): Boolean {
+        if (fromHash == 0L || toHash == 0L || fromHash == toHash) return false
+
+        var copied = false
+        for (bucket in BUCKETS) {
+            val source = thumbnailFile(context, fromHash, bucket)
+            if (!source.exists()) continue
+
+            val target = thumbnailFile(context, toHash, bucket)
+            val tempFile = File(target.parentFile, "${target.name}.tmp")
+            try {
+                source.copyTo(tempFile, overwrite = true)
+                if (tempFile.renameTo(target)) copied = true else tempFile.delete()
+            } catch (e: Exception) {
+                Log.w(TAG, "Failed to copy thumbnail ${source.name}", e)
+                tempFile.delete()
+            }
+        }
+
+        return copied
+    }
+
+    /** Remembers that the song with [hash] has no embedded artwork. */
+    fun markMissing(context: Context, hash: Long) {
+        if (hash == 0L) return
+
+        try {
+            val file = missingFile(context, hash)
+            file.parentFile?.mkdirs()
+            file.createNewFile()
+        } catch (e: Exception) {
+            Log.w(TAG, "Failed to mark missing artwork for $hash", e)
+        }
+    }
+
+    /**
+     * Deletes every thumbnail and marker whose hash isn't in [liveHashes] anymore — songs
+     * that were removed from the library or changed on disk since they were stored.
+     */
+    fun prune(context: Context, liveHashes: Set<Long>) {
+        val files = directory(context).listFiles() ?: return
+        var removed = 0
+
+        for (file in files) {
+            val hash = file.name.substringBefore('_').substringBefore('.').toLongOrNull()
+            if (hash == null || hash !in liveHashes) {
+                if (file.delete()) removed++
+            }
+        }
+
+        if (removed > 0) Log.d(TAG, "Pruned $removed stale artwork thumbnails")
+    }
+
+    /** Removes everything, for when the user wipes the library. */
+    fun clear(context: Context) {
+        directory(context).deleteRecursively()
+    }
+
+    private fun write(file: File, bitmap: Bitmap) {
+        val tempFile = File(file.parentFile, "${file.name}.tmp")
+        try {
+            file.parentFile?.mkdirs()
+            tempFile.outputStream().use { out ->
+                bitmap.compress(webpFormat(), QUALITY, out)
+            }
+
+            // Same temp-then-rename trick as the saved artist images, so a reader never
+            // sees a half-written thumbnail.
+            if (!tempFile.renameTo(file)) tempFile.delete()
+        } catch (e: Exception) {
+            Log.w(TAG, "Failed to write thumbnail ${file.name}", e)
+            tempFile.delete()
+        }
+    }
+
+    private fun bucketFor(maxSize: Int): Int {
+        if (maxSize <= 0) return BUCKETS.last()
+        return BUCKETS.firstOrNull { it >= maxSize } ?: BUCKETS.last()
+    }
+
+    @Suppress("DEPRECATION")
+    private fun webpFormat(): Bitmap.CompressFormat {
+        return if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            Bitmap.CompressFormat.WEBP_LOSSY
+        } else {
+            Bitmap.CompressFormat.WEBP
+        }
+    }
+
+    private fun directory(context: Context): File {
+        // No-backup because every file in here can be rebuilt from the music itself.
+        return File(context.noBackupFilesDir, DIRECTORY)
+    }
+
+    private fun thumbnailFile(context: Context, hash: Long, bucket: Int): File {
+        return File(directory(context), "${hash}_$bucket$EXTENSION")
+    }
+
+    private fun missingFile(context: Context, hash: Long): File {
+        return File(directory(context), "$hash$MISSING_EXTENSION")
+    }
+}
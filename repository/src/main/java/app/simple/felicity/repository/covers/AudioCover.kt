@@ -31,10 +31,14 @@ object AudioCover {
      *
      * @param context Android context used for MediaStore and SAF queries.
      * @param audio Audio model whose URI or path drives the lookup.
-     * @return Bitmap of audio cover, or a placeholder if no artwork is found.
+     * @param maxSize Longest edge, in pixels, the cover will be drawn at. Only used to size
+     *                the external artwork decode; 0 means the default full-screen size.
+     * @return Bitmap of audio cover, or a placeholder if no artwork is found. External
+     *         artwork is shared with the in-memory cache, so don't recycle the result.
      */
-    fun load(context: Context, audio: Audio): Bitmap? {
-        val audioPath = audio.uri ?: return null
+    fun load(context: Context, audio: Audio, maxSize: Int = 0): Bitmap? {
+        // A CUE track's artwork lives in, and next to, the album file it is cut from.
+        val audioPath = audio.streamUri ?: return null
         val isSAFPath = audioPath.startsWith("content://")
 
         if (LibraryPreferences.isUseMediaStoreArtwork()) {
@@ -49,7 +53,7 @@ object AudioCover {
         if (isSAFPath) {
             // For SAF URIs we ask the system to list the parent folder's children and
             // look for any of our known artwork filenames there.
-            val externalArtwork = BaseCoverLoader.loadExternalArtworkSAF(context, audioPath.toUri(), customNames)
+            val externalArtwork = BaseCoverLoader.loadExternalArtworkSAF(context, audioPath.toUri(), customNames, maxSize)
             if (externalArtwork != null) {
                 Log.d("AudioCover", "Found SAF external artwork for ${audio.title}")
                 return externalArtwork
@@ -58,7 +62,7 @@ object AudioCover {
             // Regular file paths — we can navigate the directory directly.
             val directory = File(audioPath).parentFile
             if (directory != null && directory.exists()) {
-                val externalArtwork = BaseCoverLoader.loadExternalArtwork(directory, customNames)
+                val externalArtwork = BaseCoverLoader.loadExternalArtwork(directory, customNames, maxSize)
                 if (externalArtwork != null) {
                     Log.d("AudioCover", "Found external artwork for ${audio.title} at ${directory.path}")
                     return externalArtwork
@@ -68,13 +72,27 @@ object AudioCover {
             }
         }
 
-        // Last resort: crack open the audio file and read the embedded image tag.
-        // The junction inside BaseCoverLoader handles the extractor order.
-        val embeddedArtwork = BaseCoverLoader.loadEmbeddedArtwork(context, audioPath.toUri())
+        // Last resort: the embedded image tag. The thumbnail store usually has it already;
+        // otherwise the junction inside BaseCoverLoader cracks the file open once and keeps it.
+        val embeddedArtwork = BaseCoverLoader.loadEmbeddedArtwork(context, audioPath.toUri(), audio.hash, maxSize)
         Log.d("AudioCover", "Embedded artwork ${if (embeddedArtwork != null) "found" else "not found"} for ${audio.title}")
         if (embeddedArtwork != null) return embeddedArtwork
 
         return BaseCoverLoader.loadEmptyAudioCover()
     }
+
+    /**
+     * The last-modified time, in milliseconds, of the cover image sitting next to the audio
+     * file that [load] would fall back to, or 0 when the folder has none. Lets a cache tell
+     * a replaced folder.jpg apart without decoding anything.
+     *
+     * @param context Android context used for SAF queries.
+     * @param audio Audio model whose folder is checked.
+     */
+    fun externalArtworkLastModified(context: Context, audio: Audio): Long {
+        val audioPath = audio.streamUri ?: return 0L
+        return BaseCoverLoader.externalArtworkLastModified(
+                context, audioPath, BaseCoverLoader.generateCustomArtworkNames(audio.album))
+    }
 }
 
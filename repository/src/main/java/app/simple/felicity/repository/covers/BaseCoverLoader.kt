@@ -3,18 +3,22 @@ package app.simple.felicity.repository.covers
 import android.content.Context
 import android.graphics.Bitmap
 import android.graphics.BitmapFactory
+import android.graphics.ImageDecoder
 import android.media.MediaMetadataRetriever
 import android.net.Uri
 import android.provider.DocumentsContract
 import android.util.Log
+import android.util.LruCache
 import androidx.core.net.toUri
 import app.simple.felicity.preferences.SAFPreferences
 import app.simple.felicity.repository.covers.BaseCoverLoader.loadEmbeddedArtwork
 import app.simple.felicity.repository.covers.BaseCoverLoader.loadExternalArtwork
 import app.simple.felicity.repository.covers.BaseCoverLoader.loadExternalArtworkSAF
+import app.simple.felicity.repository.database.instances.AudioDatabase
 import app.simple.felicity.repository.metadata.TagLibBridge
 import java.io.File
-import java.util.concurrent.ConcurrentHashMap
+import kotlin.math.max
+import kotlin.math.min
 
 /**
  * Core cover art loading functionality shared across all media types.
@@ -34,22 +38,48 @@ internal object BaseCoverLoader {
     private val SANITIZE_REGEX = Regex("[^a-zA-Z0-9.-]")
 
     /**
-     * Caches the external artwork bitmap (or a "we already looked and found nothing" marker)
-     * keyed by folder path or SAF parent document ID. This prevents us from scanning the
-     * same folder over and over for every track inside an album — which was the main culprit
-     * behind the 2-second load times.
+     * Longest edge external artwork is decoded at when the caller doesn't ask for a size.
+     * Plenty for the full-screen player; a 3000 px scan of a CD booklet gets sampled down
+     * to this instead of sitting in memory at 36 MB.
+     */
+    const val DEFAULT_ARTWORK_SIZE = 1024
+
+    /** Smallest size bucket; thumbnails below this share the same decode. */
+    private const val MIN_ARTWORK_SIZE = 128
+
+    /** Folders we remember as having no artwork, independent of the bitmap budget. */
+    private const val MAX_NEGATIVE_ENTRIES = 4096
+
+    /**
+     * Caches decoded external artwork keyed by folder path or SAF parent document ID plus
+     * the size bucket it was decoded for (see [cacheKey]). This prevents us from scanning
+     * the same folder over and over for every track inside an album — which was the main
+     * culprit behind the 2-second load times.
      *
-     * The value is a [Result] wrapping the bitmap so we can distinguish between
-     * "not cached yet" (absent) and "cached as empty" (present with null inside).
+     * The cache is bounded by the bytes the bitmaps actually occupy rather than by entry
+     * count, so a handful of large covers can't push the app out of memory the way the old
+     * unbounded map did on libraries with thousands of album folders. The bitmaps in here
+     * are immutable and handed out as-is on a hit, so callers must never recycle a bitmap
+     * they got from [loadExternalArtwork] or [loadExternalArtworkSAFByDocId].
      */
-    private val externalArtworkCache = ConcurrentHashMap<String, Result<Bitmap?>>()
+    private val externalArtworkCache = object : LruCache<String, Bitmap>(artworkCacheBudget()) {
+        override fun sizeOf(key: String, value: Bitmap): Int = value.allocationByteCount
+    }
+
+    /**
+     * Folders we already looked in and found nothing. Kept apart from [externalArtworkCache]
+     * so the "nothing here" answers cost a few bytes each and never get evicted just because
+     * a couple of big covers came along.
+     */
+    private val missingArtworkCache = LruCache<String, Boolean>(MAX_NEGATIVE_ENTRIES)
 
     /**
      * Clears the in-memory external artwork cache. Call this when the user adds or removes
      * music folders so stale entries don't linger.
      */
     fun clearExternalArtworkCache() {
-        externalArtworkCache.clear()
+        externalArtworkCache.evictAll()
+        missingArtworkCache.evictAll()
         Log.d(TAG, "External artwork cache cleared")
     }
 
@@ -80,20 +110,15 @@ internal object BaseCoverLoader {
      *
      * @param directory Directory to search for artwork files.
      * @param customNames Optional extra filenames to check (e.g., album or artist name variants).
-     * @return Bitmap of the first matching artwork file, or null if none is found.
+     * @param maxSize Longest edge, in pixels, the caller is going to draw the artwork at.
+     * @return Shared, immutable bitmap of the first matching artwork file, or null if none is found.
      */
-    fun loadExternalArtwork(directory: File, customNames: List<String> = emptyList()): Bitmap? {
-        val cacheKey = directory.absolutePath
-
-        // Return a fresh copy of the cached bitmap so Glide can freely recycle the
-        // copy it receives without corrupting the master we're holding in the cache.
-        // If the cached bitmap was already recycled (Glide put it back in its pool),
-        // we evict the stale entry and fall through to re-scan the folder.
-        externalArtworkCache[cacheKey]?.let { cached ->
-            val bitmap = cached.getOrNull() ?: return null
-            if (!bitmap.isRecycled) return bitmap.copy(bitmap.config ?: Bitmap.Config.ARGB_8888, false)
-            externalArtworkCache.remove(cacheKey)
-        }
+    fun loadExternalArtwork(directory: File, customNames: List<String> = emptyList(), maxSize: Int = DEFAULT_ARTWORK_SIZE): Bitmap? {
+        val folderKey = directory.absolutePath
+        val bucket = sizeBucket(maxSize)
+
+        if (missingArtworkCache.get(folderKey) != null) return null
+        findCachedArtwork(folderKey, bucket)?.let { return it }
 
         val allNames = COMMON_ARTWORK_NAMES + customNames
 
@@ -101,10 +126,10 @@ internal object BaseCoverLoader {
             val artFile = File(directory, filename)
             if (artFile.exists()) {
                 try {
-                    val bitmap = BitmapFactory.decodeFile(artFile.absolutePath)
+                    val bitmap = decodeSampled(ImageDecoder.createSource(artFile), bucket)
                     if (bitmap != null) {
                         Log.d(TAG, "Found external art: ${artFile.name}")
-                        externalArtworkCache[cacheKey] = Result.success(bitmap)
+                        externalArtworkCache.put(cacheKey(folderKey, bucket), bitmap)
                         return bitmap
                     }
                 } catch (e: Exception) {
@@ -113,8 +138,8 @@ internal object BaseCoverLoader {
             }
         }
 
-        // Store a null result so we don't re-scan this folder for future tracks.
-        externalArtworkCache[cacheKey] = Result.success(null)
+        // Remember the miss so we don't re-scan this folder for future tracks.
+        missingArtworkCache.put(folderKey, true)
         return null
     }
 
@@ -132,9 +157,10 @@ internal object BaseCoverLoader {
      * @param context Android context needed to query the content resolver.
      * @param audioUri The SAF content URI of the audio file whose folder we want to inspect.
      * @param customNames Optional extra filenames to look for (e.g., album name variants).
-     * @return Bitmap from the first matching image file found, or null if none exists.
+     * @param maxSize Longest edge, in pixels, the caller is going to draw the artwork at.
+     * @return Shared, immutable bitmap from the first matching image file found, or null if none exists.
      */
-    fun loadExternalArtworkSAF(context: Context, audioUri: Uri, customNames: List<String> = emptyList()): Bitmap? {
+    fun loadExternalArtworkSAF(context: Context, audioUri: Uri, customNames: List<String> = emptyList(), maxSize: Int = DEFAULT_ARTWORK_SIZE): Bitmap? {
         val docId = try {
             DocumentsContract.getDocumentId(audioUri)
         } catch (e: Exception) {
@@ -150,7 +176,7 @@ internal object BaseCoverLoader {
             return null
         }
 
-        return loadExternalArtworkSAFByDocId(context, parentDocId, customNames)
+        return loadExternalArtworkSAFByDocId(context, parentDocId, customNames, maxSize)
     }
 
     /**
@@ -170,44 +196,36 @@ internal object BaseCoverLoader {
      * @param context Android context needed for the content resolver.
      * @param parentDocId SAF document ID of the folder to inspect (e.g. "primary:Music/Album").
      * @param customNames Optional extra filenames to look for beyond the common defaults.
-     * @return Bitmap from the first matching image, or null if the folder has no artwork.
+     * @param maxSize Longest edge, in pixels, the caller is going to draw the artwork at.
+     * @return Shared, immutable bitmap from the first matching image, or null if the folder has no artwork.
      */
-    fun loadExternalArtworkSAFByDocId(context: Context, parentDocId: String, customNames: List<String> = emptyList()): Bitmap? {
-        // Same recycled-bitmap guard as the file-path variant: return a fresh copy and
-        // evict the entry if Glide already recycled the cached master.
-        externalArtworkCache[parentDocId]?.let { cached ->
-            val bitmap = cached.getOrNull()
-            if (bitmap == null) return null
-            if (!bitmap.isRecycled) return bitmap.copy(bitmap.config ?: Bitmap.Config.ARGB_8888, false)
-            externalArtworkCache.remove(parentDocId)
-        }
+    fun loadExternalArtworkSAFByDocId(
+            context: Context,
+            parentDocId: String,
+            customNames: List<String> = emptyList(),
+            maxSize: Int = DEFAULT_ARTWORK_SIZE
+    ): Bitmap? {
+        val bucket = sizeBucket(maxSize)
+
+        if (missingArtworkCache.get(parentDocId) != null) return null
+        findCachedArtwork(parentDocId, bucket)?.let { return it }
 
         // Find the tree URI whose root covers our parent document ID.
-        val treeUri = SAFPreferences.getTreeUris().firstNotNullOfOrNull { uriStr ->
-            val candidate = uriStr.toUri()
-            val rootDocId = try {
-                DocumentsContract.getTreeDocumentId(candidate)
-            } catch (e: Exception) {
-                return@firstNotNullOfOrNull null
-            }
-            if (parentDocId.startsWith(rootDocId)) candidate else null
-        }
+        val treeUri = findTreeUri(parentDocId)
 
         if (treeUri == null) {
             Log.w(TAG, "No matching tree URI found for document: $parentDocId")
-            externalArtworkCache[parentDocId] = Result.success(null)
+            missingArtworkCache.put(parentDocId, true)
             return null
         }
 
         // Probe each known filename directly — no child listing needed.
         // We build "parentDocId/filename.jpg", convert it to a URI, and try to open it.
-        // If the file isn't there the stream will be null, and we just try the next name.
+        // If the file isn't there the decoder throws, and we just try the next name.
         for (filename in COMMON_ARTWORK_NAMES + customNames) {
             val childUri = DocumentsContract.buildDocumentUriUsingTree(treeUri, "$parentDocId/$filename")
             val bitmap = try {
-                context.contentResolver.openInputStream(childUri)?.use { stream ->
-                    BitmapFactory.decodeStream(stream)
-                }
+                decodeSampled(ImageDecoder.createSource(context.contentResolver, childUri), bucket)
             } catch (e: Exception) {
                 // File doesn't exist or can't be read — not an error worth logging every time.
                 null
@@ -215,16 +233,135 @@ internal object BaseCoverLoader {
 
             if (bitmap != null) {
                 Log.d(TAG, "Found SAF external art: $filename")
-                externalArtworkCache[parentDocId] = Result.success(bitmap)
+                externalArtworkCache.put(cacheKey(parentDocId, bucket), bitmap)
                 return bitmap
             }
         }
 
         // Nothing found — cache the negative result to skip this folder next time.
-        externalArtworkCache[parentDocId] = Result.success(null)
+        missingArtworkCache.put(parentDocId, true)
+        return null
+    }
+
+    /**
+     * The last-modified time, in milliseconds, of the external artwork file
+     * [loadExternalArtwork] or [loadExternalArtworkSAF] would pick for the audio at
+     * [audioPath], or 0 when there is none. Only the file's metadata is read, nothing is
+     * decoded, and a folder already known to have no artwork isn't probed again.
+     *
+     * @param context Android context needed for SAF queries.
+     * @param audioPath File path or SAF content URI string of the audio file.
+     * @param customNames Optional extra filenames to check, same as for the loaders.
+     */
+    fun externalArtworkLastModified(context: Context, audioPath: String, customNames: List<String> = emptyList()): Long {
+        if (!audioPath.startsWith("content://")) {
+            val directory = File(audioPath).parentFile ?: return 0L
+            if (missingArtworkCache.get(directory.absolutePath) != null) return 0L
+            for (filename in COMMON_ARTWORK_NAMES + customNames) {
+                val artFile = File(directory, filename)
+                if (artFile.exists()) return artFile.lastModified()
+            }
+            return 0L
+        }
+
+        val parentDocId = try {
+            DocumentsContract.getDocumentId(audioPath.toUri()).substringBeforeLast('/', missingDelimiterValue = "")
+        } catch (e: Exception) {
+            return 0L
+        }
+        if (parentDocId.isEmpty() || missingArtworkCache.get(parentDocId) != null) return 0L
+
+        val treeUri = findTreeUri(parentDocId) ?: return 0L
+        val projection = arrayOf(DocumentsContract.Document.COLUMN_LAST_MODIFIED)
+        for (filename in COMMON_ARTWORK_NAMES + customNames) {
+            val childUri = DocumentsContract.buildDocumentUriUsingTree(treeUri, "$parentDocId/$filename")
+            val modified = try {
+                context.contentResolver.query(childUri, projection, null, null, null)?.use { cursor ->
+                    if (cursor.moveToFirst()) cursor.getLong(0) else null
+                }
+            } catch (e: Exception) {
+                // The file isn't there; same as the loader, just try the next name.
+                null
+            }
+
+            if (modified != null) return modified
+        }
+
+        return 0L
+    }
+
+    /** The persisted SAF tree whose root covers [docId], or null when none of them does. */
+    private fun findTreeUri(docId: String): Uri? {
+        return SAFPreferences.getTreeUris().firstNotNullOfOrNull { uriStr ->
+            val candidate = uriStr.toUri()
+            val rootDocId = try {
+                DocumentsContract.getTreeDocumentId(candidate)
+            } catch (e: Exception) {
+                return@firstNotNullOfOrNull null
+            }
+            if (docId.startsWith(rootDocId)) candidate else null
+        }
+    }
+
+    /**
+     * Returns the artwork cached for [folderKey] at [bucket] or any larger bucket, since a
+     * bigger decode scales down just fine. Smaller buckets are never reused for a larger
+     * request — that would just look blurry.
+     */
+    private fun findCachedArtwork(folderKey: String, bucket: Int): Bitmap? {
+        var size = bucket
+        while (size <= DEFAULT_ARTWORK_SIZE) {
+            val bitmap = externalArtworkCache.get(cacheKey(folderKey, size))
+            if (bitmap != null) {
+                if (!bitmap.isRecycled) return bitmap
+                // Someone recycled a shared bitmap despite the warning; drop it and re-decode.
+                externalArtworkCache.remove(cacheKey(folderKey, size))
+            }
+            size *= 2
+        }
         return null
     }
 
+    private fun cacheKey(folderKey: String, bucket: Int): String = "$folderKey@$bucket"
+
+    /**
+     * Rounds a requested size up to the next power of two between [MIN_ARTWORK_SIZE] and
+     * [DEFAULT_ARTWORK_SIZE], so a grid of 180 px and 200 px cells shares one decode.
+     * Anything non-positive (Glide's SIZE_ORIGINAL, for instance) means "as big as we go".
+     */
+    private fun sizeBucket(maxSize: Int): Int {
+        if (maxSize <= 0 || maxSize >= DEFAULT_ARTWORK_SIZE) return DEFAULT_ARTWORK_SIZE
+        var bucket = MIN_ARTWORK_SIZE
+        while (bucket < maxSize) bucket *= 2
+        return bucket
+    }
+
+    /**
+     * Decodes [source] sampled down so its longest edge is at most [maxSize]. The decoder
+     * reads the header first and picks a power-of-two sample size before allocating
+     * anything, so a huge image never has to be decoded at full resolution. The result is
+     * an immutable software bitmap — safe to share, and still drawable by the software
+     * canvases our Glide transformations use.
+     */
+    private fun decodeSampled(source: ImageDecoder.Source, maxSize: Int): Bitmap? {
+        return ImageDecoder.decodeBitmap(source) { decoder, info, _ ->
+            val longest = max(info.size.width, info.size.height)
+            var sampleSize = 1
+            while (longest / (sampleSize * 2) >= maxSize) sampleSize *= 2
+            decoder.setTargetSampleSize(sampleSize)
+            decoder.allocator = ImageDecoder.ALLOCATOR_SOFTWARE
+        }
+    }
+
+    /**
+     * An eighth of the heap, capped at 48 MB — about 12 full-size covers, or a few hundred
+     * grid thumbnails.
+     */
+    private fun artworkCacheBudget(): Int {
+        val eighth = Runtime.getRuntime().maxMemory() / 8
+        return min(eighth, 48L * 1024 * 1024).toInt()
+    }
+
     /**
      * The single entry point for pulling embedded artwork out of any audio file.
      * Internally it tries TagLib first (better WAV/FLAC/APE support), and only
@@ -240,22 +377,61 @@ internal object BaseCoverLoader {
             ?: loadEmbeddedArtworkViaMMR(context, audioUri)
     }
 
+    /**
+     * Same as [loadEmbeddedArtwork], but goes through [ArtworkThumbnailStore] first so the
+     * audio file is only opened the very first time its artwork is asked for. Whatever the
+     * extraction finds — or doesn't — is remembered under [hash] for next time.
+     *
+     * @param context Android context needed to open the file and reach the thumbnail store.
+     * @param audioUri The URI or file path of the audio file.
+     * @param hash The song's content hash; 0 skips the store and always extracts.
+     * @param maxSize Longest edge, in pixels, the caller is going to draw the artwork at.
+     * @return Bitmap of the embedded artwork, or null if the song has none.
+     */
+    fun loadEmbeddedArtwork(context: Context, audioUri: Uri, hash: Long, maxSize: Int = DEFAULT_ARTWORK_SIZE): Bitmap? {
+        if (hash == 0L) return loadEmbeddedArtwork(context, audioUri)
+
+        ArtworkThumbnailStore.get(context, hash, maxSize)?.let { return it }
+        if (ArtworkThumbnailStore.isMissing(context, hash)) return null
+
+        val artwork = loadEmbeddedArtwork(context, audioUri)
+        if (artwork != null) {
+            ArtworkThumbnailStore.put(context, hash, artwork)
+        } else {
+            ArtworkThumbnailStore.markMissing(context, hash)
+        }
+
+        return artwork
+    }
+
     /**
      * Scans through a list of song paths (or URIs — both are fine) and returns the
      * embedded artwork from the first file that actually has one. Stops early once
      * artwork is found to avoid unnecessary work.
      *
-     * Each path goes through the same TagLib-first, MMR-fallback junction used by
+     * Each path is first resolved to its content hash through the library so the
+     * [ArtworkThumbnailStore] can answer without touching the file; only songs the store
+     * hasn't seen yet go through the same TagLib-first, MMR-fallback junction used by
      * [loadEmbeddedArtwork], so WAV files and other tricky formats are handled correctly.
      *
      * @param context Android context needed to open content URIs via SAF.
      * @param songPaths List of audio file paths or content URI strings to check.
      * @param maxFiles Maximum number of files to check before giving up (default: 5).
+     * @param maxSize Longest edge, in pixels, the caller is going to draw the artwork at.
      * @return Bitmap or null if none of the checked files had embedded artwork.
      */
-    fun loadEmbeddedArtworkFromPaths(context: Context, songPaths: List<String>, maxFiles: Int = 5): Bitmap? {
+    fun loadEmbeddedArtworkFromPaths(context: Context, songPaths: List<String>, maxFiles: Int = 5, maxSize: Int = DEFAULT_ARTWORK_SIZE): Bitmap? {
+        val audioDao = AudioDatabase.getInstance(context).audioDao()
+
         for (path in songPaths.take(maxFiles)) {
-            val bitmap = loadEmbeddedArtwork(context, path.toUri())
+            val hash = try {
+                audioDao?.getHashByUri(path) ?: 0L
+            } catch (e: Exception) {
+                Log.w(TAG, "Could not look up hash for: $path", e)
+                0L
+            }
+
+            val bitmap = loadEmbeddedArtwork(context, path.toUri(), hash, maxSize)
             if (bitmap != null) return bitmap
         }
         return null
@@ -31,9 +31,11 @@ object FolderCover {
      *
      * @param context Android context used for MediaStore and SAF queries.
      * @param folder Folder model with [Folder.path] and [Folder.songPaths].
-     * @return Bitmap of folder cover, or null if no artwork is found.
+     * @param maxSize Longest edge, in pixels, the cover will be drawn at; 0 means the default.
+     * @return Bitmap of folder cover, or null if no artwork is found. External artwork is
+     *         shared with the in-memory cache, so don't recycle the result.
      */
-    fun load(context: Context, folder: Folder): Bitmap? {
+    fun load(context: Context, folder: Folder, maxSize: Int = 0): Bitmap? {
         if (folder.songPaths.isNotEmpty() && LibraryPreferences.isUseMediaStoreArtwork()) {
             val uri = context.loadCoverFromMediaStore(folder.songPaths.first())
             val mediaStoreBitmap = uri?.let { context.uriToBitmap(it) }
@@ -52,7 +54,7 @@ object FolderCover {
         if (isSAFFolder) {
             // The folder path IS the parent document ID, so we can hand it straight
             // to BaseCoverLoader which handles the tree URI lookup, child scan, and caching.
-            val externalArtwork = BaseCoverLoader.loadExternalArtworkSAFByDocId(context, folder.path)
+            val externalArtwork = BaseCoverLoader.loadExternalArtworkSAFByDocId(context, folder.path, maxSize = maxSize)
             if (externalArtwork != null) {
                 Log.d(TAG, "Loaded folder art from SAF external file for: ${folder.name}")
                 return externalArtwork
@@ -60,7 +62,7 @@ object FolderCover {
         } else {
             val directory = File(folder.path)
             if (directory.exists()) {
-                val externalArtwork = BaseCoverLoader.loadExternalArtwork(directory, emptyList())
+                val externalArtwork = BaseCoverLoader.loadExternalArtwork(directory, emptyList(), maxSize)
                 if (externalArtwork != null) {
                     Log.d(TAG, "Loaded folder art from external file for: ${folder.name}")
                     return externalArtwork
@@ -69,7 +71,7 @@ object FolderCover {
         }
 
         if (folder.songPaths.isNotEmpty()) {
-            val embeddedArtwork = BaseCoverLoader.loadEmbeddedArtworkFromPaths(context, folder.songPaths)
+            val embeddedArtwork = BaseCoverLoader.loadEmbeddedArtworkFromPaths(context, folder.songPaths, maxSize = maxSize)
             if (embeddedArtwork != null) {
                 Log.d(TAG, "Loaded folder art from embedded metadata for: ${folder.name}")
                 return embeddedArtwork
@@ -29,9 +29,10 @@ object GenreCover {
      *
      * @param context Android context used for MediaStore and SAF queries.
      * @param genre Genre model whose [Genre.songPaths] drive the lookup.
+     * @param maxSize Longest edge the cover will be drawn at, used to pick a stored thumbnail
      * @return Bitmap of genre cover, or a placeholder if no artwork is found.
      */
-    fun load(context: Context, genre: Genre): Bitmap {
+    fun load(context: Context, genre: Genre, maxSize: Int = 0): Bitmap {
         if (genre.songPaths.isNotEmpty()) {
             if (LibraryPreferences.isUseMediaStoreArtwork()) {
                 val uri = context.loadCoverFromMediaStore(genre.songPaths.first())
@@ -42,7 +43,7 @@ object GenreCover {
                 }
             }
 
-            val embeddedArtwork = BaseCoverLoader.loadEmbeddedArtworkFromPaths(context, genre.songPaths)
+            val embeddedArtwork = BaseCoverLoader.loadEmbeddedArtworkFromPaths(context, genre.songPaths, maxSize = maxSize)
             if (embeddedArtwork != null) {
                 Log.d(TAG, "Loaded genre art from embedded metadata for: ${genre.name}")
                 return embeddedArtwork
@@ -26,9 +26,10 @@ object YearCover {
      *
      * @param context Android context used for MediaStore queries
      * @param yearGroup YearGroup model with [YearGroup.songPaths]
+     * @param maxSize Longest edge the cover will be drawn at, used to pick a stored thumbnail
      * @return Bitmap of cover, or null if no artwork is found
      */
-    fun load(context: Context, yearGroup: YearGroup): Bitmap? {
+    fun load(context: Context, yearGroup: YearGroup, maxSize: Int = 0): Bitmap? {
         if (yearGroup.songPaths.isNotEmpty()) {
             if (LibraryPreferences.isUseMediaStoreArtwork()) {
                 // Primary: resolve from MediaStore using the first song path.
@@ -42,7 +43,7 @@ object YearCover {
             }
 
             // Source 1: Artwork embedded in the audio file tags.
-            val embeddedArtwork = BaseCoverLoader.loadEmbeddedArtworkFromPaths(context, yearGroup.songPaths)
+            val embeddedArtwork = BaseCoverLoader.loadEmbeddedArtworkFromPaths(context, yearGroup.songPaths, maxSize = maxSize)
             if (embeddedArtwork != null) {
                 Log.d(TAG, "Loaded cover from embedded metadata for year: ${yearGroup.year}")
                 return embeddedArtwork
@@ -1,5 +1,6 @@
 package app.simple.felicity.repository.database.dao
 
+import androidx.paging.PagingSource
 import androidx.room.Dao
 import androidx.room.Delete
 import androidx.room.Insert
@@ -9,6 +10,9 @@ import androidx.room.RawQuery
 import androidx.room.Update
 import androidx.sqlite.db.SupportSQLiteQuery
 import app.simple.felicity.repository.models.Audio
+import app.simple.felicity.repository.models.AudioIndexRow
+import app.simple.felicity.repository.models.AudioListRow
+import app.simple.felicity.repository.models.AudioListSummary
 import kotlinx.coroutines.flow.Flow
 
 @Dao
@@ -215,6 +219,21 @@ interface AudioDao {
     @Query("SELECT * FROM audio WHERE is_available = 1 AND duration >= :minDuration AND size >= :minSize AND composer LIKE '%' || :query || '%' ORDER BY title COLLATE NOCASE ASC")
     fun searchByComposerFiltered(query: String, minDuration: Long, minSize: Long): Flow<MutableList<Audio>>
 
+    /**
+     * Full-text search over title, artist, album, album artist, genre, composer, and path
+     * through the {@code audio_fts} index. [match] is an FTS MATCH expression — build it
+     * with {@code SearchUtils.buildMatchQuery} rather than passing raw user input.
+     */
+    @Query("""
+        SELECT a.* FROM audio a
+        INNER JOIN audio_fts ON a.id = audio_fts.rowid
+        WHERE audio_fts MATCH :match
+        AND a.is_available = 1
+        AND a.duration >= :minDuration
+        AND a.size >= :minSize
+    """)
+    fun searchFts(match: String, minDuration: Long, minSize: Long): Flow<MutableList<Audio>>
+
     @Query("SELECT id FROM audio WHERE uri = :path AND is_available = 1")
     fun getAudioIdByPath(path: String): Long
 
@@ -224,6 +243,17 @@ interface AudioDao {
     @Query("SELECT * FROM audio WHERE uri = :path LIMIT 1")
     fun getAudioByPath(path: String): Audio?
 
+    /**
+     * Content hash of the song at [uri], or null when it isn't in the library. Used by the
+     * cover loaders to find stored artwork thumbnails for collections that only carry paths.
+     */
+    @Query("SELECT hash FROM audio WHERE uri = :uri LIMIT 1")
+    fun getHashByUri(uri: String): Long?
+
+    /** Every distinct content hash in the library. */
+    @Query("SELECT DISTINCT hash FROM audio")
+    suspend fun getAllHashes(): List<Long>
+
     /**
      * Looks up an audio row by its real POSIX filesystem path (the path column,
      * which holds the MediaStore DATA value like /storage/emulated/0/Music/song.mp3).
@@ -256,12 +286,69 @@ interface AudioDao {
     @Query("UPDATE audio SET always_skip = :alwaysSkip WHERE id IN (:ids)")
     suspend fun setAlwaysSkipBatch(ids: List<Long>, alwaysSkip: Boolean)
 
+    /**
+     * The scanner's view of the library: just enough per row to tell whether a file
+     * changed and to keep the user's flags, without materializing full [Audio] objects.
+     */
+    @Query("SELECT id, uri, hash, size, date_modified, is_favorite, always_skip, is_available FROM audio")
+    suspend fun getIndexRows(): List<AudioIndexRow>
+
+    /** Rows that still have no real filesystem path, for the MediaStore path pass. */
+    @Query("SELECT * FROM audio WHERE path IS NULL")
+    fun getAudioWithoutPath(): MutableList<Audio>
+
+    @Query("DELETE FROM audio WHERE id IN (:ids)")
+    suspend fun deleteByIds(ids: List<Long>)
+
+    @Query("UPDATE audio SET is_available = :isAvailable WHERE id IN (:ids)")
+    suspend fun setAvailableBatch(ids: List<Long>, isAvailable: Boolean)
+
     @RawQuery
     fun getQueriedData(query: SupportSQLiteQuery): MutableList<Audio>
 
     @RawQuery
     fun getAudioByIDs(query: SupportSQLiteQuery): MutableList<Audio>
 
+    /**
+     * Paged counterpart of [getFilteredAudio] that only reads the [AudioListRow] columns.
+     * The query is raw because the ORDER BY follows the user's sort preference; Room
+     * still invalidates the source whenever the audio table changes, so edits and scans
+     * show up in the list without anyone having to ask.
+     */
+    @RawQuery(observedEntities = [Audio::class])
+    fun getAudioRowsPaged(query: SupportSQLiteQuery): PagingSource<Int, AudioListRow>
+
+    /**
+     * Count and total duration for the same filter as [getAudioRowsPaged], re-emitted
+     * whenever the audio table changes so list headers stay in step with the list.
+     */
+    @RawQuery(observedEntities = [Audio::class])
+    fun getAudioListSummary(query: SupportSQLiteQuery): Flow<AudioListSummary>
+
+    /**
+     * A single text column per row, in list order, for the section fast scroller. Like
+     * [getAudioListSummary] it follows the audio table, so the sections never point at
+     * rows that moved.
+     */
+    @RawQuery(observedEntities = [Audio::class])
+    fun getAudioSectionKeys(query: SupportSQLiteQuery): Flow<List<String>>
+
+    /**
+     * Loads the full [Audio] rows for the given ids in one go. Used to turn a handful of
+     * [AudioListRow]s back into real songs right when they are needed (playing, menus),
+     * rather than keeping every column of every song in memory just in case.
+     */
+    @Query("SELECT * FROM audio WHERE id IN (:ids)")
+    suspend fun getAudioByIdList(ids: List<Long>): MutableList<Audio>
+
+    /**
+     * Returns just the ids of the filtered library in the requested order. Eight bytes a
+     * song is cheap enough to hold for the whole library, and it is all a caller needs to
+     * build a play queue from a paged list and resolve the actual songs later.
+     */
+    @RawQuery
+    suspend fun getAudioIds(query: SupportSQLiteQuery): MutableList<Long>
+
     /**
      * Delete a [Audio] item
      * from the table
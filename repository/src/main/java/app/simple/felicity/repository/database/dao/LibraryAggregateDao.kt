@@ -0,0 +1,192 @@
+package app.simple.felicity.repository.database.dao
+
+import androidx.room.Dao
+import androidx.room.Delete
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
+import androidx.room.Query
+import app.simple.felicity.repository.models.LibraryAggregate
+import app.simple.felicity.repository.models.LibraryAggregateDirty
+import app.simple.felicity.repository.models.LibraryAggregateMember
+import app.simple.felicity.repository.models.LibraryIndexState
+import kotlinx.coroutines.flow.Flow
+
+/**
+ * Reads and maintains the pre-grouped library index made of the
+ * {@code library_aggregates}, {@code library_aggregate_members},
+ * {@code library_aggregate_dirty}, and {@code library_index_state} tables.
+ *
+ * The reactive queries here deliberately only touch the aggregate tables, so Room
+ * does not re-run them when an unrelated column of {@code audio} (like the favorite
+ * flag) changes.
+ */
+@Dao
+interface LibraryAggregateDao {
+
+    /**
+     * The handful of columns the index needs from each song. Loading this instead of
+     * the full [app.simple.felicity.repository.models.Audio] row keeps full rebuilds
+     * light even on very large libraries.
+     */
+    data class AggregateSource(
+            val id: Long,
+            val uri: String,
+            val artist: String?,
+            val album: String?,
+            val genre: String?,
+            val composer: String?,
+            val year: String?
+    )
+
+    /** A member song's URI tagged with the bucket it belongs to. */
+    data class MemberUri(
+            val groupId: Long,
+            val uri: String
+    )
+
+    // ----------------------------------------------------------------------------------- //
+    // Reads used by the list screens
+
+    @Query("SELECT * FROM library_aggregates WHERE kind = :kind ORDER BY name COLLATE NOCASE ASC")
+    fun observeAggregates(kind: Int): Flow<List<LibraryAggregate>>
+
+    /**
+     * One-shot lookup of every member URI of every bucket of the given [kind], in title
+     * order. Intentionally not a Flow — it joins the {@code audio} table, which would
+     * otherwise make the list screens react to every favorite toggle again.
+     */
+    @Query("""
+        SELECT m.group_id AS groupId, a.uri AS uri FROM library_aggregate_members m
+        INNER JOIN library_aggregates g ON g.id = m.group_id
+        INNER JOIN audio a ON a.id = m.audio_id
+        WHERE g.kind = :kind
+        ORDER BY a.title COLLATE NOCASE ASC
+    """)
+    suspend fun getMemberUris(kind: Int): List<MemberUri>
+
+    /**
+     * Member URIs of just the buckets in [groupIds], in title order. Used for the handful
+     * of top artists and albums on the dashboard, where loading every member of every
+     * bucket of a kind would be a waste.
+     */
+    @Query("""
+        SELECT m.group_id AS groupId, a.uri AS uri FROM library_aggregate_members m
+        INNER JOIN audio a ON a.id = m.audio_id
+        WHERE m.group_id IN (:groupIds)
+        ORDER BY a.title COLLATE NOCASE ASC
+    """)
+    suspend fun getMemberUrisOf(groupIds: List<Long>): List<MemberUri>
+
+    @Query("SELECT COUNT(*) FROM library_aggregate_dirty")
+    fun observeDirtyCount(): Flow<Int>
+
+    // ----------------------------------------------------------------------------------- //
+    // Source rows
+
+    @Query("""
+        SELECT id, uri, artist, album, genre, composer, year FROM audio
+        WHERE is_available = 1 AND duration >= :minDuration AND size >= :minSize
+        ORDER BY title COLLATE NOCASE ASC
+    """)
+    suspend fun getAllSources(minDuration: Long, minSize: Long): List<AggregateSource>
+
+    @Query("""
+        SELECT id, uri, artist, album, genre, composer, year FROM audio
+        WHERE album = :album AND is_available = 1 AND duration >= :minDuration AND size >= :minSize
+        ORDER BY title COLLATE NOCASE ASC
+    """)
+    suspend fun getSourcesForAlbum(album: String, minDuration: Long, minSize: Long): List<AggregateSource>
+
+    /**
+     * Candidates only — the caller still has to split the artist credits and match exactly.
+     * [artistPattern] must already have LIKE's wildcards escaped with a backslash.
+     */
+    @Query("""
+        SELECT id, uri, artist, album, genre, composer, year FROM audio
+        WHERE artist LIKE '%' || :artistPattern || '%' ESCAPE '\' AND is_available = 1 AND duration >= :minDuration AND size >= :minSize
+        ORDER BY title COLLATE NOCASE ASC
+    """)
+    suspend fun getSourceCandidatesForArtist(artistPattern: String, minDuration: Long, minSize: Long): List<AggregateSource>
+
+    @Query("""
+        SELECT id, uri, artist, album, genre, composer, year FROM audio
+        WHERE genre = :genre AND is_available = 1 AND duration >= :minDuration AND size >= :minSize
+        ORDER BY title COLLATE NOCASE ASC
+    """)
+    suspend fun getSourcesForGenre(genre: String, minDuration: Long, minSize: Long): List<AggregateSource>
+
+    @Query("""
+        SELECT id, uri, artist, album, genre, composer, year FROM audio
+        WHERE composer = :composer AND is_available = 1 AND duration >= :minDuration AND size >= :minSize
+        ORDER BY title COLLATE NOCASE ASC
+    """)
+    suspend fun getSourcesForComposer(composer: String, minDuration: Long, minSize: Long): List<AggregateSource>
+
+    @Query("""
+        SELECT id, uri, artist, album, genre, composer, year FROM audio
+        WHERE year = :year AND is_available = 1 AND duration >= :minDuration AND size >= :minSize
+        ORDER BY title COLLATE NOCASE ASC
+    """)
+    suspend fun getSourcesForYear(year: String, minDuration: Long, minSize: Long): List<AggregateSource>
+
+    @Query("""
+        SELECT id, uri, artist, album, genre, composer, year FROM audio
+        WHERE (year IS NULL OR TRIM(year) = '') AND is_available = 1 AND duration >= :minDuration AND size >= :minSize
+        ORDER BY title COLLATE NOCASE ASC
+    """)
+    suspend fun getSourcesForUnknownYear(minDuration: Long, minSize: Long): List<AggregateSource>
+
+    /**
+     * Candidates only — the caller still has to compare the parent document ID exactly.
+     * [folderPattern] is the encoded folder document ID with LIKE's wildcards escaped; the
+     * encoded ID is full of '%' signs, which would otherwise each match anything.
+     */
+    @Query("""
+        SELECT id, uri, artist, album, genre, composer, year FROM audio
+        WHERE uri LIKE '%/document/' || :folderPattern || '%' ESCAPE '\' AND is_available = 1 AND duration >= :minDuration AND size >= :minSize
+        ORDER BY title COLLATE NOCASE ASC
+    """)
+    suspend fun getSourceCandidatesForFolder(folderPattern: String, minDuration: Long, minSize: Long): List<AggregateSource>
+
+    // ----------------------------------------------------------------------------------- //
+    // Writes
+
+    @Query("SELECT id FROM library_aggregates WHERE kind = :kind AND group_key = :key LIMIT 1")
+    suspend fun getAggregateId(kind: Int, key: String): Long?
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun insertAggregate(aggregate: LibraryAggregate): Long
+
+    @Query("DELETE FROM library_aggregates WHERE id = :id")
+    suspend fun deleteAggregate(id: Long)
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    suspend fun insertMembers(members: List<LibraryAggregateMember>)
+
+    @Query("DELETE FROM library_aggregate_members WHERE group_id = :groupId")
+    suspend fun deleteMembers(groupId: Long)
+
+    @Query("SELECT * FROM library_aggregate_dirty")
+    suspend fun getDirty(): List<LibraryAggregateDirty>
+
+    @Query("SELECT COUNT(*) FROM library_aggregate_dirty")
+    suspend fun getDirtyCount(): Int
+
+    @Delete
+    suspend fun deleteDirty(dirty: List<LibraryAggregateDirty>)
+
+    @Query("SELECT * FROM library_index_state WHERE id = 0 LIMIT 1")
+    suspend fun getState(): LibraryIndexState?
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun setState(state: LibraryIndexState)
+
+    @Query("DELETE FROM library_aggregates")
+    suspend fun clearAggregates()
+
+    @Query("DELETE FROM library_aggregate_members")
+    suspend fun clearMembers()
+
+    @Query("DELETE FROM library_aggregate_dirty")
+    suspend fun clearDirty()
+}
@@ -0,0 +1,52 @@
+package app.simple.felicity.repository.database.dao
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
+import androidx.room.Query
+import androidx.room.Update
+import app.simple.felicity.repository.models.LoudnessAnalysis
+
+/**
+ * Reads and writes the {@code loudness_analysis} table, the background loudness scan's
+ * record of every song it has measured.
+ */
+@Dao
+interface LoudnessDao {
+
+    /** Returns the measurement for [audioHash], or null if the song hasn't been measured. */
+    @Query("SELECT * FROM loudness_analysis WHERE audio_hash = :audioHash LIMIT 1")
+    suspend fun getByHash(audioHash: Long): LoudnessAnalysis?
+
+    /** Measurements for the given songs; songs that haven't been measured are simply missing. */
+    @Query("SELECT * FROM loudness_analysis WHERE audio_hash IN (:audioHashes)")
+    suspend fun getByHashes(audioHashes: List<Long>): List<LoudnessAnalysis>
+
+    /**
+     * Hashes of every song that has already been measured. Lets the scan skip those
+     * without loading any of the histograms.
+     */
+    @Query("SELECT audio_hash FROM loudness_analysis")
+    suspend fun getAnalyzedHashes(): List<Long>
+
+    /** Songs that have been measured but whose album gain hasn't been worked out yet. */
+    @Query("SELECT audio_hash FROM loudness_analysis WHERE album_gain IS NULL")
+    suspend fun getHashesWithoutAlbumGain(): List<Long>
+
+    /** Measurements whose values haven't made it into the file tags yet. */
+    @Query("SELECT * FROM loudness_analysis WHERE written_to_tags = 0")
+    suspend fun getUnwritten(): List<LoudnessAnalysis>
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun insert(analysis: LoudnessAnalysis)
+
+    @Update
+    suspend fun update(analyses: List<LoudnessAnalysis>)
+
+    @Query("UPDATE loudness_analysis SET written_to_tags = 1 WHERE audio_hash = :audioHash")
+    suspend fun markWritten(audioHash: Long)
+
+    /** Drops every measurement, so the next scan measures the whole library again. */
+    @Query("DELETE FROM loudness_analysis")
+    suspend fun deleteAll()
+}
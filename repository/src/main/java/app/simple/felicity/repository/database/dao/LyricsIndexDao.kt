@@ -0,0 +1,48 @@
+package app.simple.felicity.repository.database.dao
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
+import androidx.room.Query
+import app.simple.felicity.repository.models.LyricsIndex
+
+/**
+ * Reads and writes {@code lyrics_index}, the scanner's record of where each song's
+ * lyrics are. The scan fills it in; the lyrics loader reads it and keeps it current
+ * whenever a sidecar is saved or deleted from inside the app.
+ */
+@Dao
+interface LyricsIndexDao {
+
+    /** Returns what is known about [audioHash]'s lyrics, or null if the scan never got to it. */
+    @Query("SELECT * FROM lyrics_index WHERE audio_hash = :audioHash LIMIT 1")
+    suspend fun getByHash(audioHash: Long): LyricsIndex?
+
+    /** Same as [getByHash], for callers that only have the song's URI. */
+    @Query("SELECT * FROM lyrics_index WHERE audio_uri = :audioUri LIMIT 1")
+    suspend fun getByAudioUri(audioUri: String): LyricsIndex?
+
+    /** Rows for the given songs; songs the scan has no row for are simply missing. */
+    @Query("SELECT * FROM lyrics_index WHERE audio_hash IN (:audioHashes)")
+    suspend fun getByHashes(audioHashes: List<Long>): List<LyricsIndex>
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun insert(entries: List<LyricsIndex>)
+
+    @Query("UPDATE lyrics_index SET lrc_uri = :lrcUri WHERE audio_uri = :audioUri")
+    suspend fun setLrcUri(audioUri: String, lrcUri: String?)
+
+    @Query("UPDATE lyrics_index SET txt_uri = :txtUri WHERE audio_uri = :audioUri")
+    suspend fun setTxtUri(audioUri: String, txtUri: String?)
+
+    @Query("UPDATE lyrics_index SET has_embedded_lyrics = :hasEmbeddedLyrics WHERE audio_hash = :audioHash")
+    suspend fun setHasEmbeddedLyrics(audioHash: Long, hasEmbeddedLyrics: Boolean)
+
+    /** Drops the rows of songs that are no longer in the library, or whose file changed. */
+    @Query("DELETE FROM lyrics_index WHERE audio_hash NOT IN (SELECT hash FROM audio)")
+    suspend fun deleteOrphans()
+
+    /** Forgets everything; the next scan starts over. */
+    @Query("DELETE FROM lyrics_index")
+    suspend fun deleteAll()
+}
@@ -0,0 +1,102 @@
+package app.simple.felicity.repository.database.dao
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.Query
+import app.simple.felicity.repository.models.AudioWithStat
+import app.simple.felicity.repository.models.PlayEvent
+import kotlinx.coroutines.flow.Flow
+
+/**
+ * Writes the append-only {@code play_events} log and keeps the {@code play_rollups}
+ * totals next to it, and answers the "this week" and "per day" questions from the rollups.
+ *
+ * SQLite only learned {@code INSERT ... ON CONFLICT DO UPDATE} in 3.24, and Android 10
+ * still ships 3.22, so a rollup row is added to with an {@code INSERT OR IGNORE} of an
+ * empty row followed by an {@code UPDATE}. Both run inside the batch transaction, so
+ * nobody ever sees the empty row.
+ */
+@Dao
+interface PlayHistoryDao {
+
+    /** Plays and listening time of one day, summed over every song. */
+    data class DailyListening(
+            val day: Long,
+            val plays: Int,
+            val listenedMs: Long
+    )
+
+    @Insert
+    suspend fun insertEvents(events: List<PlayEvent>)
+
+    @Query("""
+        INSERT OR IGNORE INTO play_rollups (period, bucket_start, audio_hash, plays, skips, replays, listened_ms)
+        VALUES (:period, :bucketStart, :audioHash, 0, 0, 0, 0)
+    """)
+    suspend fun ensureRollup(period: Int, bucketStart: Long, audioHash: Long)
+
+    @Query("""
+        UPDATE play_rollups
+        SET plays = plays + :plays, skips = skips + :skips, replays = replays + :replays,
+            listened_ms = listened_ms + :listenedMs
+        WHERE period = :period AND bucket_start = :bucketStart AND audio_hash = :audioHash
+    """)
+    suspend fun addToRollup(period: Int, bucketStart: Long, audioHash: Long,
+                            plays: Int, skips: Int, replays: Int, listenedMs: Long)
+
+    /**
+     * Available songs played since [since] in buckets of [period], most played first, with
+     * the counts summed over those buckets. [AudioWithStat.lastPlayed] still comes from
+     * {@code song_stats}, since the rollups only know which bucket a play fell in.
+     */
+    @Query("""
+        SELECT a.*, IFNULL(ss.lastPlayed, 0) AS lastPlayed, r.plays AS playCount,
+               r.skips AS skipCount, r.replays AS replayCount
+        FROM (
+            SELECT audio_hash, SUM(plays) AS plays, SUM(skips) AS skips, SUM(replays) AS replays
+            FROM play_rollups
+            WHERE period = :period AND bucket_start >= :since
+            GROUP BY audio_hash
+            HAVING SUM(plays) > 0
+        ) r
+        CROSS JOIN audio a ON a.hash = r.audio_hash
+        LEFT JOIN song_stats ss ON ss.audioHash = r.audio_hash
+        WHERE a.is_available = 1
+        ORDER BY r.plays DESC, a.title COLLATE NOCASE ASC
+    """)
+    fun getMostPlayedSince(period: Int, since: Long): Flow<List<AudioWithStat>>
+
+    /** One row per day since [since] that had any plays, oldest first. */
+    @Query("""
+        SELECT bucket_start AS day, SUM(plays) AS plays, SUM(listened_ms) AS listenedMs
+        FROM play_rollups
+        WHERE period = 0 AND bucket_start >= :since
+        GROUP BY bucket_start
+        ORDER BY bucket_start ASC
+    """)
+    fun getDailyListening(since: Long): Flow<List<DailyListening>>
+
+    // ----------------------------------------------------------------------------------- //
+    // Retention
+
+    @Query("DELETE FROM play_events WHERE timestamp < :before")
+    suspend fun deleteEventsBefore(before: Long): Int
+
+    @Query("DELETE FROM play_rollups WHERE period = :period AND bucket_start < :before")
+    suspend fun deleteRollupsBefore(period: Int, before: Long): Int
+
+    // ----------------------------------------------------------------------------------- //
+    // Clearing
+
+    @Query("DELETE FROM play_events WHERE audio_hash = :audioHash")
+    suspend fun deleteEventsByHash(audioHash: Long)
+
+    @Query("DELETE FROM play_rollups WHERE audio_hash = :audioHash")
+    suspend fun deleteRollupsByHash(audioHash: Long)
+
+    @Query("DELETE FROM play_events")
+    suspend fun deleteAllEvents()
+
+    @Query("DELETE FROM play_rollups")
+    suspend fun deleteAllRollups()
+}
@@ -4,8 +4,10 @@ import androidx.room.Dao
 import androidx.room.Insert
 import androidx.room.OnConflictStrategy
 import androidx.room.Query
+import androidx.room.Transaction
 import app.simple.felicity.repository.models.Audio
 import app.simple.felicity.repository.models.PlaybackQueueEntry
+import app.simple.felicity.repository.models.QueueJournalEntry
 
 /**
  * Data Access Object for the {@code playback_queue} table.
@@ -13,6 +15,10 @@ import app.simple.felicity.repository.models.PlaybackQueueEntry
  * <p>Each row stores one queue slot. Rows are automatically removed by SQLite
  * whenever the referenced {@code audio.hash} is deleted (cascade-delete FK).</p>
  *
+ * <p>Small edits made after the snapshot was written live in
+ * {@code playback_queue_journal} until the next [replaceQueue] folds them in;
+ * see {@link QueueJournalEntry}.</p>
+ *
  * @author Hamza417
  */
 @Dao
@@ -50,5 +56,28 @@ interface PlaybackQueueDao {
 
     @Query("DELETE FROM playback_queue")
     suspend fun clear()
+
+    /**
+     * Writes a fresh snapshot of the queue and drops the journal in one transaction, so a
+     * crash halfway through can never leave a new snapshot with old edits replayed on top.
+     */
+    @Transaction
+    suspend fun replaceQueue(entries: List<PlaybackQueueEntry>) {
+        clear()
+        insertAll(entries)
+        clearJournal()
+    }
+
+    @Query("SELECT * FROM playback_queue_journal ORDER BY seq ASC")
+    suspend fun getJournal(): List<QueueJournalEntry>
+
+    @Insert
+    suspend fun appendJournal(entries: List<QueueJournalEntry>)
+
+    @Query("SELECT COUNT(*) FROM playback_queue_journal")
+    suspend fun getJournalSize(): Int
+
+    @Query("DELETE FROM playback_queue_journal")
+    suspend fun clearJournal()
 }
 
@@ -0,0 +1,64 @@
+package app.simple.felicity.repository.database.dao
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
+import androidx.room.Query
+import androidx.room.Transaction
+import app.simple.felicity.repository.models.ScanDirectory
+import app.simple.felicity.repository.models.ScanFile
+
+/**
+ * Reads and writes the scanner's own bookkeeping — the per-folder fingerprints in
+ * {@code scan_directories} and the per-file listing in {@code scan_files}. Nothing in
+ * the UI reads these tables; they only exist so a rescan can skip folders that have not
+ * changed since last time.
+ */
+@Dao
+interface ScanIndexDao {
+
+    @Query("SELECT * FROM scan_directories")
+    suspend fun getDirectories(): List<ScanDirectory>
+
+    @Query("SELECT * FROM scan_files WHERE directory_uri IN (:directoryUris)")
+    suspend fun getFilesIn(directoryUris: List<String>): List<ScanFile>
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun insertDirectories(directories: List<ScanDirectory>)
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun insertFiles(files: List<ScanFile>)
+
+    @Query("DELETE FROM scan_files WHERE directory_uri IN (:directoryUris)")
+    suspend fun deleteFilesIn(directoryUris: List<String>)
+
+    /** Marks skipped folders as still present so the cleanup below leaves them alone. */
+    @Query("UPDATE scan_directories SET seen_at = :stamp WHERE uri IN (:uris)")
+    suspend fun touchDirectories(uris: List<String>, stamp: Long)
+
+    /** Drops every folder the scan with [stamp] did not reach, along with its files. */
+    @Transaction
+    suspend fun deleteUnseen(stamp: Long) {
+        deleteUnseenDirectories(stamp)
+        deleteOrphanFiles()
+    }
+
+    @Query("DELETE FROM scan_directories WHERE seen_at < :stamp")
+    suspend fun deleteUnseenDirectories(stamp: Long)
+
+    @Query("DELETE FROM scan_files WHERE directory_uri NOT IN (SELECT uri FROM scan_directories)")
+    suspend fun deleteOrphanFiles()
+
+    /** Forgets everything, so the next scan lists every folder from scratch. */
+    @Transaction
+    suspend fun clear() {
+        clearDirectories()
+        clearFiles()
+    }
+
+    @Query("DELETE FROM scan_directories")
+    suspend fun clearDirectories()
+
+    @Query("DELETE FROM scan_files")
+    suspend fun clearFiles()
+}
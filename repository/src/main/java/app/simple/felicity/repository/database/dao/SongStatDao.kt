@@ -2,6 +2,7 @@ package app.simple.felicity.repository.database.dao
 
 import androidx.room.Dao
 import androidx.room.Delete
+import androidx.room.Embedded
 import androidx.room.Insert
 import androidx.room.OnConflictStrategy
 import androidx.room.Query
@@ -9,6 +10,7 @@ import androidx.room.Update
 import app.simple.felicity.repository.models.Audio
 import app.simple.felicity.repository.models.AudioStat
 import app.simple.felicity.repository.models.AudioWithStat
+import app.simple.felicity.repository.models.LibraryAggregate
 import kotlinx.coroutines.flow.Flow
 
 /**
@@ -21,6 +23,13 @@ import kotlinx.coroutines.flow.Flow
 @Dao
 interface SongStatDao {
 
+    /** An album or artist bucket together with the summed play count of its songs. */
+    data class AggregatePlays(
+            @Embedded
+            val aggregate: LibraryAggregate,
+            val plays: Long
+    )
+
     @Query("SELECT * FROM song_stats WHERE audioHash = :audioHash LIMIT 1")
     suspend fun getStatByHash(audioHash: Long): AudioStat?
 
@@ -100,12 +109,50 @@ interface SongStatDao {
     """)
     fun getMostSkippedWithStat(): Flow<List<AudioWithStat>>
 
+    /**
+     * The [limit] buckets of the given [kind] (see the KIND_* constants on
+     * [LibraryAggregate]) whose songs were played the most, summed over every member song.
+     * A song credited to several artists counts towards each of them.
+     *
+     * The work is bounded by how many songs have ever been played, not by the size of the
+     * library: the playCount index hands over only the played rows, and each of them is
+     * matched to its buckets through the hash and membership indexes. The joins are CROSS
+     * JOINs because that is how SQLite is told to keep this table order — left to itself
+     * it may well decide to start from the aggregate table and walk the whole library.
+     */
+    @Query("""
+        SELECT g.*, SUM(ss.playCount) AS plays FROM song_stats ss
+        CROSS JOIN audio a ON a.hash = ss.audioHash
+        CROSS JOIN library_aggregate_members m ON m.audio_id = a.id
+        CROSS JOIN library_aggregates g ON g.id = m.group_id
+        WHERE ss.playCount > 0 AND a.is_available = 1 AND g.kind = :kind
+        GROUP BY g.id
+        ORDER BY plays DESC, g.name COLLATE NOCASE ASC
+        LIMIT :limit
+    """)
+    fun getTopAggregates(kind: Int, limit: Int): Flow<List<AggregatePlays>>
+
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     suspend fun insertStat(audioStat: AudioStat)
 
     @Update
     suspend fun updateStat(audioStat: AudioStat)
 
+    /**
+     * Adds onto the counters of the song's stat row in place, without reading it first.
+     * [lastPlayed] only ever moves forward; pass 0 when the batch had no plays.
+     *
+     * @return the number of rows updated — 0 means the song has no stat row yet and the
+     *         caller should insert one.
+     */
+    @Query("""
+        UPDATE song_stats
+        SET playCount = playCount + :plays, skipCount = skipCount + :skips,
+            replayCount = replayCount + :replays, lastPlayed = MAX(lastPlayed, :lastPlayed)
+        WHERE audioHash = :audioHash
+    """)
+    suspend fun addToStat(audioHash: Long, plays: Int, skips: Int, replays: Int, lastPlayed: Long): Int
+
     @Delete
     suspend fun deleteStat(audioStat: AudioStat)
 
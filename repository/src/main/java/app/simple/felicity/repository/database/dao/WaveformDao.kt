@@ -23,6 +23,17 @@ interface WaveformDao {
     @Query("SELECT * FROM waveform_data WHERE audioHash = :audioHash LIMIT 1")
     suspend fun getWaveformByHash(audioHash: Long): WaveformData?
 
+    /**
+     * Hashes of every track that already has a stored waveform. Lets the background
+     * precompute queue skip those without loading any of the blobs.
+     */
+    @Query("SELECT audioHash FROM waveform_data")
+    suspend fun getCachedHashes(): List<Long>
+
+    /** True when the track already has a stored waveform, checked without loading the blob. */
+    @Query("SELECT EXISTS(SELECT 1 FROM waveform_data WHERE audioHash = :audioHash)")
+    suspend fun hasWaveform(audioHash: Long): Boolean
+
     /**
      * Saves a new waveform row. If one already exists for this track it is replaced,
      * so re-extracting a track always results in the freshest data being kept.
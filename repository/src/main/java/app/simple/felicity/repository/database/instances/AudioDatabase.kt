@@ -1,8 +1,8 @@
 package app.simple.felicity.repository.database.instances
 
-import android.annotation.SuppressLint
 import android.content.Context
-import android.util.Log
+import android.database.sqlite.SQLiteDatabase
+import androidx.core.content.contentValuesOf
 import androidx.room.Database
 import androidx.room.Room
 import androidx.room.RoomDatabase
@@ -13,23 +13,41 @@ import app.simple.felicity.repository.database.dao.AlbumInfoCacheDao
 import app.simple.felicity.repository.database.dao.ArtistInfoCacheDao
 import app.simple.felicity.repository.database.dao.AudioDao
 import app.simple.felicity.repository.database.dao.BookmarkDao
+import app.simple.felicity.repository.database.dao.LibraryAggregateDao
+import app.simple.felicity.repository.database.dao.LoudnessDao
+import app.simple.felicity.repository.database.dao.LyricsIndexDao
 import app.simple.felicity.repository.database.dao.PlaybackQueueDao
+import app.simple.felicity.repository.database.dao.PlayHistoryDao
 import app.simple.felicity.repository.database.dao.PlaybackStateDao
 import app.simple.felicity.repository.database.dao.PlaylistDao
 import app.simple.felicity.repository.database.dao.SavedQueueDao
+import app.simple.felicity.repository.database.dao.ScanIndexDao
 import app.simple.felicity.repository.database.dao.SongStatDao
 import app.simple.felicity.repository.database.dao.WaveformDao
+import app.simple.felicity.repository.loader.LibraryIndexer
 import app.simple.felicity.repository.models.AlbumArtColors
 import app.simple.felicity.repository.models.Audio
 import app.simple.felicity.repository.models.AudioBookmark
+import app.simple.felicity.repository.models.AudioFts
 import app.simple.felicity.repository.models.AudioStat
+import app.simple.felicity.repository.models.LibraryAggregate
+import app.simple.felicity.repository.models.LibraryAggregateDirty
+import app.simple.felicity.repository.models.LibraryAggregateMember
+import app.simple.felicity.repository.models.LibraryIndexState
+import app.simple.felicity.repository.models.LoudnessAnalysis
+import app.simple.felicity.repository.models.LyricsIndex
 import app.simple.felicity.repository.models.MusicBrainzAlbumInfo
 import app.simple.felicity.repository.models.MusicBrainzArtistInfo
+import app.simple.felicity.repository.models.PlayEvent
+import app.simple.felicity.repository.models.PlayRollup
 import app.simple.felicity.repository.models.PlaybackQueueEntry
 import app.simple.felicity.repository.models.PlaybackState
 import app.simple.felicity.repository.models.Playlist
 import app.simple.felicity.repository.models.PlaylistSongCrossRef
+import app.simple.felicity.repository.models.QueueJournalEntry
 import app.simple.felicity.repository.models.SavedQueueEntry
+import app.simple.felicity.repository.models.ScanDirectory
+import app.simple.felicity.repository.models.ScanFile
 import app.simple.felicity.repository.models.WaveformData
 
 /**
@@ -70,6 +88,33 @@ import app.simple.felicity.repository.models.WaveformData
  *   samples as a comma-separated TEXT column. On first play the samples are extracted
  *   from the audio file and saved here; every subsequent play just reads this row
  *   instead of decoding the file again.
+ *   22 → 23: Created the persistent library aggregate index — {@code library_aggregates},
+ *   {@code library_aggregate_members}, {@code library_aggregate_dirty}, and
+ *   {@code library_index_state} — so the album, artist, genre, composer, year, and folder
+ *   screens read pre-grouped rows instead of re-grouping the whole {@code audio} table.
+ *   Also indexed {@code audio.album}, {@code genre}, {@code composer}, and {@code year}
+ *   so single buckets can be recomputed without a table scan.
+ *   23 → 24: Created the {@code audio_fts} external-content FTS4 index over the searchable
+ *   text columns of {@code audio}, plus the triggers that keep it in sync, so search is a
+ *   single indexed MATCH instead of five {@code LIKE '%q%'} table scans.
+ *   24 → 25: Created {@code scan_directories} and {@code scan_files}, the scanner's record of
+ *   what every SAF folder and file looked like on the last scan, so rescans can skip folders
+ *   that have not changed instead of listing the whole tree again.
+ *   25 → 26: Replaced the comma-separated TEXT {@code amplitudes} column of {@code waveform_data}
+ *   with a binary {@code samples} BLOB holding quantized amplitudes and a min/max pyramid.
+ *   Existing rows are converted in place so nobody has to decode their library again.
+ *   26 → 27: Created {@code playback_queue_journal}, which records small queue edits as they
+ *   happen so the periodic state save no longer rewrites the whole {@code playback_queue}.
+ *   27 → 28: Created {@code loudness_analysis}, which holds the EBU R128 measurements the
+ *   background loudness scan makes for songs that have no ReplayGain tags.
+ *   28 → 29: Added {@code cue_source_uri}, {@code cue_start}, and {@code cue_end} to
+ *   {@code audio} so tracks cut out of a single album file by a CUE sheet can be stored.
+ *   29 → 30: Created {@code lyrics_index}, the scanner's record of which songs have a
+ *   {@code .lrc} or {@code .txt} next to them and which carry lyrics in their tags.
+ *   30 → 31: Indexed {@code playCount} and {@code lastPlayed} on {@code song_stats} for the
+ *   most-played, recently-played, and top artist/album queries.
+ *   31 → 32: Created {@code play_events}, the append-only log of plays, skips, and replays,
+ *   and {@code play_rollups}, the per-day, per-week, and per-month totals built from it.
  *
  * @author Hamza417
  */
@@ -86,9 +131,21 @@ import app.simple.felicity.repository.models.WaveformData
             AudioBookmark::class,
             SavedQueueEntry::class,
             AlbumArtColors::class,
-            WaveformData::class
+            WaveformData::class,
+            LibraryAggregate::class,
+            LibraryAggregateMember::class,
+            LibraryAggregateDirty::class,
+            LibraryIndexState::class,
+            AudioFts::class,
+            ScanDirectory::class,
+            ScanFile::class,
+            QueueJournalEntry::class,
+            LoudnessAnalysis::class,
+            LyricsIndex::class,
+            PlayEvent::class,
+            PlayRollup::class
         ],
-        version = 22,
+        version = 32,
         exportSchema = true
 )
 abstract class AudioDatabase : RoomDatabase() {
@@ -104,6 +161,11 @@ abstract class AudioDatabase : RoomDatabase() {
     abstract fun bookmarkDao(): BookmarkDao
     abstract fun albumArtColorsDao(): AlbumArtColorsDao
     abstract fun waveformDao(): WaveformDao
+    abstract fun libraryAggregateDao(): LibraryAggregateDao
+    abstract fun scanIndexDao(): ScanIndexDao
+    abstract fun loudnessDao(): LoudnessDao
+    abstract fun lyricsIndexDao(): LyricsIndexDao
+    abstract fun playHistoryDao(): PlayHistoryDao
 
     companion object {
         private const val DB_NAME = "audio.db"
@@ -366,58 +428,330 @@ abstract class AudioDatabase : RoomDatabase() {
             }
         }
 
-        fun getInstance(context: Context): AudioDatabase {
-            return instance ?: synchronized(this) {
-                instance ?: buildDatabase(context.applicationContext).also {
-                    instance = it
+        /**
+         * Creates the tables behind the incrementally maintained library aggregate index
+         * and adds the column indexes its per-bucket lookups rely on.
+         *
+         * Nothing is copied over here — the index starts out empty and without a
+         * {@code library_index_state} row, which makes [LibraryIndexer] do one full
+         * rebuild the first time a list screen asks for it. The triggers that keep it
+         * up to date afterwards are installed by [TRIGGER_CALLBACK] on every open.
+         */
+        private val MIGRATION_22_23 = object : Migration(22, 23) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("""
+                    CREATE TABLE IF NOT EXISTS `library_aggregates` (
+                        `id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL,
+                        `kind` INTEGER NOT NULL,
+                        `group_key` TEXT NOT NULL,
+                        `name` TEXT NOT NULL,
+                        `artist` TEXT,
+                        `song_count` INTEGER NOT NULL,
+                        `album_count` INTEGER NOT NULL DEFAULT 0,
+                        `first_year` INTEGER NOT NULL DEFAULT 0,
+                        `last_year` INTEGER NOT NULL DEFAULT 0
+                    )
+                """.trimIndent())
+                db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_library_aggregates_kind_group_key` ON `library_aggregates` (`kind`, `group_key`)")
+
+                db.execSQL("""
+                    CREATE TABLE IF NOT EXISTS `library_aggregate_members` (
+                        `group_id` INTEGER NOT NULL,
+                        `audio_id` INTEGER NOT NULL,
+                        PRIMARY KEY(`group_id`, `audio_id`)
+                    )
+                """.trimIndent())
+                db.execSQL("CREATE INDEX IF NOT EXISTS `index_library_aggregate_members_audio_id` ON `library_aggregate_members` (`audio_id`)")
+
+                db.execSQL("""
+                    CREATE TABLE IF NOT EXISTS `library_aggregate_dirty` (
+                        `kind` INTEGER NOT NULL,
+                        `value` TEXT NOT NULL,
+                        PRIMARY KEY(`kind`, `value`)
+                    )
+                """.trimIndent())
+
+                db.execSQL("""
+                    CREATE TABLE IF NOT EXISTS `library_index_state` (
+                        `id` INTEGER NOT NULL,
+                        `min_duration` INTEGER NOT NULL,
+                        `min_size` INTEGER NOT NULL,
+                        PRIMARY KEY(`id`)
+                    )
+                """.trimIndent())
+
+                db.execSQL("CREATE INDEX IF NOT EXISTS `index_audio_album` ON `audio` (`album`)")
+                db.execSQL("CREATE INDEX IF NOT EXISTS `index_audio_genre` ON `audio` (`genre`)")
+                db.execSQL("CREATE INDEX IF NOT EXISTS `index_audio_composer` ON `audio` (`composer`)")
+                db.execSQL("CREATE INDEX IF NOT EXISTS `index_audio_year` ON `audio` (`year`)")
+            }
+        }
+
+        /**
+         * Creates the {@code audio_fts} full-text index and the four content-sync triggers
+         * Room would have generated for a fresh install, then asks FTS to build the index
+         * from the rows already in {@code audio}.
+         */
+        private val MIGRATION_23_24 = object : Migration(23, 24) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                val columns = "`title`, `artist`, `album`, `album_artist`, `genre`, `composer`, `path`"
+                val newValues = "NEW.`title`, NEW.`artist`, NEW.`album`, NEW.`album_artist`, NEW.`genre`, NEW.`composer`, NEW.`path`"
+
+                db.execSQL("""
+                    CREATE VIRTUAL TABLE IF NOT EXISTS `audio_fts` USING FTS4(
+                        `title` TEXT, `artist` TEXT, `album` TEXT, `album_artist` TEXT,
+                        `genre` TEXT, `composer` TEXT, `path` TEXT,
+                        tokenize=unicode61, content=`audio`
+                    )
+                """.trimIndent())
+
+                db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_audio_fts_BEFORE_UPDATE BEFORE UPDATE ON `audio` BEGIN DELETE FROM `audio_fts` WHERE `docid`=OLD.`rowid`; END")
+                db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_audio_fts_BEFORE_DELETE BEFORE DELETE ON `audio` BEGIN DELETE FROM `audio_fts` WHERE `docid`=OLD.`rowid`; END")
+                db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_audio_fts_AFTER_UPDATE AFTER UPDATE ON `audio` BEGIN INSERT INTO `audio_fts`(`docid`, $columns) VALUES (NEW.`rowid`, $newValues); END")
+                db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_audio_fts_AFTER_INSERT AFTER INSERT ON `audio` BEGIN INSERT INTO `audio_fts`(`docid`, $columns) VALUES (NEW.`rowid`, $newValues); END")
+
+                db.execSQL("INSERT INTO `audio_fts`(`audio_fts`) VALUES('rebuild')")
+            }
+        }
+
+        /**
+         * Creates the scanner's folder fingerprint and file listing tables. Both start out
+         * empty, so the first scan after the update simply lists every folder like it always
+         * did and fills them in on the way.
+         */
+        private val MIGRATION_24_25 = object : Migration(24, 25) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("""
+                    CREATE TABLE IF NOT EXISTS `scan_directories` (
+                        `uri` TEXT NOT NULL,
+                        `tree_uri` TEXT NOT NULL,
+                        `parent_uri` TEXT,
+                        `last_modified` INTEGER NOT NULL,
+                        `child_count` INTEGER NOT NULL,
+                        `max_child_modified` INTEGER NOT NULL,
+                        `aggregate_hash` INTEGER NOT NULL,
+                        `verified_at` INTEGER NOT NULL,
+                        `seen_at` INTEGER NOT NULL,
+                        PRIMARY KEY(`uri`)
+                    )
+                """.trimIndent())
+                db.execSQL("CREATE INDEX IF NOT EXISTS `index_scan_directories_tree_uri` ON `scan_directories` (`tree_uri`)")
+                db.execSQL("CREATE INDEX IF NOT EXISTS `index_scan_directories_parent_uri` ON `scan_directories` (`parent_uri`)")
+
+                db.execSQL("""
+                    CREATE TABLE IF NOT EXISTS `scan_files` (
+                        `uri` TEXT NOT NULL,
+                        `directory_uri` TEXT NOT NULL,
+                        `name` TEXT NOT NULL,
+                        `size` INTEGER NOT NULL,
+                        `last_modified` INTEGER NOT NULL,
+                        PRIMARY KEY(`uri`)
+                    )
+                """.trimIndent())
+                db.execSQL("CREATE INDEX IF NOT EXISTS `index_scan_files_directory_uri` ON `scan_files` (`directory_uri`)")
+            }
+        }
+
+        /**
+         * Moves {@code waveform_data} from the old comma-separated text to the binary blob
+         * format. SQLite can't parse the text for us, so every row is read, re-encoded with
+         * [WaveformData.fromLegacyText] and written into a fresh table that then replaces the
+         * old one. Waveforms are small and there is at most one per track, so this is quick.
+         */
+        private val MIGRATION_25_26 = object : Migration(25, 26) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("""
+                    CREATE TABLE IF NOT EXISTS `waveform_data_new` (
+                        `audioHash` INTEGER NOT NULL PRIMARY KEY,
+                        `samples` BLOB NOT NULL
+                    )
+                """.trimIndent())
+
+                db.query("SELECT `audioHash`, `amplitudes` FROM `waveform_data`").use { cursor ->
+                    while (cursor.moveToNext()) {
+                        val hash = cursor.getLong(0)
+                        val converted = WaveformData.fromLegacyText(hash, cursor.getString(1) ?: "")
+                        db.insert("waveform_data_new", SQLiteDatabase.CONFLICT_REPLACE, contentValuesOf(
+                                "audioHash" to hash,
+                                "samples" to converted.samples))
+                    }
                 }
+
+                db.execSQL("DROP TABLE `waveform_data`")
+                db.execSQL("ALTER TABLE `waveform_data_new` RENAME TO `waveform_data`")
+                db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_waveform_data_audioHash` ON `waveform_data` (`audioHash`)")
             }
         }
 
-        fun getInstance(): AudioDatabase? = instance
+        /**
+         * Adds the queue journal. It starts out empty, which simply means the existing
+         * {@code playback_queue} snapshot is already up to date.
+         */
+        private val MIGRATION_26_27 = object : Migration(26, 27) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("""
+                    CREATE TABLE IF NOT EXISTS `playback_queue_journal` (
+                        `seq` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL,
+                        `op` INTEGER NOT NULL,
+                        `position` INTEGER NOT NULL,
+                        `target` INTEGER NOT NULL DEFAULT 0,
+                        `audio_hash` INTEGER NOT NULL DEFAULT 0
+                    )
+                """.trimIndent())
+            }
+        }
 
         /**
-         * Bumps Android's default [android.database.CursorWindow] size from the factory default
-         * of 2 MB up to 20 MB. Room loads an entire query result into a single cursor window, so
-         * when a library has thousands of tracks and each row has many text columns (uri, path,
-         * title, artist, album, …) the 2 MB ceiling fills up and Android throws an
-         * [OutOfMemoryError] deep inside {@code android.database.CursorWindow.nativeGetString}.
-         *
-         * The window size is a private static field, so we reach it via reflection. If a future
-         * Android release renames or removes the field, we silently carry on with the default
-         * size rather than crashing during database initialization.
-         *
-         * Source: https://github.com/andpor/react-native-sqlite-storage/issues/364#issuecomment-526423153
+         * Adds the loudness analysis table. It starts out empty; the background scan fills
+         * it in for songs without ReplayGain tags.
+         */
+        private val MIGRATION_27_28 = object : Migration(27, 28) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("""
+                    CREATE TABLE IF NOT EXISTS `loudness_analysis` (
+                        `audio_hash` INTEGER NOT NULL,
+                        `integrated_lufs` REAL,
+                        `track_gain` REAL NOT NULL,
+                        `track_peak` REAL NOT NULL,
+                        `album_gain` REAL,
+                        `album_peak` REAL,
+                        `histogram` BLOB NOT NULL,
+                        `written_to_tags` INTEGER NOT NULL DEFAULT 0,
+                        PRIMARY KEY(`audio_hash`)
+                    )
+                """.trimIndent())
+            }
+        }
+
+        /**
+         * Adds the CUE track columns to {@code audio}. Every existing row is an ordinary
+         * song, which is exactly what the defaults say.
          */
-        @SuppressLint("DiscouragedPrivateApi")
-        private fun expandCursorWindowSize() {
-            try {
-                val field = android.database.CursorWindow::class.java.getDeclaredField("sCursorWindowSize")
-                field.isAccessible = true
-                val expected = 20 * 1024 * 1024
-                field.set(null, expected) // 20 MB
-                val size = field.getInt(null)
-                Log.i("AudioDatabase", "Expanded CursorWindow size to $size bytes, expected: $expected bytes")
-            } catch (_: Exception) {
-                // Nothing we can do if the field is gone; carry on with the default.
+        private val MIGRATION_28_29 = object : Migration(28, 29) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("ALTER TABLE `audio` ADD COLUMN `cue_source_uri` TEXT")
+                db.execSQL("ALTER TABLE `audio` ADD COLUMN `cue_start` INTEGER NOT NULL DEFAULT 0")
+                db.execSQL("ALTER TABLE `audio` ADD COLUMN `cue_end` INTEGER NOT NULL DEFAULT 0")
+            }
+        }
+
+        /**
+         * Adds the lyrics index. It starts out empty, which the lyrics loader treats as
+         * "not scanned yet" and falls back to looking next to the song the old way until
+         * the next scan fills it in.
+         */
+        private val MIGRATION_29_30 = object : Migration(29, 30) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("""
+                    CREATE TABLE IF NOT EXISTS `lyrics_index` (
+                        `audio_hash` INTEGER NOT NULL,
+                        `audio_uri` TEXT NOT NULL,
+                        `lrc_uri` TEXT,
+                        `txt_uri` TEXT,
+                        `has_embedded_lyrics` INTEGER,
+                        PRIMARY KEY(`audio_hash`)
+                    )
+                """.trimIndent())
+                db.execSQL("CREATE INDEX IF NOT EXISTS `index_lyrics_index_audio_uri` ON `lyrics_index` (`audio_uri`)")
+            }
+        }
+
+        /**
+         * Indexes the two columns every stats list sorts by. No data changes.
+         */
+        private val MIGRATION_30_31 = object : Migration(30, 31) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("CREATE INDEX IF NOT EXISTS `index_song_stats_playCount` ON `song_stats` (`playCount`)")
+                db.execSQL("CREATE INDEX IF NOT EXISTS `index_song_stats_lastPlayed` ON `song_stats` (`lastPlayed`)")
             }
         }
 
+        /**
+         * Adds the play log and its rollups. Both start out empty — {@code song_stats} only
+         * knows totals, not when each play happened, so there is nothing honest to backfill
+         * the weeks and months with. The all-time numbers are untouched.
+         */
+        private val MIGRATION_31_32 = object : Migration(31, 32) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("""
+                    CREATE TABLE IF NOT EXISTS `play_events` (
+                        `id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL,
+                        `audio_hash` INTEGER NOT NULL,
+                        `kind` INTEGER NOT NULL,
+                        `timestamp` INTEGER NOT NULL,
+                        `duration_ms` INTEGER NOT NULL DEFAULT 0
+                    )
+                """.trimIndent())
+                db.execSQL("CREATE INDEX IF NOT EXISTS `index_play_events_timestamp` ON `play_events` (`timestamp`)")
+                db.execSQL("""
+                    CREATE TABLE IF NOT EXISTS `play_rollups` (
+                        `period` INTEGER NOT NULL,
+                        `bucket_start` INTEGER NOT NULL,
+                        `audio_hash` INTEGER NOT NULL,
+                        `plays` INTEGER NOT NULL DEFAULT 0,
+                        `skips` INTEGER NOT NULL DEFAULT 0,
+                        `replays` INTEGER NOT NULL DEFAULT 0,
+                        `listened_ms` INTEGER NOT NULL DEFAULT 0,
+                        PRIMARY KEY(`period`, `bucket_start`, `audio_hash`)
+                    )
+                """.trimIndent())
+            }
+        }
+
+        /**
+         * Every migration the database is built with, oldest first. Kept in one place so
+         * the migration test in androidTest walks exactly the same path a real upgrade does.
+         */
+        internal val MIGRATIONS = arrayOf(
+                MIGRATION_11_12,
+                MIGRATION_12_13,
+                MIGRATION_13_14,
+                MIGRATION_14_15,
+                MIGRATION_15_16,
+                MIGRATION_16_17,
+                MIGRATION_17_18,
+                MIGRATION_18_19,
+                MIGRATION_19_20,
+                MIGRATION_20_21,
+                MIGRATION_21_22,
+                MIGRATION_22_23,
+                MIGRATION_23_24,
+                MIGRATION_24_25,
+                MIGRATION_25_26,
+                MIGRATION_26_27,
+                MIGRATION_27_28,
+                MIGRATION_28_29,
+                MIGRATION_29_30,
+                MIGRATION_30_31,
+                MIGRATION_31_32)
+
+        /**
+         * Installs the SQLite triggers that mark aggregate buckets dirty whenever the
+         * {@code audio} table changes. Room can't declare triggers, and a destructive
+         * migration drops them along with the table, so we simply make sure they exist
+         * every time the database is opened.
+         */
+        private val TRIGGER_CALLBACK = object : RoomDatabase.Callback() {
+            override fun onOpen(db: SupportSQLiteDatabase) {
+                super.onOpen(db)
+                LibraryIndexer.createTriggers(db)
+            }
+        }
+
+        fun getInstance(context: Context): AudioDatabase {
+            return instance ?: synchronized(this) {
+                instance ?: buildDatabase(context.applicationContext).also {
+                    instance = it
+                }
+            }
+        }
+
+        fun getInstance(): AudioDatabase? = instance
+
         private fun buildDatabase(context: Context): AudioDatabase {
-            expandCursorWindowSize()
             return Room.databaseBuilder(context, AudioDatabase::class.java, DB_NAME)
-                .addMigrations(
-                        MIGRATION_11_12,
-                        MIGRATION_12_13,
-                        MIGRATION_13_14,
-                        MIGRATION_14_15,
-                        MIGRATION_15_16,
-                        MIGRATION_16_17,
-                        MIGRATION_17_18,
-                        MIGRATION_18_19,
-                        MIGRATION_19_20,
-                        MIGRATION_20_21,
-                        MIGRATION_21_22)
+                .addMigrations(*MIGRATIONS)
+                .addCallback(TRIGGER_CALLBACK)
                 .fallbackToDestructiveMigration(dropAllTables = true)
                 .build()
         }
@@ -1,24 +1,37 @@
 package app.simple.felicity.repository.loader
 
 import android.content.Context
+import android.net.Uri
 import android.provider.DocumentsContract
 import android.util.Log
 import androidx.annotation.WorkerThread
 import androidx.core.net.toUri
-import androidx.documentfile.provider.DocumentFile
+import androidx.room.withTransaction
+import app.simple.felicity.preferences.LibraryPreferences
+import app.simple.felicity.repository.covers.ArtworkThumbnailStore
 import app.simple.felicity.repository.database.dao.AudioDao
 import app.simple.felicity.repository.database.instances.AudioDatabase
 import app.simple.felicity.repository.loader.MediaStorePaths.buildMediaStorePathMap
-import app.simple.felicity.repository.metadata.MetaDataHelper.extractMetadata
+import app.simple.felicity.repository.metadata.CueSheetLoader
+import app.simple.felicity.repository.metadata.EmbeddedLyricsStore
+import app.simple.felicity.repository.metadata.MetaDataHelper.extractForScan
+import app.simple.felicity.repository.metadata.TrackExtraction
 import app.simple.felicity.repository.models.Audio
+import app.simple.felicity.repository.models.AudioIndexRow
+import app.simple.felicity.repository.models.LyricsIndex
+import app.simple.felicity.repository.models.ScanDirectory
+import app.simple.felicity.repository.models.ScanFile
 import app.simple.felicity.repository.notifications.LoaderNotification
 import app.simple.felicity.repository.scanners.AudioScanner
+import app.simple.felicity.repository.scanners.SAFDirectory
 import app.simple.felicity.repository.scanners.SAFFile
 import app.simple.felicity.shared.utils.ProcessUtils.checkNotMainThread
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.Job
+import kotlinx.coroutines.NonCancellable
 import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.coroutineScope
 import kotlinx.coroutines.channels.Channel
 import kotlinx.coroutines.currentCoroutineContext
 import kotlinx.coroutines.ensureActive
@@ -26,7 +39,10 @@ import kotlinx.coroutines.isActive
 import kotlinx.coroutines.joinAll
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+import kotlinx.coroutines.withContext
 import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
 import java.util.concurrent.atomic.AtomicBoolean
 import java.util.concurrent.atomic.AtomicInteger
 import javax.inject.Inject
@@ -46,7 +62,10 @@ import kotlin.math.max
  */
 @Singleton
 @WorkerThread
-class AudioDatabaseLoader @Inject constructor(private val context: Context) {
+class AudioDatabaseLoader @Inject constructor(
+        private val context: Context,
+        private val libraryIndexer: LibraryIndexer
+) {
 
     companion object {
         private const val TAG = "AudioDatabaseLoader"
@@ -55,6 +74,37 @@ class AudioDatabaseLoader @Inject constructor(private val context: Context) {
         /** How many audio items we accumulate before flushing them to the database in one go. */
         private const val BATCH_SIZE = 50
 
+        /**
+         * How many discovered files may queue up between the tree walker and extraction
+         * before the walker is made to wait. Enough to keep every extraction slot busy.
+         */
+        private const val WALK_BUFFER_SIZE = 256
+
+        /**
+         * Most files handed to TagLib in one native call. Big enough that the per-call JNI
+         * cost disappears, small enough that a batch of songs with large embedded covers
+         * doesn't hold hundreds of megabytes at once.
+         */
+        private const val EXTRACT_BATCH_SIZE = 32
+
+        /**
+         * Batches extracted at the same time. TagLib already spreads each batch over every
+         * core natively; a second one lets the next batch open its files over Binder while
+         * the current one is being parsed. The per-file work around the native call —
+         * opening, fallbacks, storing covers and lyrics — is not limited by this but by
+         * [semaphore], the same as when every file was its own job.
+         */
+        private const val EXTRACT_BATCH_PARALLELISM = 2
+
+        /** Stays comfortably below SQLite's default limit of 999 bound parameters. */
+        private const val ID_CHUNK_SIZE = 900
+
+        /**
+         * Longest a folder can go without being listed for real, even when its timestamp
+         * says nothing changed. Catches in-place tag edits that don't touch the folder.
+         */
+        private const val REVERIFY_INTERVAL_MS = 7L * 24 * 60 * 60 * 1000
+
         /**
          * A lightweight snapshot of a file's identity in the database index.
          * We use size and last-modified time as a quick "has this file changed?" check —
@@ -111,9 +161,15 @@ class AudioDatabaseLoader @Inject constructor(private val context: Context) {
      */
     private val isScanRunning = AtomicBoolean(false)
 
-    /** Limits how many files we process in parallel so we don't overwhelm the CPU. */
+    /**
+     * Limits how many files we process in parallel so we don't overwhelm the CPU. Inside an
+     * extraction batch every file still takes one of these for its own work.
+     */
     private val semaphore = Semaphore(max(MIN_SEMAPHORE_PERMITS, Runtime.getRuntime().availableProcessors()))
 
+    /** Limits how many extraction batches are in flight; see [EXTRACT_BATCH_PARALLELISM]. */
+    private val batchSemaphore = Semaphore(EXTRACT_BATCH_PARALLELISM)
+
     /** Handles all the "Scanning Library" notification UI so we don't have to. */
     private val notification = LoaderNotification(context)
 
@@ -159,6 +215,10 @@ class AudioDatabaseLoader @Inject constructor(private val context: Context) {
 
         notification.begin()
 
+        // Rows are about to be written in batches; let the aggregate index catch up once
+        // at the end instead of after every batch.
+        libraryIndexer.setDeferred(true)
+
         try {
             val startTime = System.currentTimeMillis()
             Log.d(TAG, "Starting audio file processing...")
@@ -171,34 +231,55 @@ class AudioDatabaseLoader @Inject constructor(private val context: Context) {
                 return
             }
 
-            Log.d(TAG, "Reconciling database with current SAF grants...")
-            reconcileDatabase(treeUriStrings)
+            val scanStamp = System.currentTimeMillis()
+            val scanDao = audioDatabase.scanIndexDao()
 
             Log.d(TAG, "Indexing existing audio files in the database...")
 
+            // Slim rows only — a rescan needs ids, sizes and timestamps, not 40 columns per song.
+            val indexRows = dao?.getIndexRows().orEmpty()
+
+            Log.d(TAG, "Reconciling database with current SAF grants...")
+            val revokedIds = purgeRevokedTrees(indexRows, treeUriStrings)
+
             val pathToStoredId = HashMap<String, Long>()
-            dao?.getAllAudioListAll()?.forEach { audio ->
-                indexedMap[audio.uri] = IndexedFile(audio.dateModified, audio.size, audio.id, audio.isFavorite, audio.isAlwaysSkip)
-                pathToStoredId[audio.uri] = audio.id
+            indexedMap.clear()
+            indexRows.forEach { row ->
+                val uri = row.uri ?: return@forEach
+                if (row.id in revokedIds) return@forEach
+                indexedMap[uri] = IndexedFile(row.dateModified, row.size, row.id, row.isFavorite, row.alwaysSkip)
+                pathToStoredId[uri] = row.id
             }
 
             Log.d(TAG, "Indexing complete. Found ${indexedMap.size} existing entries in the database.")
 
-            // Phase 1 — collect every audio file from all SAF tree URIs.
-            val allSAFFiles = mutableListOf<SAFFile>()
-            val scanner = AudioScanner()
-            for (uriStr in treeUriStrings) {
-                myScope.coroutineContext.ensureActive()
-                val treeUri = uriStr.toUri()
-                val collectStart = System.currentTimeMillis()
-                val files = scanner.getAudioFiles(context, treeUri)
-                Log.d(TAG, "Found ${files.size} audio files in $uriStr (collected in ${System.currentTimeMillis() - collectStart}ms)")
-                allSAFFiles.addAll(files)
-            }
+            val knownDirectories = scanDao.getDirectories().associateBy { it.uri }
+            val freshDirectories = findFreshDirectories(knownDirectories, scanStamp)
+            val knownSubdirectories = knownDirectories.values
+                .filter { it.parentUri != null }
+                .groupBy({ it.parentUri!! }, { it.uri.toUri() })
+
+            // Every audio file known to still exist after this walk, listed or carried over.
+            val seenUris: MutableSet<String> = ConcurrentHashMap.newKeySet()
+            val listedDirectories = ConcurrentLinkedQueue<SAFDirectory>()
+            val skippedDirectories: MutableSet<String> = ConcurrentHashMap.newKeySet()
+            val walkCompleted = AtomicBoolean(false)
+
+            // Album files that CUE sheets took over, cut into their tracks once the walk is done.
+            val cueAlbums = ConcurrentLinkedQueue<CueSheetLoader.Album>()
+
+            // Embedded-lyrics flags of every song read this time, keyed by URI; the sidecars
+            // are filled in from the folder listings once the walk is over.
+            val extractedLyrics = ConcurrentHashMap<String, LyricsIndex>()
+            val cueTrackLyrics = ConcurrentLinkedQueue<LyricsIndex>()
 
-            notification.setTotal(allSAFFiles.size)
-            Log.d(TAG, "Total audio files to evaluate: ${allSAFFiles.size}")
+            // Embedded covers seen on this scan, keyed by picture digest, with the song whose
+            // thumbnails were encoded from it. Songs carrying the same picture get a copy of
+            // those files once extraction is over instead of their own decode and encode.
+            val artworkOwners = ConcurrentHashMap<Long, Long>()
+            val artworkCopies = ConcurrentLinkedQueue<Pair<Long, Long>>()
 
+            Log.d(TAG, "Loaded ${knownDirectories.size} folder fingerprints, ${freshDirectories.size} eligible for skipping")
 
             val processedCount = AtomicInteger(0)
 
@@ -243,74 +324,208 @@ class AudioDatabaseLoader @Inject constructor(private val context: Context) {
                 }
             }
 
-            // Phase 2 — process each SAFFile in parallel coroutines.
+            // Phase 1 — walk every granted tree in parallel. Files are streamed into the
+            // channel as soon as their folder has been listed, so extraction below starts on
+            // the first batch of songs instead of waiting for the whole walk to finish.
+            val treeUris = treeUriStrings.map { it.toUri() }
+            val discoveredFiles = Channel<SAFFile>(capacity = WALK_BUFFER_SIZE)
+            val discoveredCount = AtomicInteger(0)
+
+            val walkerJob = myScope.launch {
+                val walkStart = System.currentTimeMillis()
+                try {
+                    AudioScanner().walkAudioFiles(
+                            context = context,
+                            treeUris = treeUris,
+                            // A folder whose own timestamp has not moved had nothing added, removed
+                            // or renamed directly in it, so its files are taken from the file index
+                            // instead of a listing. Its subfolders are still visited and judged by
+                            // their own timestamps — a change further down never reaches this one.
+                            skipDirectory = { uri, lastModified ->
+                                val key = uri.toString()
+                                val skip = lastModified != 0L
+                                        && key in freshDirectories
+                                        && knownDirectories[key]?.lastModified == lastModified
+                                if (skip) skippedDirectories.add(key)
+                                skip
+                            },
+                            knownSubdirectories = { knownSubdirectories[it.toString()] ?: emptyList() },
+                            onDirectory = { listedDirectories.add(it) },
+                            // Keep whatever we knew about a folder that could not be listed this
+                            // time rather than deleting its songs over a hiccup.
+                            onListingFailed = { skippedDirectories.add(it.toString()) },
+                            onCueSheets = { cueSheets, audioFiles ->
+                                claimCueSheets(cueSheets, audioFiles, seenUris, cueAlbums)
+                            }
+                    ) { safFile ->
+                        seenUris.add(safFile.uri.toString())
+                        discoveredFiles.send(safFile)
+                    }
+
+                    // Files in skipped folders are still there; only the ones that never made
+                    // it into the library (new install, failed extraction) need another look.
+                    // Their CUE sheets are read again so the album files stay claimed.
+                    carryOverSkipped(skippedDirectories).forEach { folder ->
+                        val (cueSheets, audioFiles) = folder.partition { AudioScanner.isCueSheet(it.name) }
+                        val claimed = if (cueSheets.isEmpty()) emptySet() else claimCueSheets(cueSheets, audioFiles, seenUris, cueAlbums)
+
+                        audioFiles.forEach { safFile ->
+                            if (safFile.uri in claimed) return@forEach
+                            val key = safFile.uri.toString()
+                            seenUris.add(key)
+                            if (!indexedMap.containsKey(key)) {
+                                discoveredFiles.send(safFile)
+                            }
+                        }
+                    }
+
+                    walkCompleted.set(true)
+                    Log.d(TAG, "SAF walk finished in ${System.currentTimeMillis() - walkStart}ms " +
+                            "(${listedDirectories.size} folders listed, ${skippedDirectories.size} taken from the index)")
+                } catch (e: CancellationException) {
+                    throw e
+                } catch (e: Exception) {
+                    Log.e(TAG, "SAF walk failed", e)
+                } finally {
+                    discoveredFiles.close()
+                }
+            }
+
+            // Phase 2 — extract the SAFFiles in batches as the walker finds them. Whatever has
+            // queued up since the last batch goes into the next one (up to EXTRACT_BATCH_SIZE),
+            // so nothing waits for a batch to fill while the walk is slow.
+            // The total only grows while the walk is running, so the progress bar fills
+            // towards a moving finish line until the last folder has been listed.
             val pendingJobs = mutableListOf<Job>()
 
-            allSAFFiles.forEach { safFile ->
-                myScope.coroutineContext.ensureActive()
+            while (true) {
+                val first = discoveredFiles.receiveCatching().getOrNull() ?: break
+                val batch = mutableListOf<SAFFile>()
+                var next: SAFFile? = first
 
-                val uriKey = safFile.uri.toString()
-                if (shouldProcess(safFile)) {
-                    val producerJob = myScope.launch {
-                        semaphore.acquire()
-                        try {
-                            ensureActive()
+                while (next != null) {
+                    myScope.coroutineContext.ensureActive()
+                    notification.setTotal(discoveredCount.incrementAndGet())
+                    if (shouldProcess(next)) batch.add(next)
 
-                            Log.d(TAG, "Processing: $uriKey")
-                            val audio = safFile.extractMetadata(context)
+                    next = if (batch.size < EXTRACT_BATCH_SIZE) discoveredFiles.tryReceive().getOrNull() else null
+                }
 
-                            ensureActive()
+                if (batch.isEmpty()) continue
 
-                            if (audio == null) {
-                                Log.w(TAG, "Failed to extract metadata for: ${safFile.name}")
-                                return@launch
+                pendingJobs.add(myScope.launch {
+                    batchSemaphore.acquire()
+                    try {
+                        ensureActive()
+
+                        Log.d(TAG, "Processing batch of ${batch.size} files")
+                        val extractions = batch.extractForScan(context, semaphore)
+
+                        // Encoding covers and writing lyrics is per-file JVM work, so it
+                        // fans out again instead of running one file after the other.
+                        coroutineScope {
+                            batch.forEachIndexed { index, safFile ->
+                                val extraction = extractions[index]
+                                if (extraction == null) {
+                                    Log.w(TAG, "Failed to extract metadata for: ${safFile.name}")
+                                    return@forEachIndexed
+                                }
+
+                                launch {
+                                    val audio = extraction.audio
+                                    semaphore.withPermit {
+                                        ensureActive()
+                                        storeEmbeddedExtras(extraction, audio.hash, artworkOwners, artworkCopies)
+                                    }
+                                    extractedLyrics[audio.uri] = LyricsIndex(audio.hash, audio.uri, hasEmbeddedLyrics = audio.embeddedLyrics)
+                                    dbChannel.send(pendingWriteFor(audio, pathToStoredId))
+
+                                    val done = processedCount.incrementAndGet()
+                                    if (done % LoaderNotification.NOTIFICATION_UPDATE_INTERVAL == 0) {
+                                        notification.updateProgress(done)
+                                    }
+                                }
                             }
+                        }
+                    } catch (e: CancellationException) {
+                        Log.d(TAG, "Processing canceled for a batch of ${batch.size} files")
+                        throw e
+                    } catch (e: Exception) {
+                        Log.e(TAG, "Error processing batch starting at ${batch.first().uri}", e)
+                    } finally {
+                        batchSemaphore.release()
+                    }
+                })
+            }
 
+            // Phase 3 — the walk is over, so every CUE sheet has been read. Cut each claimed
+            // album file into its tracks, unless neither the sheet nor the file has changed.
+            for (album in cueAlbums) {
+                val trackUris = album.trackUris()
+                val unchanged = trackUris.all { uri ->
+                    indexedMap[uri]?.let { it.lastModified == album.lastModified && it.size == album.source.size } == true
+                }
+                if (unchanged) continue
 
-                            val storedId = pathToStoredId[uriKey]
-                            val stored = indexedMap[uriKey]
-                            val newIndexEntry = IndexedFile(audio.dateModified, audio.size)
+                pendingJobs.add(myScope.launch {
+                    semaphore.acquire()
+                    try {
+                        ensureActive()
 
-                            val write = if (storedId != null && storedId != 0L) {
-                                audio.id = storedId
-                                audio.isFavorite = stored?.isFavorite ?: false
-                                audio.isAlwaysSkip = stored?.alwaysSkip ?: false
-                                Log.d(TAG, "Updating existing entry (id=$storedId) for: ${safFile.name}")
-                                PendingWrite.Update(audio, uriKey, newIndexEntry)
-                            } else {
-                                PendingWrite.Insert(audio, uriKey, newIndexEntry)
-                            }
+                        val extraction = album.source.extractForScan(context)
+                        if (extraction == null) {
+                            Log.w(TAG, "Failed to extract metadata for CUE album file: ${album.source.name}")
+                            return@launch
+                        }
 
-                            dbChannel.send(write)
+                        CueSheetLoader.buildTracks(album, extraction.audio).forEach { track ->
+                            // Every track shows the album file's cover; only its lyrics don't apply.
+                            storeEmbeddedExtras(extraction, track.hash, artworkOwners, artworkCopies, withLyrics = false)
 
-                            val done = processedCount.incrementAndGet()
-                            if (done % LoaderNotification.NOTIFICATION_UPDATE_INTERVAL == 0) {
-                                notification.updateProgress(done)
-                            }
-                        } catch (e: CancellationException) {
-                            Log.d(TAG, "Processing canceled for: ${safFile.name}")
-                            throw e
-                        } catch (e: Exception) {
-                            Log.e(TAG, "Error processing $uriKey", e)
-                        } finally {
-                            semaphore.release()
+                            // The album file's tag lyrics would be the whole album's, and a
+                            // sidecar can't be named after a track, so there is nothing to find.
+                            cueTrackLyrics.add(LyricsIndex(track.hash, track.uri, hasEmbeddedLyrics = false))
+                            dbChannel.send(pendingWriteFor(track, pathToStoredId))
                         }
+                        Log.d(TAG, "Cut ${album.source.name} into ${trackUris.size} tracks from ${album.cueSheet.name}")
+                    } catch (e: CancellationException) {
+                        throw e
+                    } catch (e: Exception) {
+                        Log.e(TAG, "Error processing CUE sheet ${album.cueSheet.uri}", e)
+                    } finally {
+                        semaphore.release()
                     }
-
-                    pendingJobs.add(producerJob)
-                }
+                })
             }
 
+            walkerJob.join()
             pendingJobs.joinAll()
             dbChannel.close()
             consumerJob.join()
 
+            artworkCopies.forEach { (fromHash, toHash) -> ArtworkThumbnailStore.copy(context, fromHash, toHash) }
+
             // Only push the "100% done" update when we actually processed some files.
             // If everything was already up to date and pendingJobs was empty, posting
             // a final progress update would cause a split-second notification flash
             // (indeterminate → 100% → dismissed) that looks broken to the user.
             if (pendingJobs.isNotEmpty()) {
-                notification.updateProgress(allSAFFiles.size)
+                notification.updateProgress(discoveredCount.get())
+            }
+
+            if (walkCompleted.get()) {
+                removeMissingFiles(indexRows, revokedIds, seenUris)
+                saveScanIndex(listedDirectories, skippedDirectories, knownDirectories, scanStamp)
+                saveLyricsIndex(listedDirectories, extractedLyrics, cueTrackLyrics, indexRows)
+
+                // Thumbnails and lyrics of songs that are gone or changed on disk would never be read again.
+                dao?.let {
+                    val liveHashes = it.getAllHashes().toHashSet()
+                    ArtworkThumbnailStore.prune(context, liveHashes)
+                    EmbeddedLyricsStore.prune(context, liveHashes)
+                }
+            } else {
+                Log.w(TAG, "SAF walk did not complete, keeping existing rows and folder index as they are")
             }
 
             // Post-processing: fill in real filesystem paths for any audio rows that are missing one.
@@ -334,75 +549,319 @@ class AudioDatabaseLoader @Inject constructor(private val context: Context) {
             // even if a parallel ghost scan somehow slipped through the lock above and
             // already bumped the generation counter past ours.
             notification.dismissForce()
+
+            libraryIndexer.setDeferred(false)
+            withContext(NonCancellable) {
+                libraryIndexer.flush()
+            }
+
             isScanRunning.set(false)
         }
     }
 
     /**
-     * Removes entries from the database that no longer exist on disk or have been excluded
-     * by the current filter preferences. Works with SAF content URIs stored as paths.
+     * Stores what the scan's TagLib read brought back besides the tags, under the song
+     * with [hash]: its embedded lyrics in [EmbeddedLyricsStore] and its embedded cover in
+     * [ArtworkThumbnailStore], so neither the lyrics screen nor the cover loaders have to
+     * open the file again for them.
      *
-     * For each audio row in the database:
-     * - If its path is a content URI, we check whether the document still exists.
-     * - If the SAF tree that granted us access has been revoked entirely, we remove
-     *   everything that lived inside that tree so the library doesn't ghost.
+     * Only the first song with a given picture has its thumbnails encoded; later ones are
+     * queued in [artworkCopies] and copied once the owner's files are surely written.
+     * Songs read through the fallback loader store nothing — their lyrics and cover were
+     * never looked at, and the cover loaders still try harder on their own.
      */
-    private suspend fun reconcileDatabase(grantedTreeUriStrings: Set<String>) {
-        val dao = audioDatabase.audioDao() ?: return
+    private fun storeEmbeddedExtras(
+            extraction: TrackExtraction,
+            hash: Long,
+            artworkOwners: ConcurrentHashMap<Long, Long>,
+            artworkCopies: ConcurrentLinkedQueue<Pair<Long, Long>>,
+            withLyrics: Boolean = true
+    ) {
+        if (!extraction.isComplete) return
+
+        if (withLyrics) {
+            EmbeddedLyricsStore.put(context, hash, extraction.lyrics)
+        }
+
+        val artwork = extraction.artwork ?: return
+        val owner = artworkOwners.putIfAbsent(extraction.artworkDigest, hash)
+        if (owner == null) {
+            ArtworkThumbnailStore.putEncoded(context, hash, artwork)
+        } else if (owner != hash) {
+            artworkCopies.add(owner to hash)
+        }
+    }
+
+    /**
+     * Wraps a freshly extracted [audio] into the write the database consumer expects: an
+     * update that keeps the row id and the user's flags when its URI is already in the
+     * library, an insert otherwise.
+     */
+    private fun pendingWriteFor(audio: Audio, pathToStoredId: Map<String, Long>): PendingWrite {
+        val uriKey = audio.uri
+        val storedId = pathToStoredId[uriKey]
+        val stored = indexedMap[uriKey]
+        val newIndexEntry = IndexedFile(audio.dateModified, audio.size)
+
+        return if (storedId != null && storedId != 0L) {
+            audio.id = storedId
+            audio.isFavorite = stored?.isFavorite ?: false
+            audio.isAlwaysSkip = stored?.alwaysSkip ?: false
+            Log.d(TAG, "Updating existing entry (id=$storedId) for: ${audio.name}")
+            PendingWrite.Update(audio, uriKey, newIndexEntry)
+        } else {
+            PendingWrite.Insert(audio, uriKey, newIndexEntry)
+        }
+    }
+
+    /**
+     * Reads the CUE sheets of one folder and lets them claim the audio files they describe.
+     * The tracks of every claimed file count as seen, so they survive the missing-file pass
+     * even when nothing about them changed, and the file itself is queued up in [cueAlbums]
+     * to be cut into tracks later. Should two sheets describe the same file, the first one wins.
+     *
+     * @return The URIs of the audio files that were claimed; those are not songs of their own.
+     */
+    private fun claimCueSheets(
+            cueSheets: List<SAFFile>,
+            audioFiles: List<SAFFile>,
+            seenUris: MutableSet<String>,
+            cueAlbums: MutableCollection<CueSheetLoader.Album>
+    ): Set<Uri> {
+        val claimed = HashSet<Uri>()
+
+        cueSheets.forEach { cueSheet ->
+            val sheet = CueSheetLoader.read(context, cueSheet) ?: return@forEach
+            CueSheetLoader.match(cueSheet, sheet, audioFiles).forEach { album ->
+                if (claimed.add(album.source.uri)) {
+                    seenUris.addAll(album.trackUris())
+                    cueAlbums.add(album)
+                }
+            }
+        }
+
+        return claimed
+    }
+
+    /**
+     * Deletes every song that lived in a SAF tree the user no longer grants us access to,
+     * so the library doesn't ghost. This only compares tree ids and needs no document
+     * provider calls. Also clears out stale path duplicates while we're at it.
+     *
+     * @return Ids of the rows that were removed, so the caller can leave them out of the index.
+     */
+    private suspend fun purgeRevokedTrees(indexRows: List<AudioIndexRow>, grantedTreeUriStrings: Set<String>): Set<Long> {
+        val dao = audioDatabase.audioDao() ?: return emptySet()
 
         dao.deleteStalePathDuplicates()
         Log.d(TAG, "Stale path-duplicate purge complete.")
 
-        val allAudio = dao.getAllAudioListAll()
+        // Compare tree document ids directly so encoding differences (e.g. %3A vs :) can
+        // never cause a false mismatch.
+        val grantedTreeIds = grantedTreeUriStrings.mapNotNull { treeDocumentIdOf(it) }.toSet()
 
-        val toDelete = mutableListOf<Audio>()
-        val toUpdate = mutableListOf<Audio>()
+        val revoked = indexRows.filter { row ->
+            val uri = row.uri ?: return@filter false
+            uri.startsWith("content://") && treeDocumentIdOf(uri) !in grantedTreeIds
+        }.map { it.id }
 
-        allAudio.forEach { audio ->
-            val path = audio.uri
+        revoked.chunked(ID_CHUNK_SIZE).forEach { dao.deleteByIds(it) }
 
-            if (path.startsWith("content://")) {
-                val docFile = DocumentFile.fromSingleUri(context, path.toUri())
+        Log.d(TAG, "Revoked-tree purge complete: Deleted ${revoked.size}")
+        return revoked.toSet()
+    }
 
-                // Check if the tree that was covering this file is still in our granted list.
-                // We compare the tree document IDs directly using DocumentsContract so that
-                // encoding differences (e.g. %3A vs :) can never cause a false mismatch.
-                val isTreeStillGranted = grantedTreeUriStrings.any { treeUriStr ->
-                    try {
-                        val docTreeId = DocumentsContract.getTreeDocumentId(path.toUri())
-                        val grantedTreeId = DocumentsContract.getTreeDocumentId(treeUriStr.toUri())
-                        docTreeId == grantedTreeId
-                    } catch (_: Exception) {
-                        false
-                    }
+    /**
+     * Removes entries whose files the walk did not find anymore and restores the ones that
+     * were marked unavailable but showed up again. Everything is decided from [seenUris],
+     * so unlike the old per-row existence check this costs no document provider calls.
+     * Only SAF rows are touched; playlist placeholders and other non-content rows are left alone.
+     */
+    private suspend fun removeMissingFiles(indexRows: List<AudioIndexRow>, revokedIds: Set<Long>, seenUris: Set<String>) {
+        val dao = audioDatabase.audioDao() ?: return
+
+        val toDelete = mutableListOf<Long>()
+        val toRestore = mutableListOf<Long>()
+
+        indexRows.forEach { row ->
+            val uri = row.uri ?: return@forEach
+            if (!uri.startsWith("content://") || row.id in revokedIds) return@forEach
+
+            val isPresent = uri in seenUris
+            when {
+                !isPresent && row.isAvailable -> {
+                    Log.d(TAG, "SAF document gone, deleting: $uri")
+                    toDelete.add(row.id)
+                    indexedMap.remove(uri)
+                }
+                isPresent && !row.isAvailable -> {
+                    Log.d(TAG, "Restoring available SAF file: $uri")
+                    toRestore.add(row.id)
                 }
+            }
+        }
 
-                when {
-                    !isTreeStillGranted -> {
-                        Log.d(TAG, "SAF tree revoked, removing: $path")
-                        toDelete.add(audio)
-                        indexedMap.remove(path)
-                    }
-                    docFile == null || !docFile.exists() -> {
-                        if (audio.isAvailable) {
-                            Log.d(TAG, "SAF document gone, deleting: $path")
-                            toDelete.add(audio)
-                            indexedMap.remove(path)
-                        }
-                    }
-                    !audio.isAvailable -> {
-                        Log.d(TAG, "Restoring available SAF file: $path")
-                        audio.isAvailable = true
-                        toUpdate.add(audio)
-                    }
+        toDelete.chunked(ID_CHUNK_SIZE).forEach { dao.deleteByIds(it) }
+        toRestore.chunked(ID_CHUNK_SIZE).forEach { dao.setAvailableBatch(it, true) }
+
+        Log.d(TAG, "Reconcile complete: Deleted ${toDelete.size}, Updated status for ${toRestore.size}")
+    }
+
+    private fun treeDocumentIdOf(uri: String): String? {
+        return try {
+            DocumentsContract.getTreeDocumentId(uri.toUri())
+        } catch (_: Exception) {
+            null
+        }
+    }
+
+    /**
+     * Returns the folders whose listing may be skipped on this scan: they have been listed
+     * for real within [REVERIFY_INTERVAL_MS]. Editing a file's tags in place does not bump
+     * its folder's timestamp on most providers, so this bounds how long such an edit can
+     * go unnoticed by a rescan. Every folder is judged on its own, since the walk visits
+     * each level anyway.
+     */
+    private fun findFreshDirectories(knownDirectories: Map<String, ScanDirectory>, scanStamp: Long): Set<String> {
+        val cutoff = scanStamp - REVERIFY_INTERVAL_MS
+        return knownDirectories.values.filter { it.verifiedAt >= cutoff }.map { it.uri }.toSet()
+    }
+
+    /**
+     * Rebuilds the audio files and CUE sheets of the folders that were not listed from the
+     * file index, one list per folder, applying the hidden-file filter again in case it was
+     * switched on since the files were recorded. Only the folders themselves — their
+     * subfolders went through the walk and are in the set on their own if they were skipped.
+     */
+    private suspend fun carryOverSkipped(
+            skippedDirectories: Set<String>
+    ): Collection<List<SAFFile>> {
+        if (skippedDirectories.isEmpty()) return emptyList()
+
+        val skipHiddenFiles = LibraryPreferences.isSkipHiddenFiles()
+        val scanDao = audioDatabase.scanIndexDao()
+
+        return skippedDirectories.toList().chunked(ID_CHUNK_SIZE).flatMap { scanDao.getFilesIn(it) }
+            .filterNot { skipHiddenFiles && it.name.startsWith(".") }
+            .groupBy({ it.directoryUri }, { SAFFile(it.uri.toUri(), it.name, it.size, it.lastModified) })
+            .values
+    }
+
+    /**
+     * Records what this walk saw. Folders whose fingerprint changed get their file list
+     * rewritten, skipped folders are only stamped as still present, and anything the walk
+     * no longer reached is dropped along with its files.
+     */
+    private suspend fun saveScanIndex(
+            listedDirectories: Collection<SAFDirectory>,
+            skippedDirectories: Set<String>,
+            knownDirectories: Map<String, ScanDirectory>,
+            scanStamp: Long
+    ) {
+        val scanDao = audioDatabase.scanIndexDao()
+
+        val rows = listedDirectories.map { directory ->
+            ScanDirectory(
+                    uri = directory.uri.toString(),
+                    treeUri = directory.treeUri.toString(),
+                    parentUri = directory.parentUri?.toString(),
+                    lastModified = directory.lastModified,
+                    childCount = directory.childCount,
+                    maxChildModified = directory.maxChildModified,
+                    aggregateHash = directory.aggregateHash,
+                    verifiedAt = scanStamp,
+                    seenAt = scanStamp)
+        }
+
+        val changed = listedDirectories.filter { directory ->
+            val known = knownDirectories[directory.uri.toString()]
+            known == null
+                    || known.childCount != directory.childCount
+                    || known.maxChildModified != directory.maxChildModified
+                    || known.aggregateHash != directory.aggregateHash
+        }
+
+        val files = changed.flatMap { directory ->
+            val directoryUri = directory.uri.toString()
+            directory.files.map { ScanFile(it.uri.toString(), directoryUri, it.name, it.size, it.lastModified) }
+        }
+
+        audioDatabase.withTransaction {
+            changed.map { it.uri.toString() }.chunked(ID_CHUNK_SIZE).forEach { scanDao.deleteFilesIn(it) }
+            files.chunked(BATCH_SIZE * 10).forEach { scanDao.insertFiles(it) }
+            rows.chunked(BATCH_SIZE * 10).forEach { scanDao.insertDirectories(it) }
+            skippedDirectories.toList().chunked(ID_CHUNK_SIZE).forEach { scanDao.touchDirectories(it, scanStamp) }
+            scanDao.deleteUnseen(scanStamp)
+        }
+
+        Log.d(TAG, "Folder index saved: ${rows.size} listed (${changed.size} changed), ${skippedDirectories.size} skipped")
+    }
+
+    /**
+     * Brings {@code lyrics_index} up to date for every folder this walk actually listed.
+     * Each song there gets a row saying which of its `.lrc`/`.txt` sidecars exist (matched
+     * by name, the same way [app.simple.felicity.repository.repositories.LrcRepository]
+     * names them) and whether its tags carry lyrics — freshly read for songs extracted on
+     * this scan, carried over from the old row for the rest.
+     *
+     * Skipped folders are left alone: nothing in them was added, removed or renamed, so
+     * their rows are still right. CUE tracks are recorded as having no lyrics at all.
+     * Rows of songs that left the library, or whose hash moved because the file changed,
+     * are dropped at the end.
+     */
+    private suspend fun saveLyricsIndex(
+            listedDirectories: Collection<SAFDirectory>,
+            extractedLyrics: Map<String, LyricsIndex>,
+            cueTrackLyrics: Collection<LyricsIndex>,
+            indexRows: List<AudioIndexRow>
+    ) {
+        val lyricsDao = audioDatabase.lyricsIndexDao()
+        val storedHashes = HashMap<String, Long>(indexRows.size)
+        indexRows.forEach { row -> row.uri?.let { storedHashes[it] = row.hash } }
+
+        val entries = HashMap<Long, LyricsIndex>()
+        val unchanged = mutableListOf<LyricsIndex>()
+
+        listedDirectories.forEach { directory ->
+            val sidecars = directory.lyrics.groupBy { it.name.substringBeforeLast('.').lowercase() }
+
+            directory.files.forEach files@{ file ->
+                if (AudioScanner.isCueSheet(file.name)) return@files
+                val uri = file.uri.toString()
+
+                val baseName = file.name.substringBeforeLast('.').lowercase()
+                val matches = sidecars[baseName].orEmpty()
+                val lrcUri = matches.firstOrNull { it.name.endsWith(".lrc", ignoreCase = true) }?.uri?.toString()
+                val txtUri = matches.firstOrNull { it.name.endsWith(".txt", ignoreCase = true) }?.uri?.toString()
+
+                val extracted = extractedLyrics[uri]
+                if (extracted != null) {
+                    entries[extracted.audioHash] = extracted.copy(lrcUri = lrcUri, txtUri = txtUri)
+                } else {
+                    // Claimed CUE album files and failed extractions are not in the library.
+                    val hash = storedHashes[uri] ?: return@files
+                    unchanged.add(LyricsIndex(hash, uri, lrcUri, txtUri))
                 }
             }
         }
 
-        if (toDelete.isNotEmpty()) dao.delete(toDelete)
-        if (toUpdate.isNotEmpty()) dao.update(toUpdate)
+        cueTrackLyrics.forEach { entry -> entries.putIfAbsent(entry.audioHash, entry) }
+
+        // Unchanged songs keep what the last scan (or the first lyrics load) learned about their tags.
+        unchanged.chunked(ID_CHUNK_SIZE).forEach { chunk ->
+            val known = lyricsDao.getByHashes(chunk.map { it.audioHash }).associateBy { it.audioHash }
+            chunk.forEach { entry ->
+                entries[entry.audioHash] = entry.copy(hasEmbeddedLyrics = known[entry.audioHash]?.hasEmbeddedLyrics)
+            }
+        }
+
+        audioDatabase.withTransaction {
+            entries.values.chunked(BATCH_SIZE * 10).forEach { lyricsDao.insert(it) }
+            lyricsDao.deleteOrphans()
+        }
 
-        Log.d(TAG, "Reconcile complete: Deleted ${toDelete.size}, Updated status for ${toUpdate.size}")
+        Log.d(TAG, "Lyrics index saved: ${entries.size} songs, " +
+                "${entries.values.count { it.lrcUri != null || it.txtUri != null }} with sidecars")
     }
 
     /**
@@ -420,7 +879,7 @@ class AudioDatabaseLoader @Inject constructor(private val context: Context) {
             return
         }
 
-        val allAudio = dao.getAllAudioListAll()
+        val allAudio = dao.getAudioWithoutPath()
         val toUpdate = mutableListOf<Audio>()
 
         allAudio.forEach { audio ->
@@ -513,7 +972,10 @@ class AudioDatabaseLoader @Inject constructor(private val context: Context) {
 
         Log.d(TAG, "wipeAndScan: nuking audio table and clearing index")
         dao?.nukeTable()
+        audioDatabase.scanIndexDao().clear()
         indexedMap.clear()
+        ArtworkThumbnailStore.clear(context)
+        EmbeddedLyricsStore.clear(context)
 
         processAudioFiles()
 
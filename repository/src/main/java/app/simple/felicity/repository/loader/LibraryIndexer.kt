@@ -0,0 +1,393 @@
+package app.simple.felicity.repository.loader
+
+import android.content.Context
+import android.net.Uri
+import android.provider.DocumentsContract
+import android.util.Log
+import androidx.core.net.toUri
+import androidx.room.withTransaction
+import androidx.sqlite.db.SupportSQLiteDatabase
+import app.simple.felicity.preferences.LibraryPreferences
+import app.simple.felicity.repository.database.dao.LibraryAggregateDao
+import app.simple.felicity.repository.database.dao.LibraryAggregateDao.AggregateSource
+import app.simple.felicity.repository.database.instances.AudioDatabase
+import app.simple.felicity.repository.models.LibraryAggregate
+import app.simple.felicity.repository.models.LibraryAggregateMember
+import app.simple.felicity.repository.models.LibraryIndexState
+import app.simple.felicity.repository.repositories.AudioRepository
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.channelFlow
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.withContext
+import java.util.concurrent.atomic.AtomicBoolean
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Keeps the pre-grouped album, artist, genre, composer, year, and folder buckets in
+ * {@code library_aggregates} in sync with the {@code audio} table.
+ *
+ * SQLite triggers on {@code audio} drop a marker into {@code library_aggregate_dirty}
+ * for every bucket a changed row belonged to (before and after the change). [flush]
+ * turns those markers into bucket keys and recomputes just those buckets with a few
+ * targeted queries. A favorite toggle never writes a marker at all, so it costs the
+ * list screens nothing.
+ *
+ * When a large number of markers pile up (a first scan, a wipe, or a filter change),
+ * a single-pass full rebuild is cheaper than thousands of per-bucket lookups, so we
+ * switch to [rebuildAll] past [FULL_REBUILD_THRESHOLD].
+ *
+ * @author Hamza417
+ */
+@Singleton
+class LibraryIndexer @Inject constructor(private val context: Context) {
+
+    /** A bucket row plus the URIs of its member songs, in title order. */
+    data class Bucket(
+            val aggregate: LibraryAggregate,
+            val songPaths: List<String>
+    )
+
+    private val audioDatabase: AudioDatabase by lazy {
+        AudioDatabase.getInstance(context)
+    }
+
+    private val dao: LibraryAggregateDao
+        get() = audioDatabase.libraryAggregateDao()
+
+    private val splitRegex = Regex(AudioRepository.ARTIST_SEPARATOR_REGEX, RegexOption.IGNORE_CASE)
+
+    private fun minDurationMs(): Long =
+        LibraryPreferences.getMinimumAudioLength().toLong() * 1000L
+
+    private fun minSizeBytes(): Long =
+        LibraryPreferences.getMinimumAudioSize().toLong() * 1024L
+
+    /**
+     * Returns a live list of every bucket of the given [kind]. Only the aggregate table
+     * is observed; pending dirty markers are flushed on the side whenever they show up,
+     * which in turn updates the aggregate table and re-emits here. The member URIs are
+     * fetched once per change to the aggregate rows — not on every change to {@code audio},
+     * and not for a flush that rewrote the rows without changing them.
+     */
+    fun observe(kind: Int): Flow<List<Bucket>> {
+        return channelFlow {
+            ensureFresh()
+
+            launch {
+                dao.observeDirtyCount().collect { pending ->
+                    if (pending > 0 && !deferred.get()) flush()
+                }
+            }
+
+            // Room re-runs the query for every write to the table, and a flush rewrites
+            // rows even when their values come out the same. Only a real change goes on
+            // to the member URI query below.
+            dao.observeAggregates(kind)
+                .distinctUntilChanged()
+                .collect { send(it) }
+        }.map { aggregates ->
+            val paths = HashMap<Long, MutableList<String>>(aggregates.size)
+            dao.getMemberUris(kind).forEach { member ->
+                paths.getOrPut(member.groupId) { mutableListOf() }.add(member.uri)
+            }
+            aggregates.map { Bucket(it, paths[it.id] ?: emptyList()) }
+        }
+    }
+
+    /**
+     * Holds off automatic flushes while a library scan is writing rows in batches —
+     * flushing after every batch would redo the same artist buckets over and over.
+     * The scanner calls this with false and then [flush] once it's done.
+     */
+    fun setDeferred(defer: Boolean) {
+        deferred.set(defer)
+    }
+
+    /**
+     * Rebuilds the whole index when it has never been built, or when the user changed
+     * the minimum duration or size filters since the last build.
+     */
+    suspend fun ensureFresh() = withContext(Dispatchers.IO) {
+        mutex.withLock {
+            val state = dao.getState()
+            if (state == null || state.minDuration != minDurationMs() || state.minSize != minSizeBytes()) {
+                Log.d(TAG, "Aggregate index is missing or was built with different filters, rebuilding")
+                rebuildAllLocked()
+            }
+        }
+    }
+
+    /**
+     * Recomputes every bucket touched since the last flush. Cheap when nothing changed —
+     * a single COUNT over an empty table.
+     */
+    suspend fun flush() = withContext(Dispatchers.IO) {
+        mutex.withLock {
+            val count = dao.getDirtyCount()
+            if (count == 0) return@withLock
+            if (count > FULL_REBUILD_THRESHOLD || dao.getState() == null) {
+                rebuildAllLocked()
+                return@withLock
+            }
+
+            val start = System.currentTimeMillis()
+            val minDuration = minDurationMs()
+            val minSize = minSizeBytes()
+
+            audioDatabase.withTransaction {
+                val dirty = dao.getDirty()
+                val touched = HashSet<Pair<Int, String>>()
+                dirty.forEach { marker ->
+                    bucketKeysFor(marker.kind, marker.value).forEach { touched.add(marker.kind to it) }
+                }
+
+                touched.forEach { (kind, key) ->
+                    val members = sourcesFor(kind, key, minDuration, minSize)
+                    writeBucket(kind, key, group(kind, members)[key].orEmpty())
+                }
+
+                dao.deleteDirty(dirty)
+                Log.d(TAG, "Flushed ${dirty.size} markers into ${touched.size} buckets in ${System.currentTimeMillis() - start}ms")
+            }
+        }
+    }
+
+    /** Throws the whole index away and rebuilds it in one pass over the library. */
+    suspend fun rebuildAll() = withContext(Dispatchers.IO) {
+        mutex.withLock { rebuildAllLocked() }
+    }
+
+    private suspend fun rebuildAllLocked() {
+        val start = System.currentTimeMillis()
+        val minDuration = minDurationMs()
+        val minSize = minSizeBytes()
+
+        audioDatabase.withTransaction {
+            dao.clearDirty()
+            dao.clearMembers()
+            dao.clearAggregates()
+
+            val sources = dao.getAllSources(minDuration, minSize)
+            LibraryAggregate.ALL_KINDS.forEach { kind ->
+                group(kind, sources).forEach { (key, members) ->
+                    writeBucket(kind, key, members)
+                }
+            }
+
+            dao.setState(LibraryIndexState(minDuration = minDuration, minSize = minSize))
+            Log.d(TAG, "Rebuilt aggregate index from ${sources.size} songs in ${System.currentTimeMillis() - start}ms")
+        }
+    }
+
+    /**
+     * Writes a single bucket, replacing its previous row and membership. An empty
+     * [members] list means the bucket no longer exists and is removed.
+     */
+    private suspend fun writeBucket(kind: Int, key: String, members: List<AggregateSource>) {
+        val existingId = dao.getAggregateId(kind, key)
+        if (existingId != null) dao.deleteMembers(existingId)
+
+        if (members.isEmpty()) {
+            if (existingId != null) dao.deleteAggregate(existingId)
+            return
+        }
+
+        val aggregate = buildAggregate(kind, key, members).copy(id = existingId ?: 0L)
+        val id = dao.insertAggregate(aggregate)
+        dao.insertMembers(members.map { LibraryAggregateMember(groupId = id, audioId = it.id) })
+    }
+
+    private fun buildAggregate(kind: Int, key: String, members: List<AggregateSource>): LibraryAggregate {
+        return when (kind) {
+            LibraryAggregate.KIND_ALBUM -> {
+                val years = members.mapNotNull { it.year?.toLongOrNull() }.filter { it > 0 }
+                LibraryAggregate(
+                        kind = kind,
+                        key = key,
+                        name = key,
+                        artist = members.first().artist,
+                        songCount = members.size,
+                        firstYear = years.minOrNull() ?: 0L,
+                        lastYear = years.maxOrNull() ?: 0L
+                )
+            }
+            LibraryAggregate.KIND_ARTIST, LibraryAggregate.KIND_COMPOSER -> {
+                LibraryAggregate(
+                        kind = kind,
+                        key = key,
+                        name = key,
+                        songCount = members.size,
+                        albumCount = members.mapNotNull { it.album }.distinct().size
+                )
+            }
+            LibraryAggregate.KIND_FOLDER -> {
+                // The display name is the segment after the last slash (or after ":" for roots).
+                val folderName = key.substringAfterLast('/').let {
+                    if (it.contains(':')) it.substringAfter(':') else it
+                }.ifEmpty { key }
+
+                LibraryAggregate(kind = kind, key = key, name = folderName, songCount = members.size)
+            }
+            else -> LibraryAggregate(kind = kind, key = key, name = key, songCount = members.size)
+        }
+    }
+
+    /**
+     * Groups [sources] into buckets of the given [kind] using exactly the same rules the
+     * list screens have always used, so counts stay identical to the old in-memory grouping.
+     */
+    private fun group(kind: Int, sources: List<AggregateSource>): Map<String, List<AggregateSource>> {
+        val map = LinkedHashMap<String, MutableList<AggregateSource>>()
+        sources.forEach { source ->
+            val keys = when (kind) {
+                LibraryAggregate.KIND_ALBUM -> listOfNotNull(source.album?.takeIf { it.isNotEmpty() })
+                LibraryAggregate.KIND_ARTIST -> splitArtists(source.artist)
+                LibraryAggregate.KIND_GENRE -> listOfNotNull(source.genre?.takeIf { it.isNotEmpty() })
+                LibraryAggregate.KIND_COMPOSER -> listOfNotNull(source.composer?.takeIf { it.isNotBlank() })
+                LibraryAggregate.KIND_YEAR -> listOf(yearKey(source.year))
+                LibraryAggregate.KIND_FOLDER -> listOfNotNull(parentDocIdOf(source.uri))
+                else -> emptyList()
+            }
+            keys.forEach { map.getOrPut(it) { mutableListOf() }.add(source) }
+        }
+        return map
+    }
+
+    /** Translates a raw dirty-marker value into the bucket key(s) it maps to. */
+    private fun bucketKeysFor(kind: Int, value: String): List<String> {
+        return when (kind) {
+            LibraryAggregate.KIND_ARTIST -> splitArtists(value)
+            LibraryAggregate.KIND_YEAR -> listOf(yearKey(value))
+            LibraryAggregate.KIND_FOLDER -> listOfNotNull(parentDocIdOf(value))
+            LibraryAggregate.KIND_COMPOSER -> listOfNotNull(value.takeIf { it.isNotBlank() })
+            else -> listOfNotNull(value.takeIf { it.isNotEmpty() })
+        }
+    }
+
+    /** Fetches the songs that may belong to a single bucket; [group] does the exact match. */
+    private suspend fun sourcesFor(kind: Int, key: String, minDuration: Long, minSize: Long): List<AggregateSource> {
+        return when (kind) {
+            LibraryAggregate.KIND_ALBUM -> dao.getSourcesForAlbum(key, minDuration, minSize)
+            LibraryAggregate.KIND_ARTIST -> dao.getSourceCandidatesForArtist(likeEscape(key), minDuration, minSize)
+            LibraryAggregate.KIND_GENRE -> dao.getSourcesForGenre(key, minDuration, minSize)
+            LibraryAggregate.KIND_COMPOSER -> dao.getSourcesForComposer(key, minDuration, minSize)
+            LibraryAggregate.KIND_YEAR -> if (key == UNKNOWN_YEAR) {
+                dao.getSourcesForUnknownYear(minDuration, minSize)
+            } else {
+                dao.getSourcesForYear(key, minDuration, minSize)
+            }
+            LibraryAggregate.KIND_FOLDER -> dao.getSourceCandidatesForFolder(likeEscape(Uri.encode(key)), minDuration, minSize)
+            else -> emptyList()
+        }
+    }
+
+    private fun splitArtists(field: String?): List<String> {
+        if (field.isNullOrEmpty()) return emptyList()
+        return field.split(splitRegex).map { it.trim() }.filter { it.isNotEmpty() }
+    }
+
+    /** Escapes LIKE's wildcards (and the escape character itself) for the `ESCAPE '\'` queries. */
+    private fun likeEscape(value: String): String {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_")
+    }
+
+    private fun yearKey(year: String?): String = year?.takeIf { it.isNotBlank() } ?: UNKNOWN_YEAR
+
+    /**
+     * The document ID is "primary:Music/Artist/Album/song.mp3" — the parent folder is
+     * everything up to the last slash.
+     */
+    private fun parentDocIdOf(uri: String): String? {
+        val docId = try {
+            DocumentsContract.getDocumentId(uri.toUri())
+        } catch (_: Exception) {
+            return null
+        }
+        val lastSlash = docId.lastIndexOf('/')
+        return (if (lastSlash > 0) docId.substring(0, lastSlash) else docId).ifEmpty { null }
+    }
+
+    companion object {
+        private const val TAG = "LibraryIndexer"
+
+        /** Label of the bucket that collects songs without a year tag. */
+        const val UNKNOWN_YEAR = "Unknown"
+
+        /**
+         * Past this many pending markers one full pass beats per-bucket queries,
+         * mostly because artist buckets need a LIKE scan each.
+         */
+        private const val FULL_REBUILD_THRESHOLD = 512
+
+        /**
+         * Shared across instances so a flush from a list screen and one from the
+         * scanner can never interleave their writes.
+         */
+        private val mutex = Mutex()
+
+        /** See [setDeferred]. */
+        private val deferred = AtomicBoolean(false)
+
+        /**
+         * Creates the triggers that feed {@code library_aggregate_dirty}. Room has no
+         * annotation for triggers, so they are (re)created with IF NOT EXISTS every time
+         * the database is opened — a no-op once they are in place.
+         *
+         * Updates only produce markers when a column that affects grouping or the library
+         * filters actually changed, which is what keeps favorite and always-skip toggles
+         * completely free.
+         */
+        fun createTriggers(db: SupportSQLiteDatabase) {
+            fun markers(row: String) = """
+                INSERT OR IGNORE INTO library_aggregate_dirty (kind, value) VALUES
+                    (${LibraryAggregate.KIND_ALBUM}, IFNULL($row.album, '')),
+                    (${LibraryAggregate.KIND_ARTIST}, IFNULL($row.artist, '')),
+                    (${LibraryAggregate.KIND_GENRE}, IFNULL($row.genre, '')),
+                    (${LibraryAggregate.KIND_COMPOSER}, IFNULL($row.composer, '')),
+                    (${LibraryAggregate.KIND_YEAR}, IFNULL($row.year, '')),
+                    (${LibraryAggregate.KIND_FOLDER}, $row.uri);
+            """.trimIndent()
+
+            db.execSQL("""
+                CREATE TRIGGER IF NOT EXISTS library_aggregate_audio_insert
+                AFTER INSERT ON audio
+                BEGIN
+                ${markers("NEW")}
+                END
+            """.trimIndent())
+
+            db.execSQL("""
+                CREATE TRIGGER IF NOT EXISTS library_aggregate_audio_delete
+                AFTER DELETE ON audio
+                BEGIN
+                ${markers("OLD")}
+                END
+            """.trimIndent())
+
+            db.execSQL("""
+                CREATE TRIGGER IF NOT EXISTS library_aggregate_audio_update
+                AFTER UPDATE ON audio
+                WHEN OLD.album IS NOT NEW.album
+                    OR OLD.artist IS NOT NEW.artist
+                    OR OLD.genre IS NOT NEW.genre
+                    OR OLD.composer IS NOT NEW.composer
+                    OR OLD.year IS NOT NEW.year
+                    OR OLD.uri IS NOT NEW.uri
+                    OR OLD.title IS NOT NEW.title
+                    OR OLD.duration != NEW.duration
+                    OR OLD.size != NEW.size
+                    OR OLD.is_available != NEW.is_available
+                BEGIN
+                ${markers("OLD")}
+                ${markers("NEW")}
+                END
+            """.trimIndent())
+        }
+    }
+}
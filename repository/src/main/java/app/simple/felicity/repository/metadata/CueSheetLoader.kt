@@ -0,0 +1,164 @@
+package app.simple.felicity.repository.metadata
+
+import android.content.Context
+import android.net.Uri
+import android.util.Log
+import app.simple.felicity.core.cue.CueFile
+import app.simple.felicity.core.cue.CueParser
+import app.simple.felicity.core.cue.CueSheet
+import app.simple.felicity.repository.metadata.MetaDataHelper.generateStableHash
+import app.simple.felicity.repository.models.Audio
+import app.simple.felicity.repository.scanners.SAFFile
+import java.nio.ByteBuffer
+import java.nio.charset.CharacterCodingException
+import java.nio.charset.CodingErrorAction
+
+/**
+ * Turns CUE sheets into library tracks.
+ *
+ * A lot of archival rips are one big FLAC/APE/WAV per album plus a .cue file saying where
+ * each track starts. Without this the whole album shows up as a single 70 minute song. The
+ * scanner hands every CUE sheet it finds here along with the audio files next to it; the
+ * sheet claims the file it describes, and once that file's tags have been read each track
+ * becomes an [Audio] row of its own.
+ *
+ * Those rows are virtual: their [Audio.getUri] is the CUE sheet's URI with the track number
+ * as the fragment (so each one has its own unique key and disappears with the sheet), and
+ * [Audio.getCueSourceUri], [Audio.getCueStart] and [Audio.getCueEnd] say which part of
+ * which file to play. The player clips the album file to that range, so nothing is ever
+ * split on disk.
+ *
+ * @author Hamza417
+ */
+object CueSheetLoader {
+
+    private const val TAG = "CueSheetLoader"
+
+    /** CUE sheets are a few KB; anything this big is not one. */
+    private const val MAX_CUE_SIZE = 1024 * 1024
+
+    /**
+     * One album file a CUE sheet cuts up: the [sheet] read from [cueSheet], the [file]
+     * entry of it that names [source], and the audio tracks it cuts [source] into.
+     */
+    class Album(
+            val cueSheet: SAFFile,
+            val source: SAFFile,
+            val sheet: CueSheet,
+            val file: CueFile
+    ) {
+        /** The audio tracks of [file], in sheet order. Data tracks of mixed-mode discs are left out. */
+        val tracks = file.tracks.filter { it.type == null || it.type.equals("AUDIO", ignoreCase = true) }
+
+        /**
+         * Modification stamp the tracks are stored with. Editing either the sheet or the
+         * album file moves it, which is what makes the next scan cut the album again.
+         */
+        val lastModified: Long
+            get() = maxOf(cueSheet.lastModified, source.lastModified)
+
+        /** The library URI of every track, see [trackUri]. */
+        fun trackUris(): List<String> = tracks.map { trackUri(cueSheet.uri, it.number) }
+    }
+
+    /** The library URI of track [number] of the CUE sheet at [cueSheet]. */
+    fun trackUri(cueSheet: Uri, number: Int): String {
+        return "$cueSheet#track=$number"
+    }
+
+    /**
+     * Reads and parses [cueSheet]. Sheets are usually UTF-8, but plenty of older ones were
+     * saved in a Windows code page; anything that isn't valid UTF-8 is read as Latin-1 so
+     * at least the timings come through.
+     *
+     * @return The parsed sheet, or null when it can't be read or has no tracks.
+     */
+    fun read(context: Context, cueSheet: SAFFile): CueSheet? {
+        if (cueSheet.size > MAX_CUE_SIZE) return null
+
+        return try {
+            val bytes = context.contentResolver.openInputStream(cueSheet.uri)?.use { it.readBytes() } ?: return null
+            CueParser.parse(decode(bytes)).takeIf { it.tracks.isNotEmpty() }
+        } catch (e: Exception) {
+            Log.w(TAG, "Could not read CUE sheet ${cueSheet.name}", e)
+            null
+        }
+    }
+
+    /**
+     * Pairs every FILE entry of [sheet] with the audio file in [audioFiles] it names.
+     * Sheets often still name the WAV the rip was made from after it got converted to
+     * FLAC, so when no file has the exact name, one with the same name minus extension
+     * is taken instead.
+     */
+    fun match(cueSheet: SAFFile, sheet: CueSheet, audioFiles: List<SAFFile>): List<Album> {
+        return sheet.files.mapNotNull { file ->
+            // Some sheets carry the path the rip was made in, Windows separators included.
+            val name = file.fileName.substringAfterLast('/').substringAfterLast('\\')
+            if (name.isEmpty()) return@mapNotNull null
+
+            val baseName = name.substringBeforeLast('.')
+            val source = audioFiles.firstOrNull { it.name.equals(name, ignoreCase = true) }
+                ?: audioFiles.singleOrNull { it.name.substringBeforeLast('.').equals(baseName, ignoreCase = true) }
+                ?: return@mapNotNull null
+
+            Album(cueSheet, source, sheet, file).takeIf { it.tracks.isNotEmpty() }
+        }
+    }
+
+    /**
+     * Builds the library rows for [album], starting from the tags of the album file
+     * itself ([source]) and overriding whatever the sheet says per track. Each track runs
+     * until the next one starts; the last one runs to the end of the file.
+     *
+     * A ReplayGain track gain on the album file was measured over the whole album, so it
+     * becomes the album gain of every track here.
+     */
+    fun buildTracks(album: Album, source: Audio): List<Audio> {
+        val tracks = album.tracks
+
+        return tracks.mapIndexed { index, track ->
+            val end = tracks.getOrNull(index + 1)?.startMs ?: 0L
+            val stop = if (end > 0L) end else source.duration
+
+            source.copy().apply {
+                id = 0L
+                uri = trackUri(album.cueSheet.uri, track.number)
+                cueSourceUri = album.source.uri.toString()
+                cueStart = track.startMs
+                cueEnd = end
+                duration = (stop - track.startMs).coerceAtLeast(0L)
+                title = track.title ?: "Track ${track.number}"
+                artist = track.performer ?: album.sheet.performer ?: source.artist
+                this.album = album.sheet.title ?: source.album
+                albumArtist = album.sheet.performer ?: source.albumArtist
+                setTrack(track.number)
+                trackNumber = track.number.toString()
+                numTracks = tracks.size.toString()
+                dateModified = album.lastModified
+                isFavorite = false
+                isAlwaysSkip = false
+                replayGainAlbumGain = source.replayGainAlbumGain ?: source.replayGainTrackGain
+                replayGainAlbumPeak = source.replayGainAlbumPeak ?: source.replayGainTrackPeak
+                replayGainTrackGain = null
+                replayGainTrackPeak = null
+                hash = generateStableHash()
+            }
+        }
+    }
+
+    private fun decode(bytes: ByteArray): String {
+        val hasBom = bytes.size >= 3 && bytes[0] == 0xEF.toByte() && bytes[1] == 0xBB.toByte() && bytes[2] == 0xBF.toByte()
+        val buffer = ByteBuffer.wrap(bytes, if (hasBom) 3 else 0, bytes.size - if (hasBom) 3 else 0)
+
+        return try {
+            Charsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT)
+                .decode(buffer)
+                .toString()
+        } catch (_: CharacterCodingException) {
+            String(bytes, Charsets.ISO_8859_1)
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package app.simple.felicity.repository.metadata
+
+import android.content.Context
+import android.util.Log
+import java.io.File
+
+/**
+ * Keeps the lyrics embedded in each song's tags as a small text file keyed by the song's
+ * content hash, the same way [app.simple.felicity.repository.covers.ArtworkThumbnailStore]
+ * keeps embedded covers.
+ *
+ * The library scan already has the tags parsed when it reads a song, so it drops the
+ * lyrics in here on the way past. The lyrics screen then reads one small file instead of
+ * opening the song and letting TagLib parse the whole tag block a second time. Songs
+ * without embedded lyrics get no file; the lyrics index already says they have none.
+ *
+ * Because the key is the content hash, an edited file simply gets a new key and [prune]
+ * clears out the leftovers after a library scan.
+ *
+ * @author Hamza417
+ */
+internal object EmbeddedLyricsStore {
+
+    private const val TAG = "EmbeddedLyricsStore"
+    private const val DIRECTORY = "embedded_lyrics"
+    private const val EXTENSION = ".txt"
+
+    /** The stored lyrics of the song with [hash], or null when nothing is stored. */
+    fun get(context: Context, hash: Long): String? {
+        if (hash == 0L) return null
+
+        val file = lyricsFile(context, hash)
+        if (!file.exists()) return null
+
+        return try {
+            file.readText().takeIf { it.isNotBlank() }
+        } catch (e: Exception) {
+            Log.w(TAG, "Failed to read stored lyrics ${file.name}", e)
+            null
+        }
+    }
+
+    /**
+     * Stores [lyrics] for the song with [hash], or removes what was stored when [lyrics]
+     * is null or blank. Blocking, so call it from a background thread.
+     */
+    fun put(context: Context, hash: Long, lyrics: String?) {
+        if (hash == 0L) return
+
+        val file = lyricsFile(context, hash)
+        if (lyrics.isNullOrBlank()) {
+            file.delete()
+            return
+        }
+
+        val tempFile = File(file.parentFile, "${file.name}.tmp")
+        try {
+            file.parentFile?.mkdirs()
+            tempFile.writeText(lyrics)
+            if (!tempFile.renameTo(file)) tempFile.delete()
+        } catch (e: Exception) {
+            Log.w(TAG, "Failed to store lyrics for $hash", e)
+            tempFile.delete()
+        }
+    }
+
+    /** Deletes the stored lyrics of every song whose hash isn't in [liveHashes] anymore. */
+    fun prune(context: Context, liveHashes: Set<Long>) {
+        val files = directory(context).listFiles() ?: return
+        var removed = 0
+
+        for (file in files) {
+            val hash = file.name.substringBefore('.').toLongOrNull()
+            if (hash == null || hash !in liveHashes) {
+                if (file.delete()) removed++
+            }
+        }
+
+        if (removed > 0) Log.d(TAG, "Pruned $removed stale embedded lyrics")
+    }
+
+    /** Removes everything, for when the user wipes the library. */
+    fun clear(context: Context) {
+        directory(context).deleteRecursively()
+    }
+
+    private fun directory(context: Context): File {
+        // No-backup because every file in here can be rebuilt from the music itself.
+        return File(context.noBackupFilesDir, DIRECTORY)
+    }
+
+    private fun lyricsFile(context: Context, hash: Long): File {
+        return File(directory(context), "$hash$EXTENSION")
+    }
+}
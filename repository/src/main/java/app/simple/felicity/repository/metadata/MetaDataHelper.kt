@@ -9,6 +9,11 @@ import app.simple.felicity.core.utils.FileUtils.toFile
 import app.simple.felicity.repository.metadata.MetaDataHelper.hasVideoTrack
 import app.simple.felicity.repository.models.Audio
 import app.simple.felicity.repository.scanners.SAFFile
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
 import java.io.File
 import java.nio.ByteBuffer
 import java.security.MessageDigest
@@ -169,6 +174,102 @@ object MetaDataHelper {
         }
     }
 
+    /**
+     * The library scan's version of [SAFFile.extractMetadata]: the same TagLib-first,
+     * [MediaMetadataLoader]-fallback order, but the TagLib read also brings back the
+     * embedded lyrics and cover so they can be stored right away instead of costing
+     * another parse of the file later on.
+     *
+     * @param context Android context needed to open the content URI stream.
+     * @return The extraction, or null if both loaders failed.
+     */
+    fun SAFFile.extractForScan(context: Context): TrackExtraction? {
+        val isWEBM = name.endsWith(".webm", ignoreCase = true)
+        if (isWEBM && hasVideoTrack(context, uri)) {
+            Log.d(TAG, "Skipping WEBM SAF file with video track: $name")
+            return null
+        }
+        return runCatching {
+            TagLibLoader.extractFromUri(context, uri, size, lastModified)
+        }.getOrElse {
+            Log.e(TAG, "TagLib failed for SAF URI: $uri", it)
+            null
+        } ?: runCatching {
+            Log.d(TAG, "Falling back to MediaMetadataLoader for SAF URI: $uri")
+            MediaMetadataLoader.loadFromUri(context, uri, size, lastModified)?.let {
+                TrackExtraction(it, lyrics = null, artwork = null, artworkDigest = 0L, isComplete = false)
+            }
+        }.getOrElse {
+            Log.e(TAG, "MediaMetadataLoader also failed for SAF URI: $uri", it)
+            null
+        }
+    }
+
+    /**
+     * [extractForScan] for a whole batch of files. The per-file Binder work — opening the
+     * file, asking for its MIME type, the WEBM video check — runs for many files at once,
+     * each holding one of [permits]. TagLib then reads the whole batch in one native call
+     * (see [TagLibLoader.extractBatch]), and whatever it couldn't read is retried one file
+     * at a time, again in parallel: a file TagLib didn't understand goes to
+     * [MediaMetadataLoader], and when the batch call itself failed every file gets its own
+     * TagLib read first, so one bad file never sends the rest of the batch down the slow path.
+     *
+     * @param context Android context needed to open the content URI streams.
+     * @param permits Bounds how many files are being opened or read one by one at a time.
+     * @return One entry per file, in order; null for files that were skipped or that
+     *         both loaders failed on.
+     */
+    suspend fun List<SAFFile>.extractForScan(context: Context, permits: Semaphore): List<TrackExtraction?> = coroutineScope {
+        val files = this@extractForScan
+        val skipped = BooleanArray(files.size)
+
+        val opened = files.mapIndexed { index, file ->
+            async {
+                permits.withPermit {
+                    if (file.name.endsWith(".webm", ignoreCase = true) && hasVideoTrack(context, file.uri)) {
+                        Log.d(TAG, "Skipping WEBM SAF file with video track: ${file.name}")
+                        skipped[index] = true
+                        null
+                    } else {
+                        TagLibLoader.openForBatch(context, file)
+                    }
+                }
+            }
+        }.awaitAll()
+
+        val openedIndices = files.indices.filter { opened[it] != null }
+        val batch = try {
+            TagLibLoader.extractBatch(openedIndices.map { opened[it]!! })
+        } finally {
+            opened.forEach { it?.close() }
+        }
+
+        val batchFailed = batch == null
+        val extracted = arrayOfNulls<TrackExtraction>(files.size)
+        batch?.forEachIndexed { position, extraction -> extracted[openedIndices[position]] = extraction }
+
+        files.indices.map { index ->
+            async {
+                if (skipped[index]) return@async null
+                extracted[index] ?: permits.withPermit {
+                    val file = files[index]
+                    // A file that couldn't even be opened won't fare better with TagLib again.
+                    val retryTagLib = batchFailed && opened[index] != null
+                    (if (retryTagLib) TagLibLoader.extractFromUri(context, file.uri, file.size, file.lastModified) else null)
+                        ?: runCatching {
+                            Log.d(TAG, "Falling back to MediaMetadataLoader for SAF URI: ${file.uri}")
+                            MediaMetadataLoader.loadFromUri(context, file.uri, file.size, file.lastModified)?.let {
+                                TrackExtraction(it, lyrics = null, artwork = null, artworkDigest = 0L, isComplete = false)
+                            }
+                        }.getOrElse {
+                            Log.e(TAG, "MediaMetadataLoader also failed for SAF URI: ${file.uri}", it)
+                            null
+                        }
+                }
+            }
+        }.awaitAll()
+    }
+
     /**
      * Generates a stable 64-bit content hash from a track's core metadata.
      *
@@ -0,0 +1,128 @@
+package app.simple.felicity.repository.metadata
+
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+/**
+ * Reads the packed buffer [TagLibBridge.nativeLoadBatchFromFds] returns back into one
+ * [TagLibMetadata] per file.
+ *
+ * The native side puts a whole batch into a single byte array — numbers in fixed-width
+ * columns, every distinct string once in a shared table, artwork appended at the end —
+ * so getting a hundred files' tags across JNI costs one array instead of a couple of
+ * thousand `NewStringUTF` calls and a constructor call per file. Each distinct string is
+ * decoded here exactly once and shared by every file that has it, which also spares the
+ * garbage collector the duplicate album and artist names of a big library.
+ *
+ * The layout is documented in packed_metadata.h and must stay in step with it.
+ *
+ * @author Hamza417
+ */
+internal object TagLibBatch {
+
+    private const val PACK_VERSION = 1
+
+    // String field order, the same as the PackedField enum in packed_metadata.h.
+    private const val FIELD_TITLE = 0
+    private const val FIELD_ARTIST = 1
+    private const val FIELD_ALBUM = 2
+    private const val FIELD_GENRE = 3
+    private const val FIELD_YEAR = 4
+    private const val FIELD_COMMENT = 5
+    private const val FIELD_ALBUM_ARTIST = 6
+    private const val FIELD_COMPOSER = 7
+    private const val FIELD_LYRICIST = 8
+    private const val FIELD_DISC_NUMBER = 9
+    private const val FIELD_TRACK_NUMBER = 10
+    private const val FIELD_NUM_TRACKS = 11
+    private const val FIELD_COMPILATION = 12
+    private const val FIELD_RG_TRACK_GAIN = 13
+    private const val FIELD_RG_TRACK_PEAK = 14
+    private const val FIELD_RG_ALBUM_GAIN = 15
+    private const val FIELD_RG_ALBUM_PEAK = 16
+    private const val FIELD_LYRICS = 17
+    private const val FIELD_COUNT = 18
+
+    /**
+     * Decodes [packed] into one entry per file of the batch, in the order the file
+     * descriptors were passed in. Files TagLib couldn't read come back as null.
+     *
+     * @throws IllegalStateException when the buffer isn't in the expected format, which
+     *         would mean the native library and this class are out of step.
+     */
+    fun decode(packed: ByteArray): Array<TagLibMetadata?> {
+        val buffer = ByteBuffer.wrap(packed).order(ByteOrder.nativeOrder())
+
+        val version = buffer.int
+        check(version == PACK_VERSION) { "Unknown packed metadata version $version" }
+        val count = buffer.int
+        val fieldCount = buffer.int
+        check(fieldCount == FIELD_COUNT) { "Packed metadata has $fieldCount fields, expected $FIELD_COUNT" }
+        val stringCount = buffer.int
+
+        val status = IntArray(count) { buffer.int }
+        val hasLyrics = IntArray(count) { buffer.int }
+        val duration = LongArray(count) { buffer.long }
+        val bitrate = LongArray(count) { buffer.long }
+        val sampleRate = LongArray(count) { buffer.long }
+        val bitsPerSample = LongArray(count) { buffer.long }
+        val artworkDigest = LongArray(count) { buffer.long }
+        val artworkLength = IntArray(count) { buffer.int }
+        val fields = IntArray(count * fieldCount) { buffer.int }
+
+        val stringEnds = IntArray(stringCount) { buffer.int }
+        val stringBytes = buffer.int
+        val stringStart = buffer.position()
+        val strings = Array(stringCount) { index ->
+            val start = if (index == 0) 0 else stringEnds[index - 1]
+            String(packed, stringStart + start, stringEnds[index] - start, Charsets.UTF_8)
+        }
+
+        var artworkOffset = stringStart + stringBytes
+        val result = arrayOfNulls<TagLibMetadata>(count)
+
+        for (file in 0 until count) {
+            val artwork = if (artworkLength[file] > 0) {
+                packed.copyOfRange(artworkOffset, artworkOffset + artworkLength[file])
+            } else {
+                null
+            }
+            artworkOffset += artworkLength[file]
+
+            if (status[file] == 0) continue
+
+            val base = file * fieldCount
+            fun field(index: Int): String? = fields[base + index].let { if (it < 0) null else strings[it] }
+
+            result[file] = TagLibMetadata(
+                    title = field(FIELD_TITLE),
+                    artist = field(FIELD_ARTIST),
+                    album = field(FIELD_ALBUM),
+                    genre = field(FIELD_GENRE),
+                    year = field(FIELD_YEAR),
+                    comment = field(FIELD_COMMENT),
+                    albumArtist = field(FIELD_ALBUM_ARTIST),
+                    composer = field(FIELD_COMPOSER),
+                    lyricist = field(FIELD_LYRICIST),
+                    discNumber = field(FIELD_DISC_NUMBER),
+                    trackNumber = field(FIELD_TRACK_NUMBER),
+                    numTracks = field(FIELD_NUM_TRACKS),
+                    compilation = field(FIELD_COMPILATION),
+                    duration = duration[file],
+                    bitrate = bitrate[file],
+                    sampleRate = sampleRate[file],
+                    bitsPerSample = bitsPerSample[file],
+                    replayGainTrackGain = field(FIELD_RG_TRACK_GAIN),
+                    replayGainTrackPeak = field(FIELD_RG_TRACK_PEAK),
+                    replayGainAlbumGain = field(FIELD_RG_ALBUM_GAIN),
+                    replayGainAlbumPeak = field(FIELD_RG_ALBUM_PEAK),
+                    hasLyrics = hasLyrics[file] != 0,
+                    lyrics = field(FIELD_LYRICS),
+                    artwork = artwork,
+                    artworkDigest = if (artwork != null) artworkDigest[file] else 0L
+            )
+        }
+
+        return result
+    }
+}
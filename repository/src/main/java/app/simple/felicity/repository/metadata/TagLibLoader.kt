@@ -6,6 +6,8 @@ import android.os.ParcelFileDescriptor
 import android.util.Log
 import android.webkit.MimeTypeMap
 import app.simple.felicity.repository.models.Audio
+import app.simple.felicity.repository.scanners.SAFFile
+import java.io.Closeable
 
 /**
  * The native bridge object that loads the TagLib JNI shared library and
@@ -36,6 +38,33 @@ object TagLibBridge {
      */
     external fun nativeLoadFromFd(fd: Int): TagLibMetadata?
 
+    /**
+     * Same as [nativeLoadFromFd], but also carries the embedded lyrics text and the
+     * embedded cover (with a digest of it) back from the same parse. The library scan
+     * uses this so the lyrics screen and the cover loaders never have to open a song it
+     * has just read through [nativeExtractLyricsFromFd] or [nativeExtractArtworkFromFd].
+     *
+     * @param fd A readable POSIX file descriptor pointing at an audio file.
+     * @return A populated [TagLibMetadata], or null if the format is unsupported
+     *         or the file is unreadable.
+     */
+    external fun nativeLoadFullFromFd(fd: Int): TagLibMetadata?
+
+    /**
+     * Reads a whole batch of audio files at once. The files are parsed side by side on a
+     * native thread pool, and the results come back packed into a single byte array for
+     * [TagLibBatch.decode] instead of one [TagLibMetadata] built field by field over JNI
+     * per file.
+     *
+     * Every fd is duplicated inside the native code, as with [nativeLoadFromFd].
+     *
+     * @param fds  Readable POSIX file descriptors, one per audio file.
+     * @param full Whether to bring back the embedded lyrics and cover as well, as
+     *             [nativeLoadFullFromFd] does.
+     * @return The packed batch, or null when it didn't fit in memory.
+     */
+    external fun nativeLoadBatchFromFds(fds: IntArray, full: Boolean): ByteArray?
+
     /**
      * Asks TagLib to write the provided tag fields into the audio file pointed
      * to by [fd]. The descriptor must be open for both reading and writing — use
@@ -187,6 +216,125 @@ object TagLibLoader {
         }
     }
 
+    /**
+     * Reads everything the library scan wants from a SAF content URI in a single TagLib
+     * parse: the [Audio] row exactly as [loadFromUri] builds it, plus the embedded lyrics
+     * and cover that would otherwise each need the file opened again later.
+     *
+     * @param context      Android context for ContentResolver access.
+     * @param uri          The content:// URI of the audio file.
+     * @param fileSize     File size in bytes (from the scanner's listing).
+     * @param lastModified Timestamp in ms (from the scanner's listing).
+     * @return The extraction, or null if TagLib couldn't read the URI.
+     */
+    fun extractFromUri(context: Context, uri: Uri, fileSize: Long, lastModified: Long): TrackExtraction? {
+        return try {
+            context.contentResolver.openFileDescriptor(uri, "r")?.use { pfd ->
+                val mimeType = context.contentResolver.getType(uri)
+                TagLibBridge.nativeLoadFullFromFd(pfd.fd)?.let { metadata ->
+                    val audio = metadata.toAudio(
+                            name = uri.lastPathSegment ?: uri.toString(),
+                            path = uri.toString(),
+                            size = fileSize,
+                            dateModified = lastModified,
+                            mimeType = mimeType
+                    )
+
+                    TrackExtraction(
+                            audio = audio,
+                            lyrics = metadata.lyrics?.takeIf { it.isNotBlank() },
+                            artwork = metadata.artwork,
+                            artworkDigest = metadata.artworkDigest
+                    )
+                }
+            }
+        } catch (e: Exception) {
+            Log.e(TAG, "TagLib failed for URI: $uri", e)
+            null
+        }
+    }
+
+    /**
+     * A file opened for [extractBatch], with its MIME type already fetched, so that the
+     * batch call itself is nothing but native work. Close it once the batch is done.
+     */
+    class OpenedFile internal constructor(
+            val file: SAFFile,
+            internal val descriptor: ParcelFileDescriptor,
+            internal val mimeType: String?
+    ) : Closeable {
+        override fun close() {
+            try {
+                descriptor.close()
+            } catch (_: Exception) {
+            }
+        }
+    }
+
+    /**
+     * Opens [file] through the ContentResolver and asks for its MIME type — the two Binder
+     * calls every file of a batch needs. They only wait on the document provider, so the
+     * scan makes them for many files at the same time before handing the batch to
+     * [extractBatch].
+     *
+     * @return The opened file, or null if the provider wouldn't open it.
+     */
+    fun openForBatch(context: Context, file: SAFFile): OpenedFile? {
+        return try {
+            val descriptor = context.contentResolver.openFileDescriptor(file.uri, "r") ?: return null
+            OpenedFile(file, descriptor, context.contentResolver.getType(file.uri))
+        } catch (e: Exception) {
+            Log.e(TAG, "Could not open URI: ${file.uri}", e)
+            null
+        }
+    }
+
+    /**
+     * [extractFromUri] for a whole batch of already opened files in one native call.
+     * TagLib parses all of them in parallel and the results cross JNI as one packed
+     * buffer, which is where a cold scan of a big library spent most of its time.
+     *
+     * @param opened Files from [openForBatch]; they are not closed here.
+     * @return One entry per file, in order, null where TagLib couldn't read that file —
+     *         or null altogether when the batch as a whole couldn't be read (too big to
+     *         pack, or a buffer this side didn't understand). The caller should then read
+     *         the files one at a time rather than give up on all of them.
+     */
+    fun extractBatch(opened: List<OpenedFile>): List<TrackExtraction?>? {
+        if (opened.isEmpty()) return emptyList()
+
+        return try {
+            val packed = TagLibBridge.nativeLoadBatchFromFds(IntArray(opened.size) { opened[it].descriptor.fd }, true)
+            if (packed == null) {
+                Log.w(TAG, "Batch of ${opened.size} files did not fit in memory")
+                return null
+            }
+
+            TagLibBatch.decode(packed).mapIndexed { index, metadata ->
+                metadata?.let {
+                    val file = opened[index].file
+                    val audio = it.toAudio(
+                            name = file.uri.lastPathSegment ?: file.uri.toString(),
+                            path = file.uri.toString(),
+                            size = file.size,
+                            dateModified = file.lastModified,
+                            mimeType = opened[index].mimeType
+                    )
+
+                    TrackExtraction(
+                            audio = audio,
+                            lyrics = it.lyrics?.takeIf { lyrics -> lyrics.isNotBlank() },
+                            artwork = it.artwork,
+                            artworkDigest = it.artworkDigest
+                    )
+                }
+            }
+        } catch (e: Exception) {
+            Log.e(TAG, "TagLib batch failed for ${opened.size} files", e)
+            null
+        }
+    }
+
     /**
      * Converts a raw [TagLibMetadata] bag-of-fields into the full [Audio]
      * database model, filling in the file-system fields (name, path, size,
@@ -227,6 +375,7 @@ object TagLibLoader {
         audio.replayGainTrackPeak = replayGainTrackPeak
         audio.replayGainAlbumGain = replayGainAlbumGain
         audio.replayGainAlbumPeak = replayGainAlbumPeak
+        audio.embeddedLyrics = hasLyrics
         // Generate the stable content hash last, after all fields are set,
         // so the hash reflects the full metadata fingerprint.
         audio.hash = with(MetaDataHelper) { audio.generateStableHash() }
@@ -67,6 +67,27 @@ data class TagLibMetadata(
          * Album-level ReplayGain peak sample value, e.g. "0.995432".
          * Null when the file has no REPLAYGAIN_ALBUM_PEAK tag.
          */
-        val replayGainAlbumPeak: String?
+        val replayGainAlbumPeak: String?,
+        /**
+         * True when the tags carry lyrics (LYRICS or UNSYNCEDLYRICS). Filled in by both
+         * [TagLibBridge.nativeLoadFromFd] and [TagLibBridge.nativeLoadFullFromFd].
+         */
+        val hasLyrics: Boolean,
+        /**
+         * The embedded lyrics text. Only [TagLibBridge.nativeLoadFullFromFd] reads it; null
+         * otherwise, and when the song has none.
+         */
+        val lyrics: String? = null,
+        /**
+         * Raw bytes of the first embedded picture, exactly what
+         * [TagLibBridge.nativeExtractArtworkFromFd] would return. Only filled in by
+         * [TagLibBridge.nativeLoadFullFromFd].
+         */
+        val artwork: ByteArray? = null,
+        /**
+         * 64-bit digest of [artwork], the same for every file carrying the identical
+         * picture. Zero when there is no artwork.
+         */
+        val artworkDigest: Long = 0L
 )
 
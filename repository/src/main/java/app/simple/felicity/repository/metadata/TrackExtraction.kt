@@ -0,0 +1,26 @@
+package app.simple.felicity.repository.metadata
+
+import app.simple.felicity.repository.models.Audio
+
+/**
+ * Everything the library scan gets out of one read of a song: the [Audio] row, and the
+ * embedded lyrics and cover that used to take a second and third TagLib parse when the
+ * lyrics screen or a cover loader first asked for them.
+ *
+ * Songs that TagLib couldn't read and [MediaMetadataLoader] picked up instead come back
+ * with no [lyrics] or [artwork] — that says nothing about the file, only that it wasn't
+ * looked at, so neither should be recorded as missing.
+ *
+ * @author Hamza417
+ */
+class TrackExtraction(
+        val audio: Audio,
+        /** The embedded lyrics text, or null when there is none or it wasn't read. */
+        val lyrics: String?,
+        /** Raw bytes of the embedded cover, or null when there is none or it wasn't read. */
+        val artwork: ByteArray?,
+        /** Digest of [artwork], equal for identical pictures; zero without artwork. */
+        val artworkDigest: Long,
+        /** False when the tags came from [MediaMetadataLoader] rather than TagLib. */
+        val isComplete: Boolean = true
+)
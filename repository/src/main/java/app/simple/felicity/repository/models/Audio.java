@@ -9,6 +9,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Ignore;
 import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
@@ -29,7 +30,11 @@ import androidx.room.PrimaryKey;
         tableName = "audio",
         indices = {
                 @Index (value = {"hash"}),
-                @Index (value = {"uri"}, unique = true)
+                @Index (value = {"uri"}, unique = true),
+                @Index (value = {"album"}),
+                @Index (value = {"genre"}),
+                @Index (value = {"composer"}),
+                @Index (value = {"year"})
         }
 )
 public class Audio implements Parcelable {
@@ -177,6 +182,40 @@ public class Audio implements Parcelable {
     @Nullable
     private String replayGainAlbumPeak;
     
+    /**
+     * For a track that only exists inside a CUE sheet, the content URI of the single audio
+     * file the whole sheet plays from (e.g. the album's one big FLAC). Null for every
+     * ordinary song. Such a track's {@code uri} points at the CUE sheet instead, with the
+     * track number as the fragment, so each track still has a unique key of its own.
+     */
+    @ColumnInfo (name = "cue_source_uri")
+    @Nullable
+    private String cueSourceUri;
+    
+    /**
+     * Where a CUE track starts inside {@link #cueSourceUri}, in milliseconds.
+     * Always 0 for ordinary songs.
+     */
+    @ColumnInfo (name = "cue_start", defaultValue = "0")
+    private long cueStart;
+    
+    /**
+     * Where a CUE track ends inside {@link #cueSourceUri}, in milliseconds, or 0 when it
+     * runs to the end of the file (the last track of the sheet, and every ordinary song).
+     */
+    @ColumnInfo (name = "cue_end", defaultValue = "0")
+    private long cueEnd;
+    
+    /**
+     * Whether the file's tags carry lyrics, as seen by the metadata pass that built this
+     * object; null when that pass couldn't tell (the MediaMetadataRetriever fallback has no
+     * lyrics field). Never stored in the audio table or parceled — the scanner copies it into
+     * {@link LyricsIndex} and that is where everyone else reads it from.
+     */
+    @Ignore
+    @Nullable
+    private Boolean embeddedLyrics;
+    
     public Audio() {
     }
     
@@ -190,7 +229,9 @@ public class Audio implements Parcelable {
         uri = in.readString();
         track = in.readInt();
         author = in.readString();
-        size = in.readInt();
+        // Has to stay readLong to match writeToParcel; reading it as an int used to
+        // leave four bytes behind and shift every field after it, cue_* included.
+        size = in.readLong();
         albumArtist = in.readString();
         year = in.readString();
         bitrate = in.readLong();
@@ -212,6 +253,9 @@ public class Audio implements Parcelable {
         replayGainTrackPeak = in.readString();
         replayGainAlbumGain = in.readString();
         replayGainAlbumPeak = in.readString();
+        cueSourceUri = in.readString();
+        cueStart = in.readLong();
+        cueEnd = in.readLong();
     }
     
     @Override
@@ -247,6 +291,9 @@ public class Audio implements Parcelable {
         dest.writeString(replayGainTrackPeak);
         dest.writeString(replayGainAlbumGain);
         dest.writeString(replayGainAlbumPeak);
+        dest.writeString(cueSourceUri);
+        dest.writeLong(cueStart);
+        dest.writeLong(cueEnd);
     }
     
     @Override
@@ -581,6 +628,58 @@ public class Audio implements Parcelable {
         this.replayGainAlbumPeak = replayGainAlbumPeak;
     }
     
+    @Nullable
+    public String getCueSourceUri() {
+        return cueSourceUri;
+    }
+    
+    public void setCueSourceUri(@Nullable String cueSourceUri) {
+        this.cueSourceUri = cueSourceUri;
+    }
+    
+    public long getCueStart() {
+        return cueStart;
+    }
+    
+    public void setCueStart(long cueStart) {
+        this.cueStart = cueStart;
+    }
+    
+    public long getCueEnd() {
+        return cueEnd;
+    }
+    
+    public void setCueEnd(long cueEnd) {
+        this.cueEnd = cueEnd;
+    }
+    
+    /**
+     * Whether this is a track cut out of a bigger file by a CUE sheet rather than a file
+     * of its own. Such tracks have to be played and decoded from {@link #getStreamUri()}
+     * between {@link #getCueStart()} and {@link #getCueEnd()}, and tag edits or deletes
+     * would hit the whole album file.
+     */
+    public boolean isCueTrack() {
+        return cueSourceUri != null;
+    }
+    
+    /**
+     * The URI to actually open when playing or decoding this song: the album file for a
+     * CUE track, and just {@link #getUri()} for everything else.
+     */
+    public String getStreamUri() {
+        return cueSourceUri != null ? cueSourceUri : uri;
+    }
+    
+    @Nullable
+    public Boolean getEmbeddedLyrics() {
+        return embeddedLyrics;
+    }
+    
+    public void setEmbeddedLyrics(@Nullable Boolean embeddedLyrics) {
+        this.embeddedLyrics = embeddedLyrics;
+    }
+    
     @NonNull
     @Override
     public String toString() {
@@ -622,6 +721,9 @@ public class Audio implements Parcelable {
                 ", replayGainTrackPeak='" + replayGainTrackPeak + '\'' +
                 ", replayGainAlbumGain='" + replayGainAlbumGain + '\'' +
                 ", replayGainAlbumPeak='" + replayGainAlbumPeak + '\'' +
+                ", cueSourceUri='" + cueSourceUri + '\'' +
+                ", cueStart=" + cueStart +
+                ", cueEnd=" + cueEnd +
                 '}';
     }
     
@@ -672,6 +774,15 @@ public class Audio implements Parcelable {
         if (bitPerSample != audio.bitPerSample) {
             return false;
         }
+        if (cueStart != audio.cueStart) {
+            return false;
+        }
+        if (cueEnd != audio.cueEnd) {
+            return false;
+        }
+        if (cueSourceUri != null ? !cueSourceUri.equals(audio.cueSourceUri) : audio.cueSourceUri != null) {
+            return false;
+        }
         if (name != null ? !name.equals(audio.name) : audio.name != null) {
             return false;
         }
@@ -768,6 +879,9 @@ public class Audio implements Parcelable {
         result = 31 * result + (isAvailable ? 1 : 0);
         result = 31 * result + (isFavorite ? 1 : 0);
         result = 31 * result + (alwaysSkip ? 1 : 0);
+        result = 31 * result + (cueSourceUri != null ? cueSourceUri.hashCode() : 0);
+        result = 31 * result + Long.hashCode(cueStart);
+        result = 31 * result + Long.hashCode(cueEnd);
         return result;
     }
     
@@ -809,6 +923,9 @@ public class Audio implements Parcelable {
         audio.setReplayGainTrackPeak(getReplayGainTrackPeak());
         audio.setReplayGainAlbumGain(getReplayGainAlbumGain());
         audio.setReplayGainAlbumPeak(getReplayGainAlbumPeak());
+        audio.setCueSourceUri(getCueSourceUri());
+        audio.setCueStart(getCueStart());
+        audio.setCueEnd(getCueEnd());
         return audio;
     }
     
@@ -829,6 +946,21 @@ public class Audio implements Parcelable {
      * @return An integer constant representing the evaluated audio quality.
      */
     public int getAudioQuality() {
+        return getAudioQuality(mimeType, bitrate, sampleRate, bitPerSample);
+    }
+    
+    /**
+     * Same classification as {@link #getAudioQuality()}, but from the raw column values, so
+     * slim list rows that only carry these four columns can show the same quality badge
+     * without loading a whole {@link Audio}.
+     *
+     * @param mimeType     MIME type of the file, may be null.
+     * @param bitrate      bitrate in kbps.
+     * @param sampleRate   sample rate in Hz.
+     * @param bitPerSample bit depth.
+     * @return An integer constant representing the evaluated audio quality.
+     */
+    public static int getAudioQuality(@Nullable String mimeType, long bitrate, long sampleRate, long bitPerSample) {
         // Sanitize MIME type for reliable matching
         String mt = mimeType != null ? mimeType.toLowerCase() : "";
         
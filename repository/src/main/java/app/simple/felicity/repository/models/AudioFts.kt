@@ -0,0 +1,44 @@
+package app.simple.felicity.repository.models
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.Fts4
+import androidx.room.FtsOptions
+import androidx.room.PrimaryKey
+
+/**
+ * Full-text search shadow of the searchable text columns of the {@code audio} table.
+ *
+ * This is an external-content FTS4 table — it stores only the token index, not a second
+ * copy of the text, and Room generates the triggers that keep it in sync with every
+ * insert, update, and delete on {@code audio}. The {@code rowid} of each entry is the
+ * {@code id} of the song it indexes, so a search is one indexed MATCH plus a rowid join.
+ *
+ * The unicode61 tokenizer folds case and strips diacritics, so typing "beyonce" finds
+ * "Beyoncé" without any extra work on our side. FTS5 would give us bm25 ranking, but
+ * it isn't compiled into the platform SQLite on every device we support, so ranking is
+ * done in Kotlin over the (already small) hit list instead.
+ *
+ * @author Hamza417
+ */
+@Fts4(contentEntity = Audio::class, tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "audio_fts")
+data class AudioFts(
+        @PrimaryKey
+        @ColumnInfo(name = "rowid")
+        val rowId: Long,
+        @ColumnInfo(name = "title")
+        val title: String?,
+        @ColumnInfo(name = "artist")
+        val artist: String?,
+        @ColumnInfo(name = "album")
+        val album: String?,
+        @ColumnInfo(name = "album_artist")
+        val albumArtist: String?,
+        @ColumnInfo(name = "genre")
+        val genre: String?,
+        @ColumnInfo(name = "composer")
+        val composer: String?,
+        @ColumnInfo(name = "path")
+        val path: String?
+)
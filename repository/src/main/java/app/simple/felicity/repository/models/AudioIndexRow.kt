@@ -0,0 +1,29 @@
+package app.simple.felicity.repository.models
+
+import androidx.room.ColumnInfo
+
+/**
+ * The handful of [Audio] columns the scanner needs to decide whether a file changed
+ * and to carry the user's flags over to a re-extracted row. Loading these instead of
+ * full [Audio] entities keeps the start of a rescan cheap on very large libraries.
+ *
+ * @author Hamza417
+ */
+data class AudioIndexRow(
+        @ColumnInfo(name = "id")
+        val id: Long,
+        @ColumnInfo(name = "uri")
+        val uri: String?,
+        @ColumnInfo(name = "hash")
+        val hash: Long,
+        @ColumnInfo(name = "size")
+        val size: Long,
+        @ColumnInfo(name = "date_modified")
+        val dateModified: Long,
+        @ColumnInfo(name = "is_favorite")
+        val isFavorite: Boolean,
+        @ColumnInfo(name = "always_skip")
+        val alwaysSkip: Boolean,
+        @ColumnInfo(name = "is_available")
+        val isAvailable: Boolean
+)
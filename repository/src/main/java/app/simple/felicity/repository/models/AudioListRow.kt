@@ -0,0 +1,63 @@
+package app.simple.felicity.repository.models
+
+import androidx.room.ColumnInfo
+
+/**
+ * The bare minimum a song row in a list actually needs to draw itself: the id to find
+ * the full [Audio] again later, the lines of text (plus the path and file name the title
+ * falls back to), the duration label, the four columns behind the quality badge and the
+ * hash/uri pair the cover loaders key on. Everything else — replay gain strings, dates,
+ * codec details, tag extras — stays in the database until somebody taps the row.
+ *
+ * Keeping the projection this narrow is what lets a paged list scroll through tens of
+ * thousands of songs while only ever holding a few hundred of these small objects at once.
+ *
+ * @author Hamza417
+ */
+data class AudioListRow(
+        @ColumnInfo(name = "id")
+        val id: Long,
+        @ColumnInfo(name = "name")
+        val name: String?,
+        @ColumnInfo(name = "title")
+        val title: String?,
+        @ColumnInfo(name = "artist")
+        val artist: String?,
+        @ColumnInfo(name = "album_artist")
+        val albumArtist: String?,
+        @ColumnInfo(name = "album")
+        val album: String?,
+        @ColumnInfo(name = "path")
+        val path: String?,
+        @ColumnInfo(name = "duration")
+        val duration: Long,
+        @ColumnInfo(name = "hash")
+        val hash: Long,
+        @ColumnInfo(name = "uri")
+        val uri: String?,
+        @ColumnInfo(name = "cue_source_uri")
+        val cueSourceUri: String?,
+        @ColumnInfo(name = "mimeType")
+        val mimeType: String?,
+        @ColumnInfo(name = "bitrate")
+        val bitrate: Long,
+        @ColumnInfo(name = "sampling_rate")
+        val sampleRate: Long,
+        @ColumnInfo(name = "bit_per_sample")
+        val bitPerSample: Long
+) {
+
+    /** Same as [Audio.getStreamUri]: a CUE track's artwork lives next to its album file. */
+    val streamUri: String?
+        get() = cueSourceUri ?: uri
+
+    /** Same badge [Audio.getAudioQuality] would give the full row. */
+    val audioQuality: Int
+        get() = Audio.getAudioQuality(mimeType, bitrate, sampleRate, bitPerSample)
+
+    companion object {
+        /** The column list behind every [AudioListRow] query, in one place so they never drift apart. */
+        const val COLUMNS = "id, name, title, artist, album_artist, album, path, duration, hash, uri, " +
+                "cue_source_uri, mimeType, bitrate, sampling_rate, bit_per_sample"
+    }
+}
@@ -0,0 +1,16 @@
+package app.simple.felicity.repository.models
+
+import androidx.room.ColumnInfo
+
+/**
+ * What a song list header shows about the whole list — how many songs and how long they
+ * run together — counted by SQLite instead of by walking every row in memory.
+ *
+ * @author Hamza417
+ */
+data class AudioListSummary(
+        @ColumnInfo(name = "count")
+        val count: Int,
+        @ColumnInfo(name = "total_duration")
+        val totalDuration: Long
+)
@@ -26,12 +26,22 @@ import kotlinx.parcelize.Parcelize
  * song starts playing regardless of direction.
  * </p>
  *
+ * <p>
+ * {@code playCount} and {@code lastPlayed} are indexed because every "most played" and
+ * "recently played" list sorts by one of them and only wants the first few rows — with the
+ * index SQLite walks straight to those instead of sorting the whole table each time.
+ * </p>
+ *
  * @author Hamza417
  */
 @Parcelize
 @Entity(
         tableName = "song_stats",
-        indices = [Index(value = ["audioHash"])]
+        indices = [
+            Index(value = ["audioHash"]),
+            Index(value = ["playCount"]),
+            Index(value = ["lastPlayed"])
+        ]
 )
 data class AudioStat(
         @PrimaryKey(autoGenerate = true)
@@ -0,0 +1,72 @@
+package app.simple.felicity.repository.models
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.Index
+import androidx.room.PrimaryKey
+
+/**
+ * One pre-grouped bucket of the library — a single album, artist, genre, composer,
+ * year, or folder — together with the counts the list screens need to render it.
+ *
+ * The list screens used to rebuild every bucket from the full {@code audio} table on
+ * every emission. Now the buckets live here and are only recomputed when one of their
+ * member songs actually changes (see {@code LibraryIndexer}), so something as small as
+ * a favorite toggle no longer costs a full re-group of the library.
+ *
+ * Which songs belong to a bucket is stored separately in [LibraryAggregateMember] as
+ * plain integer pairs, so the (rather long) SAF URIs are never duplicated per bucket.
+ *
+ * @author Hamza417
+ */
+@Entity(
+        tableName = "library_aggregates",
+        indices = [Index(value = ["kind", "group_key"], unique = true)]
+)
+data class LibraryAggregate(
+        @PrimaryKey(autoGenerate = true)
+        val id: Long = 0L,
+
+        /** One of the KIND_* constants below. */
+        @ColumnInfo(name = "kind")
+        val kind: Int,
+
+        /**
+         * The raw grouping key — the album name, the individual artist name, the year
+         * string, the parent folder document ID, and so on.
+         */
+        @ColumnInfo(name = "group_key")
+        val key: String,
+
+        /** The label shown on screen. Equal to [key] for every kind except folders. */
+        @ColumnInfo(name = "name")
+        val name: String,
+
+        /** Primary artist of an album bucket (the artist of its first song), null otherwise. */
+        @ColumnInfo(name = "artist")
+        val artist: String? = null,
+
+        @ColumnInfo(name = "song_count")
+        val songCount: Int,
+
+        /** Number of distinct albums inside an artist or composer bucket. */
+        @ColumnInfo(name = "album_count", defaultValue = "0")
+        val albumCount: Int = 0,
+
+        @ColumnInfo(name = "first_year", defaultValue = "0")
+        val firstYear: Long = 0L,
+
+        @ColumnInfo(name = "last_year", defaultValue = "0")
+        val lastYear: Long = 0L
+) {
+    companion object {
+        const val KIND_ALBUM = 0
+        const val KIND_ARTIST = 1
+        const val KIND_GENRE = 2
+        const val KIND_COMPOSER = 3
+        const val KIND_YEAR = 4
+        const val KIND_FOLDER = 5
+
+        val ALL_KINDS = intArrayOf(KIND_ALBUM, KIND_ARTIST, KIND_GENRE, KIND_COMPOSER, KIND_YEAR, KIND_FOLDER)
+    }
+}
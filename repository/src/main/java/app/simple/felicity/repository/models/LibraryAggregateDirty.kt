@@ -0,0 +1,26 @@
+package app.simple.felicity.repository.models
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+
+/**
+ * A "this bucket needs another look" marker written by SQLite triggers on the
+ * {@code audio} table whenever a row is inserted, deleted, or has one of its grouping
+ * columns changed.
+ *
+ * [value] holds the raw column value (for example the full "AKON feat. WYCLEF" artist
+ * string or the song's URI for folders) — the triggers can't split artist credits or
+ * parse document IDs, so that part happens in Kotlin when the markers are flushed.
+ *
+ * @author Hamza417
+ */
+@Entity(
+        tableName = "library_aggregate_dirty",
+        primaryKeys = ["kind", "value"]
+)
+data class LibraryAggregateDirty(
+        @ColumnInfo(name = "kind")
+        val kind: Int,
+        @ColumnInfo(name = "value")
+        val value: String
+)
@@ -0,0 +1,27 @@
+package app.simple.felicity.repository.models
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.Index
+
+/**
+ * Links a single song to one [LibraryAggregate] bucket it belongs to.
+ *
+ * A song is usually a member of six buckets (its album, every artist it credits, its
+ * genre, composer, year, and folder). Keeping the relation as two integers instead of
+ * a joined list of URIs on the bucket row keeps the index small even on libraries with
+ * tens of thousands of tracks.
+ *
+ * @author Hamza417
+ */
+@Entity(
+        tableName = "library_aggregate_members",
+        primaryKeys = ["group_id", "audio_id"],
+        indices = [Index(value = ["audio_id"])]
+)
+data class LibraryAggregateMember(
+        @ColumnInfo(name = "group_id")
+        val groupId: Long,
+        @ColumnInfo(name = "audio_id")
+        val audioId: Long
+)
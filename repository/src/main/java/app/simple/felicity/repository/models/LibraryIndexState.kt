@@ -0,0 +1,23 @@
+package app.simple.felicity.repository.models
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+
+/**
+ * Single-row table that remembers which minimum duration and size thresholds the
+ * aggregate index was built with. The list screens honour those library filters, so
+ * when the user changes either of them the whole index has to be rebuilt once — this
+ * row is how we notice.
+ *
+ * @author Hamza417
+ */
+@Entity(tableName = "library_index_state")
+data class LibraryIndexState(
+        @PrimaryKey
+        val id: Int = 0,
+        @ColumnInfo(name = "min_duration")
+        val minDuration: Long,
+        @ColumnInfo(name = "min_size")
+        val minSize: Long
+)
@@ -0,0 +1,149 @@
+package app.simple.felicity.repository.models
+
+import java.util.Collections
+
+/**
+ * One immutable copy of the filtered library, as shared by every screen and service
+ * through [app.simple.felicity.repository.repositories.LibrarySnapshotRepository].
+ *
+ * [songs] is in the same title order the library query returns, and next to it sits a
+ * sorted id column with each id's position in [songs], so looking a song up by id is a
+ * binary search instead of a linear scan or a per-consumer HashMap. Nothing in here can
+ * be changed after it is built — a new library state is always a new snapshot with a
+ * higher [version] — which is what makes it safe to hand the same instance to a dozen
+ * collectors on different threads. Please don't mutate the [Audio] objects inside either,
+ * every other consumer is looking at the very same ones — change a copy instead.
+ *
+ * Just in case somebody does anyway, every song's content hash is taken when the snapshot
+ * is built and kept next to it. [diff] and [hasSameContent] compare those recorded hashes,
+ * never the live objects, so a song that was written to in place still shows up as changed
+ * once the database says so.
+ *
+ * @author Hamza417
+ */
+class LibrarySnapshot private constructor(
+        /**
+         * Increases by one every time the library actually changes. Zero means the first
+         * query hasn't come back yet and the snapshot is just an empty placeholder.
+         */
+        val version: Long,
+        private val songArray: Array<Audio>,
+        private val sortedIds: LongArray,
+        private val positions: IntArray,
+        /** [Audio.hashCode] of every song in [songArray] order, as it was when this was built. */
+        private val contentHashes: IntArray
+) {
+
+    /** Every song of the library in title order. Read-only. */
+    val songs: List<Audio> = Collections.unmodifiableList(songArray.asList())
+
+    val size: Int
+        get() = songArray.size
+
+    /** False only for the placeholder handed out before the library has been read. */
+    val isLoaded: Boolean
+        get() = version > 0L
+
+    /** Position of the song with [id] in [songs], or -1 when it isn't in the library. */
+    fun indexOf(id: Long): Int {
+        val slot = sortedIds.binarySearch(id)
+        return if (slot < 0) -1 else positions[slot]
+    }
+
+    /** The song with [id], or null when it isn't in the library. */
+    operator fun get(id: Long): Audio? {
+        val index = indexOf(id)
+        return if (index < 0) null else songArray[index]
+    }
+
+    operator fun contains(id: Long): Boolean {
+        return sortedIds.binarySearch(id) >= 0
+    }
+
+    /**
+     * True when [songs] holds the same songs in the same order, with the same contents,
+     * as this snapshot did when it was built.
+     */
+    fun hasSameContent(songs: List<Audio>): Boolean {
+        if (songs.size != songArray.size) return false
+        songs.forEachIndexed { index, audio ->
+            if (audio.id != songArray[index].id || audio.hashCode() != contentHashes[index]) return false
+        }
+        return true
+    }
+
+    /**
+     * Works out what changed between [previous] and this snapshot by walking both sorted
+     * id columns side by side — no maps, no per-song lookups, one pass over each.
+     * A song counts as changed when its id is in both but its recorded content hash differs.
+     */
+    fun diff(previous: LibrarySnapshot): Diff {
+        val added = ArrayList<Long>()
+        val removed = ArrayList<Long>()
+        val changed = ArrayList<Long>()
+
+        var before = 0
+        var after = 0
+        val oldIds = previous.sortedIds
+
+        while (before < oldIds.size || after < sortedIds.size) {
+            when {
+                after >= sortedIds.size -> removed.add(oldIds[before++])
+                before >= oldIds.size -> added.add(sortedIds[after++])
+                oldIds[before] < sortedIds[after] -> removed.add(oldIds[before++])
+                oldIds[before] > sortedIds[after] -> added.add(sortedIds[after++])
+                else -> {
+                    if (previous.contentHashes[previous.positions[before]] != contentHashes[positions[after]]) {
+                        changed.add(sortedIds[after])
+                    }
+                    before++
+                    after++
+                }
+            }
+        }
+
+        return Diff(
+                fromVersion = previous.version,
+                toVersion = version,
+                added = added.toLongArray(),
+                removed = removed.toLongArray(),
+                changed = changed.toLongArray()
+        )
+    }
+
+    /**
+     * What [diff] found between two snapshots. All three id arrays are in ascending order.
+     */
+    class Diff(
+            val fromVersion: Long,
+            val toVersion: Long,
+            val added: LongArray,
+            val removed: LongArray,
+            val changed: LongArray
+    ) {
+        val isEmpty: Boolean
+            get() = added.isEmpty() && removed.isEmpty() && changed.isEmpty()
+
+        override fun toString(): String {
+            return "Diff($fromVersion -> $toVersion, +${added.size} -${removed.size} ~${changed.size})"
+        }
+    }
+
+    companion object {
+        /** The placeholder every snapshot flow starts with before the first query lands. */
+        val EMPTY = LibrarySnapshot(0L, emptyArray(), LongArray(0), IntArray(0), IntArray(0))
+
+        /**
+         * Builds a snapshot at [version] from [songs], which must already be in the order
+         * it should be shown in. The list is copied, so the caller is free to reuse it.
+         */
+        fun of(version: Long, songs: List<Audio>): LibrarySnapshot {
+            val songArray = songs.toTypedArray()
+            val order = songArray.indices.sortedBy { songArray[it].id }
+            val sortedIds = LongArray(order.size) { songArray[order[it]].id }
+            val positions = IntArray(order.size) { order[it] }
+            val contentHashes = IntArray(songArray.size) { songArray[it].hashCode() }
+            return LibrarySnapshot(version, songArray, sortedIds, positions, contentHashes)
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package app.simple.felicity.repository.models
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+import java.nio.ByteBuffer
+
+/**
+ * The result of measuring one song's loudness ourselves, for songs that came without
+ * REPLAYGAIN_* tags.
+ *
+ * The background loudness scan decodes such songs, measures them to EBU R128 / BS.1770,
+ * and stores the ReplayGain 2.0 values (reference -18 LUFS) here, keyed by [Audio.hash] so
+ * the same file is never measured twice. The player falls back to this row whenever a song
+ * has no gain tag of its own.
+ *
+ * Album gain needs every song on the album, not just the one being measured, so the
+ * gating-block [histogram] is kept too. Adding up the histograms of an album's songs and
+ * integrating the sum gives the real album loudness; when a song is added to an album
+ * later, only the new song has to be decoded.
+ *
+ * Like [WaveformData], there is intentionally no foreign key back to [Audio] — the
+ * measurement survives the song being removed and re-added.
+ *
+ * @author Hamza417
+ */
+@Entity(tableName = "loudness_analysis")
+data class LoudnessAnalysis(
+        @PrimaryKey
+        @ColumnInfo(name = "audio_hash")
+        val audioHash: Long,
+
+        /** Integrated loudness in LUFS, or null when the song is digital silence. */
+        @ColumnInfo(name = "integrated_lufs")
+        val integratedLufs: Double?,
+
+        /** ReplayGain track gain in dB. */
+        @ColumnInfo(name = "track_gain")
+        val trackGain: Double,
+
+        /** True peak of the song, linear (1.0 = 0 dBTP). */
+        @ColumnInfo(name = "track_peak")
+        val trackPeak: Float,
+
+        /** ReplayGain album gain in dB, or null until the album has been worked out. */
+        @ColumnInfo(name = "album_gain")
+        val albumGain: Double? = null,
+
+        /** Highest true peak on the album, linear; null alongside [albumGain]. */
+        @ColumnInfo(name = "album_peak")
+        val albumPeak: Float? = null,
+
+        /** The gating-block histogram, packed by [packHistogram]. */
+        @ColumnInfo(name = "histogram", typeAffinity = ColumnInfo.BLOB)
+        val histogram: ByteArray,
+
+        /**
+         * Whether the current values have been written into the file's own tags. Cleared
+         * whenever the album gain changes, so a later write picks up the new value.
+         */
+        @ColumnInfo(name = "written_to_tags", defaultValue = "0")
+        val writtenToTags: Boolean = false
+) {
+
+    override fun equals(other: Any?): Boolean {
+        if (this === other) return true
+        if (other !is LoudnessAnalysis) return false
+        return audioHash == other.audioHash
+                && integratedLufs == other.integratedLufs
+                && trackGain == other.trackGain
+                && trackPeak == other.trackPeak
+                && albumGain == other.albumGain
+                && albumPeak == other.albumPeak
+                && histogram.contentEquals(other.histogram)
+                && writtenToTags == other.writtenToTags
+    }
+
+    override fun hashCode(): Int {
+        var result = audioHash.hashCode()
+        result = 31 * result + (integratedLufs?.hashCode() ?: 0)
+        result = 31 * result + trackGain.hashCode()
+        result = 31 * result + trackPeak.hashCode()
+        result = 31 * result + (albumGain?.hashCode() ?: 0)
+        result = 31 * result + (albumPeak?.hashCode() ?: 0)
+        result = 31 * result + histogram.contentHashCode()
+        result = 31 * result + writtenToTags.hashCode()
+        return result
+    }
+
+    companion object {
+        /**
+         * Packs a dense histogram into a small blob: only the non-empty bins are kept, as
+         * a big-endian (short bin index, int count) pair each. A song only ever touches a
+         * couple hundred of the bins, so this is a few hundred bytes instead of several KB.
+         */
+        fun packHistogram(histogram: IntArray): ByteArray {
+            val used = histogram.count { it != 0 }
+            val buffer = ByteBuffer.allocate(used * 6)
+            histogram.forEachIndexed { bin, count ->
+                if (count != 0) {
+                    buffer.putShort(bin.toShort())
+                    buffer.putInt(count)
+                }
+            }
+            return buffer.array()
+        }
+
+        /** Adds a histogram packed by [packHistogram] onto the dense [into]. */
+        fun unpackHistogramInto(packed: ByteArray, into: IntArray) {
+            val buffer = ByteBuffer.wrap(packed)
+            while (buffer.remaining() >= 6) {
+                val bin = buffer.short.toInt()
+                val count = buffer.int
+                if (bin in into.indices) into[bin] += count
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package app.simple.felicity.repository.models
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.Index
+import androidx.room.PrimaryKey
+
+/**
+ * What the library scan found out about one song's lyrics, so the lyrics screen can go
+ * straight to the right place instead of asking the document provider for a `.lrc` and a
+ * `.txt` next to the song and then opening the song to look at its tags — every one of
+ * those is a Binder round-trip, and on an SD card behind SAF they add up to a noticeable
+ * pause before the lyrics show.
+ *
+ * The sidecar columns come from the folder listing the scanner already does, so they cost
+ * nothing extra; [hasEmbeddedLyrics] comes from the TagLib pass that reads the rest of the
+ * tags. A row with nothing in it is just as useful: it says the song has no lyrics anywhere
+ * on the device and the lyrics screen can move on to the network right away.
+ *
+ * Keyed by [Audio.hash] like the other per-song tables. [audioUri] is kept alongside so
+ * saving or deleting a sidecar, which only knows the song's URI, can keep the row current.
+ *
+ * @author Hamza417
+ */
+@Entity(
+        tableName = "lyrics_index",
+        indices = [Index("audio_uri")]
+)
+data class LyricsIndex(
+        @PrimaryKey
+        @ColumnInfo(name = "audio_hash")
+        val audioHash: Long,
+
+        @ColumnInfo(name = "audio_uri")
+        val audioUri: String,
+
+        /** Document URI of the `.lrc` next to the song, or null if there is none. */
+        @ColumnInfo(name = "lrc_uri")
+        val lrcUri: String? = null,
+
+        /** Document URI of the `.txt` next to the song, or null if there is none. */
+        @ColumnInfo(name = "txt_uri")
+        val txtUri: String? = null,
+
+        /**
+         * Whether the song's tags carry lyrics, or null when that hasn't been checked yet
+         * (songs that were already in the library before this table existed, or that were
+         * read without TagLib). The first lyrics load of such a song fills it in.
+         */
+        @ColumnInfo(name = "has_embedded_lyrics")
+        val hasEmbeddedLyrics: Boolean? = null
+)
@@ -0,0 +1,58 @@
+package app.simple.felicity.repository.models
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.Index
+import androidx.room.PrimaryKey
+
+/**
+ * One play, skip, replay, or stretch of listening, exactly as it happened. Rows are only ever appended — never
+ * updated — and the {@code play_rollups} totals are built from them as they are written, so
+ * questions like "what did I play most this week" never have to walk this log.
+ *
+ * The log itself is only kept for a while (see {@code SongStatRepository}); once the
+ * rollups have absorbed an event, the raw row is just history.
+ *
+ * @author Hamza417
+ */
+@Entity(
+        tableName = "play_events",
+        indices = [Index(value = ["timestamp"])]
+)
+data class PlayEvent(
+        @PrimaryKey(autoGenerate = true)
+        @ColumnInfo(name = "id")
+        val id: Long = 0L,
+
+        /** The XXHash64 fingerprint of the song, the same key {@code song_stats} uses. */
+        @ColumnInfo(name = "audio_hash")
+        val audioHash: Long,
+
+        /** One of [KIND_PLAY], [KIND_SKIP], [KIND_REPLAY] or [KIND_LISTEN]. */
+        @ColumnInfo(name = "kind")
+        val kind: Int,
+
+        /** Wall-clock time of the event in milliseconds. */
+        @ColumnInfo(name = "timestamp")
+        val timestamp: Long,
+
+        /**
+         * How long the song was actually heard for a listen, zero for everything else.
+         * Summing these is how the rollups arrive at listening time, so a song skipped after
+         * ten seconds adds ten seconds, not its whole length.
+         */
+        @ColumnInfo(name = "duration_ms", defaultValue = "0")
+        val durationMs: Long = 0L
+) {
+    companion object {
+        const val KIND_PLAY = 0
+        const val KIND_SKIP = 1
+        const val KIND_REPLAY = 2
+
+        /**
+         * Time spent hearing a song, recorded when the player moves away from it. Only adds
+         * to the listening time; the play itself was already counted by a [KIND_PLAY].
+         */
+        const val KIND_LISTEN = 3
+    }
+}
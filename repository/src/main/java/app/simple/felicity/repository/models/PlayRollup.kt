@@ -0,0 +1,82 @@
+package app.simple.felicity.repository.models
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import java.util.Calendar
+
+/**
+ * Running totals for one song over one day, week, or month. Every batch of [PlayEvent]s
+ * adds onto these rows in the same transaction it is written in, so the totals are always
+ * in step with the log without ever re-reading it.
+ *
+ * [bucketStart] is the local midnight the day, week, or month begins at. Weeks start on the
+ * first day of the week of the user's locale, the same as their calendar app.
+ *
+ * @author Hamza417
+ */
+@Entity(
+        tableName = "play_rollups",
+        primaryKeys = ["period", "bucket_start", "audio_hash"]
+)
+data class PlayRollup(
+        /** One of [PERIOD_DAY], [PERIOD_WEEK] or [PERIOD_MONTH]. */
+        @ColumnInfo(name = "period")
+        val period: Int,
+
+        @ColumnInfo(name = "bucket_start")
+        val bucketStart: Long,
+
+        @ColumnInfo(name = "audio_hash")
+        val audioHash: Long,
+
+        @ColumnInfo(name = "plays", defaultValue = "0")
+        val plays: Int = 0,
+
+        @ColumnInfo(name = "skips", defaultValue = "0")
+        val skips: Int = 0,
+
+        @ColumnInfo(name = "replays", defaultValue = "0")
+        val replays: Int = 0,
+
+        /** Summed [PlayEvent.durationMs] of the plays in this bucket. */
+        @ColumnInfo(name = "listened_ms", defaultValue = "0")
+        val listenedMs: Long = 0L
+) {
+    companion object {
+        const val PERIOD_DAY = 0
+        const val PERIOD_WEEK = 1
+        const val PERIOD_MONTH = 2
+
+        val ALL_PERIODS = intArrayOf(PERIOD_DAY, PERIOD_WEEK, PERIOD_MONTH)
+
+        /**
+         * The start of the [period] bucket [timestamp] falls into, in local time.
+         */
+        fun bucketStart(period: Int, timestamp: Long): Long {
+            val calendar = Calendar.getInstance()
+            calendar.timeInMillis = timestamp
+            calendar.set(Calendar.HOUR_OF_DAY, 0)
+            calendar.set(Calendar.MINUTE, 0)
+            calendar.set(Calendar.SECOND, 0)
+            calendar.set(Calendar.MILLISECOND, 0)
+
+            when (period) {
+                PERIOD_WEEK -> {
+                    val back = (calendar.get(Calendar.DAY_OF_WEEK) - calendar.firstDayOfWeek + 7) % 7
+                    calendar.add(Calendar.DAY_OF_MONTH, -back)
+                }
+                PERIOD_MONTH -> calendar.set(Calendar.DAY_OF_MONTH, 1)
+            }
+
+            return calendar.timeInMillis
+        }
+
+        /** Local midnight of January 1st of the year [timestamp] falls into. */
+        fun yearStart(timestamp: Long): Long {
+            val calendar = Calendar.getInstance()
+            calendar.timeInMillis = bucketStart(PERIOD_MONTH, timestamp)
+            calendar.set(Calendar.MONTH, Calendar.JANUARY)
+            return calendar.timeInMillis
+        }
+    }
+}
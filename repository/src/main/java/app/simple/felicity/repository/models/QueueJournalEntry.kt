@@ -0,0 +1,103 @@
+package app.simple.felicity.repository.models
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+
+/**
+ * One edit made to the active queue since {@code playback_queue} was last written in full.
+ *
+ * Rewriting the whole queue every time it is saved meant a 20k-song "play all" queue put
+ * twenty thousand rows on flash every ten seconds, even when all that changed was the seek
+ * position. Instead, small edits — adding a song, playing one next, dragging one somewhere
+ * else, swiping one away — are appended here as they happen, and the snapshot in
+ * {@code playback_queue} is only rewritten once this journal grows long enough, the queue is
+ * replaced outright, or the app restores it on launch. Replaying the rows in [seq] order on
+ * top of the snapshot gives back the exact queue the user had.
+ *
+ * Moves and removals carry the hash of the song they touch and are matched by it, not by
+ * the position alone, so songs dropping out of the snapshot between a save and the next
+ * restore (the library losing them) can't make a later edit land on the wrong song.
+ *
+ * @author Hamza417
+ */
+@Entity(tableName = "playback_queue_journal")
+data class QueueJournalEntry(
+        @PrimaryKey(autoGenerate = true)
+        @ColumnInfo(name = "seq")
+        val seq: Long = 0L,
+
+        /** One of [OP_INSERT], [OP_MOVE] or [OP_REMOVE]. */
+        @ColumnInfo(name = "op")
+        val op: Int,
+
+        /** Where the song was inserted, moved from, or removed from. */
+        @ColumnInfo(name = "position")
+        val position: Int,
+
+        /** Where a moved song ended up; unused by the other operations. */
+        @ColumnInfo(name = "target", defaultValue = "0")
+        val target: Int = 0,
+
+        /**
+         * Hash of the song inserted, moved, or removed. Zero on moves and removals journaled
+         * before they carried it, which are then replayed by position alone.
+         */
+        @ColumnInfo(name = "audio_hash", defaultValue = "0")
+        val audioHash: Long = 0L
+) {
+    companion object {
+        const val OP_INSERT = 0
+        const val OP_MOVE = 1
+        const val OP_REMOVE = 2
+
+        /**
+         * Applies [journal] in order on top of the queue snapshot [hashes]. Moves and
+         * removals find their song by hash near the recorded position, so they still hit
+         * the right one when the snapshot lost songs in front of it; an edit whose song is
+         * gone altogether is skipped, and insert positions that no longer fit are clamped,
+         * rather than failing the whole restore.
+         */
+        fun replay(hashes: MutableList<Long>, journal: List<QueueJournalEntry>) {
+            for (entry in journal) {
+                when (entry.op) {
+                    OP_INSERT -> {
+                        hashes.add(entry.position.coerceIn(0, hashes.size), entry.audioHash)
+                    }
+                    OP_MOVE -> {
+                        val from = locate(hashes, entry)
+                        if (from >= 0) {
+                            hashes.add(entry.target.coerceIn(0, hashes.size - 1), hashes.removeAt(from))
+                        }
+                    }
+                    OP_REMOVE -> {
+                        val at = locate(hashes, entry)
+                        if (at >= 0) hashes.removeAt(at)
+                    }
+                }
+            }
+        }
+
+        /**
+         * Index of the song [entry] moves or removes, or -1 if it isn't in [hashes] anymore.
+         * Songs missing from the snapshot can only have shifted it towards the front, so
+         * the search walks back from the recorded position first and only then forward;
+         * with the same song queued twice, that picks the copy the edit was made on.
+         */
+        private fun locate(hashes: List<Long>, entry: QueueJournalEntry): Int {
+            if (entry.audioHash == 0L) {
+                return if (entry.position in hashes.indices) entry.position else -1
+            }
+
+            for (index in entry.position.coerceAtMost(hashes.size - 1) downTo 0) {
+                if (hashes[index] == entry.audioHash) return index
+            }
+
+            for (index in entry.position + 1 until hashes.size) {
+                if (hashes[index] == entry.audioHash) return index
+            }
+
+            return -1
+        }
+    }
+}
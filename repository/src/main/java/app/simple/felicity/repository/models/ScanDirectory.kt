@@ -0,0 +1,52 @@
+package app.simple.felicity.repository.models
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.Index
+import androidx.room.PrimaryKey
+
+/**
+ * What a SAF directory looked like the last time the scanner actually listed it.
+ *
+ * The scanner sees every subfolder's own last-modified time in its parent's listing
+ * for free. If that time still matches [lastModified] here, nothing was added, removed
+ * or renamed directly inside the folder, so it doesn't have to be listed — its files are
+ * taken from [ScanFile] instead. That says nothing about the folders below it, so those
+ * are still found through [parentUri] and checked against their own timestamps. The remaining columns fingerprint
+ * the folder's contents so a listed folder that turns out unchanged can be recognized
+ * too, and [verifiedAt] makes sure every folder still gets listed for real once in a
+ * while, because editing a file in place does not always touch its folder's timestamp.
+ *
+ * @author Hamza417
+ */
+@Entity(
+        tableName = "scan_directories",
+        indices = [Index("tree_uri"), Index("parent_uri")]
+)
+data class ScanDirectory(
+        /** Document URI of the folder, built against the tree it was reached through. */
+        @PrimaryKey
+        @ColumnInfo(name = "uri")
+        val uri: String,
+        @ColumnInfo(name = "tree_uri")
+        val treeUri: String,
+        /** Document URI of the folder it was listed from, or null for a tree root. */
+        @ColumnInfo(name = "parent_uri")
+        val parentUri: String?,
+        /** The folder's own timestamp as reported by its parent's listing, 0 when unknown. */
+        @ColumnInfo(name = "last_modified")
+        val lastModified: Long,
+        @ColumnInfo(name = "child_count")
+        val childCount: Int,
+        @ColumnInfo(name = "max_child_modified")
+        val maxChildModified: Long,
+        /** Order-independent hash over every child's name, size and timestamp. */
+        @ColumnInfo(name = "aggregate_hash")
+        val aggregateHash: Long,
+        /** When this folder was last listed for real, in epoch milliseconds. */
+        @ColumnInfo(name = "verified_at")
+        val verifiedAt: Long,
+        /** Stamp of the last scan that saw this folder, listed or skipped. */
+        @ColumnInfo(name = "seen_at")
+        val seenAt: Long
+)
@@ -0,0 +1,32 @@
+package app.simple.felicity.repository.models
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.Index
+import androidx.room.PrimaryKey
+
+/**
+ * One audio file as the scanner last listed it, filed under the folder it lives in.
+ * When a whole folder is skipped on a rescan, these rows stand in for its listing —
+ * they are enough to rebuild the [app.simple.felicity.repository.scanners.SAFFile]
+ * without asking the document provider again.
+ *
+ * @author Hamza417
+ */
+@Entity(
+        tableName = "scan_files",
+        indices = [Index("directory_uri")]
+)
+data class ScanFile(
+        @PrimaryKey
+        @ColumnInfo(name = "uri")
+        val uri: String,
+        @ColumnInfo(name = "directory_uri")
+        val directoryUri: String,
+        @ColumnInfo(name = "name")
+        val name: String,
+        @ColumnInfo(name = "size")
+        val size: Long,
+        @ColumnInfo(name = "last_modified")
+        val lastModified: Long
+)
@@ -5,6 +5,7 @@ import androidx.room.Entity
 import androidx.room.Index
 import androidx.room.PrimaryKey
 import app.simple.felicity.repository.models.WaveformData.Companion.fromFloatArray
+import java.nio.ByteBuffer
 
 /**
  * Stores the pre-computed waveform amplitude data for a single audio track.
@@ -14,10 +15,13 @@ import app.simple.felicity.repository.models.WaveformData.Companion.fromFloatArr
  * can skip that work on every subsequent play of the same song and just read
  * from this table instead.
  *
- * The amplitudes are stored as a comma-separated list of floats so Room can
- * hold them in a plain TEXT column without needing any special type converter.
- * Each value is a normalized amplitude in [0.0, 1.0], with one entry per second
- * of audio (or whatever density {@code WaveformViewModel.BARS_PER_SECOND} dictates).
+ * The amplitudes used to live in a comma-separated TEXT column, which meant
+ * parsing one String per bar on every track change. They are now packed into a
+ * small binary blob instead — one byte per bar, quantized from the normalized
+ * [0.0, 1.0] range — along with a min/max mip pyramid where every level halves
+ * the one before it. A view that only has room for a few dozen bars can take the
+ * level closest to its width straight from the blob rather than resampling the
+ * full-resolution data itself. See [encode] for the exact layout.
  *
  * Like [AudioStat] and [AlbumArtColors], there is intentionally no foreign key
  * back to the [Audio] table — the cached waveform survives library deletions
@@ -35,35 +39,213 @@ data class WaveformData(
         val audioHash: Long,
 
         /**
-         * All amplitude samples packed into one string, separated by commas.
-         * Use [toFloatArray] and [fromFloatArray] helpers to convert back and forth.
+         * The encoded waveform blob. Use [toFloatArray] and [fromFloatArray] to convert
+         * back and forth, or [levelFor] to read a coarser level of the pyramid.
          */
-        @ColumnInfo(name = "amplitudes")
-        val amplitudes: String
+        @ColumnInfo(name = "samples", typeAffinity = ColumnInfo.BLOB)
+        val samples: ByteArray
 ) {
 
+    /**
+     * One level of the pyramid. At full resolution [min] and [max] are the same array
+     * since every bar covers a single sample; on coarser levels each bar covers two bars
+     * of the level below and keeps both extremes so peaks don't get averaged away.
+     */
+    class Level(val min: FloatArray, val max: FloatArray) {
+        val size: Int
+            get() = max.size
+    }
+
+    /**
+     * Returns the full-resolution amplitudes, one value per bar in [0.0, 1.0].
+     * Returns an empty array if the stored blob is empty or can not be read.
+     */
+    fun toFloatArray(): FloatArray {
+        return decodeLevel(samples, 0)?.max ?: FloatArray(0)
+    }
+
+    /**
+     * Returns the coarsest pyramid level that still has at least [bars] entries, or the
+     * full-resolution level when even that one is shorter. Pass the number of bars a view
+     * can actually draw to skip resampling on the UI side.
+     *
+     * Only the sizes of the levels are read to make the choice; the chosen level is the
+     * only one that actually gets decoded.
+     */
+    fun levelFor(bars: Int): Level? {
+        val sizes = levelSizes(samples)
+        if (sizes.isEmpty()) return null
+        val index = sizes.indexOfLast { it >= bars }.coerceAtLeast(0)
+        return decodeLevel(samples, index)
+    }
+
+    override fun equals(other: Any?): Boolean {
+        if (this === other) return true
+        if (other !is WaveformData) return false
+        return audioHash == other.audioHash && samples.contentEquals(other.samples)
+    }
+
+    override fun hashCode(): Int {
+        return 31 * audioHash.hashCode() + samples.contentHashCode()
+    }
+
     companion object {
 
+        private const val MAGIC_0 = 'W'.code.toByte()
+        private const val MAGIC_1 = 'F'.code.toByte()
+        private const val FORMAT_VERSION: Byte = 1
+
+        /** Magic (2) + version (1) + level count (1). */
+        private const val HEADER_SIZE = 4
+
+        /** Levels stop halving once they would drop below this many bars. */
+        private const val MIN_LEVEL_SIZE = 16
+
+        private const val QUANT_MAX = 255f
+
         /**
-         * Turns a [FloatArray] of normalized amplitudes into the comma-separated
-         * string that gets stored in the database.
+         * Turns a [FloatArray] of normalized amplitudes into the binary row that gets
+         * stored in the database.
          */
         fun fromFloatArray(hash: Long, data: FloatArray): WaveformData {
-            return WaveformData(
-                    audioHash = hash,
-                    amplitudes = data.joinToString(separator = ",")
-            )
+            return WaveformData(audioHash = hash, samples = encode(data))
         }
-    }
 
-    /**
-     * Parses the stored comma-separated string back into the [FloatArray] that
-     * the waveform view can render. Returns an empty array if the stored value
-     * is blank or can not be parsed.
-     */
-    fun toFloatArray(): FloatArray {
-        if (amplitudes.isBlank()) return FloatArray(0)
-        return amplitudes.split(",").mapNotNull { it.trim().toFloatOrNull() }.toFloatArray()
+        /**
+         * Reads a row written before the binary format existed, where [amplitudes] is
+         * the old comma-separated text. Only used by the database migration.
+         */
+        fun fromLegacyText(hash: Long, amplitudes: String): WaveformData {
+            val values = if (amplitudes.isBlank()) {
+                FloatArray(0)
+            } else {
+                amplitudes.split(",").mapNotNull { it.trim().toFloatOrNull() }.toFloatArray()
+            }
+
+            return fromFloatArray(hash, values)
+        }
+
+        /**
+         * Packs [data] into the blob layout:
+         *
+         * ```
+         * 'W' 'F' version:u8 levelCount:u8
+         * level 0:  size:i32  max[size]:u8
+         * level n:  size:i32  max[size]:u8  min[size]:u8
+         * ```
+         *
+         * Level 0 is the full-resolution data and needs no separate minimum. Every value
+         * is quantized to a single unsigned byte, which is far finer than any bar height
+         * on a phone screen.
+         */
+        fun encode(data: FloatArray): ByteArray {
+            val base = ByteArray(data.size) { quantize(data[it]) }
+            val levels = mutableListOf(base to base)
+
+            var (lastMax, lastMin) = levels.last()
+            while (lastMax.size / 2 >= MIN_LEVEL_SIZE) {
+                val size = lastMax.size / 2
+                val max = ByteArray(size)
+                val min = ByteArray(size)
+
+                for (i in 0 until size) {
+                    val a = 2 * i
+                    val b = a + 1
+                    max[i] = maxOf(lastMax[a].toInt() and 0xFF, lastMax[b].toInt() and 0xFF).toByte()
+                    min[i] = minOf(lastMin[a].toInt() and 0xFF, lastMin[b].toInt() and 0xFF).toByte()
+                }
+
+                levels.add(max to min)
+                lastMax = max
+                lastMin = min
+            }
+
+            val levelCount = levels.size.coerceAtMost(0xFF)
+            var length = HEADER_SIZE
+            for (index in 0 until levelCount) {
+                val size = levels[index].first.size
+                length += Int.SIZE_BYTES + if (index == 0) size else size * 2
+            }
+
+            val buffer = ByteBuffer.allocate(length)
+            buffer.put(MAGIC_0).put(MAGIC_1).put(FORMAT_VERSION).put(levelCount.toByte())
+
+            for (index in 0 until levelCount) {
+                val (max, min) = levels[index]
+                buffer.putInt(max.size)
+                buffer.put(max)
+                if (index > 0) buffer.put(min)
+            }
+
+            return buffer.array()
+        }
+
+        /**
+         * Unpacks level [index] of a blob written by [encode], skipping over the levels
+         * in front of it without decoding them. Anything that doesn't look like a blob we
+         * wrote — wrong magic, a newer version, a truncated row — decodes to null so the
+         * caller simply treats it as a cache miss.
+         */
+        fun decodeLevel(samples: ByteArray, index: Int): Level? {
+            val buffer = levelBuffer(samples) ?: return null
+            val levelCount = samples[3].toInt() and 0xFF
+            if (index !in 0 until levelCount) return null
+
+            for (level in 0..index) {
+                if (buffer.remaining() < Int.SIZE_BYTES) return null
+                val size = buffer.getInt()
+                val needed = if (level == 0) size else size * 2
+                if (size < 0 || buffer.remaining() < needed) return null
+
+                if (level < index) {
+                    buffer.position(buffer.position() + needed)
+                    continue
+                }
+
+                val max = FloatArray(size) { dequantize(buffer.get()) }
+                val min = if (level == 0) max else FloatArray(size) { dequantize(buffer.get()) }
+                return Level(min, max)
+            }
+
+            return null
+        }
+
+        /**
+         * The number of bars in every level of [samples], finest first, read from the
+         * level headers alone. Empty if the blob can't be read.
+         */
+        private fun levelSizes(samples: ByteArray): IntArray {
+            val buffer = levelBuffer(samples) ?: return IntArray(0)
+            val sizes = IntArray(samples[3].toInt() and 0xFF)
+
+            for (level in sizes.indices) {
+                if (buffer.remaining() < Int.SIZE_BYTES) return IntArray(0)
+                val size = buffer.getInt()
+                val needed = if (level == 0) size else size * 2
+                if (size < 0 || buffer.remaining() < needed) return IntArray(0)
+
+                sizes[level] = size
+                buffer.position(buffer.position() + needed)
+            }
+
+            return sizes
+        }
+
+        /** A buffer positioned on the first level, or null when the header is not ours. */
+        private fun levelBuffer(samples: ByteArray): ByteBuffer? {
+            if (samples.size < HEADER_SIZE) return null
+            if (samples[0] != MAGIC_0 || samples[1] != MAGIC_1) return null
+            if (samples[2] != FORMAT_VERSION) return null
+
+            return ByteBuffer.wrap(samples, HEADER_SIZE, samples.size - HEADER_SIZE)
+        }
+
+        private fun quantize(value: Float): Byte {
+            return (value.coerceIn(0f, 1f) * QUANT_MAX + 0.5f).toInt().toByte()
+        }
+
+        private fun dequantize(value: Byte): Float {
+            return (value.toInt() and 0xFF) / QUANT_MAX
+        }
     }
 }
-
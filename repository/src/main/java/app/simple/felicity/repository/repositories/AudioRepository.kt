@@ -3,21 +3,32 @@ package app.simple.felicity.repository.repositories
 import android.content.Context
 import android.provider.DocumentsContract
 import androidx.core.net.toUri
+import androidx.paging.Pager
+import androidx.paging.PagingConfig
+import androidx.paging.PagingData
 import androidx.sqlite.db.SimpleSQLiteQuery
 import app.simple.felicity.preferences.LibraryPreferences
 import app.simple.felicity.repository.database.dao.PlaybackStateDao
 import app.simple.felicity.repository.database.instances.AudioDatabase
+import app.simple.felicity.repository.loader.LibraryIndexer
 import app.simple.felicity.repository.models.Album
 import app.simple.felicity.repository.models.Artist
 import app.simple.felicity.repository.models.Audio
+import app.simple.felicity.repository.models.AudioListRow
+import app.simple.felicity.repository.models.AudioListSummary
 import app.simple.felicity.repository.models.Folder
 import app.simple.felicity.repository.models.Genre
+import app.simple.felicity.repository.models.LibraryAggregate
 import app.simple.felicity.repository.models.PageData
 import app.simple.felicity.repository.models.YearGroup
+import app.simple.felicity.repository.sort.AudioSqlOrder
+import app.simple.felicity.repository.utils.SearchUtils
 import dagger.hilt.android.qualifiers.ApplicationContext
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.emptyFlow
+import kotlinx.coroutines.flow.filter
+import kotlinx.coroutines.flow.flowOf
 import kotlinx.coroutines.flow.map
 import kotlinx.coroutines.withContext
 import javax.inject.Inject
@@ -29,7 +40,9 @@ import javax.inject.Singleton
  */
 @Singleton
 class AudioRepository @Inject constructor(
-        @param:ApplicationContext private val context: Context
+        @param:ApplicationContext private val context: Context,
+        private val libraryIndexer: LibraryIndexer,
+        private val librarySnapshot: LibrarySnapshotRepository
 ) {
 
     private val audioDatabase: AudioDatabase by lazy {
@@ -95,23 +108,113 @@ class AudioRepository @Inject constructor(
         LibraryPreferences.getMinimumAudioSize().toLong() * 1024L
 
     /**
-     * Get all audio files from the database as a Flow.
-     * Results are filtered in real-time by [LibraryPreferences] minimum duration and size.
+     * Get all audio files as a Flow, filtered by [LibraryPreferences] minimum duration and size.
+     * Backed by the shared [LibrarySnapshotRepository], so however many callers collect this
+     * there is still only one library query per change. The list is read-only and shared with
+     * every other collector; copy it before sorting or editing it in place.
      */
-    fun getAllAudio(): Flow<MutableList<Audio>> {
-        return audioDatabase.audioDao()?.getFilteredAudio(minDurationMs(), minSizeBytes())
-            ?: throw IllegalStateException("AudioDao is null")
+    fun getAllAudio(): Flow<List<Audio>> {
+        return librarySnapshot.snapshot
+            .filter { it.isLoaded }
+            .map { it.songs }
     }
 
     /**
-     * Get all audio files from the database as a list.
-     * Results are filtered by [LibraryPreferences] minimum duration and size.
+     * Get all audio files as a list, filtered by [LibraryPreferences] minimum duration and size.
+     * Reuses the shared snapshot when something is already watching the library and only
+     * queries the database when nothing is.
      */
     suspend fun getAllAudioList(): MutableList<Audio> = withContext(Dispatchers.IO) {
-        audioDatabase.audioDao()?.getFilteredAudioList(minDurationMs(), minSizeBytes())
+        librarySnapshot.peek()?.songs?.toMutableList()
+            ?: audioDatabase.audioDao()?.getFilteredAudioList(minDurationMs(), minSizeBytes())
             ?: throw IllegalStateException("AudioDao is null")
     }
 
+    /**
+     * Paged, slim view of the filtered library for list screens. Only the [AudioListRow]
+     * columns are read, a page at a time, and SQLite does the sorting, so memory use and
+     * time to first frame stay flat no matter how big the library gets. Pass the sort
+     * field and direction from whichever panel is asking (see [AudioSqlOrder]).
+     *
+     * @param favoritesOnly Restrict the list to songs flagged as favorite.
+     */
+    fun getAudioRowsPaged(sort: Int, style: Int, favoritesOnly: Boolean = false): Flow<PagingData<AudioListRow>> {
+        val dao = audioDatabase.audioDao() ?: throw IllegalStateException("AudioDao is null")
+        val query = buildRowQuery(AudioListRow.COLUMNS, favoritesOnly, AudioSqlOrder.orderBy(sort, style))
+
+        return Pager(
+                config = PagingConfig(
+                        pageSize = PAGE_SIZE,
+                        prefetchDistance = PAGE_SIZE / 2,
+                        enablePlaceholders = true,
+                        maxSize = PAGE_SIZE * 6),
+                pagingSourceFactory = { dao.getAudioRowsPaged(query) }
+        ).flow
+    }
+
+    /**
+     * Song count and total length of the same rows [getAudioRowsPaged] pages through,
+     * worked out by SQLite so the list header never needs the rows themselves.
+     */
+    fun getAudioListSummary(favoritesOnly: Boolean = false): Flow<AudioListSummary> {
+        val dao = audioDatabase.audioDao() ?: throw IllegalStateException("AudioDao is null")
+        return dao.getAudioListSummary(buildRowQuery(
+                "COUNT(*) AS count, COALESCE(SUM(duration), 0) AS total_duration", favoritesOnly, orderBy = null))
+    }
+
+    /**
+     * One short key per row, in list order, for the section fast scroller: the first
+     * character of whatever the list is grouped by, or the year for year sorting (see
+     * [AudioSqlOrder.sectionKey]). One character per song is a lot lighter than the song itself.
+     */
+    fun getAudioSectionKeys(sort: Int, style: Int, favoritesOnly: Boolean = false): Flow<List<String>> {
+        val dao = audioDatabase.audioDao() ?: throw IllegalStateException("AudioDao is null")
+        return dao.getAudioSectionKeys(buildRowQuery(
+                AudioSqlOrder.sectionKey(sort), favoritesOnly, AudioSqlOrder.orderBy(sort, style)))
+    }
+
+    /**
+     * Ids of the filtered library in the same order [getAudioRowsPaged] would show them.
+     * Handy for building a play queue from a paged list without loading every song.
+     */
+    suspend fun getAudioIds(sort: Int, style: Int, favoritesOnly: Boolean = false): List<Long> = withContext(Dispatchers.IO) {
+        audioDatabase.audioDao()?.getAudioIds(buildRowQuery("id", favoritesOnly, AudioSqlOrder.orderBy(sort, style)))
+            ?: throw IllegalStateException("AudioDao is null")
+    }
+
+    /**
+     * Resolves ids (usually taken from [AudioListRow]s) back into full [Audio] objects,
+     * keeping the order of [ids]. Lookups are chunked so large selections stay under
+     * SQLite's bound-parameter limit; ids that no longer exist are simply dropped.
+     */
+    suspend fun getAudioByIds(ids: List<Long>): List<Audio> = withContext(Dispatchers.IO) {
+        val dao = audioDatabase.audioDao() ?: throw IllegalStateException("AudioDao is null")
+        val byId = HashMap<Long, Audio>(ids.size)
+
+        ids.chunked(ID_CHUNK_SIZE).forEach { chunk ->
+            dao.getAudioByIdList(chunk).forEach { byId[it.id] = it }
+        }
+
+        ids.mapNotNull { byId[it] }
+    }
+
+    /**
+     * Favorites are deliberately not run through the library size/length filters, same as
+     * [getFavoriteAudio] — if the user hearted a song, they want to see it. Pass a null
+     * [orderBy] for aggregates, where the order would only cost a sort.
+     */
+    private fun buildRowQuery(columns: String, favoritesOnly: Boolean, orderBy: String?): SimpleSQLiteQuery {
+        val order = orderBy?.let { " ORDER BY $it" } ?: ""
+
+        return if (favoritesOnly) {
+            SimpleSQLiteQuery("SELECT $columns FROM audio WHERE is_available = 1 AND is_favorite = 1$order")
+        } else {
+            SimpleSQLiteQuery(
+                    "SELECT $columns FROM audio WHERE is_available = 1 AND duration >= ? AND size >= ?$order",
+                    arrayOf(minDurationMs(), minSizeBytes()))
+        }
+    }
+
     /**
      * Get all unique artists from the database as a Flow.
      * Filtered in real-time by [LibraryPreferences] minimum duration and size.
@@ -132,106 +235,64 @@ class AudioRepository @Inject constructor(
 
     /**
      * Get all albums with aggregated data including song counts and file paths.
-     * This method groups audio files by album and creates proper Album objects.
+     * Albums are read pre-grouped from the aggregate index maintained by [LibraryIndexer],
+     * so only the albums whose songs actually changed get recomputed between emissions.
      * Results are filtered in real-time by [LibraryPreferences] minimum duration and size.
      * @return Flow of albums with complete metadata
      */
     fun getAllAlbumsWithAggregation(): Flow<List<Album>> {
-        return audioDatabase.audioDao()?.getFilteredAudioForAlbumAggregation(minDurationMs(), minSizeBytes())?.map { audioList ->
-            // Group audio files by album name
-            audioList.groupBy { it.album }
-                .mapNotNull { (albumName, songs) ->
-                    if (albumName.isNullOrEmpty()) return@mapNotNull null
-
-                    val firstSong = songs.firstOrNull() ?: return@mapNotNull null
-
-                    // Aggregate data from all songs in the album
-                    val songPaths = songs.map { it.uri }
-                    val years = songs.mapNotNull { it.year?.toLongOrNull() }.filter { it > 0 }
-
-                    // Generate unique ID based on album name and artist to avoid collisions
-                    val uniqueId = "${albumName}_${firstSong.artist}".hashCode().toLong()
-
-                    Album(
-                            id = uniqueId,
-                            name = albumName,
-                            artist = firstSong.artist,
-                            artistId = firstSong.artist?.hashCode()?.toLong() ?: 0L,
-                            songCount = songs.size,
-                            firstYear = years.minOrNull() ?: 0,
-                            lastYear = years.maxOrNull() ?: 0,
-                            songPaths = songPaths
-                    )
-                }
-                .sortedBy { it.name?.lowercase() }
-        } ?: throw IllegalStateException("AudioDao is null")
+        return libraryIndexer.observe(LibraryAggregate.KIND_ALBUM).map { buckets ->
+            buckets.map { (aggregate, songPaths) ->
+                Album(
+                        // Generate unique ID based on album name and artist to avoid collisions
+                        id = "${aggregate.name}_${aggregate.artist}".hashCode().toLong(),
+                        name = aggregate.name,
+                        artist = aggregate.artist,
+                        artistId = aggregate.artist?.hashCode()?.toLong() ?: 0L,
+                        songCount = aggregate.songCount,
+                        firstYear = aggregate.firstYear,
+                        lastYear = aggregate.lastYear,
+                        songPaths = songPaths
+                )
+            }
+        }
     }
 
     /**
      * Get all artists with aggregated data including album counts, track counts, and song paths.
-     * This method groups audio files by artist and creates proper Artist objects.
+     * Combined credits (e.g. "AKON feat. WYCLEF") count towards every individual artist.
+     * Artists are read pre-grouped from the aggregate index maintained by [LibraryIndexer].
      * Results are filtered in real-time by [LibraryPreferences] minimum duration and size.
      * @return Flow of artists with complete metadata
      */
     fun getAllArtistsWithAggregation(): Flow<List<Artist>> {
-        return audioDatabase.audioDao()?.getFilteredAudio(minDurationMs(), minSizeBytes())?.map { audioList ->
-            val splitRegex = Regex(ARTIST_SEPARATOR_REGEX, RegexOption.IGNORE_CASE)
-
-            // We build two maps in a single pass over the song list so this stays fast
-            // no matter how large the library is. Each song contributes to every individual
-            // artist credited in its artist field (e.g. "AKON feat. WYCLEF" adds to both).
-            val artistSongPaths = mutableMapOf<String, MutableList<String>>()
-            val artistAlbums = mutableMapOf<String, MutableSet<String>>()
-
-            audioList.forEach { audio ->
-                val field = audio.artist ?: return@forEach
-                field.split(splitRegex)
-                    .map { it.trim() }
-                    .filter { it.isNotEmpty() }
-                    .forEach { name ->
-                        artistSongPaths.getOrPut(name) { mutableListOf() }.add(audio.uri)
-                        audio.album?.let { artistAlbums.getOrPut(name) { mutableSetOf() }.add(it) }
-                    }
-            }
-
-            artistSongPaths.map { (name, paths) ->
-                Artist(
-                        id = name.hashCode().toLong(),
-                        name = name,
-                        albumCount = artistAlbums[name]?.size ?: 0,
-                        trackCount = paths.size,
-                        songPaths = paths
-                )
-            }.sortedBy { it.name?.lowercase() }
-        } ?: throw IllegalStateException("AudioDao is null")
+        return libraryIndexer.observe(LibraryAggregate.KIND_ARTIST).map { buckets ->
+            buckets.map { (aggregate, songPaths) -> aggregate.toArtist(songPaths) }
+        }
     }
 
     /**
      * Get all composers with aggregated data including track counts and song paths.
-     * Groups audio files by the composer tag and builds one entry per unique name.
      * Songs without a composer tag are quietly skipped.
+     * Composers are read pre-grouped from the aggregate index maintained by [LibraryIndexer].
      * Results are filtered in real-time by [LibraryPreferences] minimum duration and size.
      *
      * @return Flow of composers represented as [Artist] objects, sorted by name
      */
     fun getAllComposersWithAggregation(): Flow<List<Artist>> {
-        return audioDatabase.audioDao()?.getFilteredAudio(minDurationMs(), minSizeBytes())?.map { audioList ->
-            val map = mutableMapOf<String, MutableList<Audio>>()
-            audioList.forEach { audio ->
-                val name = audio.composer?.takeIf { it.isNotBlank() } ?: return@forEach
-                map.getOrPut(name) { mutableListOf() }.add(audio)
-            }
-            map.map { (name, songs) ->
-                val uniqueAlbums = songs.mapNotNull { it.album }.distinct().size
-                Artist(
-                        id = name.hashCode().toLong(),
-                        name = name,
-                        albumCount = uniqueAlbums,
-                        trackCount = songs.size,
-                        songPaths = songs.map { it.uri }
-                )
-            }.sortedBy { it.name?.lowercase() }
-        } ?: throw IllegalStateException("AudioDao is null")
+        return libraryIndexer.observe(LibraryAggregate.KIND_COMPOSER).map { buckets ->
+            buckets.map { (aggregate, songPaths) -> aggregate.toArtist(songPaths) }
+        }
+    }
+
+    private fun LibraryAggregate.toArtist(songPaths: List<String>): Artist {
+        return Artist(
+                id = name.hashCode().toLong(),
+                name = name,
+                albumCount = albumCount,
+                trackCount = songCount,
+                songPaths = songPaths
+        )
     }
 
     /**
@@ -243,7 +304,7 @@ class AudioRepository @Inject constructor(
      * @return Flow of album artists with complete metadata, sorted by name
      */
     fun getAllAlbumArtistsWithAggregation(): Flow<List<Artist>> {
-        return audioDatabase.audioDao()?.getFilteredAudio(minDurationMs(), minSizeBytes())?.map { audioList ->
+        return getAllAudio().map { audioList ->
             buildAlbumArtistSongMap(audioList).map { (name, songs) ->
                 Artist(
                         id = name.hashCode().toLong(),
@@ -253,7 +314,7 @@ class AudioRepository @Inject constructor(
                         songPaths = songs.map { it.uri }
                 )
             }.sortedBy { it.name?.lowercase() }
-        } ?: throw IllegalStateException("AudioDao is null")
+        }
     }
 
     /**
@@ -316,32 +377,21 @@ class AudioRepository @Inject constructor(
 
     /**
      * Get all genres with aggregated data including song counts and song paths.
-     * This method groups audio files by genre and creates proper Genre objects.
+     * Genres are read pre-grouped from the aggregate index maintained by [LibraryIndexer].
      * Results are filtered in real-time by [LibraryPreferences] minimum duration and size.
      * @return Flow of genres with complete metadata
      */
     fun getAllGenresWithAggregation(): Flow<List<Genre>> {
-        return audioDatabase.audioDao()?.getFilteredAudio(minDurationMs(), minSizeBytes())?.map { audioList ->
-            // Group audio files by genre name
-            audioList.groupBy { it.genre }
-                .mapNotNull { (genreName, songs) ->
-                    if (genreName.isNullOrEmpty()) return@mapNotNull null
-
-                    // Aggregate song paths from all songs in the genre
-                    val songPaths = songs.map { it.uri }
-
-                    // Generate unique ID based on genre name
-                    val uniqueId = genreName.hashCode().toLong()
-
-                    Genre(
-                            id = uniqueId,
-                            name = genreName,
-                            songPaths = songPaths,
-                            songCount = songs.size
-                    )
-                }
-                .sortedBy { it.name?.lowercase() }
-        } ?: throw IllegalStateException("AudioDao is null")
+        return libraryIndexer.observe(LibraryAggregate.KIND_GENRE).map { buckets ->
+            buckets.map { (aggregate, songPaths) ->
+                Genre(
+                        id = aggregate.name.hashCode().toLong(),
+                        name = aggregate.name,
+                        songPaths = songPaths,
+                        songCount = aggregate.songCount
+                )
+            }
+        }
     }
 
     /**
@@ -395,35 +445,23 @@ class AudioRepository @Inject constructor(
 
     /**
      * Get all unique folders that contain audio files, with aggregated data.
-     * Groups audio files by their parent directory using the document ID from the SAF URI.
+     * Folders are keyed by the parent document ID of each song's SAF URI and read
+     * pre-grouped from the aggregate index maintained by [LibraryIndexer].
      * Results are filtered in real-time by [LibraryPreferences] minimum duration and size.
      * @return Flow of folders with complete metadata
      */
     fun getAllFoldersWithAggregation(): Flow<List<Folder>> {
-        return audioDatabase.audioDao()?.getFilteredAudio(minDurationMs(), minSizeBytes())?.map { audioList ->
-            audioList.groupBy { audio ->
-                // The document ID is "primary:Music/Artist/Album/song.mp3" —
-                // the parent folder is everything up to the last slash.
-                val docId = docIdOf(audio.uri) ?: return@groupBy ""
-                val lastSlash = docId.lastIndexOf('/')
-                if (lastSlash > 0) docId.substring(0, lastSlash) else docId
-            }.mapNotNull { (folderDocId, songs) ->
-                if (folderDocId.isEmpty()) return@mapNotNull null
-
-                // The display name is the segment after the last slash (or after ":" for roots).
-                val folderName = folderDocId.substringAfterLast('/').let {
-                    if (it.contains(':')) it.substringAfter(':') else it
-                }.ifEmpty { folderDocId }
-
+        return libraryIndexer.observe(LibraryAggregate.KIND_FOLDER).map { buckets ->
+            buckets.map { (aggregate, songPaths) ->
                 Folder(
-                        id = folderDocId.hashCode().toLong(),
-                        path = folderDocId,
-                        name = folderName,
-                        songPaths = songs.map { it.uri },
-                        songCount = songs.size
+                        id = aggregate.key.hashCode().toLong(),
+                        path = aggregate.key,
+                        name = aggregate.name,
+                        songPaths = songPaths,
+                        songCount = aggregate.songCount
                 )
-            }.sortedBy { it.name.lowercase() }
-        } ?: throw IllegalStateException("AudioDao is null")
+            }
+        }
     }
 
     /**
@@ -433,7 +471,7 @@ class AudioRepository @Inject constructor(
      * (e.g. "primary:Music") and count how many songs live under each tree.
      */
     fun getTopLevelFolders(): Flow<List<Folder>> {
-        return audioDatabase.audioDao()?.getFilteredAudio(minDurationMs(), minSizeBytes())?.map { audioList ->
+        return getAllAudio().map { audioList ->
 
             // Grab the document IDs of all trees the user has granted read access to.
             val grantedTreeDocIds = context.contentResolver.persistedUriPermissions
@@ -467,7 +505,7 @@ class AudioRepository @Inject constructor(
                         songCount = songsUnder.size
                 )
             }.sortedBy { it.name.lowercase() }
-        } ?: throw IllegalStateException("AudioDao is null")
+        }
     }
 
     /**
@@ -482,7 +520,7 @@ class AudioRepository @Inject constructor(
      * @return Flow of [FolderContents] with subFolders and songs
      */
     fun getFolderContents(folderPath: String): Flow<FolderContents> {
-        return audioDatabase.audioDao()?.getFilteredAudio(minDurationMs(), minSizeBytes())?.map { audioList ->
+        return getAllAudio().map { audioList ->
 
             // Pair each audio with its parsed document ID once so we don't repeat the work.
             data class AudioEntry(val audio: Audio, val docId: String)
@@ -521,7 +559,7 @@ class AudioRepository @Inject constructor(
             }.sortedBy { it.name.lowercase() }
 
             FolderContents(subFolders = subFolders, songs = directSongs)
-        } ?: throw IllegalStateException("AudioDao is null")
+        }
     }
 
     /**
@@ -851,26 +889,22 @@ class AudioRepository @Inject constructor(
 
     /**
      * Get all unique year groups that contain audio files, with aggregated data.
-     * This method groups audio files by their year tag and creates YearGroup objects.
      * Songs with no year are grouped under a special "Unknown" year.
+     * Years are read pre-grouped from the aggregate index maintained by [LibraryIndexer].
      * Results are filtered in real-time by [LibraryPreferences] minimum duration and size.
      * @return Flow of year groups with complete metadata
      */
     fun getAllYearsWithAggregation(): Flow<List<YearGroup>> {
-        return audioDatabase.audioDao()?.getFilteredAudio(minDurationMs(), minSizeBytes())?.map { audioList ->
-            audioList.groupBy { audio ->
-                audio.year?.takeIf { it.isNotBlank() } ?: "Unknown"
-            }.map { (year, songs) ->
-                val songPaths = songs.map { it.uri }
-                val uniqueId = year.hashCode().toLong()
+        return libraryIndexer.observe(LibraryAggregate.KIND_YEAR).map { buckets ->
+            buckets.map { (aggregate, songPaths) ->
                 YearGroup(
-                        id = uniqueId,
-                        year = year,
+                        id = aggregate.key.hashCode().toLong(),
+                        year = aggregate.key,
                         songPaths = songPaths,
-                        songCount = songs.size
+                        songCount = aggregate.songCount
                 )
             }
-        } ?: throw IllegalStateException("AudioDao is null")
+        }
     }
 
     /**
@@ -884,7 +918,7 @@ class AudioRepository @Inject constructor(
         val dao = audioDatabase.audioDao() ?: throw IllegalStateException("AudioDao is null")
 
         // Ask SQLite to give us ONLY the tracks for this year
-        val yearFlow = if (yearGroup.year == "Unknown") {
+        val yearFlow = if (yearGroup.year == LibraryIndexer.UNKNOWN_YEAR) {
             dao.getTracksForUnknownYear(minDurationMs(), minSizeBytes())
         } else {
             dao.getTracksForYear(yearGroup.year, minDurationMs(), minSizeBytes())
@@ -1116,6 +1150,86 @@ class AudioRepository @Inject constructor(
         } ?: throw IllegalStateException("AudioDao is null")
     }
 
+    /**
+     * Everything a single library search turned up, already split into categories.
+     * Songs are ordered by relevance; albums, artists, and genres follow the rank of
+     * their best-matching song.
+     */
+    data class SearchHits(
+            val songs: List<Audio> = emptyList(),
+            val albums: List<Album> = emptyList(),
+            val artists: List<Artist> = emptyList(),
+            val genres: List<Genre> = emptyList()
+    )
+
+    /**
+     * Reactive full-library search backed by the {@code audio_fts} index — one indexed
+     * MATCH covers titles, artists, albums, album artists, genres, composers, and paths,
+     * instead of a separate {@code LIKE '%q%'} table scan per field.
+     *
+     * Every word the user typed has to appear, and the last letters typed are treated as
+     * the start of a word, so "dark si" already finds "Dark Side of the Moon". Case and
+     * diacritics are ignored. Albums, artists, and genres are only reported when that
+     * field itself matched, not just because one of their songs did.
+     * Filtered in real-time by [LibraryPreferences] minimum duration and size.
+     *
+     * @param query The text the user typed in the search box.
+     * @return Flow of [SearchHits] that re-emits whenever the audio table changes.
+     */
+    fun searchLibraryFlow(query: String): Flow<SearchHits> {
+        val tokens = SearchUtils.tokenize(query)
+        if (tokens.isEmpty()) return flowOf(SearchHits())
+
+        val dao = audioDatabase.audioDao() ?: throw IllegalStateException("AudioDao is null")
+
+        return dao.searchFts(SearchUtils.buildMatchQuery(tokens), minDurationMs(), minSizeBytes())
+            .map { hits ->
+                // Score once, then every derived list inherits the order for free.
+                val ranked = hits.map { it to SearchUtils.rank(it, tokens) }
+                    .sortedByDescending { it.second }
+                    .map { it.first }
+
+                val albums = ranked.filter { SearchUtils.matches(it.album, tokens) }
+                    .groupBy { it.album!! }
+                    .map { (albumName, songs) ->
+                        val firstSong = songs.first()
+                        Album(
+                                id = "${albumName}_${firstSong.artist}".hashCode().toLong(),
+                                name = albumName,
+                                artist = firstSong.artist,
+                                artistId = firstSong.artist?.hashCode()?.toLong() ?: 0L,
+                                songCount = songs.size,
+                                songPaths = songs.map { it.uri }
+                        )
+                    }
+
+                val artists = buildArtistSongMap(ranked)
+                    .filterKeys { SearchUtils.matches(it, tokens) }
+                    .map { (name, matchedSongs) ->
+                        Artist(
+                                id = name.hashCode().toLong(),
+                                name = name,
+                                albumCount = matchedSongs.mapNotNull { it.album }.distinct().size,
+                                trackCount = matchedSongs.size,
+                                songPaths = matchedSongs.map { it.uri }
+                        )
+                    }
+
+                val genres = ranked.filter { SearchUtils.matches(it.genre, tokens) }
+                    .groupBy { it.genre!! }
+                    .map { (genreName, songs) ->
+                        Genre(
+                                id = genreName.hashCode().toLong(),
+                                name = genreName,
+                                songPaths = songs.map { it.uri },
+                                songCount = songs.size
+                        )
+                    }
+
+                SearchHits(songs = ranked, albums = albums, artists = artists, genres = genres)
+            }
+    }
+
     /**
      * Reactive search by album – re-emits whenever the audio table changes.
      * Filtered in real-time by [LibraryPreferences] minimum duration and size.
@@ -1187,6 +1301,12 @@ class AudioRepository @Inject constructor(
     }
 
     companion object {
+        /** Rows per page for the paged list queries, roughly a few screens' worth. */
+        private const val PAGE_SIZE = 60
+
+        /** Stays comfortably below SQLite's default limit of 999 bound parameters. */
+        private const val ID_CHUNK_SIZE = 900
+
         /**
          * A comprehensive regular expression used to tokenize and split raw artist metadata strings
          * (e.g., from ID3 tags) into individual artist entities.
@@ -1219,7 +1339,7 @@ class AudioRepository @Inject constructor(
          * contain these characters (such as "AC/DC", "Earth, Wind & Fire", or "Florence + The Machine"),
          * the raw string should be evaluated against an artist whitelist prior to executing this regex.
          */
-        private const val ARTIST_SEPARATOR_REGEX = "\\s*[;,+/\\\\|]\\s*|\\s+&\\s+|\\s+and\\s+|\\s+with\\s+|\\s+w/\\s+|\\s+vs\\.?\\s+|\\s+x\\s+" +
+        internal const val ARTIST_SEPARATOR_REGEX = "\\s*[;,+/\\\\|]\\s*|\\s+&\\s+|\\s+and\\s+|\\s+with\\s+|\\s+w/\\s+|\\s+vs\\.?\\s+|\\s+x\\s+" +
                 "|\\s+feat\\.?\\s+|\\s+ft\\.?\\s+|\\s+featuring\\s+|\\s+pres\\.?\\s+|\\s+starring\\s+"
 
         private const val ARTIST_WHITELIST = "/artist_whitelist.txt"
@@ -0,0 +1,150 @@
+package app.simple.felicity.repository.repositories
+
+import android.content.Context
+import android.content.SharedPreferences.OnSharedPreferenceChangeListener
+import android.util.Log
+import app.simple.felicity.manager.SharedPreferences
+import app.simple.felicity.preferences.LibraryPreferences
+import app.simple.felicity.repository.database.instances.AudioDatabase
+import app.simple.felicity.repository.models.LibrarySnapshot
+import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.channels.awaitClose
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.SharingStarted
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.callbackFlow
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.flow.flatMapLatest
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.flow.stateIn
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * The one place the full filtered library is read from. Every screen and service that
+ * wants "all the songs" shares the [snapshot] here instead of running its own copy of
+ * the library query — the dashboard alone used to hold four of them, and the player
+ * service and the web server each kept yet another full list on the side. Now a change
+ * to the audio table costs one query and one list in memory no matter how many
+ * collectors are listening.
+ *
+ * The query only runs while someone is collecting. When the last collector leaves it
+ * keeps going for [STOP_TIMEOUT_MS] so a configuration change doesn't throw the library
+ * away, and after that the snapshot drops back to [LibrarySnapshot.EMPTY] — so a loaded
+ * snapshot is always a live one, never a leftover from an hour ago.
+ *
+ * The minimum duration and size filters are watched here too, so a change to either of
+ * them swaps the query underneath everybody without anyone having to restart anything.
+ *
+ * @author Hamza417
+ */
+@Singleton
+class LibrarySnapshotRepository @Inject constructor(
+        @param:ApplicationContext private val context: Context
+) {
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+
+    private val audioDatabase: AudioDatabase by lazy {
+        AudioDatabase.getInstance(context)
+    }
+
+    /**
+     * Bumped only from the single upstream collector below, so it needs no locking.
+     * It survives sharing stopping and starting again, which keeps versions increasing
+     * for anyone comparing snapshots across a restart.
+     */
+    private var version = 0L
+
+    private var latest: LibrarySnapshot = LibrarySnapshot.EMPTY
+
+    /**
+     * The current library. Starts out as [LibrarySnapshot.EMPTY]; filter on
+     * [LibrarySnapshot.isLoaded] when an empty library and a not-yet-read one need
+     * telling apart. A new value is only published when the rows really changed —
+     * Room re-runs the query for every write to the audio table, but a write that
+     * didn't touch anything we show doesn't wake the collectors up. The comparison goes
+     * against the hashes the last snapshot recorded when it was built, not against its
+     * live [app.simple.felicity.repository.models.Audio] objects, so a song someone wrote
+     * to in place before the database caught up is still published as changed.
+     */
+    @OptIn(ExperimentalCoroutinesApi::class)
+    val snapshot: StateFlow<LibrarySnapshot> = filters()
+        .flatMapLatest { (minDuration, minSize) ->
+            audioDatabase.audioDao()?.getFilteredAudio(minDuration, minSize)
+                ?: throw IllegalStateException("AudioDao is null")
+        }
+        .map { songs ->
+            val previous = latest
+            if (previous.isLoaded && previous.hasSameContent(songs)) {
+                previous
+            } else {
+                LibrarySnapshot.of(++version, songs).also {
+                    latest = it
+                    Log.d(TAG, "Library snapshot v${it.version}: ${it.size} songs")
+                }
+            }
+        }
+        .flowOn(Dispatchers.IO)
+        .stateIn(
+                scope = scope,
+                started = SharingStarted.WhileSubscribed(
+                        stopTimeoutMillis = STOP_TIMEOUT_MS,
+                        replayExpirationMillis = 0L),
+                initialValue = LibrarySnapshot.EMPTY
+        )
+
+    /**
+     * Suspends until the library has been read and returns it. Subscribing starts the
+     * query if nobody else had, so this is safe to call from one-shot code too.
+     */
+    suspend fun awaitLoaded(): LibrarySnapshot {
+        return snapshot.first { it.isLoaded }
+    }
+
+    /**
+     * The live snapshot if the library is being watched right now, or null when it
+     * isn't and the caller would have to wait for a fresh query anyway.
+     */
+    fun peek(): LibrarySnapshot? {
+        return snapshot.value.takeIf { it.isLoaded }
+    }
+
+    /**
+     * The minimum duration in milliseconds and size in bytes, re-emitted whenever the
+     * user changes either preference.
+     */
+    private fun filters(): Flow<Pair<Long, Long>> = callbackFlow {
+        val preferences = SharedPreferences.getSharedPreference(context)
+        val listener = OnSharedPreferenceChangeListener { _, key ->
+            when (key) {
+                LibraryPreferences.MINIMUM_AUDIO_LENGTH,
+                LibraryPreferences.MINIMUM_AUDIO_SIZE -> trySend(currentFilters())
+            }
+        }
+
+        send(currentFilters())
+        preferences.registerOnSharedPreferenceChangeListener(listener)
+        awaitClose { preferences.unregisterOnSharedPreferenceChangeListener(listener) }
+    }.distinctUntilChanged()
+
+    private fun currentFilters(): Pair<Long, Long> {
+        return Pair(
+                LibraryPreferences.getMinimumAudioLength().toLong() * 1000L,
+                LibraryPreferences.getMinimumAudioSize().toLong() * 1024L
+        )
+    }
+
+    companion object {
+        private const val TAG = "LibrarySnapshot"
+
+        /** How long the query stays alive after the last collector leaves. */
+        private const val STOP_TIMEOUT_MS = 5_000L
+    }
+}
@@ -5,8 +5,11 @@ import android.net.Uri
 import android.provider.DocumentsContract
 import android.util.Log
 import androidx.core.net.toUri
+import app.simple.felicity.repository.database.instances.AudioDatabase
 import app.simple.felicity.repository.factories.TaggedSocketFactory
+import app.simple.felicity.repository.metadata.EmbeddedLyricsStore
 import app.simple.felicity.repository.metadata.LyricsMetaHelper
+import app.simple.felicity.repository.models.Audio
 import app.simple.felicity.repository.models.LrcLibResponse
 import app.simple.felicity.shared.constants.AppConstants
 import com.google.gson.Gson
@@ -34,6 +37,11 @@ import javax.inject.Singleton
  * All I/O goes through [DocumentsContract] + [android.content.ContentResolver]
  * so the code works for any document provider, not just local storage.
  *
+ * Where those sidecars are (and whether the song has lyrics in its tags) is recorded
+ * by the library scan in {@code lyrics_index}; [loadLrc] and [loadTxt] read that instead
+ * of asking the provider, and everything here that writes or deletes a sidecar keeps
+ * the index up to date.
+ *
  * @author Hamza417
  */
 @Singleton
@@ -49,6 +57,8 @@ class LrcRepository @Inject constructor(
 
     private val gson = Gson()
 
+    private val lyricsIndexDao get() = AudioDatabase.getInstance(context).lyricsIndexDao()
+
     /**
      * Derives the URI of a sidecar file in O(1) — no directory listing, no cursor,
      * no round-trips to the document provider.
@@ -188,8 +198,15 @@ class LrcRepository @Inject constructor(
      * Returns null when the sidecar does not exist or is blank.
      */
     private fun readSibling(audioUri: String, extension: String): String? {
+        return readDocument(siblingUri(audioUri, extension) ?: return null)
+    }
+
+    /**
+     * Reads the text content of the document at [uri].
+     * Returns null when it does not exist (anymore) or is blank.
+     */
+    private fun readDocument(uri: Uri): String? {
         return try {
-            val uri = siblingUri(audioUri, extension) ?: return null
             context.contentResolver.openInputStream(uri)?.use { stream ->
                 stream.bufferedReader(Charsets.UTF_8).readText().takeIf { it.isNotBlank() }
             }
@@ -334,6 +351,7 @@ class LrcRepository @Inject constructor(
         return withContext(Dispatchers.IO) {
             val saved = writeSibling(audioUri, "lrc", lrcContent)
             if (saved != null) {
+                lyricsIndexDao.setLrcUri(audioUri, saved.toString())
                 Result.success(saved)
             } else {
                 Result.failure(IOException("Could not create .lrc sidecar alongside: $audioUri"))
@@ -352,6 +370,7 @@ class LrcRepository @Inject constructor(
         return withContext(Dispatchers.IO) {
             val saved = writeSibling(audioUri, "txt", textContent)
             if (saved != null) {
+                lyricsIndexDao.setTxtUri(audioUri, saved.toString())
                 Result.success(saved)
             } else {
                 Result.failure(IOException("Could not create .txt sidecar alongside: $audioUri"))
@@ -386,7 +405,7 @@ class LrcRepository @Inject constructor(
                 val embedded = LyricsMetaHelper.extractEmbeddedLyrics(context, audioUri)
                 if (!embedded.isNullOrBlank()) {
                     Log.d(TAG, "Found embedded lyrics in tags for: $audioUri — caching as .lrc sidecar.")
-                    writeSibling(audioUri, "lrc", embedded)
+                    writeSibling(audioUri, "lrc", embedded)?.let { lyricsIndexDao.setLrcUri(audioUri, it.toString()) }
                     return@withContext Result.success(embedded)
                 }
 
@@ -398,6 +417,83 @@ class LrcRepository @Inject constructor(
         }
     }
 
+    /**
+     * Loads LRC content for [audio] the same way as [loadLrcFromFile], but goes by what the
+     * last library scan recorded instead of asking the document provider whether a `.lrc`
+     * exists and then opening the song to look for lyrics in its tags. A song the index
+     * says has neither costs one database lookup and no Binder calls at all.
+     *
+     * Songs the scan hasn't recorded yet (a fresh install that is still scanning, or a song
+     * whose file changed since) go through [loadLrcFromFile] as before. Whether the tags carry
+     * lyrics is filled in here the first time it is found to be unknown.
+     *
+     * @param audio The song to load lyrics for.
+     * @return [Result] wrapping the LRC string if found, null if none exists, or
+     *         the exception if something went wrong.
+     */
+    suspend fun loadLrc(audio: Audio): Result<String?> {
+        return withContext(Dispatchers.IO) {
+            try {
+                val entry = lyricsIndexDao.getByHash(audio.hash)
+                if (entry == null || entry.audioUri != audio.uri) {
+                    return@withContext loadLrcFromFile(audio.uri)
+                }
+
+                val lrcContent = entry.lrcUri?.let { readDocument(it.toUri()) }
+                if (!lrcContent.isNullOrBlank()) {
+                    Log.d(TAG, "Loaded indexed .lrc sidecar for: ${audio.uri}")
+                    return@withContext Result.success(lrcContent)
+                }
+
+                if (entry.hasEmbeddedLyrics == false) {
+                    return@withContext Result.success(null)
+                }
+
+                // The scan stored the tag lyrics it read; only older rows need the song opened.
+                val embedded = EmbeddedLyricsStore.get(context, audio.hash)
+                    ?: LyricsMetaHelper.extractEmbeddedLyrics(context, audio.uri)
+                if (entry.hasEmbeddedLyrics == null) {
+                    lyricsIndexDao.setHasEmbeddedLyrics(audio.hash, !embedded.isNullOrBlank())
+                }
+
+                if (!embedded.isNullOrBlank()) {
+                    Log.d(TAG, "Found embedded lyrics in tags for: ${audio.uri} — caching as .lrc sidecar.")
+                    writeSibling(audio.uri, "lrc", embedded)?.let { lyricsIndexDao.setLrcUri(audio.uri, it.toString()) }
+                    return@withContext Result.success(embedded)
+                }
+
+                return@withContext Result.success(null)
+            } catch (e: Exception) {
+                Log.e(TAG, "Error loading LRC for URI: ${audio.uri}", e)
+                return@withContext Result.failure(e)
+            }
+        }
+    }
+
+    /**
+     * Loads plain-text lyrics for [audio] from the `.txt` sidecar the library scan recorded,
+     * without asking the document provider whether there is one. Falls back to
+     * [loadTxtFromFile] for songs the scan hasn't recorded yet.
+     *
+     * @param audio The song to load lyrics for.
+     * @return [Result] wrapping the plain-text string if found, null if none exists.
+     */
+    suspend fun loadTxt(audio: Audio): Result<String?> {
+        return withContext(Dispatchers.IO) {
+            try {
+                val entry = lyricsIndexDao.getByHash(audio.hash)
+                if (entry == null || entry.audioUri != audio.uri) {
+                    return@withContext loadTxtFromFile(audio.uri)
+                }
+
+                Result.success(entry.txtUri?.let { readDocument(it.toUri()) })
+            } catch (e: Exception) {
+                Log.e(TAG, "Error loading TXT lyrics for URI: ${audio.uri}", e)
+                Result.failure(e)
+            }
+        }
+    }
+
     /**
      * Loads plain-text lyrics from the `.txt` sidecar next to [audioUri].
      *
@@ -430,9 +526,11 @@ class LrcRepository @Inject constructor(
      *
      * @param audioUri The content URI of the audio file.
      */
-    fun deleteLrcFile(audioUri: String) {
+    suspend fun deleteLrcFile(audioUri: String) {
         deleteSibling(audioUri, "lrc")
         deleteSibling(audioUri, "txt")
+        lyricsIndexDao.setLrcUri(audioUri, null)
+        lyricsIndexDao.setTxtUri(audioUri, null)
     }
 
     companion object {
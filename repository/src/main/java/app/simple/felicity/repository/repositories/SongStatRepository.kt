@@ -2,23 +2,56 @@ package app.simple.felicity.repository.repositories
 
 import android.content.Context
 import android.util.Log
+import androidx.room.withTransaction
 import app.simple.felicity.preferences.LibraryPreferences
+import app.simple.felicity.repository.database.dao.PlayHistoryDao
+import app.simple.felicity.repository.database.dao.SongStatDao
 import app.simple.felicity.repository.database.instances.AudioDatabase
+import app.simple.felicity.repository.loader.LibraryIndexer
+import app.simple.felicity.repository.models.Album
+import app.simple.felicity.repository.models.Artist
 import app.simple.felicity.repository.models.Audio
 import app.simple.felicity.repository.models.AudioStat
 import app.simple.felicity.repository.models.AudioWithStat
+import app.simple.felicity.repository.models.LibraryAggregate
+import app.simple.felicity.repository.models.PlayEvent
+import app.simple.felicity.repository.models.PlayRollup
 import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.NonCancellable
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.delay
 import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
 import javax.inject.Inject
 import javax.inject.Singleton
 
 /**
  * Repository for managing per-song playback statistics.
  *
- * <p>All stat mutations are safe to call from any coroutine dispatcher since the underlying
- * Room calls use suspend functions or blocking DAO operations on IO threads. Stats are stored
- * in the {@code song_stats} table inside {@code AudioDatabase} so the foreign-key relationship
- * with the {@code audio} table is enforced at the database level.</p>
+ * <p>Plays, skips, replays, and listening time are not written one at a time anymore. Recording one just
+ * appends a [PlayEvent] to an in-memory batch and returns; a single background writer
+ * picks the batch up a moment later and, in one transaction, appends it to the
+ * {@code play_events} log, adds it onto the {@code song_stats} totals, and adds it onto the
+ * day, week, and month {@code play_rollups}. None of that reads a row first, so the player
+ * never waits on the database and a burst of skips costs one short write instead of a
+ * read and a write per skip racing the screens that are reading the same tables.</p>
+ *
+ * <p>The batch and the writer live in the companion object rather than on the instance.
+ * The database is one per process, and the settings screen builds its own instance of this
+ * class to wipe the stats, so the pending batch has to be one per process as well.</p>
+ *
+ * <p>Once a day the writer also trims the history: raw events are kept for
+ * [EVENT_RETENTION_DAYS] days, day rollups for [DAY_ROLLUP_RETENTION_DAYS], week rollups
+ * for [WEEK_ROLLUP_RETENTION_DAYS], and month rollups for good.</p>
  *
  * @author Hamza417
  */
@@ -27,8 +60,6 @@ class SongStatRepository @Inject constructor(
         @param:ApplicationContext private val context: Context
 ) {
 
-    private val TAG = "SongStatRepository"
-
     private val database: AudioDatabase by lazy {
         AudioDatabase.getInstance(context)
     }
@@ -43,96 +74,117 @@ class SongStatRepository @Inject constructor(
     }
 
     /**
-     * Wipes all stored stats (play count, skip count, last played) for the given song.
+     * Wipes all stored stats (play count, skip count, last played) for the given song,
+     * along with its events and rollups and anything of it still waiting to be written.
      * Think of it as giving the song a clean slate — like it was never played before.
      *
      * @param audioHash The XXHash64 fingerprint of the audio file.
      */
     suspend fun clearStats(audioHash: Long) {
-        database.songStatDao().deleteStatByHash(audioHash)
+        writeMutex.withLock {
+            synchronized(pending) {
+                pending.removeAll { it.audioHash == audioHash }
+            }
+
+            database.withTransaction {
+                database.songStatDao().deleteStatByHash(audioHash)
+                database.playHistoryDao().deleteEventsByHash(audioHash)
+                database.playHistoryDao().deleteRollupsByHash(audioHash)
+            }
+        }
     }
 
     /**
      * Records a play event for the song identified by [audioHash].
      *
-     * <p>If no stat row exists for this hash a new one is inserted with a play count of 1.
-     * Otherwise, the existing row's play count is incremented by 1 and its last-played
-     * timestamp is updated to the current wall-clock time.</p>
+     * <p>The play count goes up by one and the last-played time moves to now once the
+     * batch is written, and a stat row is created if the song didn't have one yet. The
+     * time the song is then heard for is added separately by [recordListened].</p>
      *
      * @param audioHash The XXHash64 fingerprint of the audio file (matches {@code audio.hash}).
      */
-    suspend fun recordPlay(audioHash: Long) {
-        if (LibraryPreferences.isActivityPaused()) {
-            Log.d(TAG, "Skipping play stat update for hash $audioHash because activity is paused")
-            return
-        }
+    fun recordPlay(audioHash: Long) {
+        record(audioHash, PlayEvent.KIND_PLAY, 0L)
+    }
 
-        val dao = database.songStatDao()
-        val existing = dao.getStatByHash(audioHash)
-        if (existing == null) {
-            dao.insertStat(
-                    AudioStat(
-                            audioHash = audioHash,
-                            playCount = 1,
-                            lastPlayed = System.currentTimeMillis()
-                    )
-            )
-        } else {
-            dao.updateStat(
-                    existing.copy(
-                            playCount = existing.playCount + 1,
-                            lastPlayed = System.currentTimeMillis()
-                    )
-            )
-        }
+    /**
+     * Adds [listenedMs] to the listening time of today, this week, and this month for the
+     * song identified by [audioHash]. Call it when the player leaves a song, with the time
+     * it was really playing — pauses and the rest of a skipped song don't count.
+     *
+     * @param audioHash The XXHash64 fingerprint of the audio file.
+     * @param listenedMs Milliseconds the song was actually heard.
+     */
+    fun recordListened(audioHash: Long, listenedMs: Long) {
+        if (listenedMs <= 0L) return
+        record(audioHash, PlayEvent.KIND_LISTEN, listenedMs)
     }
 
     /**
      * Records a skip event for the song identified by [audioHash].
      *
      * <p>A skip is counted whenever the user navigates <em>forward</em> away from a song before
-     * it has played past the early-skip threshold (typically 30% of its duration). If no stat
-     * row exists, a new one is inserted with a skip count of 1.</p>
+     * it has played past the early-skip threshold (typically 30% of its duration).</p>
      *
      * @param audioHash The XXHash64 fingerprint of the audio file.
      */
-    suspend fun recordSkip(audioHash: Long) {
-        if (LibraryPreferences.isActivityPaused()) {
-            Log.d(TAG, "Skipping skip stat update for hash $audioHash because activity is paused")
-            return
-        }
-
-        val dao = database.songStatDao()
-        val existing = dao.getStatByHash(audioHash)
-        if (existing == null) {
-            dao.insertStat(AudioStat(audioHash = audioHash, skipCount = 1))
-        } else {
-            dao.updateStat(existing.copy(skipCount = existing.skipCount + 1))
-        }
+    fun recordSkip(audioHash: Long) {
+        record(audioHash, PlayEvent.KIND_SKIP, 0L)
     }
 
     /**
      * Records a replay event for the song identified by [audioHash].
      *
      * <p>A replay happens when the user navigates <em>backward</em> to a song they had already
-     * moved past — basically their way of saying "wait, that one was good, go back!" If no stat
-     * row exists yet, a new one is created with a replay count of 1.</p>
+     * moved past — basically their way of saying "wait, that one was good, go back!"</p>
      *
      * @param audioHash The XXHash64 fingerprint of the audio file.
      */
-    suspend fun recordReplay(audioHash: Long) {
+    fun recordReplay(audioHash: Long) {
+        record(audioHash, PlayEvent.KIND_REPLAY, 0L)
+    }
+
+    /**
+     * Writes whatever is still waiting in the batch right away instead of after the usual
+     * short delay. Handy before reading stats that have to include the very last play.
+     */
+    suspend fun flush() {
+        flush(database)
+    }
+
+    /**
+     * Same as [flush], but the caller doesn't wait for it. The write runs on the writer's
+     * own process-wide scope and can't be cancelled, so a service that is being torn down
+     * can hand its last events over and return right away. Whatever [before] records is
+     * written in the same batch.
+     */
+    fun flushInBackground(before: suspend () -> Unit = {}) {
+        writerScope.launch(NonCancellable) {
+            try {
+                before()
+                flush(database)
+            } catch (e: Exception) {
+                Log.e(TAG, "Could not write pending play events", e)
+            }
+        }
+    }
+
+    private fun record(audioHash: Long, kind: Int, durationMs: Long) {
         if (LibraryPreferences.isActivityPaused()) {
-            Log.d(TAG, "Skipping replay stat update for hash $audioHash because activity is paused")
+            Log.d(TAG, "Skipping stat update ($kind) for hash $audioHash because activity is paused")
             return
         }
 
-        val dao = database.songStatDao()
-        val existing = dao.getStatByHash(audioHash)
-        if (existing == null) {
-            dao.insertStat(AudioStat(audioHash = audioHash, replayCount = 1))
-        } else {
-            dao.updateStat(existing.copy(replayCount = existing.replayCount + 1))
+        synchronized(pending) {
+            pending.add(PlayEvent(
+                    audioHash = audioHash,
+                    kind = kind,
+                    timestamp = System.currentTimeMillis(),
+                    durationMs = durationMs))
         }
+
+        startWriter(database)
+        wakeUp.trySend(Unit)
     }
 
     /**
@@ -175,6 +227,42 @@ class SongStatRepository @Inject constructor(
         return database.songStatDao().getMostPlayedWithStat()
     }
 
+    /**
+     * Available songs played since the start of this week, most played first, with the
+     * counts of this week only. Summed from the week rollups, so it is one small indexed
+     * read no matter how long the history is. "This week" is fixed when the flow is
+     * created, so re-create it to move on to the next week.
+     */
+    fun getMostPlayedThisWeek(): Flow<List<AudioWithStat>> {
+        val now = System.currentTimeMillis()
+        return database.playHistoryDao()
+            .getMostPlayedSince(PlayRollup.PERIOD_WEEK, PlayRollup.bucketStart(PlayRollup.PERIOD_WEEK, now))
+    }
+
+    /** Like [getMostPlayedThisWeek], for the current calendar month. */
+    fun getMostPlayedThisMonth(): Flow<List<AudioWithStat>> {
+        val now = System.currentTimeMillis()
+        return database.playHistoryDao()
+            .getMostPlayedSince(PlayRollup.PERIOD_MONTH, PlayRollup.bucketStart(PlayRollup.PERIOD_MONTH, now))
+    }
+
+    /** Like [getMostPlayedThisWeek], for the current calendar year, summed over its months. */
+    fun getMostPlayedThisYear(): Flow<List<AudioWithStat>> {
+        val now = System.currentTimeMillis()
+        return database.playHistoryDao()
+            .getMostPlayedSince(PlayRollup.PERIOD_MONTH, PlayRollup.yearStart(now))
+    }
+
+    /**
+     * Plays and listening time per day over the last [days] days including today, oldest
+     * first. Days without a single play are left out rather than reported as zero.
+     */
+    fun getDailyListening(days: Int): Flow<List<PlayHistoryDao.DailyListening>> {
+        val since = System.currentTimeMillis() - TimeUnit.DAYS.toMillis((days - 1).coerceAtLeast(0).toLong())
+        return database.playHistoryDao()
+            .getDailyListening(PlayRollup.bucketStart(PlayRollup.PERIOD_DAY, since))
+    }
+
     /**
      * Returns a reactive [Flow] of available songs with stat data ordered by skip count,
      * highest first. Songs that have never been skipped are excluded.
@@ -185,8 +273,228 @@ class SongStatRepository @Inject constructor(
         return database.songStatDao().getMostSkippedWithStat()
     }
 
+    /**
+     * Returns a reactive [Flow] of the [limit] artists the user listens to the most, ranked
+     * by the summed play count of their songs. Combined credits count towards every
+     * individual artist, the same way the artists list groups them.
+     *
+     * Summed in SQL over the aggregate index, so this costs a few small indexed queries
+     * per change however big the library is.
+     */
+    fun getTopArtists(limit: Int): Flow<List<Artist>> {
+        return getTopBuckets(LibraryAggregate.KIND_ARTIST, limit).map { buckets ->
+            buckets.map { (aggregate, songPaths) ->
+                Artist(
+                        id = aggregate.name.hashCode().toLong(),
+                        name = aggregate.name,
+                        albumCount = aggregate.albumCount,
+                        trackCount = aggregate.songCount,
+                        songPaths = songPaths
+                )
+            }
+        }
+    }
+
+    /**
+     * Returns a reactive [Flow] of the [limit] albums the user listens to the most, ranked
+     * by the summed play count of their tracks. See [getTopArtists].
+     */
+    fun getTopAlbums(limit: Int): Flow<List<Album>> {
+        return getTopBuckets(LibraryAggregate.KIND_ALBUM, limit).map { buckets ->
+            buckets.map { (aggregate, songPaths) ->
+                Album(
+                        id = "${aggregate.name}_${aggregate.artist}".hashCode().toLong(),
+                        name = aggregate.name,
+                        artist = aggregate.artist,
+                        artistId = aggregate.artist?.hashCode()?.toLong() ?: 0L,
+                        songCount = aggregate.songCount,
+                        firstYear = aggregate.firstYear,
+                        lastYear = aggregate.lastYear,
+                        songPaths = songPaths
+                )
+            }
+        }
+    }
+
+    /**
+     * The top buckets of [kind] with the URIs of their member songs. The ranking query is
+     * re-run by Room on every write to the tables it reads, but the member URIs are only
+     * fetched again when the ranking itself changed.
+     */
+    private fun getTopBuckets(kind: Int, limit: Int): Flow<List<LibraryIndexer.Bucket>> {
+        return database.songStatDao().getTopAggregates(kind, limit)
+            .distinctUntilChanged()
+            .map { top ->
+                if (top.isEmpty()) return@map emptyList()
+                val paths = HashMap<Long, MutableList<String>>(top.size)
+                database.libraryAggregateDao().getMemberUrisOf(top.map { it.aggregate.id }).forEach { member ->
+                    paths.getOrPut(member.groupId) { mutableListOf() }.add(member.uri)
+                }
+                top.map { LibraryIndexer.Bucket(it.aggregate, paths[it.aggregate.id] ?: emptyList()) }
+            }
+    }
+
+    /**
+     * Forgets every play, skip, and replay ever recorded — the totals, the log, the rollups,
+     * and whatever was still waiting to be written.
+     */
     suspend fun wipeStats() {
-        database.songStatDao().deleteAllStatsInternal()
+        writeMutex.withLock {
+            synchronized(pending) {
+                pending.clear()
+            }
+
+            database.withTransaction {
+                database.songStatDao().deleteAllStatsInternal()
+                database.playHistoryDao().deleteAllEvents()
+                database.playHistoryDao().deleteAllRollups()
+            }
+        }
+    }
+
+    /** Running totals of one song in one rollup bucket within a batch. */
+    private class Tally {
+        var plays = 0
+        var skips = 0
+        var replays = 0
+        var listenedMs = 0L
+
+        fun add(event: PlayEvent) {
+            when (event.kind) {
+                PlayEvent.KIND_PLAY -> plays++
+                PlayEvent.KIND_SKIP -> skips++
+                PlayEvent.KIND_REPLAY -> replays++
+                PlayEvent.KIND_LISTEN -> listenedMs += event.durationMs
+            }
+        }
+
+        /** Whether any of the counters kept in {@code song_stats} moved. */
+        fun hasCounts() = plays > 0 || skips > 0 || replays > 0
+    }
+
+    private data class RollupKey(val period: Int, val bucketStart: Long, val audioHash: Long)
+
+    companion object {
+        private const val TAG = "SongStatRepository"
+
+        /**
+         * How long the writer waits after the first event of a batch. Long enough to fold a
+         * run of skips into one transaction, short enough that the lists catch up before
+         * anyone goes looking.
+         */
+        private const val FLUSH_DELAY_MS = 1_500L
+
+        const val EVENT_RETENTION_DAYS = 90L
+        const val DAY_ROLLUP_RETENTION_DAYS = 400L
+        const val WEEK_ROLLUP_RETENTION_DAYS = 3 * 366L
+
+        private val COMPACTION_INTERVAL_MS = TimeUnit.DAYS.toMillis(1)
+
+        /** Events recorded but not written yet. Guarded by its own monitor. */
+        private val pending = ArrayList<PlayEvent>()
+
+        /** Serializes batch writes with clearing and wiping. */
+        private val writeMutex = Mutex()
+
+        private val wakeUp = Channel<Unit>(Channel.CONFLATED)
+        private val writerStarted = AtomicBoolean(false)
+        private val writerScope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+
+        /** Guarded by [writeMutex]. Zero so the first batch after a launch trims right away. */
+        private var lastCompaction = 0L
+
+        private fun startWriter(database: AudioDatabase) {
+            if (writerStarted.compareAndSet(false, true)) {
+                writerScope.launch {
+                    for (signal in wakeUp) {
+                        delay(FLUSH_DELAY_MS)
+                        try {
+                            flush(database)
+                        } catch (e: Exception) {
+                            Log.e(TAG, "Failed to write play events, will retry with the next batch", e)
+                        }
+                    }
+                }
+            }
+        }
+
+        private suspend fun flush(database: AudioDatabase) {
+            writeMutex.withLock {
+                val batch = synchronized(pending) {
+                    if (pending.isEmpty()) return
+                    ArrayList(pending).also { pending.clear() }
+                }
+
+                try {
+                    database.withTransaction {
+                        database.playHistoryDao().insertEvents(batch)
+                        addToStats(database.songStatDao(), batch)
+                        addToRollups(database.playHistoryDao(), batch)
+                    }
+                } catch (e: Exception) {
+                    // Nothing was written, so put the batch back in front of anything newer.
+                    synchronized(pending) {
+                        pending.addAll(0, batch)
+                    }
+                    throw e
+                }
+
+                Log.d(TAG, "Wrote ${batch.size} play events")
+                compactIfDue(database)
+            }
+        }
+
+        private suspend fun addToStats(dao: SongStatDao, batch: List<PlayEvent>) {
+            batch.groupBy { it.audioHash }.forEach { (audioHash, events) ->
+                val tally = Tally()
+                events.forEach { tally.add(it) }
+                if (!tally.hasCounts()) return@forEach
+                val lastPlayed = events.filter { it.kind == PlayEvent.KIND_PLAY }.maxOfOrNull { it.timestamp } ?: 0L
+
+                if (dao.addToStat(audioHash, tally.plays, tally.skips, tally.replays, lastPlayed) == 0) {
+                    dao.insertStat(AudioStat(
+                            audioHash = audioHash,
+                            lastPlayed = lastPlayed,
+                            playCount = tally.plays,
+                            skipCount = tally.skips,
+                            replayCount = tally.replays))
+                }
+            }
+        }
+
+        private suspend fun addToRollups(dao: PlayHistoryDao, batch: List<PlayEvent>) {
+            val tallies = LinkedHashMap<RollupKey, Tally>()
+            batch.forEach { event ->
+                PlayRollup.ALL_PERIODS.forEach { period ->
+                    val key = RollupKey(period, PlayRollup.bucketStart(period, event.timestamp), event.audioHash)
+                    tallies.getOrPut(key) { Tally() }.add(event)
+                }
+            }
+
+            tallies.forEach { (key, tally) ->
+                dao.ensureRollup(key.period, key.bucketStart, key.audioHash)
+                dao.addToRollup(key.period, key.bucketStart, key.audioHash,
+                                tally.plays, tally.skips, tally.replays, tally.listenedMs)
+            }
+        }
+
+        /**
+         * Drops the events and rollups that are past their retention. Runs at most once a
+         * day, right after a batch, and every delete walks an index, so it stays cheap.
+         */
+        private suspend fun compactIfDue(database: AudioDatabase) {
+            val now = System.currentTimeMillis()
+            if (now - lastCompaction < COMPACTION_INTERVAL_MS) return
+            lastCompaction = now
+
+            database.withTransaction {
+                val dao = database.playHistoryDao()
+                val events = dao.deleteEventsBefore(now - TimeUnit.DAYS.toMillis(EVENT_RETENTION_DAYS))
+                val days = dao.deleteRollupsBefore(PlayRollup.PERIOD_DAY, now - TimeUnit.DAYS.toMillis(DAY_ROLLUP_RETENTION_DAYS))
+                val weeks = dao.deleteRollupsBefore(PlayRollup.PERIOD_WEEK, now - TimeUnit.DAYS.toMillis(WEEK_ROLLUP_RETENTION_DAYS))
+                Log.d(TAG, "Compacted play history: $events events, $days day and $weeks week rollups removed")
+            }
+        }
     }
 }
 
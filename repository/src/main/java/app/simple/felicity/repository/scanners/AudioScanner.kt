@@ -5,7 +5,13 @@ import android.net.Uri
 import android.provider.DocumentsContract
 import android.util.Log
 import app.simple.felicity.preferences.LibraryPreferences
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.launch
 import java.io.File
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.coroutines.cancellation.CancellationException
 
 /**
  * Finds audio and playlist files on the device. Supports both the traditional
@@ -35,6 +41,12 @@ class AudioScanner {
         /** Extensions we recognize as M3U playlist files. */
         private val M3U_EXTENSIONS = hashSetOf("m3u", "m3u8")
 
+        /** Extensions we recognize as CUE sheets. */
+        private val CUE_EXTENSIONS = hashSetOf("cue")
+
+        /** Extensions of the lyrics sidecars that sit next to a song under the same name. */
+        private val LYRICS_EXTENSIONS = hashSetOf("lrc", "txt")
+
         /**
          * The columns we ask for when listing SAF directory children.
          * Fetching exactly what we need keeps the query lean and fast.
@@ -46,8 +58,69 @@ class AudioScanner {
                 DocumentsContract.Document.COLUMN_SIZE,
                 DocumentsContract.Document.COLUMN_LAST_MODIFIED
         )
+
+        /**
+         * How many directory listings [walkAudioFiles] keeps in flight at once. Each one is
+         * a Binder round-trip that mostly waits on the document provider (and on network
+         * shares, on the network), so a few more than the core count keeps the pipe full
+         * without flooding the provider.
+         */
+        val DEFAULT_WALK_PARALLELISM = (Runtime.getRuntime().availableProcessors() * 2).coerceIn(4, 16)
+
+        /** Returns true if [name]'s extension belongs to the CUE sheet set. */
+        fun isCueSheet(name: String): Boolean {
+            val ext = name.substringAfterLast('.', "")
+            if (ext.isEmpty()) return false
+            return CUE_EXTENSIONS.contains(ext.lowercase())
+        }
+
+        /** Returns true if [name]'s extension belongs to the lyrics sidecar set. */
+        fun isLyricsSidecar(name: String): Boolean {
+            val ext = name.substringAfterLast('.', "")
+            if (ext.isEmpty()) return false
+            return LYRICS_EXTENSIONS.contains(ext.lowercase())
+        }
     }
 
+    /** One child row of a SAF directory, exactly as the bulk query returned it. */
+    private data class Row(
+            val docId: String,
+            val name: String,
+            val mimeType: String,
+            val size: Long,
+            val lastModified: Long
+    ) {
+        val isDirectory: Boolean
+            get() = mimeType == DocumentsContract.Document.MIME_TYPE_DIR
+
+        /**
+         * A well-mixed 64-bit value for this child. Summing these gives a folder hash
+         * that does not care which order the provider happened to return rows in.
+         */
+        fun fingerprint(): Long {
+            var h = name.hashCode().toLong()
+            h = h * 31 + size
+            h = h * 31 + lastModified
+            h = (h xor (h ushr 33)) * -0xae502812aa7333L
+            h = (h xor (h ushr 33)) * -0x3b314601e57a13adL
+            return h xor (h ushr 33)
+        }
+    }
+
+    /**
+     * A directory still waiting for one of the walker workers, along with the parent it
+     * was found in and the timestamp that parent reported for it. When [listed] is false
+     * the folder itself is not listed — the caller takes its files from somewhere else —
+     * and only its known subfolders are looked at.
+     */
+    private data class PendingDirectory(
+            val treeUri: Uri,
+            val documentId: String,
+            val parentUri: Uri?,
+            val lastModified: Long,
+            val listed: Boolean = true
+    )
+
     // File-based scanning (legacy / internal storage)
 
     fun getAudioFiles(root: File): List<File> {
@@ -115,6 +188,215 @@ class AudioScanner {
         return collectM3uSAF(context, treeUri, rootDocId, skipHiddenFiles, skipHiddenFolders)
     }
 
+    /**
+     * Walks every tree in [treeUris] at the same time and hands each audio file to
+     * [onFile] the moment its directory has been listed, instead of returning one big
+     * list at the very end. This lets the caller start extracting metadata while the
+     * walk is still busy with the deeper folders.
+     *
+     * Directories go into one shared queue and [parallelism] workers keep pulling from
+     * it; whenever a worker finds a subfolder it pushes it back in, so a single huge
+     * branch is spread across all workers instead of being stuck on one of them. The
+     * walk ends when the last outstanding directory has been listed.
+     *
+     * Before a subfolder is queued, [skipDirectory] gets its document URI and the
+     * timestamp its parent reported for it; returning true means that one folder is not
+     * listed, and the caller takes its files from its own records. Its subfolders are
+     * still visited: a folder's timestamp only moves when its direct entries change, so
+     * something added three levels down says nothing about the levels above it. Those
+     * subfolders come from [knownSubdirectories], and each one is looked up on its own
+     * (a single-row query, much cheaper than a listing) so its current timestamp goes
+     * through [skipDirectory] again.
+     *
+     * Every folder that was listed is reported to [onDirectory] with a fingerprint of
+     * its contents. A folder that failed to list, or a known subfolder that could not
+     * be looked up, is reported to [onListingFailed] and handled like a skipped one —
+     * the rest of the walk carries on.
+     *
+     * A folder that holds CUE sheets is first handed to [onCueSheets] along with its audio
+     * files. Whichever files the sheets take over (the album-in-one-file rips they describe)
+     * are returned and left out of [onFile], so they don't also show up as one giant song.
+     *
+     * `.lrc` and `.txt` files are picked up on the way too and passed along in
+     * [SAFDirectory.lyrics]; they were in the listing anyway, so this saves the lyrics
+     * screen from asking the provider about them one song at a time later.
+     *
+     * The callbacks may be called from several workers concurrently and [onFile] may
+     * suspend — a full downstream channel simply slows the walk down.
+     *
+     * @param context Needed to talk to the ContentResolver.
+     * @param treeUris Tree URIs returned by the SAF folder picker.
+     * @param parallelism Maximum number of directory queries in flight.
+     * @param onFile Receives every matching audio file as soon as it is found.
+     */
+    suspend fun walkAudioFiles(
+            context: Context,
+            treeUris: List<Uri>,
+            parallelism: Int = DEFAULT_WALK_PARALLELISM,
+            skipDirectory: (uri: Uri, lastModified: Long) -> Boolean = { _, _ -> false },
+            knownSubdirectories: (uri: Uri) -> List<Uri> = { emptyList() },
+            onDirectory: suspend (SAFDirectory) -> Unit = {},
+            onListingFailed: (uri: Uri) -> Unit = {},
+            onCueSheets: suspend (cueSheets: List<SAFFile>, audioFiles: List<SAFFile>) -> Set<Uri> = { _, _ -> emptySet() },
+            onFile: suspend (SAFFile) -> Unit
+    ) = coroutineScope {
+        val skipHiddenFiles = LibraryPreferences.isSkipHiddenFiles()
+        val skipHiddenFolders = LibraryPreferences.isSkipHiddenFolders()
+
+        val queue = Channel<PendingDirectory>(Channel.UNLIMITED)
+
+        /**
+         * Directories queued or being listed right now. Children are counted before their
+         * parent is marked done, so this can only reach zero once the whole walk is over.
+         */
+        val outstanding = AtomicInteger(0)
+
+        treeUris.forEach { treeUri ->
+            val rootDocId = try {
+                DocumentsContract.getTreeDocumentId(treeUri)
+            } catch (e: IllegalArgumentException) {
+                Log.e(TAG, "SAF: Not a tree URI, skipping: $treeUri", e)
+                return@forEach
+            }
+
+            Log.d(TAG, "SAF audio walk starting from tree: $treeUri (rootDocId=$rootDocId)")
+            outstanding.incrementAndGet()
+            queue.trySend(PendingDirectory(treeUri, rootDocId, null, 0L))
+        }
+
+        if (outstanding.get() == 0) {
+            queue.close()
+            return@coroutineScope
+        }
+
+        /**
+         * Queues the subfolders we already know of under a folder that is not being
+         * listed, each judged by [skipDirectory] against its own current timestamp.
+         */
+        suspend fun descendKnown(directory: PendingDirectory, directoryUri: Uri) {
+            for (childUri in knownSubdirectories(directoryUri)) {
+                val childDocId = DocumentsContract.getDocumentId(childUri)
+                val row = try {
+                    statDocument(context, childUri)
+                } catch (e: CancellationException) {
+                    throw e
+                } catch (e: Exception) {
+                    Log.e(TAG, "SAF: Failed to look up known directory $childDocId", e)
+                    null
+                }
+
+                if (row == null) {
+                    onListingFailed(childUri)
+                    outstanding.incrementAndGet()
+                    queue.send(PendingDirectory(directory.treeUri, childDocId, directoryUri, 0L, listed = false))
+                    continue
+                }
+
+                if (skipHiddenFolders && row.name.startsWith(".")) {
+                    Log.d(TAG, "SAF: Skipping hidden folder: ${row.name}")
+                    continue
+                }
+
+                val listed = !skipDirectory(childUri, row.lastModified)
+                outstanding.incrementAndGet()
+                queue.send(PendingDirectory(directory.treeUri, childDocId, directoryUri, row.lastModified, listed))
+            }
+        }
+
+        repeat(parallelism.coerceAtLeast(1)) {
+            launch(Dispatchers.IO) {
+                for (directory in queue) {
+                    val directoryUri = DocumentsContract.buildDocumentUriUsingTree(directory.treeUri, directory.documentId)
+
+                    if (!directory.listed) {
+                        try {
+                            descendKnown(directory, directoryUri)
+                        } finally {
+                            if (outstanding.decrementAndGet() == 0) {
+                                queue.close()
+                            }
+                        }
+                        continue
+                    }
+
+                    try {
+                        val rows = listChildren(context, directory.treeUri, directory.documentId)
+                        val files = mutableListOf<SAFFile>()
+                        val cueSheets = mutableListOf<SAFFile>()
+                        val lyrics = mutableListOf<SAFFile>()
+                        var maxChildModified = 0L
+                        var aggregateHash = 0L
+
+                        for (row in rows) {
+                            maxChildModified = maxOf(maxChildModified, row.lastModified)
+                            aggregateHash += row.fingerprint()
+
+                            if (row.isDirectory) {
+                                if (skipHiddenFolders && row.name.startsWith(".")) {
+                                    Log.d(TAG, "SAF: Skipping hidden folder: ${row.name}")
+                                    continue
+                                }
+                                val childUri = DocumentsContract.buildDocumentUriUsingTree(directory.treeUri, row.docId)
+                                val listed = !skipDirectory(childUri, row.lastModified)
+                                outstanding.incrementAndGet()
+                                queue.send(PendingDirectory(directory.treeUri, row.docId, directoryUri, row.lastModified, listed))
+                            } else {
+                                if (row.size <= 0) continue
+                                if (isLyricsSidecar(row.name)) {
+                                    val docUri = DocumentsContract.buildDocumentUriUsingTree(directory.treeUri, row.docId)
+                                    lyrics.add(SAFFile(docUri, row.name, row.size, row.lastModified))
+                                    continue
+                                }
+                                val isCueSheet = isCueSheet(row.name)
+                                if (!isCueSheet && !row.name.isAudioFile()) continue
+                                if (skipHiddenFiles && row.name.startsWith(".")) {
+                                    Log.d(TAG, "SAF: Skipping hidden audio file: ${row.name}")
+                                    continue
+                                }
+                                val docUri = DocumentsContract.buildDocumentUriUsingTree(directory.treeUri, row.docId)
+                                val safFile = SAFFile(docUri, row.name, row.size, row.lastModified)
+                                if (isCueSheet) cueSheets.add(safFile) else files.add(safFile)
+                            }
+                        }
+
+                        // Sheets first, so the files they cover are known before anything is reported.
+                        val claimed = if (cueSheets.isEmpty()) emptySet() else onCueSheets(cueSheets, files)
+                        files.forEach { if (it.uri !in claimed) onFile(it) }
+                        files.addAll(cueSheets)
+
+                        onDirectory(SAFDirectory(
+                                uri = directoryUri,
+                                treeUri = directory.treeUri,
+                                parentUri = directory.parentUri,
+                                lastModified = directory.lastModified,
+                                childCount = rows.size,
+                                maxChildModified = maxChildModified,
+                                aggregateHash = aggregateHash,
+                                files = files,
+                                lyrics = lyrics
+                        ))
+                    } catch (e: CancellationException) {
+                        throw e
+                    } catch (e: Exception) {
+                        Log.e(TAG, "SAF: Failed to list directory ${directory.documentId}", e)
+                        onListingFailed(directoryUri)
+                        try {
+                            descendKnown(directory, directoryUri)
+                        } catch (e: CancellationException) {
+                            throw e
+                        } catch (e: Exception) {
+                            Log.e(TAG, "SAF: Failed to descend into known folders of ${directory.documentId}", e)
+                        }
+                    } finally {
+                        if (outstanding.decrementAndGet() == 0) {
+                            queue.close()
+                        }
+                    }
+                }
+            }
+        }
+    }
+
     // Extension helpers for file-type detection.
 
     private fun File.isAudioFile(): Boolean {
@@ -200,33 +482,12 @@ class AudioScanner {
     // including their document IDs, MIME types, sizes, and timestamps.
 
     /**
-     * Recursively collects audio files from a SAF directory using fast bulk queries.
-     *
-     * The trick here is [DocumentsContract.buildChildDocumentsUriUsingTree] —
-     * it gives us a URI we can pass to [ContentResolver.query] that returns every
-     * child of [dirDocumentId] in one network/Binder round-trip. No looping,
-     * no per-file IPC, just one query per directory level.
-     *
-     * Hidden file/folder filtering is still applied here since that is just a
-     * name check — no File objects needed.
+     * Lists every child of [dirDocumentId] with a single [android.content.ContentResolver.query].
+     * Shared by the recursive collectors and the parallel walker so they all read the
+     * cursor the same way.
      */
-    private fun collectAudioSAF(
-            context: Context,
-            treeUri: Uri,
-            dirDocumentId: String,
-            skipHiddenFiles: Boolean,
-            skipHiddenFolders: Boolean
-    ): List<SAFFile> {
+    private fun listChildren(context: Context, treeUri: Uri, dirDocumentId: String): List<Row> {
         val childrenUri = DocumentsContract.buildChildDocumentsUriUsingTree(treeUri, dirDocumentId)
-
-        data class Row(
-                val docId: String,
-                val name: String,
-                val mimeType: String,
-                val size: Long,
-                val lastModified: Long
-        )
-
         val rows = mutableListOf<Row>()
 
         context.contentResolver.query(childrenUri, SAF_PROJECTION, null, null, null)?.use { cursor ->
@@ -248,10 +509,51 @@ class AudioScanner {
             }
         }
 
+        return rows
+    }
+
+    /**
+     * Looks up a single document by its URI and returns it as a [Row], or null when the
+     * provider has nothing to say about it. Used for folders we do not list, where only
+     * their own timestamp is needed.
+     */
+    private fun statDocument(context: Context, documentUri: Uri): Row? {
+        context.contentResolver.query(documentUri, SAF_PROJECTION, null, null, null)?.use { cursor ->
+            if (!cursor.moveToFirst()) return null
+            return Row(
+                    cursor.getString(cursor.getColumnIndexOrThrow(DocumentsContract.Document.COLUMN_DOCUMENT_ID)) ?: return null,
+                    cursor.getString(cursor.getColumnIndexOrThrow(DocumentsContract.Document.COLUMN_DISPLAY_NAME)) ?: return null,
+                    cursor.getString(cursor.getColumnIndexOrThrow(DocumentsContract.Document.COLUMN_MIME_TYPE)) ?: "",
+                    cursor.getLong(cursor.getColumnIndexOrThrow(DocumentsContract.Document.COLUMN_SIZE)),
+                    cursor.getLong(cursor.getColumnIndexOrThrow(DocumentsContract.Document.COLUMN_LAST_MODIFIED))
+            )
+        }
+
+        return null
+    }
+
+    /**
+     * Recursively collects audio files from a SAF directory using fast bulk queries.
+     *
+     * The trick here is [DocumentsContract.buildChildDocumentsUriUsingTree] —
+     * it gives us a URI we can pass to [ContentResolver.query] that returns every
+     * child of [dirDocumentId] in one network/Binder round-trip. No looping,
+     * no per-file IPC, just one query per directory level.
+     *
+     * Hidden file/folder filtering is still applied here since that is just a
+     * name check — no File objects needed.
+     */
+    private fun collectAudioSAF(
+            context: Context,
+            treeUri: Uri,
+            dirDocumentId: String,
+            skipHiddenFiles: Boolean,
+            skipHiddenFolders: Boolean
+    ): List<SAFFile> {
         val result = mutableListOf<SAFFile>()
 
-        for (row in rows) {
-            if (row.mimeType == DocumentsContract.Document.MIME_TYPE_DIR) {
+        for (row in listChildren(context, treeUri, dirDocumentId)) {
+            if (row.isDirectory) {
                 if (skipHiddenFolders && row.name.startsWith(".")) {
                     Log.d(TAG, "SAF: Skipping hidden folder: ${row.name}")
                     continue
@@ -279,41 +581,10 @@ class AudioScanner {
             skipHiddenFiles: Boolean,
             skipHiddenFolders: Boolean
     ): List<SAFFile> {
-        val childrenUri = DocumentsContract.buildChildDocumentsUriUsingTree(treeUri, dirDocumentId)
-
-        data class Row(
-                val docId: String,
-                val name: String,
-                val mimeType: String,
-                val size: Long,
-                val lastModified: Long
-        )
-
-        val rows = mutableListOf<Row>()
-
-        context.contentResolver.query(childrenUri, SAF_PROJECTION, null, null, null)?.use { cursor ->
-            val idxDocId = cursor.getColumnIndexOrThrow(DocumentsContract.Document.COLUMN_DOCUMENT_ID)
-            val idxName = cursor.getColumnIndexOrThrow(DocumentsContract.Document.COLUMN_DISPLAY_NAME)
-            val idxMime = cursor.getColumnIndexOrThrow(DocumentsContract.Document.COLUMN_MIME_TYPE)
-            val idxSize = cursor.getColumnIndexOrThrow(DocumentsContract.Document.COLUMN_SIZE)
-            val idxMod = cursor.getColumnIndexOrThrow(DocumentsContract.Document.COLUMN_LAST_MODIFIED)
-
-            while (cursor.moveToNext()) {
-                val name = cursor.getString(idxName) ?: continue
-                rows.add(Row(
-                        cursor.getString(idxDocId) ?: continue,
-                        name,
-                        cursor.getString(idxMime) ?: "",
-                        cursor.getLong(idxSize),
-                        cursor.getLong(idxMod)
-                ))
-            }
-        }
-
         val result = mutableListOf<SAFFile>()
 
-        for (row in rows) {
-            if (row.mimeType == DocumentsContract.Document.MIME_TYPE_DIR) {
+        for (row in listChildren(context, treeUri, dirDocumentId)) {
+            if (row.isDirectory) {
                 if (skipHiddenFolders && row.name.startsWith(".")) continue
                 result.addAll(collectM3uSAF(context, treeUri, row.docId, skipHiddenFiles, skipHiddenFolders))
             } else {
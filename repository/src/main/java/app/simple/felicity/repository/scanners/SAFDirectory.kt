@@ -0,0 +1,36 @@
+package app.simple.felicity.repository.scanners
+
+import android.net.Uri
+
+/**
+ * The result of listing one SAF folder during a walk: where it sits in the tree, a
+ * fingerprint of everything it contained, and the audio files and CUE sheets that
+ * passed the scan filters. The loader keeps this around so the next scan can tell whether the folder
+ * needs to be listed again at all.
+ *
+ * @author Hamza417
+ */
+data class SAFDirectory(
+        /** Document URI of the folder itself. */
+        val uri: Uri,
+        /** Tree URI the folder was reached through. */
+        val treeUri: Uri,
+        /** Document URI of the parent folder, or null for a tree root. */
+        val parentUri: Uri?,
+        /** The folder's own timestamp from its parent's listing, 0 for roots or when unknown. */
+        val lastModified: Long,
+        /** Number of children of any kind, hidden ones included. */
+        val childCount: Int,
+        /** Newest last-modified timestamp among the children. */
+        val maxChildModified: Long,
+        /** Order-independent hash over every child's name, size and timestamp. */
+        val aggregateHash: Long,
+        /** Audio files and CUE sheets directly inside this folder that passed the scan filters. */
+        val files: List<SAFFile>,
+        /**
+         * The `.lrc` and `.txt` lyrics sidecars directly inside this folder. These only feed
+         * the lyrics index and are not part of the stored file list — a skipped folder keeps
+         * whatever the index already says about it.
+         */
+        val lyrics: List<SAFFile> = emptyList()
+)
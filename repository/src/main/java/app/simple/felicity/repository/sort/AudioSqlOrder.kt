@@ -0,0 +1,53 @@
+package app.simple.felicity.repository.sort
+
+import app.simple.felicity.constants.CommonPreferencesConstants
+
+/**
+ * Translates the song sort preferences into an SQL {@code ORDER BY} clause, so paged
+ * queries can let SQLite do the sorting instead of pulling everything into memory and
+ * calling [SongSort.sorted] on it. Mirrors the in-memory sorters field for field, and
+ * always ends with the row id so two songs with the same title keep a stable order
+ * across page boundaries — otherwise a row could show up twice or not at all.
+ *
+ * @author Hamza417
+ */
+object AudioSqlOrder {
+
+    /**
+     * Builds the clause (without the {@code ORDER BY} keyword) for the given sort field
+     * and direction. Unknown values fall back to sorting by title, which is what the
+     * Songs panel defaults to anyway.
+     */
+    fun orderBy(sort: Int, style: Int): String {
+        val column = when (sort) {
+            CommonPreferencesConstants.BY_ARTIST -> "artist COLLATE NOCASE"
+            CommonPreferencesConstants.BY_ALBUM -> "album COLLATE NOCASE"
+            CommonPreferencesConstants.BY_PATH -> "uri COLLATE NOCASE"
+            CommonPreferencesConstants.BY_DATE_ADDED -> "date_added"
+            CommonPreferencesConstants.BY_DATE_MODIFIED -> "date_modified"
+            CommonPreferencesConstants.BY_DURATION -> "duration"
+            CommonPreferencesConstants.BY_YEAR -> "year"
+            CommonPreferencesConstants.BY_TRACK_NUMBER -> "track_number"
+            CommonPreferencesConstants.BY_COMPOSER -> "composer COLLATE NOCASE"
+            else -> "title COLLATE NOCASE"
+        }
+
+        val direction = if (style == CommonPreferencesConstants.DESCENDING) "DESC" else "ASC"
+        return "$column $direction, id $direction"
+    }
+
+    /**
+     * The per-row key the list panels build their fast-scroll sections from: the first
+     * character of the title, artist or album, or the whole year when sorting by year.
+     * Other sorts keep using the title, same as the panels always did. Never null, so
+     * songs without the tag still take up their position in the list of keys.
+     */
+    fun sectionKey(sort: Int): String {
+        return when (sort) {
+            CommonPreferencesConstants.BY_ARTIST -> "COALESCE(SUBSTR(artist, 1, 1), '')"
+            CommonPreferencesConstants.BY_ALBUM -> "COALESCE(SUBSTR(album, 1, 1), '')"
+            CommonPreferencesConstants.BY_YEAR -> "COALESCE(year, '')"
+            else -> "COALESCE(SUBSTR(title, 1, 1), '')"
+        }
+    }
+}
@@ -6,6 +6,7 @@ import androidx.core.net.toUri
 import app.simple.felicity.core.utils.StringUtils.ifNullOrBlank
 import app.simple.felicity.preferences.LibraryPreferences
 import app.simple.felicity.repository.models.Audio
+import app.simple.felicity.repository.models.AudioListRow
 import java.util.Locale
 
 /**
@@ -37,6 +38,29 @@ object AudioUtils {
                     .ifNullOrBlank("Unknown"))
     }
 
+    /** [Audio.getProperArtists] for the slim rows of the paged song lists. */
+    fun AudioListRow.getProperArtists(): String {
+        if (albumArtistOverArtist) {
+            return albumArtist
+                .ifNullOrBlank("Unknown")
+        }
+
+        return artist.ifNullOrBlank("Unknown")
+    }
+
+    /** [Audio.getProperAlbum] for the slim rows of the paged song lists. */
+    fun AudioListRow.getProperAlbum(): String {
+        return album.ifNullOrBlank("Unknown")
+    }
+
+    /** [Audio.getProperTitle] for the slim rows of the paged song lists. */
+    fun AudioListRow.getProperTitle(): String {
+        return title.ifNullOrBlank(
+                path?.substringAfterLast('/')
+                    .ifNullOrBlank(name.toString().substringAfterLast('/'))
+                    .ifNullOrBlank("Unknown"))
+    }
+
     /**
      * Returns true when a `.lrc` sidecar file exists right next to this audio track
      * in the same SAF directory.
@@ -0,0 +1,69 @@
+package app.simple.felicity.repository.utils
+
+import app.simple.felicity.repository.models.Audio
+import java.text.Normalizer
+import java.util.Locale
+
+/**
+ * Helpers for turning what the user typed into a full-text MATCH expression and for
+ * figuring out, after the fact, which fields of a hit actually matched.
+ *
+ * Everything here folds text the same way the FTS unicode61 tokenizer does — lower
+ * case, diacritics stripped, split on anything that isn't a letter or a digit — so
+ * the Kotlin-side checks agree with what SQLite matched.
+ *
+ * @author Hamza417
+ */
+object SearchUtils {
+
+    private val DIACRITICS = Regex("\\p{Mn}+")
+    private val SEPARATORS = Regex("[^\\p{L}\\p{N}]+")
+
+    /** Lower-cases [text] and strips its diacritics, so "Beyoncé" becomes "beyonce". */
+    fun fold(text: String): String {
+        return Normalizer.normalize(text, Normalizer.Form.NFD)
+            .replace(DIACRITICS, "")
+            .lowercase(Locale.ROOT)
+    }
+
+    /** Splits [query] into folded search terms. Punctuation never reaches the MATCH expression. */
+    fun tokenize(query: String): List<String> {
+        return fold(query).split(SEPARATORS).filter { it.isNotEmpty() }
+    }
+
+    /**
+     * Builds the MATCH expression for [tokens]: every term must be present, and the last
+     * letters typed can still be the middle of a word, so each term is a prefix query.
+     * The tokens are plain letters and digits at this point, which means nothing the user
+     * types can be mistaken for FTS query syntax.
+     */
+    fun buildMatchQuery(tokens: List<String>): String {
+        return tokens.joinToString(separator = " ") { "$it*" }
+    }
+
+    /** True when every one of [tokens] is the start of some word in [field]. */
+    fun matches(field: String?, tokens: List<String>): Boolean {
+        if (field.isNullOrEmpty() || tokens.isEmpty()) return false
+        val words = fold(field).split(SEPARATORS)
+        return tokens.all { token -> words.any { it.startsWith(token) } }
+    }
+
+    /**
+     * Scores a hit so the most relevant songs come first: a title that starts with the
+     * query beats a title that merely contains it, which beats an artist or album hit,
+     * which beats genre, composer, and path hits.
+     */
+    fun rank(audio: Audio, tokens: List<String>): Int {
+        var score = 0
+        val title = audio.title
+        if (matches(title, tokens)) {
+            score += 8
+            if (title != null && fold(title).startsWith(tokens.first())) score += 4
+        }
+        if (matches(audio.artist, tokens) || matches(audio.albumArtist, tokens)) score += 4
+        if (matches(audio.album, tokens)) score += 3
+        if (matches(audio.genre, tokens)) score += 1
+        if (matches(audio.composer, tokens)) score += 1
+        return score
+    }
+}
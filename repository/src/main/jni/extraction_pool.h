@@ -0,0 +1,124 @@
+/**
+ * extraction_pool.h
+ *
+ * A small process-wide pool of worker threads for parsing many audio files at
+ * once. The library scan hands over a batch of file descriptors, and TagLib
+ * parses them side by side here instead of one JNI call after another.
+ *
+ * The pool is shared by every batch call, so however many scan coroutines are
+ * extracting at the same time, there are never more parser threads than cores.
+ * The thread that submits a batch works on it too rather than just waiting, so
+ * a batch always makes progress even when the workers are busy with another.
+ *
+ * @author Hamza417
+ */
+
+#pragma once
+
+#include <algorithm>
+#include <atomic>
+#include <condition_variable>
+#include <cstddef>
+#include <deque>
+#include <functional>
+#include <memory>
+#include <mutex>
+#include <thread>
+#include <utility>
+
+class ExtractionPool {
+public:
+    /**
+     * The shared pool. Created on first use and never destroyed — the workers
+     * just sleep when there is nothing to do, and tearing them down during
+     * process exit would only risk joining a thread stuck in a read.
+     */
+    static ExtractionPool &instance() {
+        static auto *pool = new ExtractionPool();
+        return *pool;
+    }
+
+    /**
+     * Calls [task] once for every index in [0, count) spread over the workers
+     * and the calling thread, and returns when all of them have finished.
+     * [task] must be safe to call from several threads at once for different
+     * indices.
+     */
+    void run(size_t count, const std::function<void(size_t)> &task) {
+        if (count == 0) return;
+
+        auto batch = std::make_shared<Batch>(count, task);
+
+        // One helper per worker at most; each one keeps pulling indices until
+        // the batch runs dry, so there is no point queueing more than that.
+        size_t helpers = std::min(count - 1, workerCount);
+        {
+            std::lock_guard<std::mutex> lock(queueMutex);
+            for (size_t i = 0; i < helpers; i++) {
+                queue.emplace_back([batch] { batch->drain(); });
+            }
+        }
+        queueCondition.notify_all();
+
+        batch->drain();
+
+        std::unique_lock<std::mutex> lock(batch->mutex);
+        batch->finished.wait(lock, [&] { return batch->done.load() == batch->count; });
+    }
+
+private:
+    /**
+     * The state of one [run] call. Shared with the queued helpers, which may
+     * only get picked up after the batch is already over — they then find no
+     * index left and return without touching [task].
+     */
+    struct Batch {
+        Batch(size_t count, std::function<void(size_t)> task)
+                : count(count), task(std::move(task)) {}
+
+        const size_t count;
+        const std::function<void(size_t)> task;
+        std::atomic<size_t> next{0};
+        std::atomic<size_t> done{0};
+        std::mutex mutex;
+        std::condition_variable finished;
+
+        void drain() {
+            size_t index;
+            while ((index = next.fetch_add(1)) < count) {
+                task(index);
+                if (done.fetch_add(1) + 1 == count) {
+                    std::lock_guard<std::mutex> lock(mutex);
+                    finished.notify_all();
+                }
+            }
+        }
+    };
+
+    size_t workerCount = 0;
+    std::deque<std::function<void()>> queue;
+    std::mutex queueMutex;
+    std::condition_variable queueCondition;
+
+    ExtractionPool() {
+        // The submitting thread is the last pair of hands, hence one fewer worker.
+        unsigned int cores = std::max(2u, std::thread::hardware_concurrency());
+        for (unsigned int i = 0; i < cores - 1; i++) {
+            std::thread([this] { work(); }).detach();
+            workerCount++;
+        }
+    }
+
+    void work() {
+        while (true) {
+            std::function<void()> job;
+            {
+                std::unique_lock<std::mutex> lock(queueMutex);
+                queueCondition.wait(lock, [this] { return !queue.empty(); });
+                job = std::move(queue.front());
+                queue.pop_front();
+            }
+            job();
+        }
+    }
+};
@@ -0,0 +1,157 @@
+/**
+ * packed_metadata.h
+ *
+ * The parsed form of one audio file's metadata, free of any JNI types so it can
+ * be filled in on a pool thread, and the packed buffer a whole batch of them is
+ * handed to Kotlin in.
+ *
+ * Building a TagLibMetadata object from C++ costs a NewStringUTF per tag and a
+ * constructor call per file, all of it on the JNI thread and every string a
+ * fresh Java object. The batch path skips that: every file's strings go into
+ * one de-duplicated string table (a library of 12-track albums repeats the
+ * same album and artist names over and over), the numbers go into fixed-width
+ * columns, and the artwork bytes are appended at the end. Kotlin then reads the
+ * whole batch out of one byte array (see TagLibBatch.kt).
+ *
+ * Layout, all integers in native byte order (little-endian on every Android ABI):
+ *
+ *   int32  version                 PACK_VERSION
+ *   int32  count                   files in the batch
+ *   int32  fieldCount              FIELD_COUNT
+ *   int32  stringCount             entries in the string table
+ *   int32  status[count]           1 = parsed, 0 = TagLib could not read it
+ *   int32  hasLyrics[count]        0 or 1
+ *   int64  duration[count]         milliseconds
+ *   int64  bitrate[count]          kbps
+ *   int64  sampleRate[count]       Hz
+ *   int64  bitsPerSample[count]
+ *   int64  artworkDigest[count]    0 = no artwork
+ *   int32  artworkLength[count]    bytes in the artwork section, 0 = none
+ *   int32  fields[count * fieldCount]  string table index, -1 = null
+ *   int32  stringEnds[stringCount] end offset of each string in the string bytes
+ *   int32  stringBytes             length of the string bytes
+ *   byte   strings[stringBytes]    UTF-8, back to back
+ *   byte   artwork[...]            each file's artwork back to back, in order
+ *
+ * @author Hamza417
+ */
+
+#pragma once
+
+#include <cstdint>
+#include <cstring>
+#include <optional>
+#include <string>
+#include <unordered_map>
+#include <vector>
+
+static constexpr int32_t PACK_VERSION = 1;
+
+/** String fields of a parsed file, in the order they are packed. Mirrored in TagLibBatch.kt. */
+enum PackedField : int32_t {
+    FIELD_TITLE,
+    FIELD_ARTIST,
+    FIELD_ALBUM,
+    FIELD_GENRE,
+    FIELD_YEAR,
+    FIELD_COMMENT,
+    FIELD_ALBUM_ARTIST,
+    FIELD_COMPOSER,
+    FIELD_LYRICIST,
+    FIELD_DISC_NUMBER,
+    FIELD_TRACK_NUMBER,
+    FIELD_NUM_TRACKS,
+    FIELD_COMPILATION,
+    FIELD_RG_TRACK_GAIN,
+    FIELD_RG_TRACK_PEAK,
+    FIELD_RG_ALBUM_GAIN,
+    FIELD_RG_ALBUM_PEAK,
+    FIELD_LYRICS,
+    FIELD_COUNT
+};
+
+struct ParsedTrack {
+    bool ok = false;
+    bool hasLyrics = false;
+    std::optional<std::string> fields[FIELD_COUNT];
+    int64_t duration = 0;
+    int64_t bitrate = 0;
+    int64_t sampleRate = 0;
+    int64_t bitsPerSample = 0;
+    std::vector<char> artwork;
+    int64_t artworkDigest = 0;
+};
+
+namespace packed {
+
+template<typename T>
+inline void put(std::vector<uint8_t> &out, T value) {
+    size_t at = out.size();
+    out.resize(at + sizeof(T));
+    std::memcpy(out.data() + at, &value, sizeof(T));
+}
+
+} // namespace packed
+
+/**
+ * Packs everything but the artwork of [tracks] into [head], in the layout
+ * described at the top of this file. The artwork section is left to the caller
+ * so the (possibly large) pictures are copied straight into the Java array
+ * instead of through this buffer first.
+ *
+ * @return Total length of the artwork section that has to follow [head].
+ */
+inline size_t packTracks(const std::vector<ParsedTrack> &tracks, std::vector<uint8_t> &head) {
+    using packed::put;
+
+    // De-duplicate first so the header can say how many strings follow.
+    std::unordered_map<std::string, int32_t> stringIndex;
+    std::vector<const std::string *> strings;
+    std::vector<int32_t> fieldRefs(tracks.size() * FIELD_COUNT, -1);
+
+    for (size_t t = 0; t < tracks.size(); t++) {
+        if (!tracks[t].ok) continue;
+        for (int f = 0; f < FIELD_COUNT; f++) {
+            const auto &value = tracks[t].fields[f];
+            if (!value) continue;
+            auto inserted = stringIndex.emplace(*value, static_cast<int32_t>(strings.size()));
+            if (inserted.second) strings.push_back(&inserted.first->first);
+            fieldRefs[t * FIELD_COUNT + f] = inserted.first->second;
+        }
+    }
+
+    auto count = static_cast<int32_t>(tracks.size());
+    put<int32_t>(head, PACK_VERSION);
+    put<int32_t>(head, count);
+    put<int32_t>(head, FIELD_COUNT);
+    put<int32_t>(head, static_cast<int32_t>(strings.size()));
+
+    for (const auto &track: tracks) put<int32_t>(head, track.ok ? 1 : 0);
+    for (const auto &track: tracks) put<int32_t>(head, track.hasLyrics ? 1 : 0);
+    for (const auto &track: tracks) put<int64_t>(head, track.duration);
+    for (const auto &track: tracks) put<int64_t>(head, track.bitrate);
+    for (const auto &track: tracks) put<int64_t>(head, track.sampleRate);
+    for (const auto &track: tracks) put<int64_t>(head, track.bitsPerSample);
+    for (const auto &track: tracks) put<int64_t>(head, track.artworkDigest);
+
+    size_t artworkBytes = 0;
+    for (const auto &track: tracks) {
+        put<int32_t>(head, static_cast<int32_t>(track.artwork.size()));
+        artworkBytes += track.artwork.size();
+    }
+
+    for (int32_t ref: fieldRefs) put<int32_t>(head, ref);
+
+    int32_t end = 0;
+    for (const auto *value: strings) {
+        end += static_cast<int32_t>(value->size());
+        put<int32_t>(head, end);
+    }
+    put<int32_t>(head, end);
+
+    for (const auto *value: strings) {
+        head.insert(head.end(), value->begin(), value->end());
+    }
+
+    return artworkBytes;
+}
@@ -31,13 +31,19 @@
 #include <taglib/tpropertymap.h>
 #include <taglib/tvariant.h>
 
+#include <cstdint>
+#include <optional>
 #include <string>
+#include <vector>
 #include "taglib/tstring.h"
 #include "taglib/flacproperties.h"
 #include "taglib/wavproperties.h"
 #include "taglib/aiffproperties.h"
 #include "taglib/apeproperties.h"
 
+#include "extraction_pool.h"
+#include "packed_metadata.h"
+
 #define LOG_TAG "TagLibJNI"
 #define LOGI(...) __android_log_print(ANDROID_LOG_INFO,  LOG_TAG, __VA_ARGS__)
 #define LOGE(...) __android_log_print(ANDROID_LOG_ERROR, LOG_TAG, __VA_ARGS__)
@@ -71,6 +77,17 @@ static jstring getProperty(JNIEnv *env, const TagLib::PropertyMap &props, const
     return toJString(env, it->second.front());
 }
 
+// Returns true when [key] holds at least one value that isn't just whitespace.
+// Cheaper than getProperty when only presence matters, since no jstring is made.
+static bool hasProperty(const TagLib::PropertyMap &props, const char *key) {
+    auto it = props.find(TagLib::String(key));
+    if (it == props.end()) return false;
+    for (const auto &value: it->second) {
+        if (!value.stripWhiteSpace().isEmpty()) return true;
+    }
+    return false;
+}
+
 // Converts a jstring to a TagLib::String (UTF-8). Returns an empty TagLib
 // string if the jstring is null, so callers don't have to guard every call.
 static TagLib::String fromJString(JNIEnv *env, jstring js) {
@@ -158,6 +175,10 @@ static bool ensureMetaClassCached(JNIEnv *env) {
                                   "Ljava/lang/String;"   // replayGainTrackPeak
                                   "Ljava/lang/String;"   // replayGainAlbumGain
                                   "Ljava/lang/String;"   // replayGainAlbumPeak
+                                  "Z"                    // hasLyrics
+                                  "Ljava/lang/String;"   // lyrics
+                                  "[B"                   // artwork
+                                  "J"                    // artworkDigest
                                   ")V");
 
     if (!g_metaCtor) {
@@ -169,21 +190,54 @@ static bool ensureMetaClassCached(JNIEnv *env) {
 }
 
 /**
- * Opens the audio file by its raw file descriptor and extracts every tag
- * field plus audio properties. Returns a fully populated TagLibMetadata
- * Kotlin object, or null if anything goes wrong (bad fd, unsupported format,
- * missing tags, etc.).
+ * 64-bit FNV-1a over the picture bytes. Not cryptographic — it only has to tell
+ * covers apart so the library scan can spot the same picture embedded in every
+ * track of an album and encode its thumbnails once.
  */
-JNIEXPORT jobject JNICALL
-Java_app_simple_felicity_repository_metadata_TagLibBridge_nativeLoadFromFd(
-        JNIEnv *env, jobject thiz, jint fd) {
+static int64_t artworkDigest(const TagLib::ByteVector &data) {
+    uint64_t hash = 0xcbf29ce484222325ULL;
+    for (unsigned int i = 0; i < data.size(); i++) {
+        hash ^= static_cast<uint8_t>(data[i]);
+        hash *= 0x100000001b3ULL;
+    }
+    // Zero means "no artwork" on the Kotlin side, so keep real digests away from it.
+    return hash == 0 ? 1 : static_cast<int64_t>(hash);
+}
 
+// UTF-8 copy of a TagLib string, or nothing for an empty one so Kotlin sees null.
+static std::optional<std::string> toUtf8(const TagLib::String &str) {
+    if (str.isEmpty()) return std::nullopt;
+    return str.to8Bit(true /* utf8 */);
+}
+
+// First value of a property-map key as UTF-8, or nothing when it's absent or empty.
+static std::optional<std::string> propertyUtf8(const TagLib::PropertyMap &props, const char *key) {
+    auto it = props.find(TagLib::String(key));
+    if (it == props.end() || it->second.isEmpty()) return std::nullopt;
+    return toUtf8(it->second.front());
+}
+
+/**
+ * Opens the audio file by its raw file descriptor and reads every tag field
+ * plus audio properties into [out], all from one FileRef. Touches no JNI at
+ * all, so the batch path can run it on pool threads; both the single-file and
+ * the batch entry points go through here and can't drift apart.
+ *
+ * With [full] set, the embedded lyrics text and the first embedded picture come
+ * along as well, so the library scan doesn't have to open and parse the file
+ * again through nativeExtractLyricsFromFd and nativeExtractArtworkFromFd just to
+ * get at them. Without it those stay empty and only hasLyrics is filled in.
+ *
+ * Returns false (and leaves out.ok false) for a bad fd, an unsupported format
+ * or a corrupt file.
+ */
+static bool parseTrack(int fd, bool full, ParsedTrack &out) {
     // Duplicate the fd so TagLib can own its copy and close it at the end of
     // the stream's lifetime, while the caller's fd stays valid and closeable.
-    int dupFd = dup(static_cast<int>(fd));
+    int dupFd = dup(fd);
     if (dupFd < 0) {
         LOGE("dup() failed for fd=%d — cannot read tags", fd);
-        return nullptr;
+        return false;
     }
 
     // Wrap the duplicated fd in a TagLib stream.
@@ -198,7 +252,7 @@ Java_app_simple_felicity_repository_metadata_TagLibBridge_nativeLoadFromFd(
     );
     if (fileRef.isNull()) {
         LOGE("FileRef is null for fd=%d — unsupported format or corrupt file", fd);
-        return nullptr;
+        return false;
     }
 
     // Collect tag fields, guarding every access so a missing tag never crashes.
@@ -207,146 +261,259 @@ Java_app_simple_felicity_repository_metadata_TagLibBridge_nativeLoadFromFd(
     TagLib::PropertyMap props;
     if (tag) props = tag->properties();
 
+    auto &fields = out.fields;
 
-    jstring title = tag ? toJString(env, tag->title()) : nullptr;
-    jstring artist = tag ? toJString(env, tag->artist()) : nullptr;
-    jstring album = tag ? toJString(env, tag->album()) : nullptr;
-    jstring genre = tag ? toJString(env, tag->genre()) : nullptr;
-    jstring comment = tag ? toJString(env, tag->comment()) : nullptr;
-
-    // Year comes as an unsigned int — convert to a string so it matches the
-    // String field in the Audio model and plays nicely with the rest of the
-    // metadata pipeline (some tracks have "2023", others have "2023-04-21").
-    jstring year = nullptr;
-    if (tag && tag->year() > 0) {
-        std::string yearStr = std::to_string(tag->year());
-        year = env->NewStringUTF(yearStr.c_str());
-        if (env->ExceptionCheck()) {
-            env->ExceptionClear();
-            year = nullptr;
-        }
+    if (tag) {
+        fields[FIELD_TITLE] = toUtf8(tag->title());
+        fields[FIELD_ARTIST] = toUtf8(tag->artist());
+        fields[FIELD_ALBUM] = toUtf8(tag->album());
+        fields[FIELD_GENRE] = toUtf8(tag->genre());
+        fields[FIELD_COMMENT] = toUtf8(tag->comment());
+
+        // Year comes as an unsigned int — convert to a string so it matches the
+        // String field in the Audio model and plays nicely with the rest of the
+        // metadata pipeline (some tracks have "2023", others have "2023-04-21").
+        if (tag->year() > 0) fields[FIELD_YEAR] = std::to_string(tag->year());
     }
 
     // Richer fields come from the property map which covers ID3v2, Vorbis
     // comments, MP4 atoms, APE tags, etc. in a unified way.
-    jstring albumArtist = getProperty(env, props, "ALBUMARTIST");
-    if (!albumArtist) albumArtist = getProperty(env, props, "ALBUM ARTIST");
-    jstring composer = getProperty(env, props, "COMPOSER");
-    jstring lyricist = getProperty(env, props, "LYRICIST");
-    // DISCNUMBER can also be packed as "1/2" — split it the same way.
-    jstring discNumber = nullptr;
-    {
-        jstring rawDisc = getProperty(env, props, "DISCNUMBER");
-        if (rawDisc) {
-            const char *raw = env->GetStringUTFChars(rawDisc, nullptr);
-            if (raw) {
-                std::string rawStr(raw);
-                env->ReleaseStringUTFChars(rawDisc, raw);
-                auto slash = rawStr.find('/');
-                if (slash != std::string::npos) {
-                    std::string numPart = rawStr.substr(0, slash);
-                    if (!numPart.empty()) discNumber = env->NewStringUTF(numPart.c_str());
-                } else {
-                    discNumber = rawDisc;
-                }
-            }
+    fields[FIELD_ALBUM_ARTIST] = propertyUtf8(props, "ALBUMARTIST");
+    if (!fields[FIELD_ALBUM_ARTIST]) fields[FIELD_ALBUM_ARTIST] = propertyUtf8(props, "ALBUM ARTIST");
+    fields[FIELD_COMPOSER] = propertyUtf8(props, "COMPOSER");
+    fields[FIELD_LYRICIST] = propertyUtf8(props, "LYRICIST");
+
+    // DISCNUMBER can also be packed as "1/2" — keep only the part before the slash.
+    if (auto rawDisc = propertyUtf8(props, "DISCNUMBER")) {
+        auto slash = rawDisc->find('/');
+        if (slash == std::string::npos) {
+            fields[FIELD_DISC_NUMBER] = rawDisc;
+        } else if (slash > 0) {
+            fields[FIELD_DISC_NUMBER] = rawDisc->substr(0, slash);
         }
     }
+
     // ID3v2 (and some other formats) pack both the track number and the total
     // into a single "5/10" string inside the TRACKNUMBER field. We need to
-    // split on the slash so each piece lands in the right variable.
-    jstring trackNumber = nullptr;
-    jstring numTracks = nullptr;
-    {
-        jstring rawTrack = getProperty(env, props, "TRACKNUMBER");
-        // LOGI("Raw TRACKNUMBER for fd=%d: %s", fd, rawTrack ? env->GetStringUTFChars(rawTrack, nullptr) : "null");
-        if (rawTrack) {
-            const char *raw = env->GetStringUTFChars(rawTrack, nullptr);
-            if (raw) {
-                std::string rawStr(raw);
-                env->ReleaseStringUTFChars(rawTrack, raw);
-                auto slash = rawStr.find('/');
-                if (slash != std::string::npos) {
-                    // Split "5/10" into "5" and "10"
-                    std::string numPart = rawStr.substr(0, slash);
-                    std::string totalPart = rawStr.substr(slash + 1);
-                    if (!numPart.empty()) trackNumber = env->NewStringUTF(numPart.c_str());
-                    if (!totalPart.empty()) numTracks = env->NewStringUTF(totalPart.c_str());
-                } else {
-                    trackNumber = rawTrack;
-                }
-            }
+    // split on the slash so each piece lands in the right field.
+    if (auto rawTrack = propertyUtf8(props, "TRACKNUMBER")) {
+        auto slash = rawTrack->find('/');
+        if (slash == std::string::npos) {
+            fields[FIELD_TRACK_NUMBER] = rawTrack;
+        } else {
+            if (slash > 0) fields[FIELD_TRACK_NUMBER] = rawTrack->substr(0, slash);
+            if (slash + 1 < rawTrack->size()) fields[FIELD_NUM_TRACKS] = rawTrack->substr(slash + 1);
         }
-//        LOGI("Parsed trackNumber='%s', numTracks='%s' for fd=%d",
-//             trackNumber ? env->GetStringUTFChars(trackNumber, nullptr) : "null",
-//             numTracks ? env->GetStringUTFChars(numTracks, nullptr) : "null",
-//             fd);
-
-        // If the tagger stored the total in its own dedicated field, prefer that.
-        if (!numTracks) numTracks = getProperty(env, props, "TRACKTOTAL");
-//        LOGI("After fallback, numTracks='%s' for fd=%d",
-//             numTracks ? env->GetStringUTFChars(numTracks, nullptr) : "null",
-//             fd);
-        if (!numTracks) numTracks = getProperty(env, props, "TOTALTRACKS");
-//        LOGI("After second fallback, numTracks='%s' for fd=%d",
-//             numTracks ? env->GetStringUTFChars(numTracks, nullptr) : "null",
-//             fd);
-    }
-    jstring compilation = getProperty(env, props, "COMPILATION");
+    }
+
+    // If the tagger stored the total in its own dedicated field, use that.
+    if (!fields[FIELD_NUM_TRACKS]) fields[FIELD_NUM_TRACKS] = propertyUtf8(props, "TRACKTOTAL");
+    if (!fields[FIELD_NUM_TRACKS]) fields[FIELD_NUM_TRACKS] = propertyUtf8(props, "TOTALTRACKS");
+
+    fields[FIELD_COMPILATION] = propertyUtf8(props, "COMPILATION");
 
     // ReplayGain fields — present in well-mastered libraries but optional.
     // REPLAYGAIN_TRACK_GAIN stores a value like "+5.32 dB"; PEAK stores "0.987654".
     // We pull all four standard keys (track gain, track peak, album gain, album peak)
     // and store them as raw strings so the app can parse and display them freely.
-    jstring rgTrackGain = getProperty(env, props, "REPLAYGAIN_TRACK_GAIN");
-    jstring rgTrackPeak = getProperty(env, props, "REPLAYGAIN_TRACK_PEAK");
-    jstring rgAlbumGain = getProperty(env, props, "REPLAYGAIN_ALBUM_GAIN");
-    jstring rgAlbumPeak = getProperty(env, props, "REPLAYGAIN_ALBUM_PEAK");
+    fields[FIELD_RG_TRACK_GAIN] = propertyUtf8(props, "REPLAYGAIN_TRACK_GAIN");
+    fields[FIELD_RG_TRACK_PEAK] = propertyUtf8(props, "REPLAYGAIN_TRACK_PEAK");
+    fields[FIELD_RG_ALBUM_GAIN] = propertyUtf8(props, "REPLAYGAIN_ALBUM_GAIN");
+    fields[FIELD_RG_ALBUM_PEAK] = propertyUtf8(props, "REPLAYGAIN_ALBUM_PEAK");
+
+    // Whether lyrics are there at all — recorded in the lyrics index so the lyrics screen
+    // knows up front which songs have any. Same two keys nativeExtractLyricsFromFd looks at.
+    out.hasLyrics = hasProperty(props, "LYRICS") || hasProperty(props, "UNSYNCEDLYRICS");
+
+    // The text itself only in full mode, and in the same LYRICS-then-UNSYNCEDLYRICS order
+    // nativeExtractLyricsFromFd uses so both paths agree on what a song's lyrics are.
+    if (full && out.hasLyrics) {
+        fields[FIELD_LYRICS] = propertyUtf8(props, "LYRICS");
+        if (!fields[FIELD_LYRICS]) fields[FIELD_LYRICS] = propertyUtf8(props, "UNSYNCEDLYRICS");
+    }
+
+    // Same first picture nativeExtractArtworkFromFd would hand back, read while the
+    // file is still open instead of in a second parse when the cover is first shown.
+    if (full && fileRef.file()) {
+        auto pictures = fileRef.file()->complexProperties("PICTURE");
+        if (!pictures.isEmpty()) {
+            const auto &pic = pictures.front();
+            auto dataIt = pic.find("data");
+            if (dataIt != pic.end()) {
+                const TagLib::ByteVector &imageData = dataIt->second.value<TagLib::ByteVector>();
+                if (!imageData.isEmpty()) {
+                    out.artwork.assign(imageData.data(), imageData.data() + imageData.size());
+                    out.artworkDigest = artworkDigest(imageData);
+                }
+            }
+        }
+    }
 
     // AudioProperties gives us the technical stuff — duration in milliseconds,
     // bitrate in kbps, sample rate in Hz, and bit depth.
-    jlong duration = ap ? static_cast<jlong>(ap->lengthInMilliseconds()) : 0L;
-    jlong bitrate = ap ? static_cast<jlong>(ap->bitrate()) : 0L;
-    jlong sampleRate = ap ? static_cast<jlong>(ap->sampleRate()) : 0L;
-    jint channels = ap ? ap->channels() : 0;
-    jlong bitsPerSample = 0;
-
     if (ap) {
+        out.duration = ap->lengthInMilliseconds();
+        out.bitrate = ap->bitrate();
+        out.sampleRate = ap->sampleRate();
+        int64_t channels = ap->channels();
+
         // Try casting to known lossless formats that expose bitsPerSample()
         if (auto flacProps = dynamic_cast<TagLib::FLAC::Properties *>(ap)) {
-            bitsPerSample = static_cast<jlong>(flacProps->bitsPerSample());
+            out.bitsPerSample = flacProps->bitsPerSample();
         } else if (auto wavProps = dynamic_cast<TagLib::RIFF::WAV::Properties *>(ap)) {
-            bitsPerSample = static_cast<jlong>(wavProps->bitsPerSample());
+            out.bitsPerSample = wavProps->bitsPerSample();
         } else if (auto aiffProps = dynamic_cast<TagLib::RIFF::AIFF::Properties *>(ap)) {
-            bitsPerSample = static_cast<jlong>(aiffProps->bitsPerSample());
+            out.bitsPerSample = aiffProps->bitsPerSample();
         } else if (auto apeProps = dynamic_cast<TagLib::APE::Properties *>(ap)) {
-            bitsPerSample = static_cast<jlong>(apeProps->bitsPerSample());
+            out.bitsPerSample = apeProps->bitsPerSample();
         }
             // The Universal Fallback Calculation for lossy/unknown formats
-        else if (sampleRate > 0 && channels > 0) {
+        else if (out.sampleRate > 0 && channels > 0) {
             // We multiply by 1000 to get bits per second.
             // We add (sampleRate * channels) / 2 to the numerator to perform integer rounding
             // instead of truncation.
-            bitsPerSample =
-                    ((bitrate * 1000) + (sampleRate * channels) / 2) / (sampleRate * channels);
+            out.bitsPerSample =
+                    ((out.bitrate * 1000) + (out.sampleRate * channels) / 2) / (out.sampleRate * channels);
 
             // Clamp bizarre lossy math to standard 16-bit presentation
-            if (bitsPerSample > 0 && bitsPerSample < 16) {
-                bitsPerSample = 16;
+            if (out.bitsPerSample > 0 && out.bitsPerSample < 16) {
+                out.bitsPerSample = 16;
             }
         }
     }
 
+    out.ok = true;
+    return true;
+}
+
+// Java string for an optional UTF-8 field; null when the field is empty.
+static jstring toJString(JNIEnv *env, const std::optional<std::string> &str) {
+    if (!str) return nullptr;
+    jstring result = env->NewStringUTF(str->c_str());
+    if (env->ExceptionCheck()) {
+        env->ExceptionClear();
+        return nullptr;
+    }
+    return result;
+}
+
+/**
+ * Parses one file with parseTrack and turns the result into a TagLibMetadata
+ * Kotlin object, or null if TagLib couldn't read it.
+ */
+static jobject loadMetadata(JNIEnv *env, jint fd, bool full) {
+    ParsedTrack track;
+    if (!parseTrack(static_cast<int>(fd), full, track)) return nullptr;
+
+    jbyteArray artwork = nullptr;
+    if (!track.artwork.empty()) {
+        artwork = env->NewByteArray(static_cast<jsize>(track.artwork.size()));
+        if (artwork) {
+            env->SetByteArrayRegion(artwork, 0, static_cast<jsize>(track.artwork.size()),
+                                    reinterpret_cast<const jbyte *>(track.artwork.data()));
+        } else {
+            // Out of memory for a huge cover; the tags are still worth returning.
+            if (env->ExceptionCheck()) env->ExceptionClear();
+            LOGE("NewByteArray failed for fd=%d — skipping artwork", fd);
+            track.artworkDigest = 0;
+        }
+    }
+
     // Make sure the class and constructor are cached before we try to use them.
     // This is a no-op on every call after the first one.
     if (!ensureMetaClassCached(env)) return nullptr;
 
+    const auto &f = track.fields;
     return env->NewObject(
             g_metaClass, g_metaCtor,
-            title, artist, album, genre, year, comment,
-            albumArtist, composer, lyricist, discNumber, trackNumber, numTracks, compilation,
-            duration, bitrate, sampleRate, bitsPerSample,
-            rgTrackGain, rgTrackPeak, rgAlbumGain, rgAlbumPeak);
+            toJString(env, f[FIELD_TITLE]), toJString(env, f[FIELD_ARTIST]),
+            toJString(env, f[FIELD_ALBUM]), toJString(env, f[FIELD_GENRE]),
+            toJString(env, f[FIELD_YEAR]), toJString(env, f[FIELD_COMMENT]),
+            toJString(env, f[FIELD_ALBUM_ARTIST]), toJString(env, f[FIELD_COMPOSER]),
+            toJString(env, f[FIELD_LYRICIST]), toJString(env, f[FIELD_DISC_NUMBER]),
+            toJString(env, f[FIELD_TRACK_NUMBER]), toJString(env, f[FIELD_NUM_TRACKS]),
+            toJString(env, f[FIELD_COMPILATION]),
+            static_cast<jlong>(track.duration), static_cast<jlong>(track.bitrate),
+            static_cast<jlong>(track.sampleRate), static_cast<jlong>(track.bitsPerSample),
+            toJString(env, f[FIELD_RG_TRACK_GAIN]), toJString(env, f[FIELD_RG_TRACK_PEAK]),
+            toJString(env, f[FIELD_RG_ALBUM_GAIN]), toJString(env, f[FIELD_RG_ALBUM_PEAK]),
+            track.hasLyrics ? JNI_TRUE : JNI_FALSE,
+            toJString(env, f[FIELD_LYRICS]), artwork, static_cast<jlong>(track.artworkDigest));
+}
+
+/**
+ * Tags and audio properties only — what a rescan of a single file or a tag
+ * refresh needs. See loadMetadata.
+ */
+JNIEXPORT jobject JNICALL
+Java_app_simple_felicity_repository_metadata_TagLibBridge_nativeLoadFromFd(
+        JNIEnv *env, jobject thiz, jint fd) {
+    return loadMetadata(env, fd, false);
+}
+
+/**
+ * Tags, audio properties, embedded lyrics and the embedded cover in a single
+ * parse. Used by the library scan. See loadMetadata.
+ */
+JNIEXPORT jobject JNICALL
+Java_app_simple_felicity_repository_metadata_TagLibBridge_nativeLoadFullFromFd(
+        JNIEnv *env, jobject thiz, jint fd) {
+    return loadMetadata(env, fd, true);
+}
+
+/**
+ * Parses every file in [fds] on the shared ExtractionPool and returns the whole
+ * batch packed into one byte array (layout in packed_metadata.h), which Kotlin
+ * decodes in one go. Files TagLib can't read are marked as failed in the
+ * buffer rather than failing the batch, so the caller can retry just those
+ * through its fallback path.
+ *
+ * Returns null only when the result didn't fit in memory; the caller then
+ * falls back to reading the files one at a time.
+ */
+JNIEXPORT jbyteArray JNICALL
+Java_app_simple_felicity_repository_metadata_TagLibBridge_nativeLoadBatchFromFds(
+        JNIEnv *env, jobject thiz, jintArray fds, jboolean full) {
+
+    jsize count = env->GetArrayLength(fds);
+    std::vector<jint> fdList(static_cast<size_t>(count));
+    env->GetIntArrayRegion(fds, 0, count, fdList.data());
+
+    std::vector<ParsedTrack> tracks(static_cast<size_t>(count));
+    bool withExtras = full == JNI_TRUE;
+    ExtractionPool::instance().run(tracks.size(), [&](size_t i) {
+        parseTrack(static_cast<int>(fdList[i]), withExtras, tracks[i]);
+    });
+
+    std::vector<uint8_t> head;
+    size_t artworkBytes = packTracks(tracks, head);
+
+    size_t total = head.size() + artworkBytes;
+    if (total > static_cast<size_t>(INT32_MAX)) {
+        LOGE("Batch of %d files is too large to pack (%zu bytes)", count, total);
+        return nullptr;
+    }
+
+    jbyteArray result = env->NewByteArray(static_cast<jsize>(total));
+    if (!result) {
+        if (env->ExceptionCheck()) env->ExceptionClear();
+        LOGE("NewByteArray failed for a batch of %d files — out of memory?", count);
+        return nullptr;
+    }
+
+    env->SetByteArrayRegion(result, 0, static_cast<jsize>(head.size()),
+                            reinterpret_cast<const jbyte *>(head.data()));
+
+    // The pictures go straight from each track into the array, after the head.
+    auto offset = static_cast<jsize>(head.size());
+    for (const auto &track: tracks) {
+        if (track.artwork.empty()) continue;
+        env->SetByteArrayRegion(result, offset, static_cast<jsize>(track.artwork.size()),
+                                reinterpret_cast<const jbyte *>(track.artwork.data()));
+        offset += static_cast<jsize>(track.artwork.size());
+    }
+
+    return result;
 }
 
 /**
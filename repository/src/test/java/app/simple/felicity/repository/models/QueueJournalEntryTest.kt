@@ -0,0 +1,74 @@
+package app.simple.felicity.repository.models
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+/**
+ * Replays queue journals over saved snapshots, including snapshots that lost songs to a
+ * library cleanup between the save and the restore.
+ *
+ * @author Hamza417
+ */
+class QueueJournalEntryTest {
+
+    /** Remove C, move E to the front, then insert F at index 2 — made on the full queue A..E. */
+    private val journal = listOf(
+            QueueJournalEntry(op = QueueJournalEntry.OP_REMOVE, position = 2, audioHash = C),
+            QueueJournalEntry(op = QueueJournalEntry.OP_MOVE, position = 3, target = 0, audioHash = E),
+            QueueJournalEntry(op = QueueJournalEntry.OP_INSERT, position = 2, audioHash = F)
+    )
+
+    @Test
+    fun replayOnIntactSnapshot() {
+        val hashes = mutableListOf(A, B, C, D, E)
+        QueueJournalEntry.replay(hashes, journal)
+        assertEquals(listOf(E, A, F, B, D), hashes)
+    }
+
+    @Test
+    fun restoreAfterCascadeDelete() {
+        // B left the library after the journal was written, taking its snapshot row with it.
+        val hashes = mutableListOf(A, C, D, E)
+        QueueJournalEntry.replay(hashes, journal)
+        // Same queue as above minus B; by position alone the removal would have hit D.
+        assertEquals(listOf(E, A, F, D), hashes)
+    }
+
+    @Test
+    fun editsOfDeletedSongsAreSkipped() {
+        val hashes = mutableListOf(A, B, D, E)
+        QueueJournalEntry.replay(hashes, listOf(
+                QueueJournalEntry(op = QueueJournalEntry.OP_REMOVE, position = 2, audioHash = C),
+                QueueJournalEntry(op = QueueJournalEntry.OP_MOVE, position = 0, target = 3, audioHash = C)
+        ))
+        assertEquals(listOf(A, B, D, E), hashes)
+    }
+
+    @Test
+    fun duplicateSongsResolveToTheEditedCopy() {
+        val hashes = mutableListOf(A, B, A, C)
+        QueueJournalEntry.replay(hashes, listOf(
+                QueueJournalEntry(op = QueueJournalEntry.OP_MOVE, position = 2, target = 3, audioHash = A)
+        ))
+        assertEquals(listOf(A, B, C, A), hashes)
+    }
+
+    @Test
+    fun legacyEntriesReplayByPosition() {
+        val hashes = mutableListOf(A, B, C, D)
+        QueueJournalEntry.replay(hashes, listOf(
+                QueueJournalEntry(op = QueueJournalEntry.OP_REMOVE, position = 1),
+                QueueJournalEntry(op = QueueJournalEntry.OP_MOVE, position = 2, target = 0)
+        ))
+        assertEquals(listOf(D, A, C), hashes)
+    }
+
+    companion object {
+        private const val A = 11L
+        private const val B = 12L
+        private const val C = 13L
+        private const val D = 14L
+        private const val E = 15L
+        private const val F = 16L
+    }
+}